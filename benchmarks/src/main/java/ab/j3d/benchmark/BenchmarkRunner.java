@@ -0,0 +1,114 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.benchmark;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.regex.*;
+
+import org.openjdk.jmh.profile.*;
+import org.openjdk.jmh.results.format.*;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+
+/**
+ * Runs benchmarks with GC/allocation profiling enabled and writes the results
+ * in JSON format, so they can be compared with the baseline results in
+ * {@code benchmarks/baseline.json}. Any JMH command-line options may be
+ * specified, e.g. a regular expression to select benchmarks to run, or
+ * {@code -rff} to specify the result file.
+ *
+ * <p>The path of the JVM is removed from JSON results, so results recorded on
+ * different machines only differ in their measurements. A warning is shown
+ * when running on a machine with less than {@link #MIN_PROCESSORS}
+ * processors, because the results of parallel code are not representative.
+ *
+ * @author Peter S. Heijnen
+ */
+public class BenchmarkRunner
+{
+	/**
+	 * Minimum number of processors for representative results.
+	 */
+	public static final int MIN_PROCESSORS = 4;
+
+	/**
+	 * Matches the JVM path in JSON results.
+	 */
+	private static final Pattern JVM_PATH = Pattern.compile( "(\"jvm\"\\s*:\\s*\")([^\"]*[/\\\\])?([^\"/\\\\]*\")" );
+	/**
+	 * Utility class.
+	 */
+	private BenchmarkRunner()
+	{
+	}
+
+	/**
+	 * Run application.
+	 *
+	 * @param args Command-line arguments.
+	 *
+	 * @throws Exception if the application crashes.
+	 */
+	public static void main( final String[] args )
+	throws Exception
+	{
+		final CommandLineOptions commandLineOptions = new CommandLineOptions( args );
+
+		final int processors = Runtime.getRuntime().availableProcessors();
+		if ( processors < MIN_PROCESSORS )
+		{
+			System.err.println( "WARNING: Only " + processors + " processor(s) available. Results of parallel code are not representative; do not use them as baseline." );
+		}
+
+		final ResultFormatType resultFormat = commandLineOptions.getResultFormat().orElse( ResultFormatType.JSON );
+		final String result = commandLineOptions.getResult().orElse( "jmh-result.json" );
+
+		final ChainedOptionsBuilder options = new OptionsBuilder().parent( commandLineOptions );
+		options.addProfiler( GCProfiler.class );
+		options.resultFormat( resultFormat );
+		options.result( result );
+
+		new Runner( options.build() ).run();
+
+		if ( resultFormat == ResultFormatType.JSON )
+		{
+			stripJvmPath( new File( result ) );
+		}
+	}
+
+	/**
+	 * Removes the directory of the JVM executable from a JSON result file.
+	 *
+	 * @param file Result file.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
+	static void stripJvmPath( final File file )
+	throws IOException
+	{
+		if ( file.exists() )
+		{
+			final Path path = file.toPath();
+			final String json = new String( Files.readAllBytes( path ), StandardCharsets.UTF_8 );
+			Files.write( path, JVM_PATH.matcher( json ).replaceAll( "$1$3" ).getBytes( StandardCharsets.UTF_8 ) );
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.benchmark;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+import ab.j3d.loader.*;
+import ab.j3d.model.*;
+import ab.j3d.pov.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks for exporting scenes to POV-Ray and OBJ.
+ *
+ * @author Peter S. Heijnen
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class ExportBenchmark
+{
+	/**
+	 * Type of scene to export.
+	 */
+	@Param( { "boxes", "extrusions", "mesh" } )
+	public String sceneType;
+
+	/**
+	 * Number of objects in the scene, or the number of segments along each
+	 * side of the mesh.
+	 */
+	@Param( { "100", "500" } )
+	public int size;
+
+	/**
+	 * Scene to export.
+	 */
+	private Scene _scene;
+
+	/**
+	 * Root node of the scene to export.
+	 */
+	private Node3D _root;
+
+	/**
+	 * Set up benchmark state.
+	 */
+	@Setup
+	public void setUp()
+	{
+		final Scene scene;
+		switch ( sceneType )
+		{
+			case "boxes":
+				scene = SceneGenerator.createBoxes( size );
+				break;
+
+			case "extrusions":
+				scene = SceneGenerator.createExtrusions( size );
+				break;
+
+			case "mesh":
+				scene = SceneGenerator.createLargeMesh( size );
+				break;
+
+			default:
+				throw new IllegalArgumentException( sceneType );
+		}
+		_scene = scene;
+
+		final Node3D root = new Transform3D();
+		for ( final ContentNode contentNode : scene.getContentNodes() )
+		{
+			root.addChild( new Transform3D( contentNode.getTransform(), contentNode.getNode3D() ) );
+		}
+		_root = root;
+	}
+
+	/**
+	 * Exports to POV-Ray by building a {@link PovScene} first.
+	 *
+	 * @return Number of characters written.
+	 *
+	 * @throws IOException when writing failed.
+	 */
+	@Benchmark
+	public long povConverter()
+	throws IOException
+	{
+		final SceneGenerator.CountingWriter out = SceneGenerator.createNullWriter();
+		final AbToPovConverter converter = new AbToPovConverter();
+		converter.convert( _scene ).write( out, null );
+		return out.getCount();
+	}
+
+	/**
+	 * Exports to POV-Ray using {@link AbToPovStreamWriter}.
+	 *
+	 * @return Number of characters written.
+	 *
+	 * @throws IOException when writing failed.
+	 */
+	@Benchmark
+	public long povStreamWriter()
+	throws IOException
+	{
+		final SceneGenerator.CountingWriter out = SceneGenerator.createNullWriter();
+		final AbToPovStreamWriter writer = new AbToPovStreamWriter();
+		writer.write( _scene, out, null );
+		return out.getCount();
+	}
+
+	/**
+	 * Exports to OBJ.
+	 *
+	 * @return Number of characters written.
+	 *
+	 * @throws IOException when writing failed.
+	 */
+	@Benchmark
+	public long obj()
+	throws IOException
+	{
+		final SceneGenerator.CountingWriter out = SceneGenerator.createNullWriter();
+		final ObjWriter writer = new ObjWriter( null );
+		writer.write( out, _root );
+		return out.getCount();
+	}
+}
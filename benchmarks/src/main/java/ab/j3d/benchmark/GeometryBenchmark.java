@@ -0,0 +1,191 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.benchmark;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import ab.j3d.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+/**
+ * Benchmarks for basic geometry classes, such as {@link Matrix3D} and
+ * {@link HashList}.
+ *
+ * @author Peter S. Heijnen
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class GeometryBenchmark
+{
+	/**
+	 * Number of points to process.
+	 */
+	@Param( { "1000", "100000" } )
+	public int pointCount;
+
+	/**
+	 * Transforms to combine.
+	 */
+	private Matrix3D[] _transforms;
+
+	/**
+	 * Points to transform.
+	 */
+	private Vector3D[] _points;
+
+	/**
+	 * Coordinates to transform.
+	 */
+	private double[] _coordinates;
+
+	/**
+	 * List of unique points.
+	 */
+	private HashList<Vector3D> _hashList;
+
+	/**
+	 * Set up benchmark state.
+	 */
+	@Setup
+	public void setUp()
+	{
+		final Random random = new Random( 1L );
+
+		final Matrix3D[] transforms = new Matrix3D[ 64 ];
+		for ( int i = 0; i < transforms.length; i++ )
+		{
+			transforms[ i ] = Matrix3D.getTransform( 360.0 * random.nextDouble(), 360.0 * random.nextDouble(), 360.0 * random.nextDouble(), 1000.0 * random.nextDouble(), 1000.0 * random.nextDouble(), 1000.0 * random.nextDouble() );
+		}
+		_transforms = transforms;
+
+		/*
+		 * Use a limited set of distinct points, so hash lists contain duplicates.
+		 */
+		final Vector3D[] points = new Vector3D[ pointCount ];
+		final double[] coordinates = new double[ pointCount * 3 ];
+		for ( int i = 0; i < pointCount; i++ )
+		{
+			final Vector3D point = new Vector3D( (double)random.nextInt( 100 ), (double)random.nextInt( 100 ), (double)random.nextInt( 10 ) );
+			points[ i ] = point;
+			coordinates[ i * 3 ] = point.x;
+			coordinates[ i * 3 + 1 ] = point.y;
+			coordinates[ i * 3 + 2 ] = point.z;
+		}
+		_points = points;
+		_coordinates = coordinates;
+		_hashList = hashListIndexOfOrAdd();
+	}
+
+	/**
+	 * Concatenates transforms.
+	 *
+	 * @return Combined transform.
+	 */
+	@Benchmark
+	public Matrix3D matrixMultiply()
+	{
+		Matrix3D result = Matrix3D.IDENTITY;
+		for ( final Matrix3D transform : _transforms )
+		{
+			result = result.multiply( transform );
+		}
+		return result;
+	}
+
+	/**
+	 * Inverts transforms.
+	 *
+	 * @param blackhole Consumes results.
+	 */
+	@Benchmark
+	public void matrixInverse( final Blackhole blackhole )
+	{
+		for ( final Matrix3D transform : _transforms )
+		{
+			blackhole.consume( transform.inverse() );
+		}
+	}
+
+	/**
+	 * Transforms points one at a time.
+	 *
+	 * @param blackhole Consumes results.
+	 */
+	@Benchmark
+	public void matrixTransformPoints( final Blackhole blackhole )
+	{
+		final Matrix3D transform = _transforms[ 0 ];
+		for ( final Vector3D point : _points )
+		{
+			blackhole.consume( transform.transform( point ) );
+		}
+	}
+
+	/**
+	 * Transforms an array of coordinates.
+	 *
+	 * @return Transformed coordinates.
+	 */
+	@Benchmark
+	public double[] matrixTransformArray()
+	{
+		final double[] coordinates = _coordinates;
+		return _transforms[ 0 ].transform( coordinates, new double[ coordinates.length ], coordinates.length / 3 );
+	}
+
+	/**
+	 * Builds a list of unique points using {@link HashList#indexOfOrAdd}.
+	 *
+	 * @return List of unique points.
+	 */
+	@Benchmark
+	public HashList<Vector3D> hashListIndexOfOrAdd()
+	{
+		final HashList<Vector3D> result = new HashList<>();
+		for ( final Vector3D point : _points )
+		{
+			result.indexOfOrAdd( point );
+		}
+		return result;
+	}
+
+	/**
+	 * Looks up points in a {@link HashList}.
+	 *
+	 * @return Sum of indices.
+	 */
+	@Benchmark
+	public long hashListIndexOf()
+	{
+		final HashList<Vector3D> list = _hashList;
+
+		long result = 0L;
+		for ( final Vector3D point : _points )
+		{
+			result += (long)list.indexOf( point );
+		}
+		return result;
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.benchmark;
+
+import java.io.*;
+import java.net.*;
+import java.util.concurrent.*;
+
+import ab.j3d.*;
+import ab.j3d.loader.*;
+import ab.j3d.model.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks for loading models with {@link ObjLoader} and {@link StlLoader}.
+ *
+ * @author Peter S. Heijnen
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class LoaderBenchmark
+{
+	/**
+	 * Number of segments along each side of the loaded mesh.
+	 */
+	@Param( { "100", "500" } )
+	public int meshSegments;
+
+	/**
+	 * OBJ file contents.
+	 */
+	private String _objFile;
+
+	/**
+	 * STL file contents.
+	 */
+	private byte[] _stlFile;
+
+	/**
+	 * Set up benchmark state.
+	 */
+	@Setup
+	public void setUp()
+	{
+		_objFile = SceneGenerator.createObjFile( meshSegments );
+		_stlFile = SceneGenerator.createStlFile( meshSegments );
+	}
+
+	/**
+	 * Loads an OBJ file.
+	 *
+	 * @return Loaded object.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
+	@Benchmark
+	public Object3D loadObj()
+	throws IOException
+	{
+		final Object3D result = new Object3D();
+		final ResourceLoader resourceLoader = new ResourceLoader()
+		{
+			@Override
+			public URL getResource( final String path )
+			{
+				return null;
+			}
+
+			@Override
+			public InputStream getResourceAsStream( final String path )
+			{
+				return null;
+			}
+		};
+		ObjLoader.load( result.getBuilder(), Matrix3D.IDENTITY, resourceLoader, new BufferedReader( new StringReader( _objFile ) ) );
+		return result;
+	}
+
+	/**
+	 * Loads a binary STL file.
+	 *
+	 * @return Loaded object.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
+	@Benchmark
+	public Object3D loadStl()
+	throws IOException
+	{
+		final StlLoader loader = new StlLoader();
+		return loader.load( Matrix3D.IDENTITY, new ByteArrayInputStream( _stlFile ) );
+	}
+}
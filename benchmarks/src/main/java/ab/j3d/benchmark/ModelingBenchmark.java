@@ -0,0 +1,327 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.benchmark;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+import ab.j3d.*;
+import ab.j3d.appearance.*;
+import ab.j3d.awt.*;
+import ab.j3d.geom.*;
+import ab.j3d.model.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+/**
+ * Benchmarks for modeling operations: tessellation, extrusion, slicing,
+ * boolean operations, collision detection and picking.
+ *
+ * @author Peter S. Heijnen
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class ModelingBenchmark
+{
+	/**
+	 * Number of objects in the scene.
+	 */
+	@Param( { "100", "1000" } )
+	public int objectCount;
+
+	/**
+	 * Number of segments along each side of the large mesh.
+	 */
+	@Param( { "100", "500" } )
+	public int meshSegments;
+
+	/**
+	 * Shapes to tessellate.
+	 */
+	private Shape[] _shapes;
+
+	/**
+	 * Content nodes with extrusions.
+	 */
+	private List<ContentNode> _extrusionNodes;
+
+	/**
+	 * Large mesh.
+	 */
+	private Object3D _mesh;
+
+	/**
+	 * Second large mesh, used for collision tests.
+	 */
+	private Object3D _otherMesh;
+
+	/**
+	 * Transform from the other mesh to the first mesh.
+	 */
+	private Matrix3D _otherToMesh;
+
+	/**
+	 * Slicer that is reused for repeated cuts of the large mesh.
+	 */
+	private Object3DSlicer _slicer;
+
+	/**
+	 * Closed sphere with many faces, used for boolean operations.
+	 */
+	private Object3D _sphere;
+
+	/**
+	 * Box that is cut out of the sphere.
+	 */
+	private Object3D _cutter;
+
+	/**
+	 * Rays used for picking.
+	 */
+	private Ray3D[] _rays;
+
+	/**
+	 * Set up benchmark state.
+	 */
+	@Setup
+	public void setUp()
+	{
+		final Shape[] shapes = new Shape[ objectCount ];
+		for ( int i = 0; i < shapes.length; i++ )
+		{
+			shapes[ i ] = SceneGenerator.createShape( i );
+		}
+		_shapes = shapes;
+
+		final Scene extrusions = SceneGenerator.createExtrusions( objectCount );
+		_extrusionNodes = SceneGenerator.getObjectNodes( extrusions );
+		_mesh = SceneGenerator.createMesh( meshSegments );
+		_otherMesh = SceneGenerator.createMesh( meshSegments );
+
+		final Object3DSlicer slicer = new Object3DSlicer();
+		slicer.setTopEnabled( true );
+		slicer.setTopCapped( true );
+		slicer.setBottomEnabled( true );
+		slicer.setBottomCapped( true );
+		_slicer = slicer;
+
+		_sphere = new Sphere3D( 1000.0, meshSegments, meshSegments, BasicAppearances.ALUMINIUM );
+		_cutter = new Box3D( 250.0, -1500.0, -1500.0, 3000.0, 3000.0, 3000.0, BasicAppearances.RED, null, BasicAppearances.RED, null, BasicAppearances.RED, null, BasicAppearances.RED, null, BasicAppearances.RED, null, BasicAppearances.RED, null, false );
+
+		/*
+		 * Place the other mesh upright, so it crosses the first mesh along a
+		 * line through its center. Only leaf nodes near that line overlap,
+		 * which forces the collision test to descend deep into the tree.
+		 */
+		_otherToMesh = Matrix3D.getTransform( 90.0, 0.0, 0.0, 0.0, 1000.0, 1000.0 );
+
+		final Random random = new Random( 1L );
+		final Bounds3D bounds = extrusions.getBounds();
+		final Ray3D[] rays = new Ray3D[ 100 ];
+		for ( int i = 0; i < rays.length; i++ )
+		{
+			final double x = bounds.v1.x + random.nextDouble() * bounds.sizeX();
+			final double y = bounds.v1.y + random.nextDouble() * bounds.sizeY();
+			rays[ i ] = new BasicRay3D( x, y, 1000.0, 0.0, 0.0, -1.0, true );
+		}
+		_rays = rays;
+	}
+
+	/**
+	 * Tessellates shapes with curved edges and holes.
+	 *
+	 * @param blackhole Consumes results.
+	 */
+	@Benchmark
+	public void tessellate( final Blackhole blackhole )
+	{
+		for ( final Shape shape : _shapes )
+		{
+			final Tessellator tessellator = ShapeTools.createTessellator( shape, 1.0 );
+			blackhole.consume( tessellator.getCounterClockwisePrimitives() );
+			blackhole.consume( tessellator.getCounterClockwiseOutlines() );
+		}
+	}
+
+	/**
+	 * Creates extruded objects from shapes.
+	 *
+	 * @param blackhole Consumes results.
+	 */
+	@Benchmark
+	public void extrude( final Blackhole blackhole )
+	{
+		final Vector3D extrusion = new Vector3D( 0.0, 0.0, 18.0 );
+		final BoxUVMap uvMap = new BoxUVMap( Scene.MM );
+
+		for ( final Shape shape : _shapes )
+		{
+			blackhole.consume( new ExtrudedObject2D( shape, extrusion, uvMap, BasicAppearances.RED, BasicAppearances.GREEN, BasicAppearances.BLUE, 1.0, false, false, true ) );
+		}
+	}
+
+	/**
+	 * Slices the large mesh with a plane through its center.
+	 *
+	 * @return Top part of the sliced mesh.
+	 */
+	@Benchmark
+	public Object3D sliceMesh()
+	{
+		final Object3DSlicer slicer = new Object3DSlicer();
+		slicer.setTopEnabled( true );
+		slicer.setTopCapped( true );
+		slicer.setBottomEnabled( true );
+		slicer.setBottomCapped( true );
+		slicer.slice( _mesh, new BasicPlane3D( Vector3D.normalize( 1.0, 0.5, 0.0 ), 1000.0, true ) );
+		return slicer.getTopObject();
+	}
+
+	/**
+	 * Slices the large mesh repeatedly near its edge with the same slicer, so
+	 * the slicer's index of the mesh is reused.
+	 *
+	 * @param blackhole Consumes results.
+	 */
+	@Benchmark
+	public void sliceMeshRepeated( final Blackhole blackhole )
+	{
+		final Object3DSlicer slicer = _slicer;
+		for ( int i = 0; i < 10; i++ )
+		{
+			slicer.slice( _mesh, new BasicPlane3D( Vector3D.POSITIVE_X_AXIS, 100.0 + (double)i, true ) );
+			blackhole.consume( slicer.getTopObject() );
+		}
+	}
+
+	/**
+	 * Slices all extrusions with a plane at half their thickness.
+	 *
+	 * @param blackhole Consumes results.
+	 */
+	@Benchmark
+	public void sliceExtrusions( final Blackhole blackhole )
+	{
+		final Object3DSlicer slicer = new Object3DSlicer();
+		slicer.setTopEnabled( true );
+		slicer.setTopCapped( true );
+		slicer.setCuttingPlane( new BasicPlane3D( Vector3D.POSITIVE_Z_AXIS, 9.0, true ) );
+
+		for ( final ContentNode contentNode : _extrusionNodes )
+		{
+			slicer.slice( (Object3D)contentNode.getNode3D() );
+			blackhole.consume( slicer.getTopObject() );
+		}
+	}
+
+	/**
+	 * Cuts a box out of a sphere with many faces.
+	 *
+	 * @return Remaining part of the sphere.
+	 */
+	@Benchmark
+	public Object3D booleanDifference()
+	{
+		return Object3DBoolean.difference( _sphere, _cutter );
+	}
+
+	/**
+	 * Tests collision between two large meshes, including construction of
+	 * their collision trees.
+	 *
+	 * @return Whether the meshes collide.
+	 */
+	@Benchmark
+	public boolean collideUncached()
+	{
+		final Object3D mesh = new Object3D( _mesh.getVertexCoordinates() );
+		mesh.setFaceGroups( _mesh.getFaceGroups() );
+		final Object3D otherMesh = new Object3D( _otherMesh.getVertexCoordinates() );
+		otherMesh.setFaceGroups( _otherMesh.getFaceGroups() );
+		return mesh.collidesWith( _otherToMesh, otherMesh );
+	}
+
+	/**
+	 * Tests collision between two large meshes, with collision trees built in
+	 * advance.
+	 *
+	 * @return Whether the meshes collide.
+	 */
+	@Benchmark
+	public boolean collideCached()
+	{
+		return _mesh.collidesWith( _otherToMesh, _otherMesh );
+	}
+
+	/**
+	 * Tests for collisions between all pairs of extrusions.
+	 *
+	 * @return Number of collisions.
+	 */
+	@Benchmark
+	public int collideScene()
+	{
+		final List<ContentNode> contentNodes = _extrusionNodes;
+
+		int result = 0;
+		for ( int i = 0; i < contentNodes.size(); i++ )
+		{
+			final ContentNode node1 = contentNodes.get( i );
+			for ( int j = i + 1; j < contentNodes.size(); j++ )
+			{
+				final ContentNode node2 = contentNodes.get( j );
+				final Matrix3D from2to1 = node2.getTransform().multiplyInverse( node1.getTransform() );
+				if ( ( (Object3D)node1.getNode3D() ).collidesWith( from2to1, (Object3D)node2.getNode3D() ) )
+				{
+					result++;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Intersects rays with all extrusions, like picking does.
+	 *
+	 * @return Number of intersections found.
+	 */
+	@Benchmark
+	public int pick()
+	{
+		final List<Face3DIntersection> intersections = new ArrayList<>();
+
+		for ( final Ray3D ray : _rays )
+		{
+			for ( final ContentNode contentNode : _extrusionNodes )
+			{
+				final Matrix3D transform = contentNode.getTransform();
+				final Node3D node = contentNode.getNode3D();
+				( (Object3D)node ).getIntersectionsWithRay( intersections, true, contentNode.getID(), new Node3DPath( null, transform, node ), transform, ray );
+			}
+		}
+
+		return intersections.size();
+	}
+}
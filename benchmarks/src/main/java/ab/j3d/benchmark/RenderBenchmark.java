@@ -0,0 +1,225 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.benchmark;
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.awt.image.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+import ab.j3d.*;
+import ab.j3d.awt.view.java2d.*;
+import ab.j3d.control.*;
+import ab.j3d.model.*;
+import ab.j3d.view.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks for software rendering using the Java 2D render engine.
+ *
+ * @author Peter S. Heijnen
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( value = 1, jvmArgsAppend = "-Djava.awt.headless=true" )
+@State( Scope.Benchmark )
+public class RenderBenchmark
+{
+	/**
+	 * Width of rendered image.
+	 */
+	private static final int WIDTH = 800;
+
+	/**
+	 * Height of rendered image.
+	 */
+	private static final int HEIGHT = 600;
+
+	/**
+	 * Number of boxes in the scene.
+	 */
+	@Param( { "100", "1000" } )
+	public int objectCount;
+
+	/**
+	 * Scene to render.
+	 */
+	private Scene _scene;
+
+	/**
+	 * Offscreen view.
+	 */
+	private Java2dView _view;
+
+	/**
+	 * Set up benchmark state.
+	 */
+	@Setup
+	public void setUp()
+	{
+		final Scene scene = SceneGenerator.createBoxes( objectCount );
+		_scene = scene;
+
+		final Bounds3D bounds = scene.getBounds();
+		final Vector3D center = bounds.center();
+
+		final Java2dView view = new Java2dEngine( Color.WHITE ).createOffscreenView( scene );
+		view.setCameraControl( new FromToCameraControl( view, center.plus( -bounds.sizeX(), -bounds.sizeY(), bounds.sizeX() ), center ) );
+		view.setSize( WIDTH, HEIGHT );
+		view.setResolution( Scene.INCH / 96.0 );
+		_view = view;
+	}
+
+	/**
+	 * Clean up benchmark state.
+	 */
+	@TearDown
+	public void tearDown()
+	{
+		_view.dispose();
+	}
+
+	/**
+	 * Builds a BSP tree for the scene.
+	 *
+	 * @return BSP tree.
+	 */
+	@Benchmark
+	public BSPTree buildBspTree()
+	{
+		final BSPTree result = new BSPTree();
+		result.addScene( _scene );
+		result.build();
+		return result;
+	}
+
+	/**
+	 * Projects all polygons in the view's BSP tree and sorts them from back
+	 * to front.
+	 *
+	 * @return Sorted polygons.
+	 */
+	@Benchmark
+	public RenderedPolygon[] renderQueue()
+	{
+		final Java2dView view = _view;
+		final Matrix3D scene2view = view.getScene2View();
+		final Vector3D viewPoint = view.getView2Scene().getTranslation();
+		return view.getBspTree().getRenderQueue( viewPoint, view.getProjector(), scene2view, true, true );
+	}
+
+	/**
+	 * Renders an image of the scene.
+	 *
+	 * @return Rendered image.
+	 */
+	@Benchmark
+	public BufferedImage renderImage()
+	{
+		return _view.renderImage( WIDTH, HEIGHT );
+	}
+
+	/**
+	 * Paints the scene as vector output, one face at a time, using {@link
+	 * Java2dRenderer}.
+	 *
+	 * @return Painted image.
+	 */
+	@Benchmark
+	public BufferedImage paintVector()
+	{
+		final BufferedImage result = new BufferedImage( WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB );
+		final Graphics2D g = result.createGraphics();
+		try
+		{
+			final Matrix3D scene2view = _view.getScene2View();
+			final RenderStyle renderStyle = new RenderStyle();
+			for ( final ContentNode contentNode : _scene.getContentNodes() )
+			{
+				Java2dRenderer.paintNode( g, getView2Image(), contentNode.getTransform().multiply( scene2view ), contentNode.getNode3D(), renderStyle, null );
+			}
+		}
+		finally
+		{
+			g.dispose();
+		}
+		return result;
+	}
+
+	/**
+	 * Paints the scene as vector output using {@link Java2dVectorRenderer},
+	 * which merges, culls and simplifies faces.
+	 *
+	 * @return Painted image.
+	 */
+	@Benchmark
+	public BufferedImage paintVectorOptimized()
+	{
+		final BufferedImage result = new BufferedImage( WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB );
+		final Graphics2D g = result.createGraphics();
+		try
+		{
+			final Matrix3D scene2view = _view.getScene2View();
+			final RenderStyle renderStyle = new RenderStyle();
+			final Java2dVectorRenderer renderer = new Java2dVectorRenderer( getView2Image(), 0.5 );
+			for ( final ContentNode contentNode : _scene.getContentNodes() )
+			{
+				renderer.addNode( contentNode.getTransform().multiply( scene2view ), contentNode.getNode3D(), renderStyle, null );
+			}
+			renderer.paint( g );
+		}
+		finally
+		{
+			g.dispose();
+		}
+		return result;
+	}
+
+	/**
+	 * Determines visible lines of the scene for a technical drawing.
+	 *
+	 * @return Visible lines.
+	 */
+	@Benchmark
+	public List<Line2D> hiddenLines()
+	{
+		final Matrix3D scene2view = _view.getScene2View();
+		final HiddenLineRenderer renderer = new HiddenLineRenderer( getView2Image(), 0.5 );
+		for ( final ContentNode contentNode : _scene.getContentNodes() )
+		{
+			renderer.addNode( contentNode.getTransform().multiply( scene2view ), contentNode.getNode3D() );
+		}
+		return renderer.getVisibleLines();
+	}
+
+	/**
+	 * Returns a parallel projection from view coordinates to the image.
+	 *
+	 * @return Transform from view coordinates to the image.
+	 */
+	private Matrix3D getView2Image()
+	{
+		final Bounds3D bounds = _scene.getBounds();
+		final double scale = (double)WIDTH / ( 2.0 * Math.max( bounds.sizeX(), bounds.sizeY() ) );
+		return new Matrix3D( scale, 0.0, 0.0, 0.5 * (double)WIDTH, 0.0, -scale, 0.0, 0.5 * (double)HEIGHT, 0.0, 0.0, 1.0, 0.0 );
+	}
+}
@@ -0,0 +1,387 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.benchmark;
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.List;
+
+import ab.j3d.*;
+import ab.j3d.appearance.*;
+import ab.j3d.awt.*;
+import ab.j3d.geom.*;
+import ab.j3d.model.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Generates synthetic scenes and model files for benchmarks. All output is
+ * deterministic for a given set of parameters, so results of different runs
+ * can be compared.
+ *
+ * @author Peter S. Heijnen
+ */
+public class SceneGenerator
+{
+	/**
+	 * Appearances used for generated objects.
+	 */
+	private static final Appearance[] APPEARANCES = { BasicAppearances.RED, BasicAppearances.GREEN, BasicAppearances.BLUE, BasicAppearances.YELLOW, BasicAppearances.ALUMINIUM, BasicAppearances.BEIGE };
+
+	/**
+	 * Utility class.
+	 */
+	private SceneGenerator()
+	{
+	}
+
+	/**
+	 * Creates a scene with legacy lights and no content.
+	 *
+	 * @return Scene.
+	 */
+	@NotNull
+	public static Scene createScene()
+	{
+		final Scene scene = new Scene( Scene.MM );
+		Scene.addLegacyLights( scene );
+		return scene;
+	}
+
+	/**
+	 * Returns all content nodes in the given scene that contain an
+	 * {@link Object3D}, i.e. all content except lights.
+	 *
+	 * @param scene Scene to get objects from.
+	 *
+	 * @return Content nodes with an {@link Object3D}.
+	 */
+	@NotNull
+	public static List<ContentNode> getObjectNodes( @NotNull final Scene scene )
+	{
+		final List<ContentNode> result = new ArrayList<>();
+		for ( final ContentNode contentNode : scene.getContentNodes() )
+		{
+			if ( contentNode.getNode3D() instanceof Object3D )
+			{
+				result.add( contentNode );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a scene with boxes of different sizes and appearances, placed on
+	 * a square grid.
+	 *
+	 * @param count Number of boxes.
+	 *
+	 * @return Scene.
+	 */
+	@NotNull
+	public static Scene createBoxes( final int count )
+	{
+		final Scene scene = createScene();
+		final Random random = new Random( 1L );
+		final int columns = (int)Math.ceil( Math.sqrt( (double)count ) );
+
+		for ( int i = 0; i < count; i++ )
+		{
+			final Appearance appearance = APPEARANCES[ i % APPEARANCES.length ];
+			final Box3D box = new Box3D( 100.0 + 400.0 * random.nextDouble(), 100.0 + 400.0 * random.nextDouble(), 18.0 + 200.0 * random.nextDouble(), new BoxUVMap( Scene.MM ), appearance );
+			final Matrix3D transform = Matrix3D.getTransform( 0.0, 0.0, 360.0 * random.nextDouble(), (double)( i % columns ) * 600.0, (double)( i / columns ) * 600.0, 0.0 );
+			scene.addContentNode( "box" + i, transform, box );
+		}
+
+		return scene;
+	}
+
+	/**
+	 * Creates a scene with extruded shapes, each with curved edges and holes.
+	 *
+	 * @param count Number of extrusions.
+	 *
+	 * @return Scene.
+	 */
+	@NotNull
+	public static Scene createExtrusions( final int count )
+	{
+		final Scene scene = createScene();
+		final int columns = (int)Math.ceil( Math.sqrt( (double)count ) );
+
+		for ( int i = 0; i < count; i++ )
+		{
+			final Appearance appearance = APPEARANCES[ i % APPEARANCES.length ];
+			final ExtrudedObject2D extrusion = new ExtrudedObject2D( createShape( i ), new Vector3D( 0.0, 0.0, 18.0 ), new BoxUVMap( Scene.MM ), appearance, appearance, appearance, 1.0, false, false, true );
+			scene.addContentNode( "extrusion" + i, Matrix3D.getTranslation( (double)( i % columns ) * 600.0, (double)( i / columns ) * 600.0, 0.0 ), extrusion );
+		}
+
+		return scene;
+	}
+
+	/**
+	 * Creates a scene with a single large mesh.
+	 *
+	 * @param segments Number of segments along each side of the mesh.
+	 *
+	 * @return Scene.
+	 */
+	@NotNull
+	public static Scene createLargeMesh( final int segments )
+	{
+		final Scene scene = createScene();
+		scene.addContentNode( "mesh", Matrix3D.IDENTITY, createMesh( segments ) );
+		return scene;
+	}
+
+	/**
+	 * Creates a 2D shape with curved edges and holes.
+	 *
+	 * @param variant Variant of the shape to create.
+	 *
+	 * @return Shape.
+	 */
+	@NotNull
+	public static Shape createShape( final int variant )
+	{
+		final Area result = new Area( new RoundRectangle2D.Double( 0.0, 0.0, 500.0, 400.0, 80.0, 80.0 ) );
+
+		final int holes = 1 + variant % 4;
+		for ( int i = 0; i < holes; i++ )
+		{
+			result.subtract( new Area( new Ellipse2D.Double( 40.0 + (double)i * 110.0, 150.0, 80.0, 100.0 ) ) );
+		}
+
+		return result;
+	}
+
+	/**
+	 * Creates a smooth, wavy mesh that consists of quads on a square grid.
+	 *
+	 * @param segments Number of segments along each side of the mesh.
+	 *
+	 * @return Mesh.
+	 */
+	@NotNull
+	public static Object3D createMesh( final int segments )
+	{
+		final Object3D result = new Object3D();
+		final Object3DBuilder builder = result.getBuilder();
+
+		final double size = 2000.0;
+		final double step = size / (double)segments;
+
+		final List<Vector3D> vertices = new ArrayList<>( ( segments + 1 ) * ( segments + 1 ) );
+		for ( int y = 0; y <= segments; y++ )
+		{
+			for ( int x = 0; x <= segments; x++ )
+			{
+				vertices.add( new Vector3D( (double)x * step, (double)y * step, getHeight( (double)x * step, (double)y * step ) ) );
+			}
+		}
+		builder.setVertexCoordinates( vertices );
+
+		for ( int y = 0; y < segments; y++ )
+		{
+			for ( int x = 0; x < segments; x++ )
+			{
+				final int index = y * ( segments + 1 ) + x;
+				builder.addFace( new int[] { index, index + 1, index + segments + 2, index + segments + 1 }, BasicAppearances.ALUMINIUM, null, false, true, false );
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the height of the mesh created by {@link #createMesh}.
+	 *
+	 * @param x X coordinate.
+	 * @param y Y coordinate.
+	 *
+	 * @return Z coordinate.
+	 */
+	private static double getHeight( final double x, final double y )
+	{
+		return 50.0 * Math.sin( x / 150.0 ) * Math.cos( y / 200.0 );
+	}
+
+	/**
+	 * Creates an OBJ file for the mesh created by {@link #createMesh}.
+	 *
+	 * @param segments Number of segments along each side of the mesh.
+	 *
+	 * @return OBJ file contents.
+	 */
+	@NotNull
+	public static String createObjFile( final int segments )
+	{
+		final double size = 2000.0;
+		final double step = size / (double)segments;
+
+		final StringBuilder result = new StringBuilder();
+		result.append( "# Synthetic mesh\n" );
+		result.append( "o mesh\n" );
+
+		for ( int y = 0; y <= segments; y++ )
+		{
+			for ( int x = 0; x <= segments; x++ )
+			{
+				result.append( "v " ).append( (double)x * step ).append( ' ' ).append( (double)y * step ).append( ' ' ).append( getHeight( (double)x * step, (double)y * step ) ).append( '\n' );
+			}
+		}
+
+		for ( int y = 0; y < segments; y++ )
+		{
+			for ( int x = 0; x < segments; x++ )
+			{
+				final int index = y * ( segments + 1 ) + x + 1;
+				result.append( "f " ).append( index ).append( ' ' ).append( index + 1 ).append( ' ' ).append( index + segments + 2 ).append( ' ' ).append( index + segments + 1 ).append( '\n' );
+			}
+		}
+
+		return result.toString();
+	}
+
+	/**
+	 * Creates a binary STL file for the mesh created by {@link #createMesh}.
+	 *
+	 * @param segments Number of segments along each side of the mesh.
+	 *
+	 * @return STL file contents.
+	 */
+	@NotNull
+	public static byte[] createStlFile( final int segments )
+	{
+		final double size = 2000.0;
+		final double step = size / (double)segments;
+		final int triangleCount = segments * segments * 2;
+
+		final ByteBuffer buffer = ByteBuffer.allocate( 84 + triangleCount * 50 );
+		buffer.order( ByteOrder.LITTLE_ENDIAN );
+		buffer.put( Arrays.copyOf( "Synthetic mesh".getBytes(), 80 ) );
+		buffer.putInt( triangleCount );
+
+		for ( int y = 0; y < segments; y++ )
+		{
+			for ( int x = 0; x < segments; x++ )
+			{
+				final Vector3D p1 = new Vector3D( (double)x * step, (double)y * step, getHeight( (double)x * step, (double)y * step ) );
+				final Vector3D p2 = new Vector3D( (double)( x + 1 ) * step, (double)y * step, getHeight( (double)( x + 1 ) * step, (double)y * step ) );
+				final Vector3D p3 = new Vector3D( (double)( x + 1 ) * step, (double)( y + 1 ) * step, getHeight( (double)( x + 1 ) * step, (double)( y + 1 ) * step ) );
+				final Vector3D p4 = new Vector3D( (double)x * step, (double)( y + 1 ) * step, getHeight( (double)x * step, (double)( y + 1 ) * step ) );
+				putStlTriangle( buffer, p1, p2, p3 );
+				putStlTriangle( buffer, p1, p3, p4 );
+			}
+		}
+
+		return buffer.array();
+	}
+
+	/**
+	 * Adds a triangle to a binary STL file.
+	 *
+	 * @param buffer Buffer to write to.
+	 * @param p1     First vertex.
+	 * @param p2     Second vertex.
+	 * @param p3     Third vertex.
+	 */
+	private static void putStlTriangle( @NotNull final ByteBuffer buffer, @NotNull final Vector3D p1, @NotNull final Vector3D p2, @NotNull final Vector3D p3 )
+	{
+		final Vector3D normal = Vector3D.cross( p2.minus( p1 ), p3.minus( p1 ) ).normalize();
+		putStlVector( buffer, normal );
+		putStlVector( buffer, p1 );
+		putStlVector( buffer, p2 );
+		putStlVector( buffer, p3 );
+		buffer.putShort( (short)0 );
+	}
+
+	/**
+	 * Adds a vector to a binary STL file.
+	 *
+	 * @param buffer Buffer to write to.
+	 * @param vector Vector to write.
+	 */
+	private static void putStlVector( @NotNull final ByteBuffer buffer, @NotNull final Vector3D vector )
+	{
+		buffer.putFloat( (float)vector.x );
+		buffer.putFloat( (float)vector.y );
+		buffer.putFloat( (float)vector.z );
+	}
+
+	/**
+	 * Creates a writer that discards its output. This is used to measure the
+	 * cost of exporting without measuring I/O.
+	 *
+	 * @return Writer that counts the number of characters written.
+	 */
+	@NotNull
+	public static CountingWriter createNullWriter()
+	{
+		return new CountingWriter();
+	}
+
+	/**
+	 * Writer that discards its output, but counts the number of characters
+	 * that were written.
+	 */
+	public static class CountingWriter
+	extends Writer
+	{
+		/**
+		 * Number of characters written.
+		 */
+		private long _count = 0L;
+
+		public long getCount()
+		{
+			return _count;
+		}
+
+		@Override
+		public void write( final int c )
+		{
+			_count++;
+		}
+
+		@Override
+		public void write( @NotNull final char[] cbuf, final int off, final int len )
+		{
+			_count += (long)len;
+		}
+
+		@Override
+		public void write( @NotNull final String str, final int off, final int len )
+		{
+			_count += (long)len;
+		}
+
+		@Override
+		public void flush()
+		{
+		}
+
+		@Override
+		public void close()
+		{
+		}
+	}
+}
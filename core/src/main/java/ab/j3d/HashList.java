@@ -25,7 +25,10 @@ import org.jetbrains.annotations.*;
 /**
  * Adds index hashing to a {@link ArrayList} to provide fast {@link #contains}
  * and {@link #indexOf} lookups. Modifications are rather costly, except for
- * adding an element to the end of the list.
+ * adding an element to the end of the list. Elements added to the end of the
+ * list are indexed lazily, when the index is needed by a lookup or another
+ * modification, so building a list without lookups is as cheap as for an
+ * {@link ArrayList}.
  *
  * <p>This collection does not support {@code null} elements.
  *
@@ -48,6 +51,13 @@ extends ArrayList<E>
 	 */
 	private final Map<Integer, List<Entry<E>>> _indexHashMap = new HashMap<>();
 
+	/**
+	 * Number of elements at the start of the list that are included in
+	 * {@link #_indexHashMap}. Other elements were added to the end of the list
+	 * and are indexed by {@link #updateIndex()}.
+	 */
+	private int _indexedSize = 0;
+
 	/**
 	 * Construct empty list.
 	 */
@@ -84,6 +94,8 @@ extends ArrayList<E>
 	 */
 	public int indexOfOrAdd( final @NotNull E element )
 	{
+		updateIndex();
+
 		final Entry<E> entry = getOrAddEntry( element );
 		int result = entry._index;
 
@@ -93,6 +105,7 @@ extends ArrayList<E>
 			entry._index = result;
 			entry._lastIndex = result;
 			super.add( result, element );
+			_indexedSize = size();
 		}
 
 		return result;
@@ -106,21 +119,28 @@ extends ArrayList<E>
 			throw new NullPointerException( "null is not allowed" );
 		}
 
-		/*
-		 * Increment index of all trailing elements.
-		 */
-		if ( index < size() )
+		if ( index == size() )
 		{
-			incrementIndices( index );
+			super.add( index, element );
 		}
+		else
+		{
+			updateIndex();
 
-		/*
-		 * Add index to map.
-		 */
-		final Entry<E> entry = getOrAddEntry( element );
-		entry.add( index );
+			/*
+			 * Increment index of all trailing elements.
+			 */
+			incrementIndices( index );
 
-		super.add( index, element );
+			/*
+			 * Add index to map.
+			 */
+			final Entry<E> entry = getOrAddEntry( element );
+			entry.add( index );
+
+			super.add( index, element );
+			_indexedSize = size();
+		}
 	}
 
 	@Override
@@ -152,6 +172,7 @@ extends ArrayList<E>
 	{
 		super.clear();
 		_indexHashMap.clear();
+		_indexedSize = 0;
 	}
 
 	@Override
@@ -184,6 +205,8 @@ extends ArrayList<E>
 
 		if ( object != null )
 		{
+			updateIndex();
+
 			final List<Entry<E>> entries = _indexHashMap.get( object.hashCode() );
 			if ( entries != null )
 			{
@@ -208,6 +231,8 @@ extends ArrayList<E>
 
 		if ( object != null )
 		{
+			updateIndex();
+
 			final List<Entry<E>> entries = _indexHashMap.get( object.hashCode() );
 			if ( entries != null )
 			{
@@ -234,6 +259,8 @@ extends ArrayList<E>
 	@Override
 	public E remove( final int index )
 	{
+		updateIndex();
+
 		final E element = get( index );
 
 		removeFromEntry( index, element );
@@ -247,6 +274,7 @@ extends ArrayList<E>
 		}
 
 		super.remove( index );
+		_indexedSize = size();
 
 		return element;
 	}
@@ -329,6 +357,8 @@ extends ArrayList<E>
 	@Override
 	public E set( final int index, final E element )
 	{
+		updateIndex();
+
 		final E oldElement = get( index );
 
 		if ( !element.equals( oldElement ) )
@@ -442,6 +472,19 @@ extends ArrayList<E>
 		}
 	}
 
+	/**
+	 * Adds elements that were added to the end of the list to the index.
+	 */
+	private void updateIndex()
+	{
+		final int size = size();
+		for ( int i = _indexedSize; i < size; i++ )
+		{
+			getOrAddEntry( get( i ) ).add( i );
+		}
+		_indexedSize = size;
+	}
+
 	/**
 	 * Returns the entry for the given element or {@code null} if not found.
 	 *
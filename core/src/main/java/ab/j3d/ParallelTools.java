@@ -0,0 +1,307 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.jetbrains.annotations.*;
+
+/**
+ * This class provides tools for processing work in parallel. All work is
+ * performed by a single shared pool of daemon threads, which is created when
+ * it is first needed.
+ *
+ * <p>Tasks that are submitted from a thread of the shared pool are run by that
+ * thread instead of being queued, so nested use of these tools can not cause
+ * the pool to wait for itself.
+ *
+ * @author Peter S. Heijnen
+ */
+public final class ParallelTools
+{
+	/**
+	 * Shared executor; created on demand.
+	 */
+	@Nullable
+	private static ExecutorService _executor = null;
+
+	/**
+	 * Utility class is not supposed to be instantiated.
+	 */
+	private ParallelTools()
+	{
+	}
+
+	/**
+	 * Returns the number of threads used by the shared executor.
+	 *
+	 * @return Number of threads.
+	 */
+	public static int getThreadCount()
+	{
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Returns the shared executor. The executor uses daemon threads, so it
+	 * does not need to be shut down.
+	 *
+	 * @return Shared executor.
+	 */
+	@NotNull
+	public static synchronized ExecutorService getExecutor()
+	{
+		ExecutorService result = _executor;
+		if ( result == null )
+		{
+			final AtomicInteger threadNumber = new AtomicInteger();
+			result = Executors.newFixedThreadPool( getThreadCount(), new ThreadFactory()
+			{
+				@Override
+				public Thread newThread( @NotNull final Runnable runnable )
+				{
+					final Thread thread = new WorkerThread( runnable, "ParallelTools-" + threadNumber.incrementAndGet() );
+					thread.setDaemon( true );
+					return thread;
+				}
+			} );
+			_executor = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns whether the calling thread belongs to the shared executor.
+	 *
+	 * @return {@code true} if called from a thread of the shared executor.
+	 */
+	public static boolean isWorkerThread()
+	{
+		return Thread.currentThread() instanceof WorkerThread;
+	}
+
+	/**
+	 * Submits a task to the shared executor. If called from a thread of the
+	 * shared executor, the task is run immediately by the calling thread.
+	 *
+	 * @param task Task to submit.
+	 *
+	 * @return Future result of the task.
+	 */
+	@NotNull
+	public static <T> Future<T> submit( @NotNull final Callable<T> task )
+	{
+		final Future<T> result;
+		if ( isWorkerThread() )
+		{
+			final FutureTask<T> futureTask = new FutureTask<T>( task );
+			futureTask.run();
+			result = futureTask;
+		}
+		else
+		{
+			result = getExecutor().submit( task );
+		}
+		return result;
+	}
+
+	/**
+	 * Divides a range of items into consecutive ranges and processes them
+	 * using the shared executor. The first range is processed by the calling
+	 * thread. If only one range is used, or if called from a thread of the
+	 * shared executor, all items are processed by the calling thread.
+	 *
+	 * <p>Exceptions thrown by the task are rethrown by this method. If the
+	 * calling thread is interrupted, its interrupted status is set and a
+	 * {@link RuntimeException} is thrown.
+	 *
+	 * @param count      Number of items.
+	 * @param rangeCount Number of ranges to divide the items into.
+	 * @param task       Processes a range of items.
+	 *
+	 * @return Result for each range, in order.
+	 */
+	@NotNull
+	public static <T> List<T> processRanges( final int count, final int rangeCount, @NotNull final RangeTask<T> task )
+	{
+		final List<T> result;
+
+		final int actualRangeCount = Math.min( count, rangeCount );
+		if ( ( actualRangeCount <= 1 ) || isWorkerThread() )
+		{
+			result = Collections.singletonList( task.process( 0, count ) );
+		}
+		else
+		{
+			final ExecutorService executor = getExecutor();
+			final List<Future<T>> futures = new ArrayList<Future<T>>( actualRangeCount - 1 );
+			try
+			{
+				for ( int i = 1; i < actualRangeCount; i++ )
+				{
+					final int start = (int)( (long)i * (long)count / (long)actualRangeCount );
+					final int end = (int)( (long)( i + 1 ) * (long)count / (long)actualRangeCount );
+					futures.add( executor.submit( new Callable<T>()
+					{
+						@Override
+						public T call()
+						{
+							return task.process( start, end );
+						}
+					} ) );
+				}
+
+				result = new ArrayList<T>( actualRangeCount );
+				result.add( task.process( 0, (int)( (long)count / (long)actualRangeCount ) ) );
+				for ( final Future<T> future : futures )
+				{
+					result.add( getResult( future ) );
+				}
+			}
+			finally
+			{
+				for ( final Future<T> future : futures )
+				{
+					future.cancel( true );
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Waits for the result of a task. Unchecked exceptions thrown by the task
+	 * are rethrown; checked exceptions are wrapped in a
+	 * {@link RuntimeException}. If the calling thread is interrupted, its
+	 * interrupted status is set and a {@link RuntimeException} is thrown.
+	 *
+	 * @param future Future result of the task.
+	 *
+	 * @return Result of the task.
+	 */
+	public static <T> T getResult( @NotNull final Future<T> future )
+	{
+		try
+		{
+			return future.get();
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( "Interrupted while waiting for task.", e );
+		}
+		catch ( final ExecutionException e )
+		{
+			final Throwable cause = e.getCause();
+			if ( cause instanceof RuntimeException )
+			{
+				throw (RuntimeException)cause;
+			}
+			if ( cause instanceof Error )
+			{
+				throw (Error)cause;
+			}
+			throw new RuntimeException( cause );
+		}
+	}
+
+	/**
+	 * Waits for the result of a task that may throw an {@link IOException}.
+	 * I/O and unchecked exceptions thrown by the task are rethrown; other
+	 * checked exceptions are wrapped in an {@link IOException}. If the
+	 * calling thread is interrupted, its interrupted status is set and an
+	 * {@link InterruptedIOException} is thrown.
+	 *
+	 * @param future Future result of the task.
+	 *
+	 * @return Result of the task.
+	 *
+	 * @throws IOException if the task failed or the thread was interrupted.
+	 */
+	public static <T> T getResultWithIO( @NotNull final Future<T> future )
+	throws IOException
+	{
+		try
+		{
+			return future.get();
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException( "Interrupted while waiting for task." );
+		}
+		catch ( final ExecutionException e )
+		{
+			final Throwable cause = e.getCause();
+			if ( cause instanceof IOException )
+			{
+				throw (IOException)cause;
+			}
+			if ( cause instanceof RuntimeException )
+			{
+				throw (RuntimeException)cause;
+			}
+			if ( cause instanceof Error )
+			{
+				throw (Error)cause;
+			}
+			throw new IOException( cause );
+		}
+	}
+
+	/**
+	 * Processes a range of items.
+	 *
+	 * @param <T> Result type.
+	 */
+	public interface RangeTask<T>
+	{
+		/**
+		 * Processes a range of items.
+		 *
+		 * @param start Index of first item (inclusive).
+		 * @param end   Index of last item (exclusive).
+		 *
+		 * @return Result for the range.
+		 */
+		T process( int start, int end );
+	}
+
+	/**
+	 * Thread of the shared executor.
+	 */
+	private static class WorkerThread
+		extends Thread
+	{
+		/**
+		 * Constructs a new thread.
+		 *
+		 * @param runnable Runs the tasks of the executor.
+		 * @param name     Name of the thread.
+		 */
+		private WorkerThread( @NotNull final Runnable runnable, @NotNull final String name )
+		{
+			super( runnable, name );
+		}
+	}
+}
@@ -19,6 +19,8 @@
 package ab.j3d.a3ds;
 
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
 import java.util.*;
 
 import ab.j3d.*;
@@ -99,7 +101,7 @@ public class Ab3dsFile
 	}
 
 	/**
-	 * Loads a 3DS model from a file.
+	 * Loads a 3DS model from a file. The file is memory-mapped.
 	 *
 	 * @param file File to be loaded.
 	 *
@@ -108,14 +110,15 @@ public class Ab3dsFile
 	public void load( @NotNull final File file )
 	throws IOException
 	{
-		final FileInputStream fis = new FileInputStream( file );
+		final RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" );
 		try
 		{
-			load( fis );
+			final FileChannel channel = randomAccessFile.getChannel();
+			load( channel.map( FileChannel.MapMode.READ_ONLY, 0L, channel.size() ) );
 		}
 		finally
 		{
-			fis.close();
+			randomAccessFile.close();
 		}
 	}
 
@@ -129,8 +132,33 @@ public class Ab3dsFile
 	public void load( @NotNull final InputStream in )
 	throws IOException
 	{
-		final Ab3dsInputStream is = new Ab3dsInputStream( in );
+		load( new Ab3dsInputStream( in ) );
+	}
+
+	/**
+	 * Loads a 3DS model from the given buffer, starting at its current
+	 * position.
+	 *
+	 * @param in Buffer to load from.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void load( @NotNull final ByteBuffer in )
+	throws IOException
+	{
+		load( new Ab3dsInputStream( in ) );
+	}
 
+	/**
+	 * Loads a 3DS model from the given stream.
+	 *
+	 * @param is Stream to load from.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void load( @NotNull final Ab3dsInputStream is )
+	throws IOException
+	{
 		if ( DEBUG )
 		{
 			System.out.println( "Reading 3DS file." );
@@ -20,11 +20,14 @@
  */
 package ab.j3d.a3ds;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
+import java.nio.*;
 
 /**
- * Inputstream specially to read 3ds types.
+ * Inputstream specially to read 3ds types. Data is read from a
+ * {@link ByteBuffer}, which may be a memory-mapped file (see
+ * {@link Ab3dsFile#load(File)}), so unknown chunks can be skipped without
+ * reading them.
  *
  * @author  Sjoerd Bouwman
  * @version $Revision$ $Date$
@@ -32,14 +35,20 @@ import java.io.InputStream;
 public final class Ab3dsInputStream
 {
 	/**
-	 * Current file pointer.
+	 * Stream to read from; {@code null} once it has been read into
+	 * {@link #_buffer}.
 	 */
-	private long _pointer;
+	private InputStream _is;
 
 	/**
-	 * Stream to read from.
+	 * Buffer to read from; {@code null} until {@link #_is} has been read.
 	 */
-	private final InputStream _is;
+	private ByteBuffer _buffer;
+
+	/**
+	 * Position in the buffer where the stream starts.
+	 */
+	private int _start;
 
 	/**
 	 * If true, end of file is received.
@@ -47,17 +56,76 @@ public final class Ab3dsInputStream
 	private boolean _eof;
 
 	/**
-	 * Constructor.
+	 * Constructor. All remaining bytes are read from the given stream when
+	 * the first value is read.
 	 *
 	 * @param   is      Inputstream to read from.
 	 */
 	public Ab3dsInputStream( final InputStream is )
 	{
 		_is      = is;
-		_pointer = 0;
+		_buffer  = null;
+		_start   = 0;
+		_eof     = false;
+	}
+
+	/**
+	 * Constructor. The buffer is read from its current position; its byte
+	 * order is set to little-endian.
+	 *
+	 * @param   buffer  Buffer to read from.
+	 */
+	public Ab3dsInputStream( final ByteBuffer buffer )
+	{
+		_is      = null;
+		_buffer  = buffer.order( ByteOrder.LITTLE_ENDIAN );
+		_start   = buffer.position();
 		_eof     = false;
 	}
 
+	/**
+	 * Returns the buffer to read from. If the stream was constructed from an
+	 * input stream, all remaining bytes are read from it first.
+	 *
+	 * @return  Buffer to read from.
+	 *
+	 * @throws  IOException when reading failed.
+	 */
+	private ByteBuffer getBuffer()
+		throws IOException
+	{
+		ByteBuffer result = _buffer;
+		if ( result == null )
+		{
+			result = readFully( _is ).order( ByteOrder.LITTLE_ENDIAN );
+			_buffer = result;
+			_start  = result.position();
+			_is     = null;
+		}
+		return result;
+	}
+
+	/**
+	 * Reads all remaining bytes from the given stream.
+	 *
+	 * @param   is      Stream to read from.
+	 *
+	 * @return  Buffer containing the bytes that were read.
+	 *
+	 * @throws  IOException when reading failed.
+	 */
+	private static ByteBuffer readFully( final InputStream is )
+		throws IOException
+	{
+		final ByteArrayOutputStream out = new ByteArrayOutputStream( Math.max( 8192, is.available() ) );
+		final byte[] buffer = new byte[ 65536 ];
+		for ( int read = is.read( buffer ); read >= 0; read = is.read( buffer ) )
+		{
+			out.write( buffer, 0, read );
+		}
+		return ByteBuffer.wrap( out.toByteArray() );
+	}
+
 	/**
 	 * Gets the current filepointer of the stream.
 	 *
@@ -65,7 +133,8 @@ public final class Ab3dsInputStream
 	 */
 	public long getPointer()
 	{
-		return _pointer;
+		final ByteBuffer buffer = _buffer;
+		return ( buffer != null ) ? (long)( buffer.position() - _start ) : 0L;
 	}
 
 	/**
@@ -103,16 +172,15 @@ public final class Ab3dsInputStream
 	{
 		final byte result;
 
-		final int r = _is.read();
-		if ( r < 0 )
+		final ByteBuffer buffer = getBuffer();
+		if ( !buffer.hasRemaining() )
 		{
 			_eof = true;
 			result = 0;
 		}
 		else
 		{
-			_pointer += 1;
-			result = (byte)r;
+			result = buffer.get();
 		}
 
 		return result;
@@ -131,6 +199,31 @@ public final class Ab3dsInputStream
 		return Float.intBitsToFloat( (int)readLong() );
 	}
 
+	/**
+	 * Read floats from stream.
+	 *
+	 * @param   target  Array to store floats in; filled completely.
+	 *
+	 * @throws  IOException when reading failed.
+	 */
+	public void readFloats( final float[] target )
+		throws IOException
+	{
+		final ByteBuffer buffer = getBuffer();
+		if ( buffer.remaining() < target.length * 4 )
+		{
+			for ( int i = 0; i < target.length; i++ )
+			{
+				target[ i ] = readFloat();
+			}
+		}
+		else
+		{
+			buffer.asFloatBuffer().get( target );
+			buffer.position( buffer.position() + target.length * 4 );
+		}
+	}
+
 	/**
 	 * Read int from stream.
 	 *
@@ -143,23 +236,50 @@ public final class Ab3dsInputStream
 	{
 		final int result;
 
-		final int high = _is.read();
-		final int low  = _is.read();
-
-		if ( ( high < 0 ) || ( low < 0 ) )
+		final ByteBuffer buffer = getBuffer();
+		if ( buffer.remaining() < 2 )
 		{
 			_eof = true;
+			buffer.position( buffer.limit() );
 			result = 0;
 		}
 		else
 		{
-			_pointer += 2;
-			result = high + ( low << 8 );
+			result = buffer.getShort() & 0xffff;
 		}
 
 		return result;
 	}
 
+	/**
+	 * Read ints from stream.
+	 *
+	 * @param   target  Array to store ints in; filled completely.
+	 *
+	 * @throws  IOException when reading failed.
+	 */
+	public void readInts( final int[] target )
+		throws IOException
+	{
+		final ByteBuffer buffer = getBuffer();
+		if ( buffer.remaining() < target.length * 2 )
+		{
+			for ( int i = 0; i < target.length; i++ )
+			{
+				target[ i ] = readInt();
+			}
+		}
+		else
+		{
+			final ShortBuffer shorts = buffer.asShortBuffer();
+			for ( int i = 0; i < target.length; i++ )
+			{
+				target[ i ] = shorts.get( i ) & 0xffff;
+			}
+			buffer.position( buffer.position() + target.length * 2 );
+		}
+	}
+
 	/**
 	 * Read long from stream.
 	 *
@@ -183,13 +303,13 @@ public final class Ab3dsInputStream
 	public String readString()
 		throws IOException
 	{
-		String str = "";
+		final StringBuilder str = new StringBuilder();
 
 		byte b;
 		while ( ( b = readByte() ) != 0 )
-			str += (char)b;
+			str.append( (char)b );
 
-		return str;
+		return str.toString();
 	}
 
 	/**
@@ -202,7 +322,7 @@ public final class Ab3dsInputStream
 	public void skip( final long count )
 		throws IOException
 	{
-		_is.skip( count );
-		_pointer += count;
+		final ByteBuffer buffer = getBuffer();
+		buffer.position( (int)Math.max( (long)_start, Math.min( (long)buffer.limit(), (long)buffer.position() + count ) ) );
 	}
 }
@@ -75,8 +75,7 @@ public final class FaceList
 				System.out.println( "  Material = " + name );
 
 			faces = new int[ is.readInt() ];
-			for ( int i = 0; i < faces.length; i++ )
-				faces[ i ] = is.readInt();
+			is.readInts( faces );
 		}
 
 		public void write( final Ab3dsOutputStream os )
@@ -205,16 +204,14 @@ public final class FaceList
 
 		final int faceCount = is.readInt();
 
+		final int[] values = new int[ faceCount * 4 ];
+		is.readInts( values );
+
 		_faces = new Triangle[ faceCount ];
 
 		for ( int i = 0 ; i < faceCount ; i++ )
 		{
-			final int v1   = is.readInt();
-			final int v2   = is.readInt();
-			final int v3   = is.readInt();
-			final int info = is.readInt();
-
-			_faces[ i ] = new Triangle( v1 , v2 , v3 , info );
+			_faces[ i ] = new Triangle( values[ i * 4 ] , values[ i * 4 + 1 ] , values[ i * 4 + 2 ] , values[ i * 4 + 3 ] );
 		}
 
 		readSubChunks( is );
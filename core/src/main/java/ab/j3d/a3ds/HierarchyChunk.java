@@ -179,9 +179,14 @@ public class HierarchyChunk
 	public final void readSubChunks( final Ab3dsInputStream is )
 		throws IOException
 	{
-		int id = is.readInt();
 		while ( !is.isEOF() && is.getPointer() < _chunkEnd )
 		{
+			final int id = is.readInt();
+			if ( is.isEOF() )
+			{
+				break;
+			}
+
 			if ( Ab3dsFile.DEBUG )
 			{
 				System.out.println( this + " found id : " + getHex(id) + " at " + is.getPointer() );
@@ -191,11 +196,6 @@ public class HierarchyChunk
 			sub.read( is );
 			final List<Chunk> chunks = getChunks();
 			chunks.add( sub );
-
-			if ( is.getPointer() < _chunkEnd )
-			{
-				id = is.readInt();
-			}
 		}
 	}
 
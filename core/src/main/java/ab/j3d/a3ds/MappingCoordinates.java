@@ -94,13 +94,16 @@ public final class MappingCoordinates
 
 		final int count = is.readInt();
 
+		final float[] coordinates = new float[ count * 2 ];
+		is.readFloats( coordinates );
+
 		_mapX = new float[ count ];
 		_mapY = new float[ count ];
 
 		for ( int i = 0 ; i < count ; i++ )
 		{
-			_mapX[ i ] = is.readFloat();
-			_mapY[ i ] = is.readFloat();
+			_mapX[ i ] = coordinates[ i * 2 ];
+			_mapY[ i ] = coordinates[ i * 2 + 1 ];
 		}
 
 		if ( Ab3dsFile.DEBUG )
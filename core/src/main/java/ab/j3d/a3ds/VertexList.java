@@ -101,14 +101,14 @@ public class VertexList
 
 		final int vertexCount = is.readInt();
 
+		final float[] coordinates = new float[ vertexCount * 3 ];
+		is.readFloats( coordinates );
+
 		_vertices = new Vector3D[ vertexCount ];
 
 		for ( int i = 0 ; i < vertexCount ; i++ )
 		{
-			final float x = is.readFloat();
-			final float y = is.readFloat();
-			final float z = is.readFloat();
-			_vertices[i] = new Vector3D( x , y , z );
+			_vertices[i] = new Vector3D( coordinates[ i * 3 ] , coordinates[ i * 3 + 1 ] , coordinates[ i * 3 + 2 ] );
 		}
 	}
 
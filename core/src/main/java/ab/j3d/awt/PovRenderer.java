@@ -116,7 +116,7 @@ public class PovRenderer
 	public static Process startPovRay( final File povFile, final File imageFile, final int width, final int height, final boolean background )
 	throws IOException
 	{
-		return startPovRay( povFile, imageFile, width, height, background, 0, width );
+		return startPovRay( povFile, imageFile, width, height, background, 0, width - 1 );
 	}
 
 	/**
@@ -128,8 +128,8 @@ public class PovRenderer
 	 * @param width       The width of the rendered image.
 	 * @param height      The height of the rendered image.
 	 * @param background  Whether or not to draw a background.
-	 * @param startColumn First column (x-coordinate) to render.
-	 * @param endColumn   Last column (x-coordinate) to render.
+	 * @param startColumn First column (x-coordinate) to render (0-based).
+	 * @param endColumn   Last column (x-coordinate) to render (inclusive).
 	 *
 	 * @return POV-Ray process.
 	 *
@@ -186,8 +186,8 @@ public class PovRenderer
 	 * @param width       The width of the rendered image.
 	 * @param height      The height of the rendered image.
 	 * @param background  Whether or not to draw a background.
-	 * @param startColumn First column (x-coordinate) to render.
-	 * @param endColumn   Last column (x-coordinate) to render.
+	 * @param startColumn First column (x-coordinate) to render (0-based).
+	 * @param endColumn   Last column (x-coordinate) to render (inclusive).
 	 *
 	 * @return POV-Ray command line.
 	 *
@@ -195,7 +195,7 @@ public class PovRenderer
 	 */
 	public static List<String> getPovrayCommand( final File povFile, final File imageFile, final int width, final int height, final boolean background, final int startColumn, final int endColumn )
 	{
-		final List<String> command = new ArrayList<String>( 16 );
+		final List<String> command = new ArrayList<String>( 18 );
 
 		final boolean isWindows = ( File.separatorChar == '\\' );
 		if ( isWindows )
@@ -213,29 +213,58 @@ public class PovRenderer
 			command.add( "povray" );
 		}
 
-		command.add( "+I" + povFile.getPath() );   /* Input file ('-' = stdin) */
-		command.add( "+O" + ( ( imageFile == null ) ? "-" : imageFile.getPath() ) ); /* Output file ('-' = stdout) */
-		command.add( "+FN" );                      /* File format: PNG */
-		command.add( "+W" + width );               /* Image width */
-		command.add( "+H" + height );              /* Image height */
-		command.add( "-D" );                       /* Don't show preview */
-		command.add( "+Q9" );                      /* Quality (default=9) */
-		command.add( "+A0.2" );                    /* Turn on anti-aliasing */
-		command.add( "+AM1" );
-		command.add( "+R3" );
-		command.add( "+GA" );                      /* Turn on all debug, fatal, render, statistic, and warning text to the console */
-		command.add( background ? "-UA" : "+UA" ); /* Turn on/off alpha channel output */
+		command.addAll( getPovrayArguments( povFile, imageFile, width, height, background, startColumn, endColumn, 0, height - 1 ) );
+		return command;
+	}
+
+	/**
+	 * Get POV-Ray command-line arguments to render a region of an image. The
+	 * executable is not included, so the arguments can be used with any
+	 * POV-Ray executable (e.g. see {@link TiledPovRenderer}).
+	 *
+	 * @param povFile     File containing POV-scene.
+	 * @param imageFile   Target image file ({@code null} use stdout on unix).
+	 * @param width       The width of the rendered image.
+	 * @param height      The height of the rendered image.
+	 * @param background  Whether or not to draw a background.
+	 * @param startColumn First column (x-coordinate) to render (0-based).
+	 * @param endColumn   Last column (x-coordinate) to render (inclusive).
+	 * @param startRow    First row (y-coordinate) to render (0-based).
+	 * @param endRow      Last row (y-coordinate) to render (inclusive).
+	 *
+	 * @return POV-Ray command-line arguments.
+	 */
+	public static List<String> getPovrayArguments( final File povFile, final File imageFile, final int width, final int height, final boolean background, final int startColumn, final int endColumn, final int startRow, final int endRow )
+	{
+		final List<String> result = new ArrayList<String>( 16 );
+		result.add( "+I" + povFile.getPath() );   /* Input file ('-' = stdin) */
+		result.add( "+O" + ( ( imageFile == null ) ? "-" : imageFile.getPath() ) ); /* Output file ('-' = stdout) */
+		result.add( "+FN" );                      /* File format: PNG */
+		result.add( "+W" + width );               /* Image width */
+		result.add( "+H" + height );              /* Image height */
+		result.add( "-D" );                       /* Don't show preview */
+		result.add( "+Q9" );                      /* Quality (default=9) */
+		result.add( "+A0.2" );                    /* Turn on anti-aliasing */
+		result.add( "+AM1" );
+		result.add( "+R3" );
+		result.add( "+GA" );                      /* Turn on all debug, fatal, render, statistic, and warning text to the console */
+		result.add( background ? "-UA" : "+UA" ); /* Turn on/off alpha channel output */
 
-		if ( startColumn != 0 )
+		/*
+		 * POV-Ray uses 1-based pixel coordinates for the render region.
+		 */
+		if ( ( startColumn != 0 ) || ( endColumn != width - 1 ) )
 		{
-			command.add( "+SC" + startColumn ); /* Turn on/off alpha channel output */
+			result.add( "+SC" + ( startColumn + 1 ) ); /* First column to render */
+			result.add( "+EC" + ( endColumn + 1 ) );   /* Last column to render */
 		}
-		if ( endColumn != height - 1 )
+		if ( ( startRow != 0 ) || ( endRow != height - 1 ) )
 		{
-			command.add( "+EC" + endColumn ); /* Turn on/off alpha channel output */
+			result.add( "+SR" + ( startRow + 1 ) );    /* First row to render */
+			result.add( "+ER" + ( endRow + 1 ) );      /* Last row to render */
 		}
 
-		return command;
+		return result;
 	}
 
 	/**
@@ -314,22 +343,17 @@ public class PovRenderer
 				{
 					if ( line.contains( " Rendering line " ) )
 					{
-						if ( _progressModel != null )
-						{
-							String temp = line.substring( line.indexOf( " Rendering line " ) + 16 );
-							final int end = temp.indexOf( (int)' ' );
-							temp = temp.substring( 0, end );
-
-							try
-							{
-								final int value = Integer.parseInt( temp );
-								_progressModel.setValue( value );
-							}
-							catch ( Exception e )
-							{
-								/* ignore */
-							}
+						String temp = line.substring( line.indexOf( " Rendering line " ) + 16 );
+						final int end = temp.indexOf( (int)' ' );
+						temp = ( end < 0 ) ? temp : temp.substring( 0, end );
 
+						try
+						{
+							setProgress( Integer.parseInt( temp ) );
+						}
+						catch ( Exception e )
+						{
+							/* ignore */
 						}
 					}
 					else if ( _log != null )
@@ -355,5 +379,19 @@ public class PovRenderer
 				}
 			}
 		}
+
+		/**
+		 * Called when POV-Ray reports the line it is rendering.
+		 *
+		 * @param line Line (1-based) that is being rendered.
+		 */
+		protected void setProgress( final int line )
+		{
+			final BoundedRangeModel progressModel = _progressModel;
+			if ( progressModel != null )
+			{
+				progressModel.setValue( line );
+			}
+		}
 	}
 }
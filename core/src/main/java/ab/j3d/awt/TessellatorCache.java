@@ -0,0 +1,440 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.awt;
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.List;
+
+import ab.j3d.*;
+import ab.j3d.geom.*;
+import ab.j3d.loader.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Provides {@link Tessellator}s for shapes, like {@link
+ * ShapeTools#createTessellator}, but stores all tessellation results in a
+ * {@link DiskCache}. Entries are keyed by a hash of the shape's path and the
+ * flatness, so tessellating the same shape again only requires reading back
+ * the cached results.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TessellatorCache
+{
+	/**
+	 * Identifies the binary layout of cache entries.
+	 */
+	private static final int MAGIC = 0x41425453; // 'ABTS'
+
+	/**
+	 * Version of the binary layout of cache entries.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Primitive type code for {@link TriangleList}.
+	 */
+	private static final int TRIANGLE_LIST = 0;
+
+	/**
+	 * Primitive type code for {@link TriangleFan}.
+	 */
+	private static final int TRIANGLE_FAN = 1;
+
+	/**
+	 * Primitive type code for {@link TriangleStrip}.
+	 */
+	private static final int TRIANGLE_STRIP = 2;
+
+	/**
+	 * Primitive type code for {@link QuadList}.
+	 */
+	private static final int QUAD_LIST = 3;
+
+	/**
+	 * Primitive type code for {@link QuadStrip}.
+	 */
+	private static final int QUAD_STRIP = 4;
+
+	/**
+	 * Cache to store tessellations in.
+	 */
+	@NotNull
+	private final DiskCache _cache;
+
+	/**
+	 * Constructs a new instance.
+	 *
+	 * @param cache Cache to store tessellations in.
+	 */
+	public TessellatorCache( @NotNull final DiskCache cache )
+	{
+		_cache = cache;
+	}
+
+	/**
+	 * Returns a tessellator for a shape. Any curves in the shape are flattened
+	 * using the given flatness. If the shape was tessellated before, the
+	 * results are read from the cache.
+	 *
+	 * @param shape    Shape to tessellate.
+	 * @param flatness Maximum distance between line segments and the curves
+	 *                 they approximate.
+	 *
+	 * @return {@link Tessellator} for the shape.
+	 *
+	 * @throws IOException if an I/O error occurs while accessing the cache.
+	 */
+	@NotNull
+	public Tessellator getTessellator( @NotNull final Shape shape, final double flatness )
+	throws IOException
+	{
+		final String key = getKey( shape, flatness );
+		final DiskCache cache = _cache;
+
+		Tessellator result = null;
+
+		final ByteBuffer cached = cache.get( key );
+		if ( cached != null )
+		{
+			result = read( cached );
+			if ( result == null )
+			{
+				cache.remove( key );
+			}
+		}
+
+		if ( result == null )
+		{
+			result = ShapeTools.createTessellator( shape, flatness );
+			cache.put( key, write( result ) );
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the cache key for the given shape.
+	 *
+	 * @param shape    Shape to tessellate.
+	 * @param flatness Flatness used to flatten curves.
+	 *
+	 * @return Cache key.
+	 */
+	@NotNull
+	protected static String getKey( @NotNull final Shape shape, final double flatness )
+	{
+		final DiskCache.Key result = new DiskCache.Key( "tessellator-" + VERSION );
+		result.update( flatness );
+
+		final double[] coords = new double[ 6 ];
+		final PathIterator pathIterator = shape.getPathIterator( null );
+		result.update( pathIterator.getWindingRule() );
+
+		for ( ; !pathIterator.isDone(); pathIterator.next() )
+		{
+			final int type = pathIterator.currentSegment( coords );
+			result.update( type );
+
+			final int coordinateCount;
+			switch ( type )
+			{
+				case PathIterator.SEG_MOVETO:
+				case PathIterator.SEG_LINETO:
+					coordinateCount = 2;
+					break;
+				case PathIterator.SEG_QUADTO:
+					coordinateCount = 4;
+					break;
+				case PathIterator.SEG_CUBICTO:
+					coordinateCount = 6;
+					break;
+				default:
+					coordinateCount = 0;
+			}
+
+			for ( int i = 0; i < coordinateCount; i++ )
+			{
+				result.update( coords[ i ] );
+			}
+		}
+
+		return result.getValue();
+	}
+
+	/**
+	 * Encodes all results of a tessellator.
+	 *
+	 * @param tessellator Tessellator to encode.
+	 *
+	 * @return Encoded tessellation.
+	 */
+	@NotNull
+	static ByteBuffer write( @NotNull final Tessellator tessellator )
+	{
+		/*
+		 * Primitives must be constructed before outlines, because constructing
+		 * outlines modifies the underlying mesh.
+		 */
+		final List<TessellationPrimitive> counterClockwisePrimitives = tessellator.getCounterClockwisePrimitives();
+		final List<TessellationPrimitive> clockwisePrimitives = tessellator.getClockwisePrimitives();
+		final List<int[]> counterClockwiseOutlines = tessellator.getCounterClockwiseOutlines();
+		final List<int[]> clockwiseOutlines = tessellator.getClockwiseOutlines();
+		final HashList<Vector2D> vertexList = tessellator.getVertexList();
+
+		int size = 12 + 16 * vertexList.size();
+		for ( final TessellationPrimitive primitive : counterClockwisePrimitives )
+		{
+			size += 8 + 4 * primitive.getVertices().length;
+		}
+		for ( final TessellationPrimitive primitive : clockwisePrimitives )
+		{
+			size += 8 + 4 * primitive.getVertices().length;
+		}
+		size += 8;
+		for ( final int[] outline : counterClockwiseOutlines )
+		{
+			size += 4 + 4 * outline.length;
+		}
+		size += 8;
+		for ( final int[] outline : clockwiseOutlines )
+		{
+			size += 4 + 4 * outline.length;
+		}
+
+		final ByteBuffer result = ByteBuffer.allocate( size );
+		result.putInt( MAGIC );
+		result.putInt( VERSION );
+		result.putInt( vertexList.size() );
+		for ( final Vector2D vertex : vertexList )
+		{
+			result.putDouble( vertex.getX() );
+			result.putDouble( vertex.getY() );
+		}
+
+		writeTessellation( result, counterClockwisePrimitives, counterClockwiseOutlines );
+		writeTessellation( result, clockwisePrimitives, clockwiseOutlines );
+
+		result.flip();
+		return result;
+	}
+
+	/**
+	 * Encodes tessellation results for one winding.
+	 *
+	 * @param buffer     Buffer to write to.
+	 * @param primitives Primitives.
+	 * @param outlines   Outlines.
+	 */
+	private static void writeTessellation( @NotNull final ByteBuffer buffer, @NotNull final List<TessellationPrimitive> primitives, @NotNull final List<int[]> outlines )
+	{
+		buffer.putInt( primitives.size() );
+		for ( final TessellationPrimitive primitive : primitives )
+		{
+			final int type;
+			if ( primitive instanceof TriangleFan )
+			{
+				type = TRIANGLE_FAN;
+			}
+			else if ( primitive instanceof TriangleStrip )
+			{
+				type = TRIANGLE_STRIP;
+			}
+			else if ( primitive instanceof QuadList )
+			{
+				type = QUAD_LIST;
+			}
+			else if ( primitive instanceof QuadStrip )
+			{
+				type = QUAD_STRIP;
+			}
+			else
+			{
+				type = TRIANGLE_LIST;
+			}
+
+			buffer.putInt( type );
+			writeInts( buffer, ( type == TRIANGLE_LIST ) && !( primitive instanceof TriangleList ) ? primitive.getTriangles() : primitive.getVertices() );
+		}
+
+		buffer.putInt( outlines.size() );
+		for ( final int[] outline : outlines )
+		{
+			writeInts( buffer, outline );
+		}
+	}
+
+	/**
+	 * Writes an integer array, prefixed by its length.
+	 *
+	 * @param buffer Buffer to write to.
+	 * @param values Values to write.
+	 */
+	private static void writeInts( @NotNull final ByteBuffer buffer, @NotNull final int[] values )
+	{
+		buffer.putInt( values.length );
+		buffer.asIntBuffer().put( values );
+		buffer.position( buffer.position() + 4 * values.length );
+	}
+
+	/**
+	 * Decodes a tessellator from a cache entry.
+	 *
+	 * @param buffer Cache entry contents.
+	 *
+	 * @return Tessellator; {@code null} if the cache entry is invalid.
+	 */
+	@Nullable
+	static Tessellator read( @NotNull final ByteBuffer buffer )
+	{
+		Tessellator result = null;
+
+		try
+		{
+			if ( ( buffer.getInt() == MAGIC ) && ( buffer.getInt() == VERSION ) )
+			{
+				final int vertexCount = buffer.getInt();
+				final List<Vector2D> vertices = new ArrayList<>( vertexCount );
+				for ( int i = 0; i < vertexCount; i++ )
+				{
+					vertices.add( new Vector2D( buffer.getDouble(), buffer.getDouble() ) );
+				}
+				final HashList<Vector2D> vertexList = new HashList<>( vertices );
+
+				final List<TessellationPrimitive> counterClockwisePrimitives = readPrimitives( buffer );
+				final List<int[]> counterClockwiseOutlines = readOutlines( buffer );
+				final List<TessellationPrimitive> clockwisePrimitives = readPrimitives( buffer );
+				final List<int[]> clockwiseOutlines = readOutlines( buffer );
+
+				result = new Tessellator( vertexList, getTriangles( counterClockwisePrimitives ), counterClockwisePrimitives, counterClockwiseOutlines, getTriangles( clockwisePrimitives ), clockwisePrimitives, clockwiseOutlines );
+			}
+		}
+		catch ( final BufferUnderflowException | IllegalArgumentException ignored )
+		{
+			/*
+			 * Corrupt or truncated entry.
+			 */
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns all triangles defined by the given primitives.
+	 *
+	 * @param primitives Primitives.
+	 *
+	 * @return Triangles.
+	 */
+	@NotNull
+	private static int[] getTriangles( @NotNull final List<TessellationPrimitive> primitives )
+	{
+		final IntArray result = new IntArray();
+		for ( final TessellationPrimitive primitive : primitives )
+		{
+			result.add( primitive.getTriangles() );
+		}
+		return result.toArray();
+	}
+
+	/**
+	 * Decodes a list of primitives.
+	 *
+	 * @param buffer Buffer to read from.
+	 *
+	 * @return Primitives.
+	 */
+	@NotNull
+	private static List<TessellationPrimitive> readPrimitives( @NotNull final ByteBuffer buffer )
+	{
+		final int count = buffer.getInt();
+		final List<TessellationPrimitive> result = new ArrayList<>( count );
+		for ( int i = 0; i < count; i++ )
+		{
+			final int type = buffer.getInt();
+			final int[] vertices = readInts( buffer );
+			switch ( type )
+			{
+				case TRIANGLE_LIST:
+					result.add( new TriangleList( vertices ) );
+					break;
+				case TRIANGLE_FAN:
+					result.add( new TriangleFan( vertices ) );
+					break;
+				case TRIANGLE_STRIP:
+					result.add( new TriangleStrip( vertices ) );
+					break;
+				case QUAD_LIST:
+					result.add( new QuadList( vertices ) );
+					break;
+				case QUAD_STRIP:
+					result.add( new QuadStrip( vertices ) );
+					break;
+				default:
+					throw new IllegalArgumentException( "Bad primitive type: " + type );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Decodes a list of outlines.
+	 *
+	 * @param buffer Buffer to read from.
+	 *
+	 * @return Outlines.
+	 */
+	@NotNull
+	private static List<int[]> readOutlines( @NotNull final ByteBuffer buffer )
+	{
+		final int count = buffer.getInt();
+		final List<int[]> result = new ArrayList<>( count );
+		for ( int i = 0; i < count; i++ )
+		{
+			result.add( readInts( buffer ) );
+		}
+		return result;
+	}
+
+	/**
+	 * Reads an integer array, prefixed by its length.
+	 *
+	 * @param buffer Buffer to read from.
+	 *
+	 * @return Values that were read.
+	 */
+	@NotNull
+	private static int[] readInts( @NotNull final ByteBuffer buffer )
+	{
+		final int length = buffer.getInt();
+		if ( ( length < 0 ) || ( length > buffer.remaining() / 4 ) )
+		{
+			throw new IllegalArgumentException( "Bad array length: " + length );
+		}
+
+		final int[] result = new int[ length ];
+		buffer.asIntBuffer().get( result );
+		buffer.position( buffer.position() + 4 * length );
+		return result;
+	}
+}
@@ -0,0 +1,429 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.awt;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import javax.imageio.*;
+import javax.swing.*;
+
+import ab.j3d.*;
+import ab.j3d.awt.view.*;
+import ab.j3d.pov.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Renders a {@link PovScene} using multiple concurrent POV-Ray processes. The
+ * image is split into tiles, which are put in a shared queue. Each worker
+ * thread takes tiles from the queue until it is empty, so faster workers
+ * automatically take over work from slower ones. The partial images are
+ * stitched into a single image.
+ *
+ * Note that each process parses the scene and, if enabled, computes radiosity
+ * separately. Use column bands (the default) rather than small tiles to keep
+ * this overhead small and to avoid visible seams in radiosity.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TiledPovRenderer
+{
+	/**
+	 * Command used to start the POV-Ray executable.
+	 */
+	@NotNull
+	private List<String> _executable = ( File.separatorChar == '\\' ) ? Arrays.asList( "pvengine", "/EXIT" ) : Collections.singletonList( "povray" );
+
+	/**
+	 * Maximum number of concurrent POV-Ray processes. Tiles are rendered
+	 * using the {@link ParallelTools#getExecutor shared executor}, which
+	 * may limit the number of processes further.
+	 */
+	private int _threadCount = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Width of each tile; {@code 0} to choose automatically.
+	 */
+	private int _tileWidth = 0;
+
+	/**
+	 * Height of each tile; {@code 0} to render full columns.
+	 */
+	private int _tileHeight = 0;
+
+	@NotNull
+	public List<String> getExecutable()
+	{
+		return Collections.unmodifiableList( _executable );
+	}
+
+	/**
+	 * Sets the command used to start the POV-Ray executable. Command-line
+	 * arguments for each tile are appended to this command.
+	 *
+	 * @param executable Command to start POV-Ray.
+	 */
+	public void setExecutable( @NotNull final List<String> executable )
+	{
+		if ( executable.isEmpty() )
+		{
+			throw new IllegalArgumentException( "empty command" );
+		}
+		_executable = new ArrayList<String>( executable );
+	}
+
+	public int getThreadCount()
+	{
+		return _threadCount;
+	}
+
+	public void setThreadCount( final int threadCount )
+	{
+		if ( threadCount < 1 )
+		{
+			throw new IllegalArgumentException( "threadCount: " + threadCount );
+		}
+		_threadCount = threadCount;
+	}
+
+	public int getTileWidth()
+	{
+		return _tileWidth;
+	}
+
+	public void setTileWidth( final int tileWidth )
+	{
+		_tileWidth = tileWidth;
+	}
+
+	public int getTileHeight()
+	{
+		return _tileHeight;
+	}
+
+	public void setTileHeight( final int tileHeight )
+	{
+		_tileHeight = tileHeight;
+	}
+
+	/**
+	 * Renders the scene to an image with the specified size and returns the
+	 * resulting image.
+	 *
+	 * @param povScene       Scene to render.
+	 * @param povFile        File or directory to write POV file to (optional).
+	 * @param width          The width of the rendered image.
+	 * @param height         The height of the rendered image.
+	 * @param progressModel  Progress model.
+	 * @param log            Log to write console output to.
+	 * @param background     Whether or not to draw a background.
+	 * @param textureLibrary Texture library used to resolve textures to files.
+	 *
+	 * @return Rendered image.
+	 *
+	 * @throws IOException if there was a problem reading/writing data.
+	 */
+	public BufferedImage render( @NotNull final PovScene povScene, @Nullable final File povFile, final int width, final int height, @Nullable final BoundedRangeModel progressModel, @Nullable final PrintWriter log, final boolean background, @Nullable final TextureLibrary textureLibrary )
+	throws IOException
+	{
+		final File actualPovFile = povScene.write( povFile, textureLibrary );
+		try
+		{
+			return render( actualPovFile, width, height, progressModel, log, background );
+		}
+		finally
+		{
+			if ( actualPovFile != povFile )
+			{
+				//noinspection ResultOfMethodCallIgnored
+				actualPovFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Renders the given POV file to an image with the specified size and
+	 * returns the resulting image.
+	 *
+	 * @param povFile       File containing POV-scene.
+	 * @param width         The width of the rendered image.
+	 * @param height        The height of the rendered image.
+	 * @param progressModel Progress model.
+	 * @param log           Log to write console output to.
+	 * @param background    Whether or not to draw a background.
+	 *
+	 * @return Rendered image.
+	 *
+	 * @throws IOException if there was a problem reading/writing data.
+	 */
+	public BufferedImage render( @NotNull final File povFile, final int width, final int height, @Nullable final BoundedRangeModel progressModel, @Nullable final PrintWriter log, final boolean background )
+	throws IOException
+	{
+		final List<Rectangle> tiles = createTiles( width, height );
+		final Queue<Integer> queue = new ConcurrentLinkedQueue<Integer>();
+		for ( int i = 0; i < tiles.size(); i++ )
+		{
+			queue.add( i );
+		}
+
+		final Progress progress = new Progress( tiles, progressModel );
+		final BufferedImage result = new BufferedImage( width, height, BufferedImage.TYPE_INT_ARGB );
+		final Set<Process> processes = Collections.synchronizedSet( new HashSet<Process>() );
+
+		final int threadCount = Math.min( _threadCount, tiles.size() );
+		final List<Future<?>> futures = new ArrayList<Future<?>>( threadCount );
+		try
+		{
+			for ( int i = 0; i < threadCount; i++ )
+			{
+				futures.add( ParallelTools.submit( new Callable<Object>()
+				{
+					@Override
+					public Object call()
+					throws Exception
+					{
+						for ( Integer tileIndex = queue.poll(); tileIndex != null; tileIndex = queue.poll() )
+						{
+							renderTile( povFile, width, height, background, tiles.get( tileIndex ), tileIndex, result, progress, log, processes );
+						}
+						return null;
+					}
+				} ) );
+			}
+
+			for ( final Future<?> future : futures )
+			{
+				ParallelTools.getResultWithIO( future );
+			}
+		}
+		finally
+		{
+			queue.clear();
+			synchronized ( processes )
+			{
+				for ( final Process process : processes )
+				{
+					process.destroy();
+				}
+			}
+			for ( final Future<?> future : futures )
+			{
+				future.cancel( true );
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Splits an image into tiles.
+	 *
+	 * @param width  Width of the image.
+	 * @param height Height of the image.
+	 *
+	 * @return Tiles that cover the image.
+	 */
+	@NotNull
+	protected List<Rectangle> createTiles( final int width, final int height )
+	{
+		int tileWidth = _tileWidth;
+		if ( tileWidth <= 0 )
+		{
+			/*
+			 * Create a few more bands than there are threads, so threads that
+			 * finish early can take over remaining work.
+			 */
+			tileWidth = Math.max( 16, ( width + 2 * _threadCount - 1 ) / ( 2 * _threadCount ) );
+		}
+
+		final int tileHeight = ( _tileHeight <= 0 ) ? height : _tileHeight;
+
+		final List<Rectangle> result = new ArrayList<Rectangle>();
+		for ( int y = 0; y < height; y += tileHeight )
+		{
+			for ( int x = 0; x < width; x += tileWidth )
+			{
+				result.add( new Rectangle( x, y, Math.min( tileWidth, width - x ), Math.min( tileHeight, height - y ) ) );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Renders a single tile and copies it into the resulting image.
+	 *
+	 * @param povFile    File containing POV-scene.
+	 * @param width      The width of the rendered image.
+	 * @param height     The height of the rendered image.
+	 * @param background Whether or not to draw a background.
+	 * @param tile       Tile to render.
+	 * @param tileIndex  Index of the tile.
+	 * @param result     Image to copy the rendered tile into.
+	 * @param progress   Combined progress of all tiles.
+	 * @param log        Log to write console output to.
+	 * @param processes  Currently running processes.
+	 *
+	 * @throws IOException if there was a problem reading/writing data.
+	 * @throws InterruptedException if the thread was interrupted.
+	 */
+	private void renderTile( @NotNull final File povFile, final int width, final int height, final boolean background, @NotNull final Rectangle tile, final int tileIndex, @NotNull final BufferedImage result, @NotNull final Progress progress, @Nullable final PrintWriter log, @NotNull final Set<Process> processes )
+	throws IOException, InterruptedException
+	{
+		final File tileFile = File.createTempFile( "tile-", ".png", povFile.getAbsoluteFile().getParentFile() );
+		try
+		{
+			final List<String> command = new ArrayList<String>( _executable );
+			command.addAll( PovRenderer.getPovrayArguments( povFile, tileFile, width, height, background, tile.x, tile.x + tile.width - 1, tile.y, tile.y + tile.height - 1 ) );
+
+			final Process process = PovRenderer.startPovRay( command );
+			processes.add( process );
+			try
+			{
+				new PovRenderer.PovRayProcessMonitor( process, height, null, log )
+				{
+					@Override
+					protected void setProgress( final int line )
+					{
+						progress.setProgress( tileIndex, line - 1 - tile.y );
+					}
+				}.run();
+
+				final int exitValue = process.waitFor();
+				if ( exitValue != 0 )
+				{
+					throw new IOException( "POV-Ray exited with code " + exitValue + " while rendering " + tile );
+				}
+			}
+			finally
+			{
+				processes.remove( process );
+				process.destroy();
+			}
+
+			final BufferedImage tileImage = ImageIO.read( tileFile );
+			if ( tileImage == null )
+			{
+				throw new IOException( "POV-Ray did not produce an image for " + tile );
+			}
+
+			/*
+			 * Depending on the POV-Ray version, the partial image contains
+			 * either the full image (with only the tile rendered) or just the
+			 * rendered region.
+			 */
+			final int sourceX = ( tileImage.getWidth() == width ) ? tile.x : 0;
+			final int sourceY = ( tileImage.getHeight() == height ) ? tile.y : 0;
+
+			synchronized ( result )
+			{
+				final Graphics2D g2 = result.createGraphics();
+				g2.setComposite( AlphaComposite.Src );
+				g2.drawImage( tileImage, tile.x, tile.y, tile.x + tile.width, tile.y + tile.height, sourceX, sourceY, sourceX + tile.width, sourceY + tile.height, null );
+				g2.dispose();
+			}
+
+			progress.setProgress( tileIndex, tile.height );
+		}
+		finally
+		{
+			//noinspection ResultOfMethodCallIgnored
+			tileFile.delete();
+		}
+	}
+
+	/**
+	 * Combines progress of all tiles into a single progress model. Progress is
+	 * measured in pixels.
+	 */
+	private static class Progress
+	{
+		/**
+		 * Tiles being rendered.
+		 */
+		private final List<Rectangle> _tiles;
+
+		/**
+		 * Number of rows rendered per tile.
+		 */
+		private final AtomicIntegerArray _rows;
+
+		/**
+		 * Progress model to update.
+		 */
+		@Nullable
+		private final BoundedRangeModel _progressModel;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param tiles         Tiles being rendered.
+		 * @param progressModel Progress model to update.
+		 */
+		Progress( @NotNull final List<Rectangle> tiles, @Nullable final BoundedRangeModel progressModel )
+		{
+			_tiles = tiles;
+			_rows = new AtomicIntegerArray( tiles.size() );
+			_progressModel = progressModel;
+
+			if ( progressModel != null )
+			{
+				int total = 0;
+				for ( final Rectangle tile : tiles )
+				{
+					total += tile.width * tile.height;
+				}
+
+				progressModel.setMinimum( 0 );
+				progressModel.setValue( 0 );
+				progressModel.setMaximum( total );
+			}
+		}
+
+		/**
+		 * Sets the number of rows rendered for a tile.
+		 *
+		 * @param tileIndex Index of the tile.
+		 * @param rows      Number of rows rendered.
+		 */
+		void setProgress( final int tileIndex, final int rows )
+		{
+			final BoundedRangeModel progressModel = _progressModel;
+			if ( progressModel != null )
+			{
+				final List<Rectangle> tiles = _tiles;
+				_rows.set( tileIndex, Math.max( 0, Math.min( rows, tiles.get( tileIndex ).height ) ) );
+
+				int value = 0;
+				for ( int i = 0; i < tiles.size(); i++ )
+				{
+					value += _rows.get( i ) * tiles.get( i ).width;
+				}
+
+				synchronized ( progressModel )
+				{
+					progressModel.setValue( Math.max( value, progressModel.getValue() ) );
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,408 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.awt.view;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+
+import ab.j3d.*;
+import ab.j3d.appearance.*;
+import ab.j3d.loader.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Texture library that stores decoded (and optionally rescaled) texture images
+ * in a {@link DiskCache}. Cached images are keyed by a hash of the encoded
+ * source image and the processing parameters, so subsequent loads skip image
+ * decoding and scaling entirely.
+ *
+ * @author Peter S. Heijnen
+ */
+public class CachingTextureLibrary
+implements TextureLibrary
+{
+	/**
+	 * Identifies the binary layout of cache entries.
+	 */
+	private static final int MAGIC = 0x41425458; // 'ABTX'
+
+	/**
+	 * Version of the binary layout of cache entries.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Texture library that provides the source images.
+	 */
+	@NotNull
+	private final TextureLibrary _textureLibrary;
+
+	/**
+	 * Cache to store processed images in.
+	 */
+	@NotNull
+	private final DiskCache _cache;
+
+	/**
+	 * Maximum width/height of the top-level image.
+	 */
+	private int _maximumTextureSize = Integer.MAX_VALUE;
+
+	/**
+	 * Whether image sizes are rounded to the nearest power of two.
+	 */
+	private boolean _powerOfTwo = false;
+
+	/**
+	 * Constructs a new instance.
+	 *
+	 * @param textureLibrary Texture library that provides the source images.
+	 * @param cache          Cache to store processed images in.
+	 */
+	public CachingTextureLibrary( @NotNull final TextureLibrary textureLibrary, @NotNull final DiskCache cache )
+	{
+		_textureLibrary = textureLibrary;
+		_cache = cache;
+	}
+
+	public int getMaximumTextureSize()
+	{
+		return _maximumTextureSize;
+	}
+
+	public void setMaximumTextureSize( final int maximumTextureSize )
+	{
+		_maximumTextureSize = maximumTextureSize;
+	}
+
+	public boolean isPowerOfTwo()
+	{
+		return _powerOfTwo;
+	}
+
+	public void setPowerOfTwo( final boolean powerOfTwo )
+	{
+		_powerOfTwo = powerOfTwo;
+	}
+
+	@Nullable
+	@Override
+	public BufferedImage loadImage( @NotNull final TextureMap textureMap )
+	throws IOException
+	{
+		final BufferedImage[] levels = loadImages( textureMap, false );
+		return ( levels == null ) ? null : levels[ 0 ];
+	}
+
+	/**
+	 * Loads the mip chain for the given texture map. The first element is the
+	 * (rescaled) texture image; each next level is half the size of the
+	 * previous one, down to 1x1.
+	 *
+	 * @param textureMap Texture map to load.
+	 *
+	 * @return Mip chain; {@code null} if the image is not available.
+	 *
+	 * @throws IOException if an I/O error occurs while reading the image.
+	 */
+	@Nullable
+	public BufferedImage[] loadMipMaps( @NotNull final TextureMap textureMap )
+	throws IOException
+	{
+		return loadImages( textureMap, true );
+	}
+
+	/**
+	 * Loads the image for the given texture map from the cache, or from the
+	 * underlying texture library if not cached yet.
+	 *
+	 * @param textureMap Texture map to load.
+	 * @param mipMaps    Whether to include a full mip chain.
+	 *
+	 * @return Image levels; {@code null} if the image is not available.
+	 *
+	 * @throws IOException if an I/O error occurs while reading the image.
+	 */
+	@Nullable
+	protected BufferedImage[] loadImages( @NotNull final TextureMap textureMap, final boolean mipMaps )
+	throws IOException
+	{
+		final String key = getKey( textureMap, mipMaps );
+
+		BufferedImage[] result = null;
+
+		final DiskCache cache = _cache;
+		final ByteBuffer cached = cache.get( key );
+		if ( cached != null )
+		{
+			result = readImages( cached );
+			if ( result == null )
+			{
+				cache.remove( key );
+			}
+		}
+
+		if ( result == null )
+		{
+			final BufferedImage image = _textureLibrary.loadImage( textureMap );
+			if ( image != null )
+			{
+				result = createImages( image, mipMaps );
+				cache.put( key, writeImages( result ) );
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the cache key for the given texture map. The key is based on the
+	 * contents of the encoded image, if available, and the current processing
+	 * parameters.
+	 *
+	 * @param textureMap Texture map.
+	 * @param mipMaps    Whether to include a full mip chain.
+	 *
+	 * @return Cache key.
+	 *
+	 * @throws IOException if an I/O error occurs while reading the image.
+	 */
+	@NotNull
+	protected String getKey( @NotNull final TextureMap textureMap, final boolean mipMaps )
+	throws IOException
+	{
+		final DiskCache.Key result = new DiskCache.Key( "texture-" + VERSION );
+		result.update( _maximumTextureSize );
+		result.update( _powerOfTwo ? 1 : 0 );
+		result.update( mipMaps ? 1 : 0 );
+
+		final InputStream in = _textureLibrary.openImageStream( textureMap );
+		if ( in != null )
+		{
+			try
+			{
+				result.update( new BufferedInputStream( in ) );
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		else
+		{
+			result.update( textureMap.getName() );
+		}
+
+		return result.getValue();
+	}
+
+	/**
+	 * Creates the image levels to be cached for the given source image.
+	 *
+	 * @param image   Source image.
+	 * @param mipMaps Whether to include a full mip chain.
+	 *
+	 * @return Image levels.
+	 */
+	@NotNull
+	protected BufferedImage[] createImages( @NotNull final BufferedImage image, final boolean mipMaps )
+	{
+		final boolean alpha = image.getColorModel().hasAlpha();
+
+		int width = Math.min( _maximumTextureSize, image.getWidth() );
+		int height = Math.min( _maximumTextureSize, image.getHeight() );
+		if ( _powerOfTwo )
+		{
+			width = MathTools.nearestPowerOfTwo( width );
+			height = MathTools.nearestPowerOfTwo( height );
+		}
+
+		final BufferedImage top = new BufferedImage( width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB );
+		final Graphics2D g2 = top.createGraphics();
+		g2.setRenderingHint( RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR );
+		g2.drawImage( image, 0, 0, width, height, null );
+		g2.dispose();
+
+		final int levelCount = mipMaps ? 1 + ( 31 - Integer.numberOfLeadingZeros( Math.max( width, height ) ) ) : 1;
+		final BufferedImage[] result = new BufferedImage[ levelCount ];
+		result[ 0 ] = top;
+		for ( int level = 1; level < levelCount; level++ )
+		{
+			result[ level ] = downsample( result[ level - 1 ] );
+		}
+		return result;
+	}
+
+	/**
+	 * Creates the next mip level for the given image by averaging (up to) 2x2
+	 * blocks of pixels.
+	 *
+	 * @param image Image to downsample.
+	 *
+	 * @return Image with half the size.
+	 */
+	@NotNull
+	private static BufferedImage downsample( @NotNull final BufferedImage image )
+	{
+		final int sourceWidth = image.getWidth();
+		final int sourceHeight = image.getHeight();
+		final int[] source = ( (DataBufferInt)image.getRaster().getDataBuffer() ).getData();
+
+		final int width = Math.max( 1, sourceWidth / 2 );
+		final int height = Math.max( 1, sourceHeight / 2 );
+		final BufferedImage result = new BufferedImage( width, height, image.getType() );
+		final int[] target = ( (DataBufferInt)result.getRaster().getDataBuffer() ).getData();
+
+		for ( int y = 0; y < height; y++ )
+		{
+			final int y0 = Math.min( y * 2, sourceHeight - 1 );
+			final int y1 = Math.min( y0 + 1, sourceHeight - 1 );
+
+			for ( int x = 0; x < width; x++ )
+			{
+				final int x0 = Math.min( x * 2, sourceWidth - 1 );
+				final int x1 = Math.min( x0 + 1, sourceWidth - 1 );
+
+				final int p00 = source[ y0 * sourceWidth + x0 ];
+				final int p01 = source[ y0 * sourceWidth + x1 ];
+				final int p10 = source[ y1 * sourceWidth + x0 ];
+				final int p11 = source[ y1 * sourceWidth + x1 ];
+
+				int pixel = 0;
+				for ( int shift = 0; shift < 32; shift += 8 )
+				{
+					final int sum = ( ( p00 >>> shift ) & 0xff ) + ( ( p01 >>> shift ) & 0xff ) + ( ( p10 >>> shift ) & 0xff ) + ( ( p11 >>> shift ) & 0xff );
+					pixel |= ( ( sum + 2 ) >> 2 ) << shift;
+				}
+				target[ y * width + x ] = pixel;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Encodes image levels to the binary layout used for cache entries.
+	 *
+	 * @param images Image levels.
+	 *
+	 * @return Encoded images.
+	 */
+	@NotNull
+	private static ByteBuffer writeImages( @NotNull final BufferedImage[] images )
+	{
+		int size = 16;
+		for ( final BufferedImage image : images )
+		{
+			size += 8 + 4 * image.getWidth() * image.getHeight();
+		}
+
+		final ByteBuffer result = ByteBuffer.allocate( size );
+		result.putInt( MAGIC );
+		result.putInt( VERSION );
+		result.putInt( images[ 0 ].getType() );
+		result.putInt( images.length );
+
+		for ( final BufferedImage image : images )
+		{
+			result.putInt( image.getWidth() );
+			result.putInt( image.getHeight() );
+			final int[] pixels = ( (DataBufferInt)image.getRaster().getDataBuffer() ).getData();
+			result.asIntBuffer().put( pixels );
+			result.position( result.position() + 4 * pixels.length );
+		}
+
+		result.flip();
+		return result;
+	}
+
+	/**
+	 * Decodes image levels from a cache entry.
+	 *
+	 * @param buffer Cache entry contents.
+	 *
+	 * @return Image levels; {@code null} if the cache entry is invalid.
+	 */
+	@Nullable
+	private static BufferedImage[] readImages( @NotNull final ByteBuffer buffer )
+	{
+		BufferedImage[] result = null;
+
+		if ( ( buffer.remaining() >= 16 ) && ( buffer.getInt() == MAGIC ) && ( buffer.getInt() == VERSION ) )
+		{
+			final int type = buffer.getInt();
+			final int levelCount = buffer.getInt();
+
+			if ( ( ( type == BufferedImage.TYPE_INT_ARGB ) || ( type == BufferedImage.TYPE_INT_RGB ) ) && ( levelCount > 0 ) && ( levelCount <= 32 ) )
+			{
+				result = new BufferedImage[ levelCount ];
+
+				for ( int level = 0; level < levelCount; level++ )
+				{
+					if ( buffer.remaining() < 8 )
+					{
+						result = null;
+						break;
+					}
+
+					final int width = buffer.getInt();
+					final int height = buffer.getInt();
+					if ( ( width <= 0 ) || ( height <= 0 ) || ( (long)buffer.remaining() < 4L * (long)width * (long)height ) )
+					{
+						result = null;
+						break;
+					}
+
+					final BufferedImage image = new BufferedImage( width, height, type );
+					final int[] pixels = ( (DataBufferInt)image.getRaster().getDataBuffer() ).getData();
+					buffer.asIntBuffer().get( pixels );
+					buffer.position( buffer.position() + 4 * pixels.length );
+					result[ level ] = image;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	@Nullable
+	@Override
+	public InputStream openImageStream( @NotNull final TextureMap textureMap )
+	throws IOException
+	{
+		return _textureLibrary.openImageStream( textureMap );
+	}
+
+	@Nullable
+	@Override
+	public File getFile( @NotNull final TextureMap textureMap )
+	{
+		return _textureLibrary.getFile( textureMap );
+	}
+
+	@Nullable
+	@Override
+	public URL getUrl( @NotNull final TextureMap textureMap )
+	{
+		return _textureLibrary.getUrl( textureMap );
+	}
+}
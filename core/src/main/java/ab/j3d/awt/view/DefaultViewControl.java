@@ -117,7 +117,7 @@ public class DefaultViewControl
 		final Scene scene = view.getScene();
 		final Ray3D pointerRay = event.getPointerRay();
 
-		final List<ContentNode> contentNodes = scene.getContentNodes();
+		final List<ContentNode> contentNodes = new ArrayList<ContentNode>( scene.getContentNodes() );
 		final Map<ContentNodeControl,Double> controlDepths = new HashMap<ContentNodeControl, Double>();
 
 		for ( Iterator<ContentNode> it = contentNodes.iterator(); it.hasNext(); )
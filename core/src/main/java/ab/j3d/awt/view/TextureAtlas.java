@@ -0,0 +1,948 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.awt.view;
+
+import java.awt.image.*;
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import javax.imageio.*;
+
+import ab.j3d.appearance.*;
+import ab.j3d.model.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Combines small texture images into larger atlas pages, so objects using
+ * different textures can be rendered without switching textures. Texture
+ * coordinates of face groups that use an atlased texture are remapped to the
+ * texture's region in the atlas using {@link #remap(Object3D)}.
+ *
+ * Only face groups with texture coordinates in the range [0,1] can be
+ * remapped, since repeating textures can not be represented by a region of
+ * an atlas page. Each region is surrounded by padding that repeats the edge
+ * pixels of the texture, which prevents neighboring textures from bleeding
+ * into each other with bilinear filtering and the first few mipmap levels.
+ *
+ * This class is also a {@link TextureLibrary}, which provides the images of
+ * the atlas pages and delegates to the source library for other textures.
+ * This allows the renderer and exporters to use remapped objects directly.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TextureAtlas
+implements TextureLibrary
+{
+	/**
+	 * Maximum difference from the range [0,1] for texture coordinates that
+	 * can be remapped.
+	 */
+	private static final float UV_EPSILON = 0.001f;
+
+	/**
+	 * Texture library that provides the source images.
+	 */
+	@NotNull
+	private final TextureLibrary _textureLibrary;
+
+	/**
+	 * Prefix for the names of atlas page textures.
+	 */
+	@NotNull
+	private final String _name;
+
+	/**
+	 * Width and maximum height of atlas pages, in pixels.
+	 */
+	private int _pageSize = 2048;
+
+	/**
+	 * Maximum width/height of textures that are added to the atlas.
+	 */
+	private int _maximumTextureSize = 256;
+
+	/**
+	 * Number of padding pixels around each texture.
+	 */
+	private int _padding = 4;
+
+	/**
+	 * Images of textures that were added to the atlas.
+	 */
+	private final Map<TextureMap, BufferedImage> _images = new LinkedHashMap<TextureMap, BufferedImage>();
+
+	/**
+	 * Atlas pages, available after {@link #build()}.
+	 */
+	private final List<Page> _pages = new ArrayList<Page>();
+
+	/**
+	 * Atlas pages by texture map.
+	 */
+	private final Map<TextureMap, Page> _pagesByTextureMap = new HashMap<TextureMap, Page>();
+
+	/**
+	 * Atlas region of each texture, available after {@link #build()}.
+	 */
+	private final Map<TextureMap, Region> _regions = new HashMap<TextureMap, Region>();
+
+	/**
+	 * Remapped appearances, by original appearance and atlas page.
+	 */
+	private final Map<Appearance, Map<Page, Appearance>> _remappedAppearances = new IdentityHashMap<Appearance, Map<Page, Appearance>>();
+
+	/**
+	 * Constructs a new instance.
+	 *
+	 * @param textureLibrary Texture library that provides the source images.
+	 * @param name           Prefix for the names of atlas page textures.
+	 */
+	public TextureAtlas( @NotNull final TextureLibrary textureLibrary, @NotNull final String name )
+	{
+		_textureLibrary = textureLibrary;
+		_name = name;
+	}
+
+	/**
+	 * Returns the width and maximum height of atlas pages.
+	 *
+	 * @return Page size, in pixels.
+	 */
+	public int getPageSize()
+	{
+		return _pageSize;
+	}
+
+	/**
+	 * Sets the width and maximum height of atlas pages. The page size must
+	 * be more than twice the padding. Takes effect for textures that are
+	 * added after this call and for the next {@link #build()}.
+	 *
+	 * @param pageSize Page size, in pixels.
+	 *
+	 * @throws IllegalArgumentException if the page size is not larger than
+	 * twice the padding.
+	 */
+	public void setPageSize( final int pageSize )
+	{
+		if ( pageSize <= 2 * _padding )
+		{
+			throw new IllegalArgumentException( "pageSize: " + pageSize );
+		}
+		_pageSize = pageSize;
+	}
+
+	/**
+	 * Returns the maximum width/height of textures that are added to the
+	 * atlas. Larger textures are rejected by {@link #add}.
+	 *
+	 * @return Maximum texture size, in pixels.
+	 */
+	public int getMaximumTextureSize()
+	{
+		return _maximumTextureSize;
+	}
+
+	/**
+	 * Sets the maximum width/height of textures that are added to the atlas.
+	 * Larger textures are rejected by {@link #add}.
+	 *
+	 * @param maximumTextureSize Maximum texture size, in pixels.
+	 *
+	 * @throws IllegalArgumentException if the size is not positive.
+	 */
+	public void setMaximumTextureSize( final int maximumTextureSize )
+	{
+		if ( maximumTextureSize <= 0 )
+		{
+			throw new IllegalArgumentException( "maximumTextureSize: " + maximumTextureSize );
+		}
+		_maximumTextureSize = maximumTextureSize;
+	}
+
+	/**
+	 * Returns the number of padding pixels around each texture. Padding is
+	 * filled by repeating the edge pixels of the texture, so filtering near
+	 * the edge does not pick up neighboring textures.
+	 *
+	 * @return Padding, in pixels.
+	 */
+	public int getPadding()
+	{
+		return _padding;
+	}
+
+	/**
+	 * Sets the number of padding pixels around each texture. Twice the
+	 * padding must be less than the page size.
+	 *
+	 * @param padding Padding, in pixels.
+	 *
+	 * @throws IllegalArgumentException if the padding is negative or too
+	 * large for the page size.
+	 */
+	public void setPadding( final int padding )
+	{
+		if ( ( padding < 0 ) || ( 2 * padding >= _pageSize ) )
+		{
+			throw new IllegalArgumentException( "padding: " + padding );
+		}
+		_padding = padding;
+	}
+
+	/**
+	 * Adds a texture to the atlas. The texture is included in the atlas pages
+	 * the next time {@link #build()} is called.
+	 *
+	 * @param textureMap Texture map to add.
+	 *
+	 * @return {@code true} if the texture was added;
+	 *         {@code false} if the texture is too large or has no image.
+	 *
+	 * @throws IOException if an I/O error occurs while reading the image.
+	 */
+	public boolean add( @NotNull final TextureMap textureMap )
+	throws IOException
+	{
+		boolean result = _images.containsKey( textureMap );
+		if ( !result )
+		{
+			final BufferedImage image = _textureLibrary.loadImage( textureMap );
+			final int maximumSize = Math.min( _maximumTextureSize, _pageSize - 2 * _padding );
+			if ( ( image != null ) && ( image.getWidth() <= maximumSize ) && ( image.getHeight() <= maximumSize ) )
+			{
+				_images.put( textureMap, image );
+				result = true;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Adds the color maps of all face groups of the given object that can be
+	 * remapped to the atlas.
+	 *
+	 * @param object Object to add textures from.
+	 *
+	 * @return Number of textures that were added.
+	 *
+	 * @throws IOException if an I/O error occurs while reading an image.
+	 */
+	public int addTextures( @NotNull final Object3D object )
+	throws IOException
+	{
+		int result = 0;
+		for ( final FaceGroup faceGroup : object.getFaceGroups() )
+		{
+			final Appearance appearance = faceGroup.getAppearance();
+			if ( isRemappable( faceGroup ) && !_images.containsKey( appearance.getColorMap() ) && add( appearance.getColorMap() ) )
+			{
+				result++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Packs all added textures into atlas pages. Any previously built pages
+	 * are discarded.
+	 */
+	public void build()
+	{
+		_pages.clear();
+		_pagesByTextureMap.clear();
+		_regions.clear();
+		_remappedAppearances.clear();
+
+		final int pageSize = _pageSize;
+		final int padding = _padding;
+
+		/*
+		 * Pack tallest textures first, which reduces wasted space below the
+		 * skyline.
+		 */
+		final List<Map.Entry<TextureMap, BufferedImage>> entries = new ArrayList<Map.Entry<TextureMap, BufferedImage>>( _images.entrySet() );
+		Collections.sort( entries, new Comparator<Map.Entry<TextureMap, BufferedImage>>()
+		{
+			@Override
+			public int compare( final Map.Entry<TextureMap, BufferedImage> entry1, final Map.Entry<TextureMap, BufferedImage> entry2 )
+			{
+				final BufferedImage image1 = entry1.getValue();
+				final BufferedImage image2 = entry2.getValue();
+				int result = image2.getHeight() - image1.getHeight();
+				if ( result == 0 )
+				{
+					result = image2.getWidth() - image1.getWidth();
+				}
+				return result;
+			}
+		} );
+
+		final List<SkylinePacker> packers = new ArrayList<SkylinePacker>();
+		final List<List<Region>> pageRegions = new ArrayList<List<Region>>();
+
+		for ( final Map.Entry<TextureMap, BufferedImage> entry : entries )
+		{
+			final BufferedImage image = entry.getValue();
+			final int paddedWidth = image.getWidth() + 2 * padding;
+			final int paddedHeight = image.getHeight() + 2 * padding;
+
+			int pageIndex = 0;
+			int[] position = null;
+			while ( position == null )
+			{
+				if ( pageIndex == packers.size() )
+				{
+					packers.add( new SkylinePacker( pageSize, pageSize ) );
+					pageRegions.add( new ArrayList<Region>() );
+				}
+
+				position = packers.get( pageIndex ).pack( paddedWidth, paddedHeight );
+				if ( position == null )
+				{
+					pageIndex++;
+				}
+			}
+
+			final Region region = new Region( entry.getKey(), image, position[ 0 ] + padding, position[ 1 ] + padding );
+			pageRegions.get( pageIndex ).add( region );
+			_regions.put( entry.getKey(), region );
+		}
+
+		for ( int pageIndex = 0; pageIndex < packers.size(); pageIndex++ )
+		{
+			/*
+			 * Use the smallest power of two that fits the used part of the
+			 * page, so mipmaps can be generated for it.
+			 */
+			int height = 1;
+			while ( height < packers.get( pageIndex ).getUsedHeight() )
+			{
+				height *= 2;
+			}
+
+			final Page page = new Page( new BasicTextureMap( _name + '-' + pageIndex ), new BufferedImage( pageSize, height, BufferedImage.TYPE_INT_ARGB ) );
+			for ( final Region region : pageRegions.get( pageIndex ) )
+			{
+				region._page = page;
+				drawPadded( page._image, region._image, region._x, region._y, padding );
+				region._image = null;
+			}
+
+			_pages.add( page );
+			_pagesByTextureMap.put( page._textureMap, page );
+		}
+	}
+
+	/**
+	 * Draws an image with padding that repeats the edge pixels of the image.
+	 *
+	 * @param target  Image to draw on.
+	 * @param image   Image to draw.
+	 * @param x       X coordinate of the image in the target.
+	 * @param y       Y coordinate of the image in the target.
+	 * @param padding Number of padding pixels around the image.
+	 */
+	private static void drawPadded( @NotNull final BufferedImage target, @NotNull final BufferedImage image, final int x, final int y, final int padding )
+	{
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final int[] row = new int[ width + 2 * padding ];
+
+		for ( int targetY = -padding; targetY < height + padding; targetY++ )
+		{
+			final int sourceY = Math.max( 0, Math.min( height - 1, targetY ) );
+			image.getRGB( 0, sourceY, width, 1, row, padding, width );
+			Arrays.fill( row, 0, padding, row[ padding ] );
+			Arrays.fill( row, padding + width, row.length, row[ padding + width - 1 ] );
+			target.setRGB( x - padding, y + targetY, row.length, 1, row, 0, row.length );
+		}
+	}
+
+	/**
+	 * Returns the atlas pages. Pages are created by {@link #build()}.
+	 *
+	 * @return Atlas pages.
+	 */
+	@NotNull
+	public List<Page> getPages()
+	{
+		return Collections.unmodifiableList( _pages );
+	}
+
+	/**
+	 * Returns the region of the given texture in the atlas.
+	 *
+	 * @param textureMap Texture map.
+	 *
+	 * @return Region in the atlas; {@code null} if the texture is not in the
+	 *         atlas.
+	 */
+	@Nullable
+	public Region getRegion( @NotNull final TextureMap textureMap )
+	{
+		return _regions.get( textureMap );
+	}
+
+	/**
+	 * Returns whether the given face group could use a texture from an atlas.
+	 * This requires a color map without bump map, and texture coordinates
+	 * that do not repeat the texture.
+	 *
+	 * @param faceGroup Face group to test.
+	 *
+	 * @return {@code true} if the face group can be remapped.
+	 */
+	public static boolean isRemappable( @NotNull final FaceGroup faceGroup )
+	{
+		final Appearance appearance = faceGroup.getAppearance();
+		boolean result = ( appearance != null ) && ( appearance.getColorMap() != null ) && ( appearance.getBumpMap() == null );
+
+		if ( result )
+		{
+			faces:
+			for ( final Face3D face : faceGroup.getFaces() )
+			{
+				for ( final Vertex3D vertex : face.getVertices() )
+				{
+					final float u = vertex.colorMapU;
+					final float v = vertex.colorMapV;
+					if ( !( u >= -UV_EPSILON ) || !( u <= 1.0f + UV_EPSILON ) || !( v >= -UV_EPSILON ) || !( v <= 1.0f + UV_EPSILON ) )
+					{
+						result = false;
+						break faces;
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns a copy of the given object with its face groups remapped to use
+	 * atlas pages, where possible.
+	 *
+	 * @param object Object to remap.
+	 *
+	 * @return Remapped copy of the object; the object itself if none of its
+	 *         face groups could be remapped.
+	 */
+	@NotNull
+	public Object3D remap( @NotNull final Object3D object )
+	{
+		final List<FaceGroup> faceGroups = object.getFaceGroups();
+
+		List<FaceGroup> remappedFaceGroups = null;
+		for ( int i = 0; i < faceGroups.size(); i++ )
+		{
+			final FaceGroup faceGroup = faceGroups.get( i );
+			final FaceGroup remapped = remap( faceGroup );
+
+			//noinspection ObjectEquality
+			if ( ( remappedFaceGroups == null ) && ( remapped != faceGroup ) )
+			{
+				remappedFaceGroups = new ArrayList<FaceGroup>( faceGroups.subList( 0, i ) );
+			}
+
+			if ( remappedFaceGroups != null )
+			{
+				remappedFaceGroups.add( remapped );
+			}
+		}
+
+		Object3D result = object;
+		if ( remappedFaceGroups != null )
+		{
+			result = new Object3D( object.getVertexCoordinates() );
+			result.setFaceGroups( remappedFaceGroups );
+			result.setTag( object.getTag() );
+			result.setLowDetail( object.getLowDetail() );
+			result.setLowDetailThreshold( object.getLowDetailThreshold() );
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a copy of the given face group that uses an atlas page, if
+	 * possible.
+	 *
+	 * @param faceGroup Face group to remap.
+	 *
+	 * @return Remapped copy of the face group; the face group itself if it
+	 *         can not be remapped.
+	 */
+	@NotNull
+	public FaceGroup remap( @NotNull final FaceGroup faceGroup )
+	{
+		FaceGroup result = faceGroup;
+
+		final Appearance appearance = faceGroup.getAppearance();
+		final Region region = ( appearance != null ) && ( appearance.getColorMap() != null ) ? getRegion( appearance.getColorMap() ) : null;
+		if ( ( region != null ) && isRemappable( faceGroup ) )
+		{
+			final List<Face3D> faces = faceGroup.getFaces();
+			final List<Face3D> remappedFaces = new ArrayList<Face3D>( faces.size() );
+			for ( final Face3D face : faces )
+			{
+				final List<Vertex3D> vertices = face.getVertices();
+				final List<Vertex3D> remappedVertices = new ArrayList<Vertex3D>( vertices.size() );
+				for ( final Vertex3D vertex : vertices )
+				{
+					remappedVertices.add( new Vertex3D( vertex.point, vertex.getNormal(), vertex.vertexCoordinateIndex, region.getU( vertex.colorMapU ), region.getV( vertex.colorMapV ) ) );
+				}
+				remappedFaces.add( new Face3D( face.getNormal(), face.getDistance(), remappedVertices, face.getTessellation() ) );
+			}
+
+			result = new FaceGroup( getRemappedAppearance( appearance, region.getPage() ), faceGroup.isSmooth(), faceGroup.isTwoSided(), remappedFaces );
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns a copy of the given appearance that uses the given atlas page as
+	 * its color map. Copies are shared between face groups.
+	 *
+	 * @param appearance Appearance to copy.
+	 * @param page       Atlas page.
+	 *
+	 * @return Remapped appearance.
+	 */
+	@NotNull
+	private Appearance getRemappedAppearance( @NotNull final Appearance appearance, @NotNull final Page page )
+	{
+		Map<Page, Appearance> remappedByPage = _remappedAppearances.get( appearance );
+		if ( remappedByPage == null )
+		{
+			remappedByPage = new HashMap<Page, Appearance>();
+			_remappedAppearances.put( appearance, remappedByPage );
+		}
+
+		Appearance result = remappedByPage.get( page );
+		if ( result == null )
+		{
+			final BasicAppearance remapped = new BasicAppearance( appearance );
+			remapped.setColorMap( page.getTextureMap() );
+			remappedByPage.put( page, remapped );
+			result = remapped;
+		}
+		return result;
+	}
+
+	@Nullable
+	@Override
+	public BufferedImage loadImage( @NotNull final TextureMap textureMap )
+	throws IOException
+	{
+		final Page page = _pagesByTextureMap.get( textureMap );
+		return ( page != null ) ? page.getImage() : _textureLibrary.loadImage( textureMap );
+	}
+
+	@Nullable
+	@Override
+	public InputStream openImageStream( @NotNull final TextureMap textureMap )
+	throws IOException
+	{
+		final InputStream result;
+
+		final Page page = _pagesByTextureMap.get( textureMap );
+		if ( page != null )
+		{
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ImageIO.write( page.getImage(), "png", out );
+			result = new ByteArrayInputStream( out.toByteArray() );
+		}
+		else
+		{
+			result = _textureLibrary.openImageStream( textureMap );
+		}
+
+		return result;
+	}
+
+	@Nullable
+	@Override
+	public File getFile( @NotNull final TextureMap textureMap )
+	{
+		return _pagesByTextureMap.containsKey( textureMap ) ? null : _textureLibrary.getFile( textureMap );
+	}
+
+	@Nullable
+	@Override
+	public URL getUrl( @NotNull final TextureMap textureMap )
+	{
+		return _pagesByTextureMap.containsKey( textureMap ) ? null : _textureLibrary.getUrl( textureMap );
+	}
+
+	/**
+	 * Atlas page.
+	 */
+	public static final class Page
+	{
+		/**
+		 * Texture map that refers to the page.
+		 */
+		@NotNull
+		private final TextureMap _textureMap;
+
+		/**
+		 * Page image.
+		 */
+		@NotNull
+		private final BufferedImage _image;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param textureMap Texture map that refers to the page.
+		 * @param image      Page image.
+		 */
+		private Page( @NotNull final TextureMap textureMap, @NotNull final BufferedImage image )
+		{
+			_textureMap = textureMap;
+			_image = image;
+		}
+
+		/**
+		 * Returns the texture map that refers to the page.
+		 *
+		 * @return Texture map.
+		 */
+		@NotNull
+		public TextureMap getTextureMap()
+		{
+			return _textureMap;
+		}
+
+		/**
+		 * Returns the page image.
+		 *
+		 * @return Page image.
+		 */
+		@NotNull
+		public BufferedImage getImage()
+		{
+			return _image;
+		}
+
+		public int getWidth()
+		{
+			return _image.getWidth();
+		}
+
+		public int getHeight()
+		{
+			return _image.getHeight();
+		}
+	}
+
+	/**
+	 * Region of an atlas page that contains a single texture.
+	 */
+	public static final class Region
+	{
+		/**
+		 * Texture map in the region.
+		 */
+		@NotNull
+		private final TextureMap _textureMap;
+
+		/**
+		 * Source image; only set while building the atlas.
+		 */
+		private BufferedImage _image;
+
+		/**
+		 * Page containing the region.
+		 */
+		private Page _page = null;
+
+		/**
+		 * X coordinate of the region in the page image, in pixels.
+		 */
+		private final int _x;
+
+		/**
+		 * Y coordinate of the region in the page image, in pixels.
+		 */
+		private final int _y;
+
+		/**
+		 * Width of the region, in pixels.
+		 */
+		private final int _width;
+
+		/**
+		 * Height of the region, in pixels.
+		 */
+		private final int _height;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param textureMap Texture map in the region.
+		 * @param image      Source image.
+		 * @param x          X coordinate of the region in the page image.
+		 * @param y          Y coordinate of the region in the page image.
+		 */
+		private Region( @NotNull final TextureMap textureMap, @NotNull final BufferedImage image, final int x, final int y )
+		{
+			_textureMap = textureMap;
+			_image = image;
+			_x = x;
+			_y = y;
+			_width = image.getWidth();
+			_height = image.getHeight();
+		}
+
+		@NotNull
+		public TextureMap getTextureMap()
+		{
+			return _textureMap;
+		}
+
+		@NotNull
+		public Page getPage()
+		{
+			return _page;
+		}
+
+		public int getX()
+		{
+			return _x;
+		}
+
+		public int getY()
+		{
+			return _y;
+		}
+
+		public int getWidth()
+		{
+			return _width;
+		}
+
+		public int getHeight()
+		{
+			return _height;
+		}
+
+		/**
+		 * Converts a U coordinate of the source texture to the atlas page.
+		 *
+		 * @param u U coordinate in the source texture.
+		 *
+		 * @return U coordinate in the atlas page.
+		 */
+		public float getU( final float u )
+		{
+			return ( (float)_x + u * (float)_width ) / (float)_page.getWidth();
+		}
+
+		/**
+		 * Converts a V coordinate of the source texture to the atlas page.
+		 * Note that V coordinates increase from the bottom of the image, while
+		 * image pixel coordinates increase from the top.
+		 *
+		 * @param v V coordinate in the source texture.
+		 *
+		 * @return V coordinate in the atlas page.
+		 */
+		public float getV( final float v )
+		{
+			final int pageHeight = _page.getHeight();
+			return ( (float)( pageHeight - _y - _height ) + v * (float)_height ) / (float)pageHeight;
+		}
+	}
+
+	/**
+	 * Packs rectangles using the skyline bottom-left heuristic. The skyline
+	 * is the upper boundary of the area that is already in use; each
+	 * rectangle is placed on the skyline such that its bottom edge is as low
+	 * as possible (in image coordinates, where Y increases downward, that is
+	 * as close to the top of the page as possible).
+	 */
+	private static class SkylinePacker
+	{
+		/**
+		 * Width of the area to pack.
+		 */
+		private final int _width;
+
+		/**
+		 * Height of the area to pack.
+		 */
+		private final int _height;
+
+		/**
+		 * Skyline segments, from left to right. Each segment consists of an
+		 * X coordinate, Y coordinate and width.
+		 */
+		private final List<int[]> _skyline = new ArrayList<int[]>();
+
+		/**
+		 * Height of the used area.
+		 */
+		private int _usedHeight = 0;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param width  Width of the area to pack.
+		 * @param height Height of the area to pack.
+		 */
+		SkylinePacker( final int width, final int height )
+		{
+			_width = width;
+			_height = height;
+			_skyline.add( new int[] { 0, 0, width } );
+		}
+
+		public int getUsedHeight()
+		{
+			return _usedHeight;
+		}
+
+		/**
+		 * Finds a position for a rectangle and adds it to the skyline.
+		 *
+		 * @param width  Width of the rectangle.
+		 * @param height Height of the rectangle.
+		 *
+		 * @return X and Y coordinate of the rectangle;
+		 *         {@code null} if the rectangle doesn't fit.
+		 */
+		@Nullable
+		public int[] pack( final int width, final int height )
+		{
+			final List<int[]> skyline = _skyline;
+
+			int bestIndex = -1;
+			int bestX = 0;
+			int bestY = Integer.MAX_VALUE;
+
+			for ( int i = 0; i < skyline.size(); i++ )
+			{
+				final int[] segment = skyline.get( i );
+				final int y = fit( i, width, height );
+				if ( ( y >= 0 ) && ( y < bestY ) )
+				{
+					bestIndex = i;
+					bestX = segment[ 0 ];
+					bestY = y;
+				}
+			}
+
+			int[] result = null;
+			if ( bestIndex >= 0 )
+			{
+				addSegment( bestIndex, bestX, bestY + height, width );
+				_usedHeight = Math.max( _usedHeight, bestY + height );
+				result = new int[] { bestX, bestY };
+			}
+			return result;
+		}
+
+		/**
+		 * Determines where a rectangle fits when placed at the start of the
+		 * given skyline segment.
+		 *
+		 * @param index  Index of the skyline segment.
+		 * @param width  Width of the rectangle.
+		 * @param height Height of the rectangle.
+		 *
+		 * @return Y coordinate of the rectangle; {@code -1} if it doesn't fit.
+		 */
+		private int fit( final int index, final int width, final int height )
+		{
+			final List<int[]> skyline = _skyline;
+
+			int result = -1;
+			final int x = skyline.get( index )[ 0 ];
+			if ( x + width <= _width )
+			{
+				int y = 0;
+				int remaining = width;
+				for ( int i = index; remaining > 0; i++ )
+				{
+					final int[] segment = skyline.get( i );
+					y = Math.max( y, segment[ 1 ] );
+					remaining -= segment[ 2 ];
+				}
+
+				if ( y + height <= _height )
+				{
+					result = y;
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Adds a segment to the skyline, covering any segments below it.
+		 *
+		 * @param index Index of the first covered segment.
+		 * @param x     X coordinate of the segment.
+		 * @param y     Y coordinate of the segment.
+		 * @param width Width of the segment.
+		 */
+		private void addSegment( final int index, final int x, final int y, final int width )
+		{
+			final List<int[]> skyline = _skyline;
+			skyline.add( index, new int[] { x, y, width } );
+
+			final int end = x + width;
+			while ( index + 1 < skyline.size() )
+			{
+				final int[] next = skyline.get( index + 1 );
+				if ( next[ 0 ] >= end )
+				{
+					break;
+				}
+
+				final int nextEnd = next[ 0 ] + next[ 2 ];
+				if ( nextEnd <= end )
+				{
+					skyline.remove( index + 1 );
+				}
+				else
+				{
+					next[ 2 ] = nextEnd - end;
+					next[ 0 ] = end;
+					break;
+				}
+			}
+
+			/*
+			 * Merge segments at the same height.
+			 */
+			for ( int i = skyline.size() - 1; i > 0; i-- )
+			{
+				final int[] previous = skyline.get( i - 1 );
+				final int[] segment = skyline.get( i );
+				if ( previous[ 1 ] == segment[ 1 ] )
+				{
+					previous[ 2 ] += segment[ 2 ];
+					skyline.remove( i );
+				}
+			}
+		}
+	}
+}
@@ -219,6 +219,26 @@ public class BSPTree
 	 * @return  Array filled with {@link RenderedPolygon} objects in specified paint order.
 	 */
 	public RenderedPolygon[] getRenderQueue( final Vector3D viewPoint, final Projector projector, final Matrix3D model2view, final boolean backfaceCulling, final boolean backToFront )
+	{
+		return getRenderQueue( viewPoint, projector, model2view, backfaceCulling, backToFront, null );
+	}
+
+	/**
+	 * Get polygons to render in the specified order ('back-to-front' or 'front-to-back').
+	 * Polygons of objects that are not in the given set of visible objects
+	 * are skipped without being transformed or projected.
+	 *
+	 * @param   viewPoint           Point from where the view is rendered.
+	 * @param   projector           Projector used to e.g. check polygons against view volume.
+	 * @param   model2view          Transformation from model to view coordinates.
+	 * @param   backfaceCulling     Prevent backfaces from being rendered.
+	 * @param   backToFront         Should the polygons be ordered 'back-to-front' or 'front-to-back'.
+	 * @param   visibleObjects      Objects that are (potentially) visible;
+	 *                              {@code null} if all objects are.
+	 *
+	 * @return  Array filled with {@link RenderedPolygon} objects in specified paint order.
+	 */
+	public RenderedPolygon[] getRenderQueue( final Vector3D viewPoint, final Projector projector, final Matrix3D model2view, final boolean backfaceCulling, final boolean backToFront, @Nullable final Set<Object3D> visibleObjects )
 	{
 		final List<RenderedPolygon> queue = new ArrayList<RenderedPolygon>();
 		getSortedPolygons( viewPoint, _root, queue, backToFront );
@@ -226,10 +246,13 @@ public class BSPTree
 		final List<RenderedPolygon> result = new ArrayList<RenderedPolygon>();
 		for ( final RenderedPolygon polygon : queue )
 		{
-			final RenderedPolygon renderedPolygon = getRenderedPolygon( polygon, model2view, projector, backfaceCulling );
-			if ( renderedPolygon != null )
+			if ( ( visibleObjects == null ) || visibleObjects.contains( polygon._object ) )
 			{
-				result.add( renderedPolygon );
+				final RenderedPolygon renderedPolygon = getRenderedPolygon( polygon, model2view, projector, backfaceCulling );
+				if ( renderedPolygon != null )
+				{
+					result.add( renderedPolygon );
+				}
 			}
 		}
 
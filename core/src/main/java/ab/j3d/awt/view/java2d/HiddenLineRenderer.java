@@ -0,0 +1,874 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.awt.view.java2d;
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.util.*;
+import java.util.List;
+
+import ab.j3d.*;
+import ab.j3d.geom.*;
+import ab.j3d.model.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Hidden-line removal for technical drawings, such as plans and elevations.
+ * Instead of sorting polygons, like {@link RenderQueue} and {@link BSPTree},
+ * the visibility of each line is determined exactly, so the result is also
+ * correct for intersecting and cyclically overlapping geometry.
+ *
+ * <p>Lines are taken from the feature edges of each object:
+ * <ul>
+ * <li>silhouette edges, between a front face and a back face;</li>
+ * <li>outline edges of faces, with an angle between the adjacent faces of at
+ * least the crease angle. Edges removed by {@link Object3D#smooth} are not
+ * part of face outlines, so these are only drawn as silhouettes.</li>
+ * </ul>
+ * Each edge is then clipped against all faces in front of it, using a
+ * screen-space grid to find faces that may overlap the edge. Edges are
+ * processed in parallel for large scenes.
+ *
+ * <p>This class is intended for parallel projections, where depth varies
+ * linearly in image space.
+ *
+ * @author Peter S. Heijnen
+ */
+public class HiddenLineRenderer
+{
+	/**
+	 * Minimum number of edges for which edges are clipped in parallel.
+	 */
+	private static final int PARALLEL_THRESHOLD = 4096;
+
+	/**
+	 * Maximum number of cells along each axis of the grid.
+	 */
+	private static final int MAXIMUM_GRID_SIZE = 256;
+
+	/**
+	 * Projection transform for Graphics2D context.
+	 */
+	@NotNull
+	private final Matrix3D _view2image;
+
+	/**
+	 * Tolerance in image units. Visible parts of lines that are shorter than
+	 * this are left out.
+	 */
+	private final double _tolerance;
+
+	/**
+	 * Minimum angle between adjacent faces for outline edges to be drawn, in
+	 * degrees.
+	 */
+	private double _creaseAngle = 0.0;
+
+	/**
+	 * Image X, image Y and view Z coordinate of each vertex.
+	 */
+	private final DoubleArray _vertices = new DoubleArray();
+
+	/**
+	 * Vertex indices of triangles that may hide edges.
+	 */
+	private final IntArray _triangles = new IntArray();
+
+	/**
+	 * Vertex indices of feature edges.
+	 */
+	private final IntArray _edges = new IntArray();
+
+	/**
+	 * Constructs a new renderer.
+	 *
+	 * @param view2image Projection transform for Graphics2D context (3D->2D,
+	 *                   pan, scale).
+	 * @param tolerance  Tolerance in image units. Visible parts of lines that
+	 *                   are shorter than this are left out.
+	 */
+	public HiddenLineRenderer( @NotNull final Matrix3D view2image, final double tolerance )
+	{
+		_view2image = view2image;
+		_tolerance = tolerance;
+	}
+
+	/**
+	 * Returns the minimum angle between adjacent faces for outline edges to
+	 * be drawn.
+	 *
+	 * @return Minimum crease angle, in degrees.
+	 */
+	public double getCreaseAngle()
+	{
+		return _creaseAngle;
+	}
+
+	/**
+	 * Sets the minimum angle between adjacent faces for outline edges to be
+	 * drawn. With the default of zero, all outline edges are drawn. This only
+	 * affects nodes that are added afterwards.
+	 *
+	 * @param creaseAngle Minimum crease angle, in degrees.
+	 */
+	public void setCreaseAngle( final double creaseAngle )
+	{
+		_creaseAngle = creaseAngle;
+	}
+
+	/**
+	 * Returns the number of feature edges that were found.
+	 *
+	 * @return Number of feature edges.
+	 */
+	public int getEdgeCount()
+	{
+		return _edges.size() / 2;
+	}
+
+	/**
+	 * Adds 3D objects at the given node and its child nodes.
+	 *
+	 * @param node2view Transformation from node's to view coordinate system.
+	 * @param node      Node to add.
+	 */
+	public void addNode( @NotNull final Matrix3D node2view, @NotNull final Node3D node )
+	{
+		final Matrix3D object2view;
+		if ( node instanceof Transform3D )
+		{
+			object2view = ( (Transform3D)node ).getTransform().multiply( node2view );
+		}
+		else
+		{
+			object2view = node2view;
+		}
+
+		if ( node instanceof Object3D )
+		{
+			addObject( object2view, (Object3D)node );
+		}
+
+		final int childCount = node.getChildCount();
+		for ( int i = 0; i < childCount; i++ )
+		{
+			addNode( object2view, node.getChild( i ) );
+		}
+	}
+
+	/**
+	 * Adds the faces and feature edges of an object.
+	 *
+	 * @param object2view Transformation from object to view coordinates.
+	 * @param object      Object to add.
+	 */
+	private void addObject( @NotNull final Matrix3D object2view, @NotNull final Object3D object )
+	{
+		final Matrix3D object2image = object2view.multiply( _view2image );
+		final DoubleArray vertices = _vertices;
+		final IntArray triangles = _triangles;
+		final int firstVertex = vertices.size() / 3;
+
+		final List<Vector3D> vertexCoordinates = object.getVertexCoordinates();
+		final int vertexCount = vertexCoordinates.size();
+		for ( final Vector3D point : vertexCoordinates )
+		{
+			vertices.add( object2image.transformX( point ) );
+			vertices.add( object2image.transformY( point ) );
+			vertices.add( object2view.transformZ( point ) );
+		}
+
+		final List<Face3D> faces = new ArrayList<Face3D>();
+		for ( final FaceGroup faceGroup : object.getFaceGroups() )
+		{
+			faces.addAll( faceGroup.getFaces() );
+		}
+
+		/*
+		 * Collect the faces on both sides of each edge, and whether the edge
+		 * is part of a face outline.
+		 */
+		final Map<Long, Edge> edges = new LinkedHashMap<Long, Edge>();
+		final boolean[] front = new boolean[ faces.size() ];
+		for ( int faceIndex = 0; faceIndex < faces.size(); faceIndex++ )
+		{
+			final Face3D face = faces.get( faceIndex );
+			final Vector3D normal = face.getNormal();
+			front[ faceIndex ] = object2view.rotateZ( normal.x, normal.y, normal.z ) >= 0.0;
+
+			final List<Vertex3D> faceVertices = face.getVertices();
+			final Tessellation tessellation = face.getTessellation();
+			for ( final TessellationPrimitive primitive : tessellation.getPrimitives() )
+			{
+				final int[] primitiveTriangles = primitive.getTriangles();
+				for ( int i = 0; i < primitiveTriangles.length; i += 3 )
+				{
+					final int index1 = faceVertices.get( primitiveTriangles[ i ] ).vertexCoordinateIndex;
+					final int index2 = faceVertices.get( primitiveTriangles[ i + 1 ] ).vertexCoordinateIndex;
+					final int index3 = faceVertices.get( primitiveTriangles[ i + 2 ] ).vertexCoordinateIndex;
+					triangles.add( firstVertex + index1 );
+					triangles.add( firstVertex + index2 );
+					triangles.add( firstVertex + index3 );
+					addFaceToEdge( edges, vertexCount, index1, index2, faceIndex );
+					addFaceToEdge( edges, vertexCount, index2, index3, faceIndex );
+					addFaceToEdge( edges, vertexCount, index3, index1, faceIndex );
+				}
+			}
+
+			for ( final int[] outline : tessellation.getOutlines() )
+			{
+				for ( int i = 1; i < outline.length; i++ )
+				{
+					final int index1 = faceVertices.get( outline[ i - 1 ] ).vertexCoordinateIndex;
+					final int index2 = faceVertices.get( outline[ i ] ).vertexCoordinateIndex;
+					final Edge edge = addFaceToEdge( edges, vertexCount, index1, index2, faceIndex );
+					if ( edge != null )
+					{
+						edge._outline = true;
+					}
+				}
+			}
+		}
+
+		final double minCosCrease = Math.cos( Math.toRadians( _creaseAngle ) );
+		final IntArray featureEdges = _edges;
+		for ( final Map.Entry<Long, Edge> entry : edges.entrySet() )
+		{
+			final Edge edge = entry.getValue();
+			final int face1 = edge._face1;
+			final int face2 = edge._face2;
+
+			final boolean feature;
+			if ( ( face2 < 0 ) || ( face2 == face1 ) )
+			{
+				feature = edge._outline;
+			}
+			else if ( front[ face1 ] != front[ face2 ] )
+			{
+				feature = true;
+			}
+			else if ( edge._outline )
+			{
+				feature = ( _creaseAngle <= 0.0 ) || ( Vector3D.dot( faces.get( face1 ).getNormal(), faces.get( face2 ).getNormal() ) <= minCosCrease );
+			}
+			else
+			{
+				feature = false;
+			}
+
+			if ( feature )
+			{
+				final long key = entry.getKey();
+				featureEdges.add( firstVertex + (int)( key / (long)vertexCount ) );
+				featureEdges.add( firstVertex + (int)( key % (long)vertexCount ) );
+			}
+		}
+	}
+
+	/**
+	 * Registers a face as being adjacent to an edge.
+	 *
+	 * @param edges       Edges by key.
+	 * @param vertexCount Number of vertex coordinates in the object.
+	 * @param index1      Vertex coordinate index at one end of the edge.
+	 * @param index2      Vertex coordinate index at the other end of the edge.
+	 * @param faceIndex   Index of the face.
+	 *
+	 * @return Edge; {@code null} if the edge is degenerate.
+	 */
+	@Nullable
+	private static Edge addFaceToEdge( @NotNull final Map<Long, Edge> edges, final int vertexCount, final int index1, final int index2, final int faceIndex )
+	{
+		Edge result = null;
+		if ( index1 != index2 )
+		{
+			final Long key = Long.valueOf( (long)Math.min( index1, index2 ) * (long)vertexCount + (long)Math.max( index1, index2 ) );
+			result = edges.get( key );
+			if ( result == null )
+			{
+				result = new Edge( faceIndex );
+				edges.put( key, result );
+			}
+			else if ( ( result._face1 != faceIndex ) && ( result._face2 < 0 ) )
+			{
+				result._face2 = faceIndex;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Determines the visible parts of all feature edges.
+	 *
+	 * @return Visible line segments, in image coordinates.
+	 */
+	@NotNull
+	public List<Line2D> getVisibleLines()
+	{
+		final int edgeCount = _edges.size() / 2;
+		final List<Line2D> result = new ArrayList<Line2D>();
+
+		if ( edgeCount > 0 )
+		{
+			final OccluderGrid grid = new OccluderGrid( _vertices.toArray(), _triangles.toArray() );
+
+			final int rangeCount = ( edgeCount < PARALLEL_THRESHOLD ) ? 1 : ParallelTools.getThreadCount();
+			final List<List<Line2D>> ranges = ParallelTools.processRanges( edgeCount, rangeCount, new ParallelTools.RangeTask<List<Line2D>>()
+			{
+				@Override
+				public List<Line2D> process( final int start, final int end )
+				{
+					return clipEdges( grid, start, end );
+				}
+			} );
+
+			for ( final List<Line2D> lines : ranges )
+			{
+				result.addAll( lines );
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Paints the visible parts of all feature edges using the current stroke
+	 * and paint of the given graphics context.
+	 *
+	 * @param g Graphics2D context.
+	 */
+	public void paint( @NotNull final Graphics2D g )
+	{
+		final Path2D path = new Path2D.Double();
+		for ( final Line2D line : getVisibleLines() )
+		{
+			path.moveTo( line.getX1(), line.getY1() );
+			path.lineTo( line.getX2(), line.getY2() );
+		}
+		g.draw( path );
+	}
+
+	/**
+	 * Determines the visible parts of a range of edges.
+	 *
+	 * @param grid  Grid of faces that may hide edges.
+	 * @param start Index of first edge (inclusive).
+	 * @param end   Index of last edge (exclusive).
+	 *
+	 * @return Visible line segments.
+	 */
+	@NotNull
+	private List<Line2D> clipEdges( @NotNull final OccluderGrid grid, final int start, final int end )
+	{
+		final List<Line2D> result = new ArrayList<Line2D>();
+		final double[] vertices = grid._vertices;
+		final IntArray edges = _edges;
+		final double tolerance = _tolerance;
+
+		final int[] visited = new int[ grid._triangles.length / 3 ];
+		Arrays.fill( visited, -1 );
+		final DoubleArray visible = new DoubleArray();
+
+		for ( int edgeIndex = start; edgeIndex < end; edgeIndex++ )
+		{
+			final int vertex1 = edges.get( edgeIndex * 2 );
+			final int vertex2 = edges.get( edgeIndex * 2 + 1 );
+			final double x1 = vertices[ vertex1 * 3 ];
+			final double y1 = vertices[ vertex1 * 3 + 1 ];
+			final double x2 = vertices[ vertex2 * 3 ];
+			final double y2 = vertices[ vertex2 * 3 + 1 ];
+			final double length = Math.hypot( x2 - x1, y2 - y1 );
+
+			if ( length >= tolerance )
+			{
+				visible.clear();
+				visible.add( 0.0 );
+				visible.add( 1.0 );
+				grid.clip( visible, visited, edgeIndex, vertex1, vertex2 );
+
+				for ( int i = 0; i < visible.size(); i += 2 )
+				{
+					final double t1 = visible.get( i );
+					final double t2 = visible.get( i + 1 );
+					if ( ( t2 - t1 ) * length >= tolerance )
+					{
+						result.add( new Line2D.Double( x1 + t1 * ( x2 - x1 ), y1 + t1 * ( y2 - y1 ), x1 + t2 * ( x2 - x1 ), y1 + t2 * ( y2 - y1 ) ) );
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Edge of an object with adjacent faces.
+	 */
+	private static class Edge
+	{
+		/**
+		 * Index of first face using the edge.
+		 */
+		final int _face1;
+
+		/**
+		 * Index of another face using the edge; {@code -1} if none.
+		 */
+		int _face2 = -1;
+
+		/**
+		 * Whether the edge is part of a face outline.
+		 */
+		boolean _outline = false;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param face1 Index of first face using the edge.
+		 */
+		Edge( final int face1 )
+		{
+			_face1 = face1;
+		}
+	}
+
+	/**
+	 * Screen-space grid of triangles that may hide edges. Triangles are
+	 * listed per cell in compressed sparse row form: the triangles overlapping
+	 * cell {@code i} are {@code _cellTriangles[ _cellOffsets[ i ] ]} up to
+	 * (but not including) {@code _cellTriangles[ _cellOffsets[ i + 1 ] ]}.
+	 */
+	private static class OccluderGrid
+	{
+		/**
+		 * Image X, image Y and view Z coordinate of each vertex.
+		 */
+		final double[] _vertices;
+
+		/**
+		 * Vertex indices of triangles.
+		 */
+		final int[] _triangles;
+
+		/**
+		 * Depth plane of each triangle in image space, such that
+		 * {@code z = a * x + b * y + c}, stored as (a, b, c). Triangles that
+		 * are seen edge-on have {@code NaN} coefficients.
+		 */
+		private final double[] _planes;
+
+		/**
+		 * Depth difference that is considered significant.
+		 */
+		private final double _depthTolerance;
+
+		/**
+		 * Minimum X coordinate of the grid.
+		 */
+		private final double _x;
+
+		/**
+		 * Minimum Y coordinate of the grid.
+		 */
+		private final double _y;
+
+		/**
+		 * Size of a cell.
+		 */
+		private final double _cellSize;
+
+		/**
+		 * Number of cells along the X axis.
+		 */
+		private final int _width;
+
+		/**
+		 * Number of cells along the Y axis.
+		 */
+		private final int _height;
+
+		/**
+		 * Offset in {@link #_cellTriangles} for each cell, followed by the
+		 * total number of entries.
+		 */
+		private final int[] _cellOffsets;
+
+		/**
+		 * Triangle indices per cell.
+		 */
+		private final int[] _cellTriangles;
+
+		/**
+		 * Constructs a new grid.
+		 *
+		 * @param vertices  Image X, image Y and view Z coordinate of each
+		 *                  vertex.
+		 * @param triangles Vertex indices of triangles.
+		 */
+		OccluderGrid( @NotNull final double[] vertices, @NotNull final int[] triangles )
+		{
+			_vertices = vertices;
+			_triangles = triangles;
+
+			double minX = Double.POSITIVE_INFINITY;
+			double minY = Double.POSITIVE_INFINITY;
+			double minZ = Double.POSITIVE_INFINITY;
+			double maxX = Double.NEGATIVE_INFINITY;
+			double maxY = Double.NEGATIVE_INFINITY;
+			double maxZ = Double.NEGATIVE_INFINITY;
+			for ( int i = 0; i < vertices.length; i += 3 )
+			{
+				minX = Math.min( minX, vertices[ i ] );
+				minY = Math.min( minY, vertices[ i + 1 ] );
+				minZ = Math.min( minZ, vertices[ i + 2 ] );
+				maxX = Math.max( maxX, vertices[ i ] );
+				maxY = Math.max( maxY, vertices[ i + 1 ] );
+				maxZ = Math.max( maxZ, vertices[ i + 2 ] );
+			}
+			_depthTolerance = 1.0e-6 * Math.max( 1.0, maxZ - minZ );
+
+			final int triangleCount = triangles.length / 3;
+			final double[] planes = new double[ triangleCount * 3 ];
+			for ( int i = 0; i < triangleCount; i++ )
+			{
+				final int vertex1 = triangles[ i * 3 ] * 3;
+				final int vertex2 = triangles[ i * 3 + 1 ] * 3;
+				final int vertex3 = triangles[ i * 3 + 2 ] * 3;
+				final double ux = vertices[ vertex2 ] - vertices[ vertex1 ];
+				final double uy = vertices[ vertex2 + 1 ] - vertices[ vertex1 + 1 ];
+				final double uz = vertices[ vertex2 + 2 ] - vertices[ vertex1 + 2 ];
+				final double vx = vertices[ vertex3 ] - vertices[ vertex1 ];
+				final double vy = vertices[ vertex3 + 1 ] - vertices[ vertex1 + 1 ];
+				final double vz = vertices[ vertex3 + 2 ] - vertices[ vertex1 + 2 ];
+				final double determinant = ux * vy - uy * vx;
+				if ( Math.abs( determinant ) > 1.0e-12 * ( Math.abs( ux * vy ) + Math.abs( uy * vx ) ) )
+				{
+					final double a = ( uz * vy - uy * vz ) / determinant;
+					final double b = ( ux * vz - uz * vx ) / determinant;
+					planes[ i * 3 ] = a;
+					planes[ i * 3 + 1 ] = b;
+					planes[ i * 3 + 2 ] = vertices[ vertex1 + 2 ] - a * vertices[ vertex1 ] - b * vertices[ vertex1 + 1 ];
+				}
+				else
+				{
+					planes[ i * 3 ] = Double.NaN;
+					planes[ i * 3 + 1 ] = Double.NaN;
+					planes[ i * 3 + 2 ] = Double.NaN;
+				}
+			}
+			_planes = planes;
+
+			final int size = Math.max( 1, Math.min( MAXIMUM_GRID_SIZE, (int)Math.sqrt( (double)triangleCount ) ) );
+			final double cellSize = Math.max( 1.0e-9, Math.max( maxX - minX, maxY - minY ) / (double)size );
+			_x = minX;
+			_y = minY;
+			_cellSize = cellSize;
+			final int width = Math.max( 1, Math.min( size, (int)Math.ceil( ( maxX - minX ) / cellSize ) ) );
+			final int height = Math.max( 1, Math.min( size, (int)Math.ceil( ( maxY - minY ) / cellSize ) ) );
+			_width = width;
+			_height = height;
+
+			/*
+			 * Count triangles per cell first, then fill in the triangles.
+			 */
+			final int[] cellRanges = new int[ triangleCount * 4 ];
+			final int[] offsets = new int[ width * height + 1 ];
+			for ( int i = 0; i < triangleCount; i++ )
+			{
+				if ( !Double.isNaN( planes[ i * 3 ] ) )
+				{
+					final int vertex1 = triangles[ i * 3 ] * 3;
+					final int vertex2 = triangles[ i * 3 + 1 ] * 3;
+					final int vertex3 = triangles[ i * 3 + 2 ] * 3;
+					final int cellX1 = getCellX( Math.min( vertices[ vertex1 ], Math.min( vertices[ vertex2 ], vertices[ vertex3 ] ) ) );
+					final int cellY1 = getCellY( Math.min( vertices[ vertex1 + 1 ], Math.min( vertices[ vertex2 + 1 ], vertices[ vertex3 + 1 ] ) ) );
+					final int cellX2 = getCellX( Math.max( vertices[ vertex1 ], Math.max( vertices[ vertex2 ], vertices[ vertex3 ] ) ) );
+					final int cellY2 = getCellY( Math.max( vertices[ vertex1 + 1 ], Math.max( vertices[ vertex2 + 1 ], vertices[ vertex3 + 1 ] ) ) );
+					cellRanges[ i * 4 ] = cellX1;
+					cellRanges[ i * 4 + 1 ] = cellY1;
+					cellRanges[ i * 4 + 2 ] = cellX2;
+					cellRanges[ i * 4 + 3 ] = cellY2;
+
+					for ( int cellY = cellY1; cellY <= cellY2; cellY++ )
+					{
+						for ( int cellX = cellX1; cellX <= cellX2; cellX++ )
+						{
+							offsets[ cellY * width + cellX + 1 ]++;
+						}
+					}
+				}
+				else
+				{
+					cellRanges[ i * 4 ] = 0;
+					cellRanges[ i * 4 + 1 ] = 0;
+					cellRanges[ i * 4 + 2 ] = -1;
+					cellRanges[ i * 4 + 3 ] = -1;
+				}
+			}
+
+			for ( int cell = 0; cell < width * height; cell++ )
+			{
+				offsets[ cell + 1 ] += offsets[ cell ];
+			}
+
+			final int[] next = Arrays.copyOf( offsets, width * height );
+			final int[] cellTriangles = new int[ offsets[ width * height ] ];
+			for ( int i = 0; i < triangleCount; i++ )
+			{
+				for ( int cellY = cellRanges[ i * 4 + 1 ]; cellY <= cellRanges[ i * 4 + 3 ]; cellY++ )
+				{
+					for ( int cellX = cellRanges[ i * 4 ]; cellX <= cellRanges[ i * 4 + 2 ]; cellX++ )
+					{
+						cellTriangles[ next[ cellY * width + cellX ]++ ] = i;
+					}
+				}
+			}
+
+			_cellOffsets = offsets;
+			_cellTriangles = cellTriangles;
+		}
+
+		/**
+		 * Returns the cell column containing the given X coordinate.
+		 *
+		 * @param x X coordinate.
+		 *
+		 * @return Cell column, clamped to the grid.
+		 */
+		private int getCellX( final double x )
+		{
+			return Math.max( 0, Math.min( _width - 1, (int)Math.floor( ( x - _x ) / _cellSize ) ) );
+		}
+
+		/**
+		 * Returns the cell row containing the given Y coordinate.
+		 *
+		 * @param y Y coordinate.
+		 *
+		 * @return Cell row, clamped to the grid.
+		 */
+		private int getCellY( final double y )
+		{
+			return Math.max( 0, Math.min( _height - 1, (int)Math.floor( ( y - _y ) / _cellSize ) ) );
+		}
+
+		/**
+		 * Removes the parts of an edge that are hidden by triangles.
+		 *
+		 * @param visible Visible parts of the edge, as pairs of parameters
+		 *                from 0 (first vertex) to 1 (second vertex).
+		 * @param visited Edge index for which each triangle was last tested.
+		 * @param edge    Index of the edge.
+		 * @param vertex1 Vertex index at the start of the edge.
+		 * @param vertex2 Vertex index at the end of the edge.
+		 */
+		void clip( @NotNull final DoubleArray visible, @NotNull final int[] visited, final int edge, final int vertex1, final int vertex2 )
+		{
+			final double[] vertices = _vertices;
+			final double x1 = vertices[ vertex1 * 3 ];
+			final double y1 = vertices[ vertex1 * 3 + 1 ];
+			final double z1 = vertices[ vertex1 * 3 + 2 ];
+			final double x2 = vertices[ vertex2 * 3 ];
+			final double y2 = vertices[ vertex2 * 3 + 1 ];
+			final double z2 = vertices[ vertex2 * 3 + 2 ];
+
+			final int cellX1 = getCellX( Math.min( x1, x2 ) );
+			final int cellY1 = getCellY( Math.min( y1, y2 ) );
+			final int cellX2 = getCellX( Math.max( x1, x2 ) );
+			final int cellY2 = getCellY( Math.max( y1, y2 ) );
+
+			for ( int cellY = cellY1; !visible.isEmpty() && ( cellY <= cellY2 ); cellY++ )
+			{
+				final double top = _y + (double)cellY * _cellSize;
+				for ( int cellX = cellX1; !visible.isEmpty() && ( cellX <= cellX2 ); cellX++ )
+				{
+					final double left = _x + (double)cellX * _cellSize;
+					if ( ( cellX1 == cellX2 ) || ( cellY1 == cellY2 ) || isTouching( x1, y1, x2, y2, left, top, left + _cellSize, top + _cellSize ) )
+					{
+						final int cell = cellY * _width + cellX;
+						for ( int i = _cellOffsets[ cell ]; !visible.isEmpty() && ( i < _cellOffsets[ cell + 1 ] ); i++ )
+						{
+							final int triangle = _cellTriangles[ i ];
+							if ( visited[ triangle ] != edge )
+							{
+								visited[ triangle ] = edge;
+								clipTriangle( visible, triangle, vertex1, vertex2, x1, y1, z1, x2, y2, z2 );
+							}
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Removes the part of an edge that is hidden by a triangle.
+		 *
+		 * @param visible  Visible parts of the edge.
+		 * @param triangle Index of the triangle.
+		 * @param vertex1  Vertex index at the start of the edge.
+		 * @param vertex2  Vertex index at the end of the edge.
+		 * @param x1       Image X coordinate at the start of the edge.
+		 * @param y1       Image Y coordinate at the start of the edge.
+		 * @param z1       View Z coordinate at the start of the edge.
+		 * @param x2       Image X coordinate at the end of the edge.
+		 * @param y2       Image Y coordinate at the end of the edge.
+		 * @param z2       View Z coordinate at the end of the edge.
+		 */
+		private void clipTriangle( @NotNull final DoubleArray visible, final int triangle, final int vertex1, final int vertex2, final double x1, final double y1, final double z1, final double x2, final double y2, final double z2 )
+		{
+			final double[] vertices = _vertices;
+			final int[] triangles = _triangles;
+			final int index1 = triangles[ triangle * 3 ];
+			final int index2 = triangles[ triangle * 3 + 1 ];
+			final int index3 = triangles[ triangle * 3 + 2 ];
+
+			/*
+			 * Triangles of the faces adjacent to the edge can't hide it.
+			 */
+			final boolean adjacent = ( ( vertex1 == index1 ) || ( vertex1 == index2 ) || ( vertex1 == index3 ) ) &&
+			                         ( ( vertex2 == index1 ) || ( vertex2 == index2 ) || ( vertex2 == index3 ) );
+
+			final double depthTolerance = _depthTolerance;
+			if ( !adjacent && ( Math.max( vertices[ index1 * 3 + 2 ], Math.max( vertices[ index2 * 3 + 2 ], vertices[ index3 * 3 + 2 ] ) ) > Math.min( z1, z2 ) + depthTolerance ) )
+			{
+				final double ax = vertices[ index1 * 3 ];
+				final double ay = vertices[ index1 * 3 + 1 ];
+				final double bx = vertices[ index2 * 3 ];
+				final double by = vertices[ index2 * 3 + 1 ];
+				final double cx = vertices[ index3 * 3 ];
+				final double cy = vertices[ index3 * 3 + 1 ];
+				final double dx = x2 - x1;
+				final double dy = y2 - y1;
+				final double sign = Math.signum( ( bx - ax ) * ( cy - ay ) - ( by - ay ) * ( cx - ax ) );
+
+				/*
+				 * Clip the edge to the inside of the triangle.
+				 */
+				final double[] range = { 0.0, 1.0 };
+				boolean hidden = clipRange( range, sign * ( ( bx - ax ) * ( y1 - ay ) - ( by - ay ) * ( x1 - ax ) ), sign * ( ( bx - ax ) * dy - ( by - ay ) * dx ) ) &&
+				                 clipRange( range, sign * ( ( cx - bx ) * ( y1 - by ) - ( cy - by ) * ( x1 - bx ) ), sign * ( ( cx - bx ) * dy - ( cy - by ) * dx ) ) &&
+				                 clipRange( range, sign * ( ( ax - cx ) * ( y1 - cy ) - ( ay - cy ) * ( x1 - cx ) ), sign * ( ( ax - cx ) * dy - ( ay - cy ) * dx ) );
+
+				/*
+				 * Clip the edge to where the triangle is in front of it.
+				 */
+				if ( hidden )
+				{
+					final double[] planes = _planes;
+					final double a = planes[ triangle * 3 ];
+					final double b = planes[ triangle * 3 + 1 ];
+					final double c = planes[ triangle * 3 + 2 ];
+					hidden = clipRange( range, a * x1 + b * y1 + c - z1 - depthTolerance, a * dx + b * dy - ( z2 - z1 ) );
+				}
+
+				if ( hidden )
+				{
+					subtract( visible, range[ 0 ], range[ 1 ] );
+				}
+			}
+		}
+
+		/**
+		 * Limits a parameter range to where {@code f0 + t * f1 > 0}.
+		 *
+		 * @param range Parameter range (start, end).
+		 * @param f0    Value of the linear function at {@code t = 0}.
+		 * @param f1    Slope of the linear function.
+		 *
+		 * @return {@code true} if the resulting range is not empty.
+		 */
+		private static boolean clipRange( @NotNull final double[] range, final double f0, final double f1 )
+		{
+			if ( f1 > 0.0 )
+			{
+				range[ 0 ] = Math.max( range[ 0 ], -f0 / f1 );
+			}
+			else if ( f1 < 0.0 )
+			{
+				range[ 1 ] = Math.min( range[ 1 ], -f0 / f1 );
+			}
+			else if ( f0 <= 0.0 )
+			{
+				range[ 1 ] = range[ 0 ];
+			}
+			return range[ 0 ] < range[ 1 ];
+		}
+
+		/**
+		 * Removes a parameter range from the visible parts of an edge.
+		 *
+		 * @param visible Visible parts of the edge, sorted by parameter.
+		 * @param start   Start of range to remove.
+		 * @param end     End of range to remove.
+		 */
+		private static void subtract( @NotNull final DoubleArray visible, final double start, final double end )
+		{
+			for ( int i = visible.size() - 2; i >= 0; i -= 2 )
+			{
+				final double partStart = visible.get( i );
+				final double partEnd = visible.get( i + 1 );
+				if ( ( start < partEnd ) && ( end > partStart ) )
+				{
+					if ( start > partStart )
+					{
+						visible.set( i + 1, start );
+						if ( end < partEnd )
+						{
+							visible.insert( i + 2, end );
+							visible.insert( i + 3, partEnd );
+						}
+					}
+					else if ( end < partEnd )
+					{
+						visible.set( i, end );
+					}
+					else
+					{
+						visible.remove( i, i + 2 );
+					}
+				}
+			}
+		}
+
+		/**
+		 * Tests whether a line segment touches a rectangle.
+		 *
+		 * @param x1     X coordinate of the start of the segment.
+		 * @param y1     Y coordinate of the start of the segment.
+		 * @param x2     X coordinate of the end of the segment.
+		 * @param y2     Y coordinate of the end of the segment.
+		 * @param left   Left side of the rectangle.
+		 * @param top    Top side of the rectangle.
+		 * @param right  Right side of the rectangle.
+		 * @param bottom Bottom side of the rectangle.
+		 *
+		 * @return {@code true} if the segment touches the rectangle.
+		 */
+		private static boolean isTouching( final double x1, final double y1, final double x2, final double y2, final double left, final double top, final double right, final double bottom )
+		{
+			final double dx = x2 - x1;
+			final double dy = y2 - y1;
+			final double c1 = dx * ( top - y1 ) - dy * ( left - x1 );
+			final double c2 = dx * ( top - y1 ) - dy * ( right - x1 );
+			final double c3 = dx * ( bottom - y1 ) - dy * ( left - x1 );
+			final double c4 = dx * ( bottom - y1 ) - dy * ( right - x1 );
+			return !( ( c1 > 0.0 ) && ( c2 > 0.0 ) && ( c3 > 0.0 ) && ( c4 > 0.0 ) ) && !( ( c1 < 0.0 ) && ( c2 < 0.0 ) && ( c3 < 0.0 ) && ( c4 < 0.0 ) );
+		}
+	}
+}
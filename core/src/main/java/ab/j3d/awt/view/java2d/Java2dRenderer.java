@@ -58,29 +58,7 @@ public class Java2dRenderer
 	 */
 	public static void paintNode( @NotNull final Graphics2D g, @NotNull final Matrix3D view2image, @NotNull final Matrix3D node2view, @NotNull final Node3D node, @NotNull final RenderStyle renderStyle, @Nullable final RenderStyleFilter renderStyleFilter )
 	{
-		Node3D renderedNode = node;
-		if ( ( node instanceof Object3D ) && ( (Object3D)renderedNode ).isLowDetailAvailable() )
-		{
-			final Object3D object = (Object3D)renderedNode;
-			final Bounds3D boundingBox = object.getOrientedBoundingBox();
-			if ( boundingBox != null )
-			{
-				final ConvexHull2D projectedBounds = new ConvexHull2D( 8 );
-
-				final Matrix3D object2image = node2view.multiply( view2image );
-				projectedBounds.add( object2image.transformX( boundingBox.v1.x, boundingBox.v1.y, boundingBox.v1.z ), object2image.transformY( boundingBox.v1.x, boundingBox.v1.y, boundingBox.v1.z ) );
-				projectedBounds.add( object2image.transformX( boundingBox.v2.x, boundingBox.v1.y, boundingBox.v1.z ), object2image.transformY( boundingBox.v2.x, boundingBox.v1.y, boundingBox.v1.z ) );
-				projectedBounds.add( object2image.transformX( boundingBox.v1.x, boundingBox.v2.y, boundingBox.v1.z ), object2image.transformY( boundingBox.v1.x, boundingBox.v2.y, boundingBox.v1.z ) );
-				projectedBounds.add( object2image.transformX( boundingBox.v2.x, boundingBox.v2.y, boundingBox.v1.z ), object2image.transformY( boundingBox.v2.x, boundingBox.v2.y, boundingBox.v1.z ) );
-				projectedBounds.add( object2image.transformX( boundingBox.v1.x, boundingBox.v1.y, boundingBox.v2.z ), object2image.transformY( boundingBox.v1.x, boundingBox.v1.y, boundingBox.v2.z ) );
-				projectedBounds.add( object2image.transformX( boundingBox.v2.x, boundingBox.v1.y, boundingBox.v2.z ), object2image.transformY( boundingBox.v2.x, boundingBox.v1.y, boundingBox.v2.z ) );
-				projectedBounds.add( object2image.transformX( boundingBox.v1.x, boundingBox.v2.y, boundingBox.v2.z ), object2image.transformY( boundingBox.v1.x, boundingBox.v2.y, boundingBox.v2.z ) );
-				projectedBounds.add( object2image.transformX( boundingBox.v2.x, boundingBox.v2.y, boundingBox.v2.z ), object2image.transformY( boundingBox.v2.x, boundingBox.v2.y, boundingBox.v2.z ) );
-
-				final double area = projectedBounds.area();
-				renderedNode = object.getLevelOfDetail( area );
-			}
-		}
+		final Node3D renderedNode = getRenderedNode( view2image, node2view, node );
 
 		if ( renderedNode != null )
 		{
@@ -117,10 +95,49 @@ public class Java2dRenderer
 		}
 	}
 
+	/**
+	 * Returns the node to render in place of the given node, which is a
+	 * low-detail version of the node if it is small enough on screen.
+	 *
+	 * @param view2image Projection transform for Graphics2D context.
+	 * @param node2view  Transformation from node's to view coordinate system.
+	 * @param node       Node to render.
+	 *
+	 * @return Node to render; <code>null</code> if nothing should be rendered.
+	 */
+	@Nullable
+	static Node3D getRenderedNode( @NotNull final Matrix3D view2image, @NotNull final Matrix3D node2view, @NotNull final Node3D node )
+	{
+		Node3D renderedNode = node;
+		if ( ( node instanceof Object3D ) && ( (Object3D)renderedNode ).isLowDetailAvailable() )
+		{
+			final Object3D object = (Object3D)renderedNode;
+			final Bounds3D boundingBox = object.getOrientedBoundingBox();
+			if ( boundingBox != null )
+			{
+				final ConvexHull2D projectedBounds = new ConvexHull2D( 8 );
+
+				final Matrix3D object2image = node2view.multiply( view2image );
+				projectedBounds.add( object2image.transformX( boundingBox.v1.x, boundingBox.v1.y, boundingBox.v1.z ), object2image.transformY( boundingBox.v1.x, boundingBox.v1.y, boundingBox.v1.z ) );
+				projectedBounds.add( object2image.transformX( boundingBox.v2.x, boundingBox.v1.y, boundingBox.v1.z ), object2image.transformY( boundingBox.v2.x, boundingBox.v1.y, boundingBox.v1.z ) );
+				projectedBounds.add( object2image.transformX( boundingBox.v1.x, boundingBox.v2.y, boundingBox.v1.z ), object2image.transformY( boundingBox.v1.x, boundingBox.v2.y, boundingBox.v1.z ) );
+				projectedBounds.add( object2image.transformX( boundingBox.v2.x, boundingBox.v2.y, boundingBox.v1.z ), object2image.transformY( boundingBox.v2.x, boundingBox.v2.y, boundingBox.v1.z ) );
+				projectedBounds.add( object2image.transformX( boundingBox.v1.x, boundingBox.v1.y, boundingBox.v2.z ), object2image.transformY( boundingBox.v1.x, boundingBox.v1.y, boundingBox.v2.z ) );
+				projectedBounds.add( object2image.transformX( boundingBox.v2.x, boundingBox.v1.y, boundingBox.v2.z ), object2image.transformY( boundingBox.v2.x, boundingBox.v1.y, boundingBox.v2.z ) );
+				projectedBounds.add( object2image.transformX( boundingBox.v1.x, boundingBox.v2.y, boundingBox.v2.z ), object2image.transformY( boundingBox.v1.x, boundingBox.v2.y, boundingBox.v2.z ) );
+				projectedBounds.add( object2image.transformX( boundingBox.v2.x, boundingBox.v2.y, boundingBox.v2.z ), object2image.transformY( boundingBox.v2.x, boundingBox.v2.y, boundingBox.v2.z ) );
+
+				final double area = projectedBounds.area();
+				renderedNode = object.getLevelOfDetail( area );
+			}
+		}
+		return renderedNode;
+	}
+
 	/**
 	 * @noinspection JavaDoc
 	 */
-	private static void paintObject( final Graphics2D g, final Matrix3D view2image, final Matrix3D object2view, final Object3D object, final RenderStyle renderStyle )
+	static void paintObject( final Graphics2D g, final Matrix3D view2image, final Matrix3D object2view, final Object3D object, final RenderStyle renderStyle )
 	{
 		final Color4 outlineColor = renderStyle.isStrokeEnabled() ? renderStyle.getStrokeColor() : null;
 		final Color4 fillColor = renderStyle.isFillEnabled() ? renderStyle.getFillColor() : null;
@@ -329,7 +346,7 @@ public class Java2dRenderer
 	 * @param x2 Maximum X-coordinate.
 	 * @param y2 Maximum Y-coordinate.
 	 */
-	private static void fillEtched( final Graphics2D g, final double x1, final double y1, final double x2, final double y2 )
+	static void fillEtched( final Graphics2D g, final double x1, final double y1, final double x2, final double y2 )
 	{
 		final int step = 16;
 
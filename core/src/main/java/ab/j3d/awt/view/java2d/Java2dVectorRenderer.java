@@ -0,0 +1,1611 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.awt.view.java2d;
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.util.*;
+import java.util.List;
+
+import ab.j3d.*;
+import ab.j3d.awt.*;
+import ab.j3d.geom.*;
+import ab.j3d.model.*;
+import ab.j3d.view.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Renders 3D objects to a {@link Graphics2D} context like {@link
+ * Java2dRenderer}, but optimized for vector output, such as printing and
+ * PDF/SVG export. Instead of painting each face separately, all nodes are
+ * collected first, after which:
+ * <ul>
+ * <li>back faces are removed;</li>
+ * <li>faces that are fully hidden behind opaque faces are removed using a
+ * coarse screen-space coverage grid;</li>
+ * <li>visible faces of an object with the same fill color are merged into a
+ * single outline, by removing edges that are shared by two faces;</li>
+ * <li>outlines are simplified and parts smaller than the tolerance are
+ * dropped;</li>
+ * <li>fills and strokes with the same colors are batched, if they don't
+ * overlap.</li>
+ * </ul>
+ * As a result, the size of the output depends on the visible detail, rather
+ * than on the number of faces.
+ * <p>
+ * Cones, cylinders, spheres and extruded shapes are painted using {@link
+ * Java2dRenderer}, which already uses compact shapes for these.
+ *
+ * @author Peter S. Heijnen
+ */
+public class Java2dVectorRenderer
+{
+	/**
+	 * Maximum number of cells along each axis of the coverage grid.
+	 */
+	private static final int MAXIMUM_GRID_SIZE = 256;
+
+	/**
+	 * Number of lighting levels. Lit fill colors are quantized, so faces
+	 * with almost the same orientation can be merged.
+	 */
+	private static final int LIGHTING_LEVELS = 64;
+
+	/**
+	 * Projection transform for Graphics2D context.
+	 */
+	@NotNull
+	private final Matrix3D _view2image;
+
+	/**
+	 * Tolerance in image units (typically pixels or points).
+	 */
+	private final double _tolerance;
+
+	/**
+	 * Whether hidden faces are removed.
+	 */
+	private boolean _occlusionCulling = true;
+
+	/**
+	 * Faces that were added.
+	 */
+	private final List<FaceData> _faces = new ArrayList<FaceData>();
+
+	/**
+	 * Objects that are painted by {@link Java2dRenderer}.
+	 */
+	private final List<PaintItem> _directItems = new ArrayList<PaintItem>();
+
+	/**
+	 * Coverage grid used by the last {@link #cullOccludedFaces()} call.
+	 */
+	@Nullable
+	private CoverageGrid _coverageGrid = null;
+
+	/**
+	 * Number of faces that were added.
+	 */
+	private int _faceCount = 0;
+
+	/**
+	 * Number of back faces that were removed.
+	 */
+	private int _backFaceCount = 0;
+
+	/**
+	 * Number of hidden faces that were removed.
+	 */
+	private int _occludedFaceCount = 0;
+
+	/**
+	 * Number of fill operations performed by the last paint.
+	 */
+	private int _fillCount = 0;
+
+	/**
+	 * Number of path segments painted by the last paint.
+	 */
+	private int _segmentCount = 0;
+
+	/**
+	 * Constructs a new renderer.
+	 *
+	 * @param view2image Projection transform for Graphics2D context (3D->2D,
+	 *                   pan, scale).
+	 * @param tolerance  Tolerance in image units. Detail smaller than this is
+	 *                   not painted.
+	 */
+	public Java2dVectorRenderer( @NotNull final Matrix3D view2image, final double tolerance )
+	{
+		_view2image = view2image;
+		_tolerance = tolerance;
+	}
+
+	/**
+	 * Returns whether faces that are completely hidden by other faces are
+	 * left out of the output.
+	 *
+	 * @return {@code true} if hidden faces are removed.
+	 */
+	public boolean isOcclusionCulling()
+	{
+		return _occlusionCulling;
+	}
+
+	/**
+	 * Sets whether faces that are completely hidden by other faces are left
+	 * out of the output. This is enabled by default.
+	 *
+	 * @param occlusionCulling {@code true} to remove hidden faces.
+	 */
+	public void setOcclusionCulling( final boolean occlusionCulling )
+	{
+		_occlusionCulling = occlusionCulling;
+	}
+
+	/**
+	 * Returns the number of faces that were added.
+	 *
+	 * @return Number of faces.
+	 */
+	public int getFaceCount()
+	{
+		return _faceCount;
+	}
+
+	/**
+	 * Returns the number of back faces that were removed.
+	 *
+	 * @return Number of back faces.
+	 */
+	public int getBackFaceCount()
+	{
+		return _backFaceCount;
+	}
+
+	/**
+	 * Returns the number of hidden faces that were removed by the last paint.
+	 *
+	 * @return Number of hidden faces.
+	 */
+	public int getOccludedFaceCount()
+	{
+		return _occludedFaceCount;
+	}
+
+	/**
+	 * Returns the number of fill operations performed by the last paint,
+	 * excluding objects painted by {@link Java2dRenderer}.
+	 *
+	 * @return Number of fills.
+	 */
+	public int getFillCount()
+	{
+		return _fillCount;
+	}
+
+	/**
+	 * Returns the number of path segments painted by the last paint,
+	 * excluding objects painted by {@link Java2dRenderer}.
+	 *
+	 * @return Number of path segments.
+	 */
+	public int getSegmentCount()
+	{
+		return _segmentCount;
+	}
+
+	/**
+	 * Adds 3D objects at the given node and its child nodes using the
+	 * specified render style.
+	 *
+	 * @param node2view         Transformation from node's to view coordinate
+	 *                          system.
+	 * @param node              Node to add.
+	 * @param renderStyle       Render style.
+	 * @param renderStyleFilter Render style filter.
+	 */
+	public void addNode( @NotNull final Matrix3D node2view, @NotNull final Node3D node, @NotNull final RenderStyle renderStyle, @Nullable final RenderStyleFilter renderStyleFilter )
+	{
+		final Node3D renderedNode = Java2dRenderer.getRenderedNode( _view2image, node2view, node );
+
+		if ( renderedNode != null )
+		{
+			final Matrix3D object2view;
+
+			if ( renderedNode instanceof Transform3D )
+			{
+				final Matrix3D transformTransform = ( (Transform3D)renderedNode ).getTransform();
+				object2view = transformTransform.multiply( node2view );
+			}
+			else
+			{
+				object2view = node2view;
+			}
+
+			RenderStyle nodeStyle = renderStyle;
+			if ( renderStyleFilter != null )
+			{
+				nodeStyle = renderStyleFilter.applyFilter( nodeStyle, renderedNode );
+			}
+
+			if ( renderedNode instanceof Object3D )
+			{
+				addObject( object2view, (Object3D)renderedNode, nodeStyle );
+			}
+
+			final int childCount = renderedNode.getChildCount();
+
+			for ( int i = 0; i < childCount; i++ )
+			{
+				addNode( object2view, renderedNode.getChild( i ), nodeStyle, renderStyleFilter );
+			}
+		}
+	}
+
+	/**
+	 * Adds the faces of an object.
+	 *
+	 * @param object2view Transformation from object to view coordinates.
+	 * @param object      Object to add.
+	 * @param renderStyle Render style.
+	 */
+	private void addObject( @NotNull final Matrix3D object2view, @NotNull final Object3D object, @NotNull final RenderStyle renderStyle )
+	{
+		final Color4 strokeColor = renderStyle.isStrokeEnabled() ? renderStyle.getStrokeColor() : null;
+		final Color4 fillColor = renderStyle.isFillEnabled() ? renderStyle.getFillColor() : null;
+
+		if ( ( strokeColor != null ) || ( fillColor != null ) )
+		{
+			final Matrix3D object2image = object2view.multiply( _view2image );
+
+			if ( ( object instanceof Cone3D ) || ( object instanceof Cylinder3D ) || ( object instanceof Sphere3D ) || ( object instanceof ExtrudedObject2D ) )
+			{
+				final Bounds3D bounds = object.getOrientedBoundingBox();
+				if ( bounds != null )
+				{
+					final DirectItem item = new DirectItem( object2view, object, renderStyle );
+					for ( int i = 0; i < 8; i++ )
+					{
+						final double x = ( ( i & 1 ) == 0 ) ? bounds.v1.x : bounds.v2.x;
+						final double y = ( ( i & 2 ) == 0 ) ? bounds.v1.y : bounds.v2.y;
+						final double z = ( ( i & 4 ) == 0 ) ? bounds.v1.z : bounds.v2.z;
+						item.addPoint( object2image.transformX( x, y, z ), object2image.transformY( x, y, z ), object2view.transformZ( x, y, z ) );
+					}
+					_directItems.add( item );
+				}
+			}
+			else
+			{
+				final ObjectData objectData = new ObjectData( object2view, object2image, object );
+				final double[] imageX = objectData._x;
+				final double[] imageY = objectData._y;
+				final double[] viewZ = objectData._z;
+
+				final int strokeRGB = ( strokeColor != null ) ? toARGB( strokeColor, 1.0f ) : 0;
+				final boolean applyLighting = renderStyle.isFillLightingEnabled();
+
+				for ( final FaceGroup faceGroup : object.getFaceGroups() )
+				{
+					for ( final Face3D face : faceGroup.getFaces() )
+					{
+						_faceCount++;
+
+						final Vector3D normal = face.getNormal();
+						final double normalZ = object2view.rotateZ( normal.x, normal.y, normal.z );
+						if ( normalZ < 0.0 )
+						{
+							_backFaceCount++;
+						}
+						else
+						{
+							int fillRGB = 0;
+							if ( fillColor != null )
+							{
+								float factor = 1.0f;
+								if ( applyLighting )
+								{
+									factor = Math.min( 1.0f, 0.5f + 0.5f * Math.abs( (float)normalZ ) );
+									factor = (float)Math.round( factor * (float)LIGHTING_LEVELS ) / (float)LIGHTING_LEVELS;
+								}
+								fillRGB = toARGB( fillColor, factor );
+							}
+
+							final FaceData faceData = new FaceData( objectData, face, fillRGB, strokeRGB );
+							for ( final Vertex3D vertex : face.getVertices() )
+							{
+								final int index = vertex.vertexCoordinateIndex;
+								faceData.addPoint( imageX[ index ], imageY[ index ], viewZ[ index ] );
+							}
+							_faces.add( faceData );
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Converts a color to an ARGB value.
+	 *
+	 * @param color  Color to convert.
+	 * @param factor Factor to apply to the red, green and blue components.
+	 *
+	 * @return ARGB value.
+	 */
+	private static int toARGB( @NotNull final Color4 color, final float factor )
+	{
+		return new Color( factor * color.getRedFloat(), factor * color.getGreenFloat(), factor * color.getBlueFloat(), color.getAlphaFloat() ).getRGB();
+	}
+
+	/**
+	 * Paints all nodes that were added.
+	 *
+	 * @param g Graphics2D context.
+	 */
+	public void paint( @NotNull final Graphics2D g )
+	{
+		_fillCount = 0;
+		_segmentCount = 0;
+
+		final List<FaceData> faces = _faces;
+		for ( final FaceData face : faces )
+		{
+			face._visible = true;
+		}
+
+		_occludedFaceCount = _occlusionCulling ? cullOccludedFaces() : 0;
+
+		/*
+		 * Group visible faces by object and colors.
+		 */
+		final Map<ObjectData, Map<Long, Group>> groupsByObject = new IdentityHashMap<ObjectData, Map<Long, Group>>();
+		final List<Group> groups = new ArrayList<Group>();
+		for ( final FaceData face : faces )
+		{
+			if ( face._visible )
+			{
+				Map<Long, Group> objectGroups = groupsByObject.get( face._object );
+				if ( objectGroups == null )
+				{
+					objectGroups = new HashMap<Long, Group>();
+					groupsByObject.put( face._object, objectGroups );
+				}
+
+				final Long key = Long.valueOf( ( (long)face._fillRGB << 32 ) | ( (long)face._strokeRGB & 0xffffffffL ) );
+				Group group = objectGroups.get( key );
+				if ( group == null )
+				{
+					group = new Group( face._object, face._fillRGB, face._strokeRGB );
+					objectGroups.put( key, group );
+					groups.add( group );
+				}
+				group.addFace( face );
+			}
+		}
+
+		/*
+		 * Build paths and sort everything from back to front.
+		 */
+		final List<PaintItem> items = new ArrayList<PaintItem>( groups.size() + _directItems.size() );
+		for ( final Group group : groups )
+		{
+			group.buildPaths( _tolerance );
+			if ( ( group._fill != null ) || ( group._stroke != null ) )
+			{
+				items.add( group );
+			}
+		}
+
+		for ( final PaintItem item : _directItems )
+		{
+			if ( !_occlusionCulling || !isOccluded( item ) )
+			{
+				items.add( item );
+			}
+		}
+
+		Collections.sort( items, new Comparator<PaintItem>()
+		{
+			@Override
+			public int compare( final PaintItem item1, final PaintItem item2 )
+			{
+				return Double.compare( item1._maxZ, item2._maxZ );
+			}
+		} );
+
+		/*
+		 * Batch consecutive groups with the same colors, as long as they
+		 * don't overlap, so the result is the same as painting them one by
+		 * one.
+		 */
+		Group batch = null;
+		for ( final PaintItem item : items )
+		{
+			if ( ( batch != null ) && ( item instanceof Group ) && batch.canAppend( (Group)item ) )
+			{
+				batch.append( (Group)item );
+			}
+			else
+			{
+				if ( batch != null )
+				{
+					paintGroup( g, batch );
+					batch = null;
+				}
+
+				if ( item instanceof Group )
+				{
+					batch = (Group)item;
+				}
+				else
+				{
+					final DirectItem directItem = (DirectItem)item;
+					Java2dRenderer.paintObject( g, _view2image, directItem._object2view, directItem._object, directItem._renderStyle );
+				}
+			}
+		}
+
+		if ( batch != null )
+		{
+			paintGroup( g, batch );
+		}
+	}
+
+	/**
+	 * Paints the fill and stroke of a group.
+	 *
+	 * @param g     Graphics2D context.
+	 * @param group Group to paint.
+	 */
+	private void paintGroup( @NotNull final Graphics2D g, @NotNull final Group group )
+	{
+		final Path2D fill = group._fill;
+		if ( fill != null )
+		{
+			final Color fillColor = new Color( group._fillRGB, true );
+			if ( fillColor.getAlpha() < 255 )
+			{
+				final Shape clip = g.getClip();
+				g.clip( fill );
+				g.setPaint( new Color( group._fillRGB ) );
+				final Rectangle2D bounds = fill.getBounds2D();
+				Java2dRenderer.fillEtched( g, bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY() );
+				g.setClip( clip );
+			}
+			else
+			{
+				g.setPaint( fillColor );
+				g.fill( fill );
+			}
+			_fillCount++;
+			_segmentCount += group._fillSegments;
+		}
+
+		final Path2D stroke = group._stroke;
+		if ( stroke != null )
+		{
+			g.setPaint( new Color( group._strokeRGB, true ) );
+			g.draw( stroke );
+			_segmentCount += group._strokeSegments;
+		}
+	}
+
+	/**
+	 * Marks faces that are fully hidden behind opaque faces as invisible. Faces
+	 * are processed from front to back. Each face is tested against a coarse
+	 * grid, which stores for each cell the depth of the nearest face that
+	 * fully covers the cell. Opaque faces that are not hidden are then added
+	 * to the grid. This is conservative: faces are only removed if they are
+	 * certainly hidden.
+	 *
+	 * @return Number of faces that were removed.
+	 */
+	private int cullOccludedFaces()
+	{
+		int result = 0;
+
+		final List<FaceData> faces = new ArrayList<FaceData>( _faces );
+		if ( !faces.isEmpty() )
+		{
+			double minX = Double.POSITIVE_INFINITY;
+			double minY = Double.POSITIVE_INFINITY;
+			double maxX = Double.NEGATIVE_INFINITY;
+			double maxY = Double.NEGATIVE_INFINITY;
+			for ( final FaceData face : faces )
+			{
+				minX = Math.min( minX, face._minX );
+				minY = Math.min( minY, face._minY );
+				maxX = Math.max( maxX, face._maxX );
+				maxY = Math.max( maxY, face._maxY );
+			}
+
+			final CoverageGrid grid = new CoverageGrid( minX, minY, maxX, maxY, _tolerance );
+			_coverageGrid = grid;
+
+			Collections.sort( faces, new Comparator<FaceData>()
+			{
+				@Override
+				public int compare( final FaceData face1, final FaceData face2 )
+				{
+					return Double.compare( face2._maxZ, face1._maxZ );
+				}
+			} );
+
+			final IntArray triangles = new IntArray();
+			final Set<Long> edges = new HashSet<Long>();
+			for ( final FaceData face : faces )
+			{
+				if ( grid.isOccluded( face._minX, face._minY, face._maxX, face._maxY, face._maxZ ) )
+				{
+					face._visible = false;
+					result++;
+				}
+				else if ( ( face._fillRGB >>> 24 ) == 255 )
+				{
+					final ObjectData object = face._object;
+					final double[] x = object._x;
+					final double[] y = object._y;
+					final long vertexCount = (long)x.length;
+					final List<Vertex3D> vertices = face._face.getVertices();
+
+					triangles.clear();
+					edges.clear();
+					for ( final TessellationPrimitive primitive : face._face.getTessellation().getPrimitives() )
+					{
+						final int[] primitiveTriangles = primitive.getTriangles();
+						for ( int i = 0; i < primitiveTriangles.length; i += 3 )
+						{
+							final int index1 = vertices.get( primitiveTriangles[ i ] ).vertexCoordinateIndex;
+							int index2 = vertices.get( primitiveTriangles[ i + 1 ] ).vertexCoordinateIndex;
+							int index3 = vertices.get( primitiveTriangles[ i + 2 ] ).vertexCoordinateIndex;
+
+							final double area = cross( x[ index1 ], y[ index1 ], x[ index2 ], y[ index2 ], x[ index3 ], y[ index3 ] );
+							if ( area != 0.0 )
+							{
+								if ( area < 0.0 )
+								{
+									final int temp = index2;
+									index2 = index3;
+									index3 = temp;
+								}
+
+								triangles.add( index1 );
+								triangles.add( index2 );
+								triangles.add( index3 );
+								Group.toggleEdge( edges, vertexCount, index1, index2 );
+								Group.toggleEdge( edges, vertexCount, index2, index3 );
+								Group.toggleEdge( edges, vertexCount, index3, index1 );
+							}
+						}
+					}
+
+					grid.addFace( x, y, triangles, edges, vertexCount, face._minX, face._minY, face._maxX, face._maxY, face._minZ );
+				}
+			}
+		}
+		else
+		{
+			_coverageGrid = null;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Tests whether a directly painted object is hidden.
+	 *
+	 * @param item Item to test.
+	 *
+	 * @return {@code true} if the item is hidden.
+	 */
+	private boolean isOccluded( @NotNull final PaintItem item )
+	{
+		final CoverageGrid grid = _coverageGrid;
+		return ( grid != null ) && grid.isOccluded( item._minX, item._minY, item._maxX, item._maxY, item._maxZ );
+	}
+
+	/**
+	 * Grid that stores, for each cell, the depth of the nearest face that fully
+	 * covers the cell. In view coordinates, larger Z values are nearer.
+	 */
+	private static class CoverageGrid
+	{
+		/**
+		 * Minimum X coordinate of the grid.
+		 */
+		private final double _x;
+
+		/**
+		 * Minimum Y coordinate of the grid.
+		 */
+		private final double _y;
+
+		/**
+		 * Size of a cell.
+		 */
+		private final double _cellSize;
+
+		/**
+		 * Number of cells along the X axis.
+		 */
+		private final int _width;
+
+		/**
+		 * Number of cells along the Y axis.
+		 */
+		private final int _height;
+
+		/**
+		 * Depth of the nearest face that fully covers each cell.
+		 */
+		private final double[] _depth;
+
+		/**
+		 * Constructs a new grid.
+		 *
+		 * @param minX      Minimum X coordinate.
+		 * @param minY      Minimum Y coordinate.
+		 * @param maxX      Maximum X coordinate.
+		 * @param maxY      Maximum Y coordinate.
+		 * @param tolerance Minimum cell size.
+		 */
+		CoverageGrid( final double minX, final double minY, final double maxX, final double maxY, final double tolerance )
+		{
+			final double cellSize = Math.max( Math.max( tolerance, 1.0e-6 ), Math.max( maxX - minX, maxY - minY ) / (double)MAXIMUM_GRID_SIZE );
+			_x = minX;
+			_y = minY;
+			_cellSize = cellSize;
+			_width = Math.max( 1, (int)Math.ceil( ( maxX - minX ) / cellSize ) );
+			_height = Math.max( 1, (int)Math.ceil( ( maxY - minY ) / cellSize ) );
+
+			final double[] depth = new double[ _width * _height ];
+			Arrays.fill( depth, Double.NEGATIVE_INFINITY );
+			_depth = depth;
+		}
+
+		/**
+		 * Tests whether a face is hidden behind faces in the grid.
+		 *
+		 * @param minX Minimum X coordinate of the face.
+		 * @param minY Minimum Y coordinate of the face.
+		 * @param maxX Maximum X coordinate of the face.
+		 * @param maxY Maximum Y coordinate of the face.
+		 * @param maxZ Depth of the nearest point of the face.
+		 *
+		 * @return {@code true} if the face is hidden.
+		 */
+		boolean isOccluded( final double minX, final double minY, final double maxX, final double maxY, final double maxZ )
+		{
+			final int cellX1 = (int)Math.floor( ( minX - _x ) / _cellSize );
+			final int cellY1 = (int)Math.floor( ( minY - _y ) / _cellSize );
+			final int cellX2 = (int)Math.floor( ( maxX - _x ) / _cellSize );
+			final int cellY2 = (int)Math.floor( ( maxY - _y ) / _cellSize );
+
+			boolean result = ( cellX1 >= 0 ) && ( cellY1 >= 0 ) && ( cellX2 < _width ) && ( cellY2 < _height );
+			for ( int cellY = cellY1; result && ( cellY <= cellY2 ); cellY++ )
+			{
+				for ( int cellX = cellX1; result && ( cellX <= cellX2 ); cellX++ )
+				{
+					result = _depth[ cellY * _width + cellX ] > maxZ;
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Adds a face to the grid. A cell is covered by the face if its center
+		 * is inside one of the face's triangles and none of the face's outline
+		 * edges touches the cell. Unlike testing each triangle separately, this
+		 * also covers cells on edges between triangles of the same face.
+		 *
+		 * @param x           Projected X coordinate per vertex.
+		 * @param y           Projected Y coordinate per vertex.
+		 * @param triangles   Counter-clockwise triangles of the face.
+		 * @param edges       Outline edges of the face.
+		 * @param vertexCount Number of vertices, used to decode edges.
+		 * @param minX        Minimum X coordinate of the face.
+		 * @param minY        Minimum Y coordinate of the face.
+		 * @param maxX        Maximum X coordinate of the face.
+		 * @param maxY        Maximum Y coordinate of the face.
+		 * @param depth       Depth of the farthest point of the face.
+		 */
+		void addFace( @NotNull final double[] x, @NotNull final double[] y, @NotNull final IntArray triangles, @NotNull final Set<Long> edges, final long vertexCount, final double minX, final double minY, final double maxX, final double maxY, final double depth )
+		{
+			final double cellSize = _cellSize;
+			final int cellX1 = Math.max( 0, (int)Math.ceil( ( minX - _x ) / cellSize ) );
+			final int cellY1 = Math.max( 0, (int)Math.ceil( ( minY - _y ) / cellSize ) );
+			final int cellX2 = Math.min( _width, (int)Math.floor( ( maxX - _x ) / cellSize ) ) - 1;
+			final int cellY2 = Math.min( _height, (int)Math.floor( ( maxY - _y ) / cellSize ) ) - 1;
+
+			if ( ( cellX1 <= cellX2 ) && ( cellY1 <= cellY2 ) )
+			{
+				final int triangleCount = triangles.size();
+				for ( int cellY = cellY1; cellY <= cellY2; cellY++ )
+				{
+					final double top = _y + (double)cellY * cellSize;
+					final double bottom = top + cellSize;
+					final double centerY = top + 0.5 * cellSize;
+
+					for ( int cellX = cellX1; cellX <= cellX2; cellX++ )
+					{
+						final int index = cellY * _width + cellX;
+						if ( _depth[ index ] < depth )
+						{
+							final double left = _x + (double)cellX * cellSize;
+							final double right = left + cellSize;
+							final double centerX = left + 0.5 * cellSize;
+
+							boolean covered = false;
+							for ( int i = 0; !covered && ( i < triangleCount ); i += 3 )
+							{
+								final int index1 = triangles.get( i );
+								final int index2 = triangles.get( i + 1 );
+								final int index3 = triangles.get( i + 2 );
+								covered = isInside( x[ index1 ], y[ index1 ], x[ index2 ], y[ index2 ], x[ index3 ], y[ index3 ], centerX, centerY );
+							}
+
+							for ( final Iterator<Long> it = edges.iterator(); covered && it.hasNext(); )
+							{
+								final long edge = it.next();
+								final int from = (int)( edge / vertexCount );
+								final int to = (int)( edge % vertexCount );
+								covered = !isTouching( x[ from ], y[ from ], x[ to ], y[ to ], left, top, right, bottom );
+							}
+
+							if ( covered )
+							{
+								_depth[ index ] = depth;
+							}
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Tests whether a point is inside a counter-clockwise triangle.
+		 *
+		 * @param ax X coordinate of the first vertex.
+		 * @param ay Y coordinate of the first vertex.
+		 * @param bx X coordinate of the second vertex.
+		 * @param by Y coordinate of the second vertex.
+		 * @param cx X coordinate of the third vertex.
+		 * @param cy Y coordinate of the third vertex.
+		 * @param x  X coordinate of the point.
+		 * @param y  Y coordinate of the point.
+		 *
+		 * @return {@code true} if the point is inside the triangle.
+		 */
+		private static boolean isInside( final double ax, final double ay, final double bx, final double by, final double cx, final double cy, final double x, final double y )
+		{
+			return ( cross( ax, ay, bx, by, x, y ) >= 0.0 ) && ( cross( bx, by, cx, cy, x, y ) >= 0.0 ) && ( cross( cx, cy, ax, ay, x, y ) >= 0.0 );
+		}
+
+		/**
+		 * Tests whether a line segment touches a rectangle.
+		 *
+		 * @param x1     X coordinate of the start of the segment.
+		 * @param y1     Y coordinate of the start of the segment.
+		 * @param x2     X coordinate of the end of the segment.
+		 * @param y2     Y coordinate of the end of the segment.
+		 * @param left   Left side of the rectangle.
+		 * @param top    Top side of the rectangle.
+		 * @param right  Right side of the rectangle.
+		 * @param bottom Bottom side of the rectangle.
+		 *
+		 * @return {@code true} if the segment touches the rectangle.
+		 */
+		private static boolean isTouching( final double x1, final double y1, final double x2, final double y2, final double left, final double top, final double right, final double bottom )
+		{
+			boolean result = ( Math.max( x1, x2 ) >= left ) && ( Math.min( x1, x2 ) <= right ) && ( Math.max( y1, y2 ) >= top ) && ( Math.min( y1, y2 ) <= bottom );
+			if ( result )
+			{
+				/*
+				 * The segment's line separates the rectangle's corners, or
+				 * passes through one of them.
+				 */
+				final double c1 = cross( x1, y1, x2, y2, left, top );
+				final double c2 = cross( x1, y1, x2, y2, right, top );
+				final double c3 = cross( x1, y1, x2, y2, left, bottom );
+				final double c4 = cross( x1, y1, x2, y2, right, bottom );
+				result = !( ( c1 > 0.0 ) && ( c2 > 0.0 ) && ( c3 > 0.0 ) && ( c4 > 0.0 ) ) && !( ( c1 < 0.0 ) && ( c2 < 0.0 ) && ( c3 < 0.0 ) && ( c4 < 0.0 ) );
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Returns the cross product of (b - a) and (c - a), which is twice the
+	 * signed area of triangle abc.
+	 *
+	 * @param ax X coordinate of a.
+	 * @param ay Y coordinate of a.
+	 * @param bx X coordinate of b.
+	 * @param by Y coordinate of b.
+	 * @param cx X coordinate of c.
+	 * @param cy Y coordinate of c.
+	 *
+	 * @return Cross product.
+	 */
+	private static double cross( final double ax, final double ay, final double bx, final double by, final double cx, final double cy )
+	{
+		return ( bx - ax ) * ( cy - ay ) - ( by - ay ) * ( cx - ax );
+	}
+
+	/**
+	 * Projected vertex coordinates of an object.
+	 */
+	private static class ObjectData
+	{
+		/**
+		 * X coordinate of each vertex in image coordinates.
+		 */
+		final double[] _x;
+
+		/**
+		 * Y coordinate of each vertex in image coordinates.
+		 */
+		final double[] _y;
+
+		/**
+		 * Z coordinate of each vertex in view coordinates.
+		 */
+		final double[] _z;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param object2view  Transforms object to view coordinates.
+		 * @param object2image Transforms object to image coordinates.
+		 * @param object       Object.
+		 */
+		ObjectData( @NotNull final Matrix3D object2view, @NotNull final Matrix3D object2image, @NotNull final Object3D object )
+		{
+			final List<Vector3D> vertexCoordinates = object.getVertexCoordinates();
+			final int count = vertexCoordinates.size();
+			final double[] x = new double[ count ];
+			final double[] y = new double[ count ];
+			final double[] z = new double[ count ];
+			for ( int i = 0; i < count; i++ )
+			{
+				final Vector3D point = vertexCoordinates.get( i );
+				x[ i ] = object2image.transformX( point );
+				y[ i ] = object2image.transformY( point );
+				z[ i ] = object2view.transformZ( point );
+			}
+			_x = x;
+			_y = y;
+			_z = z;
+		}
+	}
+
+	/**
+	 * Something to be painted, with its bounds in image coordinates and its
+	 * depth range in view coordinates.
+	 */
+	private abstract static class PaintItem
+	{
+		/**
+		 * Minimum X coordinate.
+		 */
+		double _minX = Double.POSITIVE_INFINITY;
+
+		/**
+		 * Minimum Y coordinate.
+		 */
+		double _minY = Double.POSITIVE_INFINITY;
+
+		/**
+		 * Minimum Z coordinate (farthest).
+		 */
+		double _minZ = Double.POSITIVE_INFINITY;
+
+		/**
+		 * Maximum X coordinate.
+		 */
+		double _maxX = Double.NEGATIVE_INFINITY;
+
+		/**
+		 * Maximum Y coordinate.
+		 */
+		double _maxY = Double.NEGATIVE_INFINITY;
+
+		/**
+		 * Maximum Z coordinate (nearest).
+		 */
+		double _maxZ = Double.NEGATIVE_INFINITY;
+
+		/**
+		 * Includes a point in the bounds.
+		 *
+		 * @param x X coordinate in image coordinates.
+		 * @param y Y coordinate in image coordinates.
+		 * @param z Z coordinate in view coordinates.
+		 */
+		void addPoint( final double x, final double y, final double z )
+		{
+			_minX = Math.min( _minX, x );
+			_minY = Math.min( _minY, y );
+			_minZ = Math.min( _minZ, z );
+			_maxX = Math.max( _maxX, x );
+			_maxY = Math.max( _maxY, y );
+			_maxZ = Math.max( _maxZ, z );
+		}
+
+		/**
+		 * Includes the bounds of another item.
+		 *
+		 * @param other Other item.
+		 */
+		void addBounds( @NotNull final PaintItem other )
+		{
+			_minX = Math.min( _minX, other._minX );
+			_minY = Math.min( _minY, other._minY );
+			_minZ = Math.min( _minZ, other._minZ );
+			_maxX = Math.max( _maxX, other._maxX );
+			_maxY = Math.max( _maxY, other._maxY );
+			_maxZ = Math.max( _maxZ, other._maxZ );
+		}
+
+		/**
+		 * Returns whether the image bounds of this item overlap another.
+		 *
+		 * @param other Other item.
+		 *
+		 * @return {@code true} if the items overlap.
+		 */
+		boolean overlaps( @NotNull final PaintItem other )
+		{
+			return ( _minX <= other._maxX ) && ( _maxX >= other._minX ) && ( _minY <= other._maxY ) && ( _maxY >= other._minY );
+		}
+	}
+
+	/**
+	 * Object painted by {@link Java2dRenderer}.
+	 */
+	private static class DirectItem
+	extends PaintItem
+	{
+		/**
+		 * Transforms object to view coordinates.
+		 */
+		final Matrix3D _object2view;
+
+		/**
+		 * Object to paint.
+		 */
+		final Object3D _object;
+
+		/**
+		 * Render style.
+		 */
+		final RenderStyle _renderStyle;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param object2view Transforms object to view coordinates.
+		 * @param object      Object to paint.
+		 * @param renderStyle Render style.
+		 */
+		DirectItem( final Matrix3D object2view, final Object3D object, final RenderStyle renderStyle )
+		{
+			_object2view = object2view;
+			_object = object;
+			_renderStyle = renderStyle;
+		}
+	}
+
+	/**
+	 * Front face of an object.
+	 */
+	private static class FaceData
+	extends PaintItem
+	{
+		/**
+		 * Object that the face belongs to.
+		 */
+		final ObjectData _object;
+
+		/**
+		 * Face.
+		 */
+		final Face3D _face;
+
+		/**
+		 * Fill color (ARGB); 0 if not filled.
+		 */
+		final int _fillRGB;
+
+		/**
+		 * Stroke color (ARGB); 0 if not stroked.
+		 */
+		final int _strokeRGB;
+
+		/**
+		 * Whether the face is visible.
+		 */
+		boolean _visible = true;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param object    Object that the face belongs to.
+		 * @param face      Face.
+		 * @param fillRGB   Fill color (ARGB); 0 if not filled.
+		 * @param strokeRGB Stroke color (ARGB); 0 if not stroked.
+		 */
+		FaceData( final ObjectData object, final Face3D face, final int fillRGB, final int strokeRGB )
+		{
+			_object = object;
+			_face = face;
+			_fillRGB = fillRGB;
+			_strokeRGB = strokeRGB;
+		}
+	}
+
+	/**
+	 * Visible faces of an object with the same colors, which are painted as
+	 * a single fill and stroke.
+	 */
+	private static class Group
+	extends PaintItem
+	{
+		/**
+		 * Object that the faces belong to.
+		 */
+		final ObjectData _object;
+
+		/**
+		 * Fill color (ARGB); 0 if not filled.
+		 */
+		final int _fillRGB;
+
+		/**
+		 * Stroke color (ARGB); 0 if not stroked.
+		 */
+		final int _strokeRGB;
+
+		/**
+		 * Faces in the group.
+		 */
+		final List<FaceData> _faces = new ArrayList<FaceData>();
+
+		/**
+		 * Fill path; <code>null</code> if nothing is filled.
+		 */
+		Path2D _fill = null;
+
+		/**
+		 * Number of segments in the fill path.
+		 */
+		int _fillSegments = 0;
+
+		/**
+		 * Stroke path; <code>null</code> if nothing is stroked.
+		 */
+		Path2D _stroke = null;
+
+		/**
+		 * Number of segments in the stroke path.
+		 */
+		int _strokeSegments = 0;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param object    Object that the faces belong to.
+		 * @param fillRGB   Fill color (ARGB); 0 if not filled.
+		 * @param strokeRGB Stroke color (ARGB); 0 if not stroked.
+		 */
+		Group( final ObjectData object, final int fillRGB, final int strokeRGB )
+		{
+			_object = object;
+			_fillRGB = fillRGB;
+			_strokeRGB = strokeRGB;
+		}
+
+		/**
+		 * Adds a face to the group.
+		 *
+		 * @param face Face to add.
+		 */
+		void addFace( @NotNull final FaceData face )
+		{
+			_faces.add( face );
+			addBounds( face );
+		}
+
+		/**
+		 * Returns whether the given group can be painted together with this
+		 * group, without changing the result.
+		 *
+		 * @param other Group to test.
+		 *
+		 * @return {@code true} if the group can be appended.
+		 */
+		boolean canAppend( @NotNull final Group other )
+		{
+			return ( _fillRGB == other._fillRGB ) && ( _strokeRGB == other._strokeRGB ) && !overlaps( other );
+		}
+
+		/**
+		 * Appends the paths of the given group to this group.
+		 *
+		 * @param other Group to append.
+		 */
+		void append( @NotNull final Group other )
+		{
+			if ( other._fill != null )
+			{
+				if ( _fill == null )
+				{
+					_fill = new Path2D.Float( Path2D.WIND_NON_ZERO );
+				}
+				_fill.append( other._fill, false );
+				_fillSegments += other._fillSegments;
+			}
+
+			if ( other._stroke != null )
+			{
+				if ( _stroke == null )
+				{
+					_stroke = new Path2D.Float();
+				}
+				_stroke.append( other._stroke, false );
+				_strokeSegments += other._strokeSegments;
+			}
+
+			addBounds( other );
+		}
+
+		/**
+		 * Builds the fill and stroke paths of the group.
+		 *
+		 * @param tolerance Tolerance in image units.
+		 */
+		void buildPaths( final double tolerance )
+		{
+			final ObjectData object = _object;
+			final double[] x = object._x;
+			final double[] y = object._y;
+			final long vertexCount = (long)x.length;
+
+			if ( ( _fillRGB >>> 24 ) != 0 )
+			{
+				/*
+				 * Collect the edges of all triangles, made counter-clockwise.
+				 * Edges shared by two triangles cancel out, leaving only the
+				 * outline of the merged faces.
+				 */
+				final Set<Long> edges = new LinkedHashSet<Long>();
+				for ( final FaceData face : _faces )
+				{
+					final List<Vertex3D> vertices = face._face.getVertices();
+					for ( final TessellationPrimitive primitive : face._face.getTessellation().getPrimitives() )
+					{
+						final int[] triangles = primitive.getTriangles();
+						for ( int i = 0; i < triangles.length; i += 3 )
+						{
+							final int index1 = vertices.get( triangles[ i ] ).vertexCoordinateIndex;
+							int index2 = vertices.get( triangles[ i + 1 ] ).vertexCoordinateIndex;
+							int index3 = vertices.get( triangles[ i + 2 ] ).vertexCoordinateIndex;
+
+							final double area = cross( x[ index1 ], y[ index1 ], x[ index2 ], y[ index2 ], x[ index3 ], y[ index3 ] );
+							if ( area != 0.0 )
+							{
+								if ( area < 0.0 )
+								{
+									final int temp = index2;
+									index2 = index3;
+									index3 = temp;
+								}
+
+								toggleEdge( edges, vertexCount, index1, index2 );
+								toggleEdge( edges, vertexCount, index2, index3 );
+								toggleEdge( edges, vertexCount, index3, index1 );
+							}
+						}
+					}
+				}
+
+				if ( !edges.isEmpty() )
+				{
+					final PathBuilder builder = new PathBuilder( tolerance, Path2D.WIND_NON_ZERO );
+					traceLoops( builder, edges, vertexCount );
+					if ( builder.getSegmentCount() > 0 )
+					{
+						_fill = builder.getPath();
+						_fillSegments = builder.getSegmentCount();
+					}
+				}
+			}
+
+			if ( ( _strokeRGB >>> 24 ) != 0 )
+			{
+				/*
+				 * Draw each outline edge only once, joining consecutive edges
+				 * into polylines.
+				 */
+				final Set<Long> edges = new HashSet<Long>();
+				final PathBuilder builder = new PathBuilder( tolerance, Path2D.WIND_NON_ZERO );
+				int last = -1;
+
+				for ( final FaceData face : _faces )
+				{
+					final List<Vertex3D> vertices = face._face.getVertices();
+					for ( final int[] outline : face._face.getTessellation().getOutlines() )
+					{
+						for ( int i = 1; i < outline.length; i++ )
+						{
+							final int index1 = vertices.get( outline[ i - 1 ] ).vertexCoordinateIndex;
+							final int index2 = vertices.get( outline[ i ] ).vertexCoordinateIndex;
+							if ( edges.add( Long.valueOf( (long)Math.min( index1, index2 ) * vertexCount + (long)Math.max( index1, index2 ) ) ) )
+							{
+								if ( index1 != last )
+								{
+									builder.moveTo( x[ index1 ], y[ index1 ] );
+								}
+								builder.lineTo( x[ index2 ], y[ index2 ] );
+								last = index2;
+							}
+							else
+							{
+								last = -1;
+							}
+						}
+					}
+				}
+
+				builder.flush();
+				if ( builder.getSegmentCount() > 0 )
+				{
+					_stroke = builder.getPath();
+					_strokeSegments = builder.getSegmentCount();
+				}
+			}
+		}
+
+		/**
+		 * Adds a directed edge, or removes it if the opposite edge exists.
+		 *
+		 * @param edges       Set of edges.
+		 * @param vertexCount Number of vertices.
+		 * @param from        Start vertex.
+		 * @param to          End vertex.
+		 */
+		private static void toggleEdge( @NotNull final Set<Long> edges, final long vertexCount, final int from, final int to )
+		{
+			if ( from != to )
+			{
+				if ( !edges.remove( Long.valueOf( (long)to * vertexCount + (long)from ) ) )
+				{
+					edges.add( Long.valueOf( (long)from * vertexCount + (long)to ) );
+				}
+			}
+		}
+
+		/**
+		 * Joins directed edges into closed loops, and adds them to a path.
+		 *
+		 * @param builder     Builds the path.
+		 * @param edges       Directed edges.
+		 * @param vertexCount Number of vertices.
+		 */
+		private void traceLoops( @NotNull final PathBuilder builder, @NotNull final Set<Long> edges, final long vertexCount )
+		{
+			final double[] x = _object._x;
+			final double[] y = _object._y;
+
+			/*
+			 * Sort edges by start vertex, so outgoing edges are found using
+			 * binary search.
+			 */
+			final long[] sorted = new long[ edges.size() ];
+			int count = 0;
+			for ( final Long edge : edges )
+			{
+				sorted[ count++ ] = edge.longValue();
+			}
+			Arrays.sort( sorted );
+			final boolean[] used = new boolean[ sorted.length ];
+
+			for ( int first = 0; first < sorted.length; first++ )
+			{
+				if ( !used[ first ] )
+				{
+					used[ first ] = true;
+					final int start = (int)( sorted[ first ] / vertexCount );
+					int current = (int)( sorted[ first ] % vertexCount );
+					builder.moveTo( x[ start ], y[ start ] );
+
+					while ( current != start )
+					{
+						builder.lineTo( x[ current ], y[ current ] );
+
+						int next = Arrays.binarySearch( sorted, (long)current * vertexCount );
+						if ( next < 0 )
+						{
+							next = -next - 1;
+						}
+
+						while ( ( next < sorted.length ) && ( ( sorted[ next ] / vertexCount ) == (long)current ) && used[ next ] )
+						{
+							next++;
+						}
+
+						if ( ( next >= sorted.length ) || ( ( sorted[ next ] / vertexCount ) != (long)current ) )
+						{
+							break;
+						}
+
+						used[ next ] = true;
+						current = (int)( sorted[ next ] % vertexCount );
+					}
+
+					builder.closePath();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Builds a path, leaving out points that are too close to the previous
+	 * point or that lie on the line between their neighbours, and parts
+	 * smaller than the tolerance.
+	 */
+	private static class PathBuilder
+	{
+		/**
+		 * Tolerance in image units.
+		 */
+		private final double _tolerance;
+
+		/**
+		 * Resulting path.
+		 */
+		private final Path2D _path;
+
+		/**
+		 * Points of the current polyline (x, y pairs).
+		 */
+		private final DoubleArray _points = new DoubleArray();
+
+		/**
+		 * Whether the directions in which the current segment may be extended
+		 * are limited by points that were left out.
+		 */
+		private boolean _coneLimited = false;
+
+		/**
+		 * Reference angle of the cone of allowed directions.
+		 */
+		private double _coneAngle = 0.0;
+
+		/**
+		 * Minimum allowed direction, relative to the reference angle.
+		 */
+		private double _coneMin = 0.0;
+
+		/**
+		 * Maximum allowed direction, relative to the reference angle.
+		 */
+		private double _coneMax = 0.0;
+
+		/**
+		 * Number of segments added to the path.
+		 */
+		private int _segmentCount = 0;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param tolerance Tolerance in image units.
+		 * @param windingRule Winding rule of the path.
+		 */
+		PathBuilder( final double tolerance, final int windingRule )
+		{
+			_tolerance = tolerance;
+			_path = new Path2D.Float( windingRule );
+		}
+
+		Path2D getPath()
+		{
+			return _path;
+		}
+
+		int getSegmentCount()
+		{
+			return _segmentCount;
+		}
+
+		/**
+		 * Starts a new polyline.
+		 *
+		 * @param x X coordinate.
+		 * @param y Y coordinate.
+		 */
+		void moveTo( final double x, final double y )
+		{
+			flush( false );
+			_points.add( x );
+			_points.add( y );
+		}
+
+		/**
+		 * Adds a point to the current polyline.
+		 *
+		 * @param x X coordinate.
+		 * @param y Y coordinate.
+		 */
+		void lineTo( final double x, final double y )
+		{
+			final DoubleArray points = _points;
+			final int size = points.size();
+
+			if ( ( size >= 4 ) && canSkipLastPoint( x, y ) )
+			{
+				points.set( size - 2, x );
+				points.set( size - 1, y );
+			}
+			else
+			{
+				_coneLimited = false;
+				points.add( x );
+				points.add( y );
+			}
+		}
+
+		/**
+		 * Returns whether the last point of the current polyline can be left
+		 * out when adding the given point. This is the case if it is close to
+		 * the point before it, or if the line to the given point stays within
+		 * the tolerance of all left-out points.
+		 *
+		 * Each left-out point limits the directions from the last kept point
+		 * to a cone around that point. The intersection of these cones is
+		 * kept, so the test takes constant time and long runs of (nearly)
+		 * collinear points are reduced to a single segment.
+		 *
+		 * @param x X coordinate of the point being added.
+		 * @param y Y coordinate of the point being added.
+		 *
+		 * @return {@code true} if the last point can be left out.
+		 */
+		private boolean canSkipLastPoint( final double x, final double y )
+		{
+			final DoubleArray points = _points;
+			final int size = points.size();
+			final double tolerance = _tolerance;
+
+			final double x1 = points.get( size - 4 );
+			final double y1 = points.get( size - 3 );
+			final double x2 = points.get( size - 2 );
+			final double y2 = points.get( size - 1 );
+
+			boolean result;
+			if ( ( Math.abs( x2 - x1 ) < tolerance ) && ( Math.abs( y2 - y1 ) < tolerance ) )
+			{
+				result = true;
+			}
+			else
+			{
+				result = ( ( x2 - x1 ) * ( x - x2 ) + ( y2 - y1 ) * ( y - y2 ) >= 0.0 );
+				if ( result )
+				{
+					final double distance = Math.hypot( x2 - x1, y2 - y1 );
+					final double angle = Math.atan2( y2 - y1, x2 - x1 );
+					final double spread = Math.asin( Math.min( 1.0, 0.5 * tolerance / distance ) );
+
+					final double reference = _coneLimited ? _coneAngle : angle;
+					final double relative = normalizeAngle( angle - reference );
+					final double coneMin = _coneLimited ? Math.max( _coneMin, relative - spread ) : relative - spread;
+					final double coneMax = _coneLimited ? Math.min( _coneMax, relative + spread ) : relative + spread;
+
+					final double direction = normalizeAngle( Math.atan2( y - y1, x - x1 ) - reference );
+					result = ( coneMin <= direction ) && ( direction <= coneMax );
+					if ( result )
+					{
+						_coneLimited = true;
+						_coneAngle = reference;
+						_coneMin = coneMin;
+						_coneMax = coneMax;
+					}
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Normalizes an angle to the range from -&pi; to &pi;.
+		 *
+		 * @param angle Angle in radians.
+		 *
+		 * @return Normalized angle.
+		 */
+		private static double normalizeAngle( final double angle )
+		{
+			return Math.IEEEremainder( angle, 2.0 * Math.PI );
+		}
+
+		/**
+		 * Closes the current polyline.
+		 */
+		void closePath()
+		{
+			flush( true );
+		}
+
+		/**
+		 * Adds the current polyline to the path.
+		 */
+		void flush()
+		{
+			flush( false );
+		}
+
+		/**
+		 * Adds the current polyline to the path, unless it is smaller than the
+		 * tolerance.
+		 *
+		 * @param close Whether to close the polyline.
+		 */
+		private void flush( final boolean close )
+		{
+			final DoubleArray points = _points;
+			final int size = points.size();
+			if ( size >= 4 )
+			{
+				double minX = Double.POSITIVE_INFINITY;
+				double minY = Double.POSITIVE_INFINITY;
+				double maxX = Double.NEGATIVE_INFINITY;
+				double maxY = Double.NEGATIVE_INFINITY;
+				for ( int i = 0; i < size; i += 2 )
+				{
+					minX = Math.min( minX, points.get( i ) );
+					minY = Math.min( minY, points.get( i + 1 ) );
+					maxX = Math.max( maxX, points.get( i ) );
+					maxY = Math.max( maxY, points.get( i + 1 ) );
+				}
+
+				final double tolerance = _tolerance;
+				if ( ( maxX - minX >= tolerance ) || ( maxY - minY >= tolerance ) )
+				{
+					final Path2D path = _path;
+					path.moveTo( points.get( 0 ), points.get( 1 ) );
+					for ( int i = 2; i < size; i += 2 )
+					{
+						path.lineTo( points.get( i ), points.get( i + 1 ) );
+					}
+					_segmentCount += size / 2 - 1;
+
+					if ( close )
+					{
+						path.closePath();
+						_segmentCount++;
+					}
+				}
+			}
+			points.clear();
+			_coneLimited = false;
+		}
+	}
+}
@@ -157,6 +157,7 @@ extends OffscreenView3D
 	public void contentNodeAdded( final @NotNull SceneUpdateEvent event )
 	{
 		_bspTreeDirty = true;
+		_viewComponent.invalidateNodeStyles();
 		super.contentNodeAdded( event );
 	}
 
@@ -164,6 +165,7 @@ extends OffscreenView3D
 	public void contentNodeContentUpdated( final @NotNull SceneUpdateEvent event )
 	{
 		_bspTreeDirty = true;
+		_viewComponent.invalidateNodeStyles();
 		super.contentNodeContentUpdated( event );
 	}
 
@@ -171,6 +173,7 @@ extends OffscreenView3D
 	public void contentNodePropertyChanged( final @NotNull SceneUpdateEvent event )
 	{
 		_bspTreeDirty = true;
+		_viewComponent.invalidateNodeStyles();
 		super.contentNodePropertyChanged( event );
 	}
 
@@ -178,9 +181,18 @@ extends OffscreenView3D
 	public void contentNodeRemoved( final @NotNull SceneUpdateEvent event )
 	{
 		_bspTreeDirty = true;
+		_viewComponent.invalidateNodeStyles();
 		super.contentNodeRemoved( event );
 	}
 
+	@Override
+	public void contentNodesChanged( final @NotNull SceneUpdateEvent event )
+	{
+		_bspTreeDirty = true;
+		_viewComponent.invalidateNodeStyles();
+		super.contentNodesChanged( event );
+	}
+
 	@Override
 	public void update()
 	{
@@ -241,6 +253,18 @@ extends OffscreenView3D
 		_viewComponent.setSize( width, height );
 	}
 
+	@Override
+	protected void beginBatch()
+	{
+		_viewComponent.setNodeStyleCaching( true );
+	}
+
+	@Override
+	protected void endBatch()
+	{
+		_viewComponent.setNodeStyleCaching( false );
+	}
+
 	@Override
 	public BufferedImage renderImage( final int width, final int height )
 	{
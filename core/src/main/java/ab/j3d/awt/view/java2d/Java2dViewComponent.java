@@ -22,6 +22,7 @@ package ab.j3d.awt.view.java2d;
 
 import java.awt.*;
 import java.util.*;
+import java.util.List;
 import javax.swing.*;
 
 import ab.j3d.*;
@@ -49,6 +50,22 @@ class Java2dViewComponent
 	 */
 	private final Java2dView _view;
 
+	/**
+	 * Whether render styles of nodes are cached between paints.
+	 */
+	private boolean _nodeStyleCaching = false;
+
+	/**
+	 * Cached render styles of nodes.
+	 */
+	@Nullable
+	private Map<Node3D, RenderStyle> _cachedNodeStyles = null;
+
+	/**
+	 * Number of objects visited while determining the cached render styles.
+	 */
+	private int _cachedObjectCount = 0;
+
 	/**
 	 * Construct view component.
 	 *
@@ -78,26 +95,17 @@ class Java2dViewComponent
 		final Java2dView view = _view;
 		final Scene scene = view.getScene();
 
+		final RenderMetrics metrics = view.getRenderMetrics();
+		metrics.beginFrame();
+
 		/* Setup initial style and apply style filters to this view. */
 		final RenderStyle defaultStyle = new RenderStyle();
 		final Collection<RenderStyleFilter> styleFilters = view.getRenderStyleFilters();
 		final RenderStyle viewStyle = defaultStyle.applyFilters( styleFilters , view );
 
-		final Map<Node3D,RenderStyle> nodeStyles = new HashMap<Node3D, RenderStyle>( );
-		scene.walk( new Node3DVisitor()
-		{
-			public boolean visitNode( @NotNull final Node3DPath path )
-			{
-				final Node3D node = path.getNode();
-
-				final Node3DPath parentPath = path.getParent();
-				final RenderStyle parentStyle = ( parentPath != null ) ? nodeStyles.get( parentPath.getNode() ) : viewStyle;
-
-				final RenderStyle nodeStyle = parentStyle.applyFilters( styleFilters, node );
-				nodeStyles.put( node, nodeStyle );
-				return true;
-			}
-		} );
+		final long sceneWalkStart = metrics.startPhase();
+		final Map<Node3D, RenderStyle> nodeStyles = getNodeStyles( scene, viewStyle, styleFilters, metrics );
+		metrics.endPhase( RenderPhase.SCENE_WALK, sceneWalkStart );
 
 		final Matrix3D view2scene = view.getView2Scene();
 		final Vector3D viewPoint  = view2scene.getTranslation();
@@ -110,8 +118,16 @@ class Java2dViewComponent
 		final int componentHeight = getHeight();
 		final int imageHeight = componentHeight - insets.top - insets.bottom;
 
+		final long cullingStart = metrics.startPhase();
+		final boolean frustumCulling = view.isViewFrustumCulling();
+		final boolean occlusionCulling = view.isOcclusionCulling();
+		final Set<Object3D> visibleObjects = ( frustumCulling || occlusionCulling ) ? getVisibleObjects( scene, frustumCulling ? view.getFrustumCuller() : null, occlusionCulling ? view.getOcclusionCuller() : null, projector, scene2view, styleFilters, viewStyle ) : null;
+		metrics.endPhase( RenderPhase.CULLING, cullingStart );
+
+		final long sortingStart = metrics.startPhase();
 		final BSPTree bspTree = view.getBspTree();
-		final RenderedPolygon[] renderQueue = bspTree.getRenderQueue( viewPoint, projector, scene2view, viewStyle.isBackfaceCullingEnabled(), true );
+		final RenderedPolygon[] renderQueue = bspTree.getRenderQueue( viewPoint, projector, scene2view, viewStyle.isBackfaceCullingEnabled(), true, visibleObjects );
+		metrics.endPhase( RenderPhase.SORTING, sortingStart );
 
 		if ( isOpaque() )
 		{
@@ -121,18 +137,157 @@ class Java2dViewComponent
 
 		final Graphics2D g2d = (Graphics2D)g.create( insets.left, insets.top, imageWidth, imageHeight );
 
+		final long drawStart = metrics.startPhase();
+		int drawCallCount = 0;
 		for ( final RenderedPolygon polygon : renderQueue )
 		{
 			final RenderStyle renderStyle = nodeStyles.get( polygon._object );
 			if ( renderStyle != null )
 			{
 				paintPolygon( g2d, polygon, renderStyle );
+				drawCallCount++;
 			}
 		}
+		metrics.addDrawCallCount( drawCallCount );
+		metrics.endPhase( RenderPhase.DRAW, drawStart );
 
 		view.paintOverlay( g2d );
 
 		g2d.dispose();
+
+		metrics.endFrame();
+	}
+
+	/**
+	 * Enables or disables caching of node render styles between paints. This
+	 * is used while rendering a batch of images of the same scene, since the
+	 * render styles don't depend on the camera.
+	 *
+	 * @param   enabled     {@code true} to enable caching.
+	 */
+	void setNodeStyleCaching( final boolean enabled )
+	{
+		_nodeStyleCaching = enabled;
+		_cachedNodeStyles = null;
+	}
+
+	/**
+	 * Discards any cached node render styles, e.g. when the scene changes.
+	 */
+	void invalidateNodeStyles()
+	{
+		_cachedNodeStyles = null;
+	}
+
+	/**
+	 * Returns render styles for all nodes in the scene.
+	 *
+	 * @param   scene           Scene to get render styles for.
+	 * @param   viewStyle       Render style of the view.
+	 * @param   styleFilters    Render style filters to apply.
+	 * @param   metrics         Render metrics to update.
+	 *
+	 * @return  Render style for each node.
+	 */
+	private Map<Node3D, RenderStyle> getNodeStyles( final Scene scene, final RenderStyle viewStyle, final Collection<RenderStyleFilter> styleFilters, final RenderMetrics metrics )
+	{
+		Map<Node3D, RenderStyle> result = _cachedNodeStyles;
+		if ( result == null )
+		{
+			final Map<Node3D, RenderStyle> nodeStyles = new HashMap<Node3D, RenderStyle>();
+			final int[] objectCount = { 0 };
+			scene.walk( new Node3DVisitor()
+			{
+				public boolean visitNode( @NotNull final Node3DPath path )
+				{
+					final Node3D node = path.getNode();
+
+					final Node3DPath parentPath = path.getParent();
+					final RenderStyle parentStyle = ( parentPath != null ) ? nodeStyles.get( parentPath.getNode() ) : viewStyle;
+
+					final RenderStyle nodeStyle = parentStyle.applyFilters( styleFilters, node );
+					nodeStyles.put( node, nodeStyle );
+
+					if ( node instanceof Object3D )
+					{
+						objectCount[ 0 ]++;
+					}
+					return true;
+				}
+			} );
+			result = nodeStyles;
+			_cachedObjectCount = objectCount[ 0 ];
+
+			if ( _nodeStyleCaching )
+			{
+				_cachedNodeStyles = result;
+			}
+		}
+
+		metrics.addObjectCount( _cachedObjectCount );
+
+		return result;
+	}
+
+	/**
+	 * Returns all objects in the scene that are (potentially) visible, using
+	 * hierarchical view frustum culling and/or occlusion culling.
+	 *
+	 * @param   scene           Scene to cull.
+	 * @param   culler          Frustum culler to use; {@code null} to skip
+	 *                          view frustum culling.
+	 * @param   occlusionCuller Occlusion culler to use; {@code null} to skip
+	 *                          occlusion culling.
+	 * @param   projector       Projector that defines the viewing frustum.
+	 * @param   scene2view      Transformation from scene to view coordinates.
+	 * @param   styleFilters    Style filters to apply.
+	 * @param   viewStyle       Render style of the view.
+	 *
+	 * @return  Visible objects.
+	 */
+	private static Set<Object3D> getVisibleObjects( final Scene scene, @Nullable final FrustumCuller culler, @Nullable final OcclusionCuller occlusionCuller, final Projector projector, final Matrix3D scene2view, final Collection<RenderStyleFilter> styleFilters, final RenderStyle viewStyle )
+	{
+		final Set<Object3D> result = Collections.newSetFromMap( new IdentityHashMap<Object3D, Boolean>() );
+		final List<ContentNode> contentNodes = scene.getContentNodes();
+
+		if ( culler != null )
+		{
+			culler.beginFrame( projector, scene2view );
+		}
+
+		if ( occlusionCuller != null )
+		{
+			occlusionCuller.render( projector, scene2view, contentNodes, styleFilters, viewStyle );
+		}
+
+		final CullingTreeWalker treeWalker = new CullingTreeWalker( culler );
+		final Node3DVisitor visitor = new Node3DVisitor()
+		{
+			public boolean visitNode( @NotNull final Node3DPath path )
+			{
+				final Node3D node = path.getNode();
+				if ( node instanceof Object3D )
+				{
+					result.add( (Object3D)node );
+				}
+				return true;
+			}
+		};
+
+		for ( final ContentNode contentNode : contentNodes )
+		{
+			if ( ( occlusionCuller == null ) || !occlusionCuller.isOccluded( contentNode ) )
+			{
+				treeWalker.walkContentNode( visitor, contentNode );
+			}
+		}
+
+		if ( culler != null )
+		{
+			culler.endFrame();
+		}
+
+		return result;
 	}
 
 	/**
@@ -56,6 +56,11 @@ public class PlaneMovementDragger
 	 */
 	private final Matrix3D _view2world;
 
+	/**
+	 * Transforms world to view coordinates.
+	 */
+	private final Matrix3D _world2view;
+
 	/**
 	 * Projector used to project 3D points on 2D image.
 	 */
@@ -110,6 +115,26 @@ public class PlaneMovementDragger
 	 */
 	private Vector3D _modelStart;
 
+	/**
+	 * Index used to snap to geometry; <code>null</code> to disable snapping.
+	 */
+	private SnapIndex _snapIndex = null;
+
+	/**
+	 * Snap tolerance in pixels.
+	 */
+	private double _snapTolerance = 0.0;
+
+	/**
+	 * Content node to ignore when snapping, i.e. the one being dragged.
+	 */
+	private ContentNode _snapExcluded = null;
+
+	/**
+	 * Snap point used by the last {@link #dragTo} call.
+	 */
+	private SnapIndex.Snap _snap = null;
+
 	/**
 	 * Start drag operation based on the specified parameters.
 	 *
@@ -130,6 +155,7 @@ public class PlaneMovementDragger
 		final Vector3D wcsIntersectionPoint = intersection.getIntersectionPoint();
 
 		_view2world     = view2world;
+		_world2view     = world2view;
 		_projector      = projector;
 		_wcsTranslation = wcsObjectOrigin.minus( wcsIntersectionPoint );
 		_wcsDragPlane   = new BasicPlane3D( wcsDragPlane , wcsIntersectionPoint );
@@ -151,9 +177,30 @@ public class PlaneMovementDragger
 	 */
 	public void dragTo( final int x , final int y )
 	{
-		final Ray3D pointerRay = _projector.getPointerRay( _view2world , (double)x , (double)y );
+		final Plane3D wcsDragPlane = _wcsDragPlane;
+
+		final SnapIndex snapIndex = _snapIndex;
+		final SnapIndex.Snap snap = ( snapIndex != null ) ? snapIndex.findSnap( _projector, _world2view, (double)x, (double)y, _snapTolerance, _snapExcluded ) : null;
+		_snap = snap;
+
+		final Vector3D wcsIntersection;
+		if ( snap != null )
+		{
+			/*
+			 * Keep the movement in the drag plane by projecting the snap point
+			 * onto it.
+			 */
+			final Vector3D point = snap.getPoint();
+			final Vector3D normal = wcsDragPlane.getNormal();
+			final double distance = Vector3D.dot( normal, point ) - wcsDragPlane.getDistance();
+			wcsIntersection = point.minus( normal.x * distance, normal.y * distance, normal.z * distance );
+		}
+		else
+		{
+			final Ray3D pointerRay = _projector.getPointerRay( _view2world , (double)x , (double)y );
+			wcsIntersection = GeometryTools.getIntersectionBetweenRayAndPlane( wcsDragPlane , pointerRay );
+		}
 
-		final Vector3D wcsIntersection = GeometryTools.getIntersectionBetweenRayAndPlane( _wcsDragPlane , pointerRay );
 		if ( wcsIntersection != null )
 		{
 			final Vector3D wcsEnd = wcsIntersection.plus( _wcsTranslation );
@@ -167,6 +214,31 @@ public class PlaneMovementDragger
 		}
 	}
 
+	/**
+	 * Enables snapping of the drag point to vertices, face centers and edges
+	 * near the mouse pointer.
+	 *
+	 * @param   snapIndex   Index of snap points; <code>null</code> to disable snapping.
+	 * @param   tolerance   Snap tolerance in pixels.
+	 * @param   excluded    Content node to ignore, e.g. the one being dragged.
+	 */
+	public void setSnapIndex( final SnapIndex snapIndex , final double tolerance , final ContentNode excluded )
+	{
+		_snapIndex     = snapIndex;
+		_snapTolerance = tolerance;
+		_snapExcluded  = excluded;
+	}
+
+	/**
+	 * Get snap point used by the last {@link #dragTo} call.
+	 *
+	 * @return  Snap point; <code>null</code> if no snapping occurred.
+	 */
+	public SnapIndex.Snap getSnap()
+	{
+		return _snap;
+	}
+
 	/**
 	 * Get end location of dragged object in model.
 	 *
@@ -0,0 +1,952 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.control;
+
+import java.util.*;
+
+import ab.j3d.*;
+import ab.j3d.geom.*;
+import ab.j3d.model.*;
+import ab.j3d.view.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Finds snap points (vertices, face centers and edges) near the mouse pointer
+ * while dragging. Snap candidates of all objects in a scene are stored in a
+ * world-space spatial hash, which is updated per content node using scene
+ * update events. Queries only test candidates in the hash cells near the
+ * pointer ray, so their cost is independent of the total amount of geometry.
+ *
+ * @author Peter S. Heijnen
+ */
+public class SnapIndex
+implements SceneUpdateListener
+{
+	/**
+	 * Type of snap point.
+	 */
+	public enum Type
+	{
+		/**
+		 * Vertex of an object.
+		 */
+		VERTEX,
+
+		/**
+		 * Center of a face.
+		 */
+		FACE_CENTER,
+
+		/**
+		 * Point on an edge.
+		 */
+		EDGE
+	}
+
+	/**
+	 * Number of bits used for each cell coordinate in a cell key.
+	 */
+	private static final int KEY_BITS = 21;
+
+	/**
+	 * Mask for a cell coordinate in a cell key.
+	 */
+	private static final long KEY_MASK = ( 1L << KEY_BITS ) - 1L;
+
+	/**
+	 * Scene being indexed.
+	 */
+	@NotNull
+	private final Scene _scene;
+
+	/**
+	 * Size of the cells of the spatial hash, in scene units.
+	 */
+	private final double _cellSize;
+
+	/**
+	 * Snap candidates in each cell, by cell key.
+	 */
+	private final Map<Long, List<Candidate>> _cells = new HashMap<Long, List<Candidate>>();
+
+	/**
+	 * Keys of the cells containing candidates of each content node.
+	 */
+	private final Map<ContentNode, Set<Long>> _nodeCells = new IdentityHashMap<ContentNode, Set<Long>>();
+
+	/**
+	 * Bounds of all candidates that were added to the index. Bounds are not
+	 * reduced when candidates are removed.
+	 */
+	private final Bounds3DBuilder _bounds = new Bounds3DBuilder();
+
+	/**
+	 * Query counter, used to visit each candidate only once per query.
+	 */
+	private int _queryCount = 0;
+
+	/**
+	 * Constructs a new index for the given scene. The index is kept up to
+	 * date automatically, until {@link #dispose()} is called.
+	 *
+	 * @param scene    Scene to index.
+	 * @param cellSize Size of the cells of the spatial hash, in scene units.
+	 *                 This should be in the order of the snap tolerance at a
+	 *                 typical viewing distance.
+	 */
+	public SnapIndex( @NotNull final Scene scene, final double cellSize )
+	{
+		_scene = scene;
+		_cellSize = cellSize;
+
+		for ( final ContentNode node : scene.getContentNodes() )
+		{
+			addNode( node );
+		}
+
+		scene.addSceneUpdateListener( this );
+	}
+
+	/**
+	 * Stops updating the index and releases its resources.
+	 */
+	public void dispose()
+	{
+		_scene.removeSceneUpdateListener( this );
+		_cells.clear();
+		_nodeCells.clear();
+	}
+
+	/**
+	 * Finds the best snap point near the mouse pointer. Vertices and face
+	 * centers take precedence over edges, and geometry near the front of the
+	 * view takes precedence over geometry further away.
+	 *
+	 * @param projector  Projector of the view.
+	 * @param scene2view Transforms scene to view coordinates.
+	 * @param pointerX   X coordinate of the mouse pointer, in pixels.
+	 * @param pointerY   Y coordinate of the mouse pointer, in pixels.
+	 * @param tolerance  Maximum distance from the pointer, in pixels.
+	 * @param excluded   Content node to ignore, e.g. the one being dragged.
+	 *
+	 * @return Snap point; <code>null</code> if no snap point was found.
+	 */
+	@Nullable
+	public Snap findSnap( @NotNull final Projector projector, @NotNull final Matrix3D scene2view, final double pointerX, final double pointerY, final double tolerance, @Nullable final ContentNode excluded )
+	{
+		final Bounds3D bounds = _bounds.getBounds();
+		if ( ( bounds == null ) || _cells.isEmpty() )
+		{
+			return null;
+		}
+
+		final Ray3D ray = projector.getPointerRay( scene2view.inverse(), pointerX, pointerY );
+		final Vector3D origin = ray.getOrigin();
+		final Vector3D direction = ray.getDirection();
+
+		/*
+		 * Clip the ray to the bounds of the index.
+		 */
+		final double margin = _cellSize;
+		double start = 0.0;
+		double end = Double.POSITIVE_INFINITY;
+		final double[] o = { origin.x, origin.y, origin.z };
+		final double[] d = { direction.x, direction.y, direction.z };
+		final double[] min = { bounds.v1.x - margin, bounds.v1.y - margin, bounds.v1.z - margin };
+		final double[] max = { bounds.v2.x + margin, bounds.v2.y + margin, bounds.v2.z + margin };
+		for ( int axis = 0; axis < 3; axis++ )
+		{
+			if ( Math.abs( d[ axis ] ) < 1.0e-12 )
+			{
+				if ( ( o[ axis ] < min[ axis ] ) || ( o[ axis ] > max[ axis ] ) )
+				{
+					return null;
+				}
+			}
+			else
+			{
+				final double t1 = ( min[ axis ] - o[ axis ] ) / d[ axis ];
+				final double t2 = ( max[ axis ] - o[ axis ] ) / d[ axis ];
+				start = Math.max( start, Math.min( t1, t2 ) );
+				end = Math.min( end, Math.max( t1, t2 ) );
+			}
+		}
+
+		final int queryCount = ++_queryCount;
+		final SnapQuery query = new SnapQuery( projector, scene2view, pointerX, pointerY, tolerance, origin, direction, excluded );
+
+		/*
+		 * March along the ray, visiting the cells within the tolerance cone.
+		 * Stop one step after the first candidate was found, such that
+		 * geometry near the front of the view takes precedence.
+		 */
+		final double cellSize = _cellSize;
+		int stepsAfterFound = -1;
+		double t = start;
+		while ( ( t <= end ) && ( stepsAfterFound < 1 ) )
+		{
+			final double radius = query.getWorldTolerance( t );
+			final double step = Math.max( cellSize, radius );
+			final double halfSize = Math.max( radius, query.getWorldTolerance( t + step ) ) + 0.5 * step;
+
+			final double x = origin.x + ( t + 0.5 * step ) * direction.x;
+			final double y = origin.y + ( t + 0.5 * step ) * direction.y;
+			final double z = origin.z + ( t + 0.5 * step ) * direction.z;
+			visitCells( query, queryCount, x - halfSize, y - halfSize, z - halfSize, x + halfSize, y + halfSize, z + halfSize );
+
+			if ( query.getResult() != null )
+			{
+				stepsAfterFound++;
+			}
+
+			t += step;
+		}
+
+		return query.getResult();
+	}
+
+	/**
+	 * Tests all candidates in the cells overlapping the given box.
+	 *
+	 * @param query      Query to test candidates with.
+	 * @param queryCount Query counter.
+	 * @param minX       Minimum X coordinate of the box.
+	 * @param minY       Minimum Y coordinate of the box.
+	 * @param minZ       Minimum Z coordinate of the box.
+	 * @param maxX       Maximum X coordinate of the box.
+	 * @param maxY       Maximum Y coordinate of the box.
+	 * @param maxZ       Maximum Z coordinate of the box.
+	 */
+	private void visitCells( @NotNull final SnapQuery query, final int queryCount, final double minX, final double minY, final double minZ, final double maxX, final double maxY, final double maxZ )
+	{
+		final Map<Long, List<Candidate>> cells = _cells;
+
+		final int minCellX = getCell( minX );
+		final int minCellY = getCell( minY );
+		final int minCellZ = getCell( minZ );
+		final int maxCellX = getCell( maxX );
+		final int maxCellY = getCell( maxY );
+		final int maxCellZ = getCell( maxZ );
+
+		final double cellCount = (double)( maxCellX - minCellX + 1 ) * (double)( maxCellY - minCellY + 1 ) * (double)( maxCellZ - minCellZ + 1 );
+		if ( cellCount > (double)cells.size() )
+		{
+			/*
+			 * The box covers more cells than there are in the index. This
+			 * happens when zoomed out far, so just test all candidates.
+			 */
+			for ( final List<Candidate> candidates : cells.values() )
+			{
+				for ( final Candidate candidate : candidates )
+				{
+					if ( ( candidate._query != queryCount ) && candidate.overlaps( minX, minY, minZ, maxX, maxY, maxZ ) )
+					{
+						candidate._query = queryCount;
+						query.test( candidate );
+					}
+				}
+			}
+		}
+		else
+		{
+			for ( int cellX = minCellX; cellX <= maxCellX; cellX++ )
+			{
+				for ( int cellY = minCellY; cellY <= maxCellY; cellY++ )
+				{
+					for ( int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++ )
+					{
+						final List<Candidate> candidates = cells.get( getKey( cellX, cellY, cellZ ) );
+						if ( candidates != null )
+						{
+							for ( final Candidate candidate : candidates )
+							{
+								if ( candidate._query != queryCount )
+								{
+									candidate._query = queryCount;
+									query.test( candidate );
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the cell containing the given coordinate.
+	 *
+	 * @param coordinate Coordinate.
+	 *
+	 * @return Cell index.
+	 */
+	private int getCell( final double coordinate )
+	{
+		return (int)Math.floor( coordinate / _cellSize );
+	}
+
+	/**
+	 * Returns the key of the cell with the given indices.
+	 *
+	 * @param cellX X index of the cell.
+	 * @param cellY Y index of the cell.
+	 * @param cellZ Z index of the cell.
+	 *
+	 * @return Cell key.
+	 */
+	private static Long getKey( final int cellX, final int cellY, final int cellZ )
+	{
+		return Long.valueOf( ( ( (long)cellX & KEY_MASK ) << ( 2 * KEY_BITS ) ) | ( ( (long)cellY & KEY_MASK ) << KEY_BITS ) | ( (long)cellZ & KEY_MASK ) );
+	}
+
+	/**
+	 * Adds snap candidates for the given content node.
+	 *
+	 * @param node Content node to add.
+	 */
+	private void addNode( @NotNull final ContentNode node )
+	{
+		final Set<Long> nodeCells = new HashSet<Long>();
+		final Matrix3D node2scene = node.getTransform();
+
+		for ( final Node3DPath path : node.getContent() )
+		{
+			final Object3D object = (Object3D)path.getNode();
+			final Matrix3D object2scene = path.getTransform().multiply( node2scene );
+
+			final List<Vector3D> vertexCoordinates = object.getVertexCoordinates();
+			final Vector3D[] points = new Vector3D[ vertexCoordinates.size() ];
+			for ( int i = 0; i < points.length; i++ )
+			{
+				final Vector3D point = object2scene.transform( vertexCoordinates.get( i ) );
+				points[ i ] = point;
+				addCandidate( nodeCells, new Candidate( node, Type.VERTEX, point, null ) );
+			}
+
+			final Set<Long> edges = new HashSet<Long>();
+			for ( final FaceGroup faceGroup : object.getFaceGroups() )
+			{
+				for ( final Face3D face : faceGroup.getFaces() )
+				{
+					final int vertexCount = face.getVertexCount();
+					if ( vertexCount > 2 )
+					{
+						double x = 0.0;
+						double y = 0.0;
+						double z = 0.0;
+						for ( final Vertex3D vertex : face.getVertices() )
+						{
+							final Vector3D point = points[ vertex.vertexCoordinateIndex ];
+							x += point.x;
+							y += point.y;
+							z += point.z;
+						}
+						addCandidate( nodeCells, new Candidate( node, Type.FACE_CENTER, new Vector3D( x / (double)vertexCount, y / (double)vertexCount, z / (double)vertexCount ), null ) );
+					}
+
+					/*
+					 * Only outline edges are used, which excludes edges inside
+					 * smooth surfaces and tessellation diagonals.
+					 */
+					for ( final int[] outline : face.getOutlines() )
+					{
+						for ( int i = 1; i < outline.length; i++ )
+						{
+							final int index1 = face.getVertex( outline[ i - 1 ] ).vertexCoordinateIndex;
+							final int index2 = face.getVertex( outline[ i ] ).vertexCoordinateIndex;
+							if ( ( index1 != index2 ) && edges.add( Long.valueOf( (long)Math.min( index1, index2 ) * (long)points.length + (long)Math.max( index1, index2 ) ) ) )
+							{
+								addCandidate( nodeCells, new Candidate( node, Type.EDGE, points[ index1 ], points[ index2 ] ) );
+							}
+						}
+					}
+				}
+			}
+		}
+
+		if ( !nodeCells.isEmpty() )
+		{
+			_nodeCells.put( node, nodeCells );
+		}
+	}
+
+	/**
+	 * Adds a candidate to the cells it overlaps.
+	 *
+	 * @param nodeCells Keys of the cells containing candidates of the node.
+	 * @param candidate Candidate to add.
+	 */
+	private void addCandidate( @NotNull final Set<Long> nodeCells, @NotNull final Candidate candidate )
+	{
+		final Bounds3DBuilder bounds = _bounds;
+		bounds.addPoint( candidate._x1, candidate._y1, candidate._z1 );
+
+		if ( candidate._type != Type.EDGE )
+		{
+			addToCell( nodeCells, candidate, getCell( candidate._x1 ), getCell( candidate._y1 ), getCell( candidate._z1 ) );
+		}
+		else
+		{
+			bounds.addPoint( candidate._x2, candidate._y2, candidate._z2 );
+
+			/*
+			 * Split the edge into pieces no longer than a cell, such that each
+			 * piece overlaps at most two cells along each axis.
+			 */
+			final double dx = candidate._x2 - candidate._x1;
+			final double dy = candidate._y2 - candidate._y1;
+			final double dz = candidate._z2 - candidate._z1;
+			final int pieces = Math.max( 1, (int)Math.ceil( Math.sqrt( dx * dx + dy * dy + dz * dz ) / _cellSize ) );
+
+			int previousX = getCell( candidate._x1 );
+			int previousY = getCell( candidate._y1 );
+			int previousZ = getCell( candidate._z1 );
+			for ( int i = 1; i <= pieces; i++ )
+			{
+				final double f = (double)i / (double)pieces;
+				final int cellX = getCell( candidate._x1 + f * dx );
+				final int cellY = getCell( candidate._y1 + f * dy );
+				final int cellZ = getCell( candidate._z1 + f * dz );
+
+				for ( int x = Math.min( previousX, cellX ); x <= Math.max( previousX, cellX ); x++ )
+				{
+					for ( int y = Math.min( previousY, cellY ); y <= Math.max( previousY, cellY ); y++ )
+					{
+						for ( int z = Math.min( previousZ, cellZ ); z <= Math.max( previousZ, cellZ ); z++ )
+						{
+							addToCell( nodeCells, candidate, x, y, z );
+						}
+					}
+				}
+
+				previousX = cellX;
+				previousY = cellY;
+				previousZ = cellZ;
+			}
+		}
+	}
+
+	/**
+	 * Adds a candidate to a cell, unless it was already added.
+	 *
+	 * @param nodeCells Keys of the cells containing candidates of the node.
+	 * @param candidate Candidate to add.
+	 * @param cellX     X index of the cell.
+	 * @param cellY     Y index of the cell.
+	 * @param cellZ     Z index of the cell.
+	 */
+	private void addToCell( @NotNull final Set<Long> nodeCells, @NotNull final Candidate candidate, final int cellX, final int cellY, final int cellZ )
+	{
+		final Long key = getKey( cellX, cellY, cellZ );
+
+		List<Candidate> candidates = _cells.get( key );
+		if ( candidates == null )
+		{
+			candidates = new ArrayList<Candidate>();
+			_cells.put( key, candidates );
+		}
+
+		/*
+		 * Candidates are added one at a time, so a duplicate can only be the
+		 * last candidate in the cell.
+		 */
+		//noinspection ObjectEquality
+		if ( candidates.isEmpty() || ( candidates.get( candidates.size() - 1 ) != candidate ) )
+		{
+			candidates.add( candidate );
+			nodeCells.add( key );
+		}
+	}
+
+	/**
+	 * Removes the snap candidates of the given content node.
+	 *
+	 * @param node Content node to remove.
+	 */
+	private void removeNode( @NotNull final ContentNode node )
+	{
+		final Set<Long> nodeCells = _nodeCells.remove( node );
+		if ( nodeCells != null )
+		{
+			for ( final Long key : nodeCells )
+			{
+				final List<Candidate> candidates = _cells.get( key );
+				if ( candidates != null )
+				{
+					for ( final Iterator<Candidate> it = candidates.iterator(); it.hasNext(); )
+					{
+						//noinspection ObjectEquality
+						if ( it.next()._node == node )
+						{
+							it.remove();
+						}
+					}
+
+					if ( candidates.isEmpty() )
+					{
+						_cells.remove( key );
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Updates the snap candidates of the given content node.
+	 *
+	 * @param node Content node to update.
+	 */
+	private void updateNode( @NotNull final ContentNode node )
+	{
+		removeNode( node );
+		addNode( node );
+	}
+
+	@Override
+	public void contentNodeAdded( final SceneUpdateEvent event )
+	{
+		updateNode( event.getNode() );
+	}
+
+	@Override
+	public void contentNodeRemoved( final SceneUpdateEvent event )
+	{
+		removeNode( event.getNode() );
+	}
+
+	@Override
+	public void contentNodeContentUpdated( final SceneUpdateEvent event )
+	{
+		updateNode( event.getNode() );
+	}
+
+	@Override
+	public void contentNodePropertyChanged( final SceneUpdateEvent event )
+	{
+		updateNode( event.getNode() );
+	}
+
+	@Override
+	public void contentNodesChanged( final SceneUpdateEvent event )
+	{
+		final SceneChangeSet changeSet = event.getChangeSet();
+
+		for ( final ContentNode node : changeSet.getRemovedNodes() )
+		{
+			removeNode( node );
+		}
+
+		final Set<ContentNode> updated = Collections.newSetFromMap( new IdentityHashMap<ContentNode, Boolean>() );
+		updated.addAll( changeSet.getAddedNodes() );
+		updated.addAll( changeSet.getContentUpdatedNodes() );
+		updated.addAll( changeSet.getPropertyChangedNodes() );
+		for ( final ContentNode node : updated )
+		{
+			updateNode( node );
+		}
+	}
+
+	@Override
+	public void ambientLightChanged( final SceneUpdateEvent event )
+	{
+	}
+
+	@Override
+	public void animationStarted( final SceneUpdateEvent event )
+	{
+	}
+
+	@Override
+	public void animationStopped( final SceneUpdateEvent event )
+	{
+	}
+
+	/**
+	 * Snap point found by {@link SnapIndex#findSnap}.
+	 */
+	public static final class Snap
+	{
+		/**
+		 * Type of snap point.
+		 */
+		@NotNull
+		private final Type _type;
+
+		/**
+		 * Snap point in scene coordinates.
+		 */
+		@NotNull
+		private final Vector3D _point;
+
+		/**
+		 * Content node that the snap point belongs to.
+		 */
+		@NotNull
+		private final ContentNode _contentNode;
+
+		/**
+		 * Distance from the mouse pointer, in pixels.
+		 */
+		private final double _distance;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param type        Type of snap point.
+		 * @param point       Snap point in scene coordinates.
+		 * @param contentNode Content node that the snap point belongs to.
+		 * @param distance    Distance from the mouse pointer, in pixels.
+		 */
+		Snap( @NotNull final Type type, @NotNull final Vector3D point, @NotNull final ContentNode contentNode, final double distance )
+		{
+			_type = type;
+			_point = point;
+			_contentNode = contentNode;
+			_distance = distance;
+		}
+
+		@NotNull
+		public Type getType()
+		{
+			return _type;
+		}
+
+		@NotNull
+		public Vector3D getPoint()
+		{
+			return _point;
+		}
+
+		@NotNull
+		public ContentNode getContentNode()
+		{
+			return _contentNode;
+		}
+
+		public double getDistance()
+		{
+			return _distance;
+		}
+
+		@Override
+		public String toString()
+		{
+			return super.toString() + "[type=" + _type + ", point=" + _point.toFriendlyString() + ", distance=" + _distance + ']';
+		}
+	}
+
+	/**
+	 * Snap candidate in the spatial hash.
+	 */
+	private static class Candidate
+	{
+		/**
+		 * Content node that the candidate belongs to.
+		 */
+		final ContentNode _node;
+
+		/**
+		 * Type of candidate.
+		 */
+		final Type _type;
+
+		/**
+		 * X coordinate of the point, or the start of the edge.
+		 */
+		final double _x1;
+
+		/**
+		 * Y coordinate of the point, or the start of the edge.
+		 */
+		final double _y1;
+
+		/**
+		 * Z coordinate of the point, or the start of the edge.
+		 */
+		final double _z1;
+
+		/**
+		 * X coordinate of the end of the edge.
+		 */
+		final double _x2;
+
+		/**
+		 * Y coordinate of the end of the edge.
+		 */
+		final double _y2;
+
+		/**
+		 * Z coordinate of the end of the edge.
+		 */
+		final double _z2;
+
+		/**
+		 * Number of the last query that tested this candidate.
+		 */
+		int _query = 0;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param node   Content node that the candidate belongs to.
+		 * @param type   Type of candidate.
+		 * @param point1 Point, or start of the edge.
+		 * @param point2 End of the edge; <code>null</code> for points.
+		 */
+		Candidate( @NotNull final ContentNode node, @NotNull final Type type, @NotNull final Vector3D point1, @Nullable final Vector3D point2 )
+		{
+			_node = node;
+			_type = type;
+			_x1 = point1.x;
+			_y1 = point1.y;
+			_z1 = point1.z;
+			_x2 = ( point2 != null ) ? point2.x : point1.x;
+			_y2 = ( point2 != null ) ? point2.y : point1.y;
+			_z2 = ( point2 != null ) ? point2.z : point1.z;
+		}
+
+		/**
+		 * Returns whether the bounds of this candidate overlap the given box.
+		 *
+		 * @param minX Minimum X coordinate of the box.
+		 * @param minY Minimum Y coordinate of the box.
+		 * @param minZ Minimum Z coordinate of the box.
+		 * @param maxX Maximum X coordinate of the box.
+		 * @param maxY Maximum Y coordinate of the box.
+		 * @param maxZ Maximum Z coordinate of the box.
+		 *
+		 * @return <code>true</code> if the candidate overlaps the box.
+		 */
+		boolean overlaps( final double minX, final double minY, final double minZ, final double maxX, final double maxY, final double maxZ )
+		{
+			return ( Math.min( _x1, _x2 ) <= maxX ) && ( Math.max( _x1, _x2 ) >= minX ) &&
+			       ( Math.min( _y1, _y2 ) <= maxY ) && ( Math.max( _y1, _y2 ) >= minY ) &&
+			       ( Math.min( _z1, _z2 ) <= maxZ ) && ( Math.max( _z1, _z2 ) >= minZ );
+		}
+	}
+
+	/**
+	 * Keeps track of the state of a {@link SnapIndex#findSnap} query.
+	 */
+	private static class SnapQuery
+	{
+		/**
+		 * Projector of the view.
+		 */
+		private final Projector _projector;
+
+		/**
+		 * Transforms scene to view coordinates.
+		 */
+		private final Matrix3D _scene2view;
+
+		/**
+		 * X coordinate of the mouse pointer.
+		 */
+		private final double _pointerX;
+
+		/**
+		 * Y coordinate of the mouse pointer.
+		 */
+		private final double _pointerY;
+
+		/**
+		 * Maximum distance from the pointer, in pixels.
+		 */
+		private final double _tolerance;
+
+		/**
+		 * Origin of the pointer ray.
+		 */
+		private final Vector3D _origin;
+
+		/**
+		 * Direction of the pointer ray.
+		 */
+		private final Vector3D _direction;
+
+		/**
+		 * Content node to ignore.
+		 */
+		private final ContentNode _excluded;
+
+		/**
+		 * Projected point.
+		 */
+		private final double[] _projected = new double[ 2 ];
+
+		/**
+		 * Best snap point found so far.
+		 */
+		private Snap _result = null;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param projector  Projector of the view.
+		 * @param scene2view Transforms scene to view coordinates.
+		 * @param pointerX   X coordinate of the mouse pointer.
+		 * @param pointerY   Y coordinate of the mouse pointer.
+		 * @param tolerance  Maximum distance from the pointer, in pixels.
+		 * @param origin     Origin of the pointer ray.
+		 * @param direction  Direction of the pointer ray.
+		 * @param excluded   Content node to ignore.
+		 */
+		SnapQuery( final Projector projector, final Matrix3D scene2view, final double pointerX, final double pointerY, final double tolerance, final Vector3D origin, final Vector3D direction, final ContentNode excluded )
+		{
+			_projector = projector;
+			_scene2view = scene2view;
+			_pointerX = pointerX;
+			_pointerY = pointerY;
+			_tolerance = tolerance;
+			_origin = origin;
+			_direction = direction;
+			_excluded = excluded;
+		}
+
+		public Snap getResult()
+		{
+			return _result;
+		}
+
+		/**
+		 * Returns the snap tolerance in scene units at the given distance
+		 * along the pointer ray.
+		 *
+		 * @param t Distance along the pointer ray.
+		 *
+		 * @return Tolerance in scene units.
+		 */
+		double getWorldTolerance( final double t )
+		{
+			final Matrix3D scene2view = _scene2view;
+			final Vector3D origin = _origin;
+			final Vector3D direction = _direction;
+			final double x = origin.x + t * direction.x;
+			final double y = origin.y + t * direction.y;
+			final double z = origin.z + t * direction.z;
+
+			/*
+			 * Determine the number of pixels per scene unit by projecting a
+			 * unit vector along the view X axis.
+			 */
+			final double viewX = scene2view.transformX( x, y, z );
+			final double viewY = scene2view.transformY( x, y, z );
+			final double viewZ = scene2view.transformZ( x, y, z );
+
+			double result = Double.POSITIVE_INFINITY;
+			if ( _projector.inViewVolume( viewX, viewY, viewZ ) )
+			{
+				final double[] projected = _projected;
+				_projector.project( projected, 0, viewX, viewY, viewZ );
+				final double pixelX = projected[ 0 ];
+				_projector.project( projected, 0, viewX + 1.0, viewY, viewZ );
+				final double pixelsPerUnit = Math.abs( projected[ 0 ] - pixelX );
+				if ( pixelsPerUnit > 0.0 )
+				{
+					result = _tolerance / pixelsPerUnit;
+				}
+			}
+			else
+			{
+				result = 0.0;
+			}
+			return result;
+		}
+
+		/**
+		 * Tests whether the given candidate is better than the current result.
+		 *
+		 * @param candidate Candidate to test.
+		 */
+		void test( @NotNull final Candidate candidate )
+		{
+			//noinspection ObjectEquality
+			if ( candidate._node != _excluded )
+			{
+				final Snap result = _result;
+				final boolean isEdge = ( candidate._type == Type.EDGE );
+
+				/*
+				 * Edges are only used if no vertex or face center is found.
+				 */
+				if ( ( result == null ) || !isEdge || ( result.getType() == Type.EDGE ) )
+				{
+					double x = candidate._x1;
+					double y = candidate._y1;
+					double z = candidate._z1;
+
+					if ( isEdge )
+					{
+						final double s = getClosestPointOnEdge( candidate );
+						x += s * ( candidate._x2 - x );
+						y += s * ( candidate._y2 - y );
+						z += s * ( candidate._z2 - z );
+					}
+
+					final Matrix3D scene2view = _scene2view;
+					final double viewX = scene2view.transformX( x, y, z );
+					final double viewY = scene2view.transformY( x, y, z );
+					final double viewZ = scene2view.transformZ( x, y, z );
+					if ( _projector.inViewVolume( viewX, viewY, viewZ ) )
+					{
+						final double[] projected = _projected;
+						_projector.project( projected, 0, viewX, viewY, viewZ );
+						final double distance = Math.hypot( projected[ 0 ] - _pointerX, projected[ 1 ] - _pointerY );
+
+						if ( ( distance <= _tolerance ) && ( ( result == null ) || ( !isEdge && ( result.getType() == Type.EDGE ) ) || ( distance < result.getDistance() ) ) )
+						{
+							_result = new Snap( candidate._type, new Vector3D( x, y, z ), candidate._node, distance );
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Returns the point on an edge that is closest to the pointer ray.
+		 *
+		 * @param edge Edge candidate.
+		 *
+		 * @return Position along the edge (0 = start, 1 = end).
+		 */
+		private double getClosestPointOnEdge( @NotNull final Candidate edge )
+		{
+			final Vector3D origin = _origin;
+			final Vector3D direction = _direction;
+
+			final double ux = edge._x2 - edge._x1;
+			final double uy = edge._y2 - edge._y1;
+			final double uz = edge._z2 - edge._z1;
+			final double wx = edge._x1 - origin.x;
+			final double wy = edge._y1 - origin.y;
+			final double wz = edge._z1 - origin.z;
+
+			final double a = ux * ux + uy * uy + uz * uz;
+			final double b = ux * direction.x + uy * direction.y + uz * direction.z;
+			final double c = direction.x * direction.x + direction.y * direction.y + direction.z * direction.z;
+			final double d = ux * wx + uy * wy + uz * wz;
+			final double e = direction.x * wx + direction.y * wy + direction.z * wz;
+
+			final double denominator = a * c - b * b;
+			final double s = ( denominator > 1.0e-12 * a * c ) ? ( b * e - c * d ) / denominator : 0.0;
+			return Math.max( 0.0, Math.min( 1.0, s ) );
+		}
+	}
+}
@@ -189,7 +189,7 @@ public abstract class AbstractTriangle3D
 			final Vector3D p1 = getP1();
 			final Vector3D p2 = getP2();
 			final Vector3D p3 = getP3();
-			result = p1.set( p1.x + p2.x + p3.x / 3.0, p1.y + p2.y + p3.y / 3.0, p1.z + p2.z + p3.z / 3.0 );
+			result = p1.set( ( p1.x + p2.x + p3.x ) / 3.0, ( p1.y + p2.y + p3.y ) / 3.0, ( p1.z + p2.z + p3.z ) / 3.0 );
 			_averagePoint = result;
 		}
 		return result;
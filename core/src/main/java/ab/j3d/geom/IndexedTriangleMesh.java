@@ -0,0 +1,590 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.geom;
+
+import java.util.*;
+
+import org.jetbrains.annotations.*;
+
+/**
+ * Triangle mesh with interleaved vertex attributes and a single list of
+ * vertex indices, as used for indexed drawing on a GPU. Provides operations to
+ * weld identical vertices and to optimize the order of triangles and vertices
+ * for the post-transform vertex cache and vertex fetching.
+ *
+ * <p>Vertex attributes are stored as {@code float}s; a vertex consists of
+ * {@link #getStride()} consecutive values. Vertices are considered identical
+ * only if all of their attributes are bitwise equal.
+ *
+ * <p>Triangles are reordered using the algorithm described by Tom Forsyth in
+ * "Linear-Speed Vertex Cache Optimisation" (2006), which does not depend on
+ * the exact cache size or replacement policy of the GPU.
+ *
+ * @author Peter S. Heijnen
+ */
+public class IndexedTriangleMesh
+{
+	/**
+	 * Cache size that is assumed when optimizing triangle order.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 32;
+
+	/**
+	 * Maximum number of vertices that can be addressed using 16-bit
+	 * (unsigned) indices.
+	 */
+	public static final int MAXIMUM_SHORT_INDEXED_VERTICES = 65536;
+
+	/**
+	 * Score for vertices used by the last triangle that was added.
+	 */
+	private static final double LAST_TRIANGLE_SCORE = 0.75;
+
+	/**
+	 * Power used to decay vertex scores based on cache position.
+	 */
+	private static final double CACHE_DECAY_POWER = 1.5;
+
+	/**
+	 * Scale of the score boost for vertices with few remaining triangles.
+	 */
+	private static final double VALENCE_BOOST_SCALE = 2.0;
+
+	/**
+	 * Power used for the score boost for vertices with few remaining
+	 * triangles.
+	 */
+	private static final double VALENCE_BOOST_POWER = -0.5;
+
+	/**
+	 * Number of values per vertex.
+	 */
+	private final int _stride;
+
+	/**
+	 * Vertex attributes.
+	 */
+	private float[] _vertices;
+
+	/**
+	 * Number of vertices.
+	 */
+	private int _vertexCount;
+
+	/**
+	 * Vertex indices, three per triangle.
+	 */
+	private int[] _indices;
+
+	/**
+	 * Constructs a new mesh.
+	 *
+	 * @param stride   Number of values per vertex.
+	 * @param vertices Vertex attributes.
+	 * @param indices  Vertex indices, three per triangle.
+	 */
+	public IndexedTriangleMesh( final int stride, @NotNull final float[] vertices, @NotNull final int[] indices )
+	{
+		if ( stride < 1 )
+		{
+			throw new IllegalArgumentException( "stride: " + stride );
+		}
+
+		if ( vertices.length % stride != 0 )
+		{
+			throw new IllegalArgumentException( "Vertex data (" + vertices.length + ") is not a multiple of stride (" + stride + ')' );
+		}
+
+		if ( indices.length % 3 != 0 )
+		{
+			throw new IllegalArgumentException( "Number of indices (" + indices.length + ") is not a multiple of 3" );
+		}
+
+		final int vertexCount = vertices.length / stride;
+		for ( final int index : indices )
+		{
+			if ( ( index < 0 ) || ( index >= vertexCount ) )
+			{
+				throw new IllegalArgumentException( "Invalid vertex index: " + index );
+			}
+		}
+
+		_stride = stride;
+		_vertices = vertices;
+		_vertexCount = vertexCount;
+		_indices = indices;
+	}
+
+	/**
+	 * Returns the number of values per vertex.
+	 *
+	 * @return Number of values per vertex.
+	 */
+	public int getStride()
+	{
+		return _stride;
+	}
+
+	/**
+	 * Returns the vertex attributes. The array may be larger than needed;
+	 * only the first {@link #getVertexCount()} vertices are used.
+	 *
+	 * @return Vertex attributes.
+	 */
+	@NotNull
+	public float[] getVertices()
+	{
+		return _vertices;
+	}
+
+	/**
+	 * Returns the number of vertices.
+	 *
+	 * @return Number of vertices.
+	 */
+	public int getVertexCount()
+	{
+		return _vertexCount;
+	}
+
+	/**
+	 * Returns the vertex indices, three per triangle.
+	 *
+	 * @return Vertex indices.
+	 */
+	@NotNull
+	public int[] getIndices()
+	{
+		return _indices;
+	}
+
+	/**
+	 * Returns the number of triangles.
+	 *
+	 * @return Number of triangles.
+	 */
+	public int getTriangleCount()
+	{
+		return _indices.length / 3;
+	}
+
+	/**
+	 * Returns whether all vertices can be addressed using 16-bit (unsigned)
+	 * indices.
+	 *
+	 * @return {@code true} if 16-bit indices can be used.
+	 */
+	public boolean isShortIndexable()
+	{
+		return _vertexCount <= MAXIMUM_SHORT_INDEXED_VERTICES;
+	}
+
+	/**
+	 * Performs all optimizations: welds identical vertices, optimizes the
+	 * triangle order for the vertex cache and the vertex order for fetching.
+	 */
+	public void optimize()
+	{
+		weld();
+		optimizeTriangleOrder( DEFAULT_CACHE_SIZE );
+		optimizeVertexOrder();
+	}
+
+	/**
+	 * Merges vertices with identical attributes and removes unused vertices.
+	 * Vertices keep their relative order.
+	 */
+	public void weld()
+	{
+		final int stride = _stride;
+		final float[] vertices = _vertices;
+		final int vertexCount = _vertexCount;
+
+		/*
+		 * Open-addressing hash table with indices of unique vertices.
+		 */
+		int tableSize = 16;
+		while ( tableSize < vertexCount * 2 )
+		{
+			tableSize <<= 1;
+		}
+		final int[] table = new int[ tableSize ];
+		Arrays.fill( table, -1 );
+
+		final boolean[] used = new boolean[ vertexCount ];
+		for ( final int index : _indices )
+		{
+			used[ index ] = true;
+		}
+
+		final int[] remap = new int[ vertexCount ];
+		final float[] result = new float[ vertexCount * stride ];
+		int resultCount = 0;
+
+		for ( int vertex = 0; vertex < vertexCount; vertex++ )
+		{
+			if ( used[ vertex ] )
+			{
+				final int offset = vertex * stride;
+
+				int hash = 1;
+				for ( int i = 0; i < stride; i++ )
+				{
+					hash = 31 * hash + Float.floatToIntBits( vertices[ offset + i ] );
+				}
+				hash ^= ( hash >>> 16 );
+
+				int slot = hash & ( tableSize - 1 );
+				while ( true )
+				{
+					final int existing = table[ slot ];
+					if ( existing < 0 )
+					{
+						System.arraycopy( vertices, offset, result, resultCount * stride, stride );
+						table[ slot ] = resultCount;
+						remap[ vertex ] = resultCount++;
+						break;
+					}
+
+					if ( equalBits( result, existing * stride, vertices, offset, stride ) )
+					{
+						remap[ vertex ] = existing;
+						break;
+					}
+
+					slot = ( slot + 1 ) & ( tableSize - 1 );
+				}
+			}
+		}
+
+		final int[] indices = _indices;
+		for ( int i = 0; i < indices.length; i++ )
+		{
+			indices[ i ] = remap[ indices[ i ] ];
+		}
+
+		_vertices = result;
+		_vertexCount = resultCount;
+	}
+
+	/**
+	 * Returns whether two ranges of values are bitwise equal.
+	 *
+	 * @param array1  First array.
+	 * @param offset1 Offset in first array.
+	 * @param array2  Second array.
+	 * @param offset2 Offset in second array.
+	 * @param length  Number of values to compare.
+	 *
+	 * @return {@code true} if the values are bitwise equal.
+	 */
+	private static boolean equalBits( final float[] array1, final int offset1, final float[] array2, final int offset2, final int length )
+	{
+		for ( int i = 0; i < length; i++ )
+		{
+			if ( Float.floatToIntBits( array1[ offset1 + i ] ) != Float.floatToIntBits( array2[ offset2 + i ] ) )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reorders triangles to improve the hit rate of the post-transform vertex
+	 * cache. The vertex order of each triangle is preserved, so the winding
+	 * of triangles does not change.
+	 *
+	 * @param cacheSize Cache size to optimize for.
+	 */
+	public void optimizeTriangleOrder( final int cacheSize )
+	{
+		final int[] indices = _indices;
+		final int triangleCount = indices.length / 3;
+		final int vertexCount = _vertexCount;
+		if ( triangleCount == 0 )
+		{
+			return;
+		}
+
+		/*
+		 * Build vertex-to-triangle adjacency.
+		 */
+		final int[] offsets = new int[ vertexCount + 1 ];
+		for ( final int index : indices )
+		{
+			offsets[ index + 1 ]++;
+		}
+		for ( int i = 0; i < vertexCount; i++ )
+		{
+			offsets[ i + 1 ] += offsets[ i ];
+		}
+
+		final int[] remaining = new int[ vertexCount ];
+		final int[] adjacentTriangles = new int[ indices.length ];
+		for ( int i = 0; i < indices.length; i++ )
+		{
+			final int vertex = indices[ i ];
+			adjacentTriangles[ offsets[ vertex ] + remaining[ vertex ]++ ] = i / 3;
+		}
+
+		/*
+		 * Initial vertex scores.
+		 */
+		final int[] cachePosition = new int[ vertexCount ];
+		Arrays.fill( cachePosition, -1 );
+
+		final double[] vertexScores = new double[ vertexCount ];
+		for ( int vertex = 0; vertex < vertexCount; vertex++ )
+		{
+			vertexScores[ vertex ] = getVertexScore( -1, remaining[ vertex ], cacheSize );
+		}
+
+		final boolean[] added = new boolean[ triangleCount ];
+
+		/*
+		 * Simulated LRU cache, with room for the vertices of one extra
+		 * triangle.
+		 */
+		final int[] cache = new int[ cacheSize + 3 ];
+		int cacheCount = 0;
+		final int[] newCache = new int[ cacheSize + 3 ];
+
+		final int[] result = new int[ indices.length ];
+		int resultCount = 0;
+		int scanPosition = 0;
+		int bestTriangle = -1;
+
+		while ( resultCount < indices.length )
+		{
+			if ( bestTriangle < 0 )
+			{
+				/*
+				 * No candidate in the cache: continue with the first
+				 * remaining triangle.
+				 */
+				while ( added[ scanPosition ] )
+				{
+					scanPosition++;
+				}
+				bestTriangle = scanPosition;
+			}
+
+			/*
+			 * Add triangle to result and remove it from adjacency lists.
+			 */
+			added[ bestTriangle ] = true;
+			int newCacheCount = 0;
+			for ( int i = 0; i < 3; i++ )
+			{
+				final int vertex = indices[ bestTriangle * 3 + i ];
+				result[ resultCount++ ] = vertex;
+
+				final int start = offsets[ vertex ];
+				final int end = start + remaining[ vertex ];
+				for ( int j = start; j < end; j++ )
+				{
+					if ( adjacentTriangles[ j ] == bestTriangle )
+					{
+						adjacentTriangles[ j ] = adjacentTriangles[ end - 1 ];
+						remaining[ vertex ]--;
+						break;
+					}
+				}
+
+				if ( ( newCacheCount == 0 ) || ( ( newCache[ 0 ] != vertex ) && ( ( newCacheCount < 2 ) || ( newCache[ 1 ] != vertex ) ) ) )
+				{
+					newCache[ newCacheCount++ ] = vertex;
+				}
+			}
+
+			/*
+			 * Update cache: triangle vertices first, followed by the other
+			 * vertices in their previous order.
+			 */
+			final int triangleVertexCount = newCacheCount;
+			for ( int i = 0; i < cacheCount; i++ )
+			{
+				final int vertex = cache[ i ];
+				if ( ( vertex != newCache[ 0 ] ) && ( ( triangleVertexCount < 2 ) || ( vertex != newCache[ 1 ] ) ) && ( ( triangleVertexCount < 3 ) || ( vertex != newCache[ 2 ] ) ) )
+				{
+					newCache[ newCacheCount++ ] = vertex;
+				}
+			}
+
+			for ( int i = cacheSize; i < newCacheCount; i++ )
+			{
+				final int vertex = newCache[ i ];
+				cachePosition[ vertex ] = -1;
+				vertexScores[ vertex ] = getVertexScore( -1, remaining[ vertex ], cacheSize );
+			}
+
+			cacheCount = Math.min( newCacheCount, cacheSize );
+			System.arraycopy( newCache, 0, cache, 0, cacheCount );
+
+			/*
+			 * Update scores of vertices in the cache.
+			 */
+			for ( int i = 0; i < cacheCount; i++ )
+			{
+				final int vertex = cache[ i ];
+				cachePosition[ vertex ] = i;
+				vertexScores[ vertex ] = getVertexScore( i, remaining[ vertex ], cacheSize );
+			}
+
+			/*
+			 * Find the best triangle using a cached vertex.
+			 */
+			bestTriangle = -1;
+			double bestScore = -1.0;
+
+			for ( int i = 0; i < cacheCount; i++ )
+			{
+				final int vertex = cache[ i ];
+				final int start = offsets[ vertex ];
+				final int end = start + remaining[ vertex ];
+				for ( int j = start; j < end; j++ )
+				{
+					final int triangle = adjacentTriangles[ j ];
+					final double score = vertexScores[ indices[ triangle * 3 ] ] + vertexScores[ indices[ triangle * 3 + 1 ] ] + vertexScores[ indices[ triangle * 3 + 2 ] ];
+					if ( score > bestScore )
+					{
+						bestScore = score;
+						bestTriangle = triangle;
+					}
+				}
+			}
+		}
+
+		_indices = result;
+	}
+
+	/**
+	 * Calculates the score of a vertex, which determines how desirable it is
+	 * to add a triangle using the vertex.
+	 *
+	 * @param cachePosition     Position of the vertex in the cache;
+	 *                          -1 if the vertex is not cached.
+	 * @param remainingTriangles Number of triangles that use the vertex and
+	 *                          were not added yet.
+	 * @param cacheSize         Size of the cache.
+	 *
+	 * @return Vertex score.
+	 */
+	private static double getVertexScore( final int cachePosition, final int remainingTriangles, final int cacheSize )
+	{
+		double result;
+
+		if ( remainingTriangles == 0 )
+		{
+			result = -1.0;
+		}
+		else
+		{
+			if ( cachePosition < 0 )
+			{
+				result = 0.0;
+			}
+			else if ( cachePosition < 3 )
+			{
+				result = LAST_TRIANGLE_SCORE;
+			}
+			else
+			{
+				result = Math.pow( 1.0 - (double)( cachePosition - 3 ) / (double)( cacheSize - 3 ), CACHE_DECAY_POWER );
+			}
+
+			result += VALENCE_BOOST_SCALE * Math.pow( (double)remainingTriangles, VALENCE_BOOST_POWER );
+		}
+
+		return result;
+	}
+
+	/**
+	 * Reorders vertices in the order in which they are first used by the
+	 * triangles, to improve locality of vertex fetches. Unused vertices are
+	 * removed.
+	 */
+	public void optimizeVertexOrder()
+	{
+		final int stride = _stride;
+		final float[] vertices = _vertices;
+		final int[] indices = _indices;
+
+		final int[] remap = new int[ _vertexCount ];
+		Arrays.fill( remap, -1 );
+
+		final float[] result = new float[ _vertexCount * stride ];
+		int resultCount = 0;
+
+		for ( int i = 0; i < indices.length; i++ )
+		{
+			final int vertex = indices[ i ];
+			int newIndex = remap[ vertex ];
+			if ( newIndex < 0 )
+			{
+				newIndex = resultCount++;
+				remap[ vertex ] = newIndex;
+				System.arraycopy( vertices, vertex * stride, result, newIndex * stride, stride );
+			}
+			indices[ i ] = newIndex;
+		}
+
+		_vertices = result;
+		_vertexCount = resultCount;
+	}
+
+	/**
+	 * Calculates the average cache miss ratio (ACMR), i.e. the average number
+	 * of vertices that need to be transformed per triangle, for a FIFO vertex
+	 * cache of the given size. The ACMR is 3 for unindexed geometry, and
+	 * approaches 0.5 for large regular grids with an ideal triangle order.
+	 *
+	 * @param cacheSize Size of the simulated vertex cache.
+	 *
+	 * @return Average cache miss ratio; 0 if there are no triangles.
+	 */
+	public double getAverageCacheMissRatio( final int cacheSize )
+	{
+		final int[] indices = _indices;
+		final int triangleCount = indices.length / 3;
+
+		int misses = 0;
+		if ( triangleCount > 0 )
+		{
+			/*
+			 * For each vertex, the miss that caused it to enter the cache.
+			 * A vertex is cached if it entered within the last 'cacheSize'
+			 * misses.
+			 */
+			final int[] entered = new int[ _vertexCount ];
+			Arrays.fill( entered, -cacheSize );
+
+			for ( final int vertex : indices )
+			{
+				if ( misses - entered[ vertex ] >= cacheSize )
+				{
+					entered[ vertex ] = ++misses;
+				}
+			}
+		}
+
+		return ( triangleCount > 0 ) ? (double)misses / (double)triangleCount : 0.0;
+	}
+}
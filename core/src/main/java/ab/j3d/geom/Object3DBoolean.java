@@ -0,0 +1,2201 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.geom;
+
+import java.util.*;
+
+import ab.j3d.*;
+import ab.j3d.geom.tessellator.*;
+import ab.j3d.model.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Boolean operations on objects, also known as constructive solid geometry
+ * (CSG). Unlike {@link Object3DSlicer}, the second operand may be any closed
+ * object, e.g. a concave cut-out.
+ *
+ * <p>The triangles of both objects are stored in a bounding volume hierarchy,
+ * which is used to find the pairs of triangles that intersect and to cast
+ * rays that determine whether a point lies inside the other object. Both
+ * objects must therefore be closed, i.e. each edge must be shared by two
+ * faces.
+ *
+ * <p>Faces that are not intersected by the other object are kept or dropped
+ * as a whole. These faces are classified in parallel for large objects, so
+ * the cost of the operation mostly depends on the size of the result. Only
+ * faces that are intersected are split along the intersection; the remaining
+ * parts of such a face are tessellated again using a {@link Tessellator}.
+ * Appearances, smoothing and two-sided flags of face groups are preserved,
+ * as are texture coordinates and vertex normals, which are interpolated for
+ * new vertices.
+ *
+ * <p>Where faces of both objects coincide, the face of the first object is
+ * kept if it is part of the boundary of the result.
+ *
+ * @author Peter S. Heijnen
+ */
+public class Object3DBoolean
+{
+	/**
+	 * Boolean operation.
+	 */
+	public enum Operation
+	{
+		/**
+		 * Everything inside either object.
+		 */
+		UNION,
+
+		/**
+		 * Everything inside the first object, but not inside the second.
+		 */
+		DIFFERENCE,
+
+		/**
+		 * Everything inside both objects.
+		 */
+		INTERSECTION
+	}
+
+	/**
+	 * Minimum number of faces or triangle pairs for which work is done in
+	 * parallel.
+	 */
+	private static final int PARALLEL_THRESHOLD = 1024;
+
+	/**
+	 * Maximum number of triangles in a leaf node of a {@link TriangleTree}.
+	 */
+	private static final int LEAF_SIZE = 4;
+
+	/**
+	 * Relative tolerance for coordinates.
+	 */
+	private static final double RELATIVE_TOLERANCE = 1.0e-9;
+
+	/**
+	 * Tolerance for barycentric coordinates of ray intersections. Rays that
+	 * pass this close to an edge are cast again in another direction.
+	 */
+	private static final double EDGE_TOLERANCE = 1.0e-9;
+
+	/**
+	 * Directions of rays used to determine whether a point is inside an
+	 * object. These are chosen to be unlikely to be parallel to any face or
+	 * edge of typical objects.
+	 */
+	private static final Vector3D[] RAY_DIRECTIONS =
+	{
+		Vector3D.normalize( 0.3137, 0.5271, 0.7903 ),
+		Vector3D.normalize( -0.6143, 0.2659, 0.7437 ),
+		Vector3D.normalize( 0.1789, -0.8311, 0.5261 )
+	};
+
+	/**
+	 * Location of a point outside the other object.
+	 */
+	private static final int OUTSIDE = 0;
+
+	/**
+	 * Location of a point inside the other object.
+	 */
+	private static final int INSIDE = 1;
+
+	/**
+	 * Location of a point on a face of the other object, with the same
+	 * orientation.
+	 */
+	private static final int SAME = 2;
+
+	/**
+	 * Location of a point on a face of the other object, with the opposite
+	 * orientation.
+	 */
+	private static final int OPPOSITE = 3;
+
+	/**
+	 * Operation to perform.
+	 */
+	@NotNull
+	private final Operation _operation;
+
+	/**
+	 * First operand.
+	 */
+	@NotNull
+	private final Operand _first;
+
+	/**
+	 * Second operand.
+	 */
+	@NotNull
+	private final Operand _second;
+
+	/**
+	 * Tolerance for coordinates.
+	 */
+	private final double _tolerance;
+
+	/**
+	 * Returns the union of two objects.
+	 *
+	 * @param object1 First object.
+	 * @param object2 Second object.
+	 *
+	 * @return Union of both objects.
+	 */
+	@NotNull
+	public static Object3D union( @NotNull final Object3D object1, @NotNull final Object3D object2 )
+	{
+		return apply( Operation.UNION, object1, Matrix3D.IDENTITY, object2 );
+	}
+
+	/**
+	 * Returns the difference of two objects.
+	 *
+	 * @param object1 Object to subtract from.
+	 * @param object2 Object to subtract.
+	 *
+	 * @return Difference of both objects.
+	 */
+	@NotNull
+	public static Object3D difference( @NotNull final Object3D object1, @NotNull final Object3D object2 )
+	{
+		return apply( Operation.DIFFERENCE, object1, Matrix3D.IDENTITY, object2 );
+	}
+
+	/**
+	 * Returns the intersection of two objects.
+	 *
+	 * @param object1 First object.
+	 * @param object2 Second object.
+	 *
+	 * @return Intersection of both objects.
+	 */
+	@NotNull
+	public static Object3D intersection( @NotNull final Object3D object1, @NotNull final Object3D object2 )
+	{
+		return apply( Operation.INTERSECTION, object1, Matrix3D.IDENTITY, object2 );
+	}
+
+	/**
+	 * Performs a boolean operation on two objects. The result is defined in
+	 * the coordinate system of the first object.
+	 *
+	 * @param operation        Operation to perform.
+	 * @param object1          First object.
+	 * @param object2ToObject1 Transformation from second to first object.
+	 * @param object2          Second object.
+	 *
+	 * @return Result of the operation.
+	 */
+	@NotNull
+	public static Object3D apply( @NotNull final Operation operation, @NotNull final Object3D object1, @NotNull final Matrix3D object2ToObject1, @NotNull final Object3D object2 )
+	{
+		final Object3DBoolean csg = new Object3DBoolean( operation, new Operand( object1, Matrix3D.IDENTITY, false ), new Operand( object2, object2ToObject1, true ) );
+		return csg.process();
+	}
+
+	/**
+	 * Constructs a new instance.
+	 *
+	 * @param operation Operation to perform.
+	 * @param first     First operand.
+	 * @param second    Second operand.
+	 */
+	private Object3DBoolean( @NotNull final Operation operation, @NotNull final Operand first, @NotNull final Operand second )
+	{
+		_operation = operation;
+		_first = first;
+		_second = second;
+
+		double size = 1.0;
+		for ( final double[] bounds : new double[][] { first._bounds, second._bounds } )
+		{
+			for ( int i = 0; i < 6; i++ )
+			{
+				size = Math.max( size, Math.abs( bounds[ i ] ) );
+			}
+		}
+		_tolerance = RELATIVE_TOLERANCE * size;
+	}
+
+	/**
+	 * Performs the operation.
+	 *
+	 * @return Result of the operation.
+	 */
+	@NotNull
+	private Object3D process()
+	{
+		final Operand first = _first;
+		final Operand second = _second;
+
+		if ( ( first._tree != null ) && ( second._tree != null ) && overlaps( first._bounds, second._bounds, _tolerance ) )
+		{
+			findIntersections();
+		}
+
+		final int firstFaceCount = first._faces.length;
+		final int faceCount = firstFaceCount + second._faces.length;
+		final List<List<FaceResult>> chunks = processInParallel( faceCount, new ParallelTools.RangeTask<List<FaceResult>>()
+		{
+			@Override
+			public List<FaceResult> process( final int start, final int end )
+			{
+				final List<FaceResult> result = new ArrayList<FaceResult>();
+				for ( int i = start; i < end; i++ )
+				{
+					final FaceResult faceResult = ( i < firstFaceCount ) ? processFace( first, second, i ) : processFace( second, first, i - firstFaceCount );
+					if ( faceResult != null )
+					{
+						result.add( faceResult );
+					}
+				}
+				return result;
+			}
+		} );
+
+		final Object3D result = new Object3D();
+		final Map<Vector3D, Integer> vertexIndices = new HashMap<Vector3D, Integer>();
+		for ( final List<FaceResult> chunk : chunks )
+		{
+			for ( final FaceResult faceResult : chunk )
+			{
+				final Operand operand = faceResult._operand;
+				final FaceGroup faceGroup = operand._faceGroups.get( operand._faceGroupIndices[ faceResult._face ] );
+				final List<Vertex3D> vertices = ( faceResult._vertices != null ) ? faceResult._vertices : copyVertices( operand, faceResult._face, faceResult._flip );
+
+				for ( final Vertex3D vertex : vertices )
+				{
+					Integer vertexIndex = vertexIndices.get( vertex.point );
+					if ( vertexIndex == null )
+					{
+						vertexIndex = result.addVertex( vertex.point );
+						vertexIndices.put( vertex.point, vertexIndex );
+					}
+					vertex.vertexCoordinateIndex = vertexIndex;
+				}
+
+				result.addFace( faceGroup.getAppearance(), faceGroup.isSmooth(), faceGroup.isTwoSided(), new Face3D( vertices, faceResult._tessellation ) );
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Finds all pairs of intersecting triangles and stores the intersection
+	 * segments with the triangles of both operands.
+	 */
+	private void findIntersections()
+	{
+		final Operand first = _first;
+		final Operand second = _second;
+
+		final IntArray pairs = new IntArray();
+		first._tree.findOverlaps( second._tree, _tolerance, pairs );
+
+		final int[] pairData = pairs.getData();
+		final List<SegmentList> chunks = processInParallel( pairs.getSize() / 2, new ParallelTools.RangeTask<SegmentList>()
+		{
+			@Override
+			public SegmentList process( final int start, final int end )
+			{
+				final SegmentList result = new SegmentList();
+				for ( int i = start; i < end; i++ )
+				{
+					intersectTriangles( pairData[ i * 2 ], pairData[ i * 2 + 1 ], result );
+				}
+				return result;
+			}
+		} );
+
+		for ( final SegmentList chunk : chunks )
+		{
+			final IntArray triangles = chunk._triangles;
+			final List<Vector3D> points = chunk._points;
+			for ( int i = 0; i < triangles.getSize(); i++ )
+			{
+				final int triangle = triangles.get( i );
+				final Operand operand = ( triangle < 0 ) ? second : first;
+				operand.addSegment( ( triangle < 0 ) ? -1 - triangle : triangle, points.get( i * 2 ), points.get( i * 2 + 1 ) );
+			}
+		}
+	}
+
+	/**
+	 * Determines the intersection between a triangle of the first operand and
+	 * a triangle of the second operand.
+	 *
+	 * <p>If the triangles are not coplanar, their intersection is a single
+	 * segment, which is added for both triangles. If the triangles are
+	 * coplanar, the edges of each triangle are added to the other triangle,
+	 * so coinciding parts of faces are split off.
+	 *
+	 * @param triangle1 Triangle of first operand.
+	 * @param triangle2 Triangle of second operand.
+	 * @param result    Segments of intersection; the triangles of the second
+	 *                  operand are stored as {@code -1 - triangle}.
+	 */
+	private void intersectTriangles( final int triangle1, final int triangle2, @NotNull final SegmentList result )
+	{
+		final Operand first = _first;
+		final Operand second = _second;
+		final double tolerance = _tolerance;
+
+		final Vector3D[] points1 = first._trianglePoints;
+		final Vector3D a0 = points1[ triangle1 * 3 ];
+		final Vector3D a1 = points1[ triangle1 * 3 + 1 ];
+		final Vector3D a2 = points1[ triangle1 * 3 + 2 ];
+
+		final Vector3D[] points2 = second._trianglePoints;
+		final Vector3D b0 = points2[ triangle2 * 3 ];
+		final Vector3D b1 = points2[ triangle2 * 3 + 1 ];
+		final Vector3D b2 = points2[ triangle2 * 3 + 2 ];
+
+		final double[] planes1 = first._planes;
+		final double[] planes2 = second._planes;
+		final int plane1 = triangle1 * 4;
+		final int plane2 = triangle2 * 4;
+
+		if ( !first.isDegenerate( triangle1 ) && !second.isDegenerate( triangle2 ) && GeometryTools.testTriangleTriangleIntersection( a0, a1, a2, b0, b1, b2 ) )
+		{
+			final double da0 = getDistance( planes2, plane2, a0, tolerance );
+			final double da1 = getDistance( planes2, plane2, a1, tolerance );
+			final double da2 = getDistance( planes2, plane2, a2, tolerance );
+
+			final double db0 = getDistance( planes1, plane1, b0, tolerance );
+			final double db1 = getDistance( planes1, plane1, b1, tolerance );
+			final double db2 = getDistance( planes1, plane1, b2, tolerance );
+
+			if ( ( ( da0 == 0.0 ) && ( da1 == 0.0 ) && ( da2 == 0.0 ) ) || ( ( db0 == 0.0 ) && ( db1 == 0.0 ) && ( db2 == 0.0 ) ) )
+			{
+				result.add( triangle1, b0, b1 );
+				result.add( triangle1, b1, b2 );
+				result.add( triangle1, b2, b0 );
+				result.add( -1 - triangle2, a0, a1 );
+				result.add( -1 - triangle2, a1, a2 );
+				result.add( -1 - triangle2, a2, a0 );
+			}
+			else
+			{
+				final Vector3D[] segment1 = getPlaneCrossing( a0, a1, a2, da0, da1, da2 );
+				final Vector3D[] segment2 = getPlaneCrossing( b0, b1, b2, db0, db1, db2 );
+				if ( ( segment1 != null ) && ( segment2 != null ) )
+				{
+					/*
+					 * Both segments lie on the line where the planes of the
+					 * triangles intersect. The intersection of the triangles
+					 * is the overlap of these segments.
+					 */
+					final Vector3D direction = Vector3D.cross( planes1[ plane1 ], planes1[ plane1 + 1 ], planes1[ plane1 + 2 ], planes2[ plane2 ], planes2[ plane2 + 1 ], planes2[ plane2 + 2 ] );
+					final double length = direction.length();
+
+					double start1 = Vector3D.dot( direction, segment1[ 0 ] );
+					double end1 = Vector3D.dot( direction, segment1[ 1 ] );
+					if ( start1 > end1 )
+					{
+						final double temp = start1;
+						start1 = end1;
+						end1 = temp;
+						final Vector3D point = segment1[ 0 ];
+						segment1[ 0 ] = segment1[ 1 ];
+						segment1[ 1 ] = point;
+					}
+
+					double start2 = Vector3D.dot( direction, segment2[ 0 ] );
+					double end2 = Vector3D.dot( direction, segment2[ 1 ] );
+					if ( start2 > end2 )
+					{
+						final double temp = start2;
+						start2 = end2;
+						end2 = temp;
+						final Vector3D point = segment2[ 0 ];
+						segment2[ 0 ] = segment2[ 1 ];
+						segment2[ 1 ] = point;
+					}
+
+					if ( ( Math.min( end1, end2 ) - Math.max( start1, start2 ) ) > tolerance * length )
+					{
+						final Vector3D start = ( start1 >= start2 ) ? segment1[ 0 ] : segment2[ 0 ];
+						final Vector3D end = ( end1 <= end2 ) ? segment1[ 1 ] : segment2[ 1 ];
+						result.add( triangle1, start, end );
+						result.add( -1 - triangle2, start, end );
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the signed distance from a point to the plane of a triangle.
+	 * Distances within the tolerance are returned as zero.
+	 *
+	 * @param planes    Triangle planes (normal and distance).
+	 * @param offset    Offset of plane in {@code planes}.
+	 * @param point     Point to get distance to.
+	 * @param tolerance Tolerance for coordinates.
+	 *
+	 * @return Signed distance from plane to point.
+	 */
+	private static double getDistance( @NotNull final double[] planes, final int offset, @NotNull final Vector3D point, final double tolerance )
+	{
+		final double distance = planes[ offset ] * point.x + planes[ offset + 1 ] * point.y + planes[ offset + 2 ] * point.z - planes[ offset + 3 ];
+		return ( Math.abs( distance ) <= tolerance ) ? 0.0 : distance;
+	}
+
+	/**
+	 * Returns the segment where a triangle crosses a plane.
+	 *
+	 * @param v0 First vertex of triangle.
+	 * @param v1 Second vertex of triangle.
+	 * @param v2 Third vertex of triangle.
+	 * @param d0 Distance from plane to first vertex.
+	 * @param d1 Distance from plane to second vertex.
+	 * @param d2 Distance from plane to third vertex.
+	 *
+	 * @return End points of segment;
+	 * {@code null} if the triangle only touches the plane in a single point.
+	 */
+	@Nullable
+	private static Vector3D[] getPlaneCrossing( @NotNull final Vector3D v0, @NotNull final Vector3D v1, @NotNull final Vector3D v2, final double d0, final double d1, final double d2 )
+	{
+		final Vector3D[] result = new Vector3D[ 2 ];
+		int count = 0;
+
+		if ( d0 == 0.0 )
+		{
+			result[ count++ ] = v0;
+		}
+
+		if ( ( d0 * d1 ) < 0.0 )
+		{
+			result[ count++ ] = getEdgePoint( v0, v1, d0, d1 );
+		}
+
+		if ( d1 == 0.0 )
+		{
+			result[ count++ ] = v1;
+		}
+
+		if ( ( count < 2 ) && ( ( d1 * d2 ) < 0.0 ) )
+		{
+			result[ count++ ] = getEdgePoint( v1, v2, d1, d2 );
+		}
+
+		if ( ( count < 2 ) && ( d2 == 0.0 ) )
+		{
+			result[ count++ ] = v2;
+		}
+
+		if ( ( count < 2 ) && ( ( d2 * d0 ) < 0.0 ) )
+		{
+			result[ count++ ] = getEdgePoint( v2, v0, d2, d0 );
+		}
+
+		return ( count == 2 ) ? result : null;
+	}
+
+	/**
+	 * Returns the point where an edge crosses a plane. The point is calculated
+	 * in the same way regardless of the direction of the edge, so edges that
+	 * are shared by adjacent triangles are split at exactly the same point.
+	 *
+	 * @param p1 Start of edge.
+	 * @param p2 End of edge.
+	 * @param d1 Distance from plane to start of edge.
+	 * @param d2 Distance from plane to end of edge.
+	 *
+	 * @return Point where the edge crosses the plane.
+	 */
+	@NotNull
+	private static Vector3D getEdgePoint( @NotNull final Vector3D p1, @NotNull final Vector3D p2, final double d1, final double d2 )
+	{
+		final Vector3D result;
+		if ( compare( p1, p2 ) > 0 )
+		{
+			result = getEdgePoint( p2, p1, d2, d1 );
+		}
+		else
+		{
+			final double t = d1 / ( d1 - d2 );
+			result = new Vector3D( p1.x + t * ( p2.x - p1.x ), p1.y + t * ( p2.y - p1.y ), p1.z + t * ( p2.z - p1.z ) );
+		}
+		return result;
+	}
+
+	/**
+	 * Compares points lexicographically.
+	 *
+	 * @param p1 First point.
+	 * @param p2 Second point.
+	 *
+	 * @return Negative, zero or positive if the first point is less than,
+	 * equal to, or greater than the second point.
+	 */
+	private static int compare( @NotNull final Vector3D p1, @NotNull final Vector3D p2 )
+	{
+		int result = Double.compare( p1.x, p2.x );
+		if ( result == 0 )
+		{
+			result = Double.compare( p1.y, p2.y );
+			if ( result == 0 )
+			{
+				result = Double.compare( p1.z, p2.z );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Determines which parts of a face are part of the result.
+	 *
+	 * @param operand Operand that the face belongs to.
+	 * @param other   Other operand.
+	 * @param face    Index of face.
+	 *
+	 * @return Parts of face to keep; {@code null} if the face is dropped.
+	 */
+	@Nullable
+	private FaceResult processFace( @NotNull final Operand operand, @NotNull final Operand other, final int face )
+	{
+		FaceResult result = null;
+
+		final int[] faceTriangles = operand._faceTriangles;
+		final int start = faceTriangles[ face ];
+		final int end = faceTriangles[ face + 1 ];
+		final boolean flip = operand._second && ( _operation == Operation.DIFFERENCE );
+
+		/*
+		 * Faces that are not intersected are classified as a whole, unless
+		 * they consist of multiple outlines that may be on either side of the
+		 * other object.
+		 */
+		int location = -1;
+		if ( !operand._faceIntersected[ face ] )
+		{
+			int largest = -1;
+			double largestArea = 0.0;
+			for ( int triangle = start; triangle < end; triangle++ )
+			{
+				final double area = operand.getArea( triangle );
+				if ( area > largestArea )
+				{
+					largest = triangle;
+					largestArea = area;
+				}
+			}
+
+			if ( largest >= 0 )
+			{
+				location = classifyTriangle( operand, other, largest );
+
+				if ( operand._faces[ face ].getOutlines().size() > 1 )
+				{
+					for ( int triangle = start; triangle < end; triangle++ )
+					{
+						if ( !operand.isDegenerate( triangle ) && ( classifyTriangle( operand, other, triangle ) != location ) )
+						{
+							location = -1;
+							break;
+						}
+					}
+				}
+			}
+		}
+
+		if ( location >= 0 )
+		{
+			if ( isKept( operand, location ) )
+			{
+				result = new FaceResult( operand, face, flip, null, flip ? flip( operand._faces[ face ].getTessellation() ) : operand._faces[ face ].getTessellation() );
+			}
+		}
+		else
+		{
+			final List<Vector3D[]> keptPieces = new ArrayList<Vector3D[]>();
+			final IntArray keptTriangles = new IntArray();
+
+			for ( int triangle = start; triangle < end; triangle++ )
+			{
+				if ( !operand.isDegenerate( triangle ) )
+				{
+					for ( final Vector3D[] piece : splitTriangle( operand, triangle ) )
+					{
+						double x = 0.0;
+						double y = 0.0;
+						double z = 0.0;
+						for ( final Vector3D point : piece )
+						{
+							x += point.x;
+							y += point.y;
+							z += point.z;
+						}
+
+						final double[] planes = operand._planes;
+						final int count = piece.length;
+						if ( isKept( operand, other.classify( x / (double)count, y / (double)count, z / (double)count, planes[ triangle * 4 ], planes[ triangle * 4 + 1 ], planes[ triangle * 4 + 2 ], _tolerance ) ) )
+						{
+							keptPieces.add( piece );
+							keptTriangles.add( triangle );
+						}
+					}
+				}
+			}
+
+			if ( !keptPieces.isEmpty() )
+			{
+				result = tessellate( operand, face, insertJunctions( keptPieces, _tolerance ), keptTriangles, flip );
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns whether a part of an operand at the given location relative to
+	 * the other operand is part of the result.
+	 *
+	 * @param operand  Operand.
+	 * @param location Location relative to the other operand.
+	 *
+	 * @return {@code true} if the part is kept.
+	 */
+	private boolean isKept( @NotNull final Operand operand, final int location )
+	{
+		final boolean result;
+		switch ( _operation )
+		{
+			case UNION:
+				result = ( location == OUTSIDE ) || ( !operand._second && ( location == SAME ) );
+				break;
+
+			case DIFFERENCE:
+				result = operand._second ? ( location == INSIDE ) : ( location == OUTSIDE ) || ( location == OPPOSITE );
+				break;
+
+			case INTERSECTION:
+				result = ( location == INSIDE ) || ( !operand._second && ( location == SAME ) );
+				break;
+
+			default:
+				throw new AssertionError( _operation );
+		}
+		return result;
+	}
+
+	/**
+	 * Determines the location of a triangle relative to the other operand,
+	 * using the center of the triangle.
+	 *
+	 * @param operand  Operand that the triangle belongs to.
+	 * @param other    Other operand.
+	 * @param triangle Index of triangle.
+	 *
+	 * @return Location of the triangle.
+	 */
+	private int classifyTriangle( @NotNull final Operand operand, @NotNull final Operand other, final int triangle )
+	{
+		final Vector3D[] points = operand._trianglePoints;
+		final Vector3D p0 = points[ triangle * 3 ];
+		final Vector3D p1 = points[ triangle * 3 + 1 ];
+		final Vector3D p2 = points[ triangle * 3 + 2 ];
+		final double[] planes = operand._planes;
+		return other.classify( ( p0.x + p1.x + p2.x ) / 3.0, ( p0.y + p1.y + p2.y ) / 3.0, ( p0.z + p1.z + p2.z ) / 3.0, planes[ triangle * 4 ], planes[ triangle * 4 + 1 ], planes[ triangle * 4 + 2 ], _tolerance );
+	}
+
+	/**
+	 * Splits a triangle along its intersection segments. Each piece is
+	 * convex, with vertices in counter-clockwise order around the normal of
+	 * the triangle, and lies on one side of the other operand.
+	 *
+	 * @param operand  Operand that the triangle belongs to.
+	 * @param triangle Index of triangle.
+	 *
+	 * @return Pieces of the triangle.
+	 */
+	@NotNull
+	private List<Vector3D[]> splitTriangle( @NotNull final Operand operand, final int triangle )
+	{
+		final double tolerance = _tolerance;
+		final Vector3D[] points = operand._trianglePoints;
+
+		List<Vector3D[]> result = new ArrayList<Vector3D[]>();
+		result.add( new Vector3D[] { points[ triangle * 3 ], points[ triangle * 3 + 1 ], points[ triangle * 3 + 2 ] } );
+
+		final List<Vector3D> segments = operand._segments.get( triangle );
+		if ( segments != null )
+		{
+			final double[] planes = operand._planes;
+			final double nx = planes[ triangle * 4 ];
+			final double ny = planes[ triangle * 4 + 1 ];
+			final double nz = planes[ triangle * 4 + 2 ];
+
+			for ( int i = 0; i < segments.size(); i += 2 )
+			{
+				final Vector3D start = segments.get( i );
+				final Vector3D end = segments.get( i + 1 );
+				final double dx = end.x - start.x;
+				final double dy = end.y - start.y;
+				final double dz = end.z - start.z;
+				final double length = Vector3D.length( dx, dy, dz );
+
+				if ( length > tolerance )
+				{
+					/*
+					 * Pieces are split by the plane through the segment that is
+					 * perpendicular to the triangle.
+					 */
+					final Vector3D splitNormal = Vector3D.normalize( ny * dz - nz * dy, nz * dx - nx * dz, nx * dy - ny * dx );
+					final double splitDistance = Vector3D.dot( splitNormal, start );
+
+					final List<Vector3D[]> pieces = new ArrayList<Vector3D[]>( result.size() + 1 );
+					for ( final Vector3D[] piece : result )
+					{
+						if ( !isCrossedBySegment( piece, nx, ny, nz, start, dx, dy, dz, length, tolerance ) || !splitPiece( piece, splitNormal, splitDistance, start, end, tolerance, pieces ) )
+						{
+							pieces.add( piece );
+						}
+					}
+					result = pieces;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Tests whether a segment crosses the interior of a convex piece.
+	 *
+	 * @param piece     Convex piece, counter-clockwise around its normal.
+	 * @param nx        X component of the normal of the piece.
+	 * @param ny        Y component of the normal of the piece.
+	 * @param nz        Z component of the normal of the piece.
+	 * @param start     Start of segment.
+	 * @param dx        X component of segment direction.
+	 * @param dy        Y component of segment direction.
+	 * @param dz        Z component of segment direction.
+	 * @param length    Length of segment.
+	 * @param tolerance Tolerance for coordinates.
+	 *
+	 * @return {@code true} if the segment crosses the piece.
+	 */
+	private static boolean isCrossedBySegment( @NotNull final Vector3D[] piece, final double nx, final double ny, final double nz, @NotNull final Vector3D start, final double dx, final double dy, final double dz, final double length, final double tolerance )
+	{
+		double minimum = 0.0;
+		double maximum = 1.0;
+
+		Vector3D previous = piece[ piece.length - 1 ];
+		for ( int i = 0; ( i < piece.length ) && ( minimum < maximum ); i++ )
+		{
+			final Vector3D current = piece[ i ];
+			final double ex = current.x - previous.x;
+			final double ey = current.y - previous.y;
+			final double ez = current.z - previous.z;
+
+			/*
+			 * The inward normal of the edge points to the inside of the piece.
+			 */
+			final double wx = ny * ez - nz * ey;
+			final double wy = nz * ex - nx * ez;
+			final double wz = nx * ey - ny * ex;
+			final double inside = wx * ( start.x - previous.x ) + wy * ( start.y - previous.y ) + wz * ( start.z - previous.z );
+			final double change = wx * dx + wy * dy + wz * dz;
+			final double edgeTolerance = tolerance * Vector3D.length( wx, wy, wz );
+
+			if ( Math.abs( change ) <= edgeTolerance / length )
+			{
+				if ( inside < -edgeTolerance )
+				{
+					maximum = minimum;
+				}
+			}
+			else if ( change > 0.0 )
+			{
+				minimum = Math.max( minimum, -inside / change );
+			}
+			else
+			{
+				maximum = Math.min( maximum, -inside / change );
+			}
+
+			previous = current;
+		}
+
+		return ( maximum - minimum ) * length > tolerance;
+	}
+
+	/**
+	 * Splits a convex piece by a plane.
+	 *
+	 * @param piece         Convex piece to split.
+	 * @param splitNormal   Normal of split plane.
+	 * @param splitDistance Distance of split plane to origin.
+	 * @param start         Start of intersection segment.
+	 * @param end           End of intersection segment.
+	 * @param tolerance     Tolerance for coordinates.
+	 * @param result        Pieces on either side of the plane are added to
+	 *                      this list.
+	 *
+	 * @return {@code true} if the piece was split;
+	 * {@code false} if it lies on one side of the plane.
+	 */
+	private static boolean splitPiece( @NotNull final Vector3D[] piece, @NotNull final Vector3D splitNormal, final double splitDistance, @NotNull final Vector3D start, @NotNull final Vector3D end, final double tolerance, @NotNull final List<Vector3D[]> result )
+	{
+		final int count = piece.length;
+		final double[] distances = new double[ count ];
+		boolean front = false;
+		boolean back = false;
+		for ( int i = 0; i < count; i++ )
+		{
+			final double distance = Vector3D.dot( splitNormal, piece[ i ] ) - splitDistance;
+			if ( distance > tolerance )
+			{
+				distances[ i ] = distance;
+				front = true;
+			}
+			else if ( distance < -tolerance )
+			{
+				distances[ i ] = distance;
+				back = true;
+			}
+		}
+
+		final boolean split = front && back;
+		if ( split )
+		{
+			final List<Vector3D> frontPiece = new ArrayList<Vector3D>( count + 1 );
+			final List<Vector3D> backPiece = new ArrayList<Vector3D>( count + 1 );
+
+			for ( int i = 0; i < count; i++ )
+			{
+				final Vector3D current = piece[ i ];
+				final double distance = distances[ i ];
+				if ( distance >= 0.0 )
+				{
+					frontPiece.add( current );
+				}
+				if ( distance <= 0.0 )
+				{
+					backPiece.add( current );
+				}
+
+				final int next = ( i + 1 ) % count;
+				final double nextDistance = distances[ next ];
+				if ( ( distance * nextDistance ) < 0.0 )
+				{
+					Vector3D point = getEdgePoint( current, piece[ next ], distance, nextDistance );
+					if ( Vector3D.distanceBetween( point, start ) <= tolerance )
+					{
+						point = start;
+					}
+					else if ( Vector3D.distanceBetween( point, end ) <= tolerance )
+					{
+						point = end;
+					}
+					frontPiece.add( point );
+					backPiece.add( point );
+				}
+			}
+
+			result.add( frontPiece.toArray( new Vector3D[ frontPiece.size() ] ) );
+			result.add( backPiece.toArray( new Vector3D[ backPiece.size() ] ) );
+		}
+		return split;
+	}
+
+	/**
+	 * Inserts vertices of pieces that lie on an edge of another piece into
+	 * that edge. Splitting a piece creates vertices in the middle of the
+	 * edges of adjacent pieces (T-junctions). Without them, shared edges
+	 * are only nearly collinear after projection, and the tessellator creates
+	 * intersections between them that may leave gaps in the result.
+	 *
+	 * @param pieces    Convex pieces.
+	 * @param tolerance Tolerance for coordinates.
+	 *
+	 * @return Pieces with vertices inserted where needed.
+	 */
+	@NotNull
+	private static List<Vector3D[]> insertJunctions( @NotNull final List<Vector3D[]> pieces, final double tolerance )
+	{
+		final Set<Vector3D> pointSet = new LinkedHashSet<Vector3D>();
+		for ( final Vector3D[] piece : pieces )
+		{
+			pointSet.addAll( Arrays.asList( piece ) );
+		}
+		final Vector3D[] points = pointSet.toArray( new Vector3D[ pointSet.size() ] );
+
+		final List<Vector3D[]> result = new ArrayList<Vector3D[]>( pieces.size() );
+		final List<Vector3D> contour = new ArrayList<Vector3D>();
+		final List<Vector3D> junctions = new ArrayList<Vector3D>();
+
+		for ( final Vector3D[] piece : pieces )
+		{
+			contour.clear();
+			for ( int i = 0; i < piece.length; i++ )
+			{
+				final Vector3D start = piece[ i ];
+				final Vector3D end = piece[ ( i + 1 ) % piece.length ];
+				final double dx = end.x - start.x;
+				final double dy = end.y - start.y;
+				final double dz = end.z - start.z;
+				final double lengthSquared = dx * dx + dy * dy + dz * dz;
+
+				contour.add( start );
+
+				junctions.clear();
+				for ( final Vector3D point : points )
+				{
+					final double px = point.x - start.x;
+					final double py = point.y - start.y;
+					final double pz = point.z - start.z;
+					final double position = ( px * dx + py * dy + pz * dz ) / lengthSquared;
+					if ( ( position > 0.0 ) && ( position < 1.0 ) && !point.equals( start ) && !point.equals( end ) &&
+					     ( Vector3D.length( px - position * dx, py - position * dy, pz - position * dz ) <= tolerance ) )
+					{
+						junctions.add( point );
+					}
+				}
+
+				if ( junctions.size() > 1 )
+				{
+					Collections.sort( junctions, new Comparator<Vector3D>()
+					{
+						@Override
+						public int compare( final Vector3D point1, final Vector3D point2 )
+						{
+							return Double.compare( ( point1.x - start.x ) * dx + ( point1.y - start.y ) * dy + ( point1.z - start.z ) * dz,
+							                       ( point2.x - start.x ) * dx + ( point2.y - start.y ) * dy + ( point2.z - start.z ) * dz );
+						}
+					} );
+				}
+				contour.addAll( junctions );
+			}
+
+			result.add( ( contour.size() == piece.length ) ? piece : contour.toArray( new Vector3D[ contour.size() ] ) );
+		}
+
+		return result;
+	}
+
+	/**
+	 * Creates a new tessellation for the pieces of a face that are kept.
+	 *
+	 * @param operand   Operand that the face belongs to.
+	 * @param face      Index of face.
+	 * @param pieces    Pieces of the face to keep.
+	 * @param triangles Triangle that each piece belongs to.
+	 * @param flip      Whether to flip the face.
+	 *
+	 * @return Kept part of the face; {@code null} if nothing remains.
+	 */
+	@Nullable
+	private static FaceResult tessellate( @NotNull final Operand operand, final int face, @NotNull final List<Vector3D[]> pieces, @NotNull final IntArray triangles, final boolean flip )
+	{
+		final double[] planes = operand._planes;
+		final int plane = triangles.get( 0 ) * 4;
+		final Vector3D origin = pieces.get( 0 )[ 0 ];
+		final Matrix3D plane2object = Matrix3D.getPlaneTransform( origin.x, origin.y, origin.z, planes[ plane ], planes[ plane + 1 ], planes[ plane + 2 ], true );
+		final Matrix3D object2plane = plane2object.inverse();
+
+		final Map<Vector2D, Vertex3D> vertexMap = new HashMap<Vector2D, Vertex3D>();
+		final Mesh mesh = new Mesh( Mesh.WindingRule.NONZERO );
+		for ( int i = 0; i < pieces.size(); i++ )
+		{
+			mesh.beginContour();
+			for ( final Vector3D point : pieces.get( i ) )
+			{
+				final Vector2D planePoint = new Vector2D( object2plane.transformX( point ), object2plane.transformY( point ) );
+				if ( !vertexMap.containsKey( planePoint ) )
+				{
+					vertexMap.put( planePoint, createVertex( operand, face, triangles.get( i ), point, flip ) );
+				}
+				mesh.addVertex( planePoint );
+			}
+			mesh.endContour();
+		}
+		mesh.finish();
+
+		final HashList<Vector2D> vertexList = new HashList<Vector2D>();
+		final Tessellator tessellator = new Tessellator( vertexList, mesh );
+		final List<TessellationPrimitive> primitives = flip ? tessellator.getClockwisePrimitives() : tessellator.getCounterClockwisePrimitives();
+
+		FaceResult result = null;
+		if ( !primitives.isEmpty() )
+		{
+			final List<int[]> outlines = flip ? tessellator.getClockwiseOutlines() : tessellator.getCounterClockwiseOutlines();
+
+			final List<Vertex3D> vertices = new ArrayList<Vertex3D>( vertexList.size() );
+			for ( final Vector2D planePoint : vertexList )
+			{
+				Vertex3D vertex = vertexMap.get( planePoint );
+				if ( vertex == null )
+				{
+					final Vector3D point = plane2object.transform( planePoint.getX(), planePoint.getY(), 0.0 );
+					vertex = createVertex( operand, face, operand.findTriangle( face, point ), point, flip );
+				}
+				vertices.add( vertex );
+			}
+
+			result = new FaceResult( operand, face, flip, vertices, new Tessellation( outlines, primitives ) );
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a vertex at the given point, with texture coordinates and normal
+	 * interpolated from the vertices of a triangle.
+	 *
+	 * @param operand  Operand that the triangle belongs to.
+	 * @param face     Index of face.
+	 * @param triangle Index of triangle.
+	 * @param point    Point on the triangle.
+	 * @param flip     Whether to flip the normal.
+	 *
+	 * @return Vertex.
+	 */
+	@NotNull
+	private static Vertex3D createVertex( @NotNull final Operand operand, final int face, final int triangle, @NotNull final Vector3D point, final boolean flip )
+	{
+		final Face3D sourceFace = operand._faces[ face ];
+		final int[] corners = operand._corners;
+		final Vertex3D v0 = sourceFace.getVertex( corners[ triangle * 3 ] );
+		final Vertex3D v1 = sourceFace.getVertex( corners[ triangle * 3 + 1 ] );
+		final Vertex3D v2 = sourceFace.getVertex( corners[ triangle * 3 + 2 ] );
+
+		final double[] weights = operand.getBarycentricCoordinates( triangle, point );
+		final double w0 = weights[ 0 ];
+		final double w1 = weights[ 1 ];
+		final double w2 = weights[ 2 ];
+
+		final float u = (float)( w0 * (double)v0.colorMapU + w1 * (double)v1.colorMapU + w2 * (double)v2.colorMapU );
+		final float v = (float)( w0 * (double)v0.colorMapV + w1 * (double)v1.colorMapV + w2 * (double)v2.colorMapV );
+
+		Vector3D normal = null;
+		final Vector3D n0 = v0.getNormal();
+		final Vector3D n1 = v1.getNormal();
+		final Vector3D n2 = v2.getNormal();
+		if ( ( n0 != null ) && ( n1 != null ) && ( n2 != null ) )
+		{
+			final Vector3D sum = operand._transform.rotate( w0 * n0.x + w1 * n1.x + w2 * n2.x, w0 * n0.y + w1 * n1.y + w2 * n2.y, w0 * n0.z + w1 * n1.z + w2 * n2.z );
+			final double length = sum.length();
+			if ( length > 0.0 )
+			{
+				normal = flip ? sum.multiply( -1.0 / length ) : sum.multiply( 1.0 / length );
+			}
+		}
+
+		return new Vertex3D( point, normal, -1, u, v );
+	}
+
+	/**
+	 * Copies the vertices of a face that is kept as a whole.
+	 *
+	 * @param operand Operand that the face belongs to.
+	 * @param face    Index of face.
+	 * @param flip    Whether to flip the normals.
+	 *
+	 * @return Vertices of face.
+	 */
+	@NotNull
+	private static List<Vertex3D> copyVertices( @NotNull final Operand operand, final int face, final boolean flip )
+	{
+		final Face3D sourceFace = operand._faces[ face ];
+		final Vector3D[] points = operand._points;
+		final Matrix3D transform = operand._transform;
+
+		final int vertexCount = sourceFace.getVertexCount();
+		final List<Vertex3D> result = new ArrayList<Vertex3D>( vertexCount );
+		for ( int i = 0; i < vertexCount; i++ )
+		{
+			final Vertex3D vertex = sourceFace.getVertex( i );
+			Vector3D normal = vertex.getNormal();
+			if ( normal != null )
+			{
+				normal = transform.rotate( normal );
+				if ( flip )
+				{
+					normal = normal.inverse();
+				}
+			}
+			result.add( new Vertex3D( points[ vertex.vertexCoordinateIndex ], normal, -1, vertex.colorMapU, vertex.colorMapV ) );
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a tessellation with the opposite orientation.
+	 *
+	 * @param tessellation Tessellation to flip.
+	 *
+	 * @return Flipped tessellation.
+	 */
+	@NotNull
+	private static Tessellation flip( @NotNull final Tessellation tessellation )
+	{
+		final List<TessellationPrimitive> primitives = new ArrayList<TessellationPrimitive>();
+		for ( final TessellationPrimitive primitive : tessellation.getPrimitives() )
+		{
+			final int[] triangles = primitive.getTriangles().clone();
+			for ( int i = 0; i < triangles.length; i += 3 )
+			{
+				final int temp = triangles[ i ];
+				triangles[ i ] = triangles[ i + 2 ];
+				triangles[ i + 2 ] = temp;
+			}
+			primitives.add( new TriangleList( triangles ) );
+		}
+
+		final List<int[]> outlines = new ArrayList<int[]>();
+		for ( final int[] outline : tessellation.getOutlines() )
+		{
+			final int[] reversed = new int[ outline.length ];
+			for ( int i = 0; i < outline.length; i++ )
+			{
+				reversed[ i ] = outline[ outline.length - 1 - i ];
+			}
+			outlines.add( reversed );
+		}
+
+		return new Tessellation( outlines, primitives );
+	}
+
+	/**
+	 * Returns the scalar triple product of three vectors, i.e. the dot product
+	 * of the first vector with the cross product of the other two.
+	 *
+	 * @param nx X component of first vector.
+	 * @param ny Y component of first vector.
+	 * @param nz Z component of first vector.
+	 * @param ax X component of second vector.
+	 * @param ay Y component of second vector.
+	 * @param az Z component of second vector.
+	 * @param bx X component of third vector.
+	 * @param by Y component of third vector.
+	 * @param bz Z component of third vector.
+	 *
+	 * @return Scalar triple product.
+	 */
+	private static double getTripleProduct( final double nx, final double ny, final double nz, final double ax, final double ay, final double az, final double bx, final double by, final double bz )
+	{
+		return nx * ( ay * bz - az * by ) + ny * ( az * bx - ax * bz ) + nz * ( ax * by - ay * bx );
+	}
+
+	/**
+	 * Tests whether two bounding boxes overlap.
+	 *
+	 * @param bounds1   First bounding box (minimum and maximum coordinates).
+	 * @param bounds2   Second bounding box (minimum and maximum coordinates).
+	 * @param tolerance Tolerance for coordinates.
+	 *
+	 * @return {@code true} if the boxes overlap.
+	 */
+	private static boolean overlaps( @NotNull final double[] bounds1, @NotNull final double[] bounds2, final double tolerance )
+	{
+		return ( bounds1[ 0 ] <= bounds2[ 3 ] + tolerance ) && ( bounds2[ 0 ] <= bounds1[ 3 ] + tolerance ) &&
+		       ( bounds1[ 1 ] <= bounds2[ 4 ] + tolerance ) && ( bounds2[ 1 ] <= bounds1[ 4 ] + tolerance ) &&
+		       ( bounds1[ 2 ] <= bounds2[ 5 ] + tolerance ) && ( bounds2[ 2 ] <= bounds1[ 5 ] + tolerance );
+	}
+
+	/**
+	 * Processes a range of items, in parallel if there are many items.
+	 *
+	 * @param count Number of items.
+	 * @param task  Processes a range of items.
+	 *
+	 * @return Result for each range, in order.
+	 */
+	@NotNull
+	private static <T> List<T> processInParallel( final int count, @NotNull final ParallelTools.RangeTask<T> task )
+	{
+		return ParallelTools.processRanges( count, ( count < PARALLEL_THRESHOLD ) ? 1 : ParallelTools.getThreadCount(), task );
+	}
+
+	/**
+	 * Intersection segments found for a chunk of triangle pairs.
+	 */
+	private static class SegmentList
+	{
+		/**
+		 * Triangle for each segment.
+		 */
+		private final IntArray _triangles = new IntArray();
+
+		/**
+		 * End points of each segment.
+		 */
+		private final List<Vector3D> _points = new ArrayList<Vector3D>();
+
+		/**
+		 * Adds a segment.
+		 *
+		 * @param triangle Triangle.
+		 * @param start    Start of segment.
+		 * @param end      End of segment.
+		 */
+		void add( final int triangle, @NotNull final Vector3D start, @NotNull final Vector3D end )
+		{
+			_triangles.add( triangle );
+			_points.add( start );
+			_points.add( end );
+		}
+	}
+
+	/**
+	 * Part of a face that is kept in the result.
+	 */
+	private static class FaceResult
+	{
+		/**
+		 * Operand that the face belongs to.
+		 */
+		@NotNull
+		private final Operand _operand;
+
+		/**
+		 * Index of face.
+		 */
+		private final int _face;
+
+		/**
+		 * Whether the face is flipped.
+		 */
+		private final boolean _flip;
+
+		/**
+		 * Vertices of the new face; {@code null} to copy the original face.
+		 */
+		@Nullable
+		private final List<Vertex3D> _vertices;
+
+		/**
+		 * Tessellation of the new face.
+		 */
+		@NotNull
+		private final Tessellation _tessellation;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param operand      Operand that the face belongs to.
+		 * @param face         Index of face.
+		 * @param flip         Whether the face is flipped.
+		 * @param vertices     Vertices of the new face; {@code null} to copy
+		 *                     the original face.
+		 * @param tessellation Tessellation of the new face.
+		 */
+		FaceResult( @NotNull final Operand operand, final int face, final boolean flip, @Nullable final List<Vertex3D> vertices, @NotNull final Tessellation tessellation )
+		{
+			_operand = operand;
+			_face = face;
+			_flip = flip;
+			_vertices = vertices;
+			_tessellation = tessellation;
+		}
+	}
+
+	/**
+	 * Triangulated object with a bounding volume hierarchy.
+	 */
+	private static class Operand
+	{
+		/**
+		 * Whether this is the second operand.
+		 */
+		private final boolean _second;
+
+		/**
+		 * Transformation to the coordinate system of the result.
+		 */
+		@NotNull
+		private final Matrix3D _transform;
+
+		/**
+		 * Vertex coordinates, in the coordinate system of the result.
+		 */
+		@NotNull
+		private final Vector3D[] _points;
+
+		/**
+		 * Face groups of the object.
+		 */
+		@NotNull
+		private final List<FaceGroup> _faceGroups;
+
+		/**
+		 * Faces of the object.
+		 */
+		@NotNull
+		private final Face3D[] _faces;
+
+		/**
+		 * Index of the face group of each face.
+		 */
+		@NotNull
+		private final int[] _faceGroupIndices;
+
+		/**
+		 * Index of the first triangle of each face, followed by the number of
+		 * triangles.
+		 */
+		@NotNull
+		private final int[] _faceTriangles;
+
+		/**
+		 * Face vertex indices of the corners of each triangle.
+		 */
+		@NotNull
+		private final int[] _corners;
+
+		/**
+		 * Points of the corners of each triangle.
+		 */
+		@NotNull
+		private final Vector3D[] _trianglePoints;
+
+		/**
+		 * Plane of each triangle: unit normal and distance to origin; the
+		 * normal is zero for degenerate triangles.
+		 */
+		@NotNull
+		private final double[] _planes;
+
+		/**
+		 * Bounding box of the object (minimum and maximum coordinates).
+		 */
+		@NotNull
+		private final double[] _bounds;
+
+		/**
+		 * Bounding volume hierarchy; {@code null} if there are no triangles.
+		 */
+		@Nullable
+		private final TriangleTree _tree;
+
+		/**
+		 * End points of intersection segments for each triangle.
+		 */
+		@NotNull
+		private final List<List<Vector3D>> _segments;
+
+		/**
+		 * Whether each face is intersected by the other operand.
+		 */
+		@NotNull
+		private final boolean[] _faceIntersected;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param object    Object.
+		 * @param transform Transformation to the coordinate system of the
+		 *                  result.
+		 * @param second    Whether this is the second operand.
+		 */
+		Operand( @NotNull final Object3D object, @NotNull final Matrix3D transform, final boolean second )
+		{
+			_second = second;
+			_transform = transform;
+
+			final List<Vector3D> vertexCoordinates = object.getVertexCoordinates();
+			final Vector3D[] points = new Vector3D[ vertexCoordinates.size() ];
+			final double[] bounds = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+			for ( int i = 0; i < points.length; i++ )
+			{
+				final Vector3D point = transform.transform( vertexCoordinates.get( i ) );
+				points[ i ] = point;
+				bounds[ 0 ] = Math.min( bounds[ 0 ], point.x );
+				bounds[ 1 ] = Math.min( bounds[ 1 ], point.y );
+				bounds[ 2 ] = Math.min( bounds[ 2 ], point.z );
+				bounds[ 3 ] = Math.max( bounds[ 3 ], point.x );
+				bounds[ 4 ] = Math.max( bounds[ 4 ], point.y );
+				bounds[ 5 ] = Math.max( bounds[ 5 ], point.z );
+			}
+			if ( points.length == 0 )
+			{
+				Arrays.fill( bounds, 0.0 );
+			}
+			_points = points;
+			_bounds = bounds;
+
+			final List<FaceGroup> faceGroups = object.getFaceGroups();
+			int faceCount = 0;
+			for ( final FaceGroup faceGroup : faceGroups )
+			{
+				faceCount += faceGroup.getFaces().size();
+			}
+
+			final Face3D[] faces = new Face3D[ faceCount ];
+			final int[] faceGroupIndices = new int[ faceCount ];
+			final int[] faceTriangles = new int[ faceCount + 1 ];
+			final IntArray corners = new IntArray();
+			int face = 0;
+			for ( int i = 0; i < faceGroups.size(); i++ )
+			{
+				for ( final Face3D sourceFace : faceGroups.get( i ).getFaces() )
+				{
+					faces[ face ] = sourceFace;
+					faceGroupIndices[ face ] = i;
+					for ( final TessellationPrimitive primitive : sourceFace.getTessellation().getPrimitives() )
+					{
+						corners.add( primitive.getTriangles() );
+					}
+					faceTriangles[ ++face ] = corners.getSize() / 3;
+				}
+			}
+
+			final int triangleCount = corners.getSize() / 3;
+			final Vector3D[] trianglePoints = new Vector3D[ triangleCount * 3 ];
+			final double[] planes = new double[ triangleCount * 4 ];
+			for ( face = 0; face < faceCount; face++ )
+			{
+				final Face3D sourceFace = faces[ face ];
+				for ( int triangle = faceTriangles[ face ]; triangle < faceTriangles[ face + 1 ]; triangle++ )
+				{
+					final Vector3D p0 = points[ sourceFace.getVertex( corners.get( triangle * 3 ) ).vertexCoordinateIndex ];
+					final Vector3D p1 = points[ sourceFace.getVertex( corners.get( triangle * 3 + 1 ) ).vertexCoordinateIndex ];
+					final Vector3D p2 = points[ sourceFace.getVertex( corners.get( triangle * 3 + 2 ) ).vertexCoordinateIndex ];
+					trianglePoints[ triangle * 3 ] = p0;
+					trianglePoints[ triangle * 3 + 1 ] = p1;
+					trianglePoints[ triangle * 3 + 2 ] = p2;
+
+					final double ux = p1.x - p0.x;
+					final double uy = p1.y - p0.y;
+					final double uz = p1.z - p0.z;
+					final double vx = p2.x - p0.x;
+					final double vy = p2.y - p0.y;
+					final double vz = p2.z - p0.z;
+					final double nx = uy * vz - uz * vy;
+					final double ny = uz * vx - ux * vz;
+					final double nz = ux * vy - uy * vx;
+					final double length = Vector3D.length( nx, ny, nz );
+
+					/*
+					 * Slivers are treated as degenerate, since their normal is
+					 * unreliable.
+					 */
+					if ( length > 1.0e-12 * Vector3D.length( ux, uy, uz ) * Vector3D.length( vx, vy, vz ) )
+					{
+						planes[ triangle * 4 ] = nx / length;
+						planes[ triangle * 4 + 1 ] = ny / length;
+						planes[ triangle * 4 + 2 ] = nz / length;
+						planes[ triangle * 4 + 3 ] = ( nx * p0.x + ny * p0.y + nz * p0.z ) / length;
+					}
+				}
+			}
+
+			_faceGroups = faceGroups;
+			_faces = faces;
+			_faceGroupIndices = faceGroupIndices;
+			_faceTriangles = faceTriangles;
+			_corners = corners.toArray();
+			_trianglePoints = trianglePoints;
+			_planes = planes;
+			_tree = ( triangleCount > 0 ) ? new TriangleTree( trianglePoints, triangleCount ) : null;
+			_segments = new ArrayList<List<Vector3D>>( Collections.<List<Vector3D>>nCopies( triangleCount, null ) );
+			_faceIntersected = new boolean[ faceCount ];
+		}
+
+		/**
+		 * Returns whether a triangle is degenerate.
+		 *
+		 * @param triangle Index of triangle.
+		 *
+		 * @return {@code true} if the triangle is degenerate.
+		 */
+		boolean isDegenerate( final int triangle )
+		{
+			final double[] planes = _planes;
+			return ( planes[ triangle * 4 ] == 0.0 ) && ( planes[ triangle * 4 + 1 ] == 0.0 ) && ( planes[ triangle * 4 + 2 ] == 0.0 );
+		}
+
+		/**
+		 * Returns the area of a triangle.
+		 *
+		 * @param triangle Index of triangle.
+		 *
+		 * @return Area of the triangle; {@code 0} if it is degenerate.
+		 */
+		double getArea( final int triangle )
+		{
+			double result = 0.0;
+			if ( !isDegenerate( triangle ) )
+			{
+				final Vector3D[] points = _trianglePoints;
+				final Vector3D p0 = points[ triangle * 3 ];
+				final Vector3D p1 = points[ triangle * 3 + 1 ];
+				final Vector3D p2 = points[ triangle * 3 + 2 ];
+				result = 0.5 * Vector3D.cross( p1.x - p0.x, p1.y - p0.y, p1.z - p0.z, p2.x - p0.x, p2.y - p0.y, p2.z - p0.z ).length();
+			}
+			return result;
+		}
+
+		/**
+		 * Adds an intersection segment to a triangle.
+		 *
+		 * @param triangle Index of triangle.
+		 * @param start    Start of segment.
+		 * @param end      End of segment.
+		 */
+		void addSegment( final int triangle, @NotNull final Vector3D start, @NotNull final Vector3D end )
+		{
+			List<Vector3D> segments = _segments.get( triangle );
+			if ( segments == null )
+			{
+				segments = new ArrayList<Vector3D>();
+				_segments.set( triangle, segments );
+
+				final int face = findFace( triangle );
+				_faceIntersected[ face ] = true;
+			}
+			segments.add( start );
+			segments.add( end );
+		}
+
+		/**
+		 * Returns the face that a triangle belongs to.
+		 *
+		 * @param triangle Index of triangle.
+		 *
+		 * @return Index of face.
+		 */
+		private int findFace( final int triangle )
+		{
+			final int[] faceTriangles = _faceTriangles;
+			int low = 0;
+			int high = faceTriangles.length - 2;
+			while ( low < high )
+			{
+				final int middle = ( low + high + 1 ) >>> 1;
+				if ( faceTriangles[ middle ] <= triangle )
+				{
+					low = middle;
+				}
+				else
+				{
+					high = middle - 1;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * Returns the triangle of a face that contains the given point, or
+		 * is closest to containing it.
+		 *
+		 * @param face  Index of face.
+		 * @param point Point on the face.
+		 *
+		 * @return Index of triangle.
+		 */
+		int findTriangle( final int face, @NotNull final Vector3D point )
+		{
+			int result = _faceTriangles[ face ];
+			double best = Double.NEGATIVE_INFINITY;
+			for ( int triangle = _faceTriangles[ face ]; triangle < _faceTriangles[ face + 1 ]; triangle++ )
+			{
+				if ( !isDegenerate( triangle ) )
+				{
+					final double[] weights = getBarycentricCoordinates( triangle, point );
+					final double minimum = Math.min( weights[ 0 ], Math.min( weights[ 1 ], weights[ 2 ] ) );
+					if ( minimum > best )
+					{
+						result = triangle;
+						best = minimum;
+					}
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Returns the barycentric coordinates of a point projected onto the
+		 * plane of a non-degenerate triangle.
+		 *
+		 * @param triangle Index of triangle.
+		 * @param point    Point.
+		 *
+		 * @return Weights of the corners of the triangle.
+		 */
+		@NotNull
+		double[] getBarycentricCoordinates( final int triangle, @NotNull final Vector3D point )
+		{
+			final Vector3D[] points = _trianglePoints;
+			final Vector3D p0 = points[ triangle * 3 ];
+			final Vector3D p1 = points[ triangle * 3 + 1 ];
+			final Vector3D p2 = points[ triangle * 3 + 2 ];
+			final double[] planes = _planes;
+			final double nx = planes[ triangle * 4 ];
+			final double ny = planes[ triangle * 4 + 1 ];
+			final double nz = planes[ triangle * 4 + 2 ];
+
+			final double area = getTripleProduct( nx, ny, nz, p1.x - p0.x, p1.y - p0.y, p1.z - p0.z, p2.x - p0.x, p2.y - p0.y, p2.z - p0.z );
+			final double w0 = getTripleProduct( nx, ny, nz, p2.x - p1.x, p2.y - p1.y, p2.z - p1.z, point.x - p1.x, point.y - p1.y, point.z - p1.z ) / area;
+			final double w1 = getTripleProduct( nx, ny, nz, p0.x - p2.x, p0.y - p2.y, p0.z - p2.z, point.x - p2.x, point.y - p2.y, point.z - p2.z ) / area;
+			return new double[] { w0, w1, 1.0 - w0 - w1 };
+		}
+
+		/**
+		 * Determines the location of a point relative to this object.
+		 *
+		 * @param x         X coordinate of point.
+		 * @param y         Y coordinate of point.
+		 * @param z         Z coordinate of point.
+		 * @param nx        X component of normal at point.
+		 * @param ny        Y component of normal at point.
+		 * @param nz        Z component of normal at point.
+		 * @param tolerance Tolerance for coordinates.
+		 *
+		 * @return Location of the point.
+		 */
+		int classify( final double x, final double y, final double z, final double nx, final double ny, final double nz, final double tolerance )
+		{
+			final double[] bounds = _bounds;
+			final TriangleTree tree = _tree;
+
+			int result = OUTSIDE;
+			if ( ( tree != null ) && ( x >= bounds[ 0 ] - tolerance ) && ( y >= bounds[ 1 ] - tolerance ) && ( z >= bounds[ 2 ] - tolerance ) &&
+			     ( x <= bounds[ 3 ] + tolerance ) && ( y <= bounds[ 4 ] + tolerance ) && ( z <= bounds[ 5 ] + tolerance ) )
+			{
+				final int surface = tree.findSurface( this, x, y, z, tolerance );
+				if ( surface >= 0 )
+				{
+					final double[] planes = _planes;
+					result = ( nx * planes[ surface * 4 ] + ny * planes[ surface * 4 + 1 ] + nz * planes[ surface * 4 + 2 ] > 0.0 ) ? SAME : OPPOSITE;
+				}
+				else
+				{
+					for ( final Vector3D direction : RAY_DIRECTIONS )
+					{
+						final int crossings = tree.countCrossings( this, x, y, z, direction, tolerance );
+						if ( crossings >= 0 )
+						{
+							result = ( ( crossings & 1 ) != 0 ) ? INSIDE : OUTSIDE;
+							break;
+						}
+					}
+				}
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Bounding volume hierarchy of triangles. Nodes are split halfway along
+	 * the axis on which the centers of their triangles are spread the most.
+	 */
+	private static class TriangleTree
+	{
+		/**
+		 * Triangle indices, ordered such that each node has a consecutive
+		 * range.
+		 */
+		@NotNull
+		private final int[] _triangles;
+
+		/**
+		 * Bounding box of each triangle (minimum and maximum coordinates).
+		 */
+		@NotNull
+		private final double[] _triangleBounds;
+
+		/**
+		 * Bounding box of each node (minimum and maximum coordinates).
+		 */
+		@NotNull
+		private final double[] _nodeBounds;
+
+		/**
+		 * Index of the first child of each node; the second child follows
+		 * the first; {@code -1} for leaf nodes.
+		 */
+		@NotNull
+		private final int[] _nodeChildren;
+
+		/**
+		 * Start of the range of triangles of each node (inclusive).
+		 */
+		@NotNull
+		private final int[] _nodeStart;
+
+		/**
+		 * End of the range of triangles of each node (exclusive).
+		 */
+		@NotNull
+		private final int[] _nodeEnd;
+
+		/**
+		 * Points of the corners of each triangle.
+		 */
+		@NotNull
+		private final Vector3D[] _points;
+
+		/**
+		 * Number of nodes.
+		 */
+		private int _nodeCount;
+
+		/**
+		 * Builds a tree for the given triangles.
+		 *
+		 * @param points        Points of the corners of each triangle.
+		 * @param triangleCount Number of triangles.
+		 */
+		TriangleTree( @NotNull final Vector3D[] points, final int triangleCount )
+		{
+			final int[] triangles = new int[ triangleCount ];
+			final double[] triangleBounds = new double[ triangleCount * 6 ];
+			for ( int i = 0; i < triangleCount; i++ )
+			{
+				triangles[ i ] = i;
+				final Vector3D p0 = points[ i * 3 ];
+				final Vector3D p1 = points[ i * 3 + 1 ];
+				final Vector3D p2 = points[ i * 3 + 2 ];
+				triangleBounds[ i * 6 ] = Math.min( p0.x, Math.min( p1.x, p2.x ) );
+				triangleBounds[ i * 6 + 1 ] = Math.min( p0.y, Math.min( p1.y, p2.y ) );
+				triangleBounds[ i * 6 + 2 ] = Math.min( p0.z, Math.min( p1.z, p2.z ) );
+				triangleBounds[ i * 6 + 3 ] = Math.max( p0.x, Math.max( p1.x, p2.x ) );
+				triangleBounds[ i * 6 + 4 ] = Math.max( p0.y, Math.max( p1.y, p2.y ) );
+				triangleBounds[ i * 6 + 5 ] = Math.max( p0.z, Math.max( p1.z, p2.z ) );
+			}
+
+			final int maximumNodeCount = 2 * triangleCount;
+			_triangles = triangles;
+			_triangleBounds = triangleBounds;
+			_points = points;
+			_nodeBounds = new double[ maximumNodeCount * 6 ];
+			_nodeChildren = new int[ maximumNodeCount ];
+			_nodeStart = new int[ maximumNodeCount ];
+			_nodeEnd = new int[ maximumNodeCount ];
+			_nodeCount = 1;
+			build( 0, 0, triangleCount );
+		}
+
+		/**
+		 * Builds a node and its children.
+		 *
+		 * @param node  Index of node.
+		 * @param start Start of range of triangles (inclusive).
+		 * @param end   End of range of triangles (exclusive).
+		 */
+		private void build( final int node, final int start, final int end )
+		{
+			final int[] triangles = _triangles;
+			final double[] triangleBounds = _triangleBounds;
+
+			double minX = Double.POSITIVE_INFINITY;
+			double minY = Double.POSITIVE_INFINITY;
+			double minZ = Double.POSITIVE_INFINITY;
+			double maxX = Double.NEGATIVE_INFINITY;
+			double maxY = Double.NEGATIVE_INFINITY;
+			double maxZ = Double.NEGATIVE_INFINITY;
+
+			/*
+			 * Centers are stored doubled (minimum plus maximum).
+			 */
+			double minCenterX = Double.POSITIVE_INFINITY;
+			double minCenterY = Double.POSITIVE_INFINITY;
+			double minCenterZ = Double.POSITIVE_INFINITY;
+			double maxCenterX = Double.NEGATIVE_INFINITY;
+			double maxCenterY = Double.NEGATIVE_INFINITY;
+			double maxCenterZ = Double.NEGATIVE_INFINITY;
+
+			for ( int i = start; i < end; i++ )
+			{
+				final int offset = triangles[ i ] * 6;
+				final double x1 = triangleBounds[ offset ];
+				final double y1 = triangleBounds[ offset + 1 ];
+				final double z1 = triangleBounds[ offset + 2 ];
+				final double x2 = triangleBounds[ offset + 3 ];
+				final double y2 = triangleBounds[ offset + 4 ];
+				final double z2 = triangleBounds[ offset + 5 ];
+				minX = Math.min( minX, x1 );
+				minY = Math.min( minY, y1 );
+				minZ = Math.min( minZ, z1 );
+				maxX = Math.max( maxX, x2 );
+				maxY = Math.max( maxY, y2 );
+				maxZ = Math.max( maxZ, z2 );
+				minCenterX = Math.min( minCenterX, x1 + x2 );
+				minCenterY = Math.min( minCenterY, y1 + y2 );
+				minCenterZ = Math.min( minCenterZ, z1 + z2 );
+				maxCenterX = Math.max( maxCenterX, x1 + x2 );
+				maxCenterY = Math.max( maxCenterY, y1 + y2 );
+				maxCenterZ = Math.max( maxCenterZ, z1 + z2 );
+			}
+
+			final double[] nodeBounds = _nodeBounds;
+			final int nodeOffset = node * 6;
+			nodeBounds[ nodeOffset ] = minX;
+			nodeBounds[ nodeOffset + 1 ] = minY;
+			nodeBounds[ nodeOffset + 2 ] = minZ;
+			nodeBounds[ nodeOffset + 3 ] = maxX;
+			nodeBounds[ nodeOffset + 4 ] = maxY;
+			nodeBounds[ nodeOffset + 5 ] = maxZ;
+			_nodeStart[ node ] = start;
+			_nodeEnd[ node ] = end;
+			_nodeChildren[ node ] = -1;
+
+			final double extentX = maxCenterX - minCenterX;
+			final double extentY = maxCenterY - minCenterY;
+			final double extentZ = maxCenterZ - minCenterZ;
+			final int axis = ( extentX >= extentY ) ? ( extentX >= extentZ ) ? 0 : 2 : ( extentY >= extentZ ) ? 1 : 2;
+			final double extent = ( axis == 0 ) ? extentX : ( axis == 1 ) ? extentY : extentZ;
+
+			if ( ( end - start > LEAF_SIZE ) && ( extent > 0.0 ) )
+			{
+				final double split = ( axis == 0 ) ? minCenterX + 0.5 * extentX : ( axis == 1 ) ? minCenterY + 0.5 * extentY : minCenterZ + 0.5 * extentZ;
+
+				int middle = start;
+				for ( int i = start; i < end; i++ )
+				{
+					final int triangle = triangles[ i ];
+					final int offset = triangle * 6 + axis;
+					if ( triangleBounds[ offset ] + triangleBounds[ offset + 3 ] < split )
+					{
+						triangles[ i ] = triangles[ middle ];
+						triangles[ middle++ ] = triangle;
+					}
+				}
+
+				if ( ( middle == start ) || ( middle == end ) )
+				{
+					middle = ( start + end ) >>> 1;
+				}
+
+				final int children = _nodeCount;
+				_nodeCount += 2;
+				_nodeChildren[ node ] = children;
+				build( children, start, middle );
+				build( children + 1, middle, end );
+			}
+		}
+
+		/**
+		 * Finds pairs of triangles of this and another tree whose bounding
+		 * boxes overlap.
+		 *
+		 * @param other     Other tree.
+		 * @param tolerance Tolerance for coordinates.
+		 * @param pairs     Pairs of triangles (this, other) are added to this
+		 *                  array.
+		 */
+		void findOverlaps( @NotNull final TriangleTree other, final double tolerance, @NotNull final IntArray pairs )
+		{
+			final double[] bounds1 = _nodeBounds;
+			final double[] bounds2 = other._nodeBounds;
+			final double[] triangleBounds1 = _triangleBounds;
+			final double[] triangleBounds2 = other._triangleBounds;
+
+			final IntArray stack = new IntArray();
+			stack.add( 0, 0 );
+			while ( !stack.isEmpty() )
+			{
+				final int node2 = stack.removeLast();
+				final int node1 = stack.removeLast();
+
+				if ( overlaps( bounds1, node1 * 6, bounds2, node2 * 6, tolerance ) )
+				{
+					final int children1 = _nodeChildren[ node1 ];
+					final int children2 = other._nodeChildren[ node2 ];
+
+					if ( ( children1 < 0 ) && ( children2 < 0 ) )
+					{
+						for ( int i = _nodeStart[ node1 ]; i < _nodeEnd[ node1 ]; i++ )
+						{
+							final int triangle1 = _triangles[ i ];
+
+							for ( int j = other._nodeStart[ node2 ]; j < other._nodeEnd[ node2 ]; j++ )
+							{
+								final int triangle2 = other._triangles[ j ];
+								if ( overlaps( triangleBounds1, triangle1 * 6, triangleBounds2, triangle2 * 6, tolerance ) )
+								{
+									pairs.add( triangle1, triangle2 );
+								}
+							}
+						}
+					}
+					else if ( ( children2 < 0 ) || ( ( children1 >= 0 ) && ( getVolume( bounds1, node1 * 6 ) >= getVolume( bounds2, node2 * 6 ) ) ) )
+					{
+						stack.add( children1, node2 );
+						stack.add( children1 + 1, node2 );
+					}
+					else
+					{
+						stack.add( node1, children2 );
+						stack.add( node1, children2 + 1 );
+					}
+				}
+			}
+		}
+
+		/**
+		 * Finds a triangle that contains the given point.
+		 *
+		 * @param operand   Operand that the triangles belong to.
+		 * @param x         X coordinate of point.
+		 * @param y         Y coordinate of point.
+		 * @param z         Z coordinate of point.
+		 * @param tolerance Tolerance for coordinates.
+		 *
+		 * @return Index of triangle; {@code -1} if no triangle contains the
+		 * point.
+		 */
+		int findSurface( @NotNull final Operand operand, final double x, final double y, final double z, final double tolerance )
+		{
+			final double[] nodeBounds = _nodeBounds;
+			final double[] planes = operand._planes;
+			final Vector3D[] points = _points;
+
+			int result = -1;
+
+			final IntArray stack = new IntArray();
+			stack.add( 0 );
+			while ( ( result < 0 ) && !stack.isEmpty() )
+			{
+				final int node = stack.removeLast();
+				final int offset = node * 6;
+				if ( ( x >= nodeBounds[ offset ] - tolerance ) && ( y >= nodeBounds[ offset + 1 ] - tolerance ) && ( z >= nodeBounds[ offset + 2 ] - tolerance ) &&
+				     ( x <= nodeBounds[ offset + 3 ] + tolerance ) && ( y <= nodeBounds[ offset + 4 ] + tolerance ) && ( z <= nodeBounds[ offset + 5 ] + tolerance ) )
+				{
+					final int children = _nodeChildren[ node ];
+					if ( children < 0 )
+					{
+						for ( int i = _nodeStart[ node ]; i < _nodeEnd[ node ]; i++ )
+						{
+							final int triangle = _triangles[ i ];
+							final double nx = planes[ triangle * 4 ];
+							final double ny = planes[ triangle * 4 + 1 ];
+							final double nz = planes[ triangle * 4 + 2 ];
+
+							if ( ( ( nx != 0.0 ) || ( ny != 0.0 ) || ( nz != 0.0 ) ) && ( Math.abs( nx * x + ny * y + nz * z - planes[ triangle * 4 + 3 ] ) <= tolerance ) )
+							{
+								boolean inside = true;
+								for ( int corner = 0; inside && ( corner < 3 ); corner++ )
+								{
+									final Vector3D p1 = points[ triangle * 3 + corner ];
+									final Vector3D p2 = points[ triangle * 3 + ( corner + 1 ) % 3 ];
+									final double ex = p2.x - p1.x;
+									final double ey = p2.y - p1.y;
+									final double ez = p2.z - p1.z;
+									final double side = getTripleProduct( nx, ny, nz, ex, ey, ez, x - p1.x, y - p1.y, z - p1.z );
+									inside = ( side >= -tolerance * Vector3D.length( ex, ey, ez ) );
+								}
+
+								if ( inside )
+								{
+									result = triangle;
+									break;
+								}
+							}
+						}
+					}
+					else
+					{
+						stack.add( children );
+						stack.add( children + 1 );
+					}
+				}
+			}
+
+			return result;
+		}
+
+		/**
+		 * Counts the number of triangles crossed by a ray.
+		 *
+		 * @param operand   Operand that the triangles belong to.
+		 * @param x         X coordinate of ray origin.
+		 * @param y         Y coordinate of ray origin.
+		 * @param z         Z coordinate of ray origin.
+		 * @param direction Direction of ray (unit vector without zero
+		 *                  components).
+		 * @param tolerance Tolerance for coordinates.
+		 *
+		 * @return Number of crossings;
+		 * {@code -1} if the ray passes too close to an edge to be certain.
+		 */
+		int countCrossings( @NotNull final Operand operand, final double x, final double y, final double z, @NotNull final Vector3D direction, final double tolerance )
+		{
+			final double[] nodeBounds = _nodeBounds;
+			final double[] planes = operand._planes;
+			final Vector3D[] points = _points;
+			final double dx = direction.x;
+			final double dy = direction.y;
+			final double dz = direction.z;
+			final double inverseX = 1.0 / dx;
+			final double inverseY = 1.0 / dy;
+			final double inverseZ = 1.0 / dz;
+
+			int result = 0;
+
+			final IntArray stack = new IntArray();
+			stack.add( 0 );
+			while ( ( result >= 0 ) && !stack.isEmpty() )
+			{
+				final int node = stack.removeLast();
+				final int offset = node * 6;
+
+				final double tx1 = ( nodeBounds[ offset ] - tolerance - x ) * inverseX;
+				final double tx2 = ( nodeBounds[ offset + 3 ] + tolerance - x ) * inverseX;
+				final double ty1 = ( nodeBounds[ offset + 1 ] - tolerance - y ) * inverseY;
+				final double ty2 = ( nodeBounds[ offset + 4 ] + tolerance - y ) * inverseY;
+				final double tz1 = ( nodeBounds[ offset + 2 ] - tolerance - z ) * inverseZ;
+				final double tz2 = ( nodeBounds[ offset + 5 ] + tolerance - z ) * inverseZ;
+				final double near = Math.max( Math.max( Math.min( tx1, tx2 ), Math.min( ty1, ty2 ) ), Math.min( tz1, tz2 ) );
+				final double far = Math.min( Math.min( Math.max( tx1, tx2 ), Math.max( ty1, ty2 ) ), Math.max( tz1, tz2 ) );
+
+				if ( ( far >= 0.0 ) && ( near <= far ) )
+				{
+					final int children = _nodeChildren[ node ];
+					if ( children < 0 )
+					{
+						for ( int i = _nodeStart[ node ]; i < _nodeEnd[ node ]; i++ )
+						{
+							final int triangle = _triangles[ i ];
+							final double nx = planes[ triangle * 4 ];
+							final double ny = planes[ triangle * 4 + 1 ];
+							final double nz = planes[ triangle * 4 + 2 ];
+							if ( ( nx != 0.0 ) || ( ny != 0.0 ) || ( nz != 0.0 ) )
+							{
+								final int crossing = crossesTriangle( points, triangle, nx, ny, nz, planes[ triangle * 4 + 3 ], x, y, z, dx, dy, dz, tolerance );
+								if ( crossing < 0 )
+								{
+									result = -1;
+									break;
+								}
+								result += crossing;
+							}
+						}
+					}
+					else
+					{
+						stack.add( children );
+						stack.add( children + 1 );
+					}
+				}
+			}
+
+			return result;
+		}
+
+		/**
+		 * Tests whether a ray crosses a triangle.
+		 *
+		 * @param points    Points of the corners of each triangle.
+		 * @param triangle  Index of triangle.
+		 * @param nx        X component of triangle normal.
+		 * @param ny        Y component of triangle normal.
+		 * @param nz        Z component of triangle normal.
+		 * @param distance  Distance from triangle plane to origin.
+		 * @param x         X coordinate of ray origin.
+		 * @param y         Y coordinate of ray origin.
+		 * @param z         Z coordinate of ray origin.
+		 * @param dx        X component of ray direction.
+		 * @param dy        Y component of ray direction.
+		 * @param dz        Z component of ray direction.
+		 * @param tolerance Tolerance for coordinates.
+		 *
+		 * @return {@code 1} if the ray crosses the triangle;
+		 * {@code 0} if it does not;
+		 * {@code -1} if the ray passes too close to an edge to be certain.
+		 */
+		private static int crossesTriangle( @NotNull final Vector3D[] points, final int triangle, final double nx, final double ny, final double nz, final double distance, final double x, final double y, final double z, final double dx, final double dy, final double dz, final double tolerance )
+		{
+			int result = 0;
+
+			final double originDistance = nx * x + ny * y + nz * z - distance;
+			final double slope = nx * dx + ny * dy + nz * dz;
+
+			if ( Math.abs( slope ) < EDGE_TOLERANCE )
+			{
+				/*
+				 * Ray is parallel to the triangle. If it lies in the plane of
+				 * the triangle, it may or may not cross it.
+				 */
+				if ( Math.abs( originDistance ) <= tolerance )
+				{
+					result = -1;
+				}
+			}
+			else
+			{
+				final double t = -originDistance / slope;
+				if ( t > tolerance )
+				{
+					final double px = x + t * dx;
+					final double py = y + t * dy;
+					final double pz = z + t * dz;
+
+					final Vector3D p0 = points[ triangle * 3 ];
+					final Vector3D p1 = points[ triangle * 3 + 1 ];
+					final Vector3D p2 = points[ triangle * 3 + 2 ];
+					final double area = getTripleProduct( nx, ny, nz, p1.x - p0.x, p1.y - p0.y, p1.z - p0.z, p2.x - p0.x, p2.y - p0.y, p2.z - p0.z );
+					final double w0 = getTripleProduct( nx, ny, nz, p2.x - p1.x, p2.y - p1.y, p2.z - p1.z, px - p1.x, py - p1.y, pz - p1.z ) / area;
+					final double w1 = getTripleProduct( nx, ny, nz, p0.x - p2.x, p0.y - p2.y, p0.z - p2.z, px - p2.x, py - p2.y, pz - p2.z ) / area;
+					final double w2 = 1.0 - w0 - w1;
+
+					if ( ( w0 > EDGE_TOLERANCE ) && ( w1 > EDGE_TOLERANCE ) && ( w2 > EDGE_TOLERANCE ) )
+					{
+						result = 1;
+					}
+					else if ( ( w0 >= -EDGE_TOLERANCE ) && ( w1 >= -EDGE_TOLERANCE ) && ( w2 >= -EDGE_TOLERANCE ) )
+					{
+						result = -1;
+					}
+				}
+			}
+
+			return result;
+		}
+
+		/**
+		 * Tests whether two bounding boxes overlap.
+		 *
+		 * @param bounds1   First array of bounding boxes.
+		 * @param offset1   Offset of first bounding box.
+		 * @param bounds2   Second array of bounding boxes.
+		 * @param offset2   Offset of second bounding box.
+		 * @param tolerance Tolerance for coordinates.
+		 *
+		 * @return {@code true} if the boxes overlap.
+		 */
+		private static boolean overlaps( @NotNull final double[] bounds1, final int offset1, @NotNull final double[] bounds2, final int offset2, final double tolerance )
+		{
+			return ( bounds1[ offset1 ] <= bounds2[ offset2 + 3 ] + tolerance ) && ( bounds2[ offset2 ] <= bounds1[ offset1 + 3 ] + tolerance ) &&
+			       ( bounds1[ offset1 + 1 ] <= bounds2[ offset2 + 4 ] + tolerance ) && ( bounds2[ offset2 + 1 ] <= bounds1[ offset1 + 4 ] + tolerance ) &&
+			       ( bounds1[ offset1 + 2 ] <= bounds2[ offset2 + 5 ] + tolerance ) && ( bounds2[ offset2 + 2 ] <= bounds1[ offset1 + 5 ] + tolerance );
+		}
+
+		/**
+		 * Returns the volume of a bounding box.
+		 *
+		 * @param bounds Array of bounding boxes.
+		 * @param offset Offset of bounding box.
+		 *
+		 * @return Volume of bounding box.
+		 */
+		private static double getVolume( @NotNull final double[] bounds, final int offset )
+		{
+			return ( bounds[ offset + 3 ] - bounds[ offset ] ) * ( bounds[ offset + 4 ] - bounds[ offset + 1 ] ) * ( bounds[ offset + 5 ] - bounds[ offset + 2 ] );
+		}
+	}
+}
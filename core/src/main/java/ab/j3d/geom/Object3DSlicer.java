@@ -18,6 +18,7 @@
  */
 package ab.j3d.geom;
 
+import java.lang.ref.*;
 import java.util.*;
 
 import ab.j3d.*;
@@ -33,6 +34,26 @@ import ab.j3d.model.*;
 @SuppressWarnings( { "OverlyComplexMethod", "AccessingNonPublicFieldOfAnotherObject" } )
 public class Object3DSlicer
 {
+	/**
+	 * Maximum number of faces per cluster in a {@link SliceIndex}.
+	 */
+	private static final int CLUSTER_SIZE = 64;
+
+	/**
+	 * Cluster lies completely below the cutting plane.
+	 */
+	private static final int BELOW = 1;
+
+	/**
+	 * Cluster lies completely above (or on) the cutting plane.
+	 */
+	private static final int ABOVE = 2;
+
+	/**
+	 * Cluster intersects the cutting plane.
+	 */
+	private static final int SPANNING = BELOW | ABOVE;
+
 	/**
 	 * Cutting plane that slices the object.
 	 */
@@ -55,6 +76,12 @@ public class Object3DSlicer
 	 */
 	private final DoubleArray _objectVertexDistances = new DoubleArray();
 
+	/**
+	 * Index of the last sliced object. Reused when the same object is sliced
+	 * again, e.g. with another cutting plane.
+	 */
+	private SliceIndex _sliceIndex = null;
+
 	/**
 	 * This flag indicates whether faces are intersected. If this is disabled,
 	 * intersecting faces are simply omitted from the result.
@@ -77,6 +104,14 @@ public class Object3DSlicer
 	 */
 	private boolean _removeDuplicateVertices = true;
 
+	/**
+	 * Index of each vertex added to a resulting object using
+	 * {@link #getVertexIndex}, used to remove duplicate vertices. Vertices
+	 * copied in bulk by {@link #copyCluster} are not included, because they
+	 * are never near the cutting plane, where new vertices are created.
+	 */
+	private final Map<Object3D, Map<Vector3D, Integer>> _vertexIndices = new IdentityHashMap<>();
+
 	/**
 	 * Is intersection slice enabled.
 	 */
@@ -251,6 +286,12 @@ public class Object3DSlicer
 	/**
 	 * Slice object.
 	 *
+	 * <p>The slicer keeps an index of the last sliced object, so repeated cuts
+	 * of the same object only need to process faces near the cutting plane.
+	 * The index is rebuilt when the object is modified, as indicated by its
+	 * {@link Object3D#getModificationCount() modification count} or a change
+	 * in the number of faces.
+	 *
 	 * @param object Object to slice.
 	 */
 	public void slice( final Object3D object )
@@ -258,6 +299,14 @@ public class Object3DSlicer
 		processObject( object );
 	}
 
+	/**
+	 * Discards the index of the last sliced object.
+	 */
+	public void clearIndex()
+	{
+		_sliceIndex = null;
+	}
+
 	/**
 	 * Get cutting plane.
 	 *
@@ -645,6 +694,11 @@ public class Object3DSlicer
 	/**
 	 * Slice object.
 	 *
+	 * <p>Faces are processed in clusters. Clusters whose bounding box lies on
+	 * one side of the cutting plane are copied in bulk, without calculating
+	 * vertex distances. Only faces of clusters that intersect the cutting
+	 * plane are processed individually.
+	 *
 	 * @param object Object to slice.
 	 */
 	private void processObject( final Object3D object )
@@ -658,25 +712,42 @@ public class Object3DSlicer
 
 		final DoubleArray vertexDistances = _objectVertexDistances;
 		vertexDistances.clear();
-		vertexDistances.ensureCapacity( vertexCount );
+		vertexDistances.setSize( vertexCount, 0.0 );
 
-		boolean bottom = false;
-		boolean top = false;
-		for ( final Vector3D point : vertexCoordinates )
-		{
-			final double d = Vector3D.dot( planeNormal, point ) - planeDistance;
-			vertexDistances.add( d );
+		final SliceIndex index = getSliceIndex( object );
+		final Cluster[] clusters = index._clusters;
+		final int[] clusterSides = new int[ clusters.length ];
 
-			if ( d < 0.0 )
-			{
-				bottom = true;
-			}
-			else
+		int sides = 0;
+		for ( int i = 0; i < clusters.length; i++ )
+		{
+			final Cluster cluster = clusters[ i ];
+			int side = cluster.getSide( planeNormal, planeDistance );
+			if ( side == SPANNING )
 			{
-				top = true;
+				side = 0;
+				for ( final int vertexIndex : cluster._vertices )
+				{
+					final double d = Vector3D.dot( planeNormal, vertexCoordinates.get( vertexIndex ) ) - planeDistance;
+					vertexDistances.set( vertexIndex, d );
+					side |= ( d < 0.0 ) ? BELOW : ABOVE;
+				}
 			}
+			clusterSides[ i ] = side;
+			sides |= side;
 		}
 
+		/*
+		 * Vertices that are not used by any face are classified separately.
+		 */
+		for ( final int vertexIndex : index._unusedVertices )
+		{
+			sides |= ( Vector3D.dot( planeNormal, vertexCoordinates.get( vertexIndex ) ) - planeDistance < 0.0 ) ? BELOW : ABOVE;
+		}
+
+		final boolean bottom = ( sides & BELOW ) != 0;
+		final boolean top = ( sides & ABOVE ) != 0;
+
 		final Object3D topObject = ( top && _topEnabled ) ? bottom ? createObject3D() : object : null;
 		final Object3D bottomObject = ( bottom && _bottomEnabled ) ? top ? createObject3D() : object : null;
 
@@ -685,12 +756,14 @@ public class Object3DSlicer
 		_sliceVertices.clear();
 		_sliceIntersectionGraph.clear();
 		_bottomObject = bottomObject;
+		_vertexIndices.clear();
 
 		if ( top && bottom )
 		{
+			IntArray topVertexMap = null;
 			if ( topObject != null )
 			{
-				IntArray topVertexMap = _topObjectVertexMap;
+				topVertexMap = _topObjectVertexMap;
 				if ( topVertexMap == null )
 				{
 					topVertexMap = new IntArray( vertexCount );
@@ -700,11 +773,13 @@ public class Object3DSlicer
 				{
 					topVertexMap.clear();
 				}
+				topVertexMap.setSize( vertexCount, -1 );
 			}
 
+			IntArray bottomVertexMap = null;
 			if ( bottomObject != null )
 			{
-				IntArray bottomVertexMap = _bottomObjectVertexMap;
+				bottomVertexMap = _bottomObjectVertexMap;
 				if ( bottomVertexMap == null )
 				{
 					bottomVertexMap = new IntArray( vertexCount );
@@ -714,13 +789,35 @@ public class Object3DSlicer
 				{
 					bottomVertexMap.clear();
 				}
+				bottomVertexMap.setSize( vertexCount, -1 );
 			}
 
-			for ( final FaceGroup faceGroup : object.getFaceGroups() )
+			for ( int i = 0; i < clusters.length; i++ )
 			{
-				for ( final Face3D face3D : faceGroup.getFaces() )
+				final Cluster cluster = clusters[ i ];
+				switch ( clusterSides[ i ] )
 				{
-					processFace( object, faceGroup, face3D );
+					case ABOVE:
+						if ( topObject != null )
+						{
+							copyCluster( object, cluster, topObject, _topAppearance, topVertexMap );
+						}
+						break;
+
+					case BELOW:
+						if ( bottomObject != null )
+						{
+							copyCluster( object, cluster, bottomObject, _bottomAppearance, bottomVertexMap );
+						}
+						break;
+
+					default:
+						final FaceGroup faceGroup = cluster._faceGroup;
+						final List<Face3D> faces = faceGroup.getFaces();
+						for ( int faceIndex = cluster._start; faceIndex < cluster._end; faceIndex++ )
+						{
+							processFace( object, faceGroup, faces.get( faceIndex ) );
+						}
 				}
 			}
 
@@ -728,6 +825,71 @@ public class Object3DSlicer
 			{
 				buildCaps();
 			}
+
+			_vertexIndices.clear();
+		}
+	}
+
+	/**
+	 * Returns the index for the given object, reusing the index of the last
+	 * sliced object if possible.
+	 *
+	 * @param object Object being sliced.
+	 *
+	 * @return Index for the object.
+	 */
+	private SliceIndex getSliceIndex( final Object3D object )
+	{
+		SliceIndex result = _sliceIndex;
+		if ( ( result == null ) || !result.isValidFor( object ) )
+		{
+			result = new SliceIndex( object );
+			_sliceIndex = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Copies all faces in a cluster to the top/bottom object. Vertices are
+	 * added to the target object directly, without looking for duplicates:
+	 * the cluster is not near the cutting plane, so none of its vertices can
+	 * coincide with an intersection point.
+	 *
+	 * @param object          Object being sliced.
+	 * @param cluster         Cluster to copy.
+	 * @param targetObject    Object to add copied faces to.
+	 * @param appearance      Appearance of copied faces; {@code null} to keep
+	 *                        the appearance of the face group.
+	 * @param objectVertexMap Maps source object vertex coordinate indices to
+	 *                        target object vertex indices.
+	 */
+	private static void copyCluster( final Object3D object, final Cluster cluster, final Object3D targetObject, final Appearance appearance, final IntArray objectVertexMap )
+	{
+		final FaceGroup faceGroup = cluster._faceGroup;
+		final FaceGroup targetFaceGroup = targetObject.getFaceGroup( ( appearance != null ) ? appearance : faceGroup.getAppearance(), faceGroup.isSmooth(), faceGroup.isTwoSided() );
+
+		for ( final int vertexIndex : cluster._vertices )
+		{
+			if ( objectVertexMap.get( vertexIndex ) < 0 )
+			{
+				objectVertexMap.set( vertexIndex, targetObject.addVertex( object.getVertex( vertexIndex ) ) );
+			}
+		}
+
+		final List<Face3D> faces = faceGroup.getFaces();
+		for ( int faceIndex = cluster._start; faceIndex < cluster._end; faceIndex++ )
+		{
+			final Face3D face = faces.get( faceIndex );
+			final int vertexCount = face.getVertexCount();
+
+			final List<Vertex3D> vertices = new ArrayList<>( vertexCount );
+			for ( int i = 0; i < vertexCount; i++ )
+			{
+				final Vertex3D vertex = face.getVertex( i );
+				vertices.add( new Vertex3D( vertex.point, vertex.getNormal(), objectVertexMap.get( vertex.vertexCoordinateIndex ), vertex.colorMapU, vertex.colorMapV ) );
+			}
+
+			targetFaceGroup.addFace( new Face3D( face.getNormal(), face.getDistance(), vertices, face.getTessellation() ) );
 		}
 	}
 
@@ -1802,7 +1964,34 @@ public class Object3DSlicer
 	 */
 	private int getVertexIndex( final Object3D object, final Vector3D point )
 	{
-		return _removeDuplicateVertices ? object.getVertexIndex( point ) : object.addVertex( point );
+		final int result;
+
+		if ( _removeDuplicateVertices )
+		{
+			Map<Vector3D, Integer> vertexIndices = _vertexIndices.get( object );
+			if ( vertexIndices == null )
+			{
+				vertexIndices = new HashMap<>();
+				_vertexIndices.put( object, vertexIndices );
+			}
+
+			final Integer index = vertexIndices.get( point );
+			if ( index != null )
+			{
+				result = index;
+			}
+			else
+			{
+				result = object.addVertex( point );
+				vertexIndices.put( point, result );
+			}
+		}
+		else
+		{
+			result = object.addVertex( point );
+		}
+
+		return result;
 	}
 
 	/**
@@ -2151,4 +2340,214 @@ public class Object3DSlicer
 			return _sliceVertexIndex + ":" + _planePoint;
 		}
 	}
+
+	/**
+	 * Divides the faces of an object into clusters of consecutive faces in
+	 * the same face group, with the bounding box and vertices of each cluster.
+	 * Faces of meshes are usually ordered such that consecutive faces are
+	 * close together, so most clusters lie on one side of a cutting plane.
+	 */
+	private static class SliceIndex
+	{
+		/**
+		 * Indexed object. A weak reference is used, so the slicer does not
+		 * keep the last sliced object from being garbage collected.
+		 */
+		private final WeakReference<Object3D> _object;
+
+		/**
+		 * Modification count of the object when the index was created.
+		 */
+		private final int _modificationCount;
+
+		/**
+		 * Number of faces in the object when the index was created.
+		 */
+		private final int _faceCount;
+
+		/**
+		 * Clusters of faces.
+		 */
+		final Cluster[] _clusters;
+
+		/**
+		 * Indices of vertices that are not used by any face.
+		 */
+		final int[] _unusedVertices;
+
+		/**
+		 * Creates an index for the given object.
+		 *
+		 * @param object Object to create index for.
+		 */
+		SliceIndex( final Object3D object )
+		{
+			final int modificationCount = object.getModificationCount();
+			final List<Vector3D> vertexCoordinates = object.getVertexCoordinates();
+			final int vertexCount = vertexCoordinates.size();
+
+			final List<Cluster> clusters = new ArrayList<>();
+			final int[] lastCluster = new int[ vertexCount ];
+			Arrays.fill( lastCluster, -1 );
+			final IntArray clusterVertices = new IntArray();
+
+			int faceCount = 0;
+			for ( final FaceGroup faceGroup : object.getFaceGroups() )
+			{
+				final List<Face3D> faces = faceGroup.getFaces();
+				faceCount += faces.size();
+
+				for ( int start = 0; start < faces.size(); start += CLUSTER_SIZE )
+				{
+					final int end = Math.min( faces.size(), start + CLUSTER_SIZE );
+					final int clusterIndex = clusters.size();
+
+					clusterVertices.clear();
+					for ( int faceIndex = start; faceIndex < end; faceIndex++ )
+					{
+						final Face3D face = faces.get( faceIndex );
+						final int faceVertexCount = face.getVertexCount();
+						for ( int i = 0; i < faceVertexCount; i++ )
+						{
+							final int vertexIndex = face.getVertex( i ).vertexCoordinateIndex;
+							if ( lastCluster[ vertexIndex ] != clusterIndex )
+							{
+								lastCluster[ vertexIndex ] = clusterIndex;
+								clusterVertices.add( vertexIndex );
+							}
+						}
+					}
+
+					clusters.add( new Cluster( faceGroup, start, end, clusterVertices.toArray(), vertexCoordinates ) );
+				}
+			}
+
+			final IntArray unusedVertices = new IntArray();
+			for ( int i = 0; i < vertexCount; i++ )
+			{
+				if ( lastCluster[ i ] < 0 )
+				{
+					unusedVertices.add( i );
+				}
+			}
+
+			_object = new WeakReference<>( object );
+			_modificationCount = modificationCount;
+			_faceCount = faceCount;
+			_clusters = clusters.toArray( new Cluster[ clusters.size() ] );
+			_unusedVertices = unusedVertices.toArray();
+		}
+
+		/**
+		 * Returns whether this index can be used for the given object.
+		 *
+		 * @param object Object being sliced.
+		 *
+		 * @return {@code true} if the index is valid for the object.
+		 */
+		boolean isValidFor( final Object3D object )
+		{
+			//noinspection ObjectEquality
+			boolean result = ( object == _object.get() ) && ( object.getModificationCount() == _modificationCount );
+			if ( result )
+			{
+				int faceCount = 0;
+				for ( final FaceGroup faceGroup : object.getFaceGroups() )
+				{
+					faceCount += faceGroup.getFaces().size();
+				}
+				result = ( faceCount == _faceCount );
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Consecutive faces in a face group.
+	 */
+	private static class Cluster
+	{
+		/**
+		 * Face group containing the faces.
+		 */
+		final FaceGroup _faceGroup;
+
+		/**
+		 * Index of first face (inclusive).
+		 */
+		final int _start;
+
+		/**
+		 * Index of last face (exclusive).
+		 */
+		final int _end;
+
+		/**
+		 * Vertex coordinate indices used by the faces.
+		 */
+		final int[] _vertices;
+
+		/**
+		 * Bounding box of the faces.
+		 */
+		private final Bounds3D _bounds;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param faceGroup         Face group containing the faces.
+		 * @param start             Index of first face (inclusive).
+		 * @param end               Index of last face (exclusive).
+		 * @param vertices          Vertex coordinate indices used by the faces.
+		 * @param vertexCoordinates Vertex coordinates of the object.
+		 */
+		Cluster( final FaceGroup faceGroup, final int start, final int end, final int[] vertices, final List<Vector3D> vertexCoordinates )
+		{
+			_faceGroup = faceGroup;
+			_start = start;
+			_end = end;
+			_vertices = vertices;
+
+			final Bounds3DBuilder boundsBuilder = new Bounds3DBuilder();
+			for ( final int vertexIndex : vertices )
+			{
+				boundsBuilder.addPoint( vertexCoordinates.get( vertexIndex ) );
+			}
+			_bounds = boundsBuilder.getBounds();
+		}
+
+		/**
+		 * Determines on which side of a cutting plane the cluster's bounding
+		 * box lies. A small margin is used, so clusters with vertices very
+		 * close to the plane are classified by their actual vertices.
+		 *
+		 * @param planeNormal   Normal of the cutting plane.
+		 * @param planeDistance Distance of the cutting plane to the origin.
+		 *
+		 * @return {@link #BELOW}, {@link #ABOVE} or {@link #SPANNING}.
+		 */
+		int getSide( final Vector3D planeNormal, final double planeDistance )
+		{
+			int result = SPANNING;
+
+			final Bounds3D bounds = _bounds;
+			if ( bounds != null )
+			{
+				final double centerDistance = Vector3D.dot( planeNormal.x, planeNormal.y, planeNormal.z, 0.5 * ( bounds.v1.x + bounds.v2.x ), 0.5 * ( bounds.v1.y + bounds.v2.y ), 0.5 * ( bounds.v1.z + bounds.v2.z ) ) - planeDistance;
+				final double extent = 0.5 * ( Math.abs( planeNormal.x ) * bounds.sizeX() + Math.abs( planeNormal.y ) * bounds.sizeY() + Math.abs( planeNormal.z ) * bounds.sizeZ() );
+				final double margin = 1.0e-9 * ( Math.abs( planeDistance ) + Math.abs( centerDistance ) + extent );
+
+				if ( centerDistance + extent < -margin )
+				{
+					result = BELOW;
+				}
+				else if ( centerDistance - extent > margin )
+				{
+					result = ABOVE;
+				}
+			}
+
+			return result;
+		}
+	}
 }
@@ -391,6 +391,12 @@ public class Tessellation
 	@NotNull
 	private List<int[]> _outlines;
 
+	/**
+	 * Cached result of {@link #getBoundaryEdges()}.
+	 */
+	@Nullable
+	private volatile int[] _boundaryEdges = null;
+
 	/**
 	 * Constructs a new tessellation.
 	 * <dl>
@@ -425,6 +431,76 @@ public class Tessellation
 		_outlines = outlines;
 	}
 
+	/**
+	 * Returns the edges of the triangles in this tessellation that are not
+	 * shared with another triangle, i.e. the edges on the boundary of the
+	 * tessellated shape. Each edge is stored as a pair of indices in
+	 * {@link Face3D#getVertices()}, in the order of its triangle.
+	 *
+	 * <p>The result is calculated once and then cached, so the primitives
+	 * must not be modified after calling this method.
+	 *
+	 * @return Pairs of vertex indices (do not modify).
+	 */
+	@NotNull
+	public int[] getBoundaryEdges()
+	{
+		int[] result = _boundaryEdges;
+		if ( result == null )
+		{
+			/*
+			 * Count the triangles using each edge. Edges used by only one
+			 * triangle are on the boundary.
+			 */
+			final Map<Long, Integer> edgeUseCounts = new HashMap<Long, Integer>();
+			int edgeCount = 0;
+			for ( final TessellationPrimitive primitive : _primitives )
+			{
+				final int[] triangles = primitive.getTriangles();
+				for ( int i = 0; i < triangles.length; i++ )
+				{
+					final Long key = getEdgeKey( triangles[ i ], triangles[ ( i % 3 == 2 ) ? i - 2 : i + 1 ] );
+					final Integer count = edgeUseCounts.get( key );
+					edgeUseCounts.put( key, ( count == null ) ? 1 : count + 1 );
+					edgeCount++;
+				}
+			}
+
+			final int[] edges = new int[ edgeCount * 2 ];
+			int boundaryCount = 0;
+			for ( final TessellationPrimitive primitive : _primitives )
+			{
+				final int[] triangles = primitive.getTriangles();
+				for ( int i = 0; i < triangles.length; i++ )
+				{
+					final int next = triangles[ ( i % 3 == 2 ) ? i - 2 : i + 1 ];
+					if ( edgeUseCounts.get( getEdgeKey( triangles[ i ], next ) ) == 1 )
+					{
+						edges[ boundaryCount++ ] = triangles[ i ];
+						edges[ boundaryCount++ ] = next;
+					}
+				}
+			}
+
+			result = Arrays.copyOf( edges, boundaryCount );
+			_boundaryEdges = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a key for the undirected edge between two vertices.
+	 *
+	 * @param vertex1 Index of the first vertex.
+	 * @param vertex2 Index of the second vertex.
+	 *
+	 * @return Edge key.
+	 */
+	private static Long getEdgeKey( final int vertex1, final int vertex2 )
+	{
+		return ( (long)Math.min( vertex1, vertex2 ) << 32 ) | (long)Math.max( vertex1, vertex2 );
+	}
+
 	@Override
 	public int hashCode()
 	{
@@ -46,9 +46,10 @@ public class Tessellator
 	private final HashList<Vector2D> _vertexList;
 
 	/**
-	 * Mesh that was created.
+	 * Mesh that was created; {@code null} if all results were provided up
+	 * front.
 	 */
-	@NotNull
+	@Nullable
 	private final Mesh _mesh;
 
 	/**
@@ -103,6 +104,29 @@ public class Tessellator
 		_mesh = mesh;
 	}
 
+	/**
+	 * Create tessellator with precomputed results, e.g. restored from a cache.
+	 *
+	 * @param   vertexList                  List of 2D vertices used in results.
+	 * @param   counterClockwiseTriangles   Counter-clockwise triangles.
+	 * @param   counterClockwisePrimitives  Counter-clockwise primitives.
+	 * @param   counterClockwiseOutlines    Counter-clockwise outlines.
+	 * @param   clockwiseTriangles          Clockwise triangles.
+	 * @param   clockwisePrimitives         Clockwise primitives.
+	 * @param   clockwiseOutlines           Clockwise outlines.
+	 */
+	public Tessellator( @NotNull final HashList<Vector2D> vertexList, @NotNull final int[] counterClockwiseTriangles, @NotNull final List<TessellationPrimitive> counterClockwisePrimitives, @NotNull final List<int[]> counterClockwiseOutlines, @NotNull final int[] clockwiseTriangles, @NotNull final List<TessellationPrimitive> clockwisePrimitives, @NotNull final List<int[]> clockwiseOutlines )
+	{
+		_vertexList = vertexList;
+		_mesh = null;
+		_counterClockwiseTriangles = counterClockwiseTriangles;
+		_counterClockwisePrimitives = counterClockwisePrimitives;
+		_counterClockwiseOutlines = counterClockwiseOutlines;
+		_clockwiseTriangles = clockwiseTriangles;
+		_clockwisePrimitives = clockwisePrimitives;
+		_clockwiseOutlines = clockwiseOutlines;
+	}
+
 	/**
 	 * Constructs counter-clockwise triangles for interior of shape.
 	 *
@@ -113,6 +137,7 @@ public class Tessellator
 		int[] result = _counterClockwiseTriangles;
 		if ( result == null )
 		{
+			//noinspection ConstantConditions
 			result = _mesh.constructTriangles( _vertexList, true );
 			_counterClockwiseTriangles = result;
 		}
@@ -130,6 +155,7 @@ public class Tessellator
 		List<TessellationPrimitive> result = _counterClockwisePrimitives;
 		if ( result == null )
 		{
+			//noinspection ConstantConditions
 			result = _mesh.constructPrimitives( _vertexList, true );
 			_counterClockwisePrimitives = result;
 		}
@@ -147,6 +173,7 @@ public class Tessellator
 		List<int[]> result = _counterClockwiseOutlines;
 		if ( result == null )
 		{
+			//noinspection ConstantConditions
 			result = _mesh.constructOutlines( _vertexList, true );
 			_counterClockwiseOutlines = result;
 		}
@@ -163,6 +190,7 @@ public class Tessellator
 		int[] result = _clockwiseTriangles;
 		if ( result == null )
 		{
+			//noinspection ConstantConditions
 			result = _mesh.constructTriangles( _vertexList, false );
 			_clockwiseTriangles = result;
 		}
@@ -180,6 +208,7 @@ public class Tessellator
 		List<TessellationPrimitive> result = _clockwisePrimitives;
 		if ( result == null )
 		{
+			//noinspection ConstantConditions
 			result = _mesh.constructPrimitives( _vertexList, false );
 			_clockwisePrimitives = result;
 		}
@@ -197,6 +226,7 @@ public class Tessellator
 		List<int[]> result = _clockwiseOutlines;
 		if ( result == null )
 		{
+			//noinspection ConstantConditions
 			result = _mesh.constructOutlines( _vertexList, false );
 			_clockwiseOutlines = result;
 		}
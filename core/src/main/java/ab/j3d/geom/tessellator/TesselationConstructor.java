@@ -67,6 +67,11 @@ import ab.j3d.geom.*;
  */
 class TesselationConstructor
 {
+	/**
+	 * Relative tolerance used to determine whether a face is empty.
+	 */
+	private static final double EMPTY_TOLERANCE = 1.0e-9;
+
 	private TesselationConstructor()
 	{
 	}
@@ -190,7 +195,8 @@ class TesselationConstructor
 
 	/**
 	 * Test whether the given face is empty (it has no surface area). This is true
-	 * if vertices coalesce or are collinear.
+	 * if vertices coalesce or are collinear. The test is relative to the size of
+	 * the face, so small faces that are not degenerate are not dropped.
 	 *
 	 * @param face Face to test.
 	 *
@@ -206,8 +212,12 @@ class TesselationConstructor
 		final Vector2D p2 = e2.origin.location;
 		final Vector2D p3 = e3.origin.location;
 
-		final double cross = ( ( p2.x - p1.x ) * ( p3.y - p1.y ) - ( p2.y - p1.y ) * ( p3.x - p1.x ) );
-		return ( cross > -0.0001 ) && ( cross < 0.0001 );
+		final double ax = p2.x - p1.x;
+		final double ay = p2.y - p1.y;
+		final double bx = p3.x - p1.x;
+		final double by = p3.y - p1.y;
+		final double cross = ax * by - ay * bx;
+		return Math.abs( cross ) <= EMPTY_TOLERANCE * ( ax * ax + ay * ay + bx * bx + by * by );
 	}
 
 	/**
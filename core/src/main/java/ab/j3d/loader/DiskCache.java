@@ -0,0 +1,513 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.loader;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.security.*;
+import java.util.*;
+
+import org.jetbrains.annotations.*;
+
+/**
+ * Persistent cache of binary blobs stored in a local directory. Entries are
+ * identified by a content hash (see {@link Key}) and are read back through
+ * memory-mapping, so large entries are not copied onto the Java heap.
+ *
+ * The total size of the cache is capped. When an entry is added that exceeds
+ * the cap, the least recently used entries are removed. The last-modified time
+ * of each file is used to persist the access order between runs.
+ *
+ * @author Peter S. Heijnen
+ */
+public class DiskCache
+{
+	/**
+	 * File name suffix used for cache entries.
+	 */
+	private static final String SUFFIX = ".bin";
+
+	/**
+	 * Directory where cache entries are stored.
+	 */
+	@NotNull
+	private final File _directory;
+
+	/**
+	 * Maximum total size of all cache entries, in bytes.
+	 */
+	private final long _maximumSize;
+
+	/**
+	 * Size of entries in the cache, in least recently used order. Initialized
+	 * lazily by {@link #getEntries}.
+	 */
+	private LinkedHashMap<String, Long> _entries = null;
+
+	/**
+	 * Total size of all cache entries, in bytes.
+	 */
+	private long _size = 0L;
+
+	/**
+	 * Constructs a new disk cache.
+	 *
+	 * @param directory   Directory where cache entries are stored.
+	 * @param maximumSize Maximum total size of all cache entries, in bytes.
+	 */
+	public DiskCache( @NotNull final File directory, final long maximumSize )
+	{
+		if ( maximumSize <= 0L )
+		{
+			throw new IllegalArgumentException( "maximumSize: " + maximumSize );
+		}
+
+		_directory = directory;
+		_maximumSize = maximumSize;
+	}
+
+	@NotNull
+	public File getDirectory()
+	{
+		return _directory;
+	}
+
+	public long getMaximumSize()
+	{
+		return _maximumSize;
+	}
+
+	/**
+	 * Returns the total size of all cache entries.
+	 *
+	 * @return Total size of all entries, in bytes.
+	 */
+	public synchronized long getSize()
+	{
+		getEntries();
+		return _size;
+	}
+
+	/**
+	 * Returns whether the cache contains an entry with the given key.
+	 *
+	 * @param key Key of entry.
+	 *
+	 * @return {@code true} if the cache contains the entry.
+	 */
+	public synchronized boolean contains( @NotNull final String key )
+	{
+		return getEntries().containsKey( key );
+	}
+
+	/**
+	 * Returns the contents of the cache entry with the given key. The returned
+	 * buffer is a read-only memory-mapped view of the entry's file.
+	 *
+	 * @param key Key of entry.
+	 *
+	 * @return Contents of the entry; {@code null} if the entry is not cached.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
+	@Nullable
+	public ByteBuffer get( @NotNull final String key )
+	throws IOException
+	{
+		final File file;
+		synchronized ( this )
+		{
+			if ( getEntries().get( key ) == null )
+			{
+				return null;
+			}
+
+			file = getFile( key );
+			//noinspection ResultOfMethodCallIgnored
+			file.setLastModified( System.currentTimeMillis() );
+		}
+
+		try ( final RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" ) )
+		{
+			final FileChannel channel = randomAccessFile.getChannel();
+			return channel.map( FileChannel.MapMode.READ_ONLY, 0L, channel.size() );
+		}
+		catch ( final FileNotFoundException ignored )
+		{
+			/*
+			 * Entry was removed by another process.
+			 */
+			remove( key );
+			return null;
+		}
+	}
+
+	/**
+	 * Stores a cache entry. The entry is written to a temporary file first and
+	 * then moved into place, so concurrent readers never see partial entries.
+	 * Least recently used entries are removed if the cache exceeds its maximum
+	 * size.
+	 *
+	 * @param key  Key of entry.
+	 * @param data Contents of the entry, from its position to its limit.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void put( @NotNull final String key, @NotNull final ByteBuffer data )
+	throws IOException
+	{
+		final long length = (long)data.remaining();
+		if ( length > _maximumSize )
+		{
+			return;
+		}
+
+		final File directory = _directory;
+		if ( !directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory() )
+		{
+			throw new IOException( "Failed to create cache directory: " + directory );
+		}
+
+		final File tempFile = File.createTempFile( key, ".tmp", directory );
+		try
+		{
+			try ( final FileOutputStream out = new FileOutputStream( tempFile ) )
+			{
+				final FileChannel channel = out.getChannel();
+				final ByteBuffer source = data.duplicate();
+				while ( source.hasRemaining() )
+				{
+					channel.write( source );
+				}
+			}
+
+			synchronized ( this )
+			{
+				final File file = getFile( key );
+				if ( file.exists() && !file.delete() )
+				{
+					/*
+					 * File is probably still mapped; keep the existing entry.
+					 */
+					return;
+				}
+
+				if ( !tempFile.renameTo( file ) )
+				{
+					throw new IOException( "Failed to rename " + tempFile + " to " + file );
+				}
+
+				final Long previous = getEntries().remove( key );
+				if ( previous != null )
+				{
+					_size -= previous;
+				}
+				getEntries().put( key, length );
+				_size += length;
+
+				trim( _maximumSize );
+			}
+		}
+		finally
+		{
+			if ( tempFile.exists() )
+			{
+				//noinspection ResultOfMethodCallIgnored
+				tempFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Removes the entry with the given key from the cache.
+	 *
+	 * @param key Key of entry.
+	 */
+	public synchronized void remove( @NotNull final String key )
+	{
+		final Long length = getEntries().remove( key );
+		if ( length != null )
+		{
+			_size -= length;
+			//noinspection ResultOfMethodCallIgnored
+			getFile( key ).delete();
+		}
+	}
+
+	/**
+	 * Removes least recently used entries until the total size of the cache
+	 * does not exceed the given size.
+	 *
+	 * @param size Maximum size of the cache after trimming, in bytes.
+	 */
+	public synchronized void trim( final long size )
+	{
+		for ( final Iterator<Map.Entry<String, Long>> it = getEntries().entrySet().iterator(); ( _size > size ) && it.hasNext(); )
+		{
+			final Map.Entry<String, Long> entry = it.next();
+			//noinspection ResultOfMethodCallIgnored
+			getFile( entry.getKey() ).delete();
+			_size -= entry.getValue();
+			it.remove();
+		}
+	}
+
+	/**
+	 * Removes all entries from the cache.
+	 */
+	public void clear()
+	{
+		trim( 0L );
+	}
+
+	/**
+	 * Returns the file used to store the entry with the given key.
+	 *
+	 * @param key Key of entry.
+	 *
+	 * @return Entry file.
+	 */
+	@NotNull
+	private File getFile( @NotNull final String key )
+	{
+		return new File( _directory, key + SUFFIX );
+	}
+
+	/**
+	 * Returns the size of entries in the cache, in least recently used order.
+	 * The first time this method is called, the cache directory is scanned for
+	 * existing entries.
+	 *
+	 * @return Size of entries, mapped by key.
+	 */
+	@NotNull
+	private LinkedHashMap<String, Long> getEntries()
+	{
+		LinkedHashMap<String, Long> result = _entries;
+		if ( result == null )
+		{
+			result = new LinkedHashMap<>( 16, 0.75f, true );
+			long size = 0L;
+
+			final File[] files = _directory.listFiles( ( dir, name ) -> name.endsWith( SUFFIX ) );
+			if ( files != null )
+			{
+				final long[] lastModified = new long[ files.length ];
+				final Integer[] order = new Integer[ files.length ];
+				for ( int i = 0; i < files.length; i++ )
+				{
+					lastModified[ i ] = files[ i ].lastModified();
+					order[ i ] = i;
+				}
+				Arrays.sort( order, ( i1, i2 ) -> Long.compare( lastModified[ i1 ], lastModified[ i2 ] ) );
+
+				for ( final Integer index : order )
+				{
+					final File file = files[ index ];
+					final String name = file.getName();
+					final long length = file.length();
+					result.put( name.substring( 0, name.length() - SUFFIX.length() ), length );
+					size += length;
+				}
+			}
+
+			_entries = result;
+			_size = size;
+		}
+		return result;
+	}
+
+	/**
+	 * Builds a cache key from a content hash of its source data and any
+	 * processing parameters.
+	 */
+	public static class Key
+	{
+		/**
+		 * Message digest used to hash content.
+		 */
+		private final MessageDigest _digest;
+
+		/**
+		 * Buffer used to hash primitive values.
+		 */
+		private final ByteBuffer _buffer = ByteBuffer.allocate( 8 );
+
+		/**
+		 * Key string, once the hash is completed.
+		 */
+		@Nullable
+		private String _value = null;
+
+		/**
+		 * Constructs a new key builder.
+		 *
+		 * @param type Type of cached content, e.g. including a format version.
+		 */
+		public Key( @NotNull final String type )
+		{
+			try
+			{
+				_digest = MessageDigest.getInstance( "SHA-1" );
+			}
+			catch ( final NoSuchAlgorithmException e )
+			{
+				throw new AssertionError( e );
+			}
+
+			update( type );
+		}
+
+		/**
+		 * Adds the given bytes to the key.
+		 *
+		 * @param bytes  Bytes to add.
+		 * @param offset Offset of first byte to add.
+		 * @param length Number of bytes to add.
+		 *
+		 * @return This key.
+		 */
+		public Key update( @NotNull final byte[] bytes, final int offset, final int length )
+		{
+			ensureNotFinished();
+			_digest.update( bytes, offset, length );
+			return this;
+		}
+
+		/**
+		 * Adds all bytes read from the given stream to the key. The stream is
+		 * not closed.
+		 *
+		 * @param in Stream to read from.
+		 *
+		 * @return This key.
+		 *
+		 * @throws IOException if an I/O error occurs.
+		 */
+		public Key update( @NotNull final InputStream in )
+		throws IOException
+		{
+			ensureNotFinished();
+			final byte[] buffer = new byte[ 8192 ];
+			for ( int read = in.read( buffer ); read >= 0; read = in.read( buffer ) )
+			{
+				_digest.update( buffer, 0, read );
+			}
+			return this;
+		}
+
+		/**
+		 * Adds the given string to the key.
+		 *
+		 * @param value Value to add.
+		 *
+		 * @return This key.
+		 */
+		public Key update( @NotNull final String value )
+		{
+			final byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+			update( bytes.length );
+			return update( bytes, 0, bytes.length );
+		}
+
+		/**
+		 * Adds the given value to the key.
+		 *
+		 * @param value Value to add.
+		 *
+		 * @return This key.
+		 */
+		public Key update( final int value )
+		{
+			final ByteBuffer buffer = _buffer;
+			buffer.clear();
+			buffer.putInt( value );
+			return update( buffer.array(), 0, 4 );
+		}
+
+		/**
+		 * Adds the given value to the key.
+		 *
+		 * @param value Value to add.
+		 *
+		 * @return This key.
+		 */
+		public Key update( final double value )
+		{
+			final ByteBuffer buffer = _buffer;
+			buffer.clear();
+			buffer.putDouble( value );
+			return update( buffer.array(), 0, 8 );
+		}
+
+		/**
+		 * Returns the key as a hexadecimal string that is suitable for use as
+		 * a file name. The hash is completed on the first call, after which no
+		 * more content can be added to the key.
+		 *
+		 * @return Key string.
+		 */
+		@NotNull
+		public String getValue()
+		{
+			String result = _value;
+			if ( result == null )
+			{
+				final byte[] hash = _digest.digest();
+				final StringBuilder sb = new StringBuilder( hash.length * 2 );
+				for ( final byte b : hash )
+				{
+					sb.append( Character.forDigit( ( b >> 4 ) & 0x0f, 16 ) );
+					sb.append( Character.forDigit( b & 0x0f, 16 ) );
+				}
+				result = sb.toString();
+				_value = result;
+			}
+			return result;
+		}
+
+		/**
+		 * Throws an exception if the hash was already completed.
+		 *
+		 * @throws IllegalStateException if the hash was already completed.
+		 */
+		private void ensureNotFinished()
+		{
+			if ( _value != null )
+			{
+				throw new IllegalStateException( "Key is already complete: " + _value );
+			}
+		}
+
+		/**
+		 * Returns the key string, if the hash was completed by {@link
+		 * #getValue()}. Unlike {@link #getValue()}, this has no side effects.
+		 *
+		 * @return Key string, or a description of the incomplete key.
+		 */
+		@Override
+		public String toString()
+		{
+			final String value = _value;
+			return ( value != null ) ? value : super.toString() + "[incomplete]";
+		}
+	}
+}
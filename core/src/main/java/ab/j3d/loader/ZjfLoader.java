@@ -20,6 +20,8 @@ package ab.j3d.loader;
 
 import java.io.*;
 import java.net.*;
+import java.nio.*;
+import java.nio.charset.*;
 import java.util.*;
 import java.util.zip.*;
 
@@ -27,7 +29,6 @@ import ab.j3d.*;
 import ab.j3d.appearance.*;
 import ab.j3d.geom.*;
 import ab.j3d.model.*;
-import static java.io.StreamTokenizer.*;
 import org.jetbrains.annotations.*;
 
 /**
@@ -69,7 +70,25 @@ public class ZjfLoader
 	}
 
 	/**
-	 * Convert {@link Assembly} to {@link Node3D}.
+	 * Load the specified ZJF file.
+	 *
+	 * @param   in  ZJF file input stream.
+	 *
+	 * @return  {@link Node3D}.
+	 *
+	 * @throws  IOException if an I/O error occurs.
+	 */
+	public static Node3D load( @NotNull final InputStream in )
+		throws IOException
+	{
+		return convertAssemblyToNode3D( parse( in ) );
+	}
+
+	/**
+	 * Convert {@link Assembly} to {@link Node3D}. Each part definition that
+	 * is used by the assembly is converted exactly once, in parallel. All
+	 * uses of a part share the resulting {@link Object3D}, which is placed
+	 * using a {@link Transform3D} node.
 	 *
 	 * @param   assembly    Assembly to convert.
 	 *
@@ -83,18 +102,14 @@ public class ZjfLoader
 		final List<Integer> partlist = assembly._partList;
 		final List<Matrix3D> matrixlist = assembly._matrixList;
 
-		final List<Object3D> convertedParts = new ArrayList<Object3D>( parts.size() );
-		for ( final Part part : parts )
-		{
-			convertedParts.add( convertPartToObject3D( part ) );
-		}
+		final Object3D[] convertedParts = convertParts( parts, partlist );
 
 		for ( int i = 0 ; i < partlist.size() ; i++ )
 		{
 			final int partNr = partlist.get( i );
 			final Part part = parts.get( partNr );
 
-			final Transform3D insert = new Transform3D( matrixlist.get( i ), convertedParts.get( partNr ) );
+			final Transform3D insert = new Transform3D( matrixlist.get( i ), convertedParts[ partNr ] );
 			insert.setTag( part.name );
 			result.addChild( insert );
 		}
@@ -102,6 +117,57 @@ public class ZjfLoader
 		return result;
 	}
 
+	/**
+	 * Convert part definitions that are used in the given part list to
+	 * {@link Object3D}. The conversion is performed in parallel if multiple
+	 * parts are used.
+	 *
+	 * @param   parts       Part definitions.
+	 * @param   partlist    Part usages (indices in part definitions).
+	 *
+	 * @return  Converted parts; {@code null} for unused parts.
+	 */
+	private static Object3D[] convertParts( final List<Part> parts, final List<Integer> partlist )
+	{
+		final Object3D[] result = new Object3D[ parts.size() ];
+
+		final boolean[] used = new boolean[ parts.size() ];
+		int usedCount = 0;
+		for ( final Integer partNr : partlist )
+		{
+			if ( !used[ partNr ] )
+			{
+				used[ partNr ] = true;
+				usedCount++;
+			}
+		}
+
+		final int[] usedParts = new int[ usedCount ];
+		for ( int i = 0, j = 0; i < used.length; i++ )
+		{
+			if ( used[ i ] )
+			{
+				usedParts[ j++ ] = i;
+			}
+		}
+
+		ParallelTools.processRanges( usedCount, usedCount, new ParallelTools.RangeTask<Object>()
+		{
+			@Override
+			public Object process( final int start, final int end )
+			{
+				for ( int i = start; i < end; i++ )
+				{
+					final int partNr = usedParts[ i ];
+					result[ partNr ] = convertPartToObject3D( parts.get( partNr ) );
+				}
+				return null;
+			}
+		} );
+
+		return result;
+	}
+
 	/**
 	 * Convert {@link Part} to {@link Object3D}.
 	 *
@@ -117,13 +183,24 @@ public class ZjfLoader
 		final Object3DBuilder builder = new Object3DBuilder();
 		builder.setVertexCoordinates( partVertices );
 
+		/*
+		 * Share appearances between triangles with the same color, so they
+		 * end up in the same face group.
+		 */
+		final Map<Color4f, Appearance> appearances = new HashMap<Color4f, Appearance>();
+
 		for ( final Triangle triangle : part.triangles )
 		{
 			final int[] vertices = triangle.vertices;
 			final int[] normalList = triangle.normalList;
 
 			final Vector3D[] vertexNormals = ( normalList != null ) ? new Vector3D[] { partNormals.get( normalList[ 0 ] ), partNormals.get( normalList[ 1 ] ), partNormals.get( normalList[ 2 ] ) } : null;
-			final Appearance appearance = BasicAppearance.createForColor( null, triangle.color );
+			Appearance appearance = appearances.get( triangle.color );
+			if ( appearance == null )
+			{
+				appearance = BasicAppearance.createForColor( null, triangle.color );
+				appearances.put( triangle.color, appearance );
+			}
 
 			builder.addFace( vertices, appearance, null, vertexNormals, false, true );
 		}
@@ -143,7 +220,6 @@ public class ZjfLoader
 	public static Assembly parse( final URL url )
 		throws IOException
 	{
-
 		final Assembly result;
 
 		final InputStream is = url.openStream();
@@ -156,15 +232,7 @@ public class ZjfLoader
 				try
 				{
 					zipInputStream.getNextEntry();
-					final BufferedReader reader = new BufferedReader( new InputStreamReader( zipInputStream ), 131072 );
-					try
-					{
-						result = parse( reader );
-					}
-					finally
-					{
-						reader.close();
-					}
+					result = parse( zipInputStream );
 				}
 				finally
 				{
@@ -173,15 +241,7 @@ public class ZjfLoader
 			}
 			else
 			{
-				final BufferedReader reader = new BufferedReader( new InputStreamReader( is ), 131072 );
-				try
-				{
-					result = parse( reader );
-				}
-				finally
-				{
-					reader.close();
-				}
+				result = parse( is );
 			}
 		}
 		finally
@@ -204,25 +264,38 @@ public class ZjfLoader
 	public static Assembly parse( final Reader reader )
 		throws IOException
 	{
-		final Assembly assembly = new Assembly();
+		return parse( new Tokenizer( new ReaderInputStream( reader ), StandardCharsets.UTF_8 ) );
+	}
+
+	/**
+	 * Parse ZJF file from input stream. Strings are decoded using the
+	 * platform's default charset.
+	 *
+	 * @param   in  ZJF file input stream.
+	 *
+	 * @return  {@link Assembly} that was parsed.
+	 *
+	 * @throws  IOException if an I/O or parse error occurs.
+	 */
+	public static Assembly parse( final InputStream in )
+		throws IOException
+	{
+		return parse( new Tokenizer( in, Charset.defaultCharset() ) );
+	}
 
-		final StreamTokenizer stream = new StreamTokenizer( reader );
-
-		stream.resetSyntax();
-		stream.wordChars( (int) 'a', (int) 'z' );
-		stream.wordChars( (int) 'A', (int) 'Z' );
-		stream.wordChars( (int) '0', (int) '9' );
-		stream.wordChars( 160, 255 );
-		stream.whitespaceChars( 0, 32 );
-		stream.commentChar( (int) '/' );
-		stream.quoteChar( (int) '"' );
-		stream.quoteChar( (int) '\'' );
-		stream.quoteChar( (int) '"' );
-		stream.ordinaryChar( (int)'.' );
-		stream.ordinaryChar( (int)'-' );
-		stream.wordChars( (int)'.', (int)'.' );
-		stream.wordChars( (int)'-', (int)'-' );
-		stream.quoteChar( (int) '"' );
+	/**
+	 * Parse ZJF file from tokenizer.
+	 *
+	 * @param   stream  Tokenizer to read tokens from.
+	 *
+	 * @return  {@link Assembly} that was parsed.
+	 *
+	 * @throws  IOException if an I/O or parse error occurs.
+	 */
+	private static Assembly parse( final Tokenizer stream )
+		throws IOException
+	{
+		final Assembly assembly = new Assembly();
 
 		Part currentPart = null;
 
@@ -256,7 +329,7 @@ public class ZjfLoader
 						continue;
 					}
 
-					if ( ( stream.ttype == TT_WORD ) && ( "P".equals( stream.sval ) ) )
+					if ( stream.isWord( "P" ) )
 					{
 						currentPart = new Part();
 						assembly._partDefinitions.add( currentPart );
@@ -264,7 +337,7 @@ public class ZjfLoader
 						nextState = IN_PART;
 					}
 
-					if ( ( stream.ttype != TT_WORD ) || !( "S".equals( stream.sval ) ) )
+					if ( !stream.isWord( "S" ) )
 					{
 						continue;
 					}
@@ -275,17 +348,17 @@ public class ZjfLoader
 					break;
 
 				case IN_STRUCT:
-					if ( ( stream.ttype == TT_WORD ) && "N".equals( stream.sval ) )
+					if ( stream.isWord( "N" ) )
 					{
 						state = READ_OPEN;
 						nextState = READ_STRUCT_NAME;
 					}
-					else if ( ( stream.ttype == TT_WORD ) && "M".equals( stream.sval ) )
+					else if ( stream.isWord( "M" ) )
 					{
 						state = READ_OPEN;
 						nextState = READ_MEMBER_MATRIX;
 					}
-					else if ( ( stream.ttype == TT_WORD ) && "ME".equals( stream.sval ) )
+					else if ( stream.isWord( "ME" ) )
 					{
 						state = READ_OPEN;
 						nextState = READ_EXPLOSION_MATRIX;
@@ -303,19 +376,19 @@ public class ZjfLoader
 						return null;
 					}
 
-					final int partNr = (int)getDoubleValue( stream );
-					stream.nextToken(); final double ax = getDoubleValue( stream );
-					stream.nextToken(); final double ay = getDoubleValue( stream );
-					stream.nextToken(); final double az = getDoubleValue( stream );
-					stream.nextToken(); final double bx = getDoubleValue( stream );
-					stream.nextToken(); final double by = getDoubleValue( stream );
-					stream.nextToken(); final double bz = getDoubleValue( stream );
-					stream.nextToken(); final double cx = getDoubleValue( stream );
-					stream.nextToken(); final double cy = getDoubleValue( stream );
-					stream.nextToken(); final double cz = getDoubleValue( stream );
-					stream.nextToken(); final double tx = getDoubleValue( stream );
-					stream.nextToken(); final double ty = getDoubleValue( stream );
-					stream.nextToken(); final double tz = getDoubleValue( stream );
+					final int partNr = (int)stream.getDouble();
+					stream.nextToken(); final double ax = stream.getDouble();
+					stream.nextToken(); final double ay = stream.getDouble();
+					stream.nextToken(); final double az = stream.getDouble();
+					stream.nextToken(); final double bx = stream.getDouble();
+					stream.nextToken(); final double by = stream.getDouble();
+					stream.nextToken(); final double bz = stream.getDouble();
+					stream.nextToken(); final double cx = stream.getDouble();
+					stream.nextToken(); final double cy = stream.getDouble();
+					stream.nextToken(); final double cz = stream.getDouble();
+					stream.nextToken(); final double tx = stream.getDouble();
+					stream.nextToken(); final double ty = stream.getDouble();
+					stream.nextToken(); final double tz = stream.getDouble();
 
 					assembly._matrixList.add( new Matrix3D( ax, bx, cx, tx, ay, by, cy, ty, az, bz, cz, tz ) );
 					assembly._partList.add( Integer.valueOf( partNr ) );
@@ -331,19 +404,19 @@ public class ZjfLoader
 						return null;
 					}
 
-					final int partNr = (int) getDoubleValue( stream );
-					stream.nextToken(); final double ax = getDoubleValue( stream );
-					stream.nextToken(); final double ay = getDoubleValue( stream );
-					stream.nextToken(); final double az = getDoubleValue( stream );
-					stream.nextToken(); final double bx = getDoubleValue( stream );
-					stream.nextToken(); final double by = getDoubleValue( stream );
-					stream.nextToken(); final double bz = getDoubleValue( stream );
-					stream.nextToken(); final double cx = getDoubleValue( stream );
-					stream.nextToken(); final double cy = getDoubleValue( stream );
-					stream.nextToken(); final double cz = getDoubleValue( stream );
-					stream.nextToken(); final double tx = getDoubleValue( stream );
-					stream.nextToken(); final double ty = getDoubleValue( stream );
-					stream.nextToken(); final double tz = getDoubleValue( stream );
+					final int partNr = (int)stream.getDouble();
+					stream.nextToken(); final double ax = stream.getDouble();
+					stream.nextToken(); final double ay = stream.getDouble();
+					stream.nextToken(); final double az = stream.getDouble();
+					stream.nextToken(); final double bx = stream.getDouble();
+					stream.nextToken(); final double by = stream.getDouble();
+					stream.nextToken(); final double bz = stream.getDouble();
+					stream.nextToken(); final double cx = stream.getDouble();
+					stream.nextToken(); final double cy = stream.getDouble();
+					stream.nextToken(); final double cz = stream.getDouble();
+					stream.nextToken(); final double tx = stream.getDouble();
+					stream.nextToken(); final double ty = stream.getDouble();
+					stream.nextToken(); final double tz = stream.getDouble();
 
 					assembly._explosionMatrixList.add( new Matrix3D( ax, bx, cx, tx, ay, by, cy, ty, az, bz, cz, tz ) );
 
@@ -356,62 +429,62 @@ public class ZjfLoader
 					break;
 
 				case IN_PART:
-					if ( ( stream.ttype == TT_WORD ) && ( "N".equals( stream.sval ) ) )
+					if ( stream.isWord( "N" ) )
 					{
 						state = READ_OPEN;
 						nextState = READ_PART_NAME;
 					}
-					else if ( ( stream.ttype == TT_WORD ) && ( "C".equals( stream.sval ) ) )
+					else if ( stream.isWord( "C" ) )
 					{
 						state = READ_OPEN;
 						nextState = READ_PART_COL;
 					}
-					else if ( ( stream.ttype == TT_WORD ) && ( "MID".equals( stream.sval ) ) )
+					else if ( stream.isWord( "MID" ) )
 					{
 						state = READ_OPEN;
 						nextState = READ_PART_MID;
 					}
-					else if ( ( stream.ttype == TT_WORD ) && ( "PL".equals( stream.sval ) ) )
+					else if ( stream.isWord( "PL" ) )
 					{
 						state = READ_OPEN;
 						nextState = READ_PART_POINT_LIST;
 					}
-					else if ( ( stream.ttype == TT_WORD ) && ( "FL3".equals( stream.sval ) ) )
+					else if ( stream.isWord( "FL3" ) )
 					{
 						state = READ_OPEN;
 						nextState = READ_PART_FACE_LIST3;
 					}
-					else if ( ( stream.ttype == TT_WORD ) && ( "NL".equals( stream.sval ) ) )
+					else if ( stream.isWord( "NL" ) )
 					{
 						state = READ_OPEN;
 						nextState = READ_PART_NORMAL_LIST;
 					}
-					else if ( ( stream.ttype == TT_WORD ) && ( "NL3".equals( stream.sval ) ) )
+					else if ( stream.isWord( "NL3" ) )
 					{
 						state = READ_OPEN;
 						nextState = READ_PART_FACE_NORMAL_LIST3;
 					}
-					else if ( ( stream.ttype == TT_WORD ) && ( "CF".equals( stream.sval ) ) )
+					else if ( stream.isWord( "CF" ) )
 					{
 						state = READ_OPEN;
 						nextState = READ_PART_FACE_COLOR_LIST3;
 					}
-					else if ( ( stream.ttype == TT_WORD ) && ( "COLS".equals( stream.sval ) ) )
+					else if ( stream.isWord( "COLS" ) )
 					{
 						state = READ_OPEN;
 						nextState = READ_PART_COLS;
 					}
-					else if ( ( stream.ttype == TT_WORD ) && ( "LLF".equals( stream.sval ) ) )
+					else if ( stream.isWord( "LLF" ) )
 					{
 						state = READ_OPEN;
 						nextState = READ_HARD_POINTS;
 					}
-					else if ( ( stream.ttype == TT_WORD ) && ( "LLR".equals( stream.sval ) ) )
+					else if ( stream.isWord( "LLR" ) )
 					{
 						state = READ_OPEN;
 						nextState = READ_SOFT_POINTS;
 					}
-					else if ( ( stream.ttype == TT_WORD ) && ( "THRL".equals( stream.sval ) ) )
+					else if ( stream.isWord( "THRL" ) )
 					{
 						state = READ_OPEN;
 						nextState = READ_THREAD_DATA;
@@ -436,11 +509,11 @@ public class ZjfLoader
 						{
 							continue;
 						}
-						final double v1 = getDoubleValue( stream );
+						final double v1 = stream.getDouble();
 						stream.nextToken();
-						final double v2 = getDoubleValue( stream );
+						final double v2 = stream.getDouble();
 						stream.nextToken();
-						final double v3 = getDoubleValue( stream );
+						final double v3 = stream.getDouble();
 
 						currentPart.vertexCoordinates.add( new Vector3D( v1, v2, v3 ) );
 					}
@@ -465,7 +538,7 @@ public class ZjfLoader
 							return null;
 						}
 
-						final int v1 = (int) getDoubleValue( stream );
+						final int v1 = (int)stream.getDouble();
 
 						stream.nextToken();
 						if ( stream.ttype != TT_WORD )
@@ -473,7 +546,7 @@ public class ZjfLoader
 							return null;
 						}
 
-						final int v2 = (int) getDoubleValue( stream );
+						final int v2 = (int)stream.getDouble();
 
 						stream.nextToken();
 						if ( stream.ttype != TT_WORD )
@@ -481,9 +554,9 @@ public class ZjfLoader
 							return null;
 						}
 
-						final int v3 = (int) getDoubleValue( stream );
+						final int v3 = (int)stream.getDouble();
 
-						currentPart.triangles.add( new Triangle( currentPart, v1, v2, v3, currentPart.color ) );
+						currentPart.triangles.add( new Triangle( v1, v2, v3, currentPart.color ) );
 					}
 					while ( ( stream.ttype != (int)'}' ) && ( stream.ttype != TT_EOF ) );
 
@@ -500,11 +573,11 @@ public class ZjfLoader
 						{
 							continue;
 						}
-						final double v1 = getDoubleValue( stream );
+						final double v1 = stream.getDouble();
 						stream.nextToken();
-						final double v2 = getDoubleValue( stream );
+						final double v2 = stream.getDouble();
 						stream.nextToken();
-						final double v3 = getDoubleValue( stream );
+						final double v3 = stream.getDouble();
 
 						currentPart.normals.add( new Vector3D( v1, v2, v3 ) );
 					}
@@ -528,19 +601,19 @@ public class ZjfLoader
 						{
 							return null;
 						}
-						final int v1 = (int) getDoubleValue( stream );
+						final int v1 = (int)stream.getDouble();
 						stream.nextToken();
 						if ( stream.ttype != TT_WORD )
 						{
 							return null;
 						}
-						final int v2 = (int) getDoubleValue( stream );
+						final int v2 = (int)stream.getDouble();
 						stream.nextToken();
 						if ( stream.ttype != TT_WORD )
 						{
 							return null;
 						}
-						final int v3 = (int) getDoubleValue( stream );
+						final int v3 = (int)stream.getDouble();
 
 						final Triangle triangel = currentPart.triangles.get( i++ );
 						triangel.normalList = new int[] { v1, v2, v3 };
@@ -583,7 +656,7 @@ public class ZjfLoader
 						stream.nextToken();
 						if ( stream.ttype != (int)'}' )
 						{
-							final int val = (int) getDoubleValue( stream );
+							final int val = (int)stream.getDouble();
 							currentPart.hardPoints.add( Integer.valueOf( val ) );
 						}
 					}
@@ -601,7 +674,7 @@ public class ZjfLoader
 						stream.nextToken();
 						if ( stream.ttype != (int)'}' )
 						{
-							final int val = (int) getDoubleValue( stream );
+							final int val = (int)stream.getDouble();
 							currentPart.softPoints.add( Integer.valueOf( val ) );
 						}
 					}
@@ -618,9 +691,9 @@ public class ZjfLoader
 					do
 					{
 						stream.nextToken();
-						if ( ( stream.ttype != (int)'}' ) && ( stream.sval != null ) )
+						if ( stream.ttype == TT_WORD )
 						{
-							data.add( new Double( stream.sval ) );
+							data.add( Double.valueOf( stream.getDouble() ) );
 						}
 
 						if ( data.size() == 8 )
@@ -651,7 +724,7 @@ public class ZjfLoader
 						return null;
 					}
 
-					final int red = (int) getDoubleValue( stream );
+					final int red = (int)stream.getDouble();
 
 					stream.nextToken();
 					if ( stream.ttype != TT_WORD )
@@ -659,7 +732,7 @@ public class ZjfLoader
 						return null;
 					}
 
-					final int green = (int) getDoubleValue( stream );
+					final int green = (int)stream.getDouble();
 
 					stream.nextToken();
 					if ( stream.ttype != TT_WORD )
@@ -667,14 +740,14 @@ public class ZjfLoader
 						return null;
 					}
 
-					final int blue = (int) getDoubleValue( stream );
+					final int blue = (int)stream.getDouble();
 					currentPart.color = new Color4f( red, green, blue );
 
 					stream.nextToken();
 
 					if ( stream.ttype == TT_WORD )
 					{
-						a = (int) getDoubleValue( stream );
+						a = (int)stream.getDouble();
 					}
 					else
 					{
@@ -693,7 +766,7 @@ public class ZjfLoader
 						return null;
 					}
 
-					currentPart.mid = stream.sval;
+					currentPart.mid = stream.getString();
 					state = READ_CLOSE;
 					nextState = IN_PART;
 					break;
@@ -704,7 +777,7 @@ public class ZjfLoader
 						return null;
 					}
 
-					currentPart.name = stream.sval;
+					currentPart.name = stream.getString();
 					state = READ_CLOSE;
 					nextState = IN_PART;
 					break;
@@ -715,7 +788,7 @@ public class ZjfLoader
 						return null;
 					}
 
-					currentPart.name = stream.sval;
+					currentPart.name = stream.getString();
 					state = READ_CLOSE;
 					nextState = IN_STRUCT;
 					break;
@@ -728,34 +801,6 @@ public class ZjfLoader
 		return assembly;
 	}
 
-	/**
-	 * Get double value from stream.
-	 *
-	 * @param   stream  Stream to read from.
-	 *
-	 * @return  Double value.
-	 */
-	private static double getDoubleValue( final StreamTokenizer stream )
-	{
-		final double result;
-
-		if ( stream.ttype == TT_WORD )
-		{
-			final String val = stream.sval;
-			result = Double.parseDouble( val );
-		}
-		else if ( stream.ttype == TT_NUMBER )
-		{
-			result = stream.nval;
-		}
-		else
-		{
-			result = 1.0;
-		}
-
-		return result;
-	}
-
 	/*
 	 * Parser states.
 	 */
@@ -784,6 +829,496 @@ public class ZjfLoader
 	/** Parser state. */ private static final int READ_THREAD_DATA = 19;
 	/** Parser state. */ private static final int READ_PART_COLS = 22;
 
+	/*
+	 * Token types.
+	 */
+
+	/** Token type: end of file. */ private static final int TT_EOF = -1;
+	/** Token type: word (including numbers). */ private static final int TT_WORD = -3;
+	/** Token type: no token read yet. */ private static final int TT_NOTHING = -4;
+
+	/**
+	 * Powers of ten that can be represented exactly as a double.
+	 */
+	private static final double[] EXACT_POWERS_OF_TEN = {
+		1.0e0, 1.0e1, 1.0e2, 1.0e3, 1.0e4, 1.0e5, 1.0e6, 1.0e7, 1.0e8, 1.0e9, 1.0e10,
+		1.0e11, 1.0e12, 1.0e13, 1.0e14, 1.0e15, 1.0e16, 1.0e17, 1.0e18, 1.0e19, 1.0e20,
+		1.0e21, 1.0e22 };
+
+	/**
+	 * Splits a ZJF file into tokens. This works directly on bytes, using the
+	 * same syntax that was previously configured on a {@link StreamTokenizer}:
+	 * letters, digits, '.', '-' and non-ASCII characters form words; '/'
+	 * starts a comment that runs until the end of the line; strings are
+	 * enclosed in single or double quotes; any other character is returned
+	 * as a token by itself.
+	 *
+	 * Numbers are parsed directly from the word bytes. Values that can not
+	 * be converted exactly using a fast path are passed to
+	 * {@link Double#parseDouble}, so results are always identical.
+	 */
+	private static class Tokenizer
+	{
+		/**
+		 * Input stream to read from.
+		 */
+		private final InputStream _in;
+
+		/**
+		 * Charset used to decode strings.
+		 */
+		private final Charset _charset;
+
+		/**
+		 * Input buffer.
+		 */
+		private final byte[] _buffer = new byte[ 131072 ];
+
+		/**
+		 * Read position in input buffer.
+		 */
+		private int _position = 0;
+
+		/**
+		 * Number of valid bytes in input buffer.
+		 */
+		private int _limit = 0;
+
+		/**
+		 * Bytes of the current word or string.
+		 */
+		private byte[] _token = new byte[ 64 ];
+
+		/**
+		 * Length of the current word or string.
+		 */
+		private int _tokenLength = 0;
+
+		/**
+		 * Type of the current token: {@link #TT_EOF}, {@link #TT_WORD}, the
+		 * quote character for a string, or the character itself.
+		 */
+		int ttype = TT_NOTHING;
+
+		/**
+		 * Whether the current token was pushed back.
+		 */
+		private boolean _pushedBack = false;
+
+		/**
+		 * Constructs tokenizer.
+		 *
+		 * @param   in          Input stream to read from.
+		 * @param   charset     Charset used to decode strings.
+		 */
+		Tokenizer( final InputStream in, final Charset charset )
+		{
+			_in = in;
+			_charset = charset;
+		}
+
+		/**
+		 * Read next token.
+		 *
+		 * @return  Token type.
+		 *
+		 * @throws  IOException if an I/O error occurs.
+		 */
+		int nextToken()
+			throws IOException
+		{
+			if ( _pushedBack )
+			{
+				_pushedBack = false;
+				return ttype;
+			}
+
+			int c = read();
+			while ( ( c >= 0 ) && ( ( c <= ' ' ) || ( c == '/' ) ) )
+			{
+				if ( c == '/' )
+				{
+					do
+					{
+						c = read();
+					}
+					while ( ( c >= 0 ) && ( c != '\n' ) && ( c != '\r' ) );
+				}
+				else
+				{
+					c = read();
+				}
+			}
+
+			final int result;
+
+			if ( c < 0 )
+			{
+				result = TT_EOF;
+			}
+			else if ( isWordChar( c ) )
+			{
+				_tokenLength = 0;
+				do
+				{
+					append( c );
+					c = read();
+				}
+				while ( ( c >= 0 ) && isWordChar( c ) );
+
+				if ( c >= 0 )
+				{
+					_position--;
+				}
+
+				result = TT_WORD;
+			}
+			else if ( ( c == '"' ) || ( c == '\'' ) )
+			{
+				_tokenLength = 0;
+
+				int next = read();
+				while ( ( next >= 0 ) && ( next != c ) && ( next != '\n' ) && ( next != '\r' ) )
+				{
+					if ( next == '\\' )
+					{
+						next = read();
+						switch ( next )
+						{
+							case 'a' : next = 0x07; break;
+							case 'b' : next = '\b'; break;
+							case 'f' : next = '\f'; break;
+							case 'n' : next = '\n'; break;
+							case 'r' : next = '\r'; break;
+							case 't' : next = '\t'; break;
+							case 'v' : next = 0x0b; break;
+						}
+
+						if ( next < 0 )
+						{
+							break;
+						}
+					}
+
+					append( next );
+					next = read();
+				}
+
+				result = c;
+			}
+			else
+			{
+				result = c;
+			}
+
+			ttype = result;
+			return result;
+		}
+
+		/**
+		 * Push back the current token, so it is returned again by the next
+		 * call to {@link #nextToken()}.
+		 */
+		void pushBack()
+		{
+			if ( ttype != TT_NOTHING )
+			{
+				_pushedBack = true;
+			}
+		}
+
+		/**
+		 * Test whether the current token is the given word.
+		 *
+		 * @param   word    Word to compare with (ASCII only).
+		 *
+		 * @return  {@code true} if the current token is the given word.
+		 */
+		boolean isWord( final String word )
+		{
+			boolean result = ( ttype == TT_WORD ) && ( _tokenLength == word.length() );
+			if ( result )
+			{
+				final byte[] token = _token;
+				for ( int i = 0; i < _tokenLength; i++ )
+				{
+					if ( token[ i ] != (byte)word.charAt( i ) )
+					{
+						result = false;
+						break;
+					}
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Get string value of the current word or quoted string.
+		 *
+		 * @return  String value.
+		 */
+		String getString()
+		{
+			return new String( _token, 0, _tokenLength, _charset );
+		}
+
+		/**
+		 * Get numeric value of the current word. If the current token is
+		 * not a word, {@code 1.0} is returned.
+		 *
+		 * @return  Numeric value.
+		 *
+		 * @throws  NumberFormatException if the word is not a number.
+		 */
+		double getDouble()
+		{
+			if ( ttype != TT_WORD )
+			{
+				return 1.0;
+			}
+
+			final byte[] token = _token;
+			final int length = _tokenLength;
+
+			int i = 0;
+			final boolean negative = ( length > 0 ) && ( token[ 0 ] == '-' );
+			if ( negative )
+			{
+				i++;
+			}
+
+			long mantissa = 0L;
+			int significantDigits = 0;
+			int exponent = 0;
+			boolean anyDigits = false;
+
+			while ( ( i < length ) && ( token[ i ] >= '0' ) && ( token[ i ] <= '9' ) )
+			{
+				mantissa = mantissa * 10L + (long)( token[ i++ ] - '0' );
+				if ( mantissa != 0L )
+				{
+					significantDigits++;
+				}
+				anyDigits = true;
+			}
+
+			if ( ( i < length ) && ( token[ i ] == '.' ) )
+			{
+				i++;
+				while ( ( i < length ) && ( token[ i ] >= '0' ) && ( token[ i ] <= '9' ) )
+				{
+					mantissa = mantissa * 10L + (long)( token[ i++ ] - '0' );
+					if ( mantissa != 0L )
+					{
+						significantDigits++;
+					}
+					exponent--;
+					anyDigits = true;
+				}
+			}
+
+			if ( !anyDigits || ( significantDigits > 15 ) )
+			{
+				return parseDoubleSlow();
+			}
+
+			if ( ( i < length ) && ( ( token[ i ] == 'e' ) || ( token[ i ] == 'E' ) ) )
+			{
+				i++;
+				final boolean negativeExponent = ( i < length ) && ( token[ i ] == '-' );
+				if ( negativeExponent || ( ( i < length ) && ( token[ i ] == '+' ) ) )
+				{
+					i++;
+				}
+
+				final int start = i;
+				int value = 0;
+				while ( ( i < length ) && ( token[ i ] >= '0' ) && ( token[ i ] <= '9' ) && ( i - start < 4 ) )
+				{
+					value = value * 10 + ( token[ i++ ] - '0' );
+				}
+
+				if ( i == start )
+				{
+					return parseDoubleSlow();
+				}
+
+				exponent += negativeExponent ? -value : value;
+			}
+
+			if ( ( i != length ) || ( exponent < -22 ) || ( exponent > 22 ) )
+			{
+				return parseDoubleSlow();
+			}
+
+			/*
+			 * Both the mantissa (at most 15 digits) and the power of ten are
+			 * exact, so a single multiplication or division yields the
+			 * correctly rounded result.
+			 */
+			final double value = ( exponent < 0 ) ? (double)mantissa / EXACT_POWERS_OF_TEN[ -exponent ] : (double)mantissa * EXACT_POWERS_OF_TEN[ exponent ];
+			return negative ? -value : value;
+		}
+
+		/**
+		 * Parse the current word using {@link Double#parseDouble}.
+		 *
+		 * @return  Numeric value.
+		 *
+		 * @throws  NumberFormatException if the word is not a number.
+		 */
+		private double parseDoubleSlow()
+		{
+			return Double.parseDouble( new String( _token, 0, _tokenLength, StandardCharsets.ISO_8859_1 ) );
+		}
+
+		/**
+		 * Test whether the given byte is part of a word.
+		 *
+		 * @param   c   Byte value (0-255).
+		 *
+		 * @return  {@code true} if the byte is part of a word.
+		 */
+		private static boolean isWordChar( final int c )
+		{
+			return ( ( c >= 'a' ) && ( c <= 'z' ) ) ||
+			       ( ( c >= 'A' ) && ( c <= 'Z' ) ) ||
+			       ( ( c >= '0' ) && ( c <= '9' ) ) ||
+			       ( c == '.' ) || ( c == '-' ) || ( c >= 128 );
+		}
+
+		/**
+		 * Append byte to the current token.
+		 *
+		 * @param   c   Byte to append.
+		 */
+		private void append( final int c )
+		{
+			byte[] token = _token;
+			if ( _tokenLength == token.length )
+			{
+				token = Arrays.copyOf( token, token.length * 2 );
+				_token = token;
+			}
+			token[ _tokenLength++ ] = (byte)c;
+		}
+
+		/**
+		 * Read next byte from input.
+		 *
+		 * @return  Byte value (0-255); {@code -1} at end of input.
+		 *
+		 * @throws  IOException if an I/O error occurs.
+		 */
+		private int read()
+			throws IOException
+		{
+			if ( _position == _limit )
+			{
+				final int count = _in.read( _buffer, 0, _buffer.length );
+				if ( count <= 0 )
+				{
+					return -1;
+				}
+				_position = 0;
+				_limit = count;
+			}
+
+			return _buffer[ _position++ ] & 0xff;
+		}
+	}
+
+	/**
+	 * Input stream that encodes characters from a {@link Reader} as UTF-8.
+	 */
+	private static class ReaderInputStream
+		extends InputStream
+	{
+		/**
+		 * Reader to read characters from.
+		 */
+		private final Reader _reader;
+
+		/**
+		 * Encodes characters to UTF-8.
+		 */
+		private final CharsetEncoder _encoder = StandardCharsets.UTF_8.newEncoder().onMalformedInput( CodingErrorAction.REPLACE ).onUnmappableCharacter( CodingErrorAction.REPLACE );
+
+		/**
+		 * Characters read from the reader that are not encoded yet.
+		 */
+		private final CharBuffer _chars = CharBuffer.allocate( 32768 );
+
+		/**
+		 * Encoded bytes. Large enough to hold any encoded character buffer.
+		 */
+		private final ByteBuffer _bytes = ByteBuffer.allocate( 3 * 32768 );
+
+		/**
+		 * Whether the end of the reader was reached.
+		 */
+		private boolean _endOfInput = false;
+
+		/**
+		 * Constructs input stream.
+		 *
+		 * @param   reader  Reader to read characters from.
+		 */
+		ReaderInputStream( final Reader reader )
+		{
+			_reader = reader;
+			_chars.flip();
+			_bytes.flip();
+		}
+
+		@Override
+		public int read()
+			throws IOException
+		{
+			final byte[] buffer = new byte[ 1 ];
+			return ( read( buffer, 0, 1 ) < 0 ) ? -1 : ( buffer[ 0 ] & 0xff );
+		}
+
+		@Override
+		public int read( @NotNull final byte[] b, final int off, final int len )
+			throws IOException
+		{
+			final ByteBuffer bytes = _bytes;
+			while ( !bytes.hasRemaining() )
+			{
+				if ( _endOfInput )
+				{
+					return -1;
+				}
+
+				final CharBuffer chars = _chars;
+				chars.compact();
+				final boolean endOfInput = ( _reader.read( chars ) < 0 );
+				chars.flip();
+
+				bytes.clear();
+				_encoder.encode( chars, bytes, endOfInput );
+				if ( endOfInput )
+				{
+					_encoder.flush( bytes );
+					_endOfInput = true;
+				}
+				bytes.flip();
+			}
+
+			final int count = Math.min( len, bytes.remaining() );
+			bytes.get( b, off, count );
+			return count;
+		}
+
+		@Override
+		public void close()
+			throws IOException
+		{
+			_reader.close();
+		}
+	}
+
 	/**
 	 * Assembly is the main element of a ZJF file.
 	 */
@@ -851,17 +1386,11 @@ public class ZjfLoader
 		Color4f color;
 		int[] vertices;
 		int[] normalList;
-		Vector3D normal;
 
-		private Triangle( final Part part, final int v1, final int v2, final int v3, final Color4f col )
+		private Triangle( final int v1, final int v2, final int v3, final Color4f col )
 		{
 			vertices = new int[] { v1, v2, v3 };
 			color = col;
-
-			final Vector3D p1 = part.vertexCoordinates.get( v1 );
-			final Vector3D p2 = part.vertexCoordinates.get( v2 );
-			final Vector3D p3 = part.vertexCoordinates.get( v3 );
-			normal = GeometryTools.getPlaneNormal( p1, p2, p3 );
 		}
 	}
 
@@ -21,6 +21,7 @@
 package ab.j3d.loader.max3ds;
 
 import java.io.*;
+import java.nio.*;
 
 import ab.j3d.*;
 
@@ -46,14 +47,14 @@ class CameraChunk
 	float _far;
 
 
-	CameraChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	CameraChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		super( in, chunkType, remainingChunkBytes );
 	}
 
 	@Override
-	protected void processChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		_position = new Vector3f( readFloat( in ), readFloat( in ), readFloat( in ) );
@@ -65,7 +66,7 @@ class CameraChunk
 	}
 
 	@Override
-	protected void processChildChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChildChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		switch ( chunkType )
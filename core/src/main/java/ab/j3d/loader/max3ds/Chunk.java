@@ -21,9 +21,13 @@
 package ab.j3d.loader.max3ds;
 
 import java.io.*;
+import java.nio.*;
 
 /**
- * Base class of all chunks.
+ * Base class of all chunks. Chunks are read from a {@link ByteBuffer} in
+ * little-endian byte order, which may be backed by a memory-mapped file.
+ * Chunks that are not needed are skipped by adjusting the buffer position,
+ * without reading their contents.
  *
  * @author  Peter S. Heijnen
  * @version $Revision$ $Date$
@@ -154,29 +158,29 @@ abstract class Chunk
 	/**
 	 * Construct chunk from data input.
 	 *
-	 * @param   in                  Input stream.
+	 * @param   in                  Buffer to read from.
 	 * @param   chunkType           This chunk's type.
 	 * @param   remainingChunkBytes Remaining number of unread bytes in this chunk.
 	 *
 	 * @throws  IOException if a read error occurred.
 	 */
-	protected Chunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected Chunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
-//		System.out.println( this + "( final InputStream in ) - type=0x" + Integer.toHexString( chunkType ) + ", remainingChunkBytes=" + remainingChunkBytes );
+//		System.out.println( this + "( final ByteBuffer in ) - type=0x" + Integer.toHexString( chunkType ) + ", remainingChunkBytes=" + remainingChunkBytes );
 		processChunk( in, chunkType, remainingChunkBytes );
 	}
 
 	/**
 	 * Read chunk data and process its sub chunks.
 	 *
-	 * @param   in                  Input stream.
+	 * @param   in                  Buffer to read from.
 	 * @param   chunkType           This chunk's type.
 	 * @param   remainingChunkBytes Remaining number of unread bytes in this chunk.
 	 *
 	 * @throws  IOException if a read error occurred.
 	 */
-	protected void processChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 //		System.out.println( "  Chunk.processChunk( ..., chunkType=0x" + Integer.toHexString( chunkType ) + ", remainingChunkBytes=" + remainingChunkBytes + " )" );
@@ -186,7 +190,7 @@ abstract class Chunk
 			final int childType = readUnsignedShort( in );
 			final int childSize = readInt( in );
 
-			if ( childSize > todo )
+			if ( ( childSize < 6 ) || ( childSize > todo ) )
 			{
 				throw new IOException( "Header length doesn't match up: End ID#:" + Integer.toHexString( childType ) + " len left to read=" + todo + " parentID#=" + Integer.toHexString( chunkType ) );
 			}
@@ -201,50 +205,88 @@ abstract class Chunk
 	/**
 	 * Process a child chunk.
 	 *
-	 * @param   in                  Input stream.
+	 * @param   in                  Buffer to read from.
 	 * @param   chunkType           Child's chunk type.
 	 * @param   remainingChunkBytes Remaining number of unread bytes in child chunk.
 	 *
 	 * @throws  IOException if a read error occurred.
 	 */
-	protected abstract void processChildChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected abstract void processChildChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException;
 
 	/**
 	 * Skip number of data bytes.
 	 *
-	 * @param   in              Input stream.
+	 * @param   in              Buffer to read from.
 	 * @param   numberOfBytes   Number of bytes to skip.
 	 *
 	 * @throws  IOException if a read error occurred.
 	 */
-	protected static void skipFully( final InputStream in, final int numberOfBytes )
+	protected static void skipFully( final ByteBuffer in, final int numberOfBytes )
 		throws IOException
 	{
-		int remainder = numberOfBytes;
-		while ( remainder > 0 )
+		if ( numberOfBytes > in.remaining() )
 		{
-			final long skipped = in.skip( remainder );
-			if ( skipped <= 0L )
-			{
-				throw new EOFException();
-			}
+			throw new EOFException();
+		}
 
-			remainder -= skipped;
+		in.position( in.position() + numberOfBytes );
+	}
+
+	/**
+	 * Returns the given number of bytes as a separate buffer, without reading
+	 * them. The position of the given buffer is moved past the returned bytes.
+	 * This is used to defer decoding of chunks that are rarely needed.
+	 *
+	 * @param   in              Buffer to read from.
+	 * @param   numberOfBytes   Number of bytes to return.
+	 *
+	 * @return  Buffer with the given number of bytes.
+	 *
+	 * @throws  IOException if a read error occurred.
+	 */
+	protected static ByteBuffer sliceBytes( final ByteBuffer in, final int numberOfBytes )
+		throws IOException
+	{
+		if ( numberOfBytes > in.remaining() )
+		{
+			throw new EOFException();
 		}
+
+		final ByteBuffer result = in.slice();
+		result.limit( numberOfBytes );
+		result.order( ByteOrder.LITTLE_ENDIAN );
+		in.position( in.position() + numberOfBytes );
+		return result;
+	}
+
+	/**
+	 * Returns a buffer for reading bytes previously returned by
+	 * {@link #sliceBytes}. The given buffer is not modified.
+	 *
+	 * @param   bytes   Bytes to read.
+	 *
+	 * @return  Buffer positioned at the first byte.
+	 */
+	protected static ByteBuffer readSlice( final ByteBuffer bytes )
+	{
+		final ByteBuffer result = bytes.duplicate();
+		result.rewind();
+		result.order( ByteOrder.LITTLE_ENDIAN );
+		return result;
 	}
 
 	/**
 	 * Read 0-terminated string with variable data length The number of bytes
 	 * read is the length of the returned string + 1.
 	 *
-	 * @param   in  Input stream.
+	 * @param   in  Buffer to read from.
 	 *
 	 * @return  String that was read.
 	 *
 	 * @throws  IOException if a read error occurred.
 	 */
-	protected static String readCString( final InputStream in )
+	protected static String readCString( final ByteBuffer in )
 		throws IOException
 	{
 		final StringBuilder sb = new StringBuilder();
@@ -261,14 +303,14 @@ abstract class Chunk
 	 * Read 0-terminated string with fixed data length. The number of bytes read
 	 * is always <code>numberOfBytes</code>.
 	 *
-	 * @param   in              Input stream.
+	 * @param   in              Buffer to read from.
 	 * @param   numberOfBytes   Number of bytes to read.
 	 *
 	 * @return  String that was read.
 	 *
 	 * @throws  IOException if a read error occurred.
 	 */
-	protected static String readCString( final InputStream in, final int numberOfBytes )
+	protected static String readCString( final ByteBuffer in, final int numberOfBytes )
 		throws IOException
 	{
 		final byte[] bytes = new byte[ numberOfBytes ];
@@ -277,96 +319,137 @@ abstract class Chunk
 		return new String( bytes, 0, numberOfBytes - 1 );
 	}
 
-	protected static byte readByte( final InputStream in )
+	protected static byte readByte( final ByteBuffer in )
 		throws IOException
 	{
-		final int b = in.read();
-		if ( b < 0 )
-		{
-			throw new EOFException();
-		}
-
-		return (byte)b;
+		ensureRemaining( in, 1 );
+		return in.get();
 	}
 
-	protected static void readBytes( final InputStream in, final byte[] dest )
+	protected static void readBytes( final ByteBuffer in, final byte[] dest )
 		throws IOException
 	{
 		readBytes( in, dest, 0, dest.length );
 	}
 
-	protected static void readBytes( final InputStream in, final byte[] dest, final int offset, final int length )
+	protected static void readBytes( final ByteBuffer in, final byte[] dest, final int offset, final int length )
 		throws IOException
 	{
-		int currentOffset = offset;
-		int todo = length;
+		ensureRemaining( in, length );
+		in.get( dest, offset, length );
+	}
 
-		while ( todo > 0 )
-		{
-			final int read = in.read( dest, currentOffset, todo );
-			if ( read <= 0 )
-			{
-				throw new EOFException();
-			}
+	/**
+	 * Read array of floats in bulk.
+	 *
+	 * @param   in      Buffer to read from.
+	 * @param   dest    Array to read floats into.
+	 *
+	 * @throws  IOException if a read error occurred.
+	 */
+	protected static void readFloats( final ByteBuffer in, final float[] dest )
+		throws IOException
+	{
+		ensureRemaining( in, dest.length * 4 );
+		in.asFloatBuffer().get( dest );
+		in.position( in.position() + dest.length * 4 );
+	}
 
-			currentOffset += read;
-			todo -= read;
-		}
+	/**
+	 * Read array of shorts in bulk.
+	 *
+	 * @param   in      Buffer to read from.
+	 * @param   dest    Array to read shorts into.
+	 *
+	 * @throws  IOException if a read error occurred.
+	 */
+	protected static void readShorts( final ByteBuffer in, final short[] dest )
+		throws IOException
+	{
+		ensureRemaining( in, dest.length * 2 );
+		in.asShortBuffer().get( dest );
+		in.position( in.position() + dest.length * 2 );
 	}
 
-	protected static int skipBytes( final InputStream in, final int length )
+	/**
+	 * Read array of integers in bulk.
+	 *
+	 * @param   in      Buffer to read from.
+	 * @param   dest    Array to read integers into.
+	 *
+	 * @throws  IOException if a read error occurred.
+	 */
+	protected static void readInts( final ByteBuffer in, final int[] dest )
 		throws IOException
 	{
-		return (int)in.skip( (long) length );
+		ensureRemaining( in, dest.length * 4 );
+		in.asIntBuffer().get( dest );
+		in.position( in.position() + dest.length * 4 );
 	}
 
-	protected static short readShort( final InputStream in )
+	protected static int skipBytes( final ByteBuffer in, final int length )
 		throws IOException
 	{
-		return (short)readUnsignedShort( in );
+		final int result = Math.min( length, in.remaining() );
+		in.position( in.position() + result );
+		return result;
 	}
 
-	protected static int readInt( final InputStream in )
+	protected static short readShort( final ByteBuffer in )
 		throws IOException
 	{
-		final int s0 = readUnsignedShort( in );
-		final int s1 = readUnsignedShort( in );
-		return s0 | ( s1 << 16 );
+		ensureRemaining( in, 2 );
+		return in.getShort();
 	}
 
-	protected static long readLong( final InputStream in )
+	protected static int readInt( final ByteBuffer in )
 		throws IOException
 	{
-		final int s0 = readUnsignedShort( in );
-		final int s1 = readUnsignedShort( in );
-		final int s2 = readUnsignedShort( in );
-		final int s3 = readUnsignedShort( in );
-		return (long)s0 | ( (long)s1 << 16 ) | ( (long)s2 << 24 ) | ( (long)s3 << 32 );
+		ensureRemaining( in, 4 );
+		return in.getInt();
 	}
 
-	protected static float readFloat( final InputStream in )
+	protected static long readLong( final ByteBuffer in )
 		throws IOException
 	{
-		return Float.intBitsToFloat( readInt( in ) );
+		ensureRemaining( in, 8 );
+		return in.getLong();
 	}
 
-	protected static int readUnsignedByte( final InputStream in )
+	protected static float readFloat( final ByteBuffer in )
 		throws IOException
 	{
-		final int b = in.read();
-		if ( b < 0 )
-		{
-			throw new EOFException();
-		}
+		ensureRemaining( in, 4 );
+		return in.getFloat();
+	}
 
-		return b;
+	protected static int readUnsignedByte( final ByteBuffer in )
+		throws IOException
+	{
+		return readByte( in ) & 0xFF;
 	}
 
-	protected static int readUnsignedShort( final InputStream in )
+	protected static int readUnsignedShort( final ByteBuffer in )
 		throws IOException
 	{
-		final int b0 = readUnsignedByte( in );
-		final int b1 = readUnsignedByte( in );
-		return b0 | ( b1 << 8 );
+		return readShort( in ) & 0xFFFF;
+	}
+
+	/**
+	 * Throws an {@link EOFException} if the buffer doesn't contain the given
+	 * number of bytes.
+	 *
+	 * @param   in              Buffer to read from.
+	 * @param   numberOfBytes   Number of bytes to be read.
+	 *
+	 * @throws  EOFException if the buffer contains fewer bytes.
+	 */
+	private static void ensureRemaining( final ByteBuffer in, final int numberOfBytes )
+		throws EOFException
+	{
+		if ( in.remaining() < numberOfBytes )
+		{
+			throw new EOFException();
+		}
 	}
 }
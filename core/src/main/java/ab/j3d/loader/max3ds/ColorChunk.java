@@ -21,6 +21,7 @@
 package ab.j3d.loader.max3ds;
 
 import java.io.*;
+import java.nio.*;
 
 import ab.j3d.*;
 
@@ -40,7 +41,7 @@ class ColorChunk
 
 	Color4 _gamaColor;
 
-	ColorChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	ColorChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		super( in, chunkType, remainingChunkBytes );
@@ -48,7 +49,7 @@ class ColorChunk
 	}
 
 	@Override
-	protected void processChildChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChildChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 //		System.out.println( "ColorChunk.processChildChunk( " + chunkType + " )" );
@@ -21,6 +21,7 @@
 package ab.j3d.loader.max3ds;
 
 import java.io.*;
+import java.nio.*;
 
 /**
  * Type   : {@link #DISTANCE_QUEUE}
@@ -41,14 +42,14 @@ class DistanceQueueChunk
 
 	boolean _activeDistanceQueue;
 
-	DistanceQueueChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	DistanceQueueChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		super( in, chunkType, remainingChunkBytes );
 	}
 
 	@Override
-	protected void processChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		_nearPlane = readFloat( in );
@@ -60,7 +61,7 @@ class DistanceQueueChunk
 	}
 
 	@Override
-	protected void processChildChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChildChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		switch ( chunkType )
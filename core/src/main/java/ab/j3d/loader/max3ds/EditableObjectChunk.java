@@ -21,6 +21,7 @@
 package ab.j3d.loader.max3ds;
 
 import java.io.*;
+import java.nio.*;
 import java.util.*;
 
 import ab.j3d.*;
@@ -62,20 +63,74 @@ class EditableObjectChunk
 
 	short _shadowMapSize;
 
-	LayeredFogChunk _fogOptions;
+	/**
+	 * Undecoded {@link #LAYERED_FOG_OPT} chunk data.
+	 */
+	ByteBuffer _fogOptionsData;
 
-	FogChunk _fog;
+	/**
+	 * Undecoded {@link #FOG_FLAG} chunk data.
+	 */
+	ByteBuffer _fogData;
 
-	DistanceQueueChunk _distanceQueue;
+	/**
+	 * Undecoded {@link #DISTANCE_QUEUE} chunk data.
+	 */
+	ByteBuffer _distanceQueueData;
 
-	EditableObjectChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	EditableObjectChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		super( in, chunkType, remainingChunkBytes );
 	}
 
+	/**
+	 * Decodes layered fog options. These are rarely needed, so they are only
+	 * decoded on demand.
+	 *
+	 * @return  Layered fog options; {@code null} if not specified.
+	 *
+	 * @throws  IOException if a read error occurred.
+	 */
+	LayeredFogChunk getFogOptions()
+		throws IOException
+	{
+		final ByteBuffer data = _fogOptionsData;
+		return ( data != null ) ? new LayeredFogChunk( readSlice( data ), LAYERED_FOG_OPT, data.limit() ) : null;
+	}
+
+	/**
+	 * Decodes fog settings. These are rarely needed, so they are only decoded
+	 * on demand.
+	 *
+	 * @return  Fog settings; {@code null} if not specified.
+	 *
+	 * @throws  IOException if a read error occurred.
+	 */
+	FogChunk getFog()
+		throws IOException
+	{
+		final ByteBuffer data = _fogData;
+		return ( data != null ) ? new FogChunk( readSlice( data ), FOG_FLAG, data.limit() ) : null;
+	}
+
+	/**
+	 * Decodes distance queue settings. These are rarely needed, so they are
+	 * only decoded on demand.
+	 *
+	 * @return  Distance queue settings; {@code null} if not specified.
+	 *
+	 * @throws  IOException if a read error occurred.
+	 */
+	DistanceQueueChunk getDistanceQueue()
+		throws IOException
+	{
+		final ByteBuffer data = _distanceQueueData;
+		return ( data != null ) ? new DistanceQueueChunk( readSlice( data ), DISTANCE_QUEUE, data.limit() ) : null;
+	}
+
 	@Override
-	protected void processChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		_materials = new HashMap<String,MaterialChunk>();
@@ -87,7 +142,7 @@ class EditableObjectChunk
 	}
 
 	@Override
-	protected void processChildChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChildChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		final ColorChunk colorChunk;
@@ -129,7 +184,7 @@ class EditableObjectChunk
 				break;
 
 			case FOG_FLAG :
-				_fog = new FogChunk( in, chunkType, remainingChunkBytes );
+				_fogData = sliceBytes( in, remainingChunkBytes );
 				break;
 
 			case SHADOW_BIAS :
@@ -141,11 +196,11 @@ class EditableObjectChunk
 				break;
 
 			case LAYERED_FOG_OPT :
-				_fogOptions = new LayeredFogChunk( in, chunkType, remainingChunkBytes );
+				_fogOptionsData = sliceBytes( in, remainingChunkBytes );
 				break;
 
 			case DISTANCE_QUEUE :
-				_distanceQueue = new DistanceQueueChunk( in, chunkType, remainingChunkBytes );
+				_distanceQueueData = sliceBytes( in, remainingChunkBytes );
 				break;
 
 			case NAMED_OBJECT :
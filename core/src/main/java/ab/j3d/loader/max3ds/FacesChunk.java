@@ -21,6 +21,7 @@
 package ab.j3d.loader.max3ds;
 
 import java.io.*;
+import java.nio.*;
 import java.util.*;
 
 /**
@@ -42,24 +43,27 @@ class FacesChunk
 
 	List<int[]> _materialIndices;
 
-	FacesChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	FacesChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		super( in, chunkType, remainingChunkBytes );
 	}
 
 	@Override
-	protected void processChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		final int numberOfFaces = readUnsignedShort( in );
 
-		final int[][] faces = new int[ numberOfFaces ][];
+		/* Each face consists of 3 vertex indices and a flag. */
+		final short[] faceData = new short[ numberOfFaces * 4 ];
+		readShorts( in, faceData );
 
+		final int[][] faces = new int[ numberOfFaces ][];
 		for ( int i = 0; i < numberOfFaces; i++ )
 		{
-			faces[ i ] = new int[] { readUnsignedShort( in ), readUnsignedShort( in ), readUnsignedShort( in ) };
-			/*short flag =*/ readShort( in );
+			final int offset = i * 4;
+			faces[ i ] = new int[] { faceData[ offset ] & 0xFFFF, faceData[ offset + 1 ] & 0xFFFF, faceData[ offset + 2 ] & 0xFFFF };
 		}
 
 		_materialNames = new ArrayList<String>();
@@ -72,7 +76,7 @@ class FacesChunk
 
 
 	@Override
-	protected void processChildChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChildChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		switch ( chunkType )
@@ -90,33 +94,33 @@ class FacesChunk
 		}
 	}
 
-	private void readMeshMaterialGroup( final InputStream in )
+	private void readMeshMaterialGroup( final ByteBuffer in )
 		throws IOException
 	{
 		final String name = readCString( in );
 
 		final int numberOfFaces = readUnsignedShort( in );
 
+		final short[] faceIndices = new short[ numberOfFaces ];
+		readShorts( in, faceIndices );
+
 		final int[] appliedFacesIndexes = new int[ numberOfFaces ];
 		for ( int i = 0; i < numberOfFaces; i++ )
 		{
-			appliedFacesIndexes[ i ] = readUnsignedShort( in );
+			appliedFacesIndexes[ i ] = faceIndices[ i ] & 0xFFFF;
 		}
 
 		_materialNames.add( name );
 		_materialIndices.add( appliedFacesIndexes );
 	}
 
-	private void readSmoothing( final InputStream in )
+	private void readSmoothing( final ByteBuffer in )
 		throws IOException
 	{
 		final int numberOfFaces = _numberOfFaces;
 
 		final int[] smoothingGroups = new int[ numberOfFaces ];
-		for ( int i = 0; i < numberOfFaces; i++ )
-		{
-			smoothingGroups[ i ] = readInt( in );
-		}
+		readInts( in, smoothingGroups );
 
 		_smoothingGroups = smoothingGroups;
 	}
@@ -21,6 +21,7 @@
 package ab.j3d.loader.max3ds;
 
 import java.io.*;
+import java.nio.*;
 
 import ab.j3d.*;
 
@@ -45,14 +46,14 @@ class FogChunk
 
 	Color4 _background;
 
-	FogChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	FogChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		super( in, chunkType, remainingChunkBytes );
 	}
 
 	@Override
-	protected void processChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		_nearPlane = readFloat( in );
@@ -64,7 +65,7 @@ class FogChunk
 	}
 
 	@Override
-	protected void processChildChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChildChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		switch ( chunkType )
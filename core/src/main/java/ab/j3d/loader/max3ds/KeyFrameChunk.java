@@ -22,6 +22,7 @@ package ab.j3d.loader.max3ds;
 
 import java.awt.*;
 import java.io.*;
+import java.nio.*;
 import java.util.*;
 
 import ab.j3d.*;
@@ -58,14 +59,14 @@ class KeyFrameChunk
 
 	Vector3f _boundingBoxMax;
 
-	KeyFrameChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	KeyFrameChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		super( in, chunkType, remainingChunkBytes );
 	}
 
 	@Override
-	protected void processChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		_track = new ArrayList<Frame>();
@@ -73,7 +74,7 @@ class KeyFrameChunk
 	}
 
 	@Override
-	protected void processChildChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChildChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		switch ( chunkType )
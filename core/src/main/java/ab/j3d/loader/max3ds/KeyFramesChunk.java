@@ -21,6 +21,7 @@
 package ab.j3d.loader.max3ds;
 
 import java.io.*;
+import java.nio.*;
 import java.util.*;
 
 /**
@@ -32,11 +33,11 @@ import java.util.*;
 class KeyFramesChunk
 	extends Chunk
 {
-	int _animationLen = 0;
+	int _animationLen;
 
-	int _begin = 0;
+	int _begin;
 
-	int _end = 0;
+	int _end;
 
 	Map<String,KeyFrameChunk> _objectKeyframes;
 
@@ -44,14 +45,14 @@ class KeyFramesChunk
 
 	List<KeyFrameChunk> _lightKeyframes;
 
-	KeyFramesChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	KeyFramesChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		super( in, chunkType, remainingChunkBytes );
 	}
 
 	@Override
-	protected void processChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		_objectKeyframes = new HashMap<String,KeyFrameChunk>();
@@ -62,7 +63,7 @@ class KeyFramesChunk
 	}
 
 	@Override
-	protected void processChildChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChildChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		switch ( chunkType )
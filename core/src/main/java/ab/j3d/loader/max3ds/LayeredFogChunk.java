@@ -22,6 +22,7 @@ package ab.j3d.loader.max3ds;
 
 import java.awt.*;
 import java.io.*;
+import java.nio.*;
 
 /**
  * Type   : {@link #LAYERED_FOG_OPT}
@@ -42,14 +43,14 @@ class LayeredFogChunk
 
 	Color _fogColor;
 
-	LayeredFogChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	LayeredFogChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		super( in, chunkType, remainingChunkBytes );
 	}
 
 	@Override
-	protected void processChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		_nearZ = readFloat( in );
@@ -61,7 +62,7 @@ class LayeredFogChunk
 	}
 
 	@Override
-	protected void processChildChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChildChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		switch ( chunkType )
@@ -22,6 +22,7 @@ package ab.j3d.loader.max3ds;
 
 import java.awt.*;
 import java.io.*;
+import java.nio.*;
 
 import ab.j3d.*;
 
@@ -48,14 +49,14 @@ class LightChunk
 
 	boolean _attenuateOn;
 
-	LightChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	LightChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		super( in, chunkType, remainingChunkBytes );
 	}
 
 	@Override
-	protected void processChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		_location = new Vector3f( readFloat( in ), readFloat( in ), readFloat( in ) );
@@ -64,7 +65,7 @@ class LightChunk
 	}
 
 	@Override
-	protected void processChildChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChildChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		switch ( chunkType )
@@ -21,6 +21,7 @@
 package ab.j3d.loader.max3ds;
 
 import java.io.*;
+import java.nio.*;
 
 import ab.j3d.*;
 import ab.j3d.appearance.*;
@@ -46,14 +47,14 @@ class MaterialChunk
 
 	TextureMapChunk _bumpMap;
 
-	MaterialChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	MaterialChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		super( in, chunkType, remainingChunkBytes );
 	}
 
 	@Override
-	protected void processChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		_appearance = new BasicAppearance();
@@ -62,7 +63,7 @@ class MaterialChunk
 	}
 
 	@Override
-	protected void processChildChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChildChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		final BasicAppearance appearance = _appearance;
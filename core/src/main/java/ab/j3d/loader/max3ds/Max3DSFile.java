@@ -21,6 +21,8 @@
 package ab.j3d.loader.max3ds;
 
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
 import java.util.*;
 
 import ab.j3d.*;
@@ -33,6 +35,11 @@ import ab.j3d.model.*;
  * A <code>3DS</code> file consists of chunks, each starting with an ID and the
  * chunk length. This allows easy skipping of unrecognized chunks.
  * <p>
+ * The file is read from a {@link ByteBuffer}, which may be a memory-mapped
+ * file (see {@link #load(File)}). Chunks that are not needed to build meshes,
+ * such as keyframes and fog settings, are skipped without being decoded.
+ * Meshes are converted to {@link Object3D}s in parallel.
+ * <p>
  * Type   : {@link #MAIN_3DS}
  * Parent : none
  *
@@ -43,7 +50,15 @@ public class Max3DSFile
 {
 	public EditableObjectChunk _editableObject;
 
-	public KeyFramesChunk _keyframes;
+	/**
+	 * Undecoded {@link #KEYFRAMES} chunk data.
+	 */
+	private ByteBuffer _keyframesData;
+
+	/**
+	 * Keyframes, once decoded.
+	 */
+	private KeyFramesChunk _keyframes;
 
 	/**
 	 * Read 3D Studio file.
@@ -55,7 +70,91 @@ public class Max3DSFile
 	public Max3DSFile( final InputStream in )
 		throws IOException
 	{
-		super( in, readUnsignedShort( in ), readInt( in ) - 6 );
+		this( readFully( in ) );
+	}
+
+	/**
+	 * Read 3D Studio file. The buffer is read from its current position;
+	 * its byte order is set to little-endian.
+	 *
+	 * @param   in  Buffer to read file from.
+	 *
+	 * @throws  IOException if a read error occurred.
+	 */
+	public Max3DSFile( final ByteBuffer in )
+		throws IOException
+	{
+		super( in.order( ByteOrder.LITTLE_ENDIAN ), readUnsignedShort( in ), readInt( in ) - 6 );
+	}
+
+	/**
+	 * Read 3D Studio file using a memory-mapped buffer.
+	 *
+	 * @param   file    File to read.
+	 *
+	 * @return  3D Studio file.
+	 *
+	 * @throws  IOException if a read error occurred.
+	 */
+	public static Max3DSFile load( final File file )
+		throws IOException
+	{
+		final RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" );
+		try
+		{
+			final FileChannel channel = randomAccessFile.getChannel();
+			return new Max3DSFile( channel.map( FileChannel.MapMode.READ_ONLY, 0L, channel.size() ) );
+		}
+		finally
+		{
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Reads all remaining bytes from the given stream.
+	 *
+	 * @param   in  Stream to read from.
+	 *
+	 * @return  Buffer containing the bytes that were read.
+	 *
+	 * @throws  IOException if a read error occurred.
+	 */
+	private static ByteBuffer readFully( final InputStream in )
+		throws IOException
+	{
+		final ByteArrayOutputStream out = new ByteArrayOutputStream( Math.max( 8192, in.available() ) );
+		final byte[] buffer = new byte[ 65536 ];
+		for ( int read = in.read( buffer ); read >= 0; read = in.read( buffer ) )
+		{
+			out.write( buffer, 0, read );
+		}
+		return ByteBuffer.wrap( out.toByteArray() );
+	}
+
+	/**
+	 * Returns keyframes. These are rarely needed, so they are only decoded on
+	 * the first call.
+	 *
+	 * @return  Keyframes; {@code null} if the file contains no keyframes.
+	 *
+	 * @throws  IOException if a read error occurred.
+	 */
+	public KeyFramesChunk getKeyframes()
+		throws IOException
+	{
+		KeyFramesChunk result = _keyframes;
+		if ( result == null )
+		{
+			final ByteBuffer data = _keyframesData;
+			if ( data != null )
+			{
+				result = new KeyFramesChunk( readSlice( data ), KEYFRAMES, data.limit() );
+				_keyframes = result;
+				_keyframesData = null;
+			}
+		}
+		return result;
 	}
 
 	/**
@@ -69,18 +168,13 @@ public class Max3DSFile
 		final Map<String,TriangleMeshChunk> meshes = editableObject._meshes;
 		final Map<String,MaterialChunk> materials = editableObject._materials;
 
-		for ( final Map.Entry<String,TriangleMeshChunk> meshChunkEntry : meshes.entrySet() )
-		{
-			final String name = meshChunkEntry.getKey();
-			final TriangleMeshChunk triangleMeshChunk = meshChunkEntry.getValue();
+		final List<String> names = new ArrayList<String>( meshes.keySet() );
+		final List<Object3D> objects = buildMeshes( materials, new ArrayList<TriangleMeshChunk>( meshes.values() ) );
 
+		for ( int i = 0; i < names.size(); i++ )
+		{
 			final Matrix3D transform = Matrix3D.IDENTITY; // triangleMeshChunk._transform;
-
-			final Object3DBuilder builder = new Object3DBuilder();
-			buildMesh( builder, materials, triangleMeshChunk );
-			final Object3D object3d = builder.getObject3D();
-
-			scene.addContentNode( name, transform, object3d );
+			scene.addContentNode( names.get( i ), transform, objects.get( i ) );
 		}
 	}
 
@@ -107,13 +201,13 @@ public class Max3DSFile
 		final Map<String,TriangleMeshChunk> meshes = editableObject._meshes;
 		final Map<String,MaterialChunk> materials = editableObject._materials;
 
-		for ( final TriangleMeshChunk triangleMeshChunk : meshes.values() )
-		{
-			final Matrix3D transform = triangleMeshChunk._transform;
+		final List<TriangleMeshChunk> meshChunks = new ArrayList<TriangleMeshChunk>( meshes.values() );
+		final List<Object3D> objects = buildMeshes( materials, meshChunks );
 
-			final Object3DBuilder builder = new Object3DBuilder();
-			buildMesh( builder, materials, triangleMeshChunk );
-			final Object3D object3d = builder.getObject3D();
+		for ( int i = 0; i < meshChunks.size(); i++ )
+		{
+			final Matrix3D transform = meshChunks.get( i )._transform;
+			final Object3D object3d = objects.get( i );
 
 			if ( Matrix3D.IDENTITY.equals( transform ) )
 			{
@@ -128,6 +222,37 @@ public class Max3DSFile
 		}
 	}
 
+	/**
+	 * Converts meshes to 3D objects. Meshes are converted in parallel if
+	 * there is more than one.
+	 *
+	 * @param   materials   Materials by name.
+	 * @param   meshes      Meshes to convert.
+	 *
+	 * @return  3D objects, in the same order as the meshes.
+	 */
+	private static List<Object3D> buildMeshes( final Map<String,MaterialChunk> materials, final List<TriangleMeshChunk> meshes )
+	{
+		final Object3D[] result = new Object3D[ meshes.size() ];
+
+		ParallelTools.processRanges( meshes.size(), meshes.size(), new ParallelTools.RangeTask<Object>()
+		{
+			@Override
+			public Object process( final int start, final int end )
+			{
+				for ( int i = start; i < end; i++ )
+				{
+					final Object3DBuilder builder = new Object3DBuilder();
+					buildMesh( builder, materials, meshes.get( i ) );
+					result[ i ] = builder.getObject3D();
+				}
+				return null;
+			}
+		} );
+
+		return Arrays.asList( result );
+	}
+
 	public static void buildMesh( final Object3DBuilder builder, final Map<String,MaterialChunk> materials, final TriangleMeshChunk mesh )
 	{
 		final List<Vector3D> vertices = mesh._vertices;
@@ -136,7 +261,7 @@ public class Max3DSFile
 
 		final int     numberOfFaces   = facesChunk._numberOfFaces;
 		final int[][] faces           = facesChunk._faces;
-		final int[]   smoothingGroups = facesChunk._smoothingGroups;
+		final int[]   smoothingGroups = ( facesChunk._smoothingGroups != null ) ? facesChunk._smoothingGroups : new int[ numberOfFaces ];
 
 		builder.setVertexCoordinates( vertices );
 
@@ -249,7 +374,7 @@ public class Max3DSFile
 	}
 
 	@Override
-	protected void processChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		if ( chunkType != MAIN_3DS )
@@ -261,7 +386,7 @@ public class Max3DSFile
 	}
 
 	@Override
-	protected void processChildChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChildChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		switch ( chunkType )
@@ -275,7 +400,7 @@ public class Max3DSFile
 				break;
 
 			case KEYFRAMES :
-				_keyframes = new KeyFramesChunk( in, chunkType, remainingChunkBytes );
+				_keyframesData = sliceBytes( in, remainingChunkBytes );
 				break;
 
 			default : // Ignore unknown chunks
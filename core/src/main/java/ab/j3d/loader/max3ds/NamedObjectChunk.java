@@ -21,6 +21,7 @@
 package ab.j3d.loader.max3ds;
 
 import java.io.*;
+import java.nio.*;
 
 /**
  * Type   : {@link #NAMED_OBJECT}
@@ -35,14 +36,14 @@ class NamedObjectChunk
 
 	Chunk _content;
 
-	NamedObjectChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	NamedObjectChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		super( in, chunkType, remainingChunkBytes );
 	}
 
 	@Override
-	protected void processChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		name = readCString( in );
@@ -50,7 +51,7 @@ class NamedObjectChunk
 	}
 
 	@Override
-	protected void processChildChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChildChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		Chunk content = _content;
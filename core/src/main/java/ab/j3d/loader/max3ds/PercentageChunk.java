@@ -21,6 +21,7 @@
 package ab.j3d.loader.max3ds;
 
 import java.io.*;
+import java.nio.*;
 
 /**
  * Type   : {@link #PRCT_INT_FRMT}
@@ -34,14 +35,14 @@ class PercentageChunk
 {
 	float _percentage;
 
-	PercentageChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	PercentageChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		super( in, chunkType, remainingChunkBytes );
 	}
 
 	@Override
-	protected void processChildChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChildChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		switch ( chunkType )
@@ -21,6 +21,7 @@
 package ab.j3d.loader.max3ds;
 
 import java.io.*;
+import java.nio.*;
 
 import ab.j3d.*;
 
@@ -55,14 +56,14 @@ class SpotLightChunk
 
 	boolean _spotOvershoot;
 
-	SpotLightChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	SpotLightChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		super( in, chunkType, remainingChunkBytes );
 	}
 
 	@Override
-	protected void processChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		_target = new Vector3f( readFloat( in ), readFloat( in ), readFloat( in ) );
@@ -73,7 +74,7 @@ class SpotLightChunk
 	}
 
 	@Override
-	protected void processChildChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChildChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		switch ( chunkType )
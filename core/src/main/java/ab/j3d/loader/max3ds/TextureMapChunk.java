@@ -21,6 +21,7 @@
 package ab.j3d.loader.max3ds;
 
 import java.io.*;
+import java.nio.*;
 
 /**
  * Type   : {@link #TEXMAP_ONE},
@@ -46,14 +47,14 @@ class TextureMapChunk
 
 	float _uScale;
 
-	TextureMapChunk( final InputStream in, final int chunkType, final int chunkSize )
+	TextureMapChunk( final ByteBuffer in, final int chunkType, final int chunkSize )
 		throws IOException
 	{
 		super( in, chunkType, chunkSize );
 	}
 
 	@Override
-	protected void processChildChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChildChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		switch ( chunkType )
@@ -21,6 +21,7 @@
 package ab.j3d.loader.max3ds;
 
 import java.io.*;
+import java.nio.*;
 import java.util.*;
 
 import ab.j3d.*;
@@ -44,14 +45,14 @@ class TriangleMeshChunk
 
 	Matrix3D _transform;
 
-	TriangleMeshChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	TriangleMeshChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		super( in, chunkType, remainingChunkBytes );
 	}
 
 	@Override
-	protected void processChildChunk( final InputStream in, final int chunkType, final int remainingChunkBytes )
+	protected void processChildChunk( final ByteBuffer in, final int chunkType, final int remainingChunkBytes )
 		throws IOException
 	{
 		switch ( chunkType )
@@ -89,7 +90,7 @@ class TriangleMeshChunk
 		}
 	}
 
-	private static void readMeshTextureInfo( final InputStream in )
+	private static void readMeshTextureInfo( final ByteBuffer in )
 		throws IOException
 	{
 		/*final short type    =*/ readShort( in );
@@ -114,7 +115,7 @@ class TriangleMeshChunk
 		/*final float cylIconH  =*/ readFloat( in );
 	}
 
-	private static void readOptions( final InputStream in )
+	private static void readOptions( final ByteBuffer in )
 		throws IOException
 	{
 		final int numberOfOptions = readUnsignedShort( in );
@@ -124,7 +125,7 @@ class TriangleMeshChunk
 		}
 	}
 
-	private void readCoordinateSystem( final InputStream in )
+	private void readCoordinateSystem( final ByteBuffer in )
 		throws IOException
 	{
 		final double rotationXX = (double)readFloat( in );
@@ -145,28 +146,34 @@ class TriangleMeshChunk
 		                                    rotationZX, rotationZY, rotationZZ, originZ );
 	}
 
-	private void readVertexCoordinates( final InputStream in )
+	private void readVertexCoordinates( final ByteBuffer in )
 		throws IOException
 	{
 		final int numberOfVertices = readUnsignedShort( in );
 
+		final float[] coordinates = new float[ numberOfVertices * 3 ];
+		readFloats( in, coordinates );
+
 		final List<Vector3D> vertices = new ArrayList<Vector3D>( numberOfVertices );
-		for ( int i = 0; i < numberOfVertices; i++ )
+		for ( int i = 0; i < coordinates.length; i += 3 )
 		{
-			vertices.add( new Vector3D( (double)readFloat( in ), (double)readFloat( in ), (double)readFloat( in ) ) );
+			vertices.add( new Vector3D( (double)coordinates[ i ], (double)coordinates[ i + 1 ], (double)coordinates[ i + 2 ] ) );
 		}
 
 		_vertices = vertices;
 	}
 
-	private void readTextureCoordinates( final InputStream in )
+	private void readTextureCoordinates( final ByteBuffer in )
 		throws IOException
 	{
 		final Vector2f[] textureCoordinates = new Vector2f[ readUnsignedShort( in ) ];
 
+		final float[] coordinates = new float[ textureCoordinates.length * 2 ];
+		readFloats( in, coordinates );
+
 		for ( int i = 0; i < textureCoordinates.length; i++ )
 		{
-			textureCoordinates[ i ] = new Vector2f( readFloat( in ), readFloat( in ) );
+			textureCoordinates[ i ] = new Vector2f( coordinates[ i * 2 ], coordinates[ i * 2 + 1 ] );
 		}
 
 		_textureCoordinates = textureCoordinates;
@@ -0,0 +1,41 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.model;
+
+import org.jetbrains.annotations.*;
+
+/**
+ * Visitor for {@link ContentNode}s. This visitor is typically invoked by a
+ * {@link SceneSpatialIndex} query.
+ *
+ * @author Peter S. Heijnen
+ */
+public interface ContentNodeVisitor
+{
+	/**
+	 * Visits the given content node. The return value indicates whether the
+	 * query that invoked the visitor should be continued or aborted.
+	 *
+	 * @param node Content node that is visited.
+	 *
+	 * @return <code>true</code> if the query should continue;
+	 *         <code>false</code> if the query should be aborted.
+	 */
+	boolean visitContentNode( @NotNull ContentNode node );
+}
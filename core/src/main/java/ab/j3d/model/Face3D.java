@@ -353,6 +353,17 @@ implements Plane3D
 		return tessellation.getOutlines();
 	}
 
+	/**
+	 * Returns whether this face has a tessellation. If not, a tessellation is
+	 * created on demand by {@link #getTessellation()}.
+	 *
+	 * @return {@code true} if this face has a tessellation.
+	 */
+	boolean isTessellated()
+	{
+		return ( _tessellation != null );
+	}
+
 	/**
 	 * This method returns a tessellated version of this face.
 	 *
@@ -0,0 +1,626 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.model;
+
+import java.util.*;
+
+import ab.j3d.*;
+import ab.j3d.geom.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Calculates vertex normals and removes edges based on the angles between
+ * adjacent faces. This implements {@link Object3D#smooth}.
+ *
+ * <p>Adjacency between vertex coordinates and faces is stored in compressed
+ * sparse row form: the faces using vertex coordinate {@code i} are
+ * {@code _adjacentFaces[ _adjacencyOffsets[ i ] ]} up to (but not including)
+ * {@code _adjacentFaces[ _adjacencyOffsets[ i + 1 ] ]}. Face normals are
+ * stored in a {@code double[]}. Large meshes are processed in parallel
+ * chunks of faces or vertex coordinates.
+ *
+ * @author Peter S. Heijnen
+ */
+class MeshSmoother
+{
+	/**
+	 * Minimum number of faces for which smoothing is performed in parallel.
+	 */
+	private static final int PARALLEL_THRESHOLD = 16384;
+
+	/**
+	 * Faces to be smoothed.
+	 */
+	private final Face3D[] _faces;
+
+	/**
+	 * Offset in {@link #_adjacentFaces} for each vertex coordinate, followed
+	 * by the total number of entries.
+	 */
+	private final int[] _adjacencyOffsets;
+
+	/**
+	 * Indices of faces in {@link #_faces} for each vertex coordinate. A face
+	 * that uses a vertex coordinate multiple times is listed multiple times.
+	 */
+	private final int[] _adjacentFaces;
+
+	/**
+	 * Number of chunks to divide work into; 1 to process all elements on the
+	 * calling thread.
+	 */
+	private final int _chunkCount;
+
+	/**
+	 * Calculates vertex normals and removes edges based on the angles between
+	 * adjacent faces.
+	 *
+	 * @param faceGroups         Face groups to be smoothed.
+	 * @param maximumSmoothAngle Maximum smoothing angle, in degrees.
+	 * @param maximumEdgeAngle   Maximum angle for which edges are removed.
+	 * @param vertexCount        Number of vertex coordinates stored in the
+	 *                           object containing the faces.
+	 */
+	static void smooth( @NotNull final Iterable<FaceGroup> faceGroups, final double maximumSmoothAngle, final double maximumEdgeAngle, final int vertexCount )
+	{
+		final boolean smoothFaces = maximumSmoothAngle > 0.0;
+		final boolean smoothEdges = maximumEdgeAngle > 0.0;
+
+		if ( smoothEdges || smoothFaces )
+		{
+			final List<Face3D> faces = new ArrayList<Face3D>();
+			for ( final FaceGroup faceGroup : faceGroups )
+			{
+				faceGroup.setSmooth( smoothFaces );
+				faces.addAll( faceGroup.getFaces() );
+			}
+
+			final int chunkCount = ( faces.size() < PARALLEL_THRESHOLD ) ? 1 : ParallelTools.getThreadCount() * 4;
+			final MeshSmoother smoother = new MeshSmoother( faces.toArray( new Face3D[ faces.size() ] ), vertexCount, chunkCount );
+
+			if ( smoothEdges )
+			{
+				smoother.smoothEdges( maximumEdgeAngle );
+			}
+
+			if ( smoothFaces )
+			{
+				smoother.smoothFaces( maximumSmoothAngle );
+			}
+		}
+	}
+
+	/**
+	 * Constructs a new instance and builds the adjacency between vertex
+	 * coordinates and faces.
+	 *
+	 * @param faces       Faces to be smoothed.
+	 * @param vertexCount Number of vertex coordinates.
+	 * @param chunkCount  Number of chunks to divide work into.
+	 */
+	private MeshSmoother( @NotNull final Face3D[] faces, final int vertexCount, final int chunkCount )
+	{
+		_faces = faces;
+		_chunkCount = chunkCount;
+
+		final int[] offsets = new int[ vertexCount + 1 ];
+		for ( final Face3D face : faces )
+		{
+			for ( int i = 0; i < face.getVertexCount(); i++ )
+			{
+				offsets[ face.getVertex( i ).vertexCoordinateIndex + 1 ]++;
+			}
+		}
+
+		for ( int i = 0; i < vertexCount; i++ )
+		{
+			offsets[ i + 1 ] += offsets[ i ];
+		}
+
+		final int[] adjacentFaces = new int[ offsets[ vertexCount ] ];
+		final int[] positions = Arrays.copyOf( offsets, vertexCount );
+		for ( int faceIndex = 0; faceIndex < faces.length; faceIndex++ )
+		{
+			final Face3D face = faces[ faceIndex ];
+			for ( int i = 0; i < face.getVertexCount(); i++ )
+			{
+				adjacentFaces[ positions[ face.getVertex( i ).vertexCoordinateIndex ]++ ] = faceIndex;
+			}
+		}
+
+		_adjacencyOffsets = offsets;
+		_adjacentFaces = adjacentFaces;
+	}
+
+	/**
+	 * Remove 'smooth' edges based on the angles between adjacent faces.
+	 *
+	 * @param maximumEdgeAngle Maximum angle for which edges are removed.
+	 */
+	private void smoothEdges( final double maximumEdgeAngle )
+	{
+		final Face3D[] faces = _faces;
+		final double minCosEdges = Math.cos( Math.toRadians( maximumEdgeAngle ) );
+
+		/*
+		 * The normal of a face without tessellation depends on whether its
+		 * tessellation was created before the normal is calculated. Faces
+		 * are processed in order, creating their tessellation, so a face's
+		 * normal is calculated before its tessellation is created only if it
+		 * is adjacent to an earlier face. Find those faces first, so normals
+		 * can be calculated in advance.
+		 */
+		final boolean[] adjacentToEarlierFace = new boolean[ faces.length ];
+		forEachChunk( faces.length, new ChunkTask()
+		{
+			@Override
+			public void run( final int start, final int end )
+			{
+				for ( int faceIndex = start; faceIndex < end; faceIndex++ )
+				{
+					final Face3D face = faces[ faceIndex ];
+					for ( final int[] outline : face.isTessellated() ? face.getOutlines() : Collections.singletonList( getDefaultOutline( face ) ) )
+					{
+						for ( int i = 1; i < outline.length; i++ )
+						{
+							final int symmetric = findSymmetricFace( faceIndex, face.getVertex( outline[ i - 1 ] ).vertexCoordinateIndex, face.getVertex( outline[ i ] ).vertexCoordinateIndex );
+							if ( symmetric > faceIndex )
+							{
+								adjacentToEarlierFace[ symmetric ] = true;
+							}
+						}
+					}
+				}
+			}
+		} );
+
+		final double[] normals = new double[ faces.length * 3 ];
+		forEachChunk( faces.length, new ChunkTask()
+		{
+			@Override
+			public void run( final int start, final int end )
+			{
+				for ( int i = start; i < end; i++ )
+				{
+					final Face3D face = faces[ i ];
+					if ( !adjacentToEarlierFace[ i ] )
+					{
+						face.getTessellation();
+					}
+
+					final Vector3D normal = face.getNormal();
+					normals[ i * 3 ] = normal.x;
+					normals[ i * 3 + 1 ] = normal.y;
+					normals[ i * 3 + 2 ] = normal.z;
+				}
+			}
+		} );
+
+		forEachChunk( faces.length, new ChunkTask()
+		{
+			@Override
+			public void run( final int start, final int end )
+			{
+				final List<int[]> outlines = new ArrayList<int[]>();
+				for ( int faceIndex = start; faceIndex < end; faceIndex++ )
+				{
+					smoothEdges( faceIndex, normals, minCosEdges, outlines );
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Returns the outline that {@link Face3D#getTessellation()} creates for a
+	 * face without tessellation.
+	 *
+	 * @param face Face without tessellation.
+	 *
+	 * @return Outline of the face.
+	 */
+	private static int[] getDefaultOutline( final Face3D face )
+	{
+		final int vertexCount = face.getVertexCount();
+		final int[] result = new int[ vertexCount + 1 ];
+		for ( int i = 0; i < vertexCount; i++ )
+		{
+			result[ i ] = i;
+		}
+		result[ vertexCount ] = 0;
+		return result;
+	}
+
+	/**
+	 * Finds the face on the opposite side of an edge.
+	 *
+	 * @param faceIndex   Index of the face on this side of the edge.
+	 * @param startVertex Vertex coordinate index at the start of the edge.
+	 * @param endVertex   Vertex coordinate index at the end of the edge.
+	 *
+	 * @return Index of the face on the opposite side of the edge;
+	 * {@code -1} if there is no such face.
+	 */
+	private int findSymmetricFace( final int faceIndex, final int startVertex, final int endVertex )
+	{
+		final int[] offsets = _adjacencyOffsets;
+		final int[] adjacentFaces = _adjacentFaces;
+
+		for ( int j = offsets[ startVertex ]; j < offsets[ startVertex + 1 ]; j++ )
+		{
+			final int candidate = adjacentFaces[ j ];
+			if ( candidate != faceIndex )
+			{
+				for ( int k = offsets[ endVertex ]; k < offsets[ endVertex + 1 ]; k++ )
+				{
+					if ( adjacentFaces[ k ] == candidate )
+					{
+						return candidate;
+					}
+				}
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Remove 'smooth' edges from the outlines of a single face.
+	 *
+	 * @param faceIndex   Index of the face.
+	 * @param normals     Face normals.
+	 * @param minCosEdges Cosine of the maximum edge angle.
+	 * @param outlines    Used to collect outlines.
+	 */
+	private void smoothEdges( final int faceIndex, final double[] normals, final double minCosEdges, final List<int[]> outlines )
+	{
+		final Face3D face = _faces[ faceIndex ];
+
+		boolean outlinesModified = false;
+		outlines.clear();
+
+		for ( final int[] outline : face.getOutlines() )
+		{
+			int outlineStart = 0;
+			int startVertex = face.getVertex( outline[ 0 ] ).vertexCoordinateIndex;
+
+			for ( int i = 1; i < outline.length; i++ )
+			{
+				final int endVertex = face.getVertex( outline[ i ] ).vertexCoordinateIndex;
+
+				/*
+				 * Find face on the opposite side of this edge.
+				 */
+				final int symmetric = findSymmetricFace( faceIndex, startVertex, endVertex );
+
+				/*
+				 * If a second face is found, check if the edge should
+				 * be removed.
+				 */
+				if ( symmetric >= 0 )
+				{
+					final double cos = Vector3D.dot( normals[ faceIndex * 3 ], normals[ faceIndex * 3 + 1 ], normals[ faceIndex * 3 + 2 ], normals[ symmetric * 3 ], normals[ symmetric * 3 + 1 ], normals[ symmetric * 3 + 2 ] );
+					if ( cos >= minCosEdges )
+					{
+						if ( i - outlineStart > 1 )
+						{
+							final int[] fragment = new int[ i - outlineStart ];
+							System.arraycopy( outline, outlineStart, fragment, 0, i - outlineStart );
+							outlines.add( fragment );
+						}
+
+						outlineStart = i;
+					}
+				}
+
+				startVertex = endVertex;
+			}
+
+			if ( outlineStart == 0 )
+			{
+				outlines.add( outline );
+			}
+			else
+			{
+				outlinesModified = true;
+				if ( outline.length - outlineStart > 1 )
+				{
+					final int[] fragment = new int[ outline.length - outlineStart ];
+					System.arraycopy( outline, outlineStart, fragment, 0, outline.length - outlineStart );
+					outlines.add( fragment );
+				}
+			}
+		}
+
+		if ( outlinesModified )
+		{
+			final Tessellation tessellation = face.getTessellation();
+			switch ( outlines.size() )
+			{
+				case 0:
+					face.setTessellation( new Tessellation( Collections.<int[]>emptyList(), tessellation.getPrimitives() ) );
+					break;
+
+				case 1:
+					face.setTessellation( new Tessellation( Collections.singletonList( outlines.get( 0 ) ), tessellation.getPrimitives() ) );
+					break;
+
+				default:
+					face.setTessellation( new Tessellation( new ArrayList<int[]>( outlines ), tessellation.getPrimitives() ) );
+			}
+		}
+	}
+
+	/**
+	 * Apply smoothing to faces. This determine smoothing groups and applies
+	 * smoothing to them.
+	 *
+	 * @param maximumSmoothAngle Maximum smoothing angle, in degrees.
+	 */
+	private void smoothFaces( final double maximumSmoothAngle )
+	{
+		final double minCosSmooth = Math.cos( Math.toRadians( maximumSmoothAngle ) );
+		final double[] normals = getFaceVectors( false );
+		final double[] crosses = getFaceVectors( true );
+		final boolean[] mayHaveEqualFace = findPossiblyEqualFaces();
+
+		final ChunkTask task = new ChunkTask()
+		{
+			@Override
+			public void run( final int start, final int end )
+			{
+				final int[] visited = new int[ _faces.length ];
+				Arrays.fill( visited, -1 );
+				int[] group = new int[ 16 ];
+
+				for ( int i = start; i < end; i++ )
+				{
+					final int degree = _adjacencyOffsets[ i + 1 ] - _adjacencyOffsets[ i ];
+					if ( group.length < degree )
+					{
+						group = new int[ degree ];
+					}
+					smoothFaces( i, normals, crosses, minCosSmooth, visited, group, mayHaveEqualFace );
+				}
+			}
+		};
+
+		/*
+		 * Whether faces are equal depends on the vertex normals set so far,
+		 * so vertex coordinates must be processed in order if there may be
+		 * equal faces.
+		 */
+		if ( mayHaveEqualFace != null )
+		{
+			task.run( 0, _adjacencyOffsets.length - 1 );
+		}
+		else
+		{
+			forEachChunk( _adjacencyOffsets.length - 1, task );
+		}
+	}
+
+	/**
+	 * Finds faces that may be {@link Face3D#equals equal} to another face,
+	 * i.e. faces with the same {@link Face3D#hashCode hash code} as another
+	 * face.
+	 *
+	 * @return For each face, whether it may be equal to another face;
+	 * {@code null} if no faces may be equal.
+	 */
+	@Nullable
+	private boolean[] findPossiblyEqualFaces()
+	{
+		final Face3D[] faces = _faces;
+		boolean[] result = null;
+
+		final Map<Integer, Integer> firstFaceByHashCode = new HashMap<Integer, Integer>( faces.length * 2 );
+		for ( int i = 0; i < faces.length; i++ )
+		{
+			final Integer first = firstFaceByHashCode.put( faces[ i ].hashCode(), i );
+			if ( first != null )
+			{
+				if ( result == null )
+				{
+					result = new boolean[ faces.length ];
+				}
+				result[ first ] = true;
+				result[ i ] = true;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns whether a face was visited for a vertex coordinate. Like
+	 * {@link Collection#contains}, this also considers a face visited if an
+	 * {@link Face3D#equals equal} face was visited.
+	 *
+	 * @param face             Index of the face.
+	 * @param vertexIndex      Index of the vertex coordinate.
+	 * @param visited          Vertex coordinate index for which each face was
+	 *                         last visited.
+	 * @param mayHaveEqualFace Whether each face may be equal to another face;
+	 *                         {@code null} if no faces may be equal.
+	 *
+	 * @return {@code true} if the face was visited.
+	 */
+	private boolean isVisited( final int face, final int vertexIndex, final int[] visited, @Nullable final boolean[] mayHaveEqualFace )
+	{
+		boolean result = ( visited[ face ] == vertexIndex );
+		if ( !result && ( mayHaveEqualFace != null ) && mayHaveEqualFace[ face ] )
+		{
+			final Face3D[] faces = _faces;
+			final int[] adjacentFaces = _adjacentFaces;
+			for ( int j = _adjacencyOffsets[ vertexIndex ]; !result && ( j < _adjacencyOffsets[ vertexIndex + 1 ] ); j++ )
+			{
+				final int other = adjacentFaces[ j ];
+				result = ( visited[ other ] == vertexIndex ) && faces[ other ].equals( faces[ face ] );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Determines smoothing groups for a vertex coordinate and sets the
+	 * normals of the corresponding vertices.
+	 *
+	 * @param vertexIndex      Index of the vertex coordinate.
+	 * @param normals          Face normals.
+	 * @param crosses          Face cross products.
+	 * @param minCosSmooth     Cosine of the maximum smoothing angle.
+	 * @param visited          Vertex coordinate index for which each face was
+	 *                         last visited.
+	 * @param group            Used to collect faces in a smoothing group.
+	 * @param mayHaveEqualFace Whether each face may be equal to another
+	 *                         face; {@code null} if no faces may be equal.
+	 */
+	private void smoothFaces( final int vertexIndex, final double[] normals, final double[] crosses, final double minCosSmooth, final int[] visited, final int[] group, @Nullable final boolean[] mayHaveEqualFace )
+	{
+		final Face3D[] faces = _faces;
+		final int[] adjacentFaces = _adjacentFaces;
+		final int start = _adjacencyOffsets[ vertexIndex ];
+		final int end = _adjacencyOffsets[ vertexIndex + 1 ];
+
+		for ( int j = start; j < end; j++ )
+		{
+			final int face1 = adjacentFaces[ j ];
+			if ( !isVisited( face1, vertexIndex, visited, mayHaveEqualFace ) )
+			{
+				/*
+				 * Find other faces in the same smoothing group.
+				 */
+				int groupSize = 0;
+				group[ groupSize++ ] = face1;
+				visited[ face1 ] = vertexIndex;
+
+				for ( int k = start; k < end; k++ )
+				{
+					final int face2 = adjacentFaces[ k ];
+					if ( !isVisited( face2, vertexIndex, visited, mayHaveEqualFace ) )
+					{
+						final double cos = Vector3D.dot( normals[ face1 * 3 ], normals[ face1 * 3 + 1 ], normals[ face1 * 3 + 2 ], normals[ face2 * 3 ], normals[ face2 * 3 + 1 ], normals[ face2 * 3 + 2 ] );
+						if ( cos >= minCosSmooth )
+						{
+							group[ groupSize++ ] = face2;
+							visited[ face2 ] = vertexIndex;
+						}
+					}
+				}
+
+				/*
+				 * Calculate smooth normal.
+				 */
+				double normalX = 0.0;
+				double normalY = 0.0;
+				double normalZ = 0.0;
+				for ( int k = 0; k < groupSize; k++ )
+				{
+					final int face = group[ k ];
+					normalX += crosses[ face * 3 ];
+					normalY += crosses[ face * 3 + 1 ];
+					normalZ += crosses[ face * 3 + 2 ];
+				}
+				final Vector3D normal = Vector3D.normalize( normalX, normalY, normalZ );
+
+				/*
+				 * Set vertex normals.
+				 */
+				for ( int k = 0; k < groupSize; k++ )
+				{
+					final Face3D face = faces[ group[ k ] ];
+					for ( int v = 0; v < face.getVertexCount(); v++ )
+					{
+						final Vertex3D vertex = face.getVertex( v );
+						if ( vertex.vertexCoordinateIndex == vertexIndex )
+						{
+							vertex.setNormal( normal );
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the normal or cross product of each face.
+	 *
+	 * @param cross {@code true} to get cross products; {@code false} to get
+	 *              normals.
+	 *
+	 * @return Face vectors, with 3 elements per face.
+	 */
+	private double[] getFaceVectors( final boolean cross )
+	{
+		final Face3D[] faces = _faces;
+		final double[] result = new double[ faces.length * 3 ];
+
+		forEachChunk( faces.length, new ChunkTask()
+		{
+			@Override
+			public void run( final int start, final int end )
+			{
+				for ( int i = start; i < end; i++ )
+				{
+					final Face3D face = faces[ i ];
+					final Vector3D vector = cross ? face.getCross() : face.getNormal();
+					result[ i * 3 ] = vector.x;
+					result[ i * 3 + 1 ] = vector.y;
+					result[ i * 3 + 2 ] = vector.z;
+				}
+			}
+		} );
+
+		return result;
+	}
+
+	/**
+	 * Divides a range of elements into chunks and runs the given task for
+	 * each chunk, in parallel if more than one chunk is used.
+	 *
+	 * @param count Number of elements.
+	 * @param task  Task to run.
+	 */
+	private void forEachChunk( final int count, @NotNull final ChunkTask task )
+	{
+		ParallelTools.processRanges( count, _chunkCount, new ParallelTools.RangeTask<Object>()
+		{
+			@Override
+			public Object process( final int start, final int end )
+			{
+				task.run( start, end );
+				return null;
+			}
+		} );
+	}
+
+	/**
+	 * Task that processes a chunk of elements.
+	 */
+	private interface ChunkTask
+	{
+		/**
+		 * Processes a chunk of elements.
+		 *
+		 * @param start Index of first element (inclusive).
+		 * @param end   Index of last element (exclusive).
+		 */
+		void run( int start, int end );
+	}
+}
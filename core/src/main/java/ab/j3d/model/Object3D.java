@@ -71,6 +71,14 @@ extends Node3D
 	 */
 	private double _lowDetailThreshold = 0.0;
 
+	/**
+	 * Number of modifications made to the vertices and faces of this object
+	 * through its methods.
+	 *
+	 * @see #getModificationCount()
+	 */
+	private int _modificationCount = 0;
+
 	/**
 	 * Construct base object. Additional properties need to be set to make the
 	 * object usable.
@@ -121,241 +129,12 @@ extends Node3D
 		{
 			for ( final FaceGroup faceGroup : getFaceGroups() )
 			{
-				smooth( Collections.singletonList( faceGroup ), maximumSmoothAngle, maximumEdgeAngle, vertexCount );
+				MeshSmoother.smooth( Collections.singletonList( faceGroup ), maximumSmoothAngle, maximumEdgeAngle, vertexCount );
 			}
 		}
 		else
 		{
-			smooth( getFaceGroups(), maximumSmoothAngle, maximumEdgeAngle, vertexCount );
-		}
-	}
-
-	/**
-	 * Calculates vertex normals and removes edges based on the angles between
-	 * adjacent faces.
-	 *
-	 * @param faceGroups         Face groups to be smoothed.
-	 * @param maximumSmoothAngle Maximum smoothing angle, in degrees.
-	 * @param maximumEdgeAngle   Maximum angle for which edges are removed.
-	 * @param vertexCount        Number of vertex coordinates stored in the object
-	 *                           containing the faces.
-	 */
-	private static void smooth( @NotNull final Iterable<FaceGroup> faceGroups, final double maximumSmoothAngle, final double maximumEdgeAngle, final int vertexCount )
-	{
-		final boolean smoothFaces = maximumSmoothAngle > 0.0;
-		final boolean smoothEdges = maximumEdgeAngle > 0.0;
-
-		if ( smoothEdges || smoothFaces )
-		{
-			/*
-			 * Map faces by vertex coordinate.
-			 */
-			final List<List<Face3D>> facesByVertexCoordinate = new ArrayList<List<Face3D>>( Collections.nCopies( vertexCount, Collections.<Face3D>emptyList() ) );
-			for ( final FaceGroup faceGroup : faceGroups )
-			{
-				faceGroup.setSmooth( smoothFaces );
-				for ( final Face3D face : faceGroup.getFaces() )
-				{
-					for ( final Vertex3D vertex : face.getVertices() )
-					{
-						List<Face3D> faceList = facesByVertexCoordinate.get( vertex.vertexCoordinateIndex );
-						if ( faceList.isEmpty() )
-						{
-							faceList = new ArrayList<Face3D>();
-							facesByVertexCoordinate.set( vertex.vertexCoordinateIndex, faceList );
-						}
-						faceList.add( face );
-					}
-				}
-			}
-
-			if ( smoothEdges )
-			{
-				smoothEdges( faceGroups, facesByVertexCoordinate, maximumEdgeAngle );
-			}
-
-			if ( smoothFaces )
-			{
-				smoothFaces( facesByVertexCoordinate, maximumSmoothAngle );
-			}
-		}
-	}
-
-	/**
-	 * Remove 'smooth' edges based on the angles between adjacent faces.
-	 *
-	 * @param faceGroups              Face groups to be smoothed.
-	 * @param facesByVertexCoordinate Faces per object vertex coordinate.
-	 * @param maximumEdgeAngle        Maximum angle for which edges are removed.
-	 */
-	private static void smoothEdges( @NotNull final Iterable<FaceGroup> faceGroups, final List<List<Face3D>> facesByVertexCoordinate, final double maximumEdgeAngle )
-	{
-		final double minCosEdges = Math.cos( Math.toRadians( maximumEdgeAngle ) );
-		final List<int[]> outlines = new LinkedList<int[]>();
-
-		for ( final FaceGroup faceGroup : faceGroups )
-		{
-			for ( final Face3D face : faceGroup.getFaces() )
-			{
-				boolean outlinesModified = false;
-				outlines.clear();
-
-				for ( final int[] outline : face.getOutlines() )
-				{
-					int outlineStart = 0;
-					final List<Vertex3D> faceVertices = face.getVertices();
-					List<Face3D> startFaces = facesByVertexCoordinate.get( faceVertices.get( outline[ 0 ] ).vertexCoordinateIndex );
-
-					for ( int i = 1; i < outline.length; i++ )
-					{
-						final List<Face3D> endFaces = facesByVertexCoordinate.get( faceVertices.get( outline[ i ] ).vertexCoordinateIndex );
-
-						/*
-						 * Find face on the opposite side of this edge.
-						 */
-						Face3D symmetric = null;
-						for ( final Face3D candidate : startFaces )
-						{
-							if ( ( candidate != face ) && endFaces.contains( candidate ) )
-							{
-								symmetric = candidate;
-								break;
-							}
-						}
-
-						/*
-						 * If a second face is found, check if the edge should
-						 * be removed.
-						 */
-						if ( symmetric != null )
-						{
-							final double cos = Vector3D.dot( face.getNormal(), symmetric.getNormal() );
-							if ( cos >= minCosEdges )
-							{
-								if ( i - outlineStart > 1 )
-								{
-									final int[] fragment = new int[ i - outlineStart ];
-									System.arraycopy( outline, outlineStart, fragment, 0, i - outlineStart );
-									outlines.add( fragment );
-								}
-
-								outlineStart = i;
-							}
-						}
-
-						startFaces = endFaces;
-					}
-
-					if ( outlineStart == 0 )
-					{
-						outlines.add( outline );
-					}
-					else
-					{
-						outlinesModified = true;
-						if ( outline.length - outlineStart > 1 )
-						{
-							final int[] fragment = new int[ outline.length - outlineStart ];
-							System.arraycopy( outline, outlineStart, fragment, 0, outline.length - outlineStart );
-							outlines.add( fragment );
-						}
-					}
-				}
-
-				if ( outlinesModified )
-				{
-					final Tessellation tessellation = face.getTessellation();
-					switch ( outlines.size() )
-					{
-						case 0:
-							face.setTessellation( new Tessellation( Collections.<int[]>emptyList(), tessellation.getPrimitives() ) );
-							break;
-
-						case 1:
-							face.setTessellation( new Tessellation( Collections.singletonList( outlines.get( 0 ) ), tessellation.getPrimitives() ) );
-							break;
-
-						default:
-							face.setTessellation( new Tessellation( new ArrayList<int[]>( outlines ), tessellation.getPrimitives() ) );
-					}
-				}
-			}
-		}
-	}
-
-	/**
-	 * Apply smoothing to faces. This determine smoothing groups and applies
-	 * smoothing to them.
-	 *
-	 * @param facesByVertexCoordinate Faces per object vertex coordinate.
-	 * @param maximumSmoothAngle      Maximum smoothing angle, in degrees.
-	 */
-	private static void smoothFaces( final List<List<Face3D>> facesByVertexCoordinate, final double maximumSmoothAngle )
-	{
-		final List<Face3D> visited = new ArrayList<Face3D>();
-		final double minCosSmooth = Math.cos( Math.toRadians( maximumSmoothAngle ) );
-		for ( int i = 0; i < facesByVertexCoordinate.size(); i++ )
-		{
-			final List<Face3D> faceList = facesByVertexCoordinate.get( i );
-			for ( final Face3D face1 : faceList )
-			{
-				if ( !visited.contains( face1 ) )
-				{
-					/*
-					 * Find other faces in the same smoothing group.
-					 */
-					final int groupStart = visited.size();
-					visited.add( face1 );
-					for ( final Face3D face2 : faceList )
-					{
-						/*
-						 * If requested, place different materials in
-						 * different smoothing groups.
-						 */
-						if ( !visited.contains( face2 ) )
-						{
-							final double cos = Vector3D.dot( face1.getNormal(), face2.getNormal() );
-							if ( cos >= minCosSmooth )
-							{
-								visited.add( face2 );
-							}
-						}
-					}
-					final int groupEnd = visited.size();
-
-					/*
-					 * Calculate smooth normal.
-					 */
-					double normalX = 0.0;
-					double normalY = 0.0;
-					double normalZ = 0.0;
-					for ( int j = groupStart; j < groupEnd; j++ )
-					{
-						final Face3D face = visited.get( j );
-						final Vector3D cross = face.getCross();
-						normalX += cross.x;
-						normalY += cross.y;
-						normalZ += cross.z;
-					}
-					final Vector3D normal = Vector3D.normalize( normalX, normalY, normalZ );
-
-					/*
-					 * Set vertex normals.
-					 */
-					for ( int j = groupStart; j < groupEnd; j++ )
-					{
-						final Face3D face = visited.get( j );
-						for ( final Vertex3D vertex : face.getVertices() )
-						{
-							if ( vertex.vertexCoordinateIndex == i )
-							{
-								vertex.setNormal( normal );
-							}
-						}
-					}
-				}
-			}
-			visited.clear();
+			MeshSmoother.smooth( getFaceGroups(), maximumSmoothAngle, maximumEdgeAngle, vertexCount );
 		}
 	}
 
@@ -378,6 +157,7 @@ extends Node3D
 	public void addFaceGroup( @NotNull final FaceGroup faceGroup )
 	{
 		_faceGroups.add( faceGroup );
+		_modificationCount++;
 	}
 
 	/**
@@ -388,6 +168,7 @@ extends Node3D
 	public void removeFaceGroup( @NotNull final FaceGroup faceGroup )
 	{
 		_faceGroups.remove( faceGroup );
+		_modificationCount++;
 	}
 
 	/**
@@ -399,6 +180,7 @@ extends Node3D
 	{
 		_faceGroups.clear();
 		_faceGroups.addAll( faceGroups );
+		_modificationCount++;
 	}
 
 	/**
@@ -704,7 +486,14 @@ extends Node3D
 	 */
 	public int getVertexIndex( final Vector3D point )
 	{
-		return _vertices.indexOfOrAdd( point );
+		final HashList<Vector3D> vertices = _vertices;
+		final int vertexCount = vertices.size();
+		final int result = vertices.indexOfOrAdd( point );
+		if ( vertices.size() != vertexCount )
+		{
+			_modificationCount++;
+		}
+		return result;
 	}
 
 	/**
@@ -719,6 +508,7 @@ extends Node3D
 		final List<Vector3D> vertexCoordinates = _vertices;
 		final int result = vertexCoordinates.size();
 		vertexCoordinates.add( point );
+		_modificationCount++;
 		return result;
 	}
 
@@ -751,6 +541,23 @@ extends Node3D
 	{
 		_orientedBoundingBox = null;
 		_collisionNode = null;
+		_modificationCount++;
+	}
+
+	/**
+	 * Returns the number of modifications made to the vertices and faces of
+	 * this object. This may be used to detect that data derived from the
+	 * geometry of the object is outdated.
+	 *
+	 * <p>Only modifications made through this object or its
+	 * {@link #getBuilder() builder} are counted. Faces that are added to a
+	 * {@link FaceGroup} directly are not.
+	 *
+	 * @return Modification count.
+	 */
+	public int getModificationCount()
+	{
+		return _modificationCount;
 	}
 
 	/**
@@ -780,6 +587,7 @@ extends Node3D
 	{
 		final FaceGroup faceGroup = getFaceGroup( appearance, smooth, twoSided );
 		faceGroup.addFace( face );
+		_modificationCount++;
 	}
 
 	/**
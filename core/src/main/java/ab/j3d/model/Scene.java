@@ -114,9 +114,47 @@ public class Scene
 	private final List<ScenePlaneControl> _planeControls;
 
 	/**
-	 * Cached scene bounds.
+	 * Version of the scene. This is incremented whenever the content nodes
+	 * of the scene change.
 	 */
-	private Bounds3D _bounds;
+	private int _version = 0;
+
+	/**
+	 * Snapshot of the current version of the scene; <code>null</code> if not
+	 * yet created. Access must be synchronized on {@link #_contentNodes}.
+	 */
+	private SceneSnapshot _snapshot = null;
+
+	/**
+	 * Unmodifiable list of content nodes; <code>null</code> if not yet
+	 * created. Access must be synchronized on {@link #_contentNodes}.
+	 */
+	private List<ContentNode> _contentNodeList = null;
+
+	/**
+	 * Flag to indicate that the scene was changed during the current
+	 * transaction, but the version was not yet incremented. Access must be
+	 * synchronized on {@link #_contentNodes}.
+	 */
+	private boolean _changedInTransaction = false;
+
+	/**
+	 * Snapshot that was current when the outermost transaction was started.
+	 * This is the snapshot seen by other threads until the transaction is
+	 * committed.
+	 */
+	private SceneSnapshot _committedSnapshot = null;
+
+	/**
+	 * Thread that started the current transaction.
+	 */
+	private Thread _transactionThread = null;
+
+	/**
+	 * Spatial index of content nodes; <code>null</code> if not yet created.
+	 * Access must be synchronized on {@link #_contentNodes}.
+	 */
+	private SceneSpatialIndex _spatialIndex = null;
 
 	/**
 	 * Flag to indicate that this scene is animated as opposed to static. An
@@ -131,6 +169,19 @@ public class Scene
 	 */
 	private final AtomicInteger _updateSequenceNumber = new AtomicInteger();
 
+	/**
+	 * Number of nested transactions that are currently open. Access must be
+	 * synchronized on {@link #_contentNodes}.
+	 */
+	private int _transactionDepth = 0;
+
+	/**
+	 * Changes made during the current transaction; <code>null</code> if no
+	 * transaction is open. Access must be synchronized on
+	 * {@link #_contentNodes}.
+	 */
+	private SceneChangeSet _changeSet = null;
+
 	/**
 	 * Performs tasks needed for scene updates asynchronously.
 	 */
@@ -168,16 +219,99 @@ public class Scene
 	{
 		_unit = unit;
 		_planeControls = new ArrayList<ScenePlaneControl>();
-		_bounds = null;
 	}
 
 	/**
 	 * Invalidate cached information about the scene. This should be called
-	 * whenever the scene contents change.
+	 * whenever the scene contents change. During a transaction, the cache is
+	 * only invalidated once, when the transaction is committed or when the
+	 * thread that started the transaction requests a snapshot.
 	 */
 	protected void invalidateCache()
 	{
-		_bounds = null;
+		synchronized ( _contentNodes )
+		{
+			if ( _transactionDepth > 0 )
+			{
+				_changedInTransaction = true;
+			}
+			else
+			{
+				_version++;
+				_snapshot = null;
+			}
+		}
+	}
+
+	/**
+	 * Invalidates cached information about the scene if it was changed
+	 * during the current transaction. Must be called while synchronized on
+	 * {@link #_contentNodes}.
+	 */
+	private void applyTransactionChanges()
+	{
+		if ( _changedInTransaction )
+		{
+			_changedInTransaction = false;
+			_version++;
+			_snapshot = null;
+		}
+	}
+
+	/**
+	 * Returns the current version of the scene. The version is incremented
+	 * whenever content nodes are added, removed or updated.
+	 *
+	 * @return Scene version.
+	 */
+	public int getVersion()
+	{
+		synchronized ( _contentNodes )
+		{
+			//noinspection ObjectEquality
+			if ( Thread.currentThread() == _transactionThread )
+			{
+				applyTransactionChanges();
+			}
+			return _version;
+		}
+	}
+
+	/**
+	 * Returns an immutable snapshot of the scene. Snapshots are cached, so
+	 * this is cheap if the scene was not changed since the previous call.
+	 *
+	 * Snapshots may be used from any thread. While a transaction is open,
+	 * other threads than the one that started the transaction get the
+	 * snapshot from before the transaction, so they never see partially
+	 * applied changes.
+	 *
+	 * @return Snapshot of the scene.
+	 *
+	 * @see #beginTransaction()
+	 */
+	@NotNull
+	public SceneSnapshot getSnapshot()
+	{
+		synchronized ( _contentNodes )
+		{
+			SceneSnapshot result = _committedSnapshot;
+
+			//noinspection ObjectEquality
+			if ( ( result == null ) || ( Thread.currentThread() == _transactionThread ) )
+			{
+				applyTransactionChanges();
+
+				result = _snapshot;
+				if ( result == null )
+				{
+					result = new SceneSnapshot( _version, _contentNodes.values() );
+					_snapshot = result;
+				}
+			}
+
+			return result;
+		}
 	}
 
 	/**
@@ -264,17 +398,30 @@ public class Scene
 	 */
 	public final Set<Object> getContentNodeIDs()
 	{
-		return new HashSet<Object>( _contentNodes.keySet() );
+		synchronized ( _contentNodes )
+		{
+			return new HashSet<Object>( _contentNodes.keySet() );
+		}
 	}
 
 	/**
-	 * Get all content nodes in the scene.
+	 * Get all content nodes in the scene. The list is cached until content
+	 * nodes are added or removed.
 	 *
-	 * @return All content nodes in the scene.
+	 * @return All content nodes in the scene (unmodifiable).
 	 */
 	public final List<ContentNode> getContentNodes()
 	{
-		return new ArrayList<ContentNode>( _contentNodes.values() );
+		synchronized ( _contentNodes )
+		{
+			List<ContentNode> result = _contentNodeList;
+			if ( result == null )
+			{
+				result = Collections.unmodifiableList( new ArrayList<ContentNode>( _contentNodes.values() ) );
+				_contentNodeList = result;
+			}
+			return result;
+		}
 	}
 
 	/**
@@ -287,7 +434,10 @@ public class Scene
 	 */
 	public final ContentNode getContentNode( @NotNull final Object id )
 	{
-		return _contentNodes.get( id );
+		synchronized ( _contentNodes )
+		{
+			return _contentNodes.get( id );
+		}
 	}
 
 	/**
@@ -299,11 +449,16 @@ public class Scene
 	 */
 	public final ContentNode addContentNode( @NotNull final ContentNode node )
 	{
-		if ( !_contentNodes.containsValue( node ) )
+		//noinspection ObjectEquality
+		if ( getContentNode( node.getID() ) != node )
 		{
 			removeContentNode( node.getID() );
 
-			_contentNodes.put( node.getID(), node );
+			synchronized ( _contentNodes )
+			{
+				_contentNodes.put( node.getID(), node );
+				_contentNodeList = null;
+			}
 			invalidateCache();
 
 			node.addContentNodeUpdateListener( _contentNodeUpdateListener );
@@ -353,7 +508,11 @@ public class Scene
 		if ( node != null )
 		{
 			node.removeContentNodeUpdateListener( _contentNodeUpdateListener );
-			_contentNodes.remove( id );
+			synchronized ( _contentNodes )
+			{
+				_contentNodes.remove( id );
+				_contentNodeList = null;
+			}
 			invalidateCache();
 
 			fireContentNodeRemoved( node );
@@ -382,26 +541,29 @@ public class Scene
 	@Nullable
 	public Bounds3D getBounds()
 	{
-		Bounds3D result = _bounds;
+		return getSnapshot().getBounds();
+	}
 
-		if ( result == null )
+	/**
+	 * Returns a spatial index of the content nodes in the scene. The index is
+	 * created when this method is first called, and kept up to date
+	 * afterwards.
+	 *
+	 * @return Spatial index.
+	 */
+	@NotNull
+	public SceneSpatialIndex getSpatialIndex()
+	{
+		synchronized ( _contentNodes )
 		{
-			final Bounds3DBuilder bounds3DBuilder = new Bounds3DBuilder();
-
-			for ( final ContentNode node : getContentNodes() )
+			SceneSpatialIndex result = _spatialIndex;
+			if ( result == null )
 			{
-				final Bounds3D nodeBounds = node.getBounds();
-				if ( nodeBounds != null )
-				{
-					bounds3DBuilder.addBounds( node.getTransform(), nodeBounds );
-				}
+				result = new SceneSpatialIndex( this );
+				_spatialIndex = result;
 			}
-
-			result = bounds3DBuilder.getBounds();
-			_bounds = result;
+			return result;
 		}
-
-		return result;
 	}
 
 	/**
@@ -429,19 +591,7 @@ public class Scene
 	 */
 	public boolean walk( @NotNull final Node3DVisitor visitor, @NotNull final Matrix3D transform )
 	{
-		boolean result = true;
-
-		for ( final ContentNode contentNode : getContentNodes() )
-		{
-			final Matrix3D node2scene = contentNode.getTransform();
-			result = Node3DTreeWalker.walk( visitor, node2scene.multiply( transform ), contentNode.getNode3D() );
-			if ( !result )
-			{
-				break;
-			}
-		}
-
-		return result;
+		return getSnapshot().walk( visitor, transform );
 	}
 
 	/**
@@ -547,6 +697,80 @@ public class Scene
 		_sceneUpdateListeners.remove( listener );
 	}
 
+	/**
+	 * Starts a transaction. Until the transaction is committed, all changes to
+	 * content nodes are collected in a {@link SceneChangeSet}, instead of
+	 * being sent to listeners individually. When the transaction is committed,
+	 * a single {@link SceneUpdateEvent#CONTENT_NODES_CHANGED} event is sent.
+	 * This greatly reduces overhead when many nodes are changed at once.
+	 *
+	 * Other threads keep seeing the snapshot from before the transaction
+	 * until it is committed (see {@link #getSnapshot()}).
+	 *
+	 * Transactions may be nested; changes are only sent when the outermost
+	 * transaction is committed. Each call to this method must be followed by
+	 * a call to {@link #commitTransaction()}, preferably in a
+	 * <code>finally</code> block.
+	 */
+	public void beginTransaction()
+	{
+		synchronized ( _contentNodes )
+		{
+			if ( _transactionDepth++ == 0 )
+			{
+				_changeSet = new SceneChangeSet();
+				_committedSnapshot = getSnapshot();
+				_transactionThread = Thread.currentThread();
+			}
+		}
+	}
+
+	/**
+	 * Commits the current transaction. If this is the outermost transaction,
+	 * all changes made during the transaction are sent to listeners.
+	 *
+	 * @throws IllegalStateException if no transaction is open.
+	 */
+	public void commitTransaction()
+	{
+		SceneChangeSet changeSet = null;
+
+		synchronized ( _contentNodes )
+		{
+			if ( _transactionDepth == 0 )
+			{
+				throw new IllegalStateException( "No transaction" );
+			}
+
+			if ( --_transactionDepth == 0 )
+			{
+				changeSet = _changeSet;
+				_changeSet = null;
+				_committedSnapshot = null;
+				_transactionThread = null;
+				applyTransactionChanges();
+			}
+		}
+
+		if ( ( changeSet != null ) && !changeSet.isEmpty() )
+		{
+			fireContentNodesChanged( changeSet );
+		}
+	}
+
+	/**
+	 * Returns whether a transaction is open.
+	 *
+	 * @return <code>true</code> if a transaction is open.
+	 */
+	public boolean isInTransaction()
+	{
+		synchronized ( _contentNodes )
+		{
+			return ( _transactionDepth > 0 );
+		}
+	}
+
 	/**
 	 * Send event about content node added to the scene to all registered
 	 * listeners.
@@ -555,8 +779,19 @@ public class Scene
 	 */
 	public void fireContentNodeAdded( final ContentNode node )
 	{
+		final boolean inTransaction;
+		synchronized ( _contentNodes )
+		{
+			final SceneChangeSet changeSet = _changeSet;
+			inTransaction = ( changeSet != null );
+			if ( inTransaction )
+			{
+				changeSet.nodeAdded( node );
+			}
+		}
+
 		final List<SceneUpdateListener> listeners = _sceneUpdateListeners;
-		if ( !listeners.isEmpty() )
+		if ( !inTransaction && !listeners.isEmpty() )
 		{
 			final SceneUpdateEvent event = new SceneUpdateEvent( this, SceneUpdateEvent.CONTENT_NODE_ADDED, node );
 
@@ -575,8 +810,19 @@ public class Scene
 	 */
 	public void fireContentNodeRemoved( final ContentNode node )
 	{
+		final boolean inTransaction;
+		synchronized ( _contentNodes )
+		{
+			final SceneChangeSet changeSet = _changeSet;
+			inTransaction = ( changeSet != null );
+			if ( inTransaction )
+			{
+				changeSet.nodeRemoved( node );
+			}
+		}
+
 		final List<SceneUpdateListener> listeners = _sceneUpdateListeners;
-		if ( !listeners.isEmpty() )
+		if ( !inTransaction && !listeners.isEmpty() )
 		{
 			final SceneUpdateEvent event = new SceneUpdateEvent( this, SceneUpdateEvent.CONTENT_NODE_REMOVED, node );
 
@@ -595,8 +841,19 @@ public class Scene
 	 */
 	public void fireContentNodeContentUpdated( final ContentNode node )
 	{
+		final boolean inTransaction;
+		synchronized ( _contentNodes )
+		{
+			final SceneChangeSet changeSet = _changeSet;
+			inTransaction = ( changeSet != null );
+			if ( inTransaction )
+			{
+				changeSet.nodeContentUpdated( node );
+			}
+		}
+
 		final List<SceneUpdateListener> listeners = _sceneUpdateListeners;
-		if ( !listeners.isEmpty() )
+		if ( !inTransaction && !listeners.isEmpty() )
 		{
 			final SceneUpdateEvent event = new SceneUpdateEvent( this, SceneUpdateEvent.CONTENT_NODE_CONTENT_UPDATED, node );
 
@@ -615,8 +872,19 @@ public class Scene
 	 */
 	public void fireContentNodePropertyChanged( final ContentNode node )
 	{
+		final boolean inTransaction;
+		synchronized ( _contentNodes )
+		{
+			final SceneChangeSet changeSet = _changeSet;
+			inTransaction = ( changeSet != null );
+			if ( inTransaction )
+			{
+				changeSet.nodePropertyChanged( node );
+			}
+		}
+
 		final List<SceneUpdateListener> listeners = _sceneUpdateListeners;
-		if ( !listeners.isEmpty() )
+		if ( !inTransaction && !listeners.isEmpty() )
 		{
 			final SceneUpdateEvent event = new SceneUpdateEvent( this, SceneUpdateEvent.CONTENT_NODE_PROPERTY_CHANGED, node );
 
@@ -627,6 +895,26 @@ public class Scene
 		}
 	}
 
+	/**
+	 * Send event about content nodes that were changed during a transaction to
+	 * all registered listeners.
+	 *
+	 * @param changeSet Changes made during the transaction.
+	 */
+	public void fireContentNodesChanged( @NotNull final SceneChangeSet changeSet )
+	{
+		final List<SceneUpdateListener> listeners = _sceneUpdateListeners;
+		if ( !listeners.isEmpty() )
+		{
+			final SceneUpdateEvent event = new SceneUpdateEvent( this, changeSet );
+
+			for ( final SceneUpdateListener listener : listeners )
+			{
+				listener.contentNodesChanged( event );
+			}
+		}
+	}
+
 	/**
 	 * Send event about a change in the scene's ambient light intensity to all
 	 * registered listeners.
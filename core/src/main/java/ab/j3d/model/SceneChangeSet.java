@@ -0,0 +1,189 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.model;
+
+import java.util.*;
+
+import org.jetbrains.annotations.*;
+
+/**
+ * Describes all changes to the content nodes of a {@link Scene} that were
+ * made during a transaction (see {@link Scene#beginTransaction()}). Changes
+ * are coalesced, such that each content node occurs at most once per
+ * category:
+ * <ul>
+ *   <li>added nodes were not in the scene before the transaction;</li>
+ *   <li>removed nodes are no longer in the scene after the transaction;</li>
+ *   <li>updated nodes were in the scene before and after the transaction,
+ *       and had their content or properties (e.g. their transform)
+ *       changed.</li>
+ * </ul>
+ * A node that is added and removed again during the same transaction is not
+ * included at all. Nodes are listed in the order in which they were first
+ * changed.
+ *
+ * @author Peter S. Heijnen
+ */
+public class SceneChangeSet
+{
+	/**
+	 * Nodes that were added.
+	 */
+	private final Set<ContentNode> _added = new LinkedHashSet<ContentNode>();
+
+	/**
+	 * Nodes that were removed.
+	 */
+	private final Set<ContentNode> _removed = new LinkedHashSet<ContentNode>();
+
+	/**
+	 * Nodes whose content was updated.
+	 */
+	private final Set<ContentNode> _contentUpdated = new LinkedHashSet<ContentNode>();
+
+	/**
+	 * Nodes whose properties were changed.
+	 */
+	private final Set<ContentNode> _propertyChanged = new LinkedHashSet<ContentNode>();
+
+	/**
+	 * Returns whether the change set contains no changes.
+	 *
+	 * @return {@code true} if there are no changes.
+	 */
+	public boolean isEmpty()
+	{
+		return _added.isEmpty() && _removed.isEmpty() && _contentUpdated.isEmpty() && _propertyChanged.isEmpty();
+	}
+
+	/**
+	 * Returns the content nodes that were added to the scene.
+	 *
+	 * @return Added nodes.
+	 */
+	@NotNull
+	public Collection<ContentNode> getAddedNodes()
+	{
+		return Collections.unmodifiableSet( _added );
+	}
+
+	/**
+	 * Returns the content nodes that were removed from the scene.
+	 *
+	 * @return Removed nodes.
+	 */
+	@NotNull
+	public Collection<ContentNode> getRemovedNodes()
+	{
+		return Collections.unmodifiableSet( _removed );
+	}
+
+	/**
+	 * Returns the content nodes whose content was updated. Added nodes are
+	 * not included.
+	 *
+	 * @return Nodes with updated content.
+	 */
+	@NotNull
+	public Collection<ContentNode> getContentUpdatedNodes()
+	{
+		return Collections.unmodifiableSet( _contentUpdated );
+	}
+
+	/**
+	 * Returns the content nodes whose properties were changed, e.g. their
+	 * transform. Added nodes are not included.
+	 *
+	 * @return Nodes with changed properties.
+	 */
+	@NotNull
+	public Collection<ContentNode> getPropertyChangedNodes()
+	{
+		return Collections.unmodifiableSet( _propertyChanged );
+	}
+
+	/**
+	 * Records that a node was added to the scene.
+	 *
+	 * @param node Node that was added.
+	 */
+	void nodeAdded( @NotNull final ContentNode node )
+	{
+		if ( _removed.remove( node ) )
+		{
+			/*
+			 * The node was in the scene before the transaction, so it is only
+			 * reported as updated.
+			 */
+			_contentUpdated.add( node );
+			_propertyChanged.add( node );
+		}
+		else
+		{
+			_added.add( node );
+		}
+	}
+
+	/**
+	 * Records that a node was removed from the scene.
+	 *
+	 * @param node Node that was removed.
+	 */
+	void nodeRemoved( @NotNull final ContentNode node )
+	{
+		if ( !_added.remove( node ) )
+		{
+			_contentUpdated.remove( node );
+			_propertyChanged.remove( node );
+			_removed.add( node );
+		}
+	}
+
+	/**
+	 * Records that the content of a node was updated.
+	 *
+	 * @param node Node that was updated.
+	 */
+	void nodeContentUpdated( @NotNull final ContentNode node )
+	{
+		if ( !_added.contains( node ) )
+		{
+			_contentUpdated.add( node );
+		}
+	}
+
+	/**
+	 * Records that a property of a node was changed.
+	 *
+	 * @param node Node that was changed.
+	 */
+	void nodePropertyChanged( @NotNull final ContentNode node )
+	{
+		if ( !_added.contains( node ) )
+		{
+			_propertyChanged.add( node );
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return super.toString() + "[added=" + _added.size() + ", removed=" + _removed.size() + ", contentUpdated=" + _contentUpdated.size() + ", propertyChanged=" + _propertyChanged.size() + ']';
+	}
+}
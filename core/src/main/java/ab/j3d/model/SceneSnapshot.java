@@ -0,0 +1,228 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.model;
+
+import java.util.*;
+
+import ab.j3d.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Immutable view of the content nodes in a {@link Scene} at a specific
+ * version. Snapshots are obtained using {@link Scene#getSnapshot()} and may
+ * be used from any thread, e.g. by renderers, exporters and collision tests,
+ * while the scene is being modified by another thread.
+ *
+ * A snapshot records which content nodes were in the scene and their
+ * transforms. The {@link Node3D} content of the nodes is shared with the
+ * scene, so content must be replaced rather than modified in-place (which
+ * {@link ContentNode#setNode3D} already does) for it to be isolated as well.
+ *
+ * @author Peter S. Heijnen
+ */
+public final class SceneSnapshot
+{
+	/**
+	 * Version of the scene from which the snapshot was taken.
+	 */
+	private final int _version;
+
+	/**
+	 * Content nodes in the scene.
+	 */
+	private final List<ContentNode> _contentNodes;
+
+	/**
+	 * Transform of each content node.
+	 */
+	private final Matrix3D[] _transforms;
+
+	/**
+	 * Content of each content node.
+	 */
+	private final Node3D[] _node3Ds;
+
+	/**
+	 * Cached bounds.
+	 */
+	private Bounds3D _bounds = null;
+
+	/**
+	 * Whether {@link #_bounds} were calculated.
+	 */
+	private boolean _boundsValid = false;
+
+	/**
+	 * Constructs a new snapshot.
+	 *
+	 * @param version      Version of the scene.
+	 * @param contentNodes Content nodes in the scene.
+	 */
+	SceneSnapshot( final int version, @NotNull final Collection<ContentNode> contentNodes )
+	{
+		final ContentNode[] nodes = contentNodes.toArray( new ContentNode[ contentNodes.size() ] );
+		final Matrix3D[] transforms = new Matrix3D[ nodes.length ];
+		final Node3D[] node3Ds = new Node3D[ nodes.length ];
+		for ( int i = 0; i < nodes.length; i++ )
+		{
+			transforms[ i ] = nodes[ i ].getTransform();
+			node3Ds[ i ] = nodes[ i ].getNode3D();
+		}
+
+		_version = version;
+		_contentNodes = Collections.unmodifiableList( Arrays.asList( nodes ) );
+		_transforms = transforms;
+		_node3Ds = node3Ds;
+	}
+
+	/**
+	 * Returns the version of the scene from which the snapshot was taken.
+	 * Versions increase monotonically with each change to the scene.
+	 *
+	 * @return Scene version.
+	 */
+	public int getVersion()
+	{
+		return _version;
+	}
+
+	/**
+	 * Returns the content nodes in the snapshot.
+	 *
+	 * @return Content nodes (unmodifiable).
+	 */
+	@NotNull
+	public List<ContentNode> getContentNodes()
+	{
+		return _contentNodes;
+	}
+
+	/**
+	 * Returns the transform of the content node at the given index, as it was
+	 * when the snapshot was taken.
+	 *
+	 * @param index Index of the content node.
+	 *
+	 * @return Node to scene transform.
+	 */
+	@NotNull
+	public Matrix3D getTransform( final int index )
+	{
+		return _transforms[ index ];
+	}
+
+	/**
+	 * Returns the content of the content node at the given index, as it was
+	 * when the snapshot was taken.
+	 *
+	 * @param index Index of the content node.
+	 *
+	 * @return Root of the content node's content.
+	 */
+	@NotNull
+	public Node3D getNode3D( final int index )
+	{
+		return _node3Ds[ index ];
+	}
+
+	/**
+	 * Get bounding box that contains all 3D objects in the snapshot.
+	 *
+	 * @return Bounding box of scene; <code>null</code> if scene is empty.
+	 */
+	@Nullable
+	public Bounds3D getBounds()
+	{
+		synchronized ( this )
+		{
+			if ( !_boundsValid )
+			{
+				final Bounds3DBuilder bounds3DBuilder = new Bounds3DBuilder();
+
+				final Node3D[] node3Ds = _node3Ds;
+				for ( int i = 0; i < node3Ds.length; i++ )
+				{
+					/*
+					 * Use the bounds cached by the content node, unless its
+					 * content was replaced after the snapshot was taken.
+					 */
+					final ContentNode contentNode = _contentNodes.get( i );
+					final Node3D node3D = node3Ds[ i ];
+					//noinspection ObjectEquality
+					final Bounds3D nodeBounds = ( contentNode.getNode3D() == node3D ) ? contentNode.getBounds() : node3D.calculateBounds( Matrix3D.IDENTITY );
+					if ( nodeBounds != null )
+					{
+						bounds3DBuilder.addBounds( _transforms[ i ], nodeBounds );
+					}
+				}
+
+				_bounds = bounds3DBuilder.getBounds();
+				_boundsValid = true;
+			}
+
+			return _bounds;
+		}
+	}
+
+	/**
+	 * Perform tree-walk through the snapshot with the given visitor.
+	 *
+	 * @param visitor Visitor that will be called for each visited node.
+	 *
+	 * @return <code>true</code> if the tree walk was finished normally;
+	 *         <code>false</code> if the tree walk was aborted.
+	 */
+	public boolean walk( @NotNull final Node3DVisitor visitor )
+	{
+		return walk( visitor, Matrix3D.IDENTITY );
+	}
+
+	/**
+	 * Perform tree-walk through the snapshot with the given visitor and
+	 * initial transformation matrix.
+	 *
+	 * @param visitor   Visitor that will be called for each visited node.
+	 * @param transform Initial transformation matrix.
+	 *
+	 * @return <code>true</code> if the tree walk was finished normally;
+	 *         <code>false</code> if the tree walk was aborted.
+	 */
+	public boolean walk( @NotNull final Node3DVisitor visitor, @NotNull final Matrix3D transform )
+	{
+		boolean result = true;
+
+		final Node3D[] node3Ds = _node3Ds;
+		for ( int i = 0; i < node3Ds.length; i++ )
+		{
+			result = Node3DTreeWalker.walk( visitor, _transforms[ i ].multiply( transform ), node3Ds[ i ] );
+			if ( !result )
+			{
+				break;
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	public String toString()
+	{
+		return super.toString() + "[version=" + _version + ", contentNodes=" + _contentNodes.size() + ']';
+	}
+}
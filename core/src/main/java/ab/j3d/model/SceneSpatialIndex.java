@@ -0,0 +1,958 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.model;
+
+import java.util.*;
+
+import ab.j3d.*;
+import ab.j3d.view.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Spatial index of the content nodes in a {@link Scene}, used to quickly find
+ * content nodes in a given region, e.g. for rubber-band selection or
+ * placement validation. The index is obtained using
+ * {@link Scene#getSpatialIndex()} and kept up to date automatically using
+ * scene update events.
+ *
+ * The index is a dynamic bounding volume hierarchy over the world-space
+ * bounds of the content nodes. Each content node is stored in a leaf with
+ * slightly enlarged bounds, so small movements don't require the tree to be
+ * updated. Nodes are inserted next to the sibling that causes the least
+ * increase in surface area, and the tree is kept balanced using rotations,
+ * so queries take logarithmic time in typical scenes.
+ *
+ * All queries invoke a {@link ContentNodeVisitor} for each matching content
+ * node, which may abort the query. Content nodes without bounds (e.g. empty
+ * nodes) are not included in query results.
+ *
+ * This class is not thread-safe. Queries from other threads than the one
+ * modifying the scene should use a {@link SceneSnapshot} instead.
+ *
+ * @author Peter S. Heijnen
+ */
+public class SceneSpatialIndex
+implements SceneUpdateListener
+{
+	/**
+	 * Fraction of the size of a content node by which its leaf bounds are
+	 * enlarged on each side.
+	 */
+	private static final double MARGIN = 0.1;
+
+	/**
+	 * Leaf of each content node with bounds.
+	 */
+	private final Map<ContentNode, TreeNode> _leaves = new IdentityHashMap<ContentNode, TreeNode>();
+
+	/**
+	 * Root of the tree; <code>null</code> if the tree is empty.
+	 */
+	private TreeNode _root = null;
+
+	/**
+	 * Used to calculate world-space bounds.
+	 */
+	private final Bounds3DBuilder _boundsBuilder = new Bounds3DBuilder();
+
+	/**
+	 * Constructs a new index for the given scene. The index is kept up to
+	 * date automatically.
+	 *
+	 * @param scene Scene to index.
+	 */
+	public SceneSpatialIndex( @NotNull final Scene scene )
+	{
+		for ( final ContentNode node : scene.getContentNodes() )
+		{
+			update( node );
+		}
+		scene.addSceneUpdateListener( this );
+	}
+
+	/**
+	 * Returns the number of indexed content nodes.
+	 *
+	 * @return Number of content nodes.
+	 */
+	public int size()
+	{
+		return _leaves.size();
+	}
+
+	/**
+	 * Returns the height of the tree, which is a measure for the amount of
+	 * work needed for queries.
+	 *
+	 * @return Height of the tree; <code>-1</code> if the tree is empty.
+	 */
+	public int getHeight()
+	{
+		final TreeNode root = _root;
+		return ( root == null ) ? -1 : root._height;
+	}
+
+	/**
+	 * Visits all content nodes whose world-space bounds intersect the given
+	 * bounds.
+	 *
+	 * @param bounds  Bounds in scene coordinates.
+	 * @param visitor Visitor to invoke for each content node.
+	 *
+	 * @return <code>true</code> if the query was finished normally;
+	 *         <code>false</code> if the query was aborted.
+	 */
+	public boolean queryBounds( @NotNull final Bounds3D bounds, @NotNull final ContentNodeVisitor visitor )
+	{
+		final double minX = bounds.minX();
+		final double minY = bounds.minY();
+		final double minZ = bounds.minZ();
+		final double maxX = bounds.maxX();
+		final double maxY = bounds.maxY();
+		final double maxZ = bounds.maxZ();
+
+		return query( new Predicate()
+		{
+			@Override
+			public boolean test( final double nodeMinX, final double nodeMinY, final double nodeMinZ, final double nodeMaxX, final double nodeMaxY, final double nodeMaxZ )
+			{
+				return ( nodeMinX <= maxX ) && ( nodeMaxX >= minX ) &&
+				       ( nodeMinY <= maxY ) && ( nodeMaxY >= minY ) &&
+				       ( nodeMinZ <= maxZ ) && ( nodeMaxZ >= minZ );
+			}
+		}, visitor );
+	}
+
+	/**
+	 * Visits all content nodes whose world-space bounds are at least partly
+	 * contained in the given viewing frustum. The frustum planes must be in
+	 * scene coordinates, i.e. the frustum must be created from a combined
+	 * scene-to-view and projection matrix.
+	 *
+	 * @param frustum Viewing frustum in scene coordinates.
+	 * @param visitor Visitor to invoke for each content node.
+	 *
+	 * @return <code>true</code> if the query was finished normally;
+	 *         <code>false</code> if the query was aborted.
+	 */
+	public boolean queryFrustum( @NotNull final ViewingFrustum frustum, @NotNull final ContentNodeVisitor visitor )
+	{
+		final Vector4D[] planes = { frustum.getLeftPlane(), frustum.getRightPlane(), frustum.getBottomPlane(), frustum.getTopPlane(), frustum.getNearPlane(), frustum.getFarPlane() };
+
+		return query( new Predicate()
+		{
+			@Override
+			public boolean test( final double nodeMinX, final double nodeMinY, final double nodeMinZ, final double nodeMaxX, final double nodeMaxY, final double nodeMaxZ )
+			{
+				boolean result = true;
+				for ( final Vector4D plane : planes )
+				{
+					/*
+					 * Test the corner that is furthest in the direction of the
+					 * plane normal. If it is behind the plane, the whole box is.
+					 */
+					final double x = ( plane.x >= 0.0 ) ? nodeMaxX : nodeMinX;
+					final double y = ( plane.y >= 0.0 ) ? nodeMaxY : nodeMinY;
+					final double z = ( plane.z >= 0.0 ) ? nodeMaxZ : nodeMinZ;
+					if ( plane.x * x + plane.y * y + plane.z * z + plane.w < 0.0 )
+					{
+						result = false;
+						break;
+					}
+				}
+				return result;
+			}
+		}, visitor );
+	}
+
+	/**
+	 * Visits all content nodes whose world-space bounds intersect the given
+	 * sphere.
+	 *
+	 * @param center  Center of the sphere in scene coordinates.
+	 * @param radius  Radius of the sphere.
+	 * @param visitor Visitor to invoke for each content node.
+	 *
+	 * @return <code>true</code> if the query was finished normally;
+	 *         <code>false</code> if the query was aborted.
+	 */
+	public boolean querySphere( @NotNull final Vector3D center, final double radius, @NotNull final ContentNodeVisitor visitor )
+	{
+		final double x = center.x;
+		final double y = center.y;
+		final double z = center.z;
+		final double radiusSquared = radius * radius;
+
+		return query( new Predicate()
+		{
+			@Override
+			public boolean test( final double nodeMinX, final double nodeMinY, final double nodeMinZ, final double nodeMaxX, final double nodeMaxY, final double nodeMaxZ )
+			{
+				return getDistanceSquared( x, y, z, nodeMinX, nodeMinY, nodeMinZ, nodeMaxX, nodeMaxY, nodeMaxZ ) <= radiusSquared;
+			}
+		}, visitor );
+	}
+
+	/**
+	 * Visits content nodes in order of increasing distance from the given
+	 * point, up to the given maximum distance. The distance of a content node
+	 * is the distance from the point to its world-space bounds. To find the
+	 * <i>k</i> nearest content nodes, abort the query after <i>k</i> nodes
+	 * were visited (or use {@link #getNearest}).
+	 *
+	 * @param point           Point in scene coordinates.
+	 * @param maximumDistance Maximum distance from the point.
+	 * @param visitor         Visitor to invoke for each content node.
+	 *
+	 * @return <code>true</code> if the query was finished normally;
+	 *         <code>false</code> if the query was aborted.
+	 */
+	public boolean queryNearest( @NotNull final Vector3D point, final double maximumDistance, @NotNull final ContentNodeVisitor visitor )
+	{
+		final double x = point.x;
+		final double y = point.y;
+		final double z = point.z;
+		final double maximumDistanceSquared = maximumDistance * maximumDistance;
+
+		boolean result = true;
+
+		final TreeNode root = _root;
+		if ( root != null )
+		{
+			/*
+			 * Best-first search. The distance of a tree node is never more
+			 * than that of its descendants, so leaves come out of the queue
+			 * in order of increasing distance. Leaves are queued a second time
+			 * with the distance to their actual bounds, as opposed to the
+			 * enlarged bounds of the leaf.
+			 */
+			final PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+			queue.add( new QueueEntry( root, false, root.getDistanceSquared( x, y, z ) ) );
+
+			while ( result && !queue.isEmpty() )
+			{
+				final QueueEntry entry = queue.poll();
+				if ( entry._distanceSquared > maximumDistanceSquared )
+				{
+					break;
+				}
+
+				final TreeNode node = entry._node;
+				if ( entry._exact )
+				{
+					result = visitor.visitContentNode( node._contentNode );
+				}
+				else if ( node.isLeaf() )
+				{
+					final Bounds3D bounds = node._bounds;
+					queue.add( new QueueEntry( node, true, getDistanceSquared( x, y, z, bounds.v1.x, bounds.v1.y, bounds.v1.z, bounds.v2.x, bounds.v2.y, bounds.v2.z ) ) );
+				}
+				else
+				{
+					queue.add( new QueueEntry( node._child1, false, node._child1.getDistanceSquared( x, y, z ) ) );
+					queue.add( new QueueEntry( node._child2, false, node._child2.getDistanceSquared( x, y, z ) ) );
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the content nodes nearest to the given point.
+	 *
+	 * @param point Point in scene coordinates.
+	 * @param count Maximum number of content nodes to return.
+	 *
+	 * @return Nearest content nodes, in order of increasing distance.
+	 */
+	@NotNull
+	public List<ContentNode> getNearest( @NotNull final Vector3D point, final int count )
+	{
+		final List<ContentNode> result = new ArrayList<ContentNode>( count );
+		if ( count > 0 )
+		{
+			queryNearest( point, Double.POSITIVE_INFINITY, new ContentNodeVisitor()
+			{
+				@Override
+				public boolean visitContentNode( @NotNull final ContentNode node )
+				{
+					result.add( node );
+					return ( result.size() < count );
+				}
+			} );
+		}
+		return result;
+	}
+
+	/**
+	 * Visits all content nodes for which the given predicate is satisfied by
+	 * both the bounds of the tree nodes containing it and its own bounds.
+	 *
+	 * @param predicate Tests bounds.
+	 * @param visitor   Visitor to invoke for each content node.
+	 *
+	 * @return <code>true</code> if the query was finished normally;
+	 *         <code>false</code> if the query was aborted.
+	 */
+	private boolean query( @NotNull final Predicate predicate, @NotNull final ContentNodeVisitor visitor )
+	{
+		boolean result = true;
+
+		final TreeNode root = _root;
+		if ( root != null )
+		{
+			final Deque<TreeNode> stack = new ArrayDeque<TreeNode>();
+			stack.push( root );
+
+			while ( result && !stack.isEmpty() )
+			{
+				final TreeNode node = stack.pop();
+				if ( predicate.test( node._minX, node._minY, node._minZ, node._maxX, node._maxY, node._maxZ ) )
+				{
+					if ( node.isLeaf() )
+					{
+						final Bounds3D bounds = node._bounds;
+						if ( predicate.test( bounds.v1.x, bounds.v1.y, bounds.v1.z, bounds.v2.x, bounds.v2.y, bounds.v2.z ) )
+						{
+							result = visitor.visitContentNode( node._contentNode );
+						}
+					}
+					else
+					{
+						stack.push( node._child2 );
+						stack.push( node._child1 );
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the squared distance from a point to a box.
+	 *
+	 * @param x    X coordinate of the point.
+	 * @param y    Y coordinate of the point.
+	 * @param z    Z coordinate of the point.
+	 * @param minX Minimum X coordinate of the box.
+	 * @param minY Minimum Y coordinate of the box.
+	 * @param minZ Minimum Z coordinate of the box.
+	 * @param maxX Maximum X coordinate of the box.
+	 * @param maxY Maximum Y coordinate of the box.
+	 * @param maxZ Maximum Z coordinate of the box.
+	 *
+	 * @return Squared distance; <code>0.0</code> if the box contains the point.
+	 */
+	static double getDistanceSquared( final double x, final double y, final double z, final double minX, final double minY, final double minZ, final double maxX, final double maxY, final double maxZ )
+	{
+		final double dx = ( x < minX ) ? minX - x : ( x > maxX ) ? x - maxX : 0.0;
+		final double dy = ( y < minY ) ? minY - y : ( y > maxY ) ? y - maxY : 0.0;
+		final double dz = ( z < minZ ) ? minZ - z : ( z > maxZ ) ? z - maxZ : 0.0;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	/**
+	 * Updates the index for the given content node, which may have been
+	 * added, moved or changed.
+	 *
+	 * @param node Content node to update.
+	 */
+	private void update( @NotNull final ContentNode node )
+	{
+		final Bounds3D nodeBounds = node.getBounds();
+		Bounds3D bounds = null;
+		if ( nodeBounds != null )
+		{
+			final Bounds3DBuilder boundsBuilder = _boundsBuilder;
+			boundsBuilder.reset();
+			boundsBuilder.addBounds( node.getTransform(), nodeBounds );
+			bounds = boundsBuilder.getBounds();
+		}
+
+		TreeNode leaf = _leaves.get( node );
+		if ( bounds == null )
+		{
+			if ( leaf != null )
+			{
+				remove( node );
+			}
+		}
+		else if ( leaf == null )
+		{
+			leaf = new TreeNode();
+			leaf._contentNode = node;
+			leaf.setEnlargedBounds( bounds );
+			_leaves.put( node, leaf );
+			insertLeaf( leaf );
+		}
+		else if ( !leaf.contains( bounds ) )
+		{
+			removeLeaf( leaf );
+			leaf.setEnlargedBounds( bounds );
+			insertLeaf( leaf );
+		}
+		else
+		{
+			leaf._bounds = bounds;
+		}
+	}
+
+	/**
+	 * Removes the given content node from the index.
+	 *
+	 * @param node Content node to remove.
+	 */
+	private void remove( @NotNull final ContentNode node )
+	{
+		final TreeNode leaf = _leaves.remove( node );
+		if ( leaf != null )
+		{
+			removeLeaf( leaf );
+		}
+	}
+
+	/**
+	 * Inserts a leaf into the tree.
+	 *
+	 * @param leaf Leaf to insert.
+	 */
+	private void insertLeaf( @NotNull final TreeNode leaf )
+	{
+		final TreeNode root = _root;
+		if ( root == null )
+		{
+			_root = leaf;
+			leaf._parent = null;
+		}
+		else
+		{
+			/*
+			 * Find the best sibling, i.e. the one that results in the least
+			 * increase of surface area of the tree.
+			 */
+			TreeNode sibling = root;
+			while ( !sibling.isLeaf() )
+			{
+				final double area = sibling.getSurfaceArea();
+				final double combinedArea = sibling.getCombinedSurfaceArea( leaf );
+
+				/*
+				 * Cost of creating a new parent for this node and the leaf,
+				 * and the minimum cost of pushing the leaf further down.
+				 */
+				final double cost = 2.0 * combinedArea;
+				final double inheritanceCost = 2.0 * ( combinedArea - area );
+
+				final double cost1 = getInsertionCost( sibling._child1, leaf ) + inheritanceCost;
+				final double cost2 = getInsertionCost( sibling._child2, leaf ) + inheritanceCost;
+
+				if ( ( cost < cost1 ) && ( cost < cost2 ) )
+				{
+					break;
+				}
+
+				sibling = ( cost1 < cost2 ) ? sibling._child1 : sibling._child2;
+			}
+
+			final TreeNode oldParent = sibling._parent;
+			final TreeNode newParent = new TreeNode();
+			newParent._parent = oldParent;
+			newParent._child1 = sibling;
+			newParent._child2 = leaf;
+			newParent._height = sibling._height + 1;
+			newParent.setUnion( sibling, leaf );
+			sibling._parent = newParent;
+			leaf._parent = newParent;
+
+			if ( oldParent == null )
+			{
+				_root = newParent;
+			}
+			else
+			{
+				oldParent.replaceChild( sibling, newParent );
+			}
+
+			refit( newParent._parent );
+		}
+	}
+
+	/**
+	 * Returns the cost of inserting a leaf below the given node.
+	 *
+	 * @param node Node to insert the leaf below.
+	 * @param leaf Leaf to insert.
+	 *
+	 * @return Increase of surface area.
+	 */
+	private static double getInsertionCost( @NotNull final TreeNode node, @NotNull final TreeNode leaf )
+	{
+		final double combinedArea = node.getCombinedSurfaceArea( leaf );
+		return node.isLeaf() ? combinedArea : combinedArea - node.getSurfaceArea();
+	}
+
+	/**
+	 * Removes a leaf from the tree.
+	 *
+	 * @param leaf Leaf to remove.
+	 */
+	private void removeLeaf( @NotNull final TreeNode leaf )
+	{
+		//noinspection ObjectEquality
+		if ( leaf == _root )
+		{
+			_root = null;
+		}
+		else
+		{
+			final TreeNode parent = leaf._parent;
+			final TreeNode grandParent = parent._parent;
+			//noinspection ObjectEquality
+			final TreeNode sibling = ( parent._child1 == leaf ) ? parent._child2 : parent._child1;
+
+			if ( grandParent == null )
+			{
+				_root = sibling;
+				sibling._parent = null;
+			}
+			else
+			{
+				grandParent.replaceChild( parent, sibling );
+				sibling._parent = grandParent;
+				refit( grandParent );
+			}
+		}
+
+		leaf._parent = null;
+	}
+
+	/**
+	 * Updates the bounds and heights of the given node and its ancestors,
+	 * balancing the tree along the way.
+	 *
+	 * @param node Node to start at.
+	 */
+	private void refit( @Nullable final TreeNode node )
+	{
+		TreeNode current = node;
+		while ( current != null )
+		{
+			current = balance( current );
+			current._height = 1 + Math.max( current._child1._height, current._child2._height );
+			current.setUnion( current._child1, current._child2 );
+			current = current._parent;
+		}
+	}
+
+	/**
+	 * Performs a rotation at the given node if its subtrees are imbalanced.
+	 *
+	 * @param a Node to balance.
+	 *
+	 * @return Node that replaced the given node, or the node itself.
+	 */
+	private TreeNode balance( @NotNull final TreeNode a )
+	{
+		TreeNode result = a;
+
+		if ( !a.isLeaf() && ( a._height >= 2 ) )
+		{
+			final TreeNode b = a._child1;
+			final TreeNode c = a._child2;
+			final int balance = c._height - b._height;
+
+			if ( balance > 1 )
+			{
+				result = rotate( a, c, b, false );
+			}
+			else if ( balance < -1 )
+			{
+				result = rotate( a, b, c, true );
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Rotates the higher child of a node up, such that it replaces the node.
+	 *
+	 * @param a           Node to rotate.
+	 * @param up          Higher child of the node, which replaces it.
+	 * @param other       Other child of the node.
+	 * @param upIsChild1  Whether the higher child is the first child.
+	 *
+	 * @return Node that replaced the given node.
+	 */
+	private TreeNode rotate( @NotNull final TreeNode a, @NotNull final TreeNode up, @NotNull final TreeNode other, final boolean upIsChild1 )
+	{
+		final TreeNode f = up._child1;
+		final TreeNode g = up._child2;
+
+		up._child1 = a;
+		up._parent = a._parent;
+		a._parent = up;
+
+		if ( up._parent == null )
+		{
+			_root = up;
+		}
+		else
+		{
+			up._parent.replaceChild( a, up );
+		}
+
+		/*
+		 * Keep the higher grandchild below the rotated node, and move the
+		 * other grandchild to the original node.
+		 */
+		final TreeNode keep = ( f._height > g._height ) ? f : g;
+		final TreeNode move = ( f._height > g._height ) ? g : f;
+
+		up._child2 = keep;
+		if ( upIsChild1 )
+		{
+			a._child1 = move;
+		}
+		else
+		{
+			a._child2 = move;
+		}
+		move._parent = a;
+
+		a.setUnion( other, move );
+		a._height = 1 + Math.max( other._height, move._height );
+		up.setUnion( a, keep );
+		up._height = 1 + Math.max( a._height, keep._height );
+
+		return up;
+	}
+
+	@Override
+	public void contentNodeAdded( final SceneUpdateEvent event )
+	{
+		update( event.getNode() );
+	}
+
+	@Override
+	public void contentNodeRemoved( final SceneUpdateEvent event )
+	{
+		remove( event.getNode() );
+	}
+
+	@Override
+	public void contentNodeContentUpdated( final SceneUpdateEvent event )
+	{
+		update( event.getNode() );
+	}
+
+	@Override
+	public void contentNodePropertyChanged( final SceneUpdateEvent event )
+	{
+		update( event.getNode() );
+	}
+
+	@Override
+	public void contentNodesChanged( final SceneUpdateEvent event )
+	{
+		final SceneChangeSet changeSet = event.getChangeSet();
+
+		for ( final ContentNode node : changeSet.getRemovedNodes() )
+		{
+			remove( node );
+		}
+
+		for ( final ContentNode node : changeSet.getAddedNodes() )
+		{
+			update( node );
+		}
+
+		for ( final ContentNode node : changeSet.getContentUpdatedNodes() )
+		{
+			update( node );
+		}
+
+		for ( final ContentNode node : changeSet.getPropertyChangedNodes() )
+		{
+			update( node );
+		}
+	}
+
+	@Override
+	public void ambientLightChanged( final SceneUpdateEvent event )
+	{
+	}
+
+	@Override
+	public void animationStarted( final SceneUpdateEvent event )
+	{
+	}
+
+	@Override
+	public void animationStopped( final SceneUpdateEvent event )
+	{
+	}
+
+	/**
+	 * Tests bounds during a query.
+	 */
+	private interface Predicate
+	{
+		/**
+		 * Tests the given bounds.
+		 *
+		 * @param minX Minimum X coordinate.
+		 * @param minY Minimum Y coordinate.
+		 * @param minZ Minimum Z coordinate.
+		 * @param maxX Maximum X coordinate.
+		 * @param maxY Maximum Y coordinate.
+		 * @param maxZ Maximum Z coordinate.
+		 *
+		 * @return <code>true</code> if the bounds match the query.
+		 */
+		boolean test( double minX, double minY, double minZ, double maxX, double maxY, double maxZ );
+	}
+
+	/**
+	 * Entry in the priority queue used by {@link #queryNearest}.
+	 */
+	private static class QueueEntry
+	implements Comparable<QueueEntry>
+	{
+		/**
+		 * Tree node.
+		 */
+		final TreeNode _node;
+
+		/**
+		 * Whether the distance is that of the content node itself, as opposed
+		 * to the (enlarged) bounds of the tree node.
+		 */
+		final boolean _exact;
+
+		/**
+		 * Squared distance from the query point.
+		 */
+		final double _distanceSquared;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param node            Tree node.
+		 * @param exact           Whether the distance is exact.
+		 * @param distanceSquared Squared distance from the query point.
+		 */
+		QueueEntry( final TreeNode node, final boolean exact, final double distanceSquared )
+		{
+			_node = node;
+			_exact = exact;
+			_distanceSquared = distanceSquared;
+		}
+
+		@Override
+		public int compareTo( final QueueEntry other )
+		{
+			return Double.compare( _distanceSquared, other._distanceSquared );
+		}
+	}
+
+	/**
+	 * Node in the bounding volume hierarchy.
+	 */
+	private static class TreeNode
+	{
+		/**
+		 * Parent node; <code>null</code> for the root.
+		 */
+		TreeNode _parent = null;
+
+		/**
+		 * First child; <code>null</code> for leaves.
+		 */
+		TreeNode _child1 = null;
+
+		/**
+		 * Second child; <code>null</code> for leaves.
+		 */
+		TreeNode _child2 = null;
+
+		/**
+		 * Height of the subtree; <code>0</code> for leaves.
+		 */
+		int _height = 0;
+
+		/**
+		 * Content node; only set for leaves.
+		 */
+		ContentNode _contentNode = null;
+
+		/**
+		 * World-space bounds of the content node; only set for leaves.
+		 */
+		Bounds3D _bounds = null;
+
+		/**
+		 * Bounds of the subtree. For leaves, these are the enlarged bounds of
+		 * the content node.
+		 */
+		double _minX;
+
+		/**
+		 * Bounds of the subtree.
+		 */
+		double _minY;
+
+		/**
+		 * Bounds of the subtree.
+		 */
+		double _minZ;
+
+		/**
+		 * Bounds of the subtree.
+		 */
+		double _maxX;
+
+		/**
+		 * Bounds of the subtree.
+		 */
+		double _maxY;
+
+		/**
+		 * Bounds of the subtree.
+		 */
+		double _maxZ;
+
+		boolean isLeaf()
+		{
+			return ( _child1 == null );
+		}
+
+		/**
+		 * Sets the bounds of a leaf, enlarged by a margin.
+		 *
+		 * @param bounds World-space bounds of the content node.
+		 */
+		void setEnlargedBounds( @NotNull final Bounds3D bounds )
+		{
+			final double marginX = MARGIN * bounds.sizeX();
+			final double marginY = MARGIN * bounds.sizeY();
+			final double marginZ = MARGIN * bounds.sizeZ();
+			_bounds = bounds;
+			_minX = bounds.v1.x - marginX;
+			_minY = bounds.v1.y - marginY;
+			_minZ = bounds.v1.z - marginZ;
+			_maxX = bounds.v2.x + marginX;
+			_maxY = bounds.v2.y + marginY;
+			_maxZ = bounds.v2.z + marginZ;
+		}
+
+		/**
+		 * Sets the bounds to the union of the bounds of two nodes.
+		 *
+		 * @param node1 First node.
+		 * @param node2 Second node.
+		 */
+		void setUnion( @NotNull final TreeNode node1, @NotNull final TreeNode node2 )
+		{
+			_minX = Math.min( node1._minX, node2._minX );
+			_minY = Math.min( node1._minY, node2._minY );
+			_minZ = Math.min( node1._minZ, node2._minZ );
+			_maxX = Math.max( node1._maxX, node2._maxX );
+			_maxY = Math.max( node1._maxY, node2._maxY );
+			_maxZ = Math.max( node1._maxZ, node2._maxZ );
+		}
+
+		/**
+		 * Returns whether the bounds of this node contain the given bounds.
+		 *
+		 * @param bounds Bounds to test.
+		 *
+		 * @return <code>true</code> if the bounds are contained.
+		 */
+		boolean contains( @NotNull final Bounds3D bounds )
+		{
+			return ( bounds.v1.x >= _minX ) && ( bounds.v1.y >= _minY ) && ( bounds.v1.z >= _minZ ) &&
+			       ( bounds.v2.x <= _maxX ) && ( bounds.v2.y <= _maxY ) && ( bounds.v2.z <= _maxZ );
+		}
+
+		/**
+		 * Replaces a child of this node.
+		 *
+		 * @param oldChild Child to replace.
+		 * @param newChild Child to replace it with.
+		 */
+		void replaceChild( @NotNull final TreeNode oldChild, @NotNull final TreeNode newChild )
+		{
+			//noinspection ObjectEquality
+			if ( _child1 == oldChild )
+			{
+				_child1 = newChild;
+			}
+			else
+			{
+				_child2 = newChild;
+			}
+		}
+
+		/**
+		 * Returns the surface area of the bounds of this node.
+		 *
+		 * @return Surface area.
+		 */
+		double getSurfaceArea()
+		{
+			final double dx = _maxX - _minX;
+			final double dy = _maxY - _minY;
+			final double dz = _maxZ - _minZ;
+			return 2.0 * ( dx * dy + dy * dz + dz * dx );
+		}
+
+		/**
+		 * Returns the surface area of the union of the bounds of this node and
+		 * another node.
+		 *
+		 * @param other Other node.
+		 *
+		 * @return Surface area of the union.
+		 */
+		double getCombinedSurfaceArea( @NotNull final TreeNode other )
+		{
+			final double dx = Math.max( _maxX, other._maxX ) - Math.min( _minX, other._minX );
+			final double dy = Math.max( _maxY, other._maxY ) - Math.min( _minY, other._minY );
+			final double dz = Math.max( _maxZ, other._maxZ ) - Math.min( _minZ, other._minZ );
+			return 2.0 * ( dx * dy + dy * dz + dz * dx );
+		}
+
+		/**
+		 * Returns the squared distance from a point to the bounds of this node.
+		 *
+		 * @param x X coordinate of the point.
+		 * @param y Y coordinate of the point.
+		 * @param z Z coordinate of the point.
+		 *
+		 * @return Squared distance.
+		 */
+		double getDistanceSquared( final double x, final double y, final double z )
+		{
+			return SceneSpatialIndex.getDistanceSquared( x, y, z, _minX, _minY, _minZ, _maxX, _maxY, _maxZ );
+		}
+	}
+}
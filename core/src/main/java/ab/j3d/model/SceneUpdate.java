@@ -42,6 +42,12 @@ public class SceneUpdate
 	 */
 	private final int _sequenceNumber;
 
+	/**
+	 * Scene version that first included the update; <code>-1</code> if the
+	 * update was not run yet.
+	 */
+	private volatile int _version = -1;
+
 	/**
 	 * Changes included in the update.
 	 */
@@ -105,18 +111,52 @@ public class SceneUpdate
 
 		if ( !_updates.isEmpty() )
 		{
-			for ( final NodeUpdate update : _updates )
+			scene.beginTransaction();
+			try
 			{
-				try
-				{
-					update.update( scene );
-				}
-				catch ( Exception e )
+				for ( final NodeUpdate update : _updates )
 				{
-					throw new RuntimeException( e );
+					try
+					{
+						update.update( scene );
+					}
+					catch ( Exception e )
+					{
+						throw new RuntimeException( e );
+					}
 				}
 			}
+			finally
+			{
+				scene.commitTransaction();
+			}
 		}
+
+		_version = scene.getVersion();
+	}
+
+	/**
+	 * Returns the sequence number of the update, with respect to other
+	 * updates.
+	 *
+	 * @return  Sequence number.
+	 */
+	public int getSequenceNumber()
+	{
+		return _sequenceNumber;
+	}
+
+	/**
+	 * Returns the version of the scene that first included this update. Any
+	 * {@link SceneSnapshot} with at least this version reflects the update.
+	 *
+	 * @return  Scene version; <code>-1</code> if the update was not run yet.
+	 *
+	 * @see     Scene#getSnapshot()
+	 */
+	public int getVersion()
+	{
+		return _version;
 	}
 
 	/**
@@ -66,6 +66,12 @@ public class SceneUpdateEvent
 	 */
 	public static final int ANIMATION_STOPPED = 6;
 
+	/**
+	 * ID for event to indicate that any number of content nodes were added,
+	 * removed or updated during a transaction.
+	 */
+	public static final int CONTENT_NODES_CHANGED = 7;
+
 	/**
 	 * Serialized data version.
 	 */
@@ -81,6 +87,11 @@ public class SceneUpdateEvent
 	 */
 	private final ContentNode _node;
 
+	/**
+	 * Related change set.
+	 */
+	private final transient SceneChangeSet _changeSet;
+
 	/**
 	 * Construct event.
 	 *
@@ -93,6 +104,21 @@ public class SceneUpdateEvent
 		super( scene );
 		_id = id;
 		_node = node;
+		_changeSet = null;
+	}
+
+	/**
+	 * Construct event for changes made during a transaction.
+	 *
+	 * @param   scene       Origin of event.
+	 * @param   changeSet   Changes made during the transaction.
+	 */
+	public SceneUpdateEvent( final Scene scene, final SceneChangeSet changeSet )
+	{
+		super( scene );
+		_id = CONTENT_NODES_CHANGED;
+		_node = null;
+		_changeSet = changeSet;
 	}
 
 	/**
@@ -114,4 +140,15 @@ public class SceneUpdateEvent
 	{
 		return _node;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Get related change set. Only available for events with ID
+	 * {@link #CONTENT_NODES_CHANGED}.
+	 *
+	 * @return  Related change set.
+	 */
+	public SceneChangeSet getChangeSet()
+	{
+		return _changeSet;
+	}
+}
@@ -60,6 +60,43 @@ public interface SceneUpdateListener
 	 */
 	void contentNodePropertyChanged( SceneUpdateEvent event );
 
+	/**
+	 * Called to notify the listener that content nodes were added, removed or
+	 * updated during a transaction. The changes are available from
+	 * {@link SceneUpdateEvent#getChangeSet()}.
+	 *
+	 * The default implementation notifies this listener of each change
+	 * individually. Listeners should override this method if they can handle
+	 * many changes at once more efficiently.
+	 *
+	 * @param   event   Event from {@link Scene}.
+	 */
+	default void contentNodesChanged( final SceneUpdateEvent event )
+	{
+		final Scene scene = (Scene)event.getSource();
+		final SceneChangeSet changeSet = event.getChangeSet();
+
+		for ( final ContentNode node : changeSet.getRemovedNodes() )
+		{
+			contentNodeRemoved( new SceneUpdateEvent( scene, SceneUpdateEvent.CONTENT_NODE_REMOVED, node ) );
+		}
+
+		for ( final ContentNode node : changeSet.getAddedNodes() )
+		{
+			contentNodeAdded( new SceneUpdateEvent( scene, SceneUpdateEvent.CONTENT_NODE_ADDED, node ) );
+		}
+
+		for ( final ContentNode node : changeSet.getContentUpdatedNodes() )
+		{
+			contentNodeContentUpdated( new SceneUpdateEvent( scene, SceneUpdateEvent.CONTENT_NODE_CONTENT_UPDATED, node ) );
+		}
+
+		for ( final ContentNode node : changeSet.getPropertyChangedNodes() )
+		{
+			contentNodePropertyChanged( new SceneUpdateEvent( scene, SceneUpdateEvent.CONTENT_NODE_PROPERTY_CHANGED, node ) );
+		}
+	}
+
 	/**
 	 * Notifies the listener that the ambient light in the scene has changed.
 	 *
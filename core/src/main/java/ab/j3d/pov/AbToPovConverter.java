@@ -48,7 +48,7 @@ public class AbToPovConverter
 	 * @return {@code true} if the {@link Object3D} contains multiple materials
 	 * and/or maps; {@code false} otherwise.
 	 */
-	private static boolean containsMultipleMaterialsOrMaps( final @NotNull Object3D object )
+	static boolean containsMultipleMaterialsOrMaps( final @NotNull Object3D object )
 	{
 		boolean result = false;
 
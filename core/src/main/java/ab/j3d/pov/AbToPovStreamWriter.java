@@ -0,0 +1,819 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.pov;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import ab.j3d.*;
+import ab.j3d.appearance.*;
+import ab.j3d.awt.view.*;
+import ab.j3d.geom.*;
+import ab.j3d.model.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Writes a 3D scene from {@code ab.j3d.model} as a POV-Ray scene without
+ * building a complete {@link PovScene} first. This produces the same
+ * declarations and instances as {@link AbToPovConverter} followed by
+ * {@link PovScene#write}, but {@code mesh2} blocks are written directly from
+ * {@link Object3D} data and textures are declared when they are first used.
+ *
+ * Declared geometry is encoded in parallel. Each declaration is encoded into
+ * a separate chunk and chunks are written in the same order as they would be
+ * by {@link PovScene}. The number of pending chunks is limited, so memory use
+ * does not depend on the size of the scene.
+ *
+ * @author Peter S. Heijnen
+ */
+public class AbToPovStreamWriter
+{
+	/**
+	 * Scene that provides settings, cameras and any additional geometry.
+	 */
+	@NotNull
+	private final PovScene _povScene;
+
+	/**
+	 * Number of threads used to encode declared geometry; 1 to encode all
+	 * geometry on the calling thread. Geometry is encoded by the
+	 * {@link ParallelTools#getExecutor shared executor}, which determines the
+	 * actual number of threads.
+	 */
+	private int _threadCount = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Constructs a new writer.
+	 */
+	public AbToPovStreamWriter()
+	{
+		this( new PovScene() );
+	}
+
+	/**
+	 * Constructs a new writer.
+	 *
+	 * @param povScene Scene that provides settings, cameras and any additional
+	 *                 geometry to include in the output.
+	 */
+	public AbToPovStreamWriter( @NotNull final PovScene povScene )
+	{
+		_povScene = povScene;
+	}
+
+	@NotNull
+	public PovScene getPovScene()
+	{
+		return _povScene;
+	}
+
+	public int getThreadCount()
+	{
+		return _threadCount;
+	}
+
+	public void setThreadCount( final int threadCount )
+	{
+		if ( threadCount < 1 )
+		{
+			throw new IllegalArgumentException( "threadCount: " + threadCount );
+		}
+		_threadCount = threadCount;
+	}
+
+	/**
+	 * Writes the given scene to a file.
+	 *
+	 * @param scene          Scene to write.
+	 * @param file           File to write.
+	 * @param textureLibrary Texture library used to resolve textures to files;
+	 *                       if {@code null} texture names are used.
+	 *
+	 * @throws IOException when writing failed.
+	 */
+	public void write( @NotNull final Scene scene, @NotNull final File file, @Nullable final TextureLibrary textureLibrary )
+	throws IOException
+	{
+		try ( final Writer out = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ) ), 65536 ) )
+		{
+			write( scene, out, textureLibrary );
+		}
+	}
+
+	/**
+	 * Writes the given scene.
+	 *
+	 * @param scene          Scene to write.
+	 * @param out            Writer to use for output.
+	 * @param textureLibrary Texture library used to resolve textures to files;
+	 *                       if {@code null} texture names are used.
+	 *
+	 * @throws IOException when writing failed.
+	 */
+	public void write( @NotNull final Scene scene, @NotNull final Writer out, @Nullable final TextureLibrary textureLibrary )
+	throws IOException
+	{
+		final PovScene povScene = _povScene;
+		povScene.setAmbientLight( new PovVector( scene.getAmbientRed(), scene.getAmbientGreen(), scene.getAmbientBlue() ) );
+
+		final CollectingVisitor visitor = new CollectingVisitor();
+		scene.walk( visitor );
+
+		final List<PovGeometry> geometryList = new ArrayList<>( povScene.getGeometry() );
+		geometryList.addAll( visitor._geometry );
+		final PovGeometry[] geometry = geometryList.toArray( new PovGeometry[ geometryList.size() ] );
+		Arrays.sort( geometry );
+
+		final PovWriter povWriter = PovScene.getPovWriter( out, textureLibrary );
+		PovScene.writeFileHeader( povWriter );
+		povScene.writeAtmosphericEffects( povWriter );
+		povScene.writeGlobalSettings( povWriter );
+		PovScene.writeCameras( povWriter, geometry );
+		PovScene.writeLights( povWriter, geometry );
+		povScene.writeTextureDefs( povWriter );
+		writeDeclaredShapes( povWriter, visitor._declaredNodes );
+		PovScene.writeGeometry( povWriter, geometry );
+		povWriter.flush();
+	}
+
+	/**
+	 * Writes declarations for the given nodes.
+	 *
+	 * @param out           Writer to use for output.
+	 * @param declaredNodes Name of declared geometry for each node.
+	 *
+	 * @throws IOException when writing failed.
+	 */
+	private void writeDeclaredShapes( @NotNull final PovWriter out, @NotNull final Map<Node3D, String> declaredNodes )
+	throws IOException
+	{
+		if ( !declaredNodes.isEmpty() )
+		{
+			/*
+			 * Use the same order as 'PovScene.writeDeclaredShapes'.
+			 */
+			final List<Map.Entry<Node3D, String>> entries = new ArrayList<>( declaredNodes.entrySet() );
+			entries.sort( ( entry1, entry2 ) -> entry1.getValue().compareTo( entry2.getValue() ) );
+
+			final Set<String> declaredTextures = new HashSet<>( _povScene.getTextureCodes() );
+			final Map<String, PovTexture> textures = new ConcurrentHashMap<>();
+
+			out.writeln( "/*" );
+			out.writeln( " * Declared geometry" );
+			out.writeln( " */" );
+
+			final int threadCount = Math.min( _threadCount, entries.size() );
+			if ( threadCount > 1 )
+			{
+				final int maximumPending = threadCount * 4;
+				final Deque<Future<Chunk>> pending = new ArrayDeque<>( maximumPending );
+				try
+				{
+					for ( final Map.Entry<Node3D, String> entry : entries )
+					{
+						if ( pending.size() >= maximumPending )
+						{
+							writeChunk( out, ParallelTools.getResultWithIO( pending.removeFirst() ), declaredTextures );
+						}
+
+						final Node3D node = entry.getKey();
+						final String name = entry.getValue();
+						final TextureLibrary textureLibrary = out.getTextureLibrary();
+						final String indentString = out.getIndentString();
+						pending.addLast( ParallelTools.submit( () -> encode( node, name, textures, textureLibrary, indentString ) ) );
+					}
+
+					while ( !pending.isEmpty() )
+					{
+						writeChunk( out, ParallelTools.getResultWithIO( pending.removeFirst() ), declaredTextures );
+					}
+				}
+				finally
+				{
+					for ( final Future<Chunk> future : pending )
+					{
+						future.cancel( true );
+					}
+				}
+			}
+			else
+			{
+				for ( final Map.Entry<Node3D, String> entry : entries )
+				{
+					writeChunk( out, encode( entry.getKey(), entry.getValue(), textures, out.getTextureLibrary(), out.getIndentString() ), declaredTextures );
+				}
+			}
+
+			out.newLine();
+		}
+	}
+
+	/**
+	 * Writes an encoded chunk. Any textures used by the chunk are declared
+	 * first, unless they were declared before.
+	 *
+	 * @param out              Writer to use for output.
+	 * @param chunk            Chunk to write.
+	 * @param declaredTextures Names of textures that were declared already.
+	 *
+	 * @throws IOException when writing failed.
+	 */
+	private static void writeChunk( @NotNull final PovWriter out, @NotNull final Chunk chunk, @NotNull final Set<String> declaredTextures )
+	throws IOException
+	{
+		for ( final PovTexture texture : chunk._textures )
+		{
+			if ( declaredTextures.add( texture.getName() ) )
+			{
+				texture.declare( out );
+				out.newLine();
+			}
+		}
+
+		out.write( chunk._text );
+	}
+
+	/**
+	 * Encodes the declaration of the given node.
+	 *
+	 * @param node           Node to encode.
+	 * @param name           Name of the declared geometry.
+	 * @param textures       Textures that were converted, by name.
+	 * @param textureLibrary Texture library used to resolve textures to files.
+	 * @param indentString   String used for indentation.
+	 *
+	 * @return Encoded chunk.
+	 *
+	 * @throws IOException when writing failed.
+	 */
+	@NotNull
+	static Chunk encode( @NotNull final Node3D node, @NotNull final String name, @NotNull final Map<String, PovTexture> textures, @Nullable final TextureLibrary textureLibrary, @NotNull final String indentString )
+	throws IOException
+	{
+		final StringWriter stringWriter = new StringWriter();
+		final PovWriter out = new PovWriter( stringWriter, textureLibrary, indentString );
+		final List<PovTexture> usedTextures = new ArrayList<>();
+
+		out.write( "#declare " );
+		out.write( PovDeclared.getDeclaredName( name ) );
+		out.write( " =" );
+		out.newLine();
+		out.indentIn();
+
+		final Object3D object = (Object3D)node;
+		if ( isPrimitive( object ) && !AbToPovConverter.containsMultipleMaterialsOrMaps( object ) )
+		{
+			final AbToPovConverter converter = new AbToPovConverter();
+
+			final PovGeometry geometry;
+			if ( object instanceof Box3D )
+			{
+				geometry = converter.convertBox3D( (Box3D)object );
+			}
+			else if ( object instanceof Cone3D )
+			{
+				geometry = converter.convertCone3D( (Cone3D)object );
+			}
+			else if ( object instanceof Cylinder3D )
+			{
+				geometry = converter.convertCylinder3D( (Cylinder3D)object );
+			}
+			else
+			{
+				geometry = converter.convertSphere3D( (Sphere3D)object );
+			}
+
+			if ( geometry == null )
+			{
+				throw new AssertionError( "Node without geometry was declared: " + node );
+			}
+
+			final PovTexture texture = geometry.getTexture();
+			if ( texture != null )
+			{
+				usedTextures.add( texture );
+			}
+
+			geometry.setName( name );
+			geometry.write( out );
+		}
+		else
+		{
+			writeMesh2( out, object, name, textures, usedTextures );
+		}
+
+		out.indentOut();
+		out.flush();
+		return new Chunk( stringWriter.toString(), usedTextures );
+	}
+
+	/**
+	 * Writes a {@code mesh2} block for the given object. The output is the
+	 * same as for a {@link PovMesh2} created by
+	 * {@link AbToPovConverter#convertObject3D}.
+	 *
+	 * @param out          Writer to use for output.
+	 * @param object       Object to write.
+	 * @param name         Name of the mesh.
+	 * @param textures     Textures that were converted, by name.
+	 * @param usedTextures Receives the textures used by the mesh.
+	 *
+	 * @throws IOException when writing failed.
+	 */
+	private static void writeMesh2( @NotNull final PovWriter out, @NotNull final Object3D object, @NotNull final String name, @NotNull final Map<String, PovTexture> textures, @NotNull final List<PovTexture> usedTextures )
+	throws IOException
+	{
+		final Map<Vector3D, Integer> uvIndices = new HashMap<>();
+		final List<Vector3D> uvVectors = new ArrayList<>();
+		final Map<Vector3D, Integer> normalIndices = new HashMap<>();
+		final List<Vector3D> normalVectors = new ArrayList<>();
+
+		/*
+		 * Triangles with UV-coordinates are written first, without changing
+		 * the order otherwise. Each triangle consists of 3 vertex, 3 UV and
+		 * 3 normal indices, followed by a texture index.
+		 */
+		final IntArray uvTriangles = new IntArray();
+		final IntArray otherTriangles = new IntArray();
+
+		int textureIndex = 0;
+		boolean uvMapping = false;
+		Appearance lastAppearance = null;
+
+		for ( final FaceGroup faceGroup : object.getFaceGroups() )
+		{
+			final Appearance appearance = faceGroup.getAppearance();
+			if ( appearance != null )
+			{
+				final boolean smooth = faceGroup.isSmooth();
+
+				if ( appearance != lastAppearance )
+				{
+					uvMapping = ( appearance.getColorMap() != null );
+
+					final PovTexture texture = textures.computeIfAbsent( PovTexture.getName( appearance ), key -> {
+						final PovTexture result = new PovTexture( appearance );
+						result.setDeclared();
+						return result;
+					} );
+
+					textureIndex = usedTextures.indexOf( texture );
+					if ( textureIndex < 0 )
+					{
+						textureIndex = usedTextures.size();
+						usedTextures.add( texture );
+					}
+
+					lastAppearance = appearance;
+				}
+
+				final IntArray triangleData = uvMapping ? uvTriangles : otherTriangles;
+
+				for ( final Face3D face : faceGroup.getFaces() )
+				{
+					final Tessellation tessellation = face.getTessellation();
+					for ( final TessellationPrimitive primitive : tessellation.getPrimitives() )
+					{
+						final int[] triangles = primitive.getTriangles();
+						for ( final int vertexIndex : triangles )
+						{
+							final Vertex3D vertex = face.getVertex( vertexIndex );
+							triangleData.add( vertex.vertexCoordinateIndex );
+							triangleData.add( uvMapping ? getOrAddIndex( uvIndices, uvVectors, new Vector3D( (double)vertex.colorMapU, (double)vertex.colorMapV, 0.0 ) ) : -1 );
+							triangleData.add( smooth ? getOrAddIndex( normalIndices, normalVectors, face.getVertexNormal( vertexIndex ) ) : 0 );
+
+							if ( ( triangleData.getSize() % 10 ) == 9 )
+							{
+								triangleData.add( textureIndex );
+							}
+						}
+					}
+				}
+			}
+		}
+
+		final int triangleCount = ( uvTriangles.getSize() + otherTriangles.getSize() ) / 10;
+		if ( triangleCount == 0 )
+		{
+			throw new AssertionError( "Object without triangles was declared: " + object );
+		}
+
+		final boolean hasUV = ( uvVectors.size() > 1 );
+		final boolean hasNormals = ( normalVectors.size() > 1 );
+		final int textureCount = usedTextures.size();
+
+		out.write( "mesh2 // " );
+		out.write( name );
+		out.newLine();
+		out.writeln( "{" );
+		out.indentIn();
+
+		/*
+		 * vertex_vectors
+		 */
+		final List<Vector3D> vertexCoordinates = object.getVertexCoordinates();
+		writeSectionStart( out, "vertex_vectors", vertexCoordinates.size() );
+		for ( int i = 0; i < vertexCoordinates.size(); i++ )
+		{
+			writeElementSeparator( out, 3, i );
+			final Vector3D point = vertexCoordinates.get( i );
+			writeVector( out, point.x, point.y, point.z );
+		}
+		writeSectionEnd( out );
+
+		/*
+		 * uv_vectors
+		 */
+		if ( hasUV )
+		{
+			writeSectionStart( out, "uv_vectors", uvVectors.size() );
+			for ( int i = 0; i < uvVectors.size(); i++ )
+			{
+				writeElementSeparator( out, 3, i );
+				final Vector3D uv = uvVectors.get( i );
+				out.write( '<' );
+				out.write( out.format( uv.x ) );
+				out.write( ',' );
+				out.write( out.format( uv.y ) );
+				out.write( '>' );
+			}
+			writeSectionEnd( out );
+		}
+
+		/*
+		 * normal_vectors
+		 */
+		if ( hasNormals )
+		{
+			writeSectionStart( out, "normal_vectors", normalVectors.size() );
+			for ( int i = 0; i < normalVectors.size(); i++ )
+			{
+				writeElementSeparator( out, 3, i );
+				final Vector3D normal = normalVectors.get( i );
+				writeVector( out, normal.x, normal.y, normal.z );
+			}
+			writeSectionEnd( out );
+		}
+
+		/*
+		 * texture_list
+		 */
+		if ( textureCount > 1 )
+		{
+			writeSectionStart( out, "texture_list", textureCount );
+			for ( final PovTexture texture : usedTextures )
+			{
+				texture.write( out );
+			}
+			out.indentOut();
+			out.writeln( "}" );
+		}
+
+		/*
+		 * face_indices
+		 */
+		writeSectionStart( out, "face_indices", triangleCount );
+		int elementIndex = 0;
+		for ( final IntArray triangleData : Arrays.asList( uvTriangles, otherTriangles ) )
+		{
+			final int[] data = triangleData.getData();
+			for ( int i = 0; i < triangleData.getSize(); i += 10 )
+			{
+				writeElementSeparator( out, 6, elementIndex++ );
+				writeIndices( out, data[ i ], data[ i + 3 ], data[ i + 6 ] );
+
+				if ( textureCount > 1 )
+				{
+					out.write( ',' );
+					out.write( Integer.toString( data[ i + 9 ] ) );
+				}
+			}
+		}
+		writeSectionEnd( out );
+
+		/*
+		 * uv_indices
+		 */
+		if ( hasUV )
+		{
+			writeSectionStart( out, "uv_indices", triangleCount );
+			elementIndex = 0;
+			for ( final IntArray triangleData : Arrays.asList( uvTriangles, otherTriangles ) )
+			{
+				final int[] data = triangleData.getData();
+				for ( int i = 0; i < triangleData.getSize(); i += 10 )
+				{
+					writeElementSeparator( out, 6, elementIndex++ );
+					if ( data[ i + 1 ] >= 0 )
+					{
+						writeIndices( out, data[ i + 1 ], data[ i + 4 ], data[ i + 7 ] );
+					}
+					else
+					{
+						out.write( "<0,0,0>" );
+					}
+				}
+			}
+			writeSectionEnd( out );
+		}
+
+		/*
+		 * normal_indices
+		 */
+		if ( hasNormals )
+		{
+			writeSectionStart( out, "normal_indices", triangleCount );
+			elementIndex = 0;
+			for ( final IntArray triangleData : Arrays.asList( uvTriangles, otherTriangles ) )
+			{
+				final int[] data = triangleData.getData();
+				for ( int i = 0; i < triangleData.getSize(); i += 10 )
+				{
+					writeElementSeparator( out, 3, elementIndex++ );
+					writeIndices( out, data[ i + 2 ], data[ i + 5 ], data[ i + 8 ] );
+				}
+			}
+			writeSectionEnd( out );
+		}
+
+		if ( hasUV )
+		{
+			out.writeln( "uv_mapping" );
+		}
+
+		if ( textureCount == 1 )
+		{
+			usedTextures.get( 0 ).write( out );
+		}
+
+		out.indentOut();
+		out.writeln( "}" );
+	}
+
+	/**
+	 * Returns the index of the given vector, adding it if needed.
+	 *
+	 * @param indices Index of each vector.
+	 * @param vectors Vectors in order of their index.
+	 * @param vector  Vector to get the index of.
+	 *
+	 * @return Index of the vector.
+	 */
+	private static int getOrAddIndex( @NotNull final Map<Vector3D, Integer> indices, @NotNull final List<Vector3D> vectors, @NotNull final Vector3D vector )
+	{
+		Integer result = indices.get( vector );
+		if ( result == null )
+		{
+			result = vectors.size();
+			indices.put( vector, result );
+			vectors.add( vector );
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the start of a {@code mesh2} section, including the element count.
+	 *
+	 * @param out   Writer to use for output.
+	 * @param name  Name of the section.
+	 * @param count Number of elements.
+	 *
+	 * @throws IOException when writing failed.
+	 */
+	private static void writeSectionStart( @NotNull final PovWriter out, @NotNull final String name, final int count )
+	throws IOException
+	{
+		out.writeln( name );
+		out.writeln( "{" );
+		out.indentIn();
+		out.write( Integer.toString( count ) );
+		out.write( ',' );
+		out.newLine();
+	}
+
+	/**
+	 * Writes the end of a {@code mesh2} section.
+	 *
+	 * @param out Writer to use for output.
+	 *
+	 * @throws IOException when writing failed.
+	 */
+	private static void writeSectionEnd( @NotNull final PovWriter out )
+	throws IOException
+	{
+		out.newLine();
+		out.indentOut();
+		out.writeln( "}" );
+	}
+
+	/**
+	 * Writes a vector in the same format as {@link PovVector#write}.
+	 *
+	 * @param out Writer to use for output.
+	 * @param x   X component.
+	 * @param y   Y component.
+	 * @param z   Z component.
+	 *
+	 * @throws IOException when writing failed.
+	 */
+	private static void writeVector( @NotNull final PovWriter out, final double x, final double y, final double z )
+	throws IOException
+	{
+		out.write( '<' );
+		out.write( out.format( x ) );
+		out.write( ',' );
+		out.write( out.format( y ) );
+		out.write( ',' );
+		out.write( out.format( z ) );
+		out.write( '>' );
+	}
+
+	/**
+	 * Writes a triplet of indices.
+	 *
+	 * @param out Writer to use for output.
+	 * @param i1  First index.
+	 * @param i2  Second index.
+	 * @param i3  Third index.
+	 *
+	 * @throws IOException when writing failed.
+	 */
+	private static void writeIndices( @NotNull final PovWriter out, final int i1, final int i2, final int i3 )
+	throws IOException
+	{
+		out.write( '<' );
+		out.write( Integer.toString( i1 ) );
+		out.write( ',' );
+		out.write( Integer.toString( i2 ) );
+		out.write( ',' );
+		out.write( Integer.toString( i3 ) );
+		out.write( '>' );
+	}
+
+	/**
+	 * Writes a separator between elements, like {@link PovMesh2} does.
+	 *
+	 * @param out             Writer to use for output.
+	 * @param elementsPerLine Number of elements per line.
+	 * @param elementIndex    Index of the element that follows.
+	 *
+	 * @throws IOException when writing failed.
+	 */
+	private static void writeElementSeparator( @NotNull final PovWriter out, final int elementsPerLine, final int elementIndex )
+	throws IOException
+	{
+		if ( elementIndex > 0 )
+		{
+			if ( ( elementIndex % elementsPerLine ) == 0 )
+			{
+				out.writeln( "," );
+			}
+			else
+			{
+				out.write( ", " );
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the given object is converted to a POV-Ray primitive if
+	 * it has a single material.
+	 *
+	 * @param object Object to check.
+	 *
+	 * @return {@code true} if the object is a primitive.
+	 */
+	private static boolean isPrimitive( @NotNull final Object3D object )
+	{
+		return ( object instanceof Box3D ) || ( object instanceof Cone3D ) || ( object instanceof Cylinder3D ) || ( object instanceof Sphere3D );
+	}
+
+	/**
+	 * Returns whether {@link AbToPovConverter} produces any geometry for the
+	 * given node.
+	 *
+	 * @param node Node to check.
+	 *
+	 * @return {@code true} if the node produces geometry.
+	 */
+	static boolean hasGeometry( @NotNull final Node3D node )
+	{
+		boolean result = false;
+
+		if ( node instanceof Object3D )
+		{
+			final Object3D object = (Object3D)node;
+			if ( isPrimitive( object ) && !AbToPovConverter.containsMultipleMaterialsOrMaps( object ) )
+			{
+				result = ( object.getFaceGroups().get( 0 ).getAppearance() != null );
+			}
+			else
+			{
+				for ( final FaceGroup faceGroup : object.getFaceGroups() )
+				{
+					if ( faceGroup.getAppearance() != null )
+					{
+						for ( final Face3D face : faceGroup.getFaces() )
+						{
+							for ( final TessellationPrimitive primitive : face.getTessellation().getPrimitives() )
+							{
+								if ( primitive.getTriangles().length > 0 )
+								{
+									result = true;
+									break;
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Encoded declaration.
+	 */
+	static class Chunk
+	{
+		/**
+		 * Encoded text.
+		 */
+		final String _text;
+
+		/**
+		 * Textures used by the declaration.
+		 */
+		final List<PovTexture> _textures;
+
+		/**
+		 * Constructs a new chunk.
+		 *
+		 * @param text     Encoded text.
+		 * @param textures Textures used by the declaration.
+		 */
+		Chunk( final String text, final List<PovTexture> textures )
+		{
+			_text = text;
+			_textures = textures;
+		}
+	}
+
+	/**
+	 * Collects lights, declared nodes and instances, using the same naming
+	 * rules as {@link AbToPovConverter}.
+	 */
+	private static class CollectingVisitor
+	implements Node3DVisitor
+	{
+		/**
+		 * Name of declared geometry for each node.
+		 */
+		private final Map<Node3D, String> _declaredNodes = new HashMap<>();
+
+		/**
+		 * Lights and instances of declared geometry.
+		 */
+		private final List<PovGeometry> _geometry = new ArrayList<>();
+
+		public boolean visitNode( final @NotNull Node3DPath path )
+		{
+			final Node3D node = path.getNode();
+
+			if ( node instanceof Light3D )
+			{
+				_geometry.add( AbToPovConverter.convertLight3D( path.getTransform(), (Light3D)node ) );
+			}
+			else
+			{
+				final String name = _declaredNodes.computeIfAbsent( node, n -> hasGeometry( n ) ? "geometry" + _declaredNodes.size() : null );
+				if ( name != null )
+				{
+					final PovDeclared object = new PovDeclared( name );
+					object.setTransform( new PovMatrix( path.getTransform() ) );
+					_geometry.add( object );
+				}
+			}
+
+			return true;
+		}
+	}
+}
@@ -111,6 +111,12 @@ public class PovWriter
 		return _textureLibrary;
 	}
 
+	@NotNull
+	public String getIndentString()
+	{
+		return _indentString;
+	}
+
 	/**
 	 * Before every output is written, this method is called to check if
 	 * indenting should be performed (_beginningOfLine). If so, sufficient
@@ -232,7 +238,55 @@ public class PovWriter
 	 */
 	protected String format( final double value )
 	{
-		return _floatFormat.format( value + 0.0 ); // Prevent negative zero.
+		final String result;
+
+		/*
+		 * Fast path that produces the same output as the number format. Values
+		 * that are too large or too close to a rounding tie are left to the
+		 * number format, which rounds the exact binary value (half-even).
+		 */
+		final double scaled = Math.abs( value ) * 100000.0;
+		final double fraction = scaled - Math.floor( scaled );
+		if ( ( scaled < 1.0e15 ) && ( Math.abs( fraction - 0.5 ) > Math.ulp( scaled ) ) )
+		{
+			final long rounded = (long)Math.rint( scaled );
+			final long integerPart = rounded / 100000L;
+			int fractionPart = (int)( rounded % 100000L );
+
+			final StringBuilder sb = new StringBuilder( 24 );
+			if ( value < 0.0 )
+			{
+				sb.append( '-' );
+			}
+			sb.append( integerPart );
+			sb.append( '.' );
+
+			if ( fractionPart == 0 )
+			{
+				sb.append( '0' );
+			}
+			else
+			{
+				int divisor = 10000;
+				while ( ( fractionPart % 10 ) == 0 )
+				{
+					fractionPart /= 10;
+					divisor /= 10;
+				}
+
+				for ( ; divisor > 0; divisor /= 10 )
+				{
+					sb.append( (char)( '0' + ( fractionPart / divisor ) % 10 ) );
+				}
+			}
+			result = sb.toString();
+		}
+		else
+		{
+			result = _floatFormat.format( value + 0.0 ); // Prevent negative zero.
+		}
+
+		return result;
 	}
 
 	/**
@@ -0,0 +1,355 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import java.awt.image.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.imageio.*;
+
+import ab.j3d.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Renders many images of the same scene, e.g. from different camera positions
+ * or with different sizes. Compared to calling {@link
+ * OffscreenView3D#renderImage} for each image, preparation of the scene is
+ * shared by all images (see {@link OffscreenView3D#beginBatch}) and encoding
+ * of images is performed by worker threads while the next image is being
+ * rendered.
+ * <p>
+ * The view settings that are changed by a batch (view transform, projection
+ * settings and size) are restored when the batch is finished. The scene
+ * should not be modified while a batch is being rendered.
+ *
+ * @author Peter S. Heijnen
+ */
+public class BatchRenderer
+{
+	/**
+	 * View used to render images.
+	 */
+	@NotNull
+	private final OffscreenView3D _view;
+
+	/**
+	 * Number of threads used to encode images; 0 to encode images on the
+	 * rendering thread. Images are encoded by the
+	 * {@link ParallelTools#getExecutor shared executor}, which determines the
+	 * actual number of threads.
+	 */
+	private int _encoderThreadCount = Math.max( 1, Runtime.getRuntime().availableProcessors() - 1 );
+
+	/**
+	 * Maximum number of images that are rendered ahead of the listener.
+	 */
+	private int _maximumPendingShots = 2 * _encoderThreadCount + 1;
+
+	/**
+	 * Constructs a new batch renderer.
+	 *
+	 * @param view View used to render images.
+	 */
+	public BatchRenderer( @NotNull final OffscreenView3D view )
+	{
+		_view = view;
+	}
+
+	/**
+	 * Returns the view used to render images.
+	 *
+	 * @return View used to render images.
+	 */
+	@NotNull
+	public OffscreenView3D getView()
+	{
+		return _view;
+	}
+
+	/**
+	 * Returns the number of threads used to encode images.
+	 *
+	 * @return Number of encoder threads; 0 if images are encoded by the
+	 * rendering thread.
+	 */
+	public int getEncoderThreadCount()
+	{
+		return _encoderThreadCount;
+	}
+
+	/**
+	 * Sets the number of threads used to encode images.
+	 *
+	 * @param encoderThreadCount Number of encoder threads; 0 to encode images
+	 *                           on the rendering thread.
+	 */
+	public void setEncoderThreadCount( final int encoderThreadCount )
+	{
+		if ( encoderThreadCount < 0 )
+		{
+			throw new IllegalArgumentException( "encoderThreadCount: " + encoderThreadCount );
+		}
+		_encoderThreadCount = encoderThreadCount;
+	}
+
+	/**
+	 * Returns the maximum number of images that may be rendered before the
+	 * listener has received them. This limits memory usage when encoding or
+	 * the listener is slower than rendering.
+	 *
+	 * @return Maximum number of pending images.
+	 */
+	public int getMaximumPendingShots()
+	{
+		return _maximumPendingShots;
+	}
+
+	/**
+	 * Sets the maximum number of images that may be rendered before the
+	 * listener has received them.
+	 *
+	 * @param maximumPendingShots Maximum number of pending images.
+	 */
+	public void setMaximumPendingShots( final int maximumPendingShots )
+	{
+		if ( maximumPendingShots < 1 )
+		{
+			throw new IllegalArgumentException( "maximumPendingShots: " + maximumPendingShots );
+		}
+		_maximumPendingShots = maximumPendingShots;
+	}
+
+	/**
+	 * Renders images for the given shots.
+	 *
+	 * @param shots    Shots to render.
+	 * @param listener Receives rendered images.
+	 *
+	 * @throws IOException if the listener throws an exception.
+	 */
+	public void render( @NotNull final List<RenderShot> shots, @NotNull final RenderShotListener<BufferedImage> listener )
+	throws IOException
+	{
+		final OffscreenView3D view = _view;
+		final ViewState state = new ViewState( view );
+		view.beginBatch();
+		try
+		{
+			for ( int i = 0; i < shots.size(); i++ )
+			{
+				final RenderShot shot = shots.get( i );
+				listener.shotRendered( i, shot, renderShot( shot, state ) );
+			}
+		}
+		finally
+		{
+			view.endBatch();
+			state.restore( view );
+		}
+	}
+
+	/**
+	 * Renders images for the given shots and encodes them using
+	 * {@link ImageIO}. Images are encoded by worker threads, while rendering
+	 * continues with the next shot.
+	 *
+	 * @param shots      Shots to render.
+	 * @param formatName Informal name of the image format, e.g. "png".
+	 * @param listener   Receives encoded images.
+	 *
+	 * @throws IOException if encoding fails or the listener throws an
+	 * exception.
+	 */
+	public void renderEncoded( @NotNull final List<RenderShot> shots, @NotNull final String formatName, @NotNull final RenderShotListener<byte[]> listener )
+	throws IOException
+	{
+		final OffscreenView3D view = _view;
+		final boolean parallel = ( _encoderThreadCount > 0 );
+		final Deque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+
+		final ViewState state = new ViewState( view );
+		view.beginBatch();
+		try
+		{
+			int delivered = 0;
+			for ( final RenderShot shot : shots )
+			{
+				final Callable<byte[]> encoder = createEncoder( renderShot( shot, state ), formatName );
+
+				final Future<byte[]> future;
+				if ( parallel )
+				{
+					future = ParallelTools.submit( encoder );
+				}
+				else
+				{
+					final FutureTask<byte[]> task = new FutureTask<byte[]>( encoder );
+					task.run();
+					future = task;
+				}
+				pending.add( future );
+
+				while ( pending.size() >= _maximumPendingShots )
+				{
+					listener.shotRendered( delivered, shots.get( delivered ), ParallelTools.getResultWithIO( pending.removeFirst() ) );
+					delivered++;
+				}
+			}
+
+			while ( !pending.isEmpty() )
+			{
+				listener.shotRendered( delivered, shots.get( delivered ), ParallelTools.getResultWithIO( pending.removeFirst() ) );
+				delivered++;
+			}
+		}
+		finally
+		{
+			view.endBatch();
+			state.restore( view );
+
+			for ( final Future<byte[]> future : pending )
+			{
+				future.cancel( true );
+			}
+		}
+	}
+
+	/**
+	 * Renders an image for the given shot. Settings that are not specified
+	 * by the shot are taken from the view as it was before the batch, so the
+	 * result does not depend on the order of shots.
+	 *
+	 * @param shot     Shot to render.
+	 * @param defaults Settings of the view before the batch.
+	 *
+	 * @return Rendered image.
+	 */
+	@NotNull
+	private BufferedImage renderShot( @NotNull final RenderShot shot, @NotNull final ViewState defaults )
+	{
+		final OffscreenView3D view = _view;
+
+		final ProjectionPolicy projectionPolicy = shot.getProjectionPolicy();
+		view.setProjectionPolicy( ( projectionPolicy != null ) ? projectionPolicy : defaults._projectionPolicy );
+
+		final double fieldOfView = shot.getFieldOfView();
+		view.setFieldOfView( !Double.isNaN( fieldOfView ) ? fieldOfView : defaults._fieldOfView );
+
+		final double zoomFactor = shot.getZoomFactor();
+		view.setZoomFactor( !Double.isNaN( zoomFactor ) ? zoomFactor : defaults._zoomFactor );
+
+		view.setScene2View( shot.getScene2View() );
+		return view.renderImage( shot.getWidth(), shot.getHeight() );
+	}
+
+	/**
+	 * Creates a task that encodes the given image.
+	 *
+	 * @param image      Image to encode.
+	 * @param formatName Informal name of the image format.
+	 *
+	 * @return Encoder task.
+	 */
+	private static Callable<byte[]> createEncoder( @NotNull final BufferedImage image, @NotNull final String formatName )
+	{
+		return new Callable<byte[]>()
+		{
+			@Override
+			public byte[] call()
+			throws IOException
+			{
+				final ByteArrayOutputStream out = new ByteArrayOutputStream( image.getWidth() * image.getHeight() );
+				if ( !ImageIO.write( image, formatName, out ) )
+				{
+					throw new IOException( "No image writer for format: " + formatName );
+				}
+				return out.toByteArray();
+			}
+		};
+	}
+
+	/**
+	 * View settings that are changed by a batch.
+	 */
+	private static class ViewState
+	{
+		/**
+		 * Transformation from scene to view coordinates.
+		 */
+		private final Matrix3D _scene2view;
+
+		/**
+		 * Projection policy.
+		 */
+		private final ProjectionPolicy _projectionPolicy;
+
+		/**
+		 * Field of view in radians.
+		 */
+		private final double _fieldOfView;
+
+		/**
+		 * Zoom factor.
+		 */
+		private final double _zoomFactor;
+
+		/**
+		 * Width of the view.
+		 */
+		private final int _width;
+
+		/**
+		 * Height of the view.
+		 */
+		private final int _height;
+
+		/**
+		 * Stores the current settings of the given view.
+		 *
+		 * @param view View to store settings of.
+		 */
+		ViewState( @NotNull final OffscreenView3D view )
+		{
+			_scene2view = view.getScene2View();
+			_projectionPolicy = view.getProjectionPolicy();
+			_fieldOfView = view.getFieldOfView();
+			_zoomFactor = view.getZoomFactor();
+			_width = view.getWidth();
+			_height = view.getHeight();
+		}
+
+		/**
+		 * Restores the stored settings to the given view.
+		 *
+		 * @param view View to restore settings of.
+		 */
+		void restore( @NotNull final OffscreenView3D view )
+		{
+			view.setProjectionPolicy( _projectionPolicy );
+			view.setFieldOfView( _fieldOfView );
+			view.setZoomFactor( _zoomFactor );
+			view.setScene2View( _scene2view );
+			if ( ( _width > 0 ) && ( _height > 0 ) )
+			{
+				view.setSize( _width, _height );
+			}
+		}
+	}
+}
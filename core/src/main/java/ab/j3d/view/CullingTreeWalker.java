@@ -0,0 +1,207 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import ab.j3d.*;
+import ab.j3d.model.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Tree walker that skips subtrees that are outside the viewing frustum,
+ * using a {@link FrustumCuller}. Plane masks are propagated from parent to
+ * child, so a child only tests the planes that its parent intersects.
+ *
+ * @author Peter S. Heijnen
+ */
+public class CullingTreeWalker
+	extends Node3DTreeWalker
+{
+	/**
+	 * Performs culling; {@code null} to disable culling.
+	 */
+	@Nullable
+	private final FrustumCuller _culler;
+
+	/**
+	 * Content node that is being walked.
+	 */
+	private ContentNode _contentNode = null;
+
+	/**
+	 * Plane mask of the current node.
+	 */
+	private int _mask = FrustumCuller.ALL_PLANES;
+
+	/**
+	 * Constructs a new instance.
+	 *
+	 * @param culler Performs culling; {@code null} to disable culling.
+	 */
+	public CullingTreeWalker( @Nullable final FrustumCuller culler )
+	{
+		_culler = culler;
+	}
+
+	/**
+	 * Walks the scene graph of the given content node, skipping any parts of
+	 * it that are outside the viewing frustum.
+	 *
+	 * @param visitor     Visitor that will be called for each visited node.
+	 * @param contentNode Content node to walk.
+	 *
+	 * @return {@code true} if the tree walk was finished normally;
+	 * {@code false} if the tree walk was aborted.
+	 */
+	public boolean walkContentNode( @NotNull final Node3DVisitor visitor, @NotNull final ContentNode contentNode )
+	{
+		return walkContentNode( visitor, contentNode, contentNode.getTransform(), contentNode.getNode3D() );
+	}
+
+	/**
+	 * Walks the scene graph of a content node as recorded in a
+	 * {@link SceneSnapshot}, skipping any parts of it that are outside the
+	 * viewing frustum. The given transform and content are used instead of
+	 * the current state of the content node, which may have been modified
+	 * since the snapshot was taken.
+	 *
+	 * @param visitor  Visitor that will be called for each visited node.
+	 * @param snapshot Snapshot of the scene.
+	 * @param index    Index of the content node in the snapshot.
+	 *
+	 * @return {@code true} if the tree walk was finished normally;
+	 * {@code false} if the tree walk was aborted.
+	 */
+	public boolean walkContentNode( @NotNull final Node3DVisitor visitor, @NotNull final SceneSnapshot snapshot, final int index )
+	{
+		return walkContentNode( visitor, snapshot.getContentNodes().get( index ), snapshot.getTransform( index ), snapshot.getNode3D( index ) );
+	}
+
+	/**
+	 * Walks the scene graph of a content node with the given transform and
+	 * content.
+	 *
+	 * @param visitor     Visitor that will be called for each visited node.
+	 * @param contentNode Content node to walk.
+	 * @param transform   Transform of the content node.
+	 * @param node3D      Content of the content node.
+	 *
+	 * @return {@code true} if the tree walk was finished normally;
+	 * {@code false} if the tree walk was aborted.
+	 */
+	private boolean walkContentNode( @NotNull final Node3DVisitor visitor, @NotNull final ContentNode contentNode, @NotNull final Matrix3D transform, @NotNull final Node3D node3D )
+	{
+		boolean result = true;
+
+		/*
+		 * The bounds cached by the content node only apply to its current
+		 * content, so content that was replaced is not culled as a whole.
+		 */
+		final FrustumCuller culler = _culler;
+		//noinspection ObjectEquality
+		final int mask = ( ( culler != null ) && ( contentNode.getNode3D() == node3D ) ) ? culler.cull( contentNode, transform ) : FrustumCuller.ALL_PLANES;
+		if ( mask != FrustumCuller.OUTSIDE )
+		{
+			_contentNode = contentNode;
+			_mask = mask;
+			try
+			{
+				result = walkNode( visitor, transform, node3D );
+			}
+			finally
+			{
+				_contentNode = null;
+				_mask = FrustumCuller.ALL_PLANES;
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	public boolean walkNode( @NotNull final Node3DVisitor visitor, @NotNull final Node3DPath path )
+	{
+		boolean result = true;
+
+		final FrustumCuller culler = _culler;
+		final ContentNode contentNode = _contentNode;
+		final int parentMask = _mask;
+		final int mask = ( ( culler != null ) && ( contentNode != null ) ) ? cull( culler, contentNode, path, parentMask ) : parentMask;
+
+		if ( mask != FrustumCuller.OUTSIDE )
+		{
+			_mask = mask;
+			try
+			{
+				result = visitor.visitNode( path );
+				if ( result )
+				{
+					final Matrix3D transform = path.getTransform();
+
+					for ( final Node3D child : path.getNode().getChildren() )
+					{
+						final Node3D renderedChild = getRenderedChild( path, child );
+						if ( ( renderedChild != null ) && !walkNode( visitor, createPath( path, transform, renderedChild ) ) )
+						{
+							result = false;
+							break;
+						}
+					}
+				}
+			}
+			finally
+			{
+				_mask = parentMask;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Culls a node using the given culler. Subclasses may override this method
+	 * to measure culling time, for example.
+	 *
+	 * @param culler      Frustum culler.
+	 * @param contentNode Content node that contains the node.
+	 * @param path        Path to the node.
+	 * @param parentMask  Plane mask of the parent node.
+	 *
+	 * @return Plane mask of the node; {@link FrustumCuller#OUTSIDE} if the
+	 * node is culled.
+	 */
+	protected int cull( @NotNull final FrustumCuller culler, @NotNull final ContentNode contentNode, @NotNull final Node3DPath path, final int parentMask )
+	{
+		return culler.cull( contentNode, path, parentMask );
+	}
+
+	/**
+	 * Returns the node to walk instead of the given child node. This may be
+	 * used to select a level of detail, for example.
+	 *
+	 * @param parentPath Path to the parent node.
+	 * @param child      Child node.
+	 *
+	 * @return Node to walk; {@code null} to skip the child.
+	 */
+	@Nullable
+	protected Node3D getRenderedChild( @NotNull final Node3DPath parentPath, @NotNull final Node3D child )
+	{
+		return child;
+	}
+}
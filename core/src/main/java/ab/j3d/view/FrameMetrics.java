@@ -0,0 +1,141 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import org.jetbrains.annotations.*;
+
+/**
+ * Metrics of a single rendered frame, as measured by {@link RenderMetrics}.
+ * All times are in nanoseconds.
+ *
+ * @author Peter S. Heijnen
+ */
+public class FrameMetrics
+{
+	/**
+	 * Sequence number of the frame.
+	 */
+	private final long _frameNumber;
+
+	/**
+	 * Time spent on the entire frame.
+	 */
+	private final long _frameTime;
+
+	/**
+	 * Time spent per {@link RenderPhase}, indexed by ordinal.
+	 */
+	private final long[] _phaseTimes;
+
+	/**
+	 * Number of objects rendered.
+	 */
+	private final int _objectCount;
+
+	/**
+	 * Number of draw calls issued.
+	 */
+	private final int _drawCallCount;
+
+	/**
+	 * Constructs a new instance.
+	 *
+	 * @param frameNumber   Sequence number of the frame.
+	 * @param frameTime     Time spent on the entire frame.
+	 * @param phaseTimes    Time spent per {@link RenderPhase}, by ordinal.
+	 * @param objectCount   Number of objects rendered.
+	 * @param drawCallCount Number of draw calls issued.
+	 */
+	FrameMetrics( final long frameNumber, final long frameTime, @NotNull final long[] phaseTimes, final int objectCount, final int drawCallCount )
+	{
+		_frameNumber = frameNumber;
+		_frameTime = frameTime;
+		_phaseTimes = phaseTimes.clone();
+		_objectCount = objectCount;
+		_drawCallCount = drawCallCount;
+	}
+
+	/**
+	 * Returns the sequence number of the frame. The first frame measured has
+	 * number 1.
+	 *
+	 * @return Frame number.
+	 */
+	public long getFrameNumber()
+	{
+		return _frameNumber;
+	}
+
+	/**
+	 * Returns the time spent on the entire frame.
+	 *
+	 * @return Frame time in nanoseconds.
+	 */
+	public long getFrameTime()
+	{
+		return _frameTime;
+	}
+
+	/**
+	 * Returns the time spent in the given phase.
+	 *
+	 * @param phase Render phase.
+	 *
+	 * @return Time in nanoseconds.
+	 */
+	public long getPhaseTime( @NotNull final RenderPhase phase )
+	{
+		return _phaseTimes[ phase.ordinal() ];
+	}
+
+	/**
+	 * Returns the number of objects rendered.
+	 *
+	 * @return Number of objects.
+	 */
+	public int getObjectCount()
+	{
+		return _objectCount;
+	}
+
+	/**
+	 * Returns the number of draw calls issued.
+	 *
+	 * @return Number of draw calls.
+	 */
+	public int getDrawCallCount()
+	{
+		return _drawCallCount;
+	}
+
+	@Override
+	public String toString()
+	{
+		final StringBuilder result = new StringBuilder();
+		result.append( "frame " ).append( _frameNumber );
+		result.append( ": " ).append( _frameTime / 1000L ).append( " us" );
+		for ( final RenderPhase phase : RenderPhase.values() )
+		{
+			result.append( ", " ).append( phase ).append( '=' ).append( _phaseTimes[ phase.ordinal() ] / 1000L );
+		}
+		result.append( ", objects=" ).append( _objectCount );
+		result.append( ", drawCalls=" ).append( _drawCallCount );
+		return result.toString();
+	}
+}
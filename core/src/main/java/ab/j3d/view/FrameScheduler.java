@@ -0,0 +1,396 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import org.jetbrains.annotations.*;
+
+/**
+ * Chooses the rendering quality of each frame, such that interactive camera
+ * movement stays within a frame-time budget. While the camera moves, the
+ * quality is lowered one level at a time while measured frame times exceed
+ * the budget, and raised again when a better level is known to fit. Once the
+ * camera has stopped moving for a short while, the image is refined
+ * progressively, one level per frame, back to full quality.
+ * <p>
+ * The quality level that was used at the end of a movement is remembered, so
+ * the next movement starts at a level that is likely to fit the budget.
+ *
+ * @author Peter S. Heijnen
+ */
+public class FrameScheduler
+{
+	/**
+	 * Rendering quality levels, from best to cheapest.
+	 */
+	public enum Quality
+	{
+		/**
+		 * Full quality, as configured.
+		 */
+		FULL( true, 1.0, 1.0 ),
+
+		/**
+		 * Shadows, reflections and multi-pass lighting are disabled.
+		 */
+		NO_EFFECTS( false, 1.0, 1.0 ),
+
+		/**
+		 * Same as {@link #NO_EFFECTS}, and low-detail objects are used more
+		 * eagerly.
+		 */
+		LOW_DETAIL( false, 4.0, 1.0 ),
+
+		/**
+		 * Same as {@link #LOW_DETAIL}, and the scene is rendered at half the
+		 * resolution.
+		 */
+		LOW_RESOLUTION( false, 4.0, 0.5 );
+
+		/**
+		 * Whether shadows, reflections and multi-pass lighting are enabled.
+		 */
+		private final boolean _effectsEnabled;
+
+		/**
+		 * Factor applied to low-detail thresholds of objects.
+		 */
+		private final double _levelOfDetailScale;
+
+		/**
+		 * Scale factor applied to the resolution of the rendered image.
+		 */
+		private final double _resolutionScale;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param effectsEnabled     Whether shadows, reflections and multi-pass
+		 *                           lighting are enabled.
+		 * @param levelOfDetailScale Factor applied to low-detail thresholds.
+		 * @param resolutionScale    Scale factor applied to the resolution.
+		 */
+		Quality( final boolean effectsEnabled, final double levelOfDetailScale, final double resolutionScale )
+		{
+			_effectsEnabled = effectsEnabled;
+			_levelOfDetailScale = levelOfDetailScale;
+			_resolutionScale = resolutionScale;
+		}
+
+		public boolean isEffectsEnabled()
+		{
+			return _effectsEnabled;
+		}
+
+		public double getLevelOfDetailScale()
+		{
+			return _levelOfDetailScale;
+		}
+
+		public double getResolutionScale()
+		{
+			return _resolutionScale;
+		}
+	}
+
+	/**
+	 * Weight of a new frame time in the average frame time of a level.
+	 */
+	private static final double AVERAGE_WEIGHT = 0.3;
+
+	/**
+	 * Fraction of the budget that the average frame time of a better level
+	 * must fit in before switching to it while moving.
+	 */
+	private static final double UPGRADE_MARGIN = 0.8;
+
+	/**
+	 * Number of frames after which a better level is measured again, if the
+	 * current level leaves ample room in the budget.
+	 */
+	private static final int PROBE_INTERVAL = 30;
+
+	/**
+	 * Quality levels.
+	 */
+	private static final Quality[] QUALITIES = Quality.values();
+
+	/**
+	 * Target frame time in nanoseconds.
+	 */
+	private long _targetFrameTime = 33333333L;
+
+	/**
+	 * Time in nanoseconds without camera movement after which the image is
+	 * refined.
+	 */
+	private long _settleTime = 200000000L;
+
+	/**
+	 * Whether adaptive quality is enabled.
+	 */
+	private boolean _enabled = true;
+
+	/**
+	 * Average frame time in nanoseconds of each quality level; 0 if unknown.
+	 */
+	private final double[] _averageFrameTimes = new double[ QUALITIES.length ];
+
+	/**
+	 * Whether the camera is currently moving.
+	 */
+	private boolean _moving = false;
+
+	/**
+	 * Time at which the camera last moved.
+	 */
+	private long _lastMotionTime = 0L;
+
+	/**
+	 * Quality used for the current or last frame.
+	 */
+	@NotNull
+	private Quality _quality = Quality.FULL;
+
+	/**
+	 * Quality to start with when the camera starts moving.
+	 */
+	@NotNull
+	private Quality _movingQuality = Quality.FULL;
+
+	/**
+	 * Number of frames rendered at the current quality.
+	 */
+	private int _framesAtQuality = 0;
+
+	public long getTargetFrameTime()
+	{
+		return _targetFrameTime;
+	}
+
+	/**
+	 * Sets the target frame time while the camera moves.
+	 *
+	 * @param targetFrameTime Target frame time in nanoseconds.
+	 */
+	public void setTargetFrameTime( final long targetFrameTime )
+	{
+		_targetFrameTime = targetFrameTime;
+	}
+
+	public long getSettleTime()
+	{
+		return _settleTime;
+	}
+
+	/**
+	 * Sets the time without camera movement after which the image is refined.
+	 *
+	 * @param settleTime Settle time in nanoseconds.
+	 */
+	public void setSettleTime( final long settleTime )
+	{
+		_settleTime = settleTime;
+	}
+
+	public boolean isEnabled()
+	{
+		return _enabled;
+	}
+
+	/**
+	 * Sets whether adaptive quality is enabled. If disabled, all frames are
+	 * rendered at full quality.
+	 *
+	 * @param enabled Whether adaptive quality is enabled.
+	 */
+	public void setEnabled( final boolean enabled )
+	{
+		_enabled = enabled;
+		if ( !enabled )
+		{
+			_moving = false;
+			_quality = Quality.FULL;
+			_movingQuality = Quality.FULL;
+		}
+	}
+
+	/**
+	 * Returns whether the camera is currently moving.
+	 *
+	 * @return {@code true} if the camera is moving.
+	 */
+	public boolean isMoving()
+	{
+		return _moving;
+	}
+
+	@NotNull
+	public Quality getQuality()
+	{
+		return _quality;
+	}
+
+	/**
+	 * Returns the average measured frame time for the given quality level.
+	 *
+	 * @param quality Quality level.
+	 *
+	 * @return Average frame time in nanoseconds; 0 if unknown.
+	 */
+	public double getAverageFrameTime( @NotNull final Quality quality )
+	{
+		return _averageFrameTimes[ quality.ordinal() ];
+	}
+
+	/**
+	 * Called before rendering a frame to determine its quality.
+	 *
+	 * @param now         Current time in nanoseconds.
+	 * @param cameraMoved Whether the camera moved since the previous frame.
+	 *
+	 * @return Quality to render the frame with.
+	 */
+	@NotNull
+	public Quality beginFrame( final long now, final boolean cameraMoved )
+	{
+		final Quality oldQuality = _quality;
+
+		if ( _enabled )
+		{
+			if ( cameraMoved )
+			{
+				_lastMotionTime = now;
+				if ( !_moving )
+				{
+					_moving = true;
+					if ( _movingQuality.compareTo( _quality ) > 0 )
+					{
+						_quality = _movingQuality;
+					}
+				}
+			}
+			else if ( _moving && ( now - _lastMotionTime >= _settleTime ) )
+			{
+				_moving = false;
+				_movingQuality = _quality;
+
+				/*
+				 * Start refining right away.
+				 */
+				final int level = _quality.ordinal();
+				if ( level > 0 )
+				{
+					_quality = QUALITIES[ level - 1 ];
+				}
+			}
+		}
+
+		if ( _quality != oldQuality )
+		{
+			_framesAtQuality = 0;
+		}
+		return _quality;
+	}
+
+	/**
+	 * Called after rendering a frame with the time it took. This determines
+	 * the quality of the next frame.
+	 *
+	 * @param frameTime Time it took to render the frame, in nanoseconds.
+	 */
+	public void frameRendered( final long frameTime )
+	{
+		final Quality quality = _quality;
+		final int level = quality.ordinal();
+		_framesAtQuality++;
+
+		final double[] averageFrameTimes = _averageFrameTimes;
+		final double average = averageFrameTimes[ level ];
+		averageFrameTimes[ level ] = ( average == 0.0 ) ? (double)frameTime : average + AVERAGE_WEIGHT * ( (double)frameTime - average );
+
+		if ( _enabled )
+		{
+			final double target = (double)_targetFrameTime;
+
+			if ( _moving )
+			{
+				if ( ( averageFrameTimes[ level ] > target ) && ( level < QUALITIES.length - 1 ) )
+				{
+					_quality = QUALITIES[ level + 1 ];
+				}
+				else if ( level > 0 )
+				{
+					/*
+					 * Use a better level if it is known to fit the budget. If
+					 * there is ample room in the budget, measure the better
+					 * level if its frame time is unknown or may be outdated.
+					 */
+					final double better = averageFrameTimes[ level - 1 ];
+					if ( ( better > 0.0 ) && ( better <= UPGRADE_MARGIN * target ) )
+					{
+						_quality = QUALITIES[ level - 1 ];
+					}
+					else if ( ( averageFrameTimes[ level ] <= 0.5 * target ) && ( ( better == 0.0 ) || ( _framesAtQuality >= PROBE_INTERVAL ) ) )
+					{
+						averageFrameTimes[ level - 1 ] = 0.0;
+						_quality = QUALITIES[ level - 1 ];
+					}
+				}
+			}
+			else if ( level > 0 )
+			{
+				_quality = QUALITIES[ level - 1 ];
+			}
+		}
+		else
+		{
+			_quality = Quality.FULL;
+		}
+
+		if ( _quality != quality )
+		{
+			_framesAtQuality = 0;
+		}
+	}
+
+	/**
+	 * Returns whether more frames are needed to refine the image, even if
+	 * nothing changed. This is the case while the camera moves, since the
+	 * end of the movement must be detected, and when the last frame was not
+	 * rendered at full quality.
+	 *
+	 * @return {@code true} if more frames are needed.
+	 */
+	public boolean isRefinementPending()
+	{
+		return _moving || ( _quality != Quality.FULL );
+	}
+
+	/**
+	 * Returns the time until the next refinement frame should be rendered.
+	 *
+	 * @param now Current time in nanoseconds.
+	 *
+	 * @return Delay in nanoseconds; 0 if a frame should be rendered now.
+	 */
+	public long getRefinementDelay( final long now )
+	{
+		return _moving ? Math.max( 0L, _lastMotionTime + _settleTime - now ) : 0L;
+	}
+}
@@ -0,0 +1,595 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import java.util.*;
+
+import ab.j3d.*;
+import ab.j3d.model.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Performs hierarchical view frustum culling of {@link ContentNode}s and
+ * their {@link Node3D} subtrees.
+ *
+ * <p>Bounds are tested against the frustum planes after transforming the
+ * planes to the local coordinates of each node, so no matrix products or box
+ * corners need to be calculated per node. Culling results are expressed as a
+ * plane mask: a set bit indicates a frustum plane that the node intersects.
+ * Planes that a node is fully inside of are removed from the mask, so they
+ * are skipped for all descendants of that node. Nodes that are completely
+ * inside the frustum have an empty mask and are not tested at all.
+ *
+ * <p>The plane that rejected a node is remembered and tested first in the
+ * next frame, since it is likely to reject the node again.
+ *
+ * <p>Bounds of {@link Node3D} subtrees are cached per {@link ContentNode}
+ * and discarded when the bounds of the content node change (see
+ * {@link ContentNode#getBounds()}).
+ *
+ * <p>Statistics are accumulated over all culling performed between
+ * {@link #beginFrame} and {@link #endFrame}, so a frame that is rendered in
+ * multiple passes counts each pass.
+ *
+ * @author Peter S. Heijnen
+ */
+public class FrustumCuller
+{
+	/**
+	 * Number of frustum planes.
+	 */
+	private static final int PLANE_COUNT = 6;
+
+	/**
+	 * Plane mask that includes all planes.
+	 */
+	public static final int ALL_PLANES = ( 1 << PLANE_COUNT ) - 1;
+
+	/**
+	 * Culling result for nodes that are outside the frustum.
+	 */
+	public static final int OUTSIDE = -1;
+
+	/**
+	 * Frustum planes in scene coordinates; 4 coefficients per plane, such that
+	 * a point is inside if {@code a * x + b * y + c * z + d >= 0}.
+	 */
+	private final double[] _planes = new double[ PLANE_COUNT * 4 ];
+
+	/**
+	 * Whether culling is performed for the current frame.
+	 */
+	private boolean _active = false;
+
+	/**
+	 * Cached culling information per content node.
+	 */
+	private final Map<ContentNode, ContentNodeInfo> _contentNodeInfo = new WeakHashMap<ContentNode, ContentNodeInfo>();
+
+	/**
+	 * Number of nodes tested during the current frame.
+	 */
+	private int _testedCounter = 0;
+
+	/**
+	 * Number of nodes culled during the current frame.
+	 */
+	private int _culledCounter = 0;
+
+	/**
+	 * Number of nodes accepted without testing during the current frame,
+	 * because an ancestor was completely inside the frustum.
+	 */
+	private int _skippedCounter = 0;
+
+	/**
+	 * Number of plane tests performed during the current frame.
+	 */
+	private int _planeTestCounter = 0;
+
+	/**
+	 * Number of nodes culled during the current frame by the plane that also
+	 * rejected them in the previous frame.
+	 */
+	private int _coherentCounter = 0;
+
+	/**
+	 * Number of nodes tested during the last completed frame.
+	 */
+	private int _testedCount = 0;
+
+	/**
+	 * Number of nodes culled during the last completed frame.
+	 */
+	private int _culledCount = 0;
+
+	/**
+	 * Number of nodes accepted without testing during the last completed
+	 * frame.
+	 */
+	private int _skippedCount = 0;
+
+	/**
+	 * Number of plane tests performed during the last completed frame.
+	 */
+	private int _planeTestCount = 0;
+
+	/**
+	 * Number of nodes culled by the previously rejecting plane during the last
+	 * completed frame.
+	 */
+	private int _coherentCount = 0;
+
+	/**
+	 * Prepares for culling of a frame.
+	 *
+	 * @param projector  Projector that defines the viewing frustum.
+	 * @param scene2view Transformation from scene to view coordinates.
+	 */
+	public void beginFrame( @NotNull final Projector projector, @NotNull final Matrix3D scene2view )
+	{
+		final ViewingFrustum frustum = projector.getViewingFrustum();
+		_active = ( frustum != null );
+		if ( frustum != null )
+		{
+			setPlane( 0, frustum.getLeftPlane(), scene2view );
+			setPlane( 1, frustum.getRightPlane(), scene2view );
+			setPlane( 2, frustum.getBottomPlane(), scene2view );
+			setPlane( 3, frustum.getTopPlane(), scene2view );
+			setPlane( 4, frustum.getNearPlane(), scene2view );
+			setPlane( 5, frustum.getFarPlane(), scene2view );
+		}
+
+		_testedCounter = 0;
+		_culledCounter = 0;
+		_skippedCounter = 0;
+		_planeTestCounter = 0;
+		_coherentCounter = 0;
+	}
+
+	/**
+	 * Ends culling of a frame and makes the statistics of the frame available.
+	 */
+	public void endFrame()
+	{
+		_testedCount = _testedCounter;
+		_culledCount = _culledCounter;
+		_skippedCount = _skippedCounter;
+		_planeTestCount = _planeTestCounter;
+		_coherentCount = _coherentCounter;
+	}
+
+	/**
+	 * Disables culling for the current frame. All nodes will be reported as
+	 * visible until the next call to {@link #beginFrame}.
+	 */
+	public void disable()
+	{
+		_active = false;
+	}
+
+	/**
+	 * Returns whether culling is performed for the current frame.
+	 *
+	 * @return {@code true} if culling is performed.
+	 */
+	public boolean isActive()
+	{
+		return _active;
+	}
+
+	/**
+	 * Culls a content node based on its bounds.
+	 *
+	 * @param contentNode Content node to cull.
+	 *
+	 * @return Plane mask to pass to descendants; {@link #OUTSIDE} if the node
+	 * is culled.
+	 */
+	public int cull( @NotNull final ContentNode contentNode )
+	{
+		return cull( contentNode, contentNode.getTransform() );
+	}
+
+	/**
+	 * Culls a content node based on its bounds, using the given transform
+	 * instead of the node's current transform. This is used to cull nodes
+	 * from a {@link SceneSnapshot}.
+	 *
+	 * @param contentNode Content node to cull.
+	 * @param node2scene  Transformation from node to scene coordinates.
+	 *
+	 * @return Plane mask to pass to descendants; {@link #OUTSIDE} if the node
+	 * is culled.
+	 */
+	public int cull( @NotNull final ContentNode contentNode, @NotNull final Matrix3D node2scene )
+	{
+		int result = ALL_PLANES;
+		if ( _active )
+		{
+			final ContentNodeInfo info = getContentNodeInfo( contentNode );
+			final Bounds3D bounds = info._bounds;
+			if ( bounds != null )
+			{
+				result = test( info, bounds, node2scene, ALL_PLANES );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Culls a node in the scene graph of a content node. The bounds of the
+	 * node's subtree are tested, so culled nodes need not be descended into.
+	 *
+	 * @param contentNode Content node that contains the node.
+	 * @param path        Path to the node; transform is node-to-scene.
+	 * @param parentMask  Plane mask of the parent node.
+	 *
+	 * @return Plane mask to pass to descendants; {@link #OUTSIDE} if the node
+	 * is culled.
+	 */
+	public int cull( @NotNull final ContentNode contentNode, @NotNull final Node3DPath path, final int parentMask )
+	{
+		int result = parentMask;
+		if ( _active && ( parentMask != OUTSIDE ) )
+		{
+			if ( parentMask == 0 )
+			{
+				_skippedCounter++;
+			}
+			else
+			{
+				final ContentNodeInfo contentNodeInfo = getContentNodeInfo( contentNode );
+				final Node3D node = path.getNode();
+
+				NodeInfo info = contentNodeInfo._nodes.get( node );
+				if ( info == null )
+				{
+					info = new NodeInfo( ( node instanceof Object3D ) ? null : calculateLocalBounds( node ) );
+					contentNodeInfo._nodes.put( node, info );
+				}
+
+				final Bounds3D bounds = ( node instanceof Object3D ) ? ( (Object3D)node ).getOrientedBoundingBox() : info._bounds;
+				if ( bounds != null )
+				{
+					result = test( info, bounds, path.getTransform(), parentMask );
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Culls an object with the given transform, without using cached
+	 * information.
+	 *
+	 * @param transform Object-to-scene transform.
+	 * @param object    Object to cull.
+	 *
+	 * @return {@code true} if the object is (partly) inside the frustum.
+	 */
+	public boolean isVisible( @NotNull final Matrix3D transform, @NotNull final Object3D object )
+	{
+		boolean result = true;
+		if ( _active )
+		{
+			final Bounds3D bounds = object.getOrientedBoundingBox();
+			result = ( bounds != null ) && ( test( new NodeInfo( null ), bounds, transform, ALL_PLANES ) != OUTSIDE );
+		}
+		return result;
+	}
+
+	/**
+	 * Culls bounds with the given transform, without using cached
+	 * information.
+	 *
+	 * @param transform Bounds-to-scene transform.
+	 * @param bounds    Bounds to cull.
+	 *
+	 * @return {@code true} if the bounds are (partly) inside the frustum.
+	 */
+	public boolean isVisible( @NotNull final Matrix3D transform, @NotNull final Bounds3D bounds )
+	{
+		return !_active || ( test( new NodeInfo( null ), bounds, transform, ALL_PLANES ) != OUTSIDE );
+	}
+
+	/**
+	 * Returns the number of nodes tested against the frustum during the last
+	 * frame.
+	 *
+	 * @return Number of nodes tested.
+	 */
+	public int getTestedCount()
+	{
+		return _testedCount;
+	}
+
+	/**
+	 * Returns the number of nodes culled during the last frame. Descendants of
+	 * culled nodes are not included.
+	 *
+	 * @return Number of nodes culled.
+	 */
+	public int getCulledCount()
+	{
+		return _culledCount;
+	}
+
+	/**
+	 * Returns the number of nodes that were accepted without testing during
+	 * the last frame, because an ancestor was completely inside the frustum.
+	 *
+	 * @return Number of nodes accepted without testing.
+	 */
+	public int getSkippedCount()
+	{
+		return _skippedCount;
+	}
+
+	/**
+	 * Returns the number of plane tests performed during the last frame.
+	 *
+	 * @return Number of plane tests.
+	 */
+	public int getPlaneTestCount()
+	{
+		return _planeTestCount;
+	}
+
+	/**
+	 * Returns the number of nodes that were culled during the last frame by
+	 * the same plane that rejected them in the frame before.
+	 *
+	 * @return Number of nodes culled by the previously rejecting plane.
+	 */
+	public int getCoherentCount()
+	{
+		return _coherentCount;
+	}
+
+	/**
+	 * Removes all cached information.
+	 */
+	public void clear()
+	{
+		_contentNodeInfo.clear();
+	}
+
+	/**
+	 * Transforms a frustum plane from view to scene coordinates and stores it.
+	 *
+	 * @param index      Plane index.
+	 * @param plane      Plane in view coordinates.
+	 * @param scene2view Transformation from scene to view coordinates.
+	 */
+	private void setPlane( final int index, final Vector4D plane, final Matrix3D scene2view )
+	{
+		final double[] planes = _planes;
+		final int offset = index * 4;
+		planes[ offset ] = plane.x * scene2view.xx + plane.y * scene2view.yx + plane.z * scene2view.zx;
+		planes[ offset + 1 ] = plane.x * scene2view.xy + plane.y * scene2view.yy + plane.z * scene2view.zy;
+		planes[ offset + 2 ] = plane.x * scene2view.xz + plane.y * scene2view.yz + plane.z * scene2view.zz;
+		planes[ offset + 3 ] = plane.x * scene2view.xo + plane.y * scene2view.yo + plane.z * scene2view.zo + plane.w;
+	}
+
+	/**
+	 * Returns cached information about the given content node.
+	 *
+	 * @param contentNode Content node.
+	 *
+	 * @return Cached information.
+	 */
+	private ContentNodeInfo getContentNodeInfo( final ContentNode contentNode )
+	{
+		final Bounds3D bounds = contentNode.getBounds();
+
+		ContentNodeInfo result = _contentNodeInfo.get( contentNode );
+		if ( result == null )
+		{
+			result = new ContentNodeInfo( bounds );
+			_contentNodeInfo.put( contentNode, result );
+		}
+		//noinspection ObjectEquality
+		else if ( result._bounds != bounds )
+		{
+			result._bounds = bounds;
+			result._nodes.clear();
+		}
+		return result;
+	}
+
+	/**
+	 * Tests bounds against the frustum planes in the given mask.
+	 *
+	 * @param info       Cached information about the node.
+	 * @param bounds     Bounds in local coordinates.
+	 * @param node2scene Transformation from local to scene coordinates.
+	 * @param mask       Planes to test.
+	 *
+	 * @return Planes that the bounds intersect; {@link #OUTSIDE} if the bounds
+	 * are outside the frustum.
+	 */
+	private int test( final NodeInfo info, final Bounds3D bounds, final Matrix3D node2scene, final int mask )
+	{
+		_testedCounter++;
+
+		final double cx = 0.5 * ( bounds.v1.x + bounds.v2.x );
+		final double cy = 0.5 * ( bounds.v1.y + bounds.v2.y );
+		final double cz = 0.5 * ( bounds.v1.z + bounds.v2.z );
+		final double ex = 0.5 * Math.abs( bounds.v2.x - bounds.v1.x );
+		final double ey = 0.5 * Math.abs( bounds.v2.y - bounds.v1.y );
+		final double ez = 0.5 * Math.abs( bounds.v2.z - bounds.v1.z );
+
+		int result = mask;
+
+		final int lastPlane = info._lastRejectingPlane;
+		if ( ( lastPlane >= 0 ) && ( ( mask & ( 1 << lastPlane ) ) != 0 ) )
+		{
+			final int side = classify( lastPlane, node2scene, cx, cy, cz, ex, ey, ez );
+			if ( side < 0 )
+			{
+				_culledCounter++;
+				_coherentCounter++;
+				return OUTSIDE;
+			}
+
+			if ( side > 0 )
+			{
+				result &= ~( 1 << lastPlane );
+			}
+		}
+
+		for ( int plane = 0; plane < PLANE_COUNT; plane++ )
+		{
+			final int bit = 1 << plane;
+			if ( ( plane != lastPlane ) && ( ( mask & bit ) != 0 ) )
+			{
+				final int side = classify( plane, node2scene, cx, cy, cz, ex, ey, ez );
+				if ( side < 0 )
+				{
+					info._lastRejectingPlane = plane;
+					_culledCounter++;
+					return OUTSIDE;
+				}
+
+				if ( side > 0 )
+				{
+					result &= ~bit;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Classifies a box with respect to a frustum plane.
+	 *
+	 * @param plane      Plane index.
+	 * @param node2scene Transformation from box to scene coordinates.
+	 * @param cx         X-coordinate of the center of the box.
+	 * @param cy         Y-coordinate of the center of the box.
+	 * @param cz         Z-coordinate of the center of the box.
+	 * @param ex         Half size of the box along the X-axis.
+	 * @param ey         Half size of the box along the Y-axis.
+	 * @param ez         Half size of the box along the Z-axis.
+	 *
+	 * @return -1 if the box is outside; 1 if the box is completely inside;
+	 * 0 if the box intersects the plane.
+	 */
+	private int classify( final int plane, final Matrix3D node2scene, final double cx, final double cy, final double cz, final double ex, final double ey, final double ez )
+	{
+		_planeTestCounter++;
+
+		final double[] planes = _planes;
+		final int offset = plane * 4;
+		final double a = planes[ offset ];
+		final double b = planes[ offset + 1 ];
+		final double c = planes[ offset + 2 ];
+		final double d = planes[ offset + 3 ];
+
+		/* Plane in local coordinates. */
+		final double nx = a * node2scene.xx + b * node2scene.yx + c * node2scene.zx;
+		final double ny = a * node2scene.xy + b * node2scene.yy + c * node2scene.zy;
+		final double nz = a * node2scene.xz + b * node2scene.yz + c * node2scene.zz;
+		final double nd = a * node2scene.xo + b * node2scene.yo + c * node2scene.zo + d;
+
+		final double distance = nx * cx + ny * cy + nz * cz + nd;
+		final double radius = Math.abs( nx ) * ex + Math.abs( ny ) * ey + Math.abs( nz ) * ez;
+
+		return ( distance + radius < 0.0 ) ? -1 : ( distance - radius >= 0.0 ) ? 1 : 0;
+	}
+
+	/**
+	 * Calculates the bounds of a subtree in the coordinates of its root node,
+	 * i.e. including any transform below the node, but not the node's own
+	 * transform.
+	 *
+	 * @param node Root of the subtree.
+	 *
+	 * @return Bounds of the subtree; {@code null} if the subtree has no
+	 * bounds.
+	 */
+	@Nullable
+	private static Bounds3D calculateLocalBounds( final Node3D node )
+	{
+		final Bounds3DBuilderVisitor visitor = new Bounds3DBuilderVisitor();
+		if ( node instanceof Transform3D )
+		{
+			for ( final Node3D child : node.getChildren() )
+			{
+				Node3DTreeWalker.walk( visitor, Matrix3D.IDENTITY, child );
+			}
+		}
+		else
+		{
+			Node3DTreeWalker.walk( visitor, Matrix3D.IDENTITY, node );
+		}
+		return visitor.getBounds();
+	}
+
+	/**
+	 * Cached culling information about a node.
+	 */
+	private static class NodeInfo
+	{
+		/**
+		 * Bounds of the subtree in local coordinates.
+		 */
+		@Nullable
+		Bounds3D _bounds;
+
+		/**
+		 * Index of the plane that rejected the node last; -1 if none.
+		 */
+		int _lastRejectingPlane = -1;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param bounds Bounds of the subtree in local coordinates.
+		 */
+		NodeInfo( @Nullable final Bounds3D bounds )
+		{
+			_bounds = bounds;
+		}
+	}
+
+	/**
+	 * Cached culling information about a content node.
+	 */
+	private static class ContentNodeInfo
+		extends NodeInfo
+	{
+		/**
+		 * Cached information about nodes in the content node's scene graph.
+		 */
+		final Map<Node3D, NodeInfo> _nodes = new IdentityHashMap<Node3D, NodeInfo>();
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param bounds Bounds of the content node.
+		 */
+		ContentNodeInfo( @Nullable final Bounds3D bounds )
+		{
+			super( bounds );
+		}
+	}
+}
@@ -0,0 +1,308 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import java.nio.*;
+import java.util.*;
+
+import ab.j3d.*;
+import ab.j3d.model.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Groups instances of the same content, e.g. the same object with the same
+ * render style, placed at different locations in the scene. For each group,
+ * the object-to-view matrices of all instances can be packed into a single
+ * float buffer, so they can be submitted to the graphics hardware at once.
+ *
+ * <p>Matrices are packed as 4x4 matrices in column-major order (as used by
+ * OpenGL), 16 floats per instance. The packed matrices of a group are cached
+ * until the scene-to-view transform or the transform of an instance changes.
+ * A grouper is meant to be kept across frames: {@link #clear()} keeps the
+ * instance lists, so lists that are filled with the same instances again
+ * can reuse their packed matrices.
+ *
+ * @param <K> Type of key that identifies a group.
+ *
+ * @author Peter S. Heijnen
+ */
+public class InstanceGrouper<K>
+{
+	/**
+	 * Number of floats per packed matrix.
+	 */
+	public static final int MATRIX_SIZE = 16;
+
+	/**
+	 * Instance lists by key, in order of addition.
+	 */
+	private final Map<K, InstanceList<K>> _instanceLists = new LinkedHashMap<K, InstanceList<K>>();
+
+	/**
+	 * Instance lists from before the last call to {@link #clear()}, which
+	 * may be reused.
+	 */
+	private final Map<K, InstanceList<K>> _previousInstanceLists = new HashMap<K, InstanceList<K>>();
+
+	/**
+	 * Adds an instance.
+	 *
+	 * @param key  Key of the group to add the instance to.
+	 * @param path Path to the instance; transform is object-to-scene.
+	 */
+	public void add( @NotNull final K key, @NotNull final Node3DPath path )
+	{
+		InstanceList<K> instanceList = _instanceLists.get( key );
+		if ( instanceList == null )
+		{
+			instanceList = _previousInstanceLists.remove( key );
+			if ( instanceList == null )
+			{
+				instanceList = new InstanceList<K>( key );
+			}
+			_instanceLists.put( key, instanceList );
+		}
+		instanceList.add( path );
+	}
+
+	/**
+	 * Returns all instance lists, in the order in which their first instance
+	 * was added.
+	 *
+	 * @return Instance lists.
+	 */
+	@NotNull
+	public Collection<InstanceList<K>> getInstanceLists()
+	{
+		return Collections.unmodifiableCollection( _instanceLists.values() );
+	}
+
+	/**
+	 * Returns whether no instances were added.
+	 *
+	 * @return {@code true} if there are no instances.
+	 */
+	public boolean isEmpty()
+	{
+		return _instanceLists.isEmpty();
+	}
+
+	/**
+	 * Removes all instances. The instance lists are kept until the next call
+	 * to this method, so they can be reused by {@link #add}.
+	 */
+	public void clear()
+	{
+		final Map<K, InstanceList<K>> previousInstanceLists = _previousInstanceLists;
+		previousInstanceLists.clear();
+		for ( final InstanceList<K> instanceList : _instanceLists.values() )
+		{
+			instanceList.clear();
+			previousInstanceLists.put( instanceList.getKey(), instanceList );
+		}
+		_instanceLists.clear();
+	}
+
+	/**
+	 * Stores the given transform in a buffer as a 4x4 matrix in column-major
+	 * order, starting at the buffer's current position.
+	 *
+	 * @param target    Buffer to store the matrix in.
+	 * @param transform Transform to store.
+	 */
+	public static void packMatrix( @NotNull final FloatBuffer target, @NotNull final Matrix3D transform )
+	{
+		target.put( (float)transform.xx );
+		target.put( (float)transform.yx );
+		target.put( (float)transform.zx );
+		target.put( 0.0f );
+		target.put( (float)transform.xy );
+		target.put( (float)transform.yy );
+		target.put( (float)transform.zy );
+		target.put( 0.0f );
+		target.put( (float)transform.xz );
+		target.put( (float)transform.yz );
+		target.put( (float)transform.zz );
+		target.put( 0.0f );
+		target.put( (float)transform.xo );
+		target.put( (float)transform.yo );
+		target.put( (float)transform.zo );
+		target.put( 1.0f );
+	}
+
+	/**
+	 * Instances in the same group.
+	 *
+	 * @param <K> Type of key that identifies the group.
+	 */
+	public static class InstanceList<K>
+	{
+		/**
+		 * Key of the group.
+		 */
+		@NotNull
+		private final K _key;
+
+		/**
+		 * Paths to instances.
+		 */
+		private final List<Node3DPath> _paths = new ArrayList<Node3DPath>();
+
+		/**
+		 * Packed object-to-view matrices; {@code null} if not packed yet.
+		 */
+		@Nullable
+		private FloatBuffer _matrices = null;
+
+		/**
+		 * Scene-to-view transform used for the packed matrices.
+		 */
+		@Nullable
+		private Matrix3D _scene2view = null;
+
+		/**
+		 * Object-to-scene transforms used for the packed matrices.
+		 */
+		private final List<Matrix3D> _packedTransforms = new ArrayList<Matrix3D>();
+
+		/**
+		 * Constructs a new instance list.
+		 *
+		 * @param key Key of the group.
+		 */
+		InstanceList( @NotNull final K key )
+		{
+			_key = key;
+		}
+
+		/**
+		 * Adds an instance.
+		 *
+		 * @param path Path to the instance.
+		 */
+		void add( @NotNull final Node3DPath path )
+		{
+			_paths.add( path );
+		}
+
+		/**
+		 * Removes all instances. The packed matrices are kept, so they can be
+		 * reused if the same instances are added again.
+		 */
+		void clear()
+		{
+			_paths.clear();
+		}
+
+		/**
+		 * Returns the key of the group.
+		 *
+		 * @return Key of the group.
+		 */
+		@NotNull
+		public K getKey()
+		{
+			return _key;
+		}
+
+		/**
+		 * Returns the paths to all instances.
+		 *
+		 * @return Paths to instances; transform is object-to-scene.
+		 */
+		@NotNull
+		public List<Node3DPath> getPaths()
+		{
+			return Collections.unmodifiableList( _paths );
+		}
+
+		/**
+		 * Returns the number of instances.
+		 *
+		 * @return Number of instances.
+		 */
+		public int size()
+		{
+			return _paths.size();
+		}
+
+		/**
+		 * Returns the object-to-view matrices of all instances, packed as
+		 * described in {@link InstanceGrouper}. The returned buffer is a
+		 * direct buffer in native byte order, positioned at the start of the
+		 * first matrix; its limit is at the end of the last matrix.
+		 *
+		 * @param scene2view Transformation from scene to view coordinates.
+		 *
+		 * @return Packed matrices.
+		 */
+		@NotNull
+		public FloatBuffer getMatrices( @NotNull final Matrix3D scene2view )
+		{
+			FloatBuffer result = _matrices;
+			final List<Node3DPath> paths = _paths;
+			final int size = paths.size() * MATRIX_SIZE;
+
+			if ( ( result == null ) || ( result.capacity() < size ) )
+			{
+				result = ByteBuffer.allocateDirect( size * 4 ).order( ByteOrder.nativeOrder() ).asFloatBuffer();
+				_matrices = result;
+				_scene2view = null;
+			}
+
+			if ( !scene2view.equals( _scene2view ) || !isPacked( paths ) )
+			{
+				final List<Matrix3D> packedTransforms = _packedTransforms;
+				packedTransforms.clear();
+
+				result.clear();
+				for ( final Node3DPath path : paths )
+				{
+					final Matrix3D transform = path.getTransform();
+					packMatrix( result, transform.multiply( scene2view ) );
+					packedTransforms.add( transform );
+				}
+				_scene2view = scene2view;
+			}
+
+			result.position( 0 );
+			result.limit( size );
+			return result;
+		}
+
+		/**
+		 * Returns whether the packed matrices were created for the transforms
+		 * of the given paths.
+		 *
+		 * @param paths Paths to instances.
+		 *
+		 * @return {@code true} if the transforms match the packed matrices.
+		 */
+		private boolean isPacked( final List<Node3DPath> paths )
+		{
+			final List<Matrix3D> packedTransforms = _packedTransforms;
+			boolean result = ( paths.size() == packedTransforms.size() );
+			for ( int i = 0; result && ( i < paths.size() ); i++ )
+			{
+				result = paths.get( i ).getTransform().equals( packedTransforms.get( i ) );
+			}
+			return result;
+		}
+	}
+}
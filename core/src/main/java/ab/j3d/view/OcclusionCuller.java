@@ -0,0 +1,1309 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import java.util.*;
+
+import ab.j3d.*;
+import ab.j3d.appearance.*;
+import ab.j3d.geom.*;
+import ab.j3d.model.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Performs occlusion culling of {@link ContentNode}s on the CPU.
+ *
+ * <p>Large occluders are rasterized into a small, conservative depth buffer.
+ * Occluders are content nodes whose {@link ContentNode#getNode3D() root node}
+ * has the {@link #OCCLUDER_PROPERTY} property set, and nodes whose projected
+ * bounds cover a large enough part of the image. Only opaque, filled faces
+ * are rasterized. Each pixel receives depth from faces that cover it
+ * completely, and stores the farthest depth of that face within the pixel.
+ * A content node is occluded if the
+ * nearest point of its bounds is behind the stored depth for every pixel in
+ * its projected bounding rectangle.
+ *
+ * <p>The depth buffer stores 'closeness' values that are linear in image
+ * space: the reciprocal depth for perspective projections and the negated
+ * depth for parallel projections. Larger values are closer to the camera;
+ * zero (or negative infinity) means no occluder. Per tile of 8x8 pixels, the
+ * smallest value is also stored, so most tests only need to look at tiles.
+ *
+ * <p>Rasterization is divided into horizontal bands, which are processed in
+ * parallel when multiple threads are configured.
+ *
+ * @author Peter S. Heijnen
+ */
+public class OcclusionCuller
+{
+	/**
+	 * Name of the {@link Node3D} property that marks the root node of a
+	 * {@link ContentNode} as an occluder. The value must be a
+	 * {@link Boolean}.
+	 */
+	public static final String OCCLUDER_PROPERTY = "occluder";
+
+	/**
+	 * Size of a tile in pixels.
+	 */
+	private static final int TILE_SIZE = 8;
+
+	/**
+	 * Number of values per triangle: x, y and closeness for each vertex.
+	 */
+	private static final int TRIANGLE_SIZE = 9;
+
+	/**
+	 * Number of values per face: first triangle, triangle count, first
+	 * boundary edge and boundary edge count.
+	 */
+	private static final int FACE_SIZE = 4;
+
+	/**
+	 * Number of values per boundary edge: x and y for each vertex.
+	 */
+	private static final int EDGE_SIZE = 4;
+
+	/**
+	 * Minimum alpha of faces that are used as occluders.
+	 */
+	private static final float OPAQUE_ALPHA = 0.99f;
+
+	/**
+	 * Width of the depth buffer in pixels.
+	 */
+	private int _resolution = 256;
+
+	/**
+	 * Minimum projected area of automatically selected occluders, as a
+	 * fraction of the image area.
+	 */
+	private double _minimumOccluderArea = 0.02;
+
+	/**
+	 * Maximum number of occluders that are rasterized.
+	 */
+	private int _maximumOccluderCount = 32;
+
+	/**
+	 * Number of threads used for rasterization.
+	 */
+	private int _threadCount = ParallelTools.getThreadCount();
+
+	/**
+	 * Width of the depth buffer.
+	 */
+	private int _width = 0;
+
+	/**
+	 * Height of the depth buffer.
+	 */
+	private int _height = 0;
+
+	/**
+	 * Depth buffer with closeness values.
+	 */
+	private float[] _buffer = new float[ 0 ];
+
+	/**
+	 * Smallest closeness value per tile.
+	 */
+	private float[] _tileMinimum = new float[ 0 ];
+
+	/**
+	 * Screen-space occluder triangles; see {@link #TRIANGLE_SIZE}.
+	 */
+	private float[] _triangles = new float[ 0 ];
+
+	/**
+	 * Number of occluder triangles.
+	 */
+	private int _triangleCount = 0;
+
+	/**
+	 * Occluder faces; see {@link #FACE_SIZE}.
+	 */
+	private int[] _faces = new int[ 0 ];
+
+	/**
+	 * Number of occluder faces.
+	 */
+	private int _faceCount = 0;
+
+	/**
+	 * Screen-space boundary edges of occluder faces; see {@link #EDGE_SIZE}.
+	 */
+	private float[] _edges = new float[ 0 ];
+
+	/**
+	 * Number of boundary edges.
+	 */
+	private int _edgeCount = 0;
+
+	/**
+	 * Projected vertices of the face being added.
+	 */
+	private float[] _vertices = new float[ 0 ];
+
+	/**
+	 * Whether closeness is the reciprocal depth.
+	 */
+	private boolean _perspective = false;
+
+	/**
+	 * Front clipping distance.
+	 */
+	private double _frontClipDistance = 0.0;
+
+	/**
+	 * Scale from image to depth buffer coordinates.
+	 */
+	private double _imageScaleX = 1.0;
+
+	/**
+	 * Scale from image to depth buffer coordinates.
+	 */
+	private double _imageScaleY = 1.0;
+
+	/**
+	 * Projector used for the current frame.
+	 */
+	@Nullable
+	private Projector _projector = null;
+
+	/**
+	 * Transformation from scene to view coordinates for the current frame.
+	 */
+	private Matrix3D _scene2view = Matrix3D.IDENTITY;
+
+	/**
+	 * Content nodes that were found to be occluded.
+	 */
+	private final Set<ContentNode> _occluded = Collections.newSetFromMap( new IdentityHashMap<ContentNode, Boolean>() );
+
+	/**
+	 * Number of occluders rendered for the current frame.
+	 */
+	private int _occluderCount = 0;
+
+	/**
+	 * Number of content nodes tested for the current frame.
+	 */
+	private int _testedCount = 0;
+
+	/**
+	 * Returns the width of the depth buffer. The height is derived from the
+	 * aspect ratio of the image.
+	 *
+	 * @return Width of the depth buffer, in pixels.
+	 */
+	public int getResolution()
+	{
+		return _resolution;
+	}
+
+	/**
+	 * Sets the width of the depth buffer. The height is derived from the
+	 * aspect ratio of the image.
+	 *
+	 * @param resolution Width of the depth buffer, in pixels.
+	 */
+	public void setResolution( final int resolution )
+	{
+		if ( resolution < 1 )
+		{
+			throw new IllegalArgumentException( "resolution: " + resolution );
+		}
+		_resolution = resolution;
+	}
+
+	/**
+	 * Returns the minimum projected area of automatically selected occluders.
+	 *
+	 * @return Minimum area, as a fraction of the image area.
+	 */
+	public double getMinimumOccluderArea()
+	{
+		return _minimumOccluderArea;
+	}
+
+	/**
+	 * Sets the minimum projected area of automatically selected occluders.
+	 * Set to a value greater than 1 to only use flagged occluders.
+	 *
+	 * @param minimumOccluderArea Minimum area, as a fraction of the image area.
+	 */
+	public void setMinimumOccluderArea( final double minimumOccluderArea )
+	{
+		_minimumOccluderArea = minimumOccluderArea;
+	}
+
+	/**
+	 * Returns the maximum number of occluders that are rasterized.
+	 *
+	 * @return Maximum number of occluders.
+	 */
+	public int getMaximumOccluderCount()
+	{
+		return _maximumOccluderCount;
+	}
+
+	/**
+	 * Sets the maximum number of occluders that are rasterized. Flagged
+	 * occluders are selected first, followed by the largest other
+	 * occluders.
+	 *
+	 * @param maximumOccluderCount Maximum number of occluders.
+	 */
+	public void setMaximumOccluderCount( final int maximumOccluderCount )
+	{
+		_maximumOccluderCount = maximumOccluderCount;
+	}
+
+	/**
+	 * Returns the number of threads used for rasterization.
+	 *
+	 * @return Number of threads.
+	 */
+	public int getThreadCount()
+	{
+		return _threadCount;
+	}
+
+	/**
+	 * Sets the number of threads used for rasterization. Rasterization uses
+	 * the {@link ParallelTools#getExecutor shared executor}. By default, the
+	 * number of threads of that executor is used.
+	 *
+	 * @param threadCount Number of threads; 1 to rasterize on the calling
+	 *                    thread.
+	 */
+	public void setThreadCount( final int threadCount )
+	{
+		if ( threadCount < 1 )
+		{
+			throw new IllegalArgumentException( "threadCount: " + threadCount );
+		}
+		_threadCount = threadCount;
+	}
+
+	/**
+	 * Renders occluders into the depth buffer and determines which of the
+	 * given content nodes are occluded. All nodes are assumed to be rendered
+	 * using the default {@link RenderStyle}.
+	 *
+	 * @param projector  Projector of the view.
+	 * @param scene2view Transformation from scene to view coordinates.
+	 * @param nodes      Content nodes to consider.
+	 */
+	public void render( @NotNull final Projector projector, @NotNull final Matrix3D scene2view, @NotNull final Collection<ContentNode> nodes )
+	{
+		render( projector, scene2view, nodes, Collections.<RenderStyleFilter>emptyList(), new RenderStyle() );
+	}
+
+	/**
+	 * Renders occluders into the depth buffer and determines which of the
+	 * given content nodes are occluded. Transparent faces and faces that
+	 * are not filled, according to the given render style, do not occlude
+	 * anything.
+	 *
+	 * @param projector    Projector of the view.
+	 * @param scene2view   Transformation from scene to view coordinates.
+	 * @param nodes        Content nodes to consider.
+	 * @param styleFilters Style filters to apply.
+	 * @param sceneStyle   Render style to use as base for scene.
+	 */
+	public void render( @NotNull final Projector projector, @NotNull final Matrix3D scene2view, @NotNull final Collection<ContentNode> nodes, @NotNull final Collection<RenderStyleFilter> styleFilters, @NotNull final RenderStyle sceneStyle )
+	{
+		final List<NodeInfo> infos = new ArrayList<NodeInfo>( nodes.size() );
+		for ( final ContentNode node : nodes )
+		{
+			infos.add( new NodeInfo( node, node.getTransform(), node.getNode3D() ) );
+		}
+		render( projector, scene2view, infos, styleFilters, sceneStyle );
+	}
+
+	/**
+	 * Renders occluders into the depth buffer and determines which of the
+	 * content nodes in the given snapshot are occluded. Content nodes are
+	 * rendered using the transform and content recorded in the snapshot, so
+	 * changes made to the scene by other threads do not affect the result.
+	 *
+	 * @param projector    Projector of the view.
+	 * @param scene2view   Transformation from scene to view coordinates.
+	 * @param snapshot     Snapshot of the scene.
+	 * @param styleFilters Style filters to apply.
+	 * @param sceneStyle   Render style to use as base for scene.
+	 */
+	public void render( @NotNull final Projector projector, @NotNull final Matrix3D scene2view, @NotNull final SceneSnapshot snapshot, @NotNull final Collection<RenderStyleFilter> styleFilters, @NotNull final RenderStyle sceneStyle )
+	{
+		final List<ContentNode> nodes = snapshot.getContentNodes();
+		final List<NodeInfo> infos = new ArrayList<NodeInfo>( nodes.size() );
+		for ( int i = 0; i < nodes.size(); i++ )
+		{
+			infos.add( new NodeInfo( nodes.get( i ), snapshot.getTransform( i ), snapshot.getNode3D( i ) ) );
+		}
+		render( projector, scene2view, infos, styleFilters, sceneStyle );
+	}
+
+	/**
+	 * Renders occluders into the depth buffer and determines which of the
+	 * given content nodes are occluded.
+	 *
+	 * @param projector    Projector of the view.
+	 * @param scene2view   Transformation from scene to view coordinates.
+	 * @param nodes        Content nodes to consider.
+	 * @param styleFilters Style filters to apply.
+	 * @param sceneStyle   Render style to use as base for scene.
+	 */
+	private void render( final Projector projector, final Matrix3D scene2view, final List<NodeInfo> nodes, final Collection<RenderStyleFilter> styleFilters, final RenderStyle sceneStyle )
+	{
+		_occluded.clear();
+		_occluderCount = 0;
+		_testedCount = 0;
+		_triangleCount = 0;
+		_faceCount = 0;
+		_edgeCount = 0;
+
+		setUp( projector, scene2view );
+
+		final List<NodeInfo> infos = new ArrayList<NodeInfo>( nodes.size() );
+		final List<NodeInfo> flagged = new ArrayList<NodeInfo>();
+		final List<NodeInfo> candidates = new ArrayList<NodeInfo>();
+		final double minimumArea = _minimumOccluderArea * (double)( _width * _height );
+
+		for ( final NodeInfo info : nodes )
+		{
+			final Bounds3D bounds = info.getBounds();
+			if ( bounds != null )
+			{
+				project( info, info._transform, bounds );
+				infos.add( info );
+
+				final boolean isFlagged = Boolean.TRUE.equals( info._node3D.getProperty( OCCLUDER_PROPERTY, Boolean.FALSE ) );
+				if ( isFlagged || ( !info._crossesNearPlane && ( info.getArea() >= minimumArea ) ) )
+				{
+					final RenderStyle nodeStyle = sceneStyle.applyFilters( styleFilters, info._node );
+					if ( isFilled( nodeStyle ) )
+					{
+						info._style = nodeStyle;
+						( isFlagged ? flagged : candidates ).add( info );
+					}
+				}
+			}
+		}
+
+		Collections.sort( candidates, new Comparator<NodeInfo>()
+		{
+			@Override
+			public int compare( final NodeInfo info1, final NodeInfo info2 )
+			{
+				return Double.compare( info2.getArea(), info1.getArea() );
+			}
+		} );
+
+		final List<NodeInfo> occluders = new ArrayList<NodeInfo>( flagged );
+		occluders.addAll( candidates );
+		final int occluderCount = Math.min( occluders.size(), _maximumOccluderCount );
+		for ( int i = 0; i < occluderCount; i++ )
+		{
+			final NodeInfo occluder = occluders.get( i );
+			//noinspection ConstantConditions
+			addOccluder( occluder, styleFilters, occluder._style );
+		}
+		_occluderCount = occluderCount;
+
+		rasterize();
+
+		if ( _triangleCount > 0 )
+		{
+			for ( final NodeInfo info : infos )
+			{
+				_testedCount++;
+				if ( isOccluded( info ) )
+				{
+					_occluded.add( info._node );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the given content node was found to be occluded by the
+	 * last call to {@link #render}.
+	 *
+	 * @param node Content node.
+	 *
+	 * @return {@code true} if the node is occluded.
+	 */
+	public boolean isOccluded( @NotNull final ContentNode node )
+	{
+		return _occluded.contains( node );
+	}
+
+	/**
+	 * Tests whether the given bounds are (potentially) visible, based on the
+	 * depth buffer from the last call to {@link #render}.
+	 *
+	 * @param node2scene Transformation from bounds to scene coordinates.
+	 * @param bounds     Bounds to test.
+	 *
+	 * @return {@code true} if the bounds are potentially visible;
+	 * {@code false} if they are occluded.
+	 */
+	public boolean isVisible( @NotNull final Matrix3D node2scene, @NotNull final Bounds3D bounds )
+	{
+		boolean result = true;
+		if ( ( _projector != null ) && ( _triangleCount > 0 ) )
+		{
+			final NodeInfo info = new NodeInfo( null, node2scene, null );
+			project( info, node2scene, bounds );
+			result = !isOccluded( info );
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of occluders rendered by the last call to
+	 * {@link #render}.
+	 *
+	 * @return Number of occluders.
+	 */
+	public int getOccluderCount()
+	{
+		return _occluderCount;
+	}
+
+	/**
+	 * Returns the number of occluder triangles rendered by the last call to
+	 * {@link #render}.
+	 *
+	 * @return Number of triangles.
+	 */
+	public int getOccluderTriangleCount()
+	{
+		return _triangleCount;
+	}
+
+	/**
+	 * Returns the number of content nodes tested by the last call to
+	 * {@link #render}.
+	 *
+	 * @return Number of nodes tested.
+	 */
+	public int getTestedCount()
+	{
+		return _testedCount;
+	}
+
+	/**
+	 * Returns the number of content nodes found to be occluded by the last
+	 * call to {@link #render}.
+	 *
+	 * @return Number of occluded nodes.
+	 */
+	public int getOccludedCount()
+	{
+		return _occluded.size();
+	}
+
+	/**
+	 * Returns the width of the depth buffer used by the last call to
+	 * {@link #render}.
+	 *
+	 * @return Width in pixels.
+	 */
+	public int getBufferWidth()
+	{
+		return _width;
+	}
+
+	/**
+	 * Returns the height of the depth buffer used by the last call to
+	 * {@link #render}.
+	 *
+	 * @return Height in pixels.
+	 */
+	public int getBufferHeight()
+	{
+		return _height;
+	}
+
+	/**
+	 * Returns the closeness value stored in the depth buffer for the given
+	 * pixel. This is the reciprocal depth for perspective projections and the
+	 * negated depth for parallel projections.
+	 *
+	 * @param x X-coordinate of the pixel.
+	 * @param y Y-coordinate of the pixel.
+	 *
+	 * @return Closeness value.
+	 */
+	public float getCloseness( final int x, final int y )
+	{
+		return _buffer[ y * _width + x ];
+	}
+
+	/**
+	 * Prepares the depth buffer for the given projection.
+	 *
+	 * @param projector  Projector of the view.
+	 * @param scene2view Transformation from scene to view coordinates.
+	 */
+	private void setUp( final Projector projector, final Matrix3D scene2view )
+	{
+		final int imageWidth = Math.max( 1, projector.getImageWidth() );
+		final int imageHeight = Math.max( 1, projector.getImageHeight() );
+
+		final int width = _resolution;
+		final int height = Math.max( 1, (int)Math.round( (double)width * (double)imageHeight / (double)imageWidth ) );
+		final int tileCount = ( ( width + TILE_SIZE - 1 ) / TILE_SIZE ) * ( ( height + TILE_SIZE - 1 ) / TILE_SIZE );
+
+		if ( _buffer.length != width * height )
+		{
+			_buffer = new float[ width * height ];
+		}
+		if ( _tileMinimum.length != tileCount )
+		{
+			_tileMinimum = new float[ tileCount ];
+		}
+
+		_width = width;
+		_height = height;
+		_imageScaleX = (double)width / (double)imageWidth;
+		_imageScaleY = (double)height / (double)imageHeight;
+		_perspective = ( projector instanceof Projector.PerspectiveProjector );
+		_frontClipDistance = projector.getFrontClipDistance();
+		_projector = projector;
+		_scene2view = scene2view;
+
+		Arrays.fill( _buffer, Float.NEGATIVE_INFINITY );
+		Arrays.fill( _tileMinimum, Float.NEGATIVE_INFINITY );
+	}
+
+	/**
+	 * Returns the closeness value for the given view Z-coordinate.
+	 *
+	 * @param viewZ View Z-coordinate.
+	 *
+	 * @return Closeness value.
+	 */
+	private double getCloseness( final double viewZ )
+	{
+		return _perspective ? -1.0 / viewZ : viewZ;
+	}
+
+	/**
+	 * Determines the projected bounding rectangle and nearest closeness of
+	 * the given bounds.
+	 *
+	 * @param info       Node information to update.
+	 * @param node2scene Transformation from bounds to scene coordinates.
+	 * @param bounds     Bounds to project.
+	 */
+	private void project( final NodeInfo info, final Matrix3D node2scene, final Bounds3D bounds )
+	{
+		final Projector projector = _projector;
+		final Matrix3D node2view = node2scene.multiply( _scene2view );
+		final double[] projected = new double[ 2 ];
+
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		double closeness = Double.NEGATIVE_INFINITY;
+		boolean crossesNearPlane = false;
+
+		for ( int i = 0; i < 8; i++ )
+		{
+			final double x = ( ( i & 1 ) == 0 ) ? bounds.v1.x : bounds.v2.x;
+			final double y = ( ( i & 2 ) == 0 ) ? bounds.v1.y : bounds.v2.y;
+			final double z = ( ( i & 4 ) == 0 ) ? bounds.v1.z : bounds.v2.z;
+
+			final double viewX = node2view.transformX( x, y, z );
+			final double viewY = node2view.transformY( x, y, z );
+			final double viewZ = node2view.transformZ( x, y, z );
+
+			if ( -viewZ < _frontClipDistance )
+			{
+				crossesNearPlane = true;
+				break;
+			}
+
+			//noinspection ConstantConditions
+			projector.project( projected, 0, viewX, viewY, viewZ );
+			final double bufferX = projected[ 0 ] * _imageScaleX;
+			final double bufferY = projected[ 1 ] * _imageScaleY;
+			minX = Math.min( minX, bufferX );
+			minY = Math.min( minY, bufferY );
+			maxX = Math.max( maxX, bufferX );
+			maxY = Math.max( maxY, bufferY );
+			closeness = Math.max( closeness, getCloseness( viewZ ) );
+		}
+
+		info._crossesNearPlane = crossesNearPlane;
+		info._minX = minX;
+		info._minY = minY;
+		info._maxX = maxX;
+		info._maxY = maxY;
+		info._closeness = closeness;
+	}
+
+	/**
+	 * Returns whether the given render style fills faces, so objects
+	 * rendered with it may hide objects behind them.
+	 *
+	 * @param style Render style.
+	 *
+	 * @return {@code true} if faces are filled.
+	 */
+	private static boolean isFilled( final RenderStyle style )
+	{
+		return style.isMaterialEnabled() || ( style.isFillEnabled() && ( style.getFillColor() != null ) );
+	}
+
+	/**
+	 * Returns whether faces with the given appearance are rendered opaque
+	 * using the given render style. Transparency of color maps is not
+	 * known here, so only the diffuse color is considered.
+	 *
+	 * @param style      Render style.
+	 * @param appearance Appearance of the faces.
+	 *
+	 * @return {@code true} if the faces are opaque.
+	 */
+	private static boolean isOpaque( final RenderStyle style, @Nullable final Appearance appearance )
+	{
+		final boolean result;
+		if ( style.isMaterialEnabled() )
+		{
+			result = ( appearance == null ) || ( appearance.getDiffuseColor().getAlphaFloat() * style.getExtraAlpha() >= OPAQUE_ALPHA );
+		}
+		else
+		{
+			final Color4 fillColor = style.getFillColor();
+			result = style.isFillEnabled() && ( fillColor != null ) && ( fillColor.getAlphaFloat() >= OPAQUE_ALPHA );
+		}
+		return result;
+	}
+
+	/**
+	 * Adds the opaque faces of an occluder.
+	 *
+	 * @param occluder     Occluder to add.
+	 * @param styleFilters Style filters to apply.
+	 * @param nodeStyle    Render style of the occluder.
+	 */
+	private void addOccluder( final NodeInfo occluder, final Collection<RenderStyleFilter> styleFilters, final RenderStyle nodeStyle )
+	{
+		final Matrix3D node2view = occluder._transform.multiply( _scene2view );
+
+		for ( final Node3DPath path : occluder.getContent() )
+		{
+			final Object3D object = (Object3D)path.getNode();
+			final RenderStyle objectStyle = nodeStyle.applyFilters( styleFilters, path );
+			final Matrix3D object2view = path.getTransform().multiply( node2view );
+
+			for ( final FaceGroup faceGroup : object.getFaceGroups() )
+			{
+				if ( isOpaque( objectStyle, faceGroup.getAppearance() ) )
+				{
+					final boolean backfaceCulling = objectStyle.isBackfaceCullingEnabled() && !faceGroup.isTwoSided();
+					for ( final Face3D face : faceGroup.getFaces() )
+					{
+						addFace( face, object2view, backfaceCulling );
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the triangles and boundary edges of an occluder face. Faces that
+	 * cross the front clipping plane are skipped, as are back faces if
+	 * back-face culling is enabled, because those are not rendered.
+	 *
+	 * @param face            Face to add.
+	 * @param object2view     Transformation from object to view coordinates.
+	 * @param backfaceCulling Whether back faces are culled.
+	 */
+	private void addFace( final Face3D face, final Matrix3D object2view, final boolean backfaceCulling )
+	{
+		final Projector projector = _projector;
+		final double frontClipDistance = _frontClipDistance;
+		final double imageScaleX = _imageScaleX;
+		final double imageScaleY = _imageScaleY;
+		final double[] projected = new double[ 2 ];
+
+		final int vertexCount = face.getVertexCount();
+		float[] vertices = _vertices;
+		if ( vertices.length < vertexCount * 3 )
+		{
+			vertices = new float[ vertexCount * 3 ];
+			_vertices = vertices;
+		}
+
+		for ( int i = 0; i < vertexCount; i++ )
+		{
+			final Vector3D point = face.getVertex( i ).point;
+			final double viewX = object2view.transformX( point );
+			final double viewY = object2view.transformY( point );
+			final double viewZ = object2view.transformZ( point );
+			if ( -viewZ < frontClipDistance )
+			{
+				return;
+			}
+
+			//noinspection ConstantConditions
+			projector.project( projected, 0, viewX, viewY, viewZ );
+			vertices[ i * 3 ] = (float)( projected[ 0 ] * imageScaleX );
+			vertices[ i * 3 + 1 ] = (float)( projected[ 1 ] * imageScaleY );
+			vertices[ i * 3 + 2 ] = (float)getCloseness( viewZ );
+		}
+
+		final Tessellation tessellation = face.getTessellation();
+		if ( backfaceCulling && ( getProjectedArea( tessellation, vertices ) <= 0.0 ) )
+		{
+			return;
+		}
+
+		final int firstTriangle = _triangleCount;
+		final int firstEdge = _edgeCount;
+		final float[] triangle = new float[ TRIANGLE_SIZE ];
+		final float[] edge = new float[ EDGE_SIZE ];
+
+		for ( final TessellationPrimitive primitive : tessellation.getPrimitives() )
+		{
+			final int[] triangles = primitive.getTriangles();
+			for ( int i = 0; i < triangles.length; i++ )
+			{
+				System.arraycopy( vertices, triangles[ i ] * 3, triangle, ( i % 3 ) * 3, 3 );
+				if ( i % 3 == 2 )
+				{
+					_triangles = append( _triangles, _triangleCount++, triangle );
+				}
+			}
+		}
+
+		final int[] boundaryEdges = tessellation.getBoundaryEdges();
+		for ( int i = 0; i < boundaryEdges.length; i += 2 )
+		{
+			edge[ 0 ] = vertices[ boundaryEdges[ i ] * 3 ];
+			edge[ 1 ] = vertices[ boundaryEdges[ i ] * 3 + 1 ];
+			edge[ 2 ] = vertices[ boundaryEdges[ i + 1 ] * 3 ];
+			edge[ 3 ] = vertices[ boundaryEdges[ i + 1 ] * 3 + 1 ];
+			_edges = append( _edges, _edgeCount++, edge );
+		}
+
+		if ( _triangleCount > firstTriangle )
+		{
+			int[] faces = _faces;
+			final int offset = _faceCount * FACE_SIZE;
+			if ( offset + FACE_SIZE > faces.length )
+			{
+				faces = Arrays.copyOf( faces, Math.max( 256 * FACE_SIZE, faces.length * 2 ) );
+				_faces = faces;
+			}
+			faces[ offset ] = firstTriangle;
+			faces[ offset + 1 ] = _triangleCount - firstTriangle;
+			faces[ offset + 2 ] = firstEdge;
+			faces[ offset + 3 ] = _edgeCount - firstEdge;
+			_faceCount++;
+		}
+	}
+
+	/**
+	 * Returns the signed area of the projected triangles of a face. The area
+	 * is positive for front faces, i.e. faces whose vertices appear in
+	 * counter-clockwise order to the viewer. Note that the Y-axis of the
+	 * depth buffer points down, which reverses the sign of the usual
+	 * cross product.
+	 *
+	 * @param tessellation Tessellation of the face.
+	 * @param vertices     Projected vertices (x, y, closeness).
+	 *
+	 * @return Signed area of the face in depth buffer pixels.
+	 */
+	private static double getProjectedArea( final Tessellation tessellation, final float[] vertices )
+	{
+		double result = 0.0;
+		for ( final TessellationPrimitive primitive : tessellation.getPrimitives() )
+		{
+			final int[] triangles = primitive.getTriangles();
+			for ( int i = 0; i < triangles.length; i += 3 )
+			{
+				final int vertex1 = triangles[ i ] * 3;
+				final int vertex2 = triangles[ i + 1 ] * 3;
+				final int vertex3 = triangles[ i + 2 ] * 3;
+				result += (double)( ( vertices[ vertex2 + 1 ] - vertices[ vertex1 + 1 ] ) * ( vertices[ vertex3 ] - vertices[ vertex1 ] ) - ( vertices[ vertex2 ] - vertices[ vertex1 ] ) * ( vertices[ vertex3 + 1 ] - vertices[ vertex1 + 1 ] ) );
+			}
+		}
+		return result / 2.0;
+	}
+
+	/**
+	 * Appends a record to an array of records, growing the array as needed.
+	 *
+	 * @param array  Array of records.
+	 * @param count  Number of records in the array.
+	 * @param record Record to append.
+	 *
+	 * @return Array containing the appended record.
+	 */
+	private static float[] append( final float[] array, final int count, final float[] record )
+	{
+		float[] result = array;
+		final int offset = count * record.length;
+		if ( offset + record.length > result.length )
+		{
+			result = Arrays.copyOf( result, Math.max( 1024 * record.length, result.length * 2 ) );
+		}
+		System.arraycopy( record, 0, result, offset, record.length );
+		return result;
+	}
+
+	/**
+	 * Rasterizes all occluder triangles into the depth buffer and updates the
+	 * tile minima.
+	 */
+	private void rasterize()
+	{
+		final int height = _height;
+		final int tileRows = ( height + TILE_SIZE - 1 ) / TILE_SIZE;
+		final int threadCount = Math.min( _threadCount, tileRows );
+
+		if ( ( threadCount <= 1 ) || ( _triangleCount == 0 ) )
+		{
+			rasterizeBand( 0, tileRows );
+		}
+		else
+		{
+			ParallelTools.processRanges( tileRows, threadCount, new ParallelTools.RangeTask<Object>()
+			{
+				@Override
+				public Object process( final int start, final int end )
+				{
+					rasterizeBand( start, end );
+					return null;
+				}
+			} );
+		}
+	}
+
+	/**
+	 * Rasterizes all occluder faces into a band of tile rows and updates
+	 * the tile minima of the band.
+	 *
+	 * <p>A pixel receives depth from a face only if the face completely
+	 * covers it, i.e. if its center is inside one of the triangles of the
+	 * face and no boundary edge of the face touches the pixel. Testing
+	 * against the boundary of the face, rather than the edges of each
+	 * triangle, prevents cracks along edges shared by triangles.
+	 *
+	 * @param startTileRow First tile row of the band (inclusive).
+	 * @param endTileRow   Last tile row of the band (exclusive).
+	 */
+	private void rasterizeBand( final int startTileRow, final int endTileRow )
+	{
+		final int width = _width;
+		final float[] buffer = _buffer;
+		final int[] faces = _faces;
+		final int bandMinY = startTileRow * TILE_SIZE;
+		final int bandMaxY = Math.min( _height, endTileRow * TILE_SIZE ) - 1;
+
+		/*
+		 * Pixels touched by the boundary of a face are marked with the
+		 * face number, so the marks need not be cleared between faces.
+		 */
+		final int[] boundary = new int[ width * Math.max( 0, bandMaxY - bandMinY + 1 ) ];
+
+		for ( int face = 0; face < _faceCount; face++ )
+		{
+			final int faceOffset = face * FACE_SIZE;
+			final int mark = face + 1;
+
+			for ( int edge = faces[ faceOffset + 2 ], end = edge + faces[ faceOffset + 3 ]; edge < end; edge++ )
+			{
+				markEdge( boundary, mark, edge * EDGE_SIZE, bandMinY, bandMaxY );
+			}
+
+			for ( int triangle = faces[ faceOffset ], end = triangle + faces[ faceOffset + 1 ]; triangle < end; triangle++ )
+			{
+				rasterizeTriangle( boundary, mark, triangle * TRIANGLE_SIZE, bandMinY, bandMaxY );
+			}
+		}
+
+		/* Update tile minima. */
+		final int tileColumns = ( width + TILE_SIZE - 1 ) / TILE_SIZE;
+		final float[] tileMinimum = _tileMinimum;
+		for ( int tileRow = startTileRow; tileRow < endTileRow; tileRow++ )
+		{
+			final int minY = tileRow * TILE_SIZE;
+			final int maxY = Math.min( _height, minY + TILE_SIZE );
+			for ( int tileColumn = 0; tileColumn < tileColumns; tileColumn++ )
+			{
+				final int minX = tileColumn * TILE_SIZE;
+				final int maxX = Math.min( width, minX + TILE_SIZE );
+
+				float minimum = Float.POSITIVE_INFINITY;
+				for ( int y = minY; y < maxY; y++ )
+				{
+					for ( int x = minX; x < maxX; x++ )
+					{
+						minimum = Math.min( minimum, buffer[ y * width + x ] );
+					}
+				}
+				tileMinimum[ tileRow * tileColumns + tileColumn ] = minimum;
+			}
+		}
+	}
+
+	/**
+	 * Marks the pixels touched by a boundary edge.
+	 *
+	 * @param boundary Boundary marks for the pixels of the band.
+	 * @param mark     Mark to set.
+	 * @param offset   Offset of the edge; see {@link #EDGE_SIZE}.
+	 * @param bandMinY First pixel row of the band.
+	 * @param bandMaxY Last pixel row of the band.
+	 */
+	private void markEdge( final int[] boundary, final int mark, final int offset, final int bandMinY, final int bandMaxY )
+	{
+		final int width = _width;
+		final float[] edges = _edges;
+		final double x0 = (double)edges[ offset ];
+		final double y0 = (double)edges[ offset + 1 ];
+		final double x1 = (double)edges[ offset + 2 ];
+		final double y1 = (double)edges[ offset + 3 ];
+
+		final double minY = Math.min( y0, y1 );
+		final double maxY = Math.max( y0, y1 );
+		final int startRow = Math.max( bandMinY, (int)Math.ceil( minY ) - 1 );
+		final int endRow = Math.min( bandMaxY, (int)Math.floor( maxY ) );
+
+		for ( int y = startRow; y <= endRow; y++ )
+		{
+			/* Part of the edge within the pixel row, including its borders. */
+			final double xa;
+			final double xb;
+			if ( y0 == y1 )
+			{
+				xa = x0;
+				xb = x1;
+			}
+			else
+			{
+				final double dxdy = ( x1 - x0 ) / ( y1 - y0 );
+				xa = x0 + ( Math.max( minY, (double)y ) - y0 ) * dxdy;
+				xb = x0 + ( Math.min( maxY, (double)( y + 1 ) ) - y0 ) * dxdy;
+			}
+
+			final int row = ( y - bandMinY ) * width;
+			final int startColumn = Math.max( 0, (int)Math.ceil( Math.min( xa, xb ) ) - 1 );
+			final int endColumn = Math.min( width - 1, (int)Math.floor( Math.max( xa, xb ) ) );
+			for ( int x = startColumn; x <= endColumn; x++ )
+			{
+				boundary[ row + x ] = mark;
+			}
+		}
+	}
+
+	/**
+	 * Rasterizes an occluder triangle into a band of pixel rows.
+	 *
+	 * @param boundary Boundary marks for the pixels of the band.
+	 * @param mark     Mark of pixels touched by the boundary of the face.
+	 * @param offset   Offset of the triangle; see {@link #TRIANGLE_SIZE}.
+	 * @param bandMinY First pixel row of the band.
+	 * @param bandMaxY Last pixel row of the band.
+	 */
+	private void rasterizeTriangle( final int[] boundary, final int mark, final int offset, final int bandMinY, final int bandMaxY )
+	{
+		final int width = _width;
+		final float[] buffer = _buffer;
+		final float[] triangles = _triangles;
+
+		double x0 = (double)triangles[ offset ];
+		double y0 = (double)triangles[ offset + 1 ];
+		double c0 = (double)triangles[ offset + 2 ];
+		double x1 = (double)triangles[ offset + 3 ];
+		double y1 = (double)triangles[ offset + 4 ];
+		double c1 = (double)triangles[ offset + 5 ];
+		final double x2 = (double)triangles[ offset + 6 ];
+		final double y2 = (double)triangles[ offset + 7 ];
+		final double c2 = (double)triangles[ offset + 8 ];
+
+		double area = ( x1 - x0 ) * ( y2 - y0 ) - ( x2 - x0 ) * ( y1 - y0 );
+		if ( area == 0.0 )
+		{
+			return;
+		}
+
+		if ( area < 0.0 )
+		{
+			/* Make winding consistent by swapping the first two vertices. */
+			double swap = x0; x0 = x1; x1 = swap;
+			swap = y0; y0 = y1; y1 = swap;
+			swap = c0; c0 = c1; c1 = swap;
+			area = -area;
+		}
+
+		final int minX = Math.max( 0, (int)Math.floor( Math.min( x0, Math.min( x1, x2 ) ) ) );
+		final int maxX = Math.min( width - 1, (int)Math.ceil( Math.max( x0, Math.max( x1, x2 ) ) ) - 1 );
+		final int minY = Math.max( bandMinY, (int)Math.floor( Math.min( y0, Math.min( y1, y2 ) ) ) );
+		final int maxY = Math.min( bandMaxY, (int)Math.ceil( Math.max( y0, Math.max( y1, y2 ) ) ) - 1 );
+		if ( ( minX > maxX ) || ( minY > maxY ) )
+		{
+			return;
+		}
+
+		/*
+		 * Edge functions e(x,y) = a * x + b * y + c, evaluated at pixel
+		 * centers, which are non-negative inside the triangle. Pixels on
+		 * an edge shared by two triangles are covered by both.
+		 */
+		final double a0 = y1 - y2;
+		final double b0 = x2 - x1;
+		final double e0 = a0 * ( 0.5 - x1 ) + b0 * ( 0.5 - y1 );
+
+		final double a1 = y2 - y0;
+		final double b1 = x0 - x2;
+		final double e1 = a1 * ( 0.5 - x2 ) + b1 * ( 0.5 - y2 );
+
+		final double a2 = y0 - y1;
+		final double b2 = x1 - x0;
+		final double e2 = a2 * ( 0.5 - x0 ) + b2 * ( 0.5 - y0 );
+
+		/*
+		 * Closeness is linear in image space. The minimum within a pixel
+		 * is the value at the center minus half the sum of the absolute
+		 * gradients, but never less than the minimum at the vertices.
+		 */
+		final double dcdx = ( a0 * c0 + a1 * c1 + a2 * c2 ) / area;
+		final double dcdy = ( b0 * c0 + b1 * c1 + b2 * c2 ) / area;
+		final double cc = c0 - dcdx * ( x0 - 0.5 ) - dcdy * ( y0 - 0.5 ) - 0.5 * ( Math.abs( dcdx ) + Math.abs( dcdy ) );
+		final double minimumCloseness = Math.min( c0, Math.min( c1, c2 ) );
+
+		for ( int y = minY; y <= maxY; y++ )
+		{
+			final int row = y * width;
+			final int boundaryRow = ( y - bandMinY ) * width;
+			for ( int x = minX; x <= maxX; x++ )
+			{
+				if ( ( a0 * x + b0 * y + e0 >= 0.0 ) &&
+				     ( a1 * x + b1 * y + e1 >= 0.0 ) &&
+				     ( a2 * x + b2 * y + e2 >= 0.0 ) &&
+				     ( boundary[ boundaryRow + x ] != mark ) )
+				{
+					final float closeness = (float)Math.max( minimumCloseness, cc + dcdx * x + dcdy * y );
+					if ( closeness > buffer[ row + x ] )
+					{
+						buffer[ row + x ] = closeness;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests whether the projected bounds are occluded.
+	 *
+	 * @param info Projected bounds.
+	 *
+	 * @return {@code true} if the bounds are occluded.
+	 */
+	private boolean isOccluded( final NodeInfo info )
+	{
+		if ( info._crossesNearPlane )
+		{
+			return false;
+		}
+
+		final int width = _width;
+		final int height = _height;
+
+		final int minX = Math.max( 0, (int)Math.floor( info._minX ) );
+		final int minY = Math.max( 0, (int)Math.floor( info._minY ) );
+		final int maxX = Math.min( width - 1, (int)Math.ceil( info._maxX ) - 1 );
+		final int maxY = Math.min( height - 1, (int)Math.ceil( info._maxY ) - 1 );
+		if ( ( minX > maxX ) || ( minY > maxY ) )
+		{
+			/* Outside the image; leave this to view frustum culling. */
+			return false;
+		}
+
+		final float closeness = (float)info._closeness;
+		final float[] buffer = _buffer;
+		final float[] tileMinimum = _tileMinimum;
+		final int tileColumns = ( width + TILE_SIZE - 1 ) / TILE_SIZE;
+
+		for ( int tileRow = minY / TILE_SIZE; tileRow <= maxY / TILE_SIZE; tileRow++ )
+		{
+			for ( int tileColumn = minX / TILE_SIZE; tileColumn <= maxX / TILE_SIZE; tileColumn++ )
+			{
+				if ( !( closeness < tileMinimum[ tileRow * tileColumns + tileColumn ] ) )
+				{
+					final int tileMinY = Math.max( minY, tileRow * TILE_SIZE );
+					final int tileMaxY = Math.min( maxY, tileRow * TILE_SIZE + TILE_SIZE - 1 );
+					final int tileMinX = Math.max( minX, tileColumn * TILE_SIZE );
+					final int tileMaxX = Math.min( maxX, tileColumn * TILE_SIZE + TILE_SIZE - 1 );
+
+					for ( int y = tileMinY; y <= tileMaxY; y++ )
+					{
+						final int row = y * width;
+						for ( int x = tileMinX; x <= tileMaxX; x++ )
+						{
+							if ( !( closeness < buffer[ row + x ] ) )
+							{
+								return false;
+							}
+						}
+					}
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Projected bounds of a content node.
+	 */
+	private static class NodeInfo
+	{
+		/**
+		 * Content node; {@code null} when testing bounds.
+		 */
+		final ContentNode _node;
+
+		/**
+		 * Transformation from node to scene coordinates.
+		 */
+		final Matrix3D _transform;
+
+		/**
+		 * Content of the content node; {@code null} when testing bounds.
+		 */
+		final Node3D _node3D;
+
+		/**
+		 * Render style of the content node, if it is an occluder candidate.
+		 */
+		@Nullable
+		RenderStyle _style = null;
+
+		/**
+		 * Whether the bounds cross the near clipping plane.
+		 */
+		boolean _crossesNearPlane;
+
+		/**
+		 * Minimum X-coordinate in the depth buffer.
+		 */
+		double _minX;
+
+		/**
+		 * Minimum Y-coordinate in the depth buffer.
+		 */
+		double _minY;
+
+		/**
+		 * Maximum X-coordinate in the depth buffer.
+		 */
+		double _maxX;
+
+		/**
+		 * Maximum Y-coordinate in the depth buffer.
+		 */
+		double _maxY;
+
+		/**
+		 * Closeness of the nearest point of the bounds.
+		 */
+		double _closeness;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param node      Content node.
+		 * @param transform Transformation from node to scene coordinates.
+		 * @param node3D    Content of the content node.
+		 */
+		NodeInfo( final ContentNode node, final Matrix3D transform, final Node3D node3D )
+		{
+			_node = node;
+			_transform = transform;
+			_node3D = node3D;
+		}
+
+		/**
+		 * Returns whether the content is still the current content of the
+		 * content node, so information cached by the node may be used.
+		 *
+		 * @return {@code true} if the content is current.
+		 */
+		boolean isContentCurrent()
+		{
+			//noinspection ObjectEquality
+			return ( _node.getNode3D() == _node3D );
+		}
+
+		/**
+		 * Returns the bounds of the content in node coordinates.
+		 *
+		 * @return Bounds; {@code null} if the content has no bounds.
+		 */
+		@Nullable
+		Bounds3D getBounds()
+		{
+			return isContentCurrent() ? _node.getBounds() : _node3D.calculateBounds( Matrix3D.IDENTITY );
+		}
+
+		/**
+		 * Returns paths to the objects in the content.
+		 *
+		 * @return Paths to objects; transforms are object-to-node.
+		 */
+		List<Node3DPath> getContent()
+		{
+			final List<Node3DPath> result;
+			if ( isContentCurrent() )
+			{
+				result = _node.getContent();
+			}
+			else
+			{
+				final Node3DCollector collector = new Node3DCollector( Object3D.class );
+				Node3DTreeWalker.walk( collector, _node3D );
+				result = collector.getCollectedNodes();
+			}
+			return result;
+		}
+
+		/**
+		 * Returns the projected area of the bounding rectangle.
+		 *
+		 * @return Area in depth buffer pixels.
+		 */
+		double getArea()
+		{
+			return ( _maxX - _minX ) * ( _maxY - _minY );
+		}
+	}
+}
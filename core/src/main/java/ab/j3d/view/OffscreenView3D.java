@@ -58,4 +58,21 @@ extends View3D
 	 * @return Rendered image.
 	 */
 	public abstract BufferedImage renderImage( int width, int height );
+
+	/**
+	 * Called by {@link BatchRenderer} before rendering a batch of images of
+	 * the same scene. Views may use this to prepare data that only depends on
+	 * the scene, so it can be shared by all images in the batch.
+	 */
+	protected void beginBatch()
+	{
+	}
+
+	/**
+	 * Called by {@link BatchRenderer} after rendering a batch of images.
+	 * Releases any data prepared by {@link #beginBatch()}.
+	 */
+	protected void endBatch()
+	{
+	}
 }
@@ -0,0 +1,457 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.management.*;
+
+import org.jetbrains.annotations.*;
+
+/**
+ * Measures where time is spent while rendering frames. A renderer calls
+ * {@link #beginFrame()} and {@link #endFrame()} around each frame and measures
+ * the time spent in each {@link RenderPhase} as follows:
+ * <pre>
+ * final long start = metrics.startPhase();
+ * ...
+ * metrics.endPhase( RenderPhase.DRAW, start );
+ * </pre>
+ * Times of the most recent frames are kept in {@link RollingHistogram}s, which
+ * can be queried directly or through JMX (see {@link #registerMBean}). Metrics
+ * of each frame are also passed to any {@link RenderMetricsListener}s.
+ *
+ * <p>
+ * Metrics are disabled by default. When disabled, the overhead of the methods
+ * above is reduced to a field check. Frames and phases must be measured from
+ * a single (rendering) thread; the other methods are thread-safe.
+ *
+ * @author Peter S. Heijnen
+ */
+public class RenderMetrics
+implements RenderMetricsMXBean
+{
+	/**
+	 * Default number of frames to keep metrics for.
+	 */
+	public static final int DEFAULT_WINDOW_SIZE = 300;
+
+	/**
+	 * Render phases.
+	 */
+	private static final RenderPhase[] PHASES = RenderPhase.values();
+
+	/**
+	 * Nanoseconds per millisecond.
+	 */
+	private static final double NANOS_PER_MILLI = 1.0e6;
+
+	/**
+	 * Whether metrics are being measured.
+	 */
+	private volatile boolean _enabled;
+
+	/**
+	 * Whether the current frame is being measured.
+	 */
+	private boolean _frameActive;
+
+	/**
+	 * Value of {@link System#nanoTime()} when the current frame started.
+	 */
+	private long _frameStart;
+
+	/**
+	 * Time spent in each phase during the current frame.
+	 */
+	private final long[] _phaseTimes;
+
+	/**
+	 * Number of objects rendered during the current frame.
+	 */
+	private int _objectCount;
+
+	/**
+	 * Number of draw calls issued during the current frame.
+	 */
+	private int _drawCallCount;
+
+	/**
+	 * Total number of frames measured.
+	 */
+	private long _frameCount;
+
+	/**
+	 * Times of the most recent frames.
+	 */
+	private final RollingHistogram _frameTimes;
+
+	/**
+	 * Times spent in each phase during the most recent frames.
+	 */
+	private final RollingHistogram[] _phaseHistograms;
+
+	/**
+	 * Determines the rendering framerate.
+	 */
+	private final FrameCounter _frameCounter;
+
+	/**
+	 * Listeners to notify of each rendered frame.
+	 */
+	private final List<RenderMetricsListener> _listeners;
+
+	/**
+	 * Name under which this instance is registered with the platform MBean
+	 * server.
+	 */
+	@Nullable
+	private ObjectName _objectName;
+
+	/**
+	 * Constructs a new instance that keeps metrics for the default number of
+	 * frames.
+	 */
+	public RenderMetrics()
+	{
+		this( DEFAULT_WINDOW_SIZE );
+	}
+
+	/**
+	 * Constructs a new instance.
+	 *
+	 * @param windowSize Number of most recent frames to keep metrics for.
+	 */
+	public RenderMetrics( final int windowSize )
+	{
+		_enabled = false;
+		_frameActive = false;
+		_frameStart = 0L;
+		_phaseTimes = new long[ PHASES.length ];
+		_objectCount = 0;
+		_drawCallCount = 0;
+		_frameCount = 0L;
+		_frameTimes = new RollingHistogram( windowSize );
+
+		final RollingHistogram[] phaseHistograms = new RollingHistogram[ PHASES.length ];
+		for ( int i = 0; i < phaseHistograms.length; i++ )
+		{
+			phaseHistograms[ i ] = new RollingHistogram( windowSize );
+		}
+		_phaseHistograms = phaseHistograms;
+
+		_frameCounter = new FrameCounter();
+		_listeners = new CopyOnWriteArrayList<RenderMetricsListener>();
+		_objectName = null;
+	}
+
+	@Override
+	public boolean isEnabled()
+	{
+		return _enabled;
+	}
+
+	@Override
+	public void setEnabled( final boolean enabled )
+	{
+		_enabled = enabled;
+	}
+
+	/**
+	 * Called when rendering of a frame starts.
+	 */
+	public void beginFrame()
+	{
+		final boolean enabled = _enabled;
+		_frameActive = enabled;
+		if ( enabled )
+		{
+			Arrays.fill( _phaseTimes, 0L );
+			_objectCount = 0;
+			_drawCallCount = 0;
+			_frameStart = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Returns the start time of a phase, to be passed to {@link #endPhase}.
+	 *
+	 * @return Start time of the phase.
+	 */
+	public long startPhase()
+	{
+		return _frameActive ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * Adds the time since the given start time to the given phase.
+	 *
+	 * @param phase Render phase that ended.
+	 * @param start Start time, as returned by {@link #startPhase()}.
+	 */
+	public void endPhase( @NotNull final RenderPhase phase, final long start )
+	{
+		if ( _frameActive )
+		{
+			_phaseTimes[ phase.ordinal() ] += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Adds to the number of objects rendered during the current frame. Has no
+	 * effect outside a frame.
+	 *
+	 * @param count Number of objects.
+	 */
+	public void addObjectCount( final int count )
+	{
+		if ( _frameActive )
+		{
+			_objectCount += count;
+		}
+	}
+
+	/**
+	 * Adds to the number of draw calls issued during the current frame. Has
+	 * no effect outside a frame.
+	 *
+	 * @param count Number of draw calls.
+	 */
+	public void addDrawCallCount( final int count )
+	{
+		if ( _frameActive )
+		{
+			_drawCallCount += count;
+		}
+	}
+
+	/**
+	 * Called when rendering of a frame ends.
+	 */
+	public void endFrame()
+	{
+		if ( _frameActive )
+		{
+			_frameActive = false;
+
+			final long frameTime = System.nanoTime() - _frameStart;
+			final long[] phaseTimes = _phaseTimes;
+
+			final long frameNumber;
+			synchronized ( this )
+			{
+				frameNumber = ++_frameCount;
+				_frameTimes.add( frameTime );
+
+				final RollingHistogram[] phaseHistograms = _phaseHistograms;
+				for ( int i = 0; i < phaseHistograms.length; i++ )
+				{
+					phaseHistograms[ i ].add( phaseTimes[ i ] );
+				}
+
+				final FrameCounter frameCounter = _frameCounter;
+				frameCounter.increment();
+				frameCounter.get();
+			}
+
+			final List<RenderMetricsListener> listeners = _listeners;
+			if ( !listeners.isEmpty() )
+			{
+				final FrameMetrics metrics = new FrameMetrics( frameNumber, frameTime, phaseTimes, _objectCount, _drawCallCount );
+				for ( final RenderMetricsListener listener : listeners )
+				{
+					listener.frameRendered( metrics );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds a listener to be notified of each rendered frame.
+	 *
+	 * @param listener Listener to add.
+	 */
+	public void addListener( @NotNull final RenderMetricsListener listener )
+	{
+		_listeners.add( listener );
+	}
+
+	/**
+	 * Removes a listener.
+	 *
+	 * @param listener Listener to remove.
+	 */
+	public void removeListener( @NotNull final RenderMetricsListener listener )
+	{
+		_listeners.remove( listener );
+	}
+
+	@Override
+	public synchronized long getFrameCount()
+	{
+		return _frameCount;
+	}
+
+	@Override
+	public synchronized int getFramesPerSecond()
+	{
+		return _frameCounter.get();
+	}
+
+	/**
+	 * Returns the given percentile of recent frame times.
+	 *
+	 * @param percentile Percentile (0-100).
+	 *
+	 * @return Frame time in nanoseconds.
+	 */
+	public synchronized long getFrameTimePercentile( final double percentile )
+	{
+		return _frameTimes.getPercentile( percentile );
+	}
+
+	/**
+	 * Returns the given percentile of recent times spent in the given phase.
+	 *
+	 * @param phase      Render phase.
+	 * @param percentile Percentile (0-100).
+	 *
+	 * @return Time spent in the phase per frame, in nanoseconds.
+	 */
+	public synchronized long getPhaseTimePercentile( @NotNull final RenderPhase phase, final double percentile )
+	{
+		return _phaseHistograms[ phase.ordinal() ].getPercentile( percentile );
+	}
+
+	/**
+	 * Returns the mean of recent times spent in the given phase.
+	 *
+	 * @param phase Render phase.
+	 *
+	 * @return Time spent in the phase per frame, in nanoseconds.
+	 */
+	public synchronized double getMeanPhaseTime( @NotNull final RenderPhase phase )
+	{
+		return _phaseHistograms[ phase.ordinal() ].getMean();
+	}
+
+	@Override
+	public synchronized double getMeanFrameTime()
+	{
+		return _frameTimes.getMean() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getFrameTimeP50()
+	{
+		return (double)getFrameTimePercentile( 50.0 ) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getFrameTimeP95()
+	{
+		return (double)getFrameTimePercentile( 95.0 ) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getFrameTimeP99()
+	{
+		return (double)getFrameTimePercentile( 99.0 ) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public synchronized double getMaxFrameTime()
+	{
+		return (double)_frameTimes.getMax() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public synchronized Map<String, Double> getMeanPhaseTimes()
+	{
+		final Map<String, Double> result = new LinkedHashMap<String, Double>();
+		for ( final RenderPhase phase : PHASES )
+		{
+			result.put( phase.name(), _phaseHistograms[ phase.ordinal() ].getMean() / NANOS_PER_MILLI );
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized Map<String, Double> getPhaseTimesP95()
+	{
+		final Map<String, Double> result = new LinkedHashMap<String, Double>();
+		for ( final RenderPhase phase : PHASES )
+		{
+			result.put( phase.name(), (double)_phaseHistograms[ phase.ordinal() ].getPercentile( 95.0 ) / NANOS_PER_MILLI );
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized void reset()
+	{
+		_frameCount = 0L;
+		_frameTimes.clear();
+		for ( final RollingHistogram histogram : _phaseHistograms )
+		{
+			histogram.clear();
+		}
+	}
+
+	/**
+	 * Registers this instance with the platform MBean server, under the name
+	 * {@code ab.j3d:type=RenderMetrics,name=<name>}. Any previous registration
+	 * of this instance is removed.
+	 *
+	 * @param name Name to identify the view that is measured.
+	 *
+	 * @return Object name used to register the MBean.
+	 *
+	 * @throws JMException if the MBean could not be registered.
+	 */
+	@NotNull
+	public ObjectName registerMBean( @NotNull final String name )
+	throws JMException
+	{
+		unregisterMBean();
+
+		final ObjectName result = new ObjectName( "ab.j3d:type=RenderMetrics,name=" + ObjectName.quote( name ) );
+		ManagementFactory.getPlatformMBeanServer().registerMBean( this, result );
+		_objectName = result;
+		return result;
+	}
+
+	/**
+	 * Removes the registration of this instance with the platform MBean
+	 * server, if any.
+	 *
+	 * @throws JMException if the MBean could not be unregistered.
+	 */
+	public void unregisterMBean()
+	throws JMException
+	{
+		final ObjectName objectName = _objectName;
+		if ( objectName != null )
+		{
+			_objectName = null;
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean( objectName );
+		}
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import org.jetbrains.annotations.*;
+
+/**
+ * Receives metrics of each frame measured by {@link RenderMetrics}.
+ *
+ * @author Peter S. Heijnen
+ */
+public interface RenderMetricsListener
+{
+	/**
+	 * Called when a frame was rendered. This is called from the rendering
+	 * thread, so implementations should return quickly.
+	 *
+	 * @param metrics Metrics of the frame.
+	 */
+	void frameRendered( @NotNull FrameMetrics metrics );
+}
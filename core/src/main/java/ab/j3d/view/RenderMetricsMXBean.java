@@ -0,0 +1,113 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import java.util.*;
+
+/**
+ * Management interface for {@link RenderMetrics}. All times are in
+ * milliseconds and apply to the most recent frames only.
+ *
+ * @author Peter S. Heijnen
+ */
+public interface RenderMetricsMXBean
+{
+	/**
+	 * Returns whether metrics are being measured.
+	 *
+	 * @return {@code true} if metrics are measured.
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Sets whether metrics are being measured.
+	 *
+	 * @param enabled {@code true} to measure metrics.
+	 */
+	void setEnabled( boolean enabled );
+
+	/**
+	 * Returns the total number of frames measured.
+	 *
+	 * @return Number of frames.
+	 */
+	long getFrameCount();
+
+	/**
+	 * Returns the number of frames rendered during the previous second.
+	 *
+	 * @return Number of frames.
+	 */
+	int getFramesPerSecond();
+
+	/**
+	 * Returns the mean frame time.
+	 *
+	 * @return Frame time in milliseconds.
+	 */
+	double getMeanFrameTime();
+
+	/**
+	 * Returns the median frame time.
+	 *
+	 * @return Frame time in milliseconds.
+	 */
+	double getFrameTimeP50();
+
+	/**
+	 * Returns the 95th percentile of frame times.
+	 *
+	 * @return Frame time in milliseconds.
+	 */
+	double getFrameTimeP95();
+
+	/**
+	 * Returns the 99th percentile of frame times.
+	 *
+	 * @return Frame time in milliseconds.
+	 */
+	double getFrameTimeP99();
+
+	/**
+	 * Returns the maximum frame time.
+	 *
+	 * @return Frame time in milliseconds.
+	 */
+	double getMaxFrameTime();
+
+	/**
+	 * Returns the mean time spent per frame in each {@link RenderPhase}.
+	 *
+	 * @return Time in milliseconds per phase name.
+	 */
+	Map<String, Double> getMeanPhaseTimes();
+
+	/**
+	 * Returns the 95th percentile of time spent per frame in each
+	 * {@link RenderPhase}.
+	 *
+	 * @return Time in milliseconds per phase name.
+	 */
+	Map<String, Double> getPhaseTimesP95();
+
+	/**
+	 * Clears all measured metrics.
+	 */
+	void reset();
+}
@@ -0,0 +1,70 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+/**
+ * Phase of rendering a frame, as measured by {@link RenderMetrics}. Phases may
+ * be nested, e.g. culling is typically performed while walking the scene and
+ * a shadow pass includes drawing. Times of nested phases are included in the
+ * time of the enclosing phase.
+ *
+ * @author Peter S. Heijnen
+ */
+public enum RenderPhase
+{
+	/**
+	 * Traversal of the scene graph, including application of render styles.
+	 */
+	SCENE_WALK,
+
+	/**
+	 * Determining which objects are visible, e.g. view frustum culling.
+	 */
+	CULLING,
+
+	/**
+	 * Selection of the level of detail to render objects with.
+	 */
+	LEVEL_OF_DETAIL,
+
+	/**
+	 * Sorting of objects or primitives, e.g. in rendering order.
+	 */
+	SORTING,
+
+	/**
+	 * Creation of geometry for rendering, e.g. vertex buffer objects.
+	 */
+	GEOMETRY_UPLOAD,
+
+	/**
+	 * Loading of textures for rendering.
+	 */
+	TEXTURE_UPLOAD,
+
+	/**
+	 * Drawing of geometry.
+	 */
+	DRAW,
+
+	/**
+	 * Rendering of shadow maps.
+	 */
+	SHADOW_PASS
+}
@@ -0,0 +1,172 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import ab.j3d.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Specifies a single image to be rendered by a {@link BatchRenderer}, i.e. a
+ * camera position, image size and optionally projection settings.
+ *
+ * @author Peter S. Heijnen
+ */
+public class RenderShot
+{
+	/**
+	 * Transformation from scene to view coordinates.
+	 */
+	@NotNull
+	private final Matrix3D _scene2view;
+
+	/**
+	 * Width of the image in pixels.
+	 */
+	private final int _width;
+
+	/**
+	 * Height of the image in pixels.
+	 */
+	private final int _height;
+
+	/**
+	 * Projection policy; {@code null} to use that of the view.
+	 */
+	@Nullable
+	private final ProjectionPolicy _projectionPolicy;
+
+	/**
+	 * Field of view in radians; {@link Double#NaN} to use that of the view.
+	 */
+	private final double _fieldOfView;
+
+	/**
+	 * Zoom factor; {@link Double#NaN} to use that of the view.
+	 */
+	private final double _zoomFactor;
+
+	/**
+	 * Constructs a new shot using the projection settings of the view.
+	 *
+	 * @param scene2view Transformation from scene to view coordinates.
+	 * @param width      Width of the image in pixels.
+	 * @param height     Height of the image in pixels.
+	 */
+	public RenderShot( @NotNull final Matrix3D scene2view, final int width, final int height )
+	{
+		this( scene2view, width, height, null, Double.NaN, Double.NaN );
+	}
+
+	/**
+	 * Constructs a new shot.
+	 *
+	 * @param scene2view       Transformation from scene to view coordinates.
+	 * @param width            Width of the image in pixels.
+	 * @param height           Height of the image in pixels.
+	 * @param projectionPolicy Projection policy; {@code null} to use that of
+	 *                         the view.
+	 * @param fieldOfView      Field of view in radians; {@link Double#NaN} to
+	 *                         use that of the view.
+	 * @param zoomFactor       Zoom factor; {@link Double#NaN} to use that of
+	 *                         the view.
+	 */
+	public RenderShot( @NotNull final Matrix3D scene2view, final int width, final int height, @Nullable final ProjectionPolicy projectionPolicy, final double fieldOfView, final double zoomFactor )
+	{
+		if ( ( width <= 0 ) || ( height <= 0 ) )
+		{
+			throw new IllegalArgumentException( "Invalid image size: " + width + " x " + height );
+		}
+
+		_scene2view = scene2view;
+		_width = width;
+		_height = height;
+		_projectionPolicy = projectionPolicy;
+		_fieldOfView = fieldOfView;
+		_zoomFactor = zoomFactor;
+	}
+
+	/**
+	 * Returns the transformation from scene to view coordinates.
+	 *
+	 * @return Scene to view transform.
+	 */
+	@NotNull
+	public Matrix3D getScene2View()
+	{
+		return _scene2view;
+	}
+
+	/**
+	 * Returns the width of the image.
+	 *
+	 * @return Width in pixels.
+	 */
+	public int getWidth()
+	{
+		return _width;
+	}
+
+	/**
+	 * Returns the height of the image.
+	 *
+	 * @return Height in pixels.
+	 */
+	public int getHeight()
+	{
+		return _height;
+	}
+
+	/**
+	 * Returns the projection policy.
+	 *
+	 * @return Projection policy; {@code null} to use that of the view.
+	 */
+	@Nullable
+	public ProjectionPolicy getProjectionPolicy()
+	{
+		return _projectionPolicy;
+	}
+
+	/**
+	 * Returns the field of view.
+	 *
+	 * @return Field of view in radians; {@link Double#NaN} to use that of the
+	 * view.
+	 */
+	public double getFieldOfView()
+	{
+		return _fieldOfView;
+	}
+
+	/**
+	 * Returns the zoom factor.
+	 *
+	 * @return Zoom factor; {@link Double#NaN} to use that of the view.
+	 */
+	public double getZoomFactor()
+	{
+		return _zoomFactor;
+	}
+
+	@Override
+	public String toString()
+	{
+		return super.toString() + "[width=" + _width + ", height=" + _height + ", scene2view=" + _scene2view.toFriendlyString() + ']';
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import java.io.*;
+
+import org.jetbrains.annotations.*;
+
+/**
+ * Receives the results of a {@link BatchRenderer}. Results are received in
+ * the same order as the shots were specified, on the thread that started the
+ * batch.
+ *
+ * @param <T> Type of result, e.g. an image or encoded image data.
+ *
+ * @author Peter S. Heijnen
+ */
+public interface RenderShotListener<T>
+{
+	/**
+	 * Called when a shot has been rendered.
+	 *
+	 * @param index  Index of the shot in the batch.
+	 * @param shot   Shot that was rendered.
+	 * @param result Rendered image or encoded image data.
+	 *
+	 * @throws IOException if an I/O error occurs while handling the result.
+	 */
+	void shotRendered( int index, @NotNull RenderShot shot, @NotNull T result )
+	throws IOException;
+}
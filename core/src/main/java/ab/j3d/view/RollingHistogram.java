@@ -0,0 +1,288 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import java.util.*;
+
+/**
+ * Histogram of the most recent values in a fixed-size window, e.g. frame times
+ * of the last few hundred frames. Values are counted in buckets with a
+ * logarithmic scale, such that percentiles can be determined quickly with a
+ * relative error of at most 12.5%. Minimum, maximum and mean values are exact.
+ *
+ * <p>
+ * This implementation is not thread-safe.
+ *
+ * @author Peter S. Heijnen
+ */
+public class RollingHistogram
+{
+	/**
+	 * Number of bits used for the linear part of a bucket index.
+	 */
+	private static final int SUB_BUCKET_BITS = 3;
+
+	/**
+	 * Number of linear buckets for each power of two.
+	 */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * Number of buckets needed to cover all non-negative {@code long} values.
+	 */
+	private static final int BUCKET_COUNT = ( Long.SIZE - SUB_BUCKET_BITS ) << SUB_BUCKET_BITS;
+
+	/**
+	 * Values in the window, stored in a ring buffer.
+	 */
+	private final long[] _values;
+
+	/**
+	 * Index in {@link #_values} where the next value is stored.
+	 */
+	private int _next;
+
+	/**
+	 * Number of values in the window.
+	 */
+	private int _count;
+
+	/**
+	 * Number of values in the window per bucket.
+	 */
+	private final int[] _bucketCounts;
+
+	/**
+	 * Sum of values in the window.
+	 */
+	private long _sum;
+
+	/**
+	 * Constructs a new histogram.
+	 *
+	 * @param windowSize Number of most recent values to keep.
+	 *
+	 * @throws IllegalArgumentException if {@code windowSize < 1}.
+	 */
+	public RollingHistogram( final int windowSize )
+	{
+		if ( windowSize < 1 )
+		{
+			throw new IllegalArgumentException( "windowSize: " + windowSize );
+		}
+
+		_values = new long[ windowSize ];
+		_next = 0;
+		_count = 0;
+		_bucketCounts = new int[ BUCKET_COUNT ];
+		_sum = 0L;
+	}
+
+	/**
+	 * Returns the maximum number of values in the window.
+	 *
+	 * @return Window size.
+	 */
+	public int getWindowSize()
+	{
+		return _values.length;
+	}
+
+	/**
+	 * Returns the number of values currently in the window.
+	 *
+	 * @return Number of values.
+	 */
+	public int getCount()
+	{
+		return _count;
+	}
+
+	/**
+	 * Adds a value. If the window is full, the oldest value is removed.
+	 *
+	 * @param value Value to add; negative values are counted as zero.
+	 */
+	public void add( final long value )
+	{
+		final long[] values = _values;
+		final int[] bucketCounts = _bucketCounts;
+		final long newValue = Math.max( 0L, value );
+		final int next = _next;
+
+		if ( _count == values.length )
+		{
+			final long oldValue = values[ next ];
+			bucketCounts[ getBucketIndex( oldValue ) ]--;
+			_sum -= oldValue;
+		}
+		else
+		{
+			_count++;
+		}
+
+		values[ next ] = newValue;
+		bucketCounts[ getBucketIndex( newValue ) ]++;
+		_sum += newValue;
+		_next = ( next + 1 ) % values.length;
+	}
+
+	/**
+	 * Removes all values.
+	 */
+	public void clear()
+	{
+		_next = 0;
+		_count = 0;
+		Arrays.fill( _bucketCounts, 0 );
+		_sum = 0L;
+	}
+
+	/**
+	 * Returns the mean of the values in the window.
+	 *
+	 * @return Mean value; {@code 0.0} if the window is empty.
+	 */
+	public double getMean()
+	{
+		final int count = _count;
+		return ( count == 0 ) ? 0.0 : (double)_sum / (double)count;
+	}
+
+	/**
+	 * Returns the minimum value in the window.
+	 *
+	 * @return Minimum value; {@code 0} if the window is empty.
+	 */
+	public long getMin()
+	{
+		final long[] values = _values;
+		final int count = _count;
+
+		long result = ( count == 0 ) ? 0L : Long.MAX_VALUE;
+		for ( int i = 0; i < count; i++ )
+		{
+			result = Math.min( result, values[ i ] );
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the maximum value in the window.
+	 *
+	 * @return Maximum value; {@code 0} if the window is empty.
+	 */
+	public long getMax()
+	{
+		final long[] values = _values;
+		final int count = _count;
+
+		long result = 0L;
+		for ( int i = 0; i < count; i++ )
+		{
+			result = Math.max( result, values[ i ] );
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the given percentile of the values in the window. The result is
+	 * the upper bound of the bucket containing the value at that percentile,
+	 * limited to the range of values in the window.
+	 *
+	 * @param percentile Percentile (0-100).
+	 *
+	 * @return Value at the given percentile; {@code 0} if the window is empty.
+	 *
+	 * @throws IllegalArgumentException if the percentile is out of range.
+	 */
+	public long getPercentile( final double percentile )
+	{
+		if ( !( percentile >= 0.0 ) || ( percentile > 100.0 ) )
+		{
+			throw new IllegalArgumentException( "percentile: " + percentile );
+		}
+
+		long result = 0L;
+
+		final int count = _count;
+		if ( count > 0 )
+		{
+			final long rank = Math.max( 1L, (long)Math.ceil( percentile / 100.0 * (double)count ) );
+
+			final int[] bucketCounts = _bucketCounts;
+			int bucket = 0;
+			long cumulative = (long)bucketCounts[ 0 ];
+			while ( cumulative < rank )
+			{
+				cumulative += (long)bucketCounts[ ++bucket ];
+			}
+
+			result = Math.max( getMin(), Math.min( getMax(), getBucketUpperBound( bucket ) ) );
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the index of the bucket that counts the given value.
+	 *
+	 * @param value Value (non-negative).
+	 *
+	 * @return Bucket index.
+	 */
+	static int getBucketIndex( final long value )
+	{
+		final int result;
+		if ( value < (long)SUB_BUCKETS )
+		{
+			result = (int)value;
+		}
+		else
+		{
+			final int exponent = ( Long.SIZE - 1 ) - Long.numberOfLeadingZeros( value );
+			final int shift = exponent - SUB_BUCKET_BITS;
+			result = ( ( shift + 1 ) << SUB_BUCKET_BITS ) + (int)( ( value >>> shift ) & (long)( SUB_BUCKETS - 1 ) );
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the largest value counted by the given bucket.
+	 *
+	 * @param bucket Bucket index.
+	 *
+	 * @return Upper bound of the bucket (inclusive).
+	 */
+	static long getBucketUpperBound( final int bucket )
+	{
+		final long result;
+		if ( bucket < SUB_BUCKETS )
+		{
+			result = (long)bucket;
+		}
+		else
+		{
+			final int shift = ( bucket >> SUB_BUCKET_BITS ) - 1;
+			final long lowerBound = (long)( SUB_BUCKETS + ( bucket & ( SUB_BUCKETS - 1 ) ) ) << shift;
+			result = lowerBound + ( ( 1L << shift ) - 1L );
+		}
+		return result;
+	}
+}
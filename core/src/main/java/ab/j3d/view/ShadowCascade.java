@@ -0,0 +1,151 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import java.util.*;
+
+import ab.j3d.*;
+import ab.j3d.model.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Shadow map projection for a single light and a range of the camera's view
+ * depth, as determined by {@link ShadowFrustumFitter}. Without cascades, the
+ * range covers the entire viewing frustum of the camera.
+ *
+ * @author Peter S. Heijnen
+ */
+public class ShadowCascade
+{
+	/**
+	 * Transformation from scene to light coordinates.
+	 */
+	@NotNull
+	private final Matrix3D _sceneToLight;
+
+	/**
+	 * Projection from light to clip coordinates.
+	 */
+	@NotNull
+	private final Matrix4D _projection;
+
+	/**
+	 * Start of the camera's view depth covered by the cascade.
+	 */
+	private final double _near;
+
+	/**
+	 * End of the camera's view depth covered by the cascade.
+	 */
+	private final double _far;
+
+	/**
+	 * Content nodes that may cast shadows in the cascade.
+	 */
+	@NotNull
+	private final List<ContentNode> _casters;
+
+	/**
+	 * Constructs a new cascade.
+	 *
+	 * @param sceneToLight Transformation from scene to light coordinates.
+	 * @param projection   Projection from light to clip coordinates.
+	 * @param near         Start of the camera's view depth covered.
+	 * @param far          End of the camera's view depth covered.
+	 * @param casters      Content nodes that may cast shadows.
+	 */
+	public ShadowCascade( @NotNull final Matrix3D sceneToLight, @NotNull final Matrix4D projection, final double near, final double far, @NotNull final List<ContentNode> casters )
+	{
+		_sceneToLight = sceneToLight;
+		_projection = projection;
+		_near = near;
+		_far = far;
+		_casters = casters;
+	}
+
+	/**
+	 * Returns the transformation from scene to light coordinates, i.e. the
+	 * model-view matrix for rendering the shadow map.
+	 *
+	 * @return Transformation from scene to light coordinates.
+	 */
+	@NotNull
+	public Matrix3D getSceneToLight()
+	{
+		return _sceneToLight;
+	}
+
+	/**
+	 * Returns the projection from light to clip coordinates, i.e. the
+	 * projection matrix for rendering the shadow map.
+	 *
+	 * @return Projection matrix.
+	 */
+	@NotNull
+	public Matrix4D getProjection()
+	{
+		return _projection;
+	}
+
+	/**
+	 * Returns the transformation from scene to clip coordinates of the shadow
+	 * map.
+	 *
+	 * @return Transformation from scene to clip coordinates.
+	 */
+	@NotNull
+	public Matrix4D getSceneToClip()
+	{
+		return _projection.multiply( _sceneToLight );
+	}
+
+	/**
+	 * Returns the distance from the camera where the view depth range covered
+	 * by this cascade starts.
+	 *
+	 * @return Start of view depth range.
+	 */
+	public double getNear()
+	{
+		return _near;
+	}
+
+	/**
+	 * Returns the distance from the camera where the view depth range covered
+	 * by this cascade ends.
+	 *
+	 * @return End of view depth range.
+	 */
+	public double getFar()
+	{
+		return _far;
+	}
+
+	/**
+	 * Returns the content nodes that may cast shadows in this cascade. Nodes
+	 * that certainly don't cast shadows on visible receivers are excluded.
+	 *
+	 * @return Shadow casters.
+	 */
+	@NotNull
+	public List<ContentNode> getCasters()
+	{
+		return Collections.unmodifiableList( _casters );
+	}
+}
@@ -0,0 +1,595 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import java.util.*;
+
+import ab.j3d.*;
+import ab.j3d.geom.*;
+import ab.j3d.model.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Fits shadow map projections to the part of the scene that is actually
+ * visible, instead of to the bounds of the entire scene. This greatly improves
+ * the effective resolution of shadow maps when looking at a small part of a
+ * large scene.
+ * <p>
+ * For each light, the shadow frustum is fitted tightly around the visible
+ * shadow receivers, i.e. nodes inside the camera's viewing frustum. It is then
+ * extended towards the light, just far enough to include every node that may
+ * cast a shadow on those receivers. Any other nodes are excluded from the
+ * shadow pass.
+ * <p>
+ * For directional lights, the camera's viewing frustum may be split into
+ * multiple depth ranges, each with its own {@link ShadowCascade}. Split
+ * distances are determined using the 'practical split scheme', which blends
+ * between logarithmic and uniform splits.
+ * <p>
+ * All calculations are independent of the render engine, so the same results
+ * can be used by any shadow mapping implementation.
+ *
+ * @author Peter S. Heijnen
+ */
+public class ShadowFrustumFitter
+{
+	/**
+	 * Maximum field of view for point lights, in degrees. A true point light
+	 * can't be modeled by a single perspective projection.
+	 */
+	private static final double MAX_POINT_LIGHT_FIELD_OF_VIEW = 120.0;
+
+	/**
+	 * Minimum field of view, in degrees.
+	 */
+	private static final double MIN_FIELD_OF_VIEW = 1.0;
+
+	/**
+	 * Ratio between near and far clipping distance of perspective shadow
+	 * projections, to preserve depth buffer precision.
+	 */
+	private static final double MIN_NEAR_FAR_RATIO = 1.0e-4;
+
+	/**
+	 * Number of cascades for directional lights.
+	 */
+	private int _cascadeCount = 1;
+
+	/**
+	 * Weight of logarithmic versus uniform split distances.
+	 */
+	private double _splitWeight = 0.75;
+
+	/**
+	 * Maximum distance from the camera for which shadows are rendered.
+	 */
+	private double _maxDistance = Double.POSITIVE_INFINITY;
+
+	/**
+	 * Size of the shadow map in texels; 0 to disable texel snapping.
+	 */
+	private int _shadowMapSize = 0;
+
+	/**
+	 * Returns the number of cascades used for directional lights.
+	 *
+	 * @return Number of cascades.
+	 */
+	public int getCascadeCount()
+	{
+		return _cascadeCount;
+	}
+
+	/**
+	 * Sets the number of cascades used for directional lights.
+	 *
+	 * @param cascadeCount Number of cascades.
+	 */
+	public void setCascadeCount( final int cascadeCount )
+	{
+		if ( cascadeCount < 1 )
+		{
+			throw new IllegalArgumentException( "cascadeCount: " + cascadeCount );
+		}
+		_cascadeCount = cascadeCount;
+	}
+
+	/**
+	 * Returns the weight of logarithmic versus uniform split distances.
+	 *
+	 * @return Split weight, from 0 (uniform) to 1 (logarithmic).
+	 */
+	public double getSplitWeight()
+	{
+		return _splitWeight;
+	}
+
+	/**
+	 * Sets the weight of logarithmic versus uniform split distances.
+	 *
+	 * @param splitWeight Split weight, from 0 (uniform) to 1 (logarithmic).
+	 */
+	public void setSplitWeight( final double splitWeight )
+	{
+		if ( ( splitWeight < 0.0 ) || ( splitWeight > 1.0 ) )
+		{
+			throw new IllegalArgumentException( "splitWeight: " + splitWeight );
+		}
+		_splitWeight = splitWeight;
+	}
+
+	/**
+	 * Returns the maximum distance from the camera for which shadows are
+	 * rendered.
+	 *
+	 * @return Maximum shadow distance.
+	 */
+	public double getMaxDistance()
+	{
+		return _maxDistance;
+	}
+
+	/**
+	 * Sets the maximum distance from the camera for which shadows are
+	 * rendered. By default, shadows are rendered up to the back clipping plane.
+	 *
+	 * @param maxDistance Maximum shadow distance.
+	 */
+	public void setMaxDistance( final double maxDistance )
+	{
+		_maxDistance = maxDistance;
+	}
+
+	/**
+	 * Returns the size of the shadow map in texels.
+	 *
+	 * @return Size of the shadow map; 0 if texel snapping is disabled.
+	 */
+	public int getShadowMapSize()
+	{
+		return _shadowMapSize;
+	}
+
+	/**
+	 * Sets the size of the shadow map in texels. If set, the bounds of
+	 * orthographic shadow projections are snapped to multiples of the texel
+	 * size, which prevents shadow edges from shimmering while the camera
+	 * moves.
+	 *
+	 * @param shadowMapSize Size of the shadow map; 0 to disable snapping.
+	 */
+	public void setShadowMapSize( final int shadowMapSize )
+	{
+		_shadowMapSize = shadowMapSize;
+	}
+
+	/**
+	 * Fits shadow projections for the given light.
+	 *
+	 * @param light       Light to fit shadow projections for.
+	 * @param light2scene Transformation from light to scene coordinates.
+	 * @param scene2view  Transformation from scene to view coordinates.
+	 * @param projector   Projector of the camera.
+	 * @param nodes       Content nodes in the scene.
+	 *
+	 * @return Shadow cascades, ordered from near to far; empty if no shadows
+	 * are visible.
+	 */
+	@NotNull
+	public List<ShadowCascade> fit( @NotNull final Light3D light, @NotNull final Matrix3D light2scene, @NotNull final Matrix3D scene2view, @NotNull final Projector projector, @NotNull final Collection<ContentNode> nodes )
+	{
+		final Matrix4D cameraProjection = projector.getProjectionMatrix();
+		final double near = projector.getFrontClipDistance();
+		final double far = Math.max( near, Math.min( projector.getBackClipDistance(), _maxDistance ) );
+
+		/*
+		 * Determine visible nodes (i.e. potential shadow receivers).
+		 */
+		final ViewingFrustum cameraFrustum = new ViewingFrustum( cameraProjection );
+		final List<ContentNode> boundedNodes = new ArrayList<ContentNode>( nodes.size() );
+		final BitSet visible = new BitSet( nodes.size() );
+		for ( final ContentNode node : nodes )
+		{
+			final Bounds3D bounds = node.getBounds();
+			if ( bounds != null )
+			{
+				if ( cameraFrustum.contains( node.getTransform().multiply( scene2view ), bounds ) )
+				{
+					visible.set( boundedNodes.size() );
+				}
+				boundedNodes.add( node );
+			}
+		}
+
+		final List<ShadowCascade> result;
+		if ( visible.isEmpty() )
+		{
+			result = Collections.emptyList();
+		}
+		else if ( light instanceof DirectionalLight3D )
+		{
+			final Vector3D direction = light2scene.rotate( ( (DirectionalLight3D)light ).getDirection() );
+			final Matrix3D sceneToLight = Matrix3D.getFromToTransform( Vector3D.ZERO, direction, Vector3D.POSITIVE_Z_AXIS, Vector3D.POSITIVE_Y_AXIS );
+			final Matrix3D viewToLight = scene2view.inverse().multiply( sceneToLight );
+			final Bounds3D[] lightBounds = getLightBounds( sceneToLight, boundedNodes );
+
+			/*
+			 * No shadow map needs to be larger than all potential casters
+			 * and receivers together. Unlike the fitted bounds, this does not
+			 * change as the camera moves, so it can be used to limit the
+			 * texel size without causing shadow edges to shimmer.
+			 */
+			Bounds3D sceneBounds = null;
+			for ( final Bounds3D bounds : lightBounds )
+			{
+				sceneBounds = Bounds3D.join( sceneBounds, bounds );
+			}
+			//noinspection ConstantConditions
+			final double sceneSize = Math.max( sceneBounds.sizeX(), sceneBounds.sizeY() );
+
+			final double[] splits = getSplitDistances( near, far, _cascadeCount, _splitWeight );
+			result = new ArrayList<ShadowCascade>( _cascadeCount );
+			for ( int i = 0; i < _cascadeCount; i++ )
+			{
+				final Vector3D[] corners = getFrustumCorners( cameraProjection, splits[ i ], splits[ i + 1 ] );
+				final Vector3D firstCorner = viewToLight.transform( corners[ 0 ] );
+				Bounds3D splitBounds = new Bounds3D( firstCorner, firstCorner );
+				for ( int j = 1; j < corners.length; j++ )
+				{
+					splitBounds = Bounds3D.join( splitBounds, viewToLight.transform( corners[ j ] ) );
+				}
+
+				result.add( fitOrthographic( sceneToLight, splits[ i ], splits[ i + 1 ], splitBounds, Math.min( getDiameter( corners ), sceneSize ), boundedNodes, lightBounds, visible ) );
+			}
+		}
+		else
+		{
+			final Vector3D position = light2scene.getTranslation();
+			final Matrix3D sceneToLight;
+			final double fieldOfView;
+
+			if ( light instanceof SpotLight3D )
+			{
+				final SpotLight3D spot = (SpotLight3D)light;
+				sceneToLight = Matrix3D.getFromToTransform( position, light2scene.transform( spot.getDirection() ), Vector3D.POSITIVE_Z_AXIS, Vector3D.POSITIVE_Y_AXIS );
+				fieldOfView = Math.max( MIN_FIELD_OF_VIEW, Math.min( 179.0, 2.0 * (double)spot.getSpreadAngle() ) );
+			}
+			else
+			{
+				/*
+				 * Aim point light at the visible receivers.
+				 */
+				Bounds3D receiverBounds = null;
+				for ( int i = visible.nextSetBit( 0 ); i >= 0; i = visible.nextSetBit( i + 1 ) )
+				{
+					final ContentNode node = boundedNodes.get( i );
+					receiverBounds = Bounds3D.join( receiverBounds, GeometryTools.convertObbToAabb( node.getTransform(), node.getBounds() ) );
+				}
+
+				//noinspection ConstantConditions
+				final Vector3D target = receiverBounds.center();
+				final double radius = 0.5 * Vector3D.distanceBetween( receiverBounds.v1, receiverBounds.v2 );
+				final double distance = Vector3D.distanceBetween( position, target );
+
+				sceneToLight = Matrix3D.getFromToTransform( position, target, Vector3D.POSITIVE_Z_AXIS, Vector3D.POSITIVE_Y_AXIS );
+				fieldOfView = ( distance > radius ) ? Math.max( MIN_FIELD_OF_VIEW, Math.min( MAX_POINT_LIGHT_FIELD_OF_VIEW, 2.0 * Math.toDegrees( Math.asin( radius / distance ) ) ) ) : MAX_POINT_LIGHT_FIELD_OF_VIEW;
+			}
+
+			result = Collections.singletonList( fitPerspective( sceneToLight, fieldOfView, near, far, boundedNodes, getLightBounds( sceneToLight, boundedNodes ), visible ) );
+		}
+
+		return result;
+	}
+
+	/**
+	 * Fits an orthographic shadow projection for a directional light.
+	 *
+	 * @param sceneToLight Transformation from scene to light coordinates.
+	 * @param near         Start of view depth range covered by the cascade.
+	 * @param far          End of view depth range covered by the cascade.
+	 * @param splitBounds  Bounds of the view depth range in light coordinates.
+	 * @param windowSize   Size of the shadow map window, which does not
+	 *                     change as the camera moves or turns. This is the
+	 *                     diameter of the view depth range, limited to the
+	 *                     size of all casters and receivers.
+	 * @param nodes        Content nodes.
+	 * @param lightBounds  Bounds of each content node in light coordinates.
+	 * @param visible      Visible content nodes.
+	 *
+	 * @return Shadow cascade.
+	 */
+	private ShadowCascade fitOrthographic( final Matrix3D sceneToLight, final double near, final double far, final Bounds3D splitBounds, final double windowSize, final List<ContentNode> nodes, final Bounds3D[] lightBounds, final BitSet visible )
+	{
+		/*
+		 * Find receivers in the view depth range.
+		 */
+		Bounds3D receiverBounds = null;
+		for ( int i = visible.nextSetBit( 0 ); i >= 0; i = visible.nextSetBit( i + 1 ) )
+		{
+			if ( Bounds3D.intersects( lightBounds[ i ], splitBounds ) )
+			{
+				receiverBounds = Bounds3D.join( receiverBounds, lightBounds[ i ] );
+			}
+		}
+
+		final List<ContentNode> casters = new ArrayList<ContentNode>();
+
+		double minX = splitBounds.minX();
+		double minY = splitBounds.minY();
+		double maxX = splitBounds.maxX();
+		double maxY = splitBounds.maxY();
+		double minZ = splitBounds.minZ();
+		double maxZ = splitBounds.maxZ();
+
+		if ( receiverBounds != null )
+		{
+			minX = Math.max( minX, receiverBounds.minX() );
+			minY = Math.max( minY, receiverBounds.minY() );
+			maxX = Math.min( maxX, receiverBounds.maxX() );
+			maxY = Math.min( maxY, receiverBounds.maxY() );
+			minZ = Math.max( minZ, receiverBounds.minZ() );
+			maxZ = Math.min( maxZ, receiverBounds.maxZ() );
+
+			/*
+			 * Find casters between the light and the receivers. The light
+			 * looks along the negative Z-axis.
+			 */
+			for ( int i = 0; i < nodes.size(); i++ )
+			{
+				final ContentNode node = nodes.get( i );
+				final Bounds3D bounds = lightBounds[ i ];
+				if ( node.isCastingShadows() &&
+				     ( bounds.maxX() >= minX ) && ( bounds.minX() <= maxX ) &&
+				     ( bounds.maxY() >= minY ) && ( bounds.minY() <= maxY ) &&
+				     ( bounds.maxZ() >= minZ ) )
+				{
+					casters.add( node );
+					maxZ = Math.max( maxZ, bounds.maxZ() );
+				}
+			}
+		}
+
+		final int shadowMapSize = _shadowMapSize;
+		if ( ( shadowMapSize > 1 ) && ( windowSize > 0.0 ) )
+		{
+			/*
+			 * The fitted bounds change size from frame to frame, so they can't
+			 * be used to determine the texel size. Instead, use a fixed-size
+			 * window that fits the view depth range in any orientation (or
+			 * the entire scene, if that is smaller), and move it in whole
+			 * texels only. The extra texel ensures that the fitted bounds
+			 * remain covered after snapping.
+			 */
+			final double texelSize = windowSize / (double)( shadowMapSize - 1 );
+			final double size = texelSize * (double)shadowMapSize;
+
+			minX = Math.floor( ( 0.5 * ( minX + maxX - windowSize ) ) / texelSize ) * texelSize;
+			maxX = minX + size;
+			minY = Math.floor( ( 0.5 * ( minY + maxY - windowSize ) ) / texelSize ) * texelSize;
+			maxY = minY + size;
+		}
+
+		final Matrix4D projection = getOrthographicProjection( minX, maxX, minY, maxY, -maxZ, -minZ );
+		return new ShadowCascade( sceneToLight, projection, near, far, casters );
+	}
+
+	/**
+	 * Fits a perspective shadow projection for a spot or point light.
+	 *
+	 * @param sceneToLight Transformation from scene to light coordinates.
+	 * @param fieldOfView  Field of view, in degrees.
+	 * @param near         Start of view depth range.
+	 * @param far          End of view depth range.
+	 * @param nodes        Content nodes.
+	 * @param lightBounds  Bounds of each content node in light coordinates.
+	 * @param visible      Visible content nodes.
+	 *
+	 * @return Shadow cascade.
+	 */
+	private static ShadowCascade fitPerspective( final Matrix3D sceneToLight, final double fieldOfView, final double near, final double far, final List<ContentNode> nodes, final Bounds3D[] lightBounds, final BitSet visible )
+	{
+		final ViewingFrustum lightFrustum = new ViewingFrustum( getPerspectiveProjection( fieldOfView, 1.0, 1.0e-6, 1.0e12 ) );
+
+		final BitSet lit = new BitSet( nodes.size() );
+		double minZ = Double.POSITIVE_INFINITY;
+		for ( int i = 0; i < nodes.size(); i++ )
+		{
+			final ContentNode node = nodes.get( i );
+			if ( lightFrustum.contains( node.getTransform().multiply( sceneToLight ), node.getBounds() ) )
+			{
+				lit.set( i );
+				if ( visible.get( i ) )
+				{
+					minZ = Math.min( minZ, lightBounds[ i ].minZ() );
+				}
+			}
+		}
+
+		final List<ContentNode> casters = new ArrayList<ContentNode>();
+		double maxZ = Double.NEGATIVE_INFINITY;
+		for ( int i = lit.nextSetBit( 0 ); i >= 0; i = lit.nextSetBit( i + 1 ) )
+		{
+			final Bounds3D bounds = lightBounds[ i ];
+			if ( bounds.maxZ() >= minZ )
+			{
+				final ContentNode node = nodes.get( i );
+				if ( node.isCastingShadows() )
+				{
+					casters.add( node );
+				}
+				maxZ = Math.max( maxZ, bounds.maxZ() );
+			}
+		}
+
+		final double zFar = ( minZ < 0.0 ) ? -minZ : 1.0;
+		final double zNear = Math.max( zFar * MIN_NEAR_FAR_RATIO, -maxZ );
+
+		return new ShadowCascade( sceneToLight, getPerspectiveProjection( fieldOfView, 1.0, zNear, zFar ), near, far, casters );
+	}
+
+	/**
+	 * Returns the bounds of each content node in light coordinates.
+	 *
+	 * @param sceneToLight Transformation from scene to light coordinates.
+	 * @param nodes        Content nodes.
+	 *
+	 * @return Bounds of each content node in light coordinates.
+	 */
+	private static Bounds3D[] getLightBounds( final Matrix3D sceneToLight, final List<ContentNode> nodes )
+	{
+		final Bounds3D[] result = new Bounds3D[ nodes.size() ];
+		for ( int i = 0; i < result.length; i++ )
+		{
+			final ContentNode node = nodes.get( i );
+			//noinspection ConstantConditions
+			result[ i ] = GeometryTools.convertObbToAabb( node.getTransform().multiply( sceneToLight ), node.getBounds() );
+		}
+		return result;
+	}
+
+	/**
+	 * Calculates split distances for cascaded shadow maps using the practical
+	 * split scheme, i.e. a weighted average of logarithmic and uniform split
+	 * distances.
+	 *
+	 * @param near   Near clipping distance.
+	 * @param far    Far clipping distance.
+	 * @param count  Number of cascades.
+	 * @param weight Weight of logarithmic versus uniform split distances.
+	 *
+	 * @return Split distances, including near and far clipping distance;
+	 * length is {@code count + 1}.
+	 */
+	public static double[] getSplitDistances( final double near, final double far, final int count, final double weight )
+	{
+		final double[] result = new double[ count + 1 ];
+		result[ 0 ] = near;
+		for ( int i = 1; i < count; i++ )
+		{
+			final double fraction = (double)i / (double)count;
+			final double logarithmic = ( near > 0.0 ) ? near * Math.pow( far / near, fraction ) : near + ( far - near ) * fraction;
+			final double uniform = near + ( far - near ) * fraction;
+			result[ i ] = weight * logarithmic + ( 1.0 - weight ) * uniform;
+		}
+		result[ count ] = far;
+		return result;
+	}
+
+	/**
+	 * Returns the largest distance between any two of the given points. For
+	 * the corners of a viewing frustum, this is independent of the camera's
+	 * position and orientation.
+	 *
+	 * @param points Points.
+	 *
+	 * @return Largest distance between two points.
+	 */
+	private static double getDiameter( @NotNull final Vector3D[] points )
+	{
+		double result = 0.0;
+		for ( int i = 0; i < points.length; i++ )
+		{
+			for ( int j = i + 1; j < points.length; j++ )
+			{
+				result = Math.max( result, Vector3D.distanceBetween( points[ i ], points[ j ] ) );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the corners of the part of a camera's viewing frustum between
+	 * the given distances, in view coordinates.
+	 *
+	 * @param projection Projection matrix of the camera.
+	 * @param near       Distance to near side.
+	 * @param far        Distance to far side.
+	 *
+	 * @return Corners of the viewing frustum; near side first.
+	 */
+	public static Vector3D[] getFrustumCorners( final Matrix4D projection, final double near, final double far )
+	{
+		final boolean perspective = ( projection.wz != 0.0 );
+
+		final Vector3D[] result = new Vector3D[ 8 ];
+		for ( int i = 0; i < 2; i++ )
+		{
+			final double distance = ( i == 0 ) ? near : far;
+			final double scale = perspective ? distance : 1.0;
+			final double halfWidth = scale / projection.xx;
+			final double halfHeight = scale / projection.yy;
+
+			result[ i * 4 ] = new Vector3D( -halfWidth, -halfHeight, -distance );
+			result[ i * 4 + 1 ] = new Vector3D( halfWidth, -halfHeight, -distance );
+			result[ i * 4 + 2 ] = new Vector3D( halfWidth, halfHeight, -distance );
+			result[ i * 4 + 3 ] = new Vector3D( -halfWidth, halfHeight, -distance );
+		}
+		return result;
+	}
+
+	/**
+	 * Returns an orthographic projection matrix, as specified for
+	 * {@code glOrtho}.
+	 *
+	 * @param left   Left clipping plane.
+	 * @param right  Right clipping plane.
+	 * @param bottom Bottom clipping plane.
+	 * @param top    Top clipping plane.
+	 * @param near   Distance to near clipping plane.
+	 * @param far    Distance to far clipping plane.
+	 *
+	 * @return Projection matrix.
+	 */
+	public static Matrix4D getOrthographicProjection( final double left, final double right, final double bottom, final double top, final double near, final double far )
+	{
+		final double width = ( right > left ) ? right - left : 1.0;
+		final double height = ( top > bottom ) ? top - bottom : 1.0;
+		final double depth = ( far > near ) ? far - near : 1.0;
+
+		return new Matrix4D(
+			2.0 / width, 0.0, 0.0, -( right + left ) / width,
+			0.0, 2.0 / height, 0.0, -( top + bottom ) / height,
+			0.0, 0.0, -2.0 / depth, -( far + near ) / depth,
+			0.0, 0.0, 0.0, 1.0
+		);
+	}
+
+	/**
+	 * Returns a perspective projection matrix, as specified for
+	 * {@code gluPerspective}.
+	 *
+	 * @param fieldOfView Vertical field of view, in degrees.
+	 * @param aspect      Aspect ratio (width / height).
+	 * @param near        Distance to near clipping plane.
+	 * @param far         Distance to far clipping plane.
+	 *
+	 * @return Projection matrix.
+	 */
+	public static Matrix4D getPerspectiveProjection( final double fieldOfView, final double aspect, final double near, final double far )
+	{
+		final double f = 1.0 / Math.tan( Math.toRadians( fieldOfView ) / 2.0 );
+
+		return new Matrix4D(
+			f / aspect, 0.0, 0.0, 0.0,
+			0.0, f, 0.0, 0.0,
+			0.0, 0.0, ( far + near ) / ( near - far ), 2.0 * far * near / ( near - far ),
+			0.0, 0.0, -1.0, 0.0
+		);
+	}
+}
@@ -0,0 +1,963 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import java.util.*;
+
+import ab.j3d.*;
+import ab.j3d.appearance.*;
+import ab.j3d.model.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Merges small, static content nodes into batches that can be drawn at once.
+ * Face groups of batched nodes are transformed to scene coordinates and
+ * merged into one {@link Object3D} per batch. A batch contains face groups with
+ * the same appearance and the same smooth and two-sided flags, from content
+ * nodes whose bounds are centered in the same region of the scene. Regions
+ * are cubes on a regular grid, so that a batch can still be culled as a whole.
+ *
+ * <p>The batcher is updated once per frame with the content nodes that are
+ * candidates for batching (see {@link #update}). A content node is batched if
+ * it has at most {@link #getMaximumFaceCount()} faces, or if its root node has
+ * the {@link #BATCHING_PROPERTY} property set. Nodes that contain anything
+ * other than plain nodes, transforms and objects without a low-detail
+ * version, or that have a mirroring transform, are never batched.
+ *
+ * <p>Changes are detected by comparing the transform and the (cached)
+ * content of each content node with the previous update. Only the batches
+ * that a changed, added or removed node belongs to are rebuilt. Merged
+ * objects are built when first requested, so batches that are never drawn
+ * are never built.
+ *
+ * <p>For culling, each batch keeps the scene bounds of all its instances, in
+ * addition to its combined bounds (see {@link #getVisibleBatches}).
+ *
+ * @author Peter S. Heijnen
+ */
+public class StaticBatcher
+{
+	/**
+	 * Name of {@link Node3D} property that controls batching of a
+	 * {@link ContentNode}, regardless of its size. The value must be a
+	 * {@link Boolean}; {@code false} prevents the node from being batched.
+	 */
+	public static final String BATCHING_PROPERTY = "batching";
+
+	/**
+	 * Size of a region, in scene units.
+	 */
+	private double _regionSize = 1000.0;
+
+	/**
+	 * Maximum number of faces in a content node for it to be batched.
+	 */
+	private int _maximumFaceCount = 256;
+
+	/**
+	 * Batching information per content node.
+	 */
+	private final Map<ContentNode, Instance> _instances = new IdentityHashMap<ContentNode, Instance>();
+
+	/**
+	 * Batches by key.
+	 */
+	private final Map<BatchKey, Batch> _batches = new LinkedHashMap<BatchKey, Batch>();
+
+	/**
+	 * Number of the current update, used to detect removed content nodes.
+	 */
+	private int _updateNumber = 0;
+
+	/**
+	 * Number of batches that were invalidated by the last update.
+	 */
+	private int _invalidatedCount = 0;
+
+	/**
+	 * Number of merged objects that were built since the last update.
+	 */
+	private int _buildCount = 0;
+
+	/**
+	 * Returns the size of regions that batches are limited to.
+	 *
+	 * @return Size of a region, in scene units.
+	 */
+	public double getRegionSize()
+	{
+		return _regionSize;
+	}
+
+	/**
+	 * Sets the size of regions that batches are limited to. Changing the size
+	 * discards all batches.
+	 *
+	 * @param regionSize Size of a region, in scene units.
+	 */
+	public void setRegionSize( final double regionSize )
+	{
+		if ( !( regionSize > 0.0 ) )
+		{
+			throw new IllegalArgumentException( "regionSize: " + regionSize );
+		}
+
+		if ( regionSize != _regionSize )
+		{
+			_regionSize = regionSize;
+			clear();
+		}
+	}
+
+	/**
+	 * Returns the maximum number of faces in a content node for it to be
+	 * batched, unless specified otherwise by the {@link #BATCHING_PROPERTY}.
+	 *
+	 * @return Maximum number of faces.
+	 */
+	public int getMaximumFaceCount()
+	{
+		return _maximumFaceCount;
+	}
+
+	/**
+	 * Sets the maximum number of faces in a content node for it to be
+	 * batched. Changing the maximum discards all batches.
+	 *
+	 * @param maximumFaceCount Maximum number of faces.
+	 */
+	public void setMaximumFaceCount( final int maximumFaceCount )
+	{
+		if ( maximumFaceCount < 0 )
+		{
+			throw new IllegalArgumentException( "maximumFaceCount: " + maximumFaceCount );
+		}
+
+		if ( maximumFaceCount != _maximumFaceCount )
+		{
+			_maximumFaceCount = maximumFaceCount;
+			clear();
+		}
+	}
+
+	/**
+	 * Discards all batches.
+	 */
+	public void clear()
+	{
+		_instances.clear();
+		_batches.clear();
+	}
+
+	/**
+	 * Updates batches for the given content nodes. Nodes that were passed to
+	 * the previous update, but not to this one, are removed from their
+	 * batches. Only batches with added, changed or removed nodes are rebuilt.
+	 *
+	 * @param nodes Content nodes that may be batched.
+	 */
+	public void update( @NotNull final Collection<ContentNode> nodes )
+	{
+		final int updateNumber = ++_updateNumber;
+		final Set<Batch> invalidated = new HashSet<Batch>();
+
+		for ( final ContentNode node : nodes )
+		{
+			updateInstance( node, node.getTransform(), node.getNode3D(), updateNumber, invalidated );
+		}
+
+		removeInstances( updateNumber, invalidated );
+	}
+
+	/**
+	 * Updates batches for the content nodes in the given snapshot. Batches
+	 * are built using the transform and content recorded in the snapshot, so
+	 * they match the rendered frame when the scene is modified by another
+	 * thread. Nodes that were passed to the previous update, but not to this
+	 * one, are removed from their batches. Only batches with added, changed
+	 * or removed nodes are rebuilt.
+	 *
+	 * @param snapshot Snapshot of the scene.
+	 * @param include  Content nodes that may be batched; {@code null} for all.
+	 */
+	public void update( @NotNull final SceneSnapshot snapshot, @Nullable final Set<ContentNode> include )
+	{
+		final int updateNumber = ++_updateNumber;
+		final Set<Batch> invalidated = new HashSet<Batch>();
+
+		final List<ContentNode> nodes = snapshot.getContentNodes();
+		for ( int i = 0; i < nodes.size(); i++ )
+		{
+			final ContentNode node = nodes.get( i );
+			if ( ( include == null ) || include.contains( node ) )
+			{
+				updateInstance( node, snapshot.getTransform( i ), snapshot.getNode3D( i ), updateNumber, invalidated );
+			}
+		}
+
+		removeInstances( updateNumber, invalidated );
+	}
+
+	/**
+	 * Creates or updates the instance for a content node.
+	 *
+	 * @param node         Content node.
+	 * @param node2scene   Transformation from node to scene coordinates.
+	 * @param root         Content of the content node.
+	 * @param updateNumber Number of the current update.
+	 * @param invalidated  Collects invalidated batches.
+	 */
+	private void updateInstance( @NotNull final ContentNode node, @NotNull final Matrix3D node2scene, @NotNull final Node3D root, final int updateNumber, @NotNull final Set<Batch> invalidated )
+	{
+		final Map<ContentNode, Instance> instances = _instances;
+
+		/*
+		 * Use the content and bounds cached by the content node, unless its
+		 * content was replaced after the snapshot was taken.
+		 */
+		//noinspection ObjectEquality
+		final boolean current = ( node.getNode3D() == root );
+		final List<Node3DPath> content;
+		if ( current )
+		{
+			content = node.getContent();
+		}
+		else
+		{
+			final Node3DCollector collector = new Node3DCollector( Object3D.class );
+			Node3DTreeWalker.walk( collector, root );
+			content = collector.getCollectedNodes();
+		}
+
+		Instance instance = instances.get( node );
+		if ( ( instance == null ) || !instance.matches( node, node2scene, content ) )
+		{
+			if ( instance != null )
+			{
+				removeInstance( instance, invalidated );
+			}
+
+			instance = createInstance( node, node2scene, root, content, current ? node.getBounds() : root.calculateBounds( Matrix3D.IDENTITY ) );
+			instances.put( node, instance );
+			addInstance( instance, invalidated );
+		}
+		instance._updateNumber = updateNumber;
+	}
+
+	/**
+	 * Removes instances of content nodes that were not included in the
+	 * current update, and discards or invalidates the affected batches.
+	 *
+	 * @param updateNumber Number of the current update.
+	 * @param invalidated  Invalidated batches.
+	 */
+	private void removeInstances( final int updateNumber, @NotNull final Set<Batch> invalidated )
+	{
+		for ( final Iterator<Instance> it = _instances.values().iterator(); it.hasNext(); )
+		{
+			final Instance instance = it.next();
+			if ( instance._updateNumber != updateNumber )
+			{
+				removeInstance( instance, invalidated );
+				it.remove();
+			}
+		}
+
+		for ( final Batch batch : invalidated )
+		{
+			if ( batch._instances.isEmpty() )
+			{
+				_batches.remove( batch._key );
+			}
+			else
+			{
+				batch.invalidate();
+			}
+		}
+
+		_invalidatedCount = invalidated.size();
+		_buildCount = 0;
+	}
+
+	/**
+	 * Returns whether the given content node is drawn as part of a batch.
+	 *
+	 * @param node Content node.
+	 *
+	 * @return {@code true} if the node is batched.
+	 */
+	public boolean isBatched( @NotNull final ContentNode node )
+	{
+		final Instance instance = _instances.get( node );
+		return ( instance != null ) && !instance._parts.isEmpty();
+	}
+
+	/**
+	 * Returns all batches.
+	 *
+	 * @return Batches.
+	 */
+	@NotNull
+	public Collection<Batch> getBatches()
+	{
+		return Collections.unmodifiableCollection( _batches.values() );
+	}
+
+	/**
+	 * Returns the batches that are potentially visible. A batch is visible if
+	 * its combined bounds are inside the view frustum and the bounds of at
+	 * least one of its instances are inside the frustum and not occluded.
+	 *
+	 * @param frustumCuller   Frustum culler; {@code null} to skip frustum
+	 *                        culling.
+	 * @param occlusionCuller Occlusion culler; {@code null} to skip occlusion
+	 *                        culling.
+	 * @param shadowCasters   Whether only batches of nodes that cast shadows
+	 *                        should be returned.
+	 *
+	 * @return Visible batches.
+	 */
+	@NotNull
+	public List<Batch> getVisibleBatches( @Nullable final FrustumCuller frustumCuller, @Nullable final OcclusionCuller occlusionCuller, final boolean shadowCasters )
+	{
+		final List<Batch> result = new ArrayList<Batch>();
+		for ( final Batch batch : _batches.values() )
+		{
+			if ( ( !shadowCasters || batch._key._castingShadows ) &&
+			     ( ( frustumCuller == null ) || frustumCuller.isVisible( Matrix3D.IDENTITY, batch.getBounds() ) ) )
+			{
+				for ( final Instance instance : batch._instances )
+				{
+					final Bounds3D bounds = instance._bounds;
+					if ( ( ( frustumCuller == null ) || frustumCuller.isVisible( Matrix3D.IDENTITY, bounds ) ) &&
+					     ( ( occlusionCuller == null ) || occlusionCuller.isVisible( Matrix3D.IDENTITY, bounds ) ) )
+					{
+						result.add( batch );
+						break;
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of batches that were invalidated by the last update.
+	 *
+	 * @return Number of invalidated batches.
+	 */
+	public int getInvalidatedCount()
+	{
+		return _invalidatedCount;
+	}
+
+	/**
+	 * Returns the number of merged objects that were built since the last
+	 * update.
+	 *
+	 * @return Number of merged objects built.
+	 */
+	public int getBuildCount()
+	{
+		return _buildCount;
+	}
+
+	/**
+	 * Creates batching information for the given content node.
+	 *
+	 * @param node       Content node.
+	 * @param node2scene Transformation from node to scene coordinates.
+	 * @param root       Content of the content node.
+	 * @param content    Paths to the objects in the content.
+	 * @param bounds     Bounds of the content in node coordinates.
+	 *
+	 * @return Batching information.
+	 */
+	@NotNull
+	private Instance createInstance( @NotNull final ContentNode node, @NotNull final Matrix3D node2scene, @NotNull final Node3D root, @NotNull final List<Node3DPath> content, @Nullable final Bounds3D bounds )
+	{
+		final Instance result = new Instance( node, node2scene, content );
+
+		final Boolean batching = root.getProperty( BATCHING_PROPERTY, (Boolean)null );
+
+		if ( !Boolean.FALSE.equals( batching ) && ( bounds != null ) && isBatchable( root ) && ( Boolean.TRUE.equals( batching ) || ( getFaceCount( content ) <= _maximumFaceCount ) ) )
+		{
+			final Bounds3D sceneBounds = node2scene.transform( bounds );
+			final double regionSize = _regionSize;
+			final Vector3D center = sceneBounds.center();
+			final long regionX = (long)Math.floor( center.x / regionSize );
+			final long regionY = (long)Math.floor( center.y / regionSize );
+			final long regionZ = (long)Math.floor( center.z / regionSize );
+
+			final List<Part> parts = new ArrayList<Part>();
+			for ( final Node3DPath path : content )
+			{
+				final Matrix3D object2scene = path.getTransform().multiply( node2scene );
+				if ( object2scene.determinant() <= 0.0 )
+				{
+					parts.clear();
+					break;
+				}
+
+				for ( final FaceGroup faceGroup : ( (Object3D)path.getNode() ).getFaceGroups() )
+				{
+					if ( !faceGroup.getFaces().isEmpty() )
+					{
+						parts.add( new Part( new BatchKey( faceGroup, node.isCastingShadows(), regionX, regionY, regionZ ), faceGroup, object2scene ) );
+					}
+				}
+			}
+
+			result._bounds = sceneBounds;
+			result._parts = parts;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Adds an instance to the batches of its parts.
+	 *
+	 * @param instance    Instance to add.
+	 * @param invalidated Collects invalidated batches.
+	 */
+	private void addInstance( @NotNull final Instance instance, @NotNull final Set<Batch> invalidated )
+	{
+		for ( final Part part : instance._parts )
+		{
+			Batch batch = _batches.get( part._key );
+			if ( batch == null )
+			{
+				batch = new Batch( this, part._key );
+				_batches.put( part._key, batch );
+			}
+			part._batch = batch;
+			batch._instances.add( instance );
+			invalidated.add( batch );
+		}
+	}
+
+	/**
+	 * Removes an instance from the batches of its parts.
+	 *
+	 * @param instance    Instance to remove.
+	 * @param invalidated Collects invalidated batches.
+	 */
+	private static void removeInstance( @NotNull final Instance instance, @NotNull final Set<Batch> invalidated )
+	{
+		for ( final Part part : instance._parts )
+		{
+			final Batch batch = part._batch;
+			if ( batch != null )
+			{
+				batch._instances.remove( instance );
+				invalidated.add( batch );
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the given subtree may be batched.
+	 *
+	 * @param node Root of subtree.
+	 *
+	 * @return {@code true} if the subtree may be batched.
+	 */
+	private static boolean isBatchable( @NotNull final Node3D node )
+	{
+		boolean result;
+		if ( node instanceof Object3D )
+		{
+			result = !( (Object3D)node ).isLowDetailAvailable();
+		}
+		else
+		{
+			final Class<? extends Node3D> type = node.getClass();
+			result = ( type == Node3D.class ) || ( type == Transform3D.class );
+		}
+
+		for ( int i = 0; result && ( i < node.getChildCount() ); i++ )
+		{
+			result = isBatchable( node.getChild( i ) );
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the number of faces in the given content.
+	 *
+	 * @param content Paths to objects.
+	 *
+	 * @return Number of faces.
+	 */
+	private static int getFaceCount( @NotNull final List<Node3DPath> content )
+	{
+		int result = 0;
+		for ( final Node3DPath path : content )
+		{
+			for ( final FaceGroup faceGroup : ( (Object3D)path.getNode() ).getFaceGroups() )
+			{
+				result += faceGroup.getFaces().size();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Group of face groups that are drawn as one object.
+	 */
+	public static class Batch
+	{
+		/**
+		 * Batcher that created the batch.
+		 */
+		@NotNull
+		private final StaticBatcher _batcher;
+
+		/**
+		 * Key of the batch.
+		 */
+		@NotNull
+		private final BatchKey _key;
+
+		/**
+		 * Instances in the batch, in order of addition.
+		 */
+		private final Set<Instance> _instances = new LinkedHashSet<Instance>();
+
+		/**
+		 * Combined bounds of all instances; {@code null} if not calculated.
+		 */
+		@Nullable
+		private Bounds3D _bounds = null;
+
+		/**
+		 * Merged object; {@code null} if not built.
+		 */
+		@Nullable
+		private Object3D _object = null;
+
+		/**
+		 * Constructs a new batch.
+		 *
+		 * @param batcher Batcher that creates the batch.
+		 * @param key     Key of the batch.
+		 */
+		private Batch( @NotNull final StaticBatcher batcher, @NotNull final BatchKey key )
+		{
+			_batcher = batcher;
+			_key = key;
+		}
+
+		/**
+		 * Returns the appearance of the batch.
+		 *
+		 * @return Appearance.
+		 */
+		@Nullable
+		public Appearance getAppearance()
+		{
+			return _key._appearance;
+		}
+
+		/**
+		 * Returns the content nodes in the batch.
+		 *
+		 * @return Content nodes.
+		 */
+		@NotNull
+		public List<ContentNode> getContentNodes()
+		{
+			final List<ContentNode> result = new ArrayList<ContentNode>( _instances.size() );
+			for ( final Instance instance : _instances )
+			{
+				result.add( instance._node );
+			}
+			return result;
+		}
+
+		/**
+		 * Returns the scene bounds of the content nodes in the batch.
+		 *
+		 * @return Bounds of each instance, in scene coordinates.
+		 */
+		@NotNull
+		public List<Bounds3D> getInstanceBounds()
+		{
+			final List<Bounds3D> result = new ArrayList<Bounds3D>( _instances.size() );
+			for ( final Instance instance : _instances )
+			{
+				result.add( instance._bounds );
+			}
+			return result;
+		}
+
+		/**
+		 * Returns the combined scene bounds of all content nodes in the batch.
+		 *
+		 * @return Bounds in scene coordinates.
+		 */
+		@NotNull
+		public Bounds3D getBounds()
+		{
+			Bounds3D result = _bounds;
+			if ( result == null )
+			{
+				final Bounds3DBuilder builder = new Bounds3DBuilder();
+				for ( final Instance instance : _instances )
+				{
+					builder.addBounds( instance._bounds );
+				}
+				result = builder.getBounds();
+				_bounds = result;
+			}
+			return result;
+		}
+
+		/**
+		 * Returns the merged object with the faces of all content nodes in
+		 * the batch, in scene coordinates. The object is built when first
+		 * requested after the batch was changed.
+		 *
+		 * @return Merged object.
+		 */
+		@NotNull
+		public Object3D getObject()
+		{
+			Object3D result = _object;
+			if ( result == null )
+			{
+				result = build();
+				_object = result;
+				_batcher._buildCount++;
+			}
+			return result;
+		}
+
+		/**
+		 * Discards the merged object and bounds.
+		 */
+		private void invalidate()
+		{
+			_bounds = null;
+			_object = null;
+		}
+
+		/**
+		 * Builds the merged object.
+		 *
+		 * @return Merged object.
+		 */
+		@NotNull
+		private Object3D build()
+		{
+			final BatchKey key = _key;
+			final boolean smooth = key._smooth;
+			final List<Vector3D> vertexCoordinates = new ArrayList<Vector3D>();
+			final FaceGroup mergedGroup = new FaceGroup( key._appearance, smooth, key._twoSided );
+
+			for ( final Instance instance : _instances )
+			{
+				for ( final Part part : instance._parts )
+				{
+					if ( part._batch == this )
+					{
+						final Matrix3D object2scene = part._object2scene;
+
+						for ( final Face3D face : part._faceGroup.getFaces() )
+						{
+							final int vertexCount = face.getVertexCount();
+							final List<Vertex3D> vertices = new ArrayList<Vertex3D>( vertexCount );
+							for ( int i = 0; i < vertexCount; i++ )
+							{
+								final Vertex3D vertex = face.getVertex( i );
+								final Vector3D point = object2scene.transform( vertex.point );
+								final Vector3D normal = smooth ? transformNormal( object2scene, face.getVertexNormal( i ) ) : null;
+								vertices.add( new Vertex3D( point, normal, vertexCoordinates.size(), vertex.colorMapU, vertex.colorMapV ) );
+								vertexCoordinates.add( point );
+							}
+
+							mergedGroup.addFace( new Face3D( transformNormal( object2scene, face.getNormal() ), vertices, face.getTessellation() ) );
+						}
+					}
+				}
+			}
+
+			final Object3D result = new Object3D( vertexCoordinates );
+			result.addFaceGroup( mergedGroup );
+			return result;
+		}
+
+		/**
+		 * Transforms a normal using the inverse transpose of a transform, so
+		 * normals remain perpendicular to their faces when the transform
+		 * includes (non-uniform) scaling. {@link Matrix3D#inverse()} can not
+		 * be used for this, because it assumes an orthonormal transform.
+		 *
+		 * <p>The cofactor matrix of the rotation/scaling part is used, which
+		 * equals the inverse transpose multiplied by the determinant. The
+		 * determinant of batched transforms is positive, so only the length
+		 * of the normal is affected, which is normalized anyway.
+		 *
+		 * @param transform Transform to apply.
+		 * @param normal    Normal to transform.
+		 *
+		 * @return Transformed normal; {@code null} if the normal is undefined.
+		 */
+		@Nullable
+		private static Vector3D transformNormal( @NotNull final Matrix3D transform, @NotNull final Vector3D normal )
+		{
+			final double x = ( transform.yy * transform.zz - transform.yz * transform.zy ) * normal.x + ( transform.yz * transform.zx - transform.yx * transform.zz ) * normal.y + ( transform.yx * transform.zy - transform.yy * transform.zx ) * normal.z;
+			final double y = ( transform.xz * transform.zy - transform.xy * transform.zz ) * normal.x + ( transform.xx * transform.zz - transform.xz * transform.zx ) * normal.y + ( transform.xy * transform.zx - transform.xx * transform.zy ) * normal.z;
+			final double z = ( transform.xy * transform.yz - transform.xz * transform.yy ) * normal.x + ( transform.xz * transform.yx - transform.xx * transform.yz ) * normal.y + ( transform.xx * transform.yy - transform.xy * transform.yx ) * normal.z;
+			final double length = Math.sqrt( x * x + y * y + z * z );
+			return ( length > 0.0 ) ? new Vector3D( x / length, y / length, z / length ) : null;
+		}
+
+		@Override
+		public String toString()
+		{
+			return super.toString() + "[appearance=" + _key._appearance + ", regionX=" + _key._regionX + ", regionY=" + _key._regionY + ", regionZ=" + _key._regionZ + ", instances=" + _instances.size() + ']';
+		}
+	}
+
+	/**
+	 * Identifies a batch.
+	 */
+	private static class BatchKey
+	{
+		/**
+		 * Appearance of face groups.
+		 */
+		@Nullable
+		private final Appearance _appearance;
+
+		/**
+		 * Whether face groups are smooth.
+		 */
+		private final boolean _smooth;
+
+		/**
+		 * Whether face groups are two-sided.
+		 */
+		private final boolean _twoSided;
+
+		/**
+		 * Whether content nodes cast shadows.
+		 */
+		private final boolean _castingShadows;
+
+		/**
+		 * Region index along the X-axis.
+		 */
+		private final long _regionX;
+
+		/**
+		 * Region index along the Y-axis.
+		 */
+		private final long _regionY;
+
+		/**
+		 * Region index along the Z-axis.
+		 */
+		private final long _regionZ;
+
+		/**
+		 * Constructs a new key.
+		 *
+		 * @param faceGroup      Face group to be batched.
+		 * @param castingShadows Whether the content node casts shadows.
+		 * @param regionX        Region index along the X-axis.
+		 * @param regionY        Region index along the Y-axis.
+		 * @param regionZ        Region index along the Z-axis.
+		 */
+		BatchKey( @NotNull final FaceGroup faceGroup, final boolean castingShadows, final long regionX, final long regionY, final long regionZ )
+		{
+			_appearance = faceGroup.getAppearance();
+			_smooth = faceGroup.isSmooth();
+			_twoSided = faceGroup.isTwoSided();
+			_castingShadows = castingShadows;
+			_regionX = regionX;
+			_regionY = regionY;
+			_regionZ = regionZ;
+		}
+
+		@Override
+		public boolean equals( final Object obj )
+		{
+			final boolean result;
+			if ( obj == this )
+			{
+				result = true;
+			}
+			else if ( obj instanceof BatchKey )
+			{
+				final BatchKey other = (BatchKey)obj;
+				//noinspection ObjectEquality
+				result = ( _appearance == other._appearance ) &&
+				         ( _smooth == other._smooth ) &&
+				         ( _twoSided == other._twoSided ) &&
+				         ( _castingShadows == other._castingShadows ) &&
+				         ( _regionX == other._regionX ) &&
+				         ( _regionY == other._regionY ) &&
+				         ( _regionZ == other._regionZ );
+			}
+			else
+			{
+				result = false;
+			}
+			return result;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int result = System.identityHashCode( _appearance );
+			result = 31 * result + ( _smooth ? 1 : 0 ) + ( _twoSided ? 2 : 0 ) + ( _castingShadows ? 4 : 0 );
+			result = 31 * result + (int)( _regionX ^ ( _regionX >>> 32 ) );
+			result = 31 * result + (int)( _regionY ^ ( _regionY >>> 32 ) );
+			result = 31 * result + (int)( _regionZ ^ ( _regionZ >>> 32 ) );
+			return result;
+		}
+	}
+
+	/**
+	 * Batching information for a content node.
+	 */
+	private static class Instance
+	{
+		/**
+		 * Content node.
+		 */
+		@NotNull
+		private final ContentNode _node;
+
+		/**
+		 * Transform of the content node when the instance was created.
+		 */
+		@NotNull
+		private final Matrix3D _transform;
+
+		/**
+		 * Content of the content node when the instance was created.
+		 */
+		@NotNull
+		private final List<Node3DPath> _content;
+
+		/**
+		 * Whether the content node cast shadows when the instance was created.
+		 */
+		private final boolean _castingShadows;
+
+		/**
+		 * Bounds of the content node in scene coordinates; {@code null} if the
+		 * node is not batched.
+		 */
+		@Nullable
+		private Bounds3D _bounds = null;
+
+		/**
+		 * Batched face groups; empty if the node is not batched.
+		 */
+		@NotNull
+		private List<Part> _parts = Collections.emptyList();
+
+		/**
+		 * Number of the last update that included the content node.
+		 */
+		private int _updateNumber = 0;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param node      Content node.
+		 * @param transform Transform of the content node.
+		 * @param content   Content of the content node.
+		 */
+		Instance( @NotNull final ContentNode node, @NotNull final Matrix3D transform, @NotNull final List<Node3DPath> content )
+		{
+			_node = node;
+			_transform = transform;
+			_content = content;
+			_castingShadows = node.isCastingShadows();
+		}
+
+		/**
+		 * Returns whether this instance still matches the given content node.
+		 * The content is compared by identity, because content nodes discard
+		 * their cached content when it is updated.
+		 *
+		 * @param node      Content node.
+		 * @param transform Transform of the content node.
+		 * @param content   Content of the content node.
+		 *
+		 * @return {@code true} if the instance matches the node.
+		 */
+		boolean matches( @NotNull final ContentNode node, @NotNull final Matrix3D transform, @NotNull final List<Node3DPath> content )
+		{
+			//noinspection ObjectEquality
+			return ( _content == content ) && ( _castingShadows == node.isCastingShadows() ) && _transform.equals( transform );
+		}
+	}
+
+	/**
+	 * Face group of a content node that is batched.
+	 */
+	private static class Part
+	{
+		/**
+		 * Key of the batch.
+		 */
+		@NotNull
+		private final BatchKey _key;
+
+		/**
+		 * Face group.
+		 */
+		@NotNull
+		private final FaceGroup _faceGroup;
+
+		/**
+		 * Transformation from object to scene coordinates.
+		 */
+		@NotNull
+		private final Matrix3D _object2scene;
+
+		/**
+		 * Batch that the face group was added to.
+		 */
+		@Nullable
+		private Batch _batch = null;
+
+		/**
+		 * Constructs a new part.
+		 *
+		 * @param key          Key of the batch.
+		 * @param faceGroup    Face group.
+		 * @param object2scene Transformation from object to scene coordinates.
+		 */
+		Part( @NotNull final BatchKey key, @NotNull final FaceGroup faceGroup, @NotNull final Matrix3D object2scene )
+		{
+			_key = key;
+			_faceGroup = faceGroup;
+			_object2scene = object2scene;
+		}
+	}
+}
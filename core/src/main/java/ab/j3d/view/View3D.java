@@ -24,6 +24,7 @@ import java.awt.*;
 import java.beans.*;
 import java.util.*;
 import java.util.List;
+import javax.management.*;
 
 import ab.j3d.*;
 import ab.j3d.control.*;
@@ -154,6 +155,31 @@ public abstract class View3D
 	 */
 	private boolean _viewFrustumCulling = true;
 
+	/**
+	 * Performs view frustum culling for this view.
+	 */
+	private final FrustumCuller _frustumCuller = new FrustumCuller();
+
+	/**
+	 * Whether occlusion culling should be enabled, if supported by the view.
+	 */
+	private boolean _occlusionCulling = false;
+
+	/**
+	 * Performs occlusion culling for this view.
+	 */
+	private final OcclusionCuller _occlusionCuller = new OcclusionCuller();
+
+	/**
+	 * Whether static batching should be enabled, if supported by the view.
+	 */
+	private boolean _staticBatching = false;
+
+	/**
+	 * Batches small, static content nodes for this view.
+	 */
+	private final StaticBatcher _staticBatcher = new StaticBatcher();
+
 	/**
 	 * Whether dynamic level of detail should be enabled, if supported by the
 	 * view.
@@ -177,6 +203,11 @@ public abstract class View3D
 	 */
 	private double _zoomToFitZoomAdjust = 0.95;
 
+	/**
+	 * Measures where time is spent while rendering frames.
+	 */
+	private final RenderMetrics _renderMetrics = new RenderMetrics();
+
 	/**
 	 * Construct new view.
 	 *
@@ -224,10 +255,20 @@ public abstract class View3D
 		}
 
 		_renderStyleFilters.clear();
+		_staticBatcher.clear();
 
 		_scene2view = Matrix3D.IDENTITY;
 		_cameraControl = null;
 		_label = null;
+
+		try
+		{
+			_renderMetrics.unregisterMBean();
+		}
+		catch ( final JMException ignored )
+		{
+			/* ignore errors => metrics are no longer registered anyway */
+		}
 	}
 
 	/**
@@ -433,6 +474,89 @@ public abstract class View3D
 		return _viewFrustumCulling;
 	}
 
+	/**
+	 * Returns the frustum culler for this view. Render engines use it to cull
+	 * scene content hierarchically; it also provides culling statistics for
+	 * the last rendered frame.
+	 *
+	 * @return  Frustum culler.
+	 */
+	@NotNull
+	public FrustumCuller getFrustumCuller()
+	{
+		return _frustumCuller;
+	}
+
+	/**
+	 * Sets whether occlusion culling is enabled, if supported.
+	 *
+	 * @param   occlusionCulling    <code>true</code> to enable occlusion culling.
+	 */
+	public void setOcclusionCulling( final boolean occlusionCulling )
+	{
+		_occlusionCulling = occlusionCulling;
+	}
+
+	/**
+	 * Returns whether occlusion culling is enabled, if supported.
+	 *
+	 * @return  <code>true</code> if occlusion culling is enabled.
+	 */
+	public boolean isOcclusionCulling()
+	{
+		return _occlusionCulling;
+	}
+
+	/**
+	 * Returns the occlusion culler for this view. Render engines use it to
+	 * skip content nodes that are hidden behind large occluders; it also
+	 * provides culling statistics for the last rendered frame.
+	 *
+	 * @return  Occlusion culler.
+	 */
+	@NotNull
+	public OcclusionCuller getOcclusionCuller()
+	{
+		return _occlusionCuller;
+	}
+
+	/**
+	 * Sets whether static batching is enabled, if supported. Small content
+	 * nodes with the same appearance are then merged and drawn at once.
+	 *
+	 * @param   staticBatching  <code>true</code> to enable static batching.
+	 */
+	public void setStaticBatching( final boolean staticBatching )
+	{
+		_staticBatching = staticBatching;
+		if ( !staticBatching )
+		{
+			_staticBatcher.clear();
+		}
+	}
+
+	/**
+	 * Returns whether static batching is enabled, if supported.
+	 *
+	 * @return  <code>true</code> if static batching is enabled.
+	 */
+	public boolean isStaticBatching()
+	{
+		return _staticBatching;
+	}
+
+	/**
+	 * Returns the static batcher for this view. Render engines use it to
+	 * merge small content nodes into batches.
+	 *
+	 * @return  Static batcher.
+	 */
+	@NotNull
+	public StaticBatcher getStaticBatcher()
+	{
+		return _staticBatcher;
+	}
+
 	/**
 	 * Returns whether the given object is visible in this view.
 	 *
@@ -575,7 +699,8 @@ public abstract class View3D
 	}
 
 	/**
-	 * Get resolution of image in meters per pixel.
+	 * Get resolution of image in meters per pixel. If no resolution is set,
+	 * the screen resolution is used, or 96 DPI in a headless environment.
 	 *
 	 * @return  Resolution of image in meters per pixel.
 	 */
@@ -585,10 +710,17 @@ public abstract class View3D
 
 		if ( result == 0.0 )
 		{
-			final Component component = getComponent();
-			final Toolkit   toolkit   = ( component != null ) ? component.getToolkit() : Toolkit.getDefaultToolkit();
+			if ( GraphicsEnvironment.isHeadless() )
+			{
+				result = Scene.INCH / 96.0;
+			}
+			else
+			{
+				final Component component = getComponent();
+				final Toolkit   toolkit   = ( component != null ) ? component.getToolkit() : Toolkit.getDefaultToolkit();
 
-			result = Scene.INCH / (double)toolkit.getScreenResolution();
+				result = Scene.INCH / (double)toolkit.getScreenResolution();
+			}
 		}
 
 		return result;
@@ -989,6 +1121,12 @@ public abstract class View3D
 		update();
 	}
 
+	@Override
+	public void contentNodesChanged( final SceneUpdateEvent event )
+	{
+		update();
+	}
+
 	public void ambientLightChanged( final SceneUpdateEvent event )
 	{
 		update();
@@ -1028,6 +1166,18 @@ public abstract class View3D
 		_pcs.addPropertyChangeListener( propertyName, listener );
 	}
 
+	/**
+	 * Returns metrics about the rendering of frames by this view. Metrics are
+	 * only measured if enabled and if supported by the view.
+	 *
+	 * @return  Render metrics.
+	 */
+	@NotNull
+	public RenderMetrics getRenderMetrics()
+	{
+		return _renderMetrics;
+	}
+
 	/**
 	 * Adds a view listener to the view.
 	 *
@@ -508,4 +508,30 @@ public class TestHashList
 		assertEquals( "Unexpected index.", 5, list.indexOfOrAdd( "d" ) );
 		assertEquals( "Unexpected elements.", asList( "a", "b", "c", "a", "b", "d" ), list );
 	}
+
+	@Test
+	public void testMixedOperations()
+	{
+		final HashList<String> list = _list;
+		list.add( "a" );
+		list.add( "b" );
+		assertEquals( "Unexpected index.", 1, list.indexOf( "b" ) );
+		list.add( "c" );
+		list.add( "d" );
+		list.add( 0, "e" );
+		assertEquals( "Unexpected index.", 3, list.indexOf( "c" ) );
+		list.add( "f" );
+		list.remove( 1 );
+		assertEquals( "Unexpected index.", -1, list.indexOf( "a" ) );
+		assertEquals( "Unexpected index.", 4, list.indexOf( "f" ) );
+		list.add( "g" );
+		list.set( 5, "a" );
+		assertEquals( "Unexpected index.", 5, list.indexOf( "a" ) );
+		assertEquals( "Unexpected index.", -1, list.indexOf( "g" ) );
+		list.clear();
+		list.add( "b" );
+		assertEquals( "Unexpected index.", -1, list.indexOf( "c" ) );
+		assertEquals( "Unexpected index.", 0, list.indexOfOrAdd( "b" ) );
+		assertEquals( "Unexpected elements.", asList( "b" ), list );
+	}
 }
@@ -0,0 +1,156 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link ParallelTools}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestParallelTools
+{
+	/**
+	 * Tests that {@link ParallelTools#processRanges} processes every item
+	 * exactly once and returns the results of all ranges in order.
+	 */
+	@Test
+	public void testProcessRanges()
+	{
+		final int count = 1001;
+		final int[] processed = new int[ count ];
+
+		final List<int[]> ranges = ParallelTools.processRanges( count, 7, new ParallelTools.RangeTask<int[]>()
+		{
+			@Override
+			public int[] process( final int start, final int end )
+			{
+				for ( int i = start; i < end; i++ )
+				{
+					processed[ i ]++;
+				}
+				return new int[] { start, end };
+			}
+		} );
+
+		assertEquals( "Unexpected number of ranges", 7, ranges.size() );
+		int expectedStart = 0;
+		for ( final int[] range : ranges )
+		{
+			assertEquals( "Unexpected range start", expectedStart, range[ 0 ] );
+			assertTrue( "Empty range", range[ 1 ] > range[ 0 ] );
+			expectedStart = range[ 1 ];
+		}
+		assertEquals( "Unexpected end of last range", count, expectedStart );
+
+		for ( int i = 0; i < count; i++ )
+		{
+			assertEquals( "Item " + i + " processed wrong number of times", 1, processed[ i ] );
+		}
+
+		assertEquals( "Expected one range for one item", 1, ParallelTools.processRanges( 1, 7, new ParallelTools.RangeTask<Object>()
+		{
+			@Override
+			public Object process( final int start, final int end )
+			{
+				return null;
+			}
+		} ).size() );
+	}
+
+	/**
+	 * Tests that exceptions thrown by a range are rethrown.
+	 */
+	@Test
+	public void testException()
+	{
+		try
+		{
+			ParallelTools.processRanges( 100, 4, new ParallelTools.RangeTask<Object>()
+			{
+				@Override
+				public Object process( final int start, final int end )
+				{
+					if ( end == 100 )
+					{
+						throw new IllegalStateException( "last range" );
+					}
+					return null;
+				}
+			} );
+			fail( "Expected exception" );
+		}
+		catch ( final IllegalStateException e )
+		{
+			assertEquals( "Unexpected exception", "last range", e.getMessage() );
+		}
+	}
+
+	/**
+	 * Tests that tasks submitted from a thread of the shared executor are
+	 * run by that thread, so nested use does not wait for the executor.
+	 *
+	 * @throws Exception if the test fails.
+	 */
+	@Test
+	public void testNested()
+	throws Exception
+	{
+		final Future<Boolean> outer = ParallelTools.submit( new Callable<Boolean>()
+		{
+			@Override
+			public Boolean call()
+			throws Exception
+			{
+				final Thread outerThread = Thread.currentThread();
+				assertTrue( "Expected worker thread", ParallelTools.isWorkerThread() );
+
+				final Future<Thread> inner = ParallelTools.submit( new Callable<Thread>()
+				{
+					@Override
+					public Thread call()
+					{
+						return Thread.currentThread();
+					}
+				} );
+				assertTrue( "Inner task should be done", inner.isDone() );
+				assertSame( "Inner task should run on outer thread", outerThread, inner.get() );
+
+				final List<Thread> rangeThreads = ParallelTools.processRanges( 100, 8, new ParallelTools.RangeTask<Thread>()
+				{
+					@Override
+					public Thread process( final int start, final int end )
+					{
+						return Thread.currentThread();
+					}
+				} );
+				assertEquals( "Nested ranges should run on outer thread", Collections.singletonList( outerThread ), rangeThreads );
+				return Boolean.TRUE;
+			}
+		} );
+
+		assertTrue( "Nested test failed", outer.get( 10L, TimeUnit.SECONDS ) );
+		assertFalse( "Test thread is not a worker", ParallelTools.isWorkerThread() );
+	}
+}
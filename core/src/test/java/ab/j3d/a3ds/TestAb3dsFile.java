@@ -0,0 +1,249 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.a3ds;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+import ab.j3d.model.*;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link Ab3dsFile}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestAb3dsFile
+{
+	/**
+	 * Number of meshes in the test file.
+	 */
+	private static final int MESH_COUNT = 3;
+
+	/**
+	 * Tests loading a file from a stream.
+	 *
+	 * @throws IOException if the test fails.
+	 */
+	@Test
+	public void testLoadStream()
+	throws IOException
+	{
+		final Ab3dsFile file = new Ab3dsFile();
+		file.load( new ByteArrayInputStream( createFile() ) );
+		assertFile( file );
+	}
+
+	/**
+	 * Tests that {@link Ab3dsInputStream} reads the given input stream when
+	 * the first value is read, not when it is constructed.
+	 *
+	 * @throws IOException if the test fails.
+	 */
+	@Test
+	public void testInputStreamReadLazily()
+	throws IOException
+	{
+		final int[] readCount = { 0 };
+		final Ab3dsInputStream in = new Ab3dsInputStream( new FilterInputStream( new ByteArrayInputStream( new byte[] { 1, 2, 42 } ) )
+		{
+			@Override
+			public int read( final byte[] b )
+			throws IOException
+			{
+				readCount[ 0 ]++;
+				return super.read( b );
+			}
+		} );
+
+		assertEquals( "Stream should not be read by constructor", 0, readCount[ 0 ] );
+		assertEquals( "Unexpected pointer", 0L, in.getPointer() );
+		assertEquals( "Unexpected int", 0x0201, in.readInt() );
+		assertEquals( "Unexpected byte", (byte)42, in.readByte() );
+		assertEquals( "Unexpected pointer", 3L, in.getPointer() );
+		assertFalse( "Unexpected end of file", in.isEOF() );
+		in.readByte();
+		assertTrue( "Expected end of file", in.isEOF() );
+	}
+
+	/**
+	 * Tests loading a memory-mapped file.
+	 *
+	 * @throws IOException if the test fails.
+	 */
+	@Test
+	public void testLoadFile()
+	throws IOException
+	{
+		final File tempFile = File.createTempFile( "test", ".3ds" );
+		try
+		{
+			final FileOutputStream out = new FileOutputStream( tempFile );
+			try
+			{
+				out.write( createFile() );
+			}
+			finally
+			{
+				out.close();
+			}
+
+			final Ab3dsFile file = new Ab3dsFile();
+			file.load( tempFile );
+			assertFile( file );
+		}
+		finally
+		{
+			//noinspection ResultOfMethodCallIgnored
+			tempFile.delete();
+		}
+	}
+
+	/**
+	 * Checks the contents of the test file.
+	 *
+	 * @param file File to check.
+	 */
+	private static void assertFile( final Ab3dsFile file )
+	{
+		final HierarchyChunk editChunk = file.getEditChunk();
+		assertNotNull( "Missing edit chunk.", editChunk );
+		final List<Chunk> objects = editChunk.getChunksByID( Chunk.EDIT_OBJECT );
+		assertEquals( "Unexpected number of objects.", MESH_COUNT, objects.size() );
+
+		final HierarchyChunk mesh = (HierarchyChunk)( (HierarchyChunk)objects.get( 2 ) ).getFirstChunkByID( Chunk.OBJ_TRIMESH );
+		final VertexList vertexList = (VertexList)mesh.getFirstChunkByID( Chunk.TRI_VERTEXLIST );
+		assertEquals( "Unexpected vertex count.", 4, vertexList.getVertexCount() );
+		assertEquals( "Unexpected vertex.", 2.0, vertexList.getVertex( 1 ).x, 0.0 );
+
+		final FaceList faceList = (FaceList)mesh.getFirstChunkByID( Chunk.TRI_FACEL1 );
+		assertEquals( "Unexpected face count.", 2, faceList.getFaceCount() );
+		assertEquals( "Unexpected face vertex.", 3, faceList.getFace( 1 ).getVertex( 3 ) );
+
+		final MappingCoordinates mappingCoordinates = (MappingCoordinates)mesh.getFirstChunkByID( Chunk.TRI_MAP_COORDS );
+		assertNotNull( "Missing mapping coordinates.", mappingCoordinates );
+
+		final Node3D model = file.createModel();
+		assertEquals( "Unexpected number of child nodes.", MESH_COUNT, model.getChildCount() );
+		final Object3D object = (Object3D)model.getChild( 2 );
+		int faceCount = 0;
+		for ( final FaceGroup faceGroup : object.getFaceGroups() )
+		{
+			faceCount += faceGroup.getFaces().size();
+		}
+		assertEquals( "Unexpected number of faces.", 2, faceCount );
+	}
+
+	/**
+	 * Creates a 3DS file with some simple meshes and a chunk that is not
+	 * recognized.
+	 *
+	 * @return File contents.
+	 */
+	private static byte[] createFile()
+	{
+		final List<byte[]> editChunks = new ArrayList<byte[]>();
+		for ( int i = 0; i < MESH_COUNT; i++ )
+		{
+			final byte[] vertices = chunk( Chunk.TRI_VERTEXLIST, shorts( 4 ), floats( 0.0f, 0.0f, 0.0f, (float)i, 0.0f, 0.0f, (float)i, 1.0f, 0.0f, 0.0f, 1.0f, 0.0f ) );
+			final byte[] textureCoordinates = chunk( Chunk.TRI_MAP_COORDS, shorts( 4 ), floats( 0.0f, 0.0f, 1.0f, 0.0f, 1.0f, 1.0f, 0.0f, 1.0f ) );
+			final byte[] faces = chunk( Chunk.TRI_FACEL1, shorts( 2, 0, 1, 2, 0, 0, 2, 3, 0 ) );
+			final byte[] mesh = chunk( Chunk.OBJ_TRIMESH, vertices, textureCoordinates, faces );
+			editChunks.add( chunk( Chunk.EDIT_OBJECT, cString( "mesh" + i ), mesh ) );
+		}
+
+		final byte[] unknown = chunk( 0xB000, chunk( 0xB008, shorts( 5, 0, 42, 0 ) ) );
+		return chunk( Chunk.MAIN3DS, chunk( Chunk.EDIT3DS, editChunks.toArray( new byte[ editChunks.size() ][] ) ), unknown );
+	}
+
+	/**
+	 * Creates a chunk.
+	 *
+	 * @param type     Chunk type.
+	 * @param contents Chunk contents.
+	 *
+	 * @return Chunk data.
+	 */
+	private static byte[] chunk( final int type, final byte[]... contents )
+	{
+		int length = 6;
+		for ( final byte[] content : contents )
+		{
+			length += content.length;
+		}
+
+		final ByteBuffer buffer = ByteBuffer.allocate( length ).order( ByteOrder.LITTLE_ENDIAN );
+		buffer.putShort( (short)type );
+		buffer.putInt( length );
+		for ( final byte[] content : contents )
+		{
+			buffer.put( content );
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Encodes 16-bit integers.
+	 *
+	 * @param values Values to encode.
+	 *
+	 * @return Encoded values.
+	 */
+	private static byte[] shorts( final int... values )
+	{
+		final ByteBuffer buffer = ByteBuffer.allocate( values.length * 2 ).order( ByteOrder.LITTLE_ENDIAN );
+		for ( final int value : values )
+		{
+			buffer.putShort( (short)value );
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Encodes floats.
+	 *
+	 * @param values Values to encode.
+	 *
+	 * @return Encoded values.
+	 */
+	private static byte[] floats( final float... values )
+	{
+		final ByteBuffer buffer = ByteBuffer.allocate( values.length * 4 ).order( ByteOrder.LITTLE_ENDIAN );
+		for ( final float value : values )
+		{
+			buffer.putFloat( value );
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Encodes a zero-terminated string.
+	 *
+	 * @param value String to encode.
+	 *
+	 * @return Encoded string.
+	 */
+	private static byte[] cString( final String value )
+	{
+		final byte[] bytes = value.getBytes();
+		return Arrays.copyOf( bytes, bytes.length + 1 );
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.awt;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link PovRenderer}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestPovRenderer
+{
+	/**
+	 * Tests that {@link PovRenderer#getPovrayCommand} consists of the
+	 * executable followed by the arguments from {@link
+	 * PovRenderer#getPovrayArguments}, using 1-based render regions.
+	 */
+	@Test
+	public void testGetPovrayCommand()
+	{
+		final File povFile = new File( "scene.pov" );
+		final File imageFile = new File( "image.png" );
+
+		final List<String> full = PovRenderer.getPovrayCommand( povFile, imageFile, 640, 480, true, 0, 639 );
+		final List<String> fullArguments = PovRenderer.getPovrayArguments( povFile, imageFile, 640, 480, true, 0, 639, 0, 479 );
+		assertEquals( "Unexpected arguments.", fullArguments, full.subList( full.size() - fullArguments.size(), full.size() ) );
+		for ( final String argument : full )
+		{
+			assertFalse( "Full image should not specify a region: " + argument, argument.startsWith( "+SC" ) || argument.startsWith( "+EC" ) || argument.startsWith( "+SR" ) || argument.startsWith( "+ER" ) );
+		}
+
+		final List<String> part = PovRenderer.getPovrayCommand( povFile, imageFile, 640, 480, true, 0, 319 );
+		assertTrue( "Missing start column.", part.contains( "+SC1" ) );
+		assertTrue( "Missing end column.", part.contains( "+EC320" ) );
+		assertFalse( "Unexpected start row.", part.contains( "+SR1" ) );
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.awt;
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.io.*;
+import java.util.*;
+
+import ab.j3d.geom.*;
+import ab.j3d.loader.*;
+import static org.junit.Assert.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+/**
+ * Unit test for {@link TessellatorCache}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestTessellatorCache
+{
+	@Rule
+	public TemporaryFolder _folder = new TemporaryFolder();
+
+	@Test
+	public void testGetTessellator()
+	throws IOException
+	{
+		final Area shape = new Area( new Ellipse2D.Double( 0.0, 0.0, 100.0, 50.0 ) );
+		shape.subtract( new Area( new Rectangle( 20, 10, 20, 20 ) ) );
+
+		final Tessellator expected = ShapeTools.createTessellator( shape, 0.5 );
+		expected.getCounterClockwisePrimitives();
+		expected.getClockwisePrimitives();
+
+		final DiskCache diskCache = new DiskCache( _folder.getRoot(), 1000000L );
+		final Tessellator cold = new TessellatorCache( diskCache ).getTessellator( shape, 0.5 );
+		assertTessellatorEquals( expected, cold );
+		assertEquals( "Expected one cache entry.", 1, Objects.requireNonNull( _folder.getRoot().list( ( dir, name ) -> name.endsWith( ".bin" ) ) ).length );
+
+		final Tessellator warm = new TessellatorCache( new DiskCache( _folder.getRoot(), 1000000L ) ).getTessellator( shape, 0.5 );
+		assertTessellatorEquals( expected, warm );
+		int triangleVertexCount = 0;
+		for ( final TessellationPrimitive primitive : warm.getCounterClockwisePrimitives() )
+		{
+			triangleVertexCount += primitive.getTriangles().length;
+		}
+		assertEquals( "Unexpected triangles.", triangleVertexCount, warm.getCounterClockwiseTriangles().length );
+
+		new TessellatorCache( diskCache ).getTessellator( shape, 0.25 );
+		assertEquals( "Flatness should be part of the key.", 2, Objects.requireNonNull( _folder.getRoot().list( ( dir, name ) -> name.endsWith( ".bin" ) ) ).length );
+	}
+
+	private static void assertTessellatorEquals( final Tessellator expected, final Tessellator actual )
+	{
+		assertEquals( "Unexpected vertices.", expected.getVertexList(), actual.getVertexList() );
+		assertEquals( "Unexpected primitives.", expected.getCounterClockwisePrimitives(), actual.getCounterClockwisePrimitives() );
+		assertEquals( "Unexpected primitives.", expected.getClockwisePrimitives(), actual.getClockwisePrimitives() );
+		assertEquals( "Unexpected outlines.", expected.getCounterClockwiseOutlines().size(), actual.getCounterClockwiseOutlines().size() );
+		for ( int i = 0; i < expected.getCounterClockwiseOutlines().size(); i++ )
+		{
+			assertArrayEquals( "Unexpected outline.", expected.getCounterClockwiseOutlines().get( i ), actual.getCounterClockwiseOutlines().get( i ) );
+		}
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.awt;
+
+import java.awt.image.*;
+import java.io.*;
+import java.util.*;
+import javax.imageio.*;
+import javax.swing.*;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+/**
+ * Unit test for {@link TiledPovRenderer}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestTiledPovRenderer
+{
+	@Rule
+	public TemporaryFolder _folder = new TemporaryFolder();
+
+	/**
+	 * Tests rendering using a stub executable that renders each tile with a
+	 * solid color derived from the tile's position.
+	 */
+	@Test
+	public void testRender()
+	throws IOException
+	{
+		final File povFile = _folder.newFile( "scene.pov" );
+
+		final TiledPovRenderer renderer = new TiledPovRenderer();
+		renderer.setExecutable( Arrays.asList( new File( System.getProperty( "java.home" ), "bin/java" ).getPath(), "-cp", System.getProperty( "java.class.path" ), StubPovRay.class.getName() ) );
+		renderer.setThreadCount( 3 );
+		renderer.setTileWidth( 40 );
+		renderer.setTileHeight( 30 );
+
+		final BoundedRangeModel progressModel = new DefaultBoundedRangeModel();
+		final BufferedImage image = renderer.render( povFile, 100, 50, progressModel, null, true );
+		assertEquals( "Unexpected width.", 100, image.getWidth() );
+		assertEquals( "Unexpected height.", 50, image.getHeight() );
+
+		for ( int y = 0; y < 50; y++ )
+		{
+			for ( int x = 0; x < 100; x++ )
+			{
+				final int tileX = x / 40 * 40;
+				final int tileY = y / 30 * 30;
+				assertEquals( "Unexpected pixel at " + x + "," + y, StubPovRay.getColor( tileX, tileY ), image.getRGB( x, y ) );
+			}
+		}
+
+		assertEquals( "Unexpected progress maximum.", 5000, progressModel.getMaximum() );
+		assertEquals( "Unexpected progress.", 5000, progressModel.getValue() );
+	}
+
+	/**
+	 * Tests that a failing process results in an exception.
+	 */
+	@Test
+	public void testFailure()
+	throws IOException
+	{
+		final File povFile = _folder.newFile( "scene.pov" );
+
+		final TiledPovRenderer renderer = new TiledPovRenderer();
+		renderer.setExecutable( Arrays.asList( new File( System.getProperty( "java.home" ), "bin/java" ).getPath(), "-cp", System.getProperty( "java.class.path" ), StubPovRay.class.getName(), "fail" ) );
+		renderer.setThreadCount( 2 );
+
+		try
+		{
+			renderer.render( povFile, 100, 50, null, null, true );
+			fail( "Expected exception" );
+		}
+		catch ( IOException e )
+		{
+			/* expected */
+		}
+	}
+
+	/**
+	 * Stub POV-Ray executable that writes solid-color images.
+	 */
+	public static class StubPovRay
+	{
+		/**
+		 * Returns the color used for the tile at the given position.
+		 *
+		 * @param x Start column of the tile.
+		 * @param y Start row of the tile.
+		 *
+		 * @return Color (ARGB).
+		 */
+		static int getColor( final int x, final int y )
+		{
+			return 0xff000000 | ( x << 8 ) | y;
+		}
+
+		/**
+		 * Run application.
+		 *
+		 * @param args Command-line arguments.
+		 *
+		 * @throws Exception if the application crashes.
+		 */
+		public static void main( final String[] args )
+		throws Exception
+		{
+			File output = null;
+			int width = 0;
+			int height = 0;
+			int startColumn = 1;
+			int endColumn = -1;
+			int startRow = 1;
+			int endRow = -1;
+
+			for ( final String arg : args )
+			{
+				if ( "fail".equals( arg ) )
+				{
+					System.exit( 1 );
+				}
+				else if ( arg.startsWith( "+O" ) )
+				{
+					output = new File( arg.substring( 2 ) );
+				}
+				else if ( arg.startsWith( "+W" ) )
+				{
+					width = Integer.parseInt( arg.substring( 2 ) );
+				}
+				else if ( arg.startsWith( "+H" ) )
+				{
+					height = Integer.parseInt( arg.substring( 2 ) );
+				}
+				else if ( arg.startsWith( "+SC" ) )
+				{
+					startColumn = Integer.parseInt( arg.substring( 3 ) );
+				}
+				else if ( arg.startsWith( "+EC" ) )
+				{
+					endColumn = Integer.parseInt( arg.substring( 3 ) );
+				}
+				else if ( arg.startsWith( "+SR" ) )
+				{
+					startRow = Integer.parseInt( arg.substring( 3 ) );
+				}
+				else if ( arg.startsWith( "+ER" ) )
+				{
+					endRow = Integer.parseInt( arg.substring( 3 ) );
+				}
+			}
+
+			if ( endColumn < 0 )
+			{
+				endColumn = width;
+			}
+			if ( endRow < 0 )
+			{
+				endRow = height;
+			}
+
+			final int regionWidth = endColumn - startColumn + 1;
+			final int regionHeight = endRow - startRow + 1;
+			final BufferedImage image = new BufferedImage( regionWidth, regionHeight, BufferedImage.TYPE_INT_ARGB );
+			final int color = getColor( startColumn - 1, startRow - 1 );
+			for ( int y = 0; y < regionHeight; y++ )
+			{
+				for ( int x = 0; x < regionWidth; x++ )
+				{
+					image.setRGB( x, y, color );
+				}
+				System.err.println( "0:00:00 Rendering line " + ( startRow + y ) + " of " + height );
+			}
+
+			ImageIO.write( image, "png", output );
+		}
+	}
+}
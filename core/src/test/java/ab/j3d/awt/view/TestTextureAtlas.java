@@ -0,0 +1,313 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.awt.view;
+
+import java.awt.image.*;
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import javax.imageio.*;
+
+import ab.j3d.*;
+import ab.j3d.appearance.*;
+import ab.j3d.model.*;
+import org.jetbrains.annotations.*;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link TextureAtlas}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestTextureAtlas
+{
+	/**
+	 * Tests that textures are packed without overlap, with padding that
+	 * repeats the edge pixels of each texture.
+	 *
+	 * @throws Exception if the test fails.
+	 */
+	@Test
+	public void testPacking()
+	throws Exception
+	{
+		final TextureAtlas atlas = new TextureAtlas( new TestTextureLibrary(), "atlas" );
+		atlas.setPageSize( 256 );
+		atlas.setMaximumTextureSize( 128 );
+		atlas.setPadding( 2 );
+
+		final List<TextureMap> textureMaps = new ArrayList<TextureMap>();
+		for ( int i = 0; i < 20; i++ )
+		{
+			final TextureMap textureMap = new BasicTextureMap( "swatch-" + ( 16 + ( i * 7 ) % 48 ) + 'x' + ( 16 + ( i * 13 ) % 40 ) + '-' + i );
+			assertTrue( "Texture should be added.", atlas.add( textureMap ) );
+			textureMaps.add( textureMap );
+		}
+		assertFalse( "Large texture should be rejected.", atlas.add( new BasicTextureMap( "large-200x100-0" ) ) );
+
+		atlas.build();
+		final List<TextureAtlas.Page> pages = atlas.getPages();
+		assertFalse( "Expected atlas pages.", pages.isEmpty() );
+
+		final List<TextureAtlas.Region> regions = new ArrayList<TextureAtlas.Region>();
+		for ( final TextureMap textureMap : textureMaps )
+		{
+			final TextureAtlas.Region region = atlas.getRegion( textureMap );
+			assertNotNull( "Missing region for " + textureMap.getName(), region );
+			final TextureAtlas.Page page = region.getPage();
+			assertTrue( "Region outside page.", ( region.getX() >= 2 ) && ( region.getY() >= 2 ) && ( region.getX() + region.getWidth() + 2 <= page.getWidth() ) && ( region.getY() + region.getHeight() + 2 <= page.getHeight() ) );
+			assertEquals( "Page height should be a power of two.", 0, page.getHeight() & ( page.getHeight() - 1 ) );
+
+			for ( final TextureAtlas.Region other : regions )
+			{
+				//noinspection ObjectEquality
+				if ( other.getPage() == page )
+				{
+					final boolean separate = ( region.getX() + region.getWidth() + 4 <= other.getX() ) || ( other.getX() + other.getWidth() + 4 <= region.getX() ) ||
+					                         ( region.getY() + region.getHeight() + 4 <= other.getY() ) || ( other.getY() + other.getHeight() + 4 <= region.getY() );
+					assertTrue( "Regions of " + textureMap.getName() + " and " + other.getTextureMap().getName() + " overlap.", separate );
+				}
+			}
+			regions.add( region );
+
+			final BufferedImage image = page.getImage();
+			final int color = TestTextureLibrary.getColor( textureMap );
+			assertEquals( "Unexpected texture pixel.", color, image.getRGB( region.getX(), region.getY() ) );
+			assertEquals( "Unexpected padding pixel.", color, image.getRGB( region.getX() - 2, region.getY() - 2 ) );
+			assertEquals( "Unexpected padding pixel.", TestTextureLibrary.getBottomColor( textureMap ), image.getRGB( region.getX() + region.getWidth() + 1, region.getY() + region.getHeight() + 1 ) );
+		}
+
+		final TextureMap pageMap = pages.get( 0 ).getTextureMap();
+		assertSame( "Atlas should provide page image.", pages.get( 0 ).getImage(), atlas.loadImage( pageMap ) );
+		final InputStream in = atlas.openImageStream( pageMap );
+		assertNotNull( "Atlas should provide page image stream.", in );
+		final BufferedImage decoded = ImageIO.read( in );
+		assertEquals( "Unexpected width of encoded page.", pages.get( 0 ).getWidth(), decoded.getWidth() );
+	}
+
+	/**
+	 * Tests that invalid page sizes, texture sizes and padding are rejected.
+	 */
+	@Test
+	public void testSettings()
+	{
+		final TextureAtlas atlas = new TextureAtlas( new TestTextureLibrary(), "atlas" );
+		atlas.setPageSize( 64 );
+		atlas.setPadding( 31 );
+		atlas.setMaximumTextureSize( 1 );
+
+		assertInvalid( "page size not larger than twice the padding", new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				atlas.setPageSize( 62 );
+			}
+		} );
+		assertInvalid( "negative padding", new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				atlas.setPadding( -1 );
+			}
+		} );
+		assertInvalid( "padding of half the page", new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				atlas.setPadding( 32 );
+			}
+		} );
+		assertInvalid( "zero maximum texture size", new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				atlas.setMaximumTextureSize( 0 );
+			}
+		} );
+
+		assertEquals( "Invalid value should not change page size", 64, atlas.getPageSize() );
+		assertEquals( "Invalid value should not change padding", 31, atlas.getPadding() );
+		assertEquals( "Invalid value should not change maximum texture size", 1, atlas.getMaximumTextureSize() );
+	}
+
+	/**
+	 * Asserts that the given setter call is rejected with an
+	 * {@link IllegalArgumentException}.
+	 *
+	 * @param message Description of the invalid value.
+	 * @param setter  Calls the setter with the invalid value.
+	 */
+	private static void assertInvalid( final String message, final Runnable setter )
+	{
+		try
+		{
+			setter.run();
+			fail( "Expected exception for " + message );
+		}
+		catch ( IllegalArgumentException e )
+		{
+			/* expected */
+		}
+	}
+
+	/**
+	 * Tests remapping of texture coordinates.
+	 *
+	 * @throws Exception if the test fails.
+	 */
+	@Test
+	public void testRemap()
+	throws Exception
+	{
+		final TextureMap swatch = new BasicTextureMap( "swatch-32x16-1" );
+		final TextureMap other = new BasicTextureMap( "swatch-16x16-2" );
+		final BasicAppearance appearance = new BasicAppearance( "swatch" );
+		appearance.setColorMap( swatch );
+		final BasicAppearance repeatingAppearance = new BasicAppearance( "repeating" );
+		repeatingAppearance.setColorMap( other );
+
+		final Object3D object = new Object3D( Arrays.asList( Vector3D.ZERO, new Vector3D( 1.0, 0.0, 0.0 ), new Vector3D( 1.0, 1.0, 0.0 ), new Vector3D( 0.0, 1.0, 0.0 ) ) );
+		final FaceGroup faceGroup = new FaceGroup( appearance, false, false );
+		faceGroup.addFace( new Face3D( object, new int[] { 0, 1, 2, 3 }, new float[] { 0.0f, 0.0f, 1.0f, 0.0f, 1.0f, 1.0f, 0.0f, 0.5f }, null ) );
+		object.addFaceGroup( faceGroup );
+		final FaceGroup repeatingFaceGroup = new FaceGroup( repeatingAppearance, false, false );
+		repeatingFaceGroup.addFace( new Face3D( object, new int[] { 0, 1, 2, 3 }, new float[] { 0.0f, 0.0f, 2.0f, 0.0f, 2.0f, 2.0f, 0.0f, 2.0f }, null ) );
+		object.addFaceGroup( repeatingFaceGroup );
+
+		assertTrue( "Face group should be remappable.", TextureAtlas.isRemappable( faceGroup ) );
+		assertFalse( "Repeating face group should not be remappable.", TextureAtlas.isRemappable( repeatingFaceGroup ) );
+
+		final TextureAtlas atlas = new TextureAtlas( new TestTextureLibrary(), "atlas" );
+		atlas.setPageSize( 64 );
+		assertSame( "Object should not be remapped before build.", object, atlas.remap( object ) );
+		assertEquals( "Unexpected number of textures added.", 1, atlas.addTextures( object ) );
+		atlas.add( other );
+		atlas.build();
+
+		final Object3D remapped = atlas.remap( object );
+		assertNotSame( "Expected remapped copy.", object, remapped );
+		assertEquals( "Original object should not be modified.", swatch, object.getFaceGroups().get( 0 ).getAppearance().getColorMap() );
+		assertSame( "Repeating face group should not be changed.", repeatingFaceGroup, remapped.getFaceGroups().get( 1 ) );
+
+		final FaceGroup remappedFaceGroup = remapped.getFaceGroups().get( 0 );
+		final TextureAtlas.Region region = atlas.getRegion( swatch );
+		assertNotNull( "Missing region.", region );
+		final TextureAtlas.Page page = region.getPage();
+		assertEquals( "Unexpected color map.", page.getTextureMap(), remappedFaceGroup.getAppearance().getColorMap() );
+		assertEquals( "Other properties should be copied.", appearance.getDiffuseColor(), remappedFaceGroup.getAppearance().getDiffuseColor() );
+
+		final List<Vertex3D> vertices = remappedFaceGroup.getFaces().get( 0 ).getVertices();
+		final Vertex3D vertex0 = vertices.get( 0 );
+		final Vertex3D vertex2 = vertices.get( 2 );
+		assertEquals( "Unexpected U.", (float)region.getX() / (float)page.getWidth(), vertex0.colorMapU, 1.0e-6f );
+		assertEquals( "Unexpected U.", (float)( region.getX() + region.getWidth() ) / (float)page.getWidth(), vertex2.colorMapU, 1.0e-6f );
+		assertEquals( "Unexpected V.", (float)( page.getHeight() - region.getY() - region.getHeight() ) / (float)page.getHeight(), vertex0.colorMapV, 1.0e-6f );
+		assertEquals( "Unexpected V.", (float)( page.getHeight() - region.getY() ) / (float)page.getHeight(), vertex2.colorMapV, 1.0e-6f );
+		assertEquals( "Vertex index should be kept.", 2, vertex2.vertexCoordinateIndex );
+
+		/*
+		 * Sample the page image at the remapped coordinates of the top-left
+		 * corner of the source image (u=0, v=1).
+		 */
+		final int pixelX = (int)( region.getU( 0.0f ) * (float)page.getWidth() );
+		final int pixelY = (int)( ( 1.0f - region.getV( 1.0f ) ) * (float)page.getHeight() );
+		assertEquals( "Unexpected pixel at remapped coordinates.", TestTextureLibrary.getColor( swatch ), page.getImage().getRGB( pixelX, pixelY ) );
+
+		final int bottomY = (int)( ( 1.0f - region.getV( 0.0f ) ) * (float)page.getHeight() ) - 1;
+		assertEquals( "Unexpected pixel at remapped coordinates.", TestTextureLibrary.getBottomColor( swatch ), page.getImage().getRGB( pixelX, bottomY ) );
+	}
+
+	/**
+	 * Texture library that generates two-color images with a size given by
+	 * the texture name, e.g. "swatch-32x16-1". The top half of the image has
+	 * a different color than the bottom half.
+	 */
+	private static class TestTextureLibrary
+	implements TextureLibrary
+	{
+		/**
+		 * Returns the color of the top half of the image for the given texture
+		 * map.
+		 *
+		 * @param textureMap Texture map.
+		 *
+		 * @return ARGB color.
+		 */
+		static int getColor( @NotNull final TextureMap textureMap )
+		{
+			return 0xff000000 | ( textureMap.getName().hashCode() & 0xffffff );
+		}
+
+		/**
+		 * Returns the color of the bottom half of the image for the given
+		 * texture map.
+		 *
+		 * @param textureMap Texture map.
+		 *
+		 * @return ARGB color.
+		 */
+		static int getBottomColor( @NotNull final TextureMap textureMap )
+		{
+			return 0xff000000 | ( ~textureMap.getName().hashCode() & 0xffffff );
+		}
+
+		@Nullable
+		@Override
+		public BufferedImage loadImage( @NotNull final TextureMap textureMap )
+		{
+			final String[] parts = textureMap.getName().split( "[-x]" );
+			final BufferedImage result = new BufferedImage( Integer.parseInt( parts[ 1 ] ), Integer.parseInt( parts[ 2 ] ), BufferedImage.TYPE_INT_ARGB );
+			for ( int y = 0; y < result.getHeight(); y++ )
+			{
+				final int color = ( y < result.getHeight() / 2 ) ? getColor( textureMap ) : getBottomColor( textureMap );
+				for ( int x = 0; x < result.getWidth(); x++ )
+				{
+					result.setRGB( x, y, color );
+				}
+			}
+			return result;
+		}
+
+		@Nullable
+		@Override
+		public InputStream openImageStream( @NotNull final TextureMap textureMap )
+		{
+			return null;
+		}
+
+		@Nullable
+		@Override
+		public File getFile( @NotNull final TextureMap textureMap )
+		{
+			return null;
+		}
+
+		@Nullable
+		@Override
+		public URL getUrl( @NotNull final TextureMap textureMap )
+		{
+			return null;
+		}
+	}
+}
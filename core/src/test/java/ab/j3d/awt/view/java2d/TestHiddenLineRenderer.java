@@ -0,0 +1,211 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.awt.view.java2d;
+
+import java.awt.geom.*;
+import java.util.*;
+import java.util.List;
+
+import ab.j3d.*;
+import ab.j3d.model.*;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link HiddenLineRenderer}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestHiddenLineRenderer
+{
+	/**
+	 * Tests that the three edges at the far corner of a box are hidden when
+	 * the box is seen from an arbitrary direction.
+	 */
+	@Test
+	public void testBox()
+	{
+		final Box3D box = new Box3D( 100.0, 200.0, 300.0, null, null );
+		final Matrix3D box2view = Matrix3D.getTransform( -60.0, 0.0, 30.0, 0.0, 0.0, 0.0 );
+
+		final HiddenLineRenderer renderer = new HiddenLineRenderer( Matrix3D.IDENTITY, 0.01 );
+		renderer.addNode( box2view, box );
+		final List<Line2D> lines = renderer.getVisibleLines();
+
+		assertEquals( "Unexpected edge count", 12, renderer.getEdgeCount() );
+		assertEquals( "Unexpected visible line count", 9, lines.size() );
+
+		/*
+		 * Find the corner farthest from the viewer and the expected length
+		 * of all edges that don't end there.
+		 */
+		Vector3D farCorner = null;
+		for ( int i = 0; i < 8; i++ )
+		{
+			final Vector3D corner = box2view.transform( getCorner( i ) );
+			if ( ( farCorner == null ) || ( corner.z < farCorner.z ) )
+			{
+				farCorner = corner;
+			}
+		}
+
+		double expectedLength = 0.0;
+		for ( int i = 0; i < 8; i++ )
+		{
+			for ( int axis = 1; axis <= 4; axis <<= 1 )
+			{
+				if ( ( i & axis ) == 0 )
+				{
+					final Vector3D start = box2view.transform( getCorner( i ) );
+					final Vector3D end = box2view.transform( getCorner( i | axis ) );
+					if ( !start.equals( farCorner ) && !end.equals( farCorner ) )
+					{
+						expectedLength += Math.hypot( end.x - start.x, end.y - start.y );
+					}
+				}
+			}
+		}
+
+		assertEquals( "Unexpected total length", expectedLength, getTotalLength( lines ), 1.0e-6 );
+	}
+
+	/**
+	 * Returns a corner of the box used by {@link #testBox()}.
+	 *
+	 * @param index Index of the corner.
+	 *
+	 * @return Corner.
+	 */
+	private static Vector3D getCorner( final int index )
+	{
+		return new Vector3D( ( ( index & 1 ) == 0 ) ? 0.0 : 100.0, ( ( index & 2 ) == 0 ) ? 0.0 : 200.0, ( ( index & 4 ) == 0 ) ? 0.0 : 300.0 );
+	}
+
+	/**
+	 * Tests hidden-line removal for a plank that passes through a box, which
+	 * can't be drawn correctly by sorting faces.
+	 */
+	@Test
+	public void testIntersectingObjects()
+	{
+		final HiddenLineRenderer renderer = new HiddenLineRenderer( Matrix3D.IDENTITY, 0.01 );
+		renderer.addNode( Matrix3D.IDENTITY, new Box3D( 100.0, 100.0, 10.0, null, null ) );
+		renderer.addNode( Matrix3D.getTranslation( -50.0, 40.0, 5.0 ), new Box3D( 200.0, 20.0, 3.0, null, null ) );
+		final List<Line2D> lines = renderer.getVisibleLines();
+
+		/*
+		 * In top view, the bottom edges of each object coincide with the top
+		 * edges. The plank is only visible outside the box (2 x 2 x 120), and
+		 * hides the box's bottom edges where it crosses them (2 x 20).
+		 */
+		assertEquals( "Unexpected total length", 2.0 * 400.0 - 2.0 * 20.0 + 2.0 * 2.0 * 120.0, getTotalLength( lines ), 1.0e-6 );
+
+		for ( final Line2D line : lines )
+		{
+			final double centerX = 0.5 * ( line.getX1() + line.getX2() );
+			final double centerY = 0.5 * ( line.getY1() + line.getY2() );
+			assertFalse( "Line should be hidden: " + line.getP1() + " - " + line.getP2(), ( centerX > 0.0 ) && ( centerX < 100.0 ) && ( centerY > 40.0 ) && ( centerY < 60.0 ) );
+		}
+	}
+
+	/**
+	 * Tests that edges removed by {@link Object3D#smooth} are not drawn,
+	 * unless they are part of the silhouette.
+	 */
+	@Test
+	public void testSmoothedMesh()
+	{
+		final Object3D mesh = createMesh( 0.0 );
+		HiddenLineRenderer renderer = new HiddenLineRenderer( Matrix3D.IDENTITY, 0.01 );
+		renderer.addNode( Matrix3D.IDENTITY, mesh );
+		assertEquals( "All edges should be drawn", 220, renderer.getEdgeCount() );
+
+		mesh.smooth( 0.0, 10.0, false );
+		renderer = new HiddenLineRenderer( Matrix3D.IDENTITY, 0.01 );
+		renderer.addNode( Matrix3D.IDENTITY, mesh );
+		assertEquals( "Only border edges should be drawn", 40, renderer.getEdgeCount() );
+		assertEquals( "Unexpected total length", 400.0, getTotalLength( renderer.getVisibleLines() ), 1.0e-6 );
+
+		/*
+		 * Fold the mesh, so part of it faces away from the viewer. The fold
+		 * is a silhouette edge, even though it was smoothed.
+		 */
+		final Object3D folded = createMesh( 100.0 );
+		folded.smooth( 0.0, 120.0, false );
+		renderer = new HiddenLineRenderer( Matrix3D.IDENTITY, 0.01 );
+		renderer.addNode( Matrix3D.IDENTITY, folded );
+		assertEquals( "Expected border and fold edges", 50, renderer.getEdgeCount() );
+	}
+
+	/**
+	 * Creates a 100 x 100 mesh of quads with 10 segments along each side.
+	 *
+	 * @param foldAngle Angle in degrees by which the right half of the mesh
+	 *                  is folded upwards.
+	 *
+	 * @return Mesh.
+	 */
+	private static Object3D createMesh( final double foldAngle )
+	{
+		final Object3D result = new Object3D();
+		final Object3DBuilder builder = result.getBuilder();
+
+		final double cos = Math.cos( Math.toRadians( foldAngle ) );
+		final double sin = Math.sin( Math.toRadians( foldAngle ) );
+
+		final List<Vector3D> vertices = new ArrayList<Vector3D>();
+		for ( int y = 0; y <= 10; y++ )
+		{
+			for ( int x = 0; x <= 10; x++ )
+			{
+				final double offset = Math.max( 0.0, (double)x * 10.0 - 50.0 );
+				vertices.add( new Vector3D( Math.min( (double)x * 10.0, 50.0 ) + offset * cos, (double)y * 10.0, offset * sin ) );
+			}
+		}
+		builder.setVertexCoordinates( vertices );
+
+		for ( int y = 0; y < 10; y++ )
+		{
+			for ( int x = 0; x < 10; x++ )
+			{
+				final int index = y * 11 + x;
+				builder.addFace( new int[] { index, index + 11, index + 12, index + 1 }, null, null, false, false, false );
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the total length of the given lines.
+	 *
+	 * @param lines Lines.
+	 *
+	 * @return Total length.
+	 */
+	private static double getTotalLength( final Collection<Line2D> lines )
+	{
+		double result = 0.0;
+		for ( final Line2D line : lines )
+		{
+			result += line.getP1().distance( line.getP2() );
+		}
+		return result;
+	}
+}
@@ -0,0 +1,280 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.awt.view.java2d;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.util.*;
+import java.util.List;
+
+import ab.j3d.*;
+import ab.j3d.appearance.*;
+import ab.j3d.model.*;
+import ab.j3d.view.*;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link Java2dVectorRenderer}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestJava2dVectorRenderer
+{
+	/**
+	 * Size of rendered images.
+	 */
+	private static final int SIZE = 400;
+
+	/**
+	 * Top view, mapping a 2x2 meter area to the image.
+	 */
+	private static final Matrix3D VIEW2IMAGE = new Matrix3D( 0.2, 0.0, 0.0, 0.0, 0.0, -0.2, 0.0, (double)SIZE, 0.0, 0.0, 1.0, 0.0 );
+
+	/**
+	 * Tests that faces of a flat mesh are merged into a single outline.
+	 */
+	@Test
+	public void testMergeFaces()
+	{
+		final Object3D mesh = createMesh( 100, false );
+		final RenderStyle style = createStyle( false );
+
+		final Java2dVectorRenderer renderer = new Java2dVectorRenderer( VIEW2IMAGE, 0.5 );
+		renderer.addNode( Matrix3D.IDENTITY, mesh, style, null );
+		final BufferedImage actual = paint( renderer );
+
+		assertEquals( "Unexpected face count", 10000, renderer.getFaceCount() );
+		assertEquals( "Unexpected back face count", 0, renderer.getBackFaceCount() );
+		assertEquals( "Faces should be merged into one fill", 1, renderer.getFillCount() );
+		assertTrue( "Outline should be simplified: " + renderer.getSegmentCount(), renderer.getSegmentCount() <= 5 );
+
+		assertSimilar( paintDirect( mesh, style ), actual );
+	}
+
+	/**
+	 * Tests that faces of a curved mesh are merged by color, and that the
+	 * result looks the same as the unoptimized rendering.
+	 */
+	@Test
+	public void testCurvedMesh()
+	{
+		final Object3D mesh = createMesh( 200, true );
+		final RenderStyle style = createStyle( true );
+
+		final Java2dVectorRenderer renderer = new Java2dVectorRenderer( VIEW2IMAGE, 0.5 );
+		renderer.addNode( Matrix3D.IDENTITY, mesh, style, null );
+		final BufferedImage actual = paint( renderer );
+
+		assertTrue( "Expected fewer fills than faces: " + renderer.getFillCount(), renderer.getFillCount() < renderer.getFaceCount() / 10 );
+		assertTrue( "Expected fewer segments than face edges: " + renderer.getSegmentCount(), renderer.getSegmentCount() < renderer.getFaceCount() );
+
+		assertSimilar( paintDirect( mesh, style ), actual );
+	}
+
+	/**
+	 * Tests removal of back faces and faces hidden behind other faces.
+	 */
+	@Test
+	public void testCulling()
+	{
+		final RenderStyle style = createStyle( true );
+		final Box3D front = new Box3D( 1000.0, 1000.0, 100.0, null, null );
+		final Box3D back = new Box3D( 500.0, 500.0, 100.0, null, null );
+
+		final Java2dVectorRenderer renderer = new Java2dVectorRenderer( VIEW2IMAGE, 0.5 );
+		renderer.addNode( Matrix3D.getTranslation( 500.0, 500.0, 500.0 ), front, style, null );
+		renderer.addNode( Matrix3D.getTranslation( 700.0, 700.0, 0.0 ), back, style, null );
+		final BufferedImage actual = paint( renderer );
+
+		assertEquals( "Unexpected face count", 12, renderer.getFaceCount() );
+		assertEquals( "Bottom faces should be removed", 2, renderer.getBackFaceCount() );
+		assertEquals( "Faces of back box should be removed", 5, renderer.getOccludedFaceCount() );
+
+		final BufferedImage expected = new BufferedImage( SIZE, SIZE, BufferedImage.TYPE_INT_RGB );
+		final Graphics2D g = expected.createGraphics();
+		g.setColor( Color.WHITE );
+		g.fillRect( 0, 0, SIZE, SIZE );
+		Java2dRenderer.paintNode( g, VIEW2IMAGE, Matrix3D.getTranslation( 700.0, 700.0, 0.0 ), back, style, null );
+		Java2dRenderer.paintNode( g, VIEW2IMAGE, Matrix3D.getTranslation( 500.0, 500.0, 500.0 ), front, style, null );
+		g.dispose();
+		assertSimilar( expected, actual );
+	}
+
+	/**
+	 * Tests that objects smaller than the tolerance are not painted, and
+	 * that painting them separately is batched.
+	 */
+	@Test
+	public void testSmallDetailAndBatching()
+	{
+		final RenderStyle style = createStyle( false );
+
+		final Java2dVectorRenderer renderer = new Java2dVectorRenderer( VIEW2IMAGE, 0.5 );
+		renderer.addNode( Matrix3D.getTranslation( 100.0, 100.0, 0.0 ), new Box3D( 1.0, 1.0, 1.0, null, null ), style, null );
+		paint( renderer );
+		assertEquals( "Small object should not be painted", 0, renderer.getFillCount() );
+
+		final Java2dVectorRenderer batching = new Java2dVectorRenderer( VIEW2IMAGE, 0.5 );
+		final List<Matrix3D> transforms = new ArrayList<Matrix3D>();
+		for ( int i = 0; i < 10; i++ )
+		{
+			final Matrix3D transform = Matrix3D.getTranslation( (double)i * 200.0, 0.0, 0.0 );
+			batching.addNode( transform, new Box3D( 100.0, 100.0, 100.0, null, null ), style, null );
+			transforms.add( transform );
+		}
+		final BufferedImage actual = paint( batching );
+		assertEquals( "Separate objects with the same color should be batched", 1, batching.getFillCount() );
+
+		final BufferedImage expected = new BufferedImage( SIZE, SIZE, BufferedImage.TYPE_INT_RGB );
+		final Graphics2D g = expected.createGraphics();
+		g.setColor( Color.WHITE );
+		g.fillRect( 0, 0, SIZE, SIZE );
+		for ( final Matrix3D transform : transforms )
+		{
+			Java2dRenderer.paintNode( g, VIEW2IMAGE, transform, new Box3D( 100.0, 100.0, 100.0, null, null ), style, null );
+		}
+		g.dispose();
+		assertSimilar( expected, actual );
+	}
+
+	/**
+	 * Creates a render style with fill and stroke.
+	 *
+	 * @param lighting Whether to apply lighting to fills.
+	 *
+	 * @return Render style.
+	 */
+	private static RenderStyle createStyle( final boolean lighting )
+	{
+		final RenderStyle result = new RenderStyle();
+		result.setFillEnabled( true );
+		result.setFillColor( new Color4f( 0.2f, 0.6f, 1.0f ) );
+		result.setFillLightingEnabled( lighting );
+		result.setStrokeEnabled( false );
+		return result;
+	}
+
+	/**
+	 * Creates a mesh of quads on a square grid.
+	 *
+	 * @param segments Number of segments along each side of the mesh.
+	 * @param curved   Whether the mesh is curved.
+	 *
+	 * @return Mesh.
+	 */
+	private static Object3D createMesh( final int segments, final boolean curved )
+	{
+		final Object3D result = new Object3D();
+		final Object3DBuilder builder = result.getBuilder();
+
+		final double size = 1600.0;
+		final double step = size / (double)segments;
+
+		final List<Vector3D> vertices = new ArrayList<Vector3D>();
+		for ( int y = 0; y <= segments; y++ )
+		{
+			for ( int x = 0; x <= segments; x++ )
+			{
+				final double px = (double)x * step;
+				final double py = (double)y * step;
+				final double pz = curved ? 400.0 * Math.sin( px / 400.0 ) * Math.cos( py / 500.0 ) : 0.0;
+				vertices.add( new Vector3D( 200.0 + px, 200.0 + py, pz ) );
+			}
+		}
+		builder.setVertexCoordinates( vertices );
+
+		for ( int y = 0; y < segments; y++ )
+		{
+			for ( int x = 0; x < segments; x++ )
+			{
+				final int index = y * ( segments + 1 ) + x;
+				builder.addFace( new int[] { index, index + segments + 1, index + segments + 2, index + 1 }, BasicAppearances.ALUMINIUM, null, false, true, false );
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Paints using the given renderer.
+	 *
+	 * @param renderer Renderer to use.
+	 *
+	 * @return Rendered image.
+	 */
+	private static BufferedImage paint( final Java2dVectorRenderer renderer )
+	{
+		final BufferedImage result = new BufferedImage( SIZE, SIZE, BufferedImage.TYPE_INT_RGB );
+		final Graphics2D g = result.createGraphics();
+		g.setColor( Color.WHITE );
+		g.fillRect( 0, 0, SIZE, SIZE );
+		renderer.paint( g );
+		g.dispose();
+		return result;
+	}
+
+	/**
+	 * Paints a node using {@link Java2dRenderer}.
+	 *
+	 * @param node  Node to paint.
+	 * @param style Render style.
+	 *
+	 * @return Rendered image.
+	 */
+	private static BufferedImage paintDirect( final Node3D node, final RenderStyle style )
+	{
+		final BufferedImage result = new BufferedImage( SIZE, SIZE, BufferedImage.TYPE_INT_RGB );
+		final Graphics2D g = result.createGraphics();
+		g.setColor( Color.WHITE );
+		g.fillRect( 0, 0, SIZE, SIZE );
+		Java2dRenderer.paintNode( g, VIEW2IMAGE, Matrix3D.IDENTITY, node, style, null );
+		g.dispose();
+		return result;
+	}
+
+	/**
+	 * Asserts that two images are almost the same. Pixels may differ slightly
+	 * in color, and a small fraction of pixels may differ more, e.g. along
+	 * edges.
+	 *
+	 * @param expected Expected image.
+	 * @param actual   Actual image.
+	 */
+	private static void assertSimilar( final BufferedImage expected, final BufferedImage actual )
+	{
+		int different = 0;
+		for ( int y = 0; y < SIZE; y++ )
+		{
+			for ( int x = 0; x < SIZE; x++ )
+			{
+				final int rgb1 = expected.getRGB( x, y );
+				final int rgb2 = actual.getRGB( x, y );
+				final int difference = Math.max( Math.abs( ( ( rgb1 >> 16 ) & 0xff ) - ( ( rgb2 >> 16 ) & 0xff ) ),
+				                                 Math.max( Math.abs( ( ( rgb1 >> 8 ) & 0xff ) - ( ( rgb2 >> 8 ) & 0xff ) ),
+				                                           Math.abs( ( rgb1 & 0xff ) - ( rgb2 & 0xff ) ) ) );
+				if ( difference > 4 )
+				{
+					different++;
+				}
+			}
+		}
+		assertTrue( "Too many different pixels: " + different, different < SIZE * SIZE / 100 );
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.control;
+
+import java.util.*;
+
+import ab.j3d.*;
+import ab.j3d.geom.*;
+import ab.j3d.model.*;
+import ab.j3d.view.*;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link SnapIndex}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestSnapIndex
+{
+	/**
+	 * Snap tolerance in pixels.
+	 */
+	private static final double TOLERANCE = 8.0;
+
+	/**
+	 * Scene with a grid of boxes.
+	 */
+	private Scene _scene;
+
+	/**
+	 * Projector used for queries.
+	 */
+	private Projector _projector;
+
+	/**
+	 * Transforms scene to view coordinates.
+	 */
+	private Matrix3D _scene2view;
+
+	/**
+	 * Index being tested.
+	 */
+	private SnapIndex _index;
+
+	/**
+	 * Creates a scene with a grid of boxes and a view looking at it.
+	 */
+	@Before
+	public void setUp()
+	{
+		final Scene scene = new Scene( Scene.MM );
+		for ( int x = 0; x < 10; x++ )
+		{
+			for ( int y = 0; y < 10; y++ )
+			{
+				scene.addContentNode( "box-" + x + '-' + y, Matrix3D.getTranslation( (double)x * 2000.0, (double)y * 2000.0, 0.0 ), new Box3D( 800.0, 800.0, 800.0, null, null ) );
+			}
+		}
+		_scene = scene;
+
+		_projector = Projector.createInstance( ProjectionPolicy.PERSPECTIVE, 800, 600, Scene.INCH / 96.0, Scene.MM, 100.0, 50000.0, Math.toRadians( 45.0 ), 1.0 );
+		_scene2view = Matrix3D.getFromToTransform( new Vector3D( 10000.0, 4000.0, 6000.0 ), new Vector3D( 10000.0, 10000.0, 0.0 ), Vector3D.POSITIVE_Z_AXIS, Vector3D.POSITIVE_Y_AXIS );
+		_index = new SnapIndex( scene, 500.0 );
+	}
+
+	/**
+	 * Disposes the index.
+	 */
+	@After
+	public void tearDown()
+	{
+		_index.dispose();
+	}
+
+	/**
+	 * Tests snapping to vertices, face centers and edges.
+	 */
+	@Test
+	public void testSnapTypes()
+	{
+		final SnapIndex index = _index;
+		final ContentNode node = _scene.getContentNode( "box-5-5" );
+
+		final double[] pixel = project( new Vector3D( 10800.0, 10000.0, 800.0 ) );
+		SnapIndex.Snap snap = index.findSnap( _projector, _scene2view, pixel[ 0 ] + 2.0, pixel[ 1 ] - 1.0, TOLERANCE, null );
+		assertNotNull( "Expected vertex snap", snap );
+		assertEquals( "Unexpected snap type", SnapIndex.Type.VERTEX, snap.getType() );
+		assertSame( "Unexpected node", node, snap.getContentNode() );
+		assertTrue( "Unexpected point: " + snap, snap.getPoint().almostEquals( new Vector3D( 10800.0, 10000.0, 800.0 ) ) );
+		assertEquals( "Unexpected distance", Math.sqrt( 5.0 ), snap.getDistance(), 1.0e-6 );
+
+		final double[] center = project( new Vector3D( 10400.0, 10400.0, 800.0 ) );
+		snap = index.findSnap( _projector, _scene2view, center[ 0 ], center[ 1 ], TOLERANCE, null );
+		assertNotNull( "Expected face center snap", snap );
+		assertEquals( "Unexpected snap type", SnapIndex.Type.FACE_CENTER, snap.getType() );
+		assertTrue( "Unexpected point: " + snap, snap.getPoint().almostEquals( new Vector3D( 10400.0, 10400.0, 800.0 ) ) );
+
+		final double[] edge = project( new Vector3D( 10200.0, 10000.0, 800.0 ) );
+		snap = index.findSnap( _projector, _scene2view, edge[ 0 ], edge[ 1 ] + 3.0, TOLERANCE, null );
+		assertNotNull( "Expected edge snap", snap );
+		assertEquals( "Unexpected snap type", SnapIndex.Type.EDGE, snap.getType() );
+		assertSame( "Unexpected node", node, snap.getContentNode() );
+		final Vector3D point = snap.getPoint();
+		assertEquals( "Snap point should be on edge", 10000.0, point.y, 1.0e-6 );
+		assertEquals( "Snap point should be on edge", 800.0, point.z, 1.0e-6 );
+		assertTrue( "Snap point should be near pointer: " + snap, ( point.x > 10100.0 ) && ( point.x < 10300.0 ) );
+		assertTrue( "Unexpected distance: " + snap, snap.getDistance() <= 3.0 + 1.0e-3 );
+
+		assertNull( "Excluded node should be ignored", index.findSnap( _projector, _scene2view, center[ 0 ], center[ 1 ], TOLERANCE, node ) );
+
+		final double[] empty = project( new Vector3D( 11400.0, 11400.0, 0.0 ) );
+		assertNull( "Expected no snap between boxes", index.findSnap( _projector, _scene2view, empty[ 0 ], empty[ 1 ], TOLERANCE, null ) );
+	}
+
+	/**
+	 * Tests that the index follows changes to the scene.
+	 */
+	@Test
+	public void testUpdates()
+	{
+		final Scene scene = _scene;
+		final SnapIndex index = _index;
+		final ContentNode node = scene.getContentNode( "box-5-5" );
+
+		final double[] oldCenter = project( new Vector3D( 10400.0, 10400.0, 800.0 ) );
+		final double[] newCenter = project( new Vector3D( 11400.0, 11400.0, 800.0 ) );
+		assertNull( "Expected no snap before move", index.findSnap( _projector, _scene2view, newCenter[ 0 ], newCenter[ 1 ], TOLERANCE, null ) );
+
+		node.setTransform( Matrix3D.getTranslation( 11000.0, 11000.0, 0.0 ) );
+		SnapIndex.Snap snap = index.findSnap( _projector, _scene2view, newCenter[ 0 ], newCenter[ 1 ], TOLERANCE, null );
+		assertNotNull( "Expected snap after move", snap );
+		assertSame( "Unexpected node", node, snap.getContentNode() );
+		assertNull( "Expected no snap at old location", index.findSnap( _projector, _scene2view, oldCenter[ 0 ], oldCenter[ 1 ], TOLERANCE, null ) );
+
+		scene.beginTransaction();
+		try
+		{
+			scene.removeContentNode( "box-5-5" );
+			scene.addContentNode( "new", Matrix3D.getTranslation( 10000.0, 10000.0, 0.0 ), new Box3D( 800.0, 800.0, 800.0, null, null ) );
+		}
+		finally
+		{
+			scene.commitTransaction();
+		}
+
+		assertNull( "Expected no snap for removed node", index.findSnap( _projector, _scene2view, newCenter[ 0 ], newCenter[ 1 ], TOLERANCE, null ) );
+		snap = index.findSnap( _projector, _scene2view, oldCenter[ 0 ], oldCenter[ 1 ], TOLERANCE, null );
+		assertNotNull( "Expected snap for added node", snap );
+		assertSame( "Unexpected node", scene.getContentNode( "new" ), snap.getContentNode() );
+	}
+
+	/**
+	 * Compares snapping to points with brute-force results for random pointer
+	 * locations.
+	 */
+	@Test
+	public void testAgainstBruteForce()
+	{
+		final Random random = new Random( 1L );
+		final SnapIndex index = _index;
+
+		final List<Vector3D> points = new ArrayList<Vector3D>();
+		for ( final ContentNode node : _scene.getContentNodes() )
+		{
+			for ( final Vector3D point : ( (Object3D)node.getNode3D() ).getVertexCoordinates() )
+			{
+				points.add( node.getTransform().transform( point ) );
+			}
+		}
+
+		int snapCount = 0;
+		for ( int i = 0; i < 1000; i++ )
+		{
+			final double pointerX = random.nextDouble() * 800.0;
+			final double pointerY = random.nextDouble() * 600.0;
+
+			boolean expectSnap = false;
+			for ( final Vector3D point : points )
+			{
+				final double[] pixel = project( point );
+				if ( Math.hypot( pixel[ 0 ] - pointerX, pixel[ 1 ] - pointerY ) <= TOLERANCE )
+				{
+					expectSnap = true;
+					break;
+				}
+			}
+
+			final SnapIndex.Snap snap = index.findSnap( _projector, _scene2view, pointerX, pointerY, TOLERANCE, null );
+			if ( expectSnap )
+			{
+				assertNotNull( "Expected snap at " + pointerX + ", " + pointerY, snap );
+				snapCount++;
+			}
+
+			if ( snap != null )
+			{
+				assertTrue( "Snap too far from pointer: " + snap, snap.getDistance() <= TOLERANCE );
+				final double[] pixel = project( snap.getPoint() );
+				assertEquals( "Incorrect distance", Math.hypot( pixel[ 0 ] - pointerX, pixel[ 1 ] - pointerY ), snap.getDistance(), 1.0e-6 );
+			}
+		}
+
+		assertTrue( "Test should hit some vertices", snapCount > 10 );
+	}
+
+	/**
+	 * Projects a point in scene coordinates to image coordinates.
+	 *
+	 * @param point Point to project.
+	 *
+	 * @return Image coordinates.
+	 */
+	private double[] project( final Vector3D point )
+	{
+		final double[] result = new double[ 2 ];
+		_projector.project( result, 0, _scene2view.transform( point ) );
+		return result;
+	}
+}
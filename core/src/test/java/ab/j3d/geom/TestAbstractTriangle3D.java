@@ -89,4 +89,13 @@ public class TestAbstractTriangle3D
 			assertTrue( desc + "Invalid area calculated. Expected: " + test._expectedArea + " Actual: " + actualArea, MathTools.almostEqual( test._expectedArea, actualArea ) );
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Tests the {@link AbstractTriangle3D#getAveragePoint} method.
+	 */
+	public void testGetAveragePoint()
+	{
+		final Triangle3D triangle = new BasicTriangle3D( new Vector3D( 30.0, 0.0, -3.0 ), new Vector3D( 60.0, 30.0, 0.0 ), new Vector3D( 0.0, 60.0, 12.0 ), false );
+		assertEquals( "Invalid average point", new Vector3D( 30.0, 30.0, 3.0 ), triangle.getAveragePoint() );
+	}
+}
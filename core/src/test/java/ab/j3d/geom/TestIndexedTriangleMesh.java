@@ -0,0 +1,171 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.geom;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link IndexedTriangleMesh}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestIndexedTriangleMesh
+{
+	/**
+	 * Number of values per vertex: position and normal.
+	 */
+	private static final int STRIDE = 6;
+
+	/**
+	 * Tests welding and cache optimization of an unindexed grid with shuffled
+	 * triangles, and checks the vertex count and ACMR before and after.
+	 */
+	@Test
+	public void testOptimize()
+	{
+		final int segments = 100;
+		final IndexedTriangleMesh mesh = createShuffledGrid( segments );
+		final Set<String> triangles = getTriangles( mesh );
+
+		final int triangleCount = 2 * segments * segments;
+		assertEquals( "Unexpected triangle count", triangleCount, mesh.getTriangleCount() );
+		assertEquals( "Unexpected vertex count", 3 * triangleCount, mesh.getVertexCount() );
+		final double originalAcmr = mesh.getAverageCacheMissRatio( IndexedTriangleMesh.DEFAULT_CACHE_SIZE );
+		assertEquals( "Unexpected ACMR for unindexed mesh", 3.0, originalAcmr, 0.0 );
+
+		mesh.weld();
+		assertEquals( "Unexpected vertex count after welding", ( segments + 1 ) * ( segments + 1 ), mesh.getVertexCount() );
+		assertEquals( "Triangles should be preserved", triangles, getTriangles( mesh ) );
+		final double weldedAcmr = mesh.getAverageCacheMissRatio( IndexedTriangleMesh.DEFAULT_CACHE_SIZE );
+
+		mesh.optimizeTriangleOrder( IndexedTriangleMesh.DEFAULT_CACHE_SIZE );
+		mesh.optimizeVertexOrder();
+		assertEquals( "Unexpected vertex count after optimization", ( segments + 1 ) * ( segments + 1 ), mesh.getVertexCount() );
+		assertEquals( "Unexpected triangle count after optimization", triangleCount, mesh.getTriangleCount() );
+		assertEquals( "Triangles should be preserved", triangles, getTriangles( mesh ) );
+		assertTrue( "Mesh should be short indexable", mesh.isShortIndexable() );
+
+		final double optimizedAcmr = mesh.getAverageCacheMissRatio( IndexedTriangleMesh.DEFAULT_CACHE_SIZE );
+		assertTrue( "Welding a shuffled mesh should barely help: " + weldedAcmr, ( weldedAcmr > 2.0 ) && ( weldedAcmr <= originalAcmr ) );
+		assertTrue( "Optimized ACMR too high: " + optimizedAcmr, optimizedAcmr < 0.8 );
+		assertTrue( "Optimized ACMR below lower bound: " + optimizedAcmr, optimizedAcmr >= (double)mesh.getVertexCount() / (double)triangleCount );
+
+		final int[] indices = mesh.getIndices();
+		int maximumIndex = -1;
+		for ( int i = 0; i < indices.length; i++ )
+		{
+			assertTrue( "Vertices should be ordered by first use", indices[ i ] <= maximumIndex + 1 );
+			maximumIndex = Math.max( maximumIndex, indices[ i ] );
+		}
+	}
+
+	/**
+	 * Tests welding of vertices that differ only in some attributes.
+	 */
+	@Test
+	public void testWeldAttributes()
+	{
+		final float[] vertices = {
+			0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f,
+			1.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f,
+			0.0f, 1.0f, 0.0f, 0.0f, 0.0f, 1.0f,
+			0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f,
+			0.0f, 1.0f, 0.0f, 0.0f, 0.0f, 1.0f,
+			0.0f, 1.0f, 0.0f, 1.0f, 0.0f, 0.0f,
+			5.0f, 5.0f, 5.0f, 0.0f, 0.0f, 1.0f,
+		};
+		final IndexedTriangleMesh mesh = new IndexedTriangleMesh( STRIDE, vertices, new int[] { 0, 1, 2, 3, 4, 5 } );
+		mesh.weld();
+		assertEquals( "Unexpected vertex count", 4, mesh.getVertexCount() );
+		assertArrayEquals( "Unexpected indices", new int[] { 0, 1, 2, 0, 2, 3 }, mesh.getIndices() );
+	}
+
+	/**
+	 * Creates an unindexed grid of triangles in random order.
+	 *
+	 * @param segments Number of segments along each side of the grid.
+	 *
+	 * @return Grid mesh.
+	 */
+	private static IndexedTriangleMesh createShuffledGrid( final int segments )
+	{
+		final List<float[]> triangles = new ArrayList<float[]>();
+		for ( int y = 0; y < segments; y++ )
+		{
+			for ( int x = 0; x < segments; x++ )
+			{
+				triangles.add( new float[] { (float)x, (float)y, (float)( x + 1 ), (float)y, (float)( x + 1 ), (float)( y + 1 ) } );
+				triangles.add( new float[] { (float)x, (float)y, (float)( x + 1 ), (float)( y + 1 ), (float)x, (float)( y + 1 ) } );
+			}
+		}
+		Collections.shuffle( triangles, new Random( 1L ) );
+
+		final float[] vertices = new float[ triangles.size() * 3 * STRIDE ];
+		final int[] indices = new int[ triangles.size() * 3 ];
+		for ( int i = 0; i < indices.length; i++ )
+		{
+			final float[] triangle = triangles.get( i / 3 );
+			final int corner = i % 3;
+			vertices[ i * STRIDE ] = triangle[ corner * 2 ];
+			vertices[ i * STRIDE + 1 ] = triangle[ corner * 2 + 1 ];
+			vertices[ i * STRIDE + 5 ] = 1.0f;
+			indices[ i ] = i;
+		}
+
+		return new IndexedTriangleMesh( STRIDE, vertices, indices );
+	}
+
+	/**
+	 * Returns a description of each triangle in the mesh, starting at the
+	 * smallest vertex, so the winding is preserved.
+	 *
+	 * @param mesh Mesh to get triangles from.
+	 *
+	 * @return Triangles.
+	 */
+	private static Set<String> getTriangles( final IndexedTriangleMesh mesh )
+	{
+		final float[] vertices = mesh.getVertices();
+		final int[] indices = mesh.getIndices();
+
+		final Set<String> result = new HashSet<String>();
+		for ( int i = 0; i < indices.length; i += 3 )
+		{
+			final String[] corners = new String[ 3 ];
+			for ( int j = 0; j < 3; j++ )
+			{
+				corners[ j ] = Arrays.toString( Arrays.copyOfRange( vertices, indices[ i + j ] * STRIDE, ( indices[ i + j ] + 1 ) * STRIDE ) );
+			}
+
+			int first = 0;
+			for ( int j = 1; j < 3; j++ )
+			{
+				if ( corners[ j ].compareTo( corners[ first ] ) < 0 )
+				{
+					first = j;
+				}
+			}
+			result.add( corners[ first ] + corners[ ( first + 1 ) % 3 ] + corners[ ( first + 2 ) % 3 ] );
+		}
+		return result;
+	}
+}
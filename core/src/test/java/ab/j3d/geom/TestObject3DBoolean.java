@@ -0,0 +1,374 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.geom;
+
+import java.util.*;
+
+import ab.j3d.*;
+import ab.j3d.appearance.*;
+import ab.j3d.model.*;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link Object3DBoolean}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestObject3DBoolean
+{
+	/**
+	 * Tests cutting a hole for a sink out of a worktop.
+	 */
+	@Test
+	public void testDifference()
+	{
+		final Object3D worktop = createBox( 0.0, 0.0, 0.0, 1000.0, 600.0, 40.0, BasicAppearances.WHITE );
+		final Object3D sink = createBox( 250.0, 100.0, -50.0, 500.0, 400.0, 200.0, BasicAppearances.RED );
+
+		final Object3D result = Object3DBoolean.difference( worktop, sink );
+		assertEquals( "Unexpected volume.", 1000.0 * 600.0 * 40.0 - 500.0 * 400.0 * 40.0, getVolume( result ), 1.0e-3 );
+		assertBounds( result, 0.0, 0.0, 0.0, 1000.0, 600.0, 40.0 );
+		assertAppearances( result, BasicAppearances.WHITE, BasicAppearances.RED );
+
+		for ( final FaceGroup faceGroup : result.getFaceGroups() )
+		{
+			//noinspection ObjectEquality
+			if ( faceGroup.getAppearance() == BasicAppearances.RED )
+			{
+				assertEquals( "Unexpected area of faces from sink.", 2.0 * ( 500.0 + 400.0 ) * 40.0, getArea( faceGroup ), 1.0e-3 );
+			}
+		}
+	}
+
+	/**
+	 * Tests the union of two overlapping boxes, where the second box is
+	 * transformed.
+	 */
+	@Test
+	public void testUnion()
+	{
+		final Object3D box1 = createBox( 0.0, 0.0, 0.0, 100.0, 100.0, 100.0, BasicAppearances.WHITE );
+		final Object3D box2 = createBox( 0.0, 0.0, 0.0, 100.0, 100.0, 100.0, BasicAppearances.RED );
+
+		final Object3D result = Object3DBoolean.apply( Object3DBoolean.Operation.UNION, box1, Matrix3D.getTransform( 0.0, 0.0, 0.0, 50.0, 50.0, 50.0 ), box2 );
+		assertEquals( "Unexpected volume.", 2.0 * 100.0 * 100.0 * 100.0 - 50.0 * 50.0 * 50.0, getVolume( result ), 1.0e-3 );
+		assertBounds( result, 0.0, 0.0, 0.0, 150.0, 150.0, 150.0 );
+		assertAppearances( result, BasicAppearances.WHITE, BasicAppearances.RED );
+	}
+
+	/**
+	 * Tests the intersection of a box and a sphere, which is only partly
+	 * inside the box.
+	 */
+	@Test
+	public void testIntersection()
+	{
+		final Object3D box = createBox( 0.0, -100.0, -100.0, 100.0, 200.0, 200.0, BasicAppearances.WHITE );
+		final Object3D sphere = new Sphere3D( 50.0, 16, 16, BasicAppearances.RED );
+
+		final double sphereVolume = getVolume( sphere );
+		final Object3D result = Object3DBoolean.intersection( box, sphere );
+		assertEquals( "Unexpected volume.", 0.5 * sphereVolume, getVolume( result ), 1.0e-6 * sphereVolume );
+		assertAppearances( result, BasicAppearances.WHITE, BasicAppearances.RED );
+
+		final Object3D difference = Object3DBoolean.difference( sphere, box );
+		assertEquals( "Unexpected volume.", 0.5 * sphereVolume, getVolume( difference ), 1.0e-6 * sphereVolume );
+	}
+
+	/**
+	 * Tests operations on boxes with coinciding faces.
+	 */
+	@Test
+	public void testCoplanarFaces()
+	{
+		final Object3D box = createBox( 0.0, 0.0, 0.0, 100.0, 100.0, 100.0, BasicAppearances.WHITE );
+		final Object3D adjacent = createBox( 100.0, 0.0, 0.0, 100.0, 100.0, 100.0, BasicAppearances.RED );
+		final Object3D flush = createBox( 25.0, 25.0, 50.0, 50.0, 50.0, 50.0, BasicAppearances.RED );
+
+		final Object3D union = Object3DBoolean.union( box, adjacent );
+		assertEquals( "Unexpected volume.", 2.0 * 100.0 * 100.0 * 100.0, getVolume( union ), 1.0e-3 );
+		assertEquals( "Unexpected area.", 2.0 * 200.0 * 100.0 * 2.0 + 2.0 * 100.0 * 100.0, getArea( union ), 1.0e-3 );
+
+		final Object3D intersection = Object3DBoolean.intersection( box, adjacent );
+		assertEquals( "Unexpected volume.", 0.0, getVolume( intersection ), 1.0e-3 );
+
+		final Object3D pocket = Object3DBoolean.difference( box, flush );
+		assertEquals( "Unexpected volume.", 100.0 * 100.0 * 100.0 - 50.0 * 50.0 * 50.0, getVolume( pocket ), 1.0e-3 );
+		assertEquals( "Unexpected area.", 6.0 * 100.0 * 100.0 + 4.0 * 50.0 * 50.0, getArea( pocket ), 1.0e-3 );
+
+		final Object3D same = Object3DBoolean.union( box, box );
+		assertEquals( "Unexpected volume.", 100.0 * 100.0 * 100.0, getVolume( same ), 1.0e-3 );
+		assertEquals( "Unexpected area.", 6.0 * 100.0 * 100.0, getArea( same ), 1.0e-3 );
+	}
+
+	/**
+	 * Tests operations on objects that do not intersect.
+	 */
+	@Test
+	public void testDisjoint()
+	{
+		final Object3D box = createBox( 0.0, 0.0, 0.0, 100.0, 100.0, 100.0, BasicAppearances.WHITE );
+		final Object3D inside = createBox( 25.0, 25.0, 25.0, 50.0, 50.0, 50.0, BasicAppearances.RED );
+		final Object3D outside = createBox( 200.0, 0.0, 0.0, 50.0, 50.0, 50.0, BasicAppearances.RED );
+
+		assertEquals( "Unexpected volume.", 100.0 * 100.0 * 100.0, getVolume( Object3DBoolean.union( box, inside ) ), 1.0e-3 );
+		assertEquals( "Unexpected volume.", 100.0 * 100.0 * 100.0 - 50.0 * 50.0 * 50.0, getVolume( Object3DBoolean.difference( box, inside ) ), 1.0e-3 );
+		assertEquals( "Unexpected volume.", 50.0 * 50.0 * 50.0, getVolume( Object3DBoolean.intersection( box, inside ) ), 1.0e-3 );
+		assertEquals( "Unexpected volume.", 100.0 * 100.0 * 100.0 + 50.0 * 50.0 * 50.0, getVolume( Object3DBoolean.union( box, outside ) ), 1.0e-3 );
+		assertEquals( "Unexpected volume.", 100.0 * 100.0 * 100.0, getVolume( Object3DBoolean.difference( box, outside ) ), 1.0e-3 );
+		assertTrue( "Expected empty intersection.", Object3DBoolean.intersection( box, outside ).getFaceGroups().isEmpty() );
+	}
+
+	/**
+	 * Tests that operations on curved objects produce closed objects, which
+	 * have a net vector area of zero and a volume that does not depend on the
+	 * origin.
+	 */
+	@Test
+	public void testClosed()
+	{
+		final Object3D worktop = createBox( 0.0, 0.0, 0.0, 1000.0, 600.0, 40.0, BasicAppearances.WHITE );
+		final Object3D cylinder = new Cylinder3D( 200.0, 100.0, 32, BasicAppearances.RED, null, true, BasicAppearances.RED, null, BasicAppearances.RED, null, false );
+		assertClosed( worktop, Matrix3D.getTranslation( 500.0, 300.0, -50.0 ), cylinder );
+
+		final Object3D sphere1 = new Sphere3D( 100.0, 16, 16, BasicAppearances.WHITE );
+		final Object3D sphere2 = new Sphere3D( 80.0, 16, 16, BasicAppearances.RED );
+		assertClosed( sphere1, Matrix3D.getTranslation( 60.0, 20.0, 10.0 ), sphere2 );
+
+		final Object3D box = createBox( -50.0, -50.0, -50.0, 100.0, 100.0, 100.0, BasicAppearances.RED );
+		assertClosed( sphere1, Matrix3D.getTransform( 30.0, 20.0, 10.0, 40.0, 0.0, 0.0 ), box );
+	}
+
+	/**
+	 * Asserts that the union, difference and intersection of two closed
+	 * objects are closed and that their volumes are consistent.
+	 *
+	 * @param object1          First object.
+	 * @param object2ToObject1 Transforms the second object to the first.
+	 * @param object2          Second object.
+	 */
+	private static void assertClosed( final Object3D object1, final Matrix3D object2ToObject1, final Object3D object2 )
+	{
+		final Vector3D offset = new Vector3D( 1234.0, -567.0, 891.0 );
+		final double volume1 = getVolume( object1 );
+		final double volume2 = getVolume( object2 );
+
+		final Map<Object3DBoolean.Operation, Double> volumes = new EnumMap<Object3DBoolean.Operation, Double>( Object3DBoolean.Operation.class );
+		for ( final Object3DBoolean.Operation operation : Object3DBoolean.Operation.values() )
+		{
+			final Object3D result = Object3DBoolean.apply( operation, object1, object2ToObject1, object2 );
+			final Vector3D netArea = getNetArea( result );
+			assertEquals( operation + ": Expected zero net area, but was " + netArea, 0.0, netArea.length(), 1.0e-6 );
+
+			final double volume = getVolume( result );
+			assertEquals( operation + ": Volume depends on origin.", volume, getVolume( result, offset ), 1.0e-3 );
+			volumes.put( operation, volume );
+		}
+
+		final double union = volumes.get( Object3DBoolean.Operation.UNION );
+		final double difference = volumes.get( Object3DBoolean.Operation.DIFFERENCE );
+		final double intersection = volumes.get( Object3DBoolean.Operation.INTERSECTION );
+		assertEquals( "Unexpected volume of difference.", volume1 - intersection, difference, 1.0e-3 );
+		assertEquals( "Unexpected volume of union.", volume1 + volume2 - intersection, union, 1.0e-3 );
+	}
+
+	/**
+	 * Creates a box.
+	 *
+	 * @param x          X coordinate of box origin.
+	 * @param y          Y coordinate of box origin.
+	 * @param z          Z coordinate of box origin.
+	 * @param dx         Size of box along X axis.
+	 * @param dy         Size of box along Y axis.
+	 * @param dz         Size of box along Z axis.
+	 * @param appearance Appearance of box.
+	 *
+	 * @return Box.
+	 */
+	private static Object3D createBox( final double x, final double y, final double z, final double dx, final double dy, final double dz, final Appearance appearance )
+	{
+		return new Box3D( x, y, z, dx, dy, dz, appearance, null, appearance, null, appearance, null, appearance, null, appearance, null, appearance, null, false );
+	}
+
+	/**
+	 * Returns the volume enclosed by an object.
+	 *
+	 * @param object Closed object.
+	 *
+	 * @return Volume.
+	 */
+	private static double getVolume( final Object3D object )
+	{
+		return getVolume( object, Vector3D.ZERO );
+	}
+
+	/**
+	 * Returns the volume enclosed by an object, calculated relative to the
+	 * given origin. For a closed object, the result does not depend on the
+	 * origin.
+	 *
+	 * @param object Closed object.
+	 * @param origin Origin used for the calculation.
+	 *
+	 * @return Volume.
+	 */
+	private static double getVolume( final Object3D object, final Vector3D origin )
+	{
+		double result = 0.0;
+		for ( final FaceGroup faceGroup : object.getFaceGroups() )
+		{
+			for ( final Face3D face : faceGroup.getFaces() )
+			{
+				for ( final TessellationPrimitive primitive : face.getTessellation().getPrimitives() )
+				{
+					final int[] triangles = primitive.getTriangles();
+					for ( int i = 0; i < triangles.length; i += 3 )
+					{
+						final Vector3D p0 = face.getVertex( triangles[ i ] ).point.minus( origin );
+						final Vector3D p1 = face.getVertex( triangles[ i + 1 ] ).point.minus( origin );
+						final Vector3D p2 = face.getVertex( triangles[ i + 2 ] ).point.minus( origin );
+						result += Vector3D.dot( p0, Vector3D.cross( p1, p2 ) ) / 6.0;
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the net vector area of an object, i.e. the sum of the area
+	 * vectors of all triangles. This is zero for a closed object.
+	 *
+	 * @param object Object.
+	 *
+	 * @return Net vector area.
+	 */
+	private static Vector3D getNetArea( final Object3D object )
+	{
+		double x = 0.0;
+		double y = 0.0;
+		double z = 0.0;
+		for ( final FaceGroup faceGroup : object.getFaceGroups() )
+		{
+			for ( final Face3D face : faceGroup.getFaces() )
+			{
+				for ( final TessellationPrimitive primitive : face.getTessellation().getPrimitives() )
+				{
+					final int[] triangles = primitive.getTriangles();
+					for ( int i = 0; i < triangles.length; i += 3 )
+					{
+						final Vector3D p0 = face.getVertex( triangles[ i ] ).point;
+						final Vector3D p1 = face.getVertex( triangles[ i + 1 ] ).point;
+						final Vector3D p2 = face.getVertex( triangles[ i + 2 ] ).point;
+						final Vector3D cross = Vector3D.cross( p1.minus( p0 ), p2.minus( p0 ) );
+						x += 0.5 * cross.x;
+						y += 0.5 * cross.y;
+						z += 0.5 * cross.z;
+					}
+				}
+			}
+		}
+		return new Vector3D( x, y, z );
+	}
+
+	/**
+	 * Returns the surface area of an object.
+	 *
+	 * @param object Object.
+	 *
+	 * @return Surface area.
+	 */
+	private static double getArea( final Object3D object )
+	{
+		double result = 0.0;
+		for ( final FaceGroup faceGroup : object.getFaceGroups() )
+		{
+			result += getArea( faceGroup );
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the surface area of a face group.
+	 *
+	 * @param faceGroup Face group.
+	 *
+	 * @return Surface area.
+	 */
+	private static double getArea( final FaceGroup faceGroup )
+	{
+		double result = 0.0;
+		for ( final Face3D face : faceGroup.getFaces() )
+		{
+			for ( final TessellationPrimitive primitive : face.getTessellation().getPrimitives() )
+			{
+				final int[] triangles = primitive.getTriangles();
+				for ( int i = 0; i < triangles.length; i += 3 )
+				{
+					final Vector3D p0 = face.getVertex( triangles[ i ] ).point;
+					final Vector3D p1 = face.getVertex( triangles[ i + 1 ] ).point;
+					final Vector3D p2 = face.getVertex( triangles[ i + 2 ] ).point;
+					result += 0.5 * Vector3D.cross( p1.minus( p0 ), p2.minus( p0 ) ).length();
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Asserts that an object has the given bounds.
+	 *
+	 * @param object Object to test.
+	 * @param x1     Expected minimum X coordinate.
+	 * @param y1     Expected minimum Y coordinate.
+	 * @param z1     Expected minimum Z coordinate.
+	 * @param x2     Expected maximum X coordinate.
+	 * @param y2     Expected maximum Y coordinate.
+	 * @param z2     Expected maximum Z coordinate.
+	 */
+	private static void assertBounds( final Object3D object, final double x1, final double y1, final double z1, final double x2, final double y2, final double z2 )
+	{
+		final Bounds3DBuilder builder = new Bounds3DBuilder();
+		for ( final Vector3D point : object.getVertexCoordinates() )
+		{
+			builder.addPoint( point );
+		}
+		final Bounds3D bounds = builder.getBounds();
+		assertNotNull( "Expected vertices.", bounds );
+		assertEquals( "Unexpected bounds.", new Bounds3D( x1, y1, z1, x2, y2, z2 ), bounds );
+	}
+
+	/**
+	 * Asserts that an object has face groups with exactly the given
+	 * appearances.
+	 *
+	 * @param object      Object to test.
+	 * @param appearances Expected appearances.
+	 */
+	private static void assertAppearances( final Object3D object, final Appearance... appearances )
+	{
+		final Set<Appearance> actual = new HashSet<Appearance>();
+		for ( final FaceGroup faceGroup : object.getFaceGroups() )
+		{
+			actual.add( faceGroup.getAppearance() );
+		}
+		assertEquals( "Unexpected appearances.", new HashSet<Appearance>( Arrays.asList( appearances ) ), actual );
+	}
+}
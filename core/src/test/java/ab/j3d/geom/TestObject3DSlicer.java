@@ -166,4 +166,160 @@ extends TestCase
 		}
 		while ( !closed );
 	}
+
+	/**
+	 * Test that repeated cuts of the same object, which reuse the index of the
+	 * slicer, only put faces on the correct side of the cutting plane and
+	 * that the index is rebuilt when the object changes.
+	 */
+	public void testRepeatedCuts()
+	{
+		final int segments = 40;
+		final Object3D object = new Object3D();
+		final Object3DBuilder builder = object.getBuilder();
+		final List<Vector3D> vertices = new ArrayList<Vector3D>();
+		for ( int y = 0; y <= segments; y++ )
+		{
+			for ( int x = 0; x <= segments; x++ )
+			{
+				vertices.add( new Vector3D( (double)( x * 10 ), (double)( y * 10 ), 0.0 ) );
+			}
+		}
+		builder.setVertexCoordinates( vertices );
+
+		for ( int y = 0; y < segments; y++ )
+		{
+			for ( int x = 0; x < segments; x++ )
+			{
+				final int i = y * ( segments + 1 ) + x;
+				builder.addFace( new int[] { i, i + 1, i + segments + 2, i + segments + 1 }, null, null, false, false, false );
+			}
+		}
+
+		final Object3DSlicer slicer = new Object3DSlicer();
+		slicer.setTopEnabled( true );
+		slicer.setBottomEnabled( true );
+
+		for ( int i = 0; i < 2; i++ )
+		{
+			for ( final double cut : new double[] { 5.0, 15.0, 205.0, 395.0 } )
+			{
+				slicer.slice( object, new BasicPlane3D( Vector3D.POSITIVE_X_AXIS, cut, true ) );
+				final Object3D top = slicer.getTopObject();
+				final Object3D bottom = slicer.getBottomObject();
+				final int rows = countFaces( object ) / segments;
+				assertEquals( "Unexpected number of top faces at x=" + cut, rows * ( segments - (int)( cut / 10.0 ) ), countFaces( top ) );
+				assertEquals( "Unexpected number of bottom faces at x=" + cut, rows * ( (int)( cut / 10.0 ) + 1 ), countFaces( bottom ) );
+				assertSide( "top at x=" + cut, top, cut, 1.0 );
+				assertSide( "bottom at x=" + cut, bottom, cut, -1.0 );
+			}
+
+			/*
+			 * Add a row of faces at the top; this must invalidate the index.
+			 */
+			final int base = vertices.size();
+			for ( int x = 0; x <= segments; x++ )
+			{
+				vertices.add( new Vector3D( (double)( x * 10 ), (double)( segments * 10 + 10 ), 0.0 ) );
+			}
+			builder.setVertexCoordinates( vertices );
+			for ( int x = 0; x < segments; x++ )
+			{
+				final int j = base - segments - 1 + x;
+				builder.addFace( new int[] { j, j + 1, base + x + 1, base + x }, null, null, false, false, false );
+			}
+		}
+	}
+
+	/**
+	 * Test that the index of the slicer is rebuilt when vertices of the sliced
+	 * object are moved without changing the number of vertices or faces.
+	 */
+	public void testMovedVertices()
+	{
+		final int segments = 40;
+		final Object3D object = new Object3D();
+		final Object3DBuilder builder = object.getBuilder();
+		final List<Vector3D> vertices = new ArrayList<Vector3D>();
+		for ( int y = 0; y <= segments; y++ )
+		{
+			for ( int x = 0; x <= segments; x++ )
+			{
+				vertices.add( new Vector3D( (double)( x * 10 ), (double)( y * 10 ), 0.0 ) );
+			}
+		}
+		builder.setVertexCoordinates( vertices );
+
+		for ( int y = 0; y < segments; y++ )
+		{
+			for ( int x = 0; x < segments; x++ )
+			{
+				final int i = y * ( segments + 1 ) + x;
+				builder.addFace( new int[] { i, i + 1, i + segments + 2, i + segments + 1 }, null, null, false, false, false );
+			}
+		}
+
+		final Object3DSlicer slicer = new Object3DSlicer();
+		slicer.setTopEnabled( true );
+		slicer.setBottomEnabled( true );
+
+		slicer.slice( object, new BasicPlane3D( Vector3D.POSITIVE_X_AXIS, 105.0, true ) );
+		assertEquals( "Unexpected number of top faces", 30 * segments, countFaces( slicer.getTopObject() ) );
+		assertEquals( "Unexpected number of bottom faces", 11 * segments, countFaces( slicer.getBottomObject() ) );
+
+		final List<Vector3D> moved = new ArrayList<Vector3D>( vertices.size() );
+		for ( final Vector3D vertex : vertices )
+		{
+			moved.add( vertex.plus( 300.0, 0.0, 0.0 ) );
+		}
+		builder.setVertexCoordinates( moved );
+
+		slicer.slice( object, new BasicPlane3D( Vector3D.POSITIVE_X_AXIS, 405.0, true ) );
+		final Object3D top = slicer.getTopObject();
+		final Object3D bottom = slicer.getBottomObject();
+		assertNotNull( "Expected top object", top );
+		assertNotNull( "Expected bottom object", bottom );
+		assertEquals( "Unexpected number of top faces", 30 * segments, countFaces( top ) );
+		assertEquals( "Unexpected number of bottom faces", 11 * segments, countFaces( bottom ) );
+	}
+
+	/**
+	 * Returns the total number of faces in the given object.
+	 *
+	 * @param object Object to count faces of.
+	 *
+	 * @return Number of faces.
+	 */
+	private static int countFaces( final Object3D object )
+	{
+		int result = 0;
+		for ( final FaceGroup faceGroup : object.getFaceGroups() )
+		{
+			result += faceGroup.getFaces().size();
+		}
+		return result;
+	}
+
+	/**
+	 * Asserts that all face vertices of the given object are on one side of
+	 * the plane X = {@code cut}.
+	 *
+	 * @param message Message for failed assertion.
+	 * @param object  Object to test.
+	 * @param cut     X coordinate of cutting plane.
+	 * @param side    Sign of the expected side of the plane.
+	 */
+	private static void assertSide( final String message, final Object3D object, final double cut, final double side )
+	{
+		for ( final FaceGroup faceGroup : object.getFaceGroups() )
+		{
+			for ( final Face3D face : faceGroup.getFaces() )
+			{
+				for ( int i = 0; i < face.getVertexCount(); i++ )
+				{
+					assertTrue( message + ": vertex on wrong side", side * ( face.getVertex( i ).point.x - cut ) >= -1.0e-9 );
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,72 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.geom;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link Tessellation}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestTessellation
+{
+	/**
+	 * Tests {@link Tessellation#getBoundaryEdges()}.
+	 */
+	@Test
+	public void testGetBoundaryEdges()
+	{
+		final Tessellation quad = new Tessellation( Collections.<int[]>emptyList(), Tessellation.QUAD_PRIMITIVES );
+		final int[] quadEdges = quad.getBoundaryEdges();
+		assertEquals( "Unexpected quad edges", new HashSet<String>( Arrays.asList( "0-1", "1-2", "2-3", "0-3" ) ), getEdgeSet( quadEdges ) );
+		assertSame( "Boundary edges should be cached", quadEdges, quad.getBoundaryEdges() );
+
+		/* Fan around vertex 0; edges from vertex 0 to 2 and 3 are shared. */
+		final Tessellation fan = new Tessellation( Collections.<int[]>emptyList(), Collections.<TessellationPrimitive>singletonList( new TriangleFan( new int[] { 0, 1, 2, 3, 4 } ) ) );
+		assertEquals( "Unexpected fan edges", new HashSet<String>( Arrays.asList( "0-1", "1-2", "2-3", "3-4", "0-4" ) ), getEdgeSet( fan.getBoundaryEdges() ) );
+
+		final int[] triangleEdges = Tessellation.TRIANGLE.getBoundaryEdges();
+		assertEquals( "Unexpected triangle edge count", 6, triangleEdges.length );
+		for ( int i = 0; i < triangleEdges.length; i += 2 )
+		{
+			assertEquals( "Edge should follow triangle winding", Tessellation.TRIANGLE_PRIMITIVES.get( 0 ).getTriangles()[ ( i / 2 + 1 ) % 3 ], triangleEdges[ i + 1 ] );
+		}
+	}
+
+	/**
+	 * Returns the given edges as a set of undirected edges.
+	 *
+	 * @param edges Pairs of vertex indices.
+	 *
+	 * @return Set of edges, formatted as "lower-upper".
+	 */
+	private static Set<String> getEdgeSet( final int[] edges )
+	{
+		final Set<String> result = new HashSet<String>();
+		for ( int i = 0; i < edges.length; i += 2 )
+		{
+			assertTrue( "Duplicate edge", result.add( Math.min( edges[ i ], edges[ i + 1 ] ) + "-" + Math.max( edges[ i ], edges[ i + 1 ] ) ) );
+		}
+		return result;
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.loader;
+
+import java.io.*;
+import java.nio.*;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+/**
+ * Unit test for {@link DiskCache}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestDiskCache
+{
+	@Rule
+	public TemporaryFolder _folder = new TemporaryFolder();
+
+	@Test
+	public void testPutGet()
+	throws IOException
+	{
+		final DiskCache cache = new DiskCache( _folder.getRoot(), 1000L );
+		final String key = new DiskCache.Key( "test" ).update( "a" ).getValue();
+		assertNull( "Unexpected entry.", cache.get( key ) );
+
+		cache.put( key, ByteBuffer.wrap( new byte[] { 1, 2, 3 } ) );
+		final ByteBuffer data = cache.get( key );
+		assertNotNull( "Missing entry.", data );
+		assertEquals( "Unexpected size.", 3, data.remaining() );
+		assertEquals( "Unexpected content.", 2, data.get( 1 ) );
+		assertEquals( "Unexpected cache size.", 3L, cache.getSize() );
+
+		final DiskCache reopened = new DiskCache( _folder.getRoot(), 1000L );
+		assertTrue( "Entry should persist.", reopened.contains( key ) );
+		assertEquals( "Unexpected cache size.", 3L, reopened.getSize() );
+	}
+
+	@Test
+	public void testKey()
+	{
+		assertEquals( "Keys should be deterministic.", new DiskCache.Key( "test" ).update( 1.0 ).getValue(), new DiskCache.Key( "test" ).update( 1.0 ).getValue() );
+		assertNotEquals( "Keys should depend on content.", new DiskCache.Key( "test" ).update( 1.0 ).getValue(), new DiskCache.Key( "test" ).update( 2.0 ).getValue() );
+		assertNotEquals( "Keys should depend on type.", new DiskCache.Key( "test" ).update( 1 ).getValue(), new DiskCache.Key( "other" ).update( 1 ).getValue() );
+
+		final DiskCache.Key key = new DiskCache.Key( "test" ).update( "a" );
+		final String value = key.getValue();
+		assertEquals( "Key should not change when requested again.", value, key.getValue() );
+		assertEquals( "Unexpected string representation.", value, key.toString() );
+		assertEquals( "Key should not change when converted to a string.", value, key.getValue() );
+		try
+		{
+			key.update( "b" );
+			fail( "Completed key should not accept more content." );
+		}
+		catch ( final IllegalStateException e )
+		{
+			// expected
+		}
+	}
+
+	@Test
+	public void testLeastRecentlyUsed()
+	throws IOException
+	{
+		final DiskCache cache = new DiskCache( _folder.getRoot(), 250L );
+		cache.put( "entry1", ByteBuffer.allocate( 100 ) );
+		cache.put( "entry2", ByteBuffer.allocate( 100 ) );
+		assertNotNull( "Missing entry.", cache.get( "entry1" ) );
+
+		cache.put( "entry3", ByteBuffer.allocate( 100 ) );
+		assertTrue( "Recently used entry should be kept.", cache.contains( "entry1" ) );
+		assertFalse( "Least recently used entry should be removed.", cache.contains( "entry2" ) );
+		assertTrue( "New entry should be added.", cache.contains( "entry3" ) );
+		assertEquals( "Unexpected cache size.", 200L, cache.getSize() );
+		assertFalse( "Entry file should be deleted.", new File( _folder.getRoot(), "entry2.bin" ).exists() );
+
+		cache.put( "huge", ByteBuffer.allocate( 300 ) );
+		assertFalse( "Entries exceeding the cache size should be ignored.", cache.contains( "huge" ) );
+	}
+}
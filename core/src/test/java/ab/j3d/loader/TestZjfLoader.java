@@ -0,0 +1,138 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.loader;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+
+import ab.j3d.*;
+import ab.j3d.model.*;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link ZjfLoader}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestZjfLoader
+{
+	/**
+	 * Number values written to the test file.
+	 */
+	private static final String[] NUMBERS = { "0", "-0", "1", "-1", "0.5", "-12.25", "1e3", "2.5E-4", "123456789012.345678", "0.1", "0.3", "3.141592653589793", "1.7976931348623157E308", "4.9e-324", "-.75", "10." };
+
+	/**
+	 * Tests that numbers are parsed exactly like {@link Double#parseDouble}.
+	 *
+	 * @throws IOException if the test fails.
+	 */
+	@Test
+	public void testNumbers()
+	throws IOException
+	{
+		final Random random = new Random( 1L );
+		final List<String> numbers = new ArrayList<String>( Arrays.asList( NUMBERS ) );
+		for ( int i = 0; i < 3000; i++ )
+		{
+			final double value = ( random.nextDouble() - 0.5 ) * Math.pow( 10.0, (double)( random.nextInt( 40 ) - 20 ) );
+			numbers.add( ( i % 3 == 0 ) ? String.valueOf( value ) : ( i % 3 == 1 ) ? String.format( Locale.US, "%.6f", value ) : String.valueOf( (float)value ) );
+		}
+		while ( numbers.size() % 3 != 0 )
+		{
+			numbers.add( "0" );
+		}
+
+		final StringBuilder pointList = new StringBuilder();
+		for ( final String number : numbers )
+		{
+			pointList.append( number ).append( ' ' );
+		}
+
+		final String zjf = "P{ N{\"points\"} C{255 0 0} PL{ " + pointList + "} FL3{ 0 1 2 } }\n" +
+		                   "S{ N{\"assembly\"} M{ 0 1 0 0 0 1 0 0 0 1 0 0 0 } }\n";
+
+		final Node3D root = ZjfLoader.load( new ByteArrayInputStream( zjf.getBytes( StandardCharsets.US_ASCII ) ) );
+		final Object3D object = (Object3D)root.getChild( 0 ).getChild( 0 );
+		final List<Vector3D> vertices = object.getVertexCoordinates();
+		assertEquals( "Unexpected vertex count.", numbers.size() / 3, vertices.size() );
+
+		for ( int i = 0; i < vertices.size(); i++ )
+		{
+			final Vector3D vertex = vertices.get( i );
+			assertEquals( "Bad value: " + numbers.get( i * 3 ), Double.doubleToLongBits( Double.parseDouble( numbers.get( i * 3 ) ) ), Double.doubleToLongBits( vertex.x ) );
+			assertEquals( "Bad value: " + numbers.get( i * 3 + 1 ), Double.doubleToLongBits( Double.parseDouble( numbers.get( i * 3 + 1 ) ) ), Double.doubleToLongBits( vertex.y ) );
+			assertEquals( "Bad value: " + numbers.get( i * 3 + 2 ), Double.doubleToLongBits( Double.parseDouble( numbers.get( i * 3 + 2 ) ) ), Double.doubleToLongBits( vertex.z ) );
+		}
+	}
+
+	/**
+	 * Tests that parts are converted once and shared by all uses.
+	 *
+	 * @throws IOException if the test fails.
+	 */
+	@Test
+	public void testInstancing()
+	throws IOException
+	{
+		final StringBuilder zjf = new StringBuilder();
+		zjf.append( "// Test assembly\n" );
+		for ( int part = 0; part < 3; part++ )
+		{
+			zjf.append( "P{\n" );
+			zjf.append( " N{\"part" ).append( part ).append( "\"}\n" );
+			zjf.append( " MID{\"mid" ).append( part ).append( "\"}\n" );
+			zjf.append( " C{0 128 255}\n" );
+			zjf.append( " PL{0 0 0 1 0 0 1 1 0 0 1 0} // quad\n" );
+			zjf.append( " FL3{0 1 2 0 2 3}\n" );
+			zjf.append( " NL{0 0 1}\n" );
+			zjf.append( " NL3{0 0 0 0 0 0}\n" );
+			zjf.append( "}\n" );
+		}
+
+		zjf.append( "S{\n N{\"fasteners\"}\n" );
+		for ( int i = 0; i < 100; i++ )
+		{
+			zjf.append( " M{" ).append( i % 2 ).append( " 1 0 0 0 1 0 0 0 1 " ).append( i * 10 ).append( " 0 -5.5}\n" );
+		}
+		zjf.append( "}\n" );
+
+		final ZjfLoader.Assembly assembly = ZjfLoader.parse( new StringReader( zjf.toString() ) );
+		assertNotNull( "Parse failed.", assembly );
+		assertEquals( "Unexpected number of part definitions.", 3, assembly.getPartDefinitions().size() );
+		assertEquals( "Unexpected part name.", "part1", assembly.getPartDefinitions().get( 1 ).getName() );
+		assertEquals( "Unexpected number of uses.", 100, assembly.getPartList().size() );
+		assertEquals( "Unexpected matrix.", new Vector3D( 990.0, 0.0, -5.5 ), assembly.getMatrixList().get( 99 ).getTranslation() );
+
+		final Node3D root = ZjfLoader.convertAssemblyToNode3D( assembly );
+		assertEquals( "Unexpected number of instances.", 100, root.getChildCount() );
+
+		final Set<Node3D> objects = Collections.newSetFromMap( new IdentityHashMap<Node3D, Boolean>() );
+		for ( final Node3D child : root.getChildren() )
+		{
+			final Transform3D transform = (Transform3D)child;
+			final Object3D object = (Object3D)transform.getChild( 0 );
+			assertEquals( "Unexpected face group count.", 1, object.getFaceGroups().size() );
+			assertEquals( "Unexpected face count.", 2, object.getFaceGroups().get( 0 ).getFaces().size() );
+			objects.add( object );
+		}
+		assertEquals( "Each used part should be converted once.", 2, objects.size() );
+	}
+}
@@ -0,0 +1,272 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.loader.max3ds;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+import ab.j3d.model.*;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link Max3DSFile}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestMax3DSFile
+{
+	/**
+	 * Number of meshes in the test file.
+	 */
+	private static final int MESH_COUNT = 10;
+
+	/**
+	 * Tests reading a file from a stream.
+	 *
+	 * @throws IOException if the test fails.
+	 */
+	@Test
+	public void testReadStream()
+	throws IOException
+	{
+		final Max3DSFile file = new Max3DSFile( new ByteArrayInputStream( createFile( true ) ) );
+		assertFile( file );
+	}
+
+	/**
+	 * Tests reading a memory-mapped file.
+	 *
+	 * @throws IOException if the test fails.
+	 */
+	@Test
+	public void testLoad()
+	throws IOException
+	{
+		final File tempFile = File.createTempFile( "test", ".3ds" );
+		try
+		{
+			final FileOutputStream out = new FileOutputStream( tempFile );
+			try
+			{
+				out.write( createFile( true ) );
+			}
+			finally
+			{
+				out.close();
+			}
+
+			assertFile( Max3DSFile.load( tempFile ) );
+		}
+		finally
+		{
+			//noinspection ResultOfMethodCallIgnored
+			tempFile.delete();
+		}
+	}
+
+	/**
+	 * Tests that keyframes are skipped, but may be decoded on demand.
+	 *
+	 * @throws IOException if the test fails.
+	 */
+	@Test
+	public void testKeyframes()
+	throws IOException
+	{
+		final Max3DSFile file = new Max3DSFile( ByteBuffer.wrap( createFile( true ) ) );
+		final KeyFramesChunk keyframes = file.getKeyframes();
+		assertNotNull( "Expected keyframes.", keyframes );
+		assertEquals( "Unexpected animation begin.", 5, keyframes._begin );
+		assertEquals( "Unexpected animation end.", 42, keyframes._end );
+		assertSame( "Keyframes should only be decoded once.", keyframes, file.getKeyframes() );
+
+		assertNull( "Expected no keyframes.", new Max3DSFile( ByteBuffer.wrap( createFile( false ) ) ).getKeyframes() );
+	}
+
+	/**
+	 * Tests that truncated files are rejected.
+	 */
+	@Test
+	public void testTruncated()
+	{
+		final byte[] bytes = createFile( false );
+		try
+		{
+			new Max3DSFile( ByteBuffer.wrap( Arrays.copyOf( bytes, bytes.length - 10 ) ) );
+			fail( "Expected exception." );
+		}
+		catch ( final IOException ignored )
+		{
+		}
+	}
+
+	/**
+	 * Checks the contents of the test file.
+	 *
+	 * @param file File to check.
+	 */
+	private static void assertFile( final Max3DSFile file )
+	{
+		final Map<String, TriangleMeshChunk> meshes = file._editableObject._meshes;
+		assertEquals( "Unexpected number of meshes.", MESH_COUNT, meshes.size() );
+
+		final TriangleMeshChunk mesh = meshes.get( "mesh3" );
+		assertNotNull( "Missing mesh.", mesh );
+		assertEquals( "Unexpected vertex count.", 4, mesh._vertices.size() );
+		assertEquals( "Unexpected vertex.", 3.0, mesh._vertices.get( 1 ).x, 0.0 );
+		assertEquals( "Unexpected face count.", 2, mesh._faces._numberOfFaces );
+		assertArrayEquals( "Unexpected face.", new int[] { 0, 2, 3 }, mesh._faces._faces[ 1 ] );
+		assertArrayEquals( "Unexpected smoothing groups.", new int[] { 1, 1 }, mesh._faces._smoothingGroups );
+		assertEquals( "Unexpected texture coordinate.", 1.0f, mesh._textureCoordinates[ 2 ].getY(), 0.0f );
+
+		final Scene scene = new Scene( Scene.MM );
+		file.addMeshesToScene( scene );
+		assertEquals( "Unexpected number of content nodes.", MESH_COUNT, scene.getContentNodes().size() );
+
+		final Object3D object = (Object3D)scene.getContentNode( "mesh3" ).getNode3D();
+		assertEquals( "Unexpected number of faces.", 2, object.getFaceGroups().get( 0 ).getFaces().size() );
+
+		final Node3D node = file.createSceneNode3D();
+		assertEquals( "Unexpected number of child nodes.", MESH_COUNT, node.getChildCount() );
+	}
+
+	/**
+	 * Creates a 3DS file with some simple meshes.
+	 *
+	 * @param keyframes Whether to include keyframes.
+	 *
+	 * @return File contents.
+	 */
+	private static byte[] createFile( final boolean keyframes )
+	{
+		final List<byte[]> editChunks = new ArrayList<byte[]>();
+		editChunks.add( chunk( Chunk.MASTER_SCALE, floats( 1.0f ) ) );
+		editChunks.add( chunk( Chunk.FOG_FLAG, floats( 1.0f, 0.0f, 100.0f, 1.0f ) ) );
+
+		for ( int i = 0; i < MESH_COUNT; i++ )
+		{
+			final byte[] vertices = chunk( Chunk.VERTEX_LIST, shorts( 4 ), floats( 0.0f, 0.0f, 0.0f, (float)i, 0.0f, 0.0f, (float)i, 1.0f, 0.0f, 0.0f, 1.0f, 0.0f ) );
+			final byte[] textureCoordinates = chunk( Chunk.TEXT_COORDS, shorts( 4 ), floats( 0.0f, 0.0f, 1.0f, 0.0f, 1.0f, 1.0f, 0.0f, 1.0f ) );
+			final byte[] faces = chunk( Chunk.FACES_ARRAY, shorts( 2, 0, 1, 2, 0, 0, 2, 3, 0 ), chunk( Chunk.SMOOTH_GROUP, ints( 1, 1 ) ), chunk( 0x7777, ints( 12345 ) ) );
+			final byte[] mesh = chunk( Chunk.OBJ_TRIMESH, vertices, textureCoordinates, faces );
+			editChunks.add( chunk( Chunk.NAMED_OBJECT, cString( "mesh" + i ), mesh ) );
+		}
+
+		final List<byte[]> mainChunks = new ArrayList<byte[]>();
+		mainChunks.add( chunk( Chunk.TDS_VERSION, ints( 3 ) ) );
+		mainChunks.add( chunk( Chunk.EDIT_3DS, editChunks.toArray( new byte[ editChunks.size() ][] ) ) );
+		if ( keyframes )
+		{
+			mainChunks.add( chunk( Chunk.KEYFRAMES, chunk( Chunk.KEY_SEGMENT, ints( 5, 42 ) ) ) );
+		}
+		return chunk( Chunk.MAIN_3DS, mainChunks.toArray( new byte[ mainChunks.size() ][] ) );
+	}
+
+	/**
+	 * Creates a chunk.
+	 *
+	 * @param type     Chunk type.
+	 * @param contents Chunk contents.
+	 *
+	 * @return Chunk data.
+	 */
+	private static byte[] chunk( final int type, final byte[]... contents )
+	{
+		int length = 6;
+		for ( final byte[] content : contents )
+		{
+			length += content.length;
+		}
+
+		final ByteBuffer buffer = ByteBuffer.allocate( length ).order( ByteOrder.LITTLE_ENDIAN );
+		buffer.putShort( (short)type );
+		buffer.putInt( length );
+		for ( final byte[] content : contents )
+		{
+			buffer.put( content );
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Encodes shorts.
+	 *
+	 * @param values Values to encode.
+	 *
+	 * @return Encoded values.
+	 */
+	private static byte[] shorts( final int... values )
+	{
+		final ByteBuffer buffer = ByteBuffer.allocate( values.length * 2 ).order( ByteOrder.LITTLE_ENDIAN );
+		for ( final int value : values )
+		{
+			buffer.putShort( (short)value );
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Encodes integers.
+	 *
+	 * @param values Values to encode.
+	 *
+	 * @return Encoded values.
+	 */
+	private static byte[] ints( final int... values )
+	{
+		final ByteBuffer buffer = ByteBuffer.allocate( values.length * 4 ).order( ByteOrder.LITTLE_ENDIAN );
+		for ( final int value : values )
+		{
+			buffer.putInt( value );
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Encodes floats.
+	 *
+	 * @param values Values to encode.
+	 *
+	 * @return Encoded values.
+	 */
+	private static byte[] floats( final float... values )
+	{
+		final ByteBuffer buffer = ByteBuffer.allocate( values.length * 4 ).order( ByteOrder.LITTLE_ENDIAN );
+		for ( final float value : values )
+		{
+			buffer.putFloat( value );
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Encodes a 0-terminated string.
+	 *
+	 * @param value Value to encode.
+	 *
+	 * @return Encoded value.
+	 */
+	private static byte[] cString( final String value )
+	{
+		final byte[] bytes = value.getBytes();
+		return Arrays.copyOf( bytes, bytes.length + 1 );
+	}
+}
@@ -141,4 +141,126 @@ extends TestCase
 		tag1 = intersection.getObjectID();
 		assertEquals( "The wrong object was intersected", "Plane", tag1 );
 	}
+
+	/**
+	 * Test the {@link Object3D#smooth} method with a tube that is large
+	 * enough to be smoothed in parallel, comparing it to a short tube that is
+	 * smoothed sequentially.
+	 */
+	public void testSmooth()
+	{
+		System.out.println( CLASS_NAME + ".testSmooth" );
+
+		final int sides = 128;
+		final Object3D longTube = createTube( sides, 160 );
+		final Object3D shortTube = createTube( sides, 4 );
+		longTube.smooth( 30.0, 30.0, false );
+		shortTube.smooth( 30.0, 30.0, false );
+
+		final List<Face3D> longFaces = longTube.getFaceGroups().get( 0 ).getFaces();
+		final List<Face3D> shortFaces = shortTube.getFaceGroups().get( 0 ).getFaces();
+		assertEquals( "Unexpected face count", 160 * sides, longFaces.size() );
+
+		for ( int i = sides; i < 3 * sides; i++ )
+		{
+			final Face3D longFace = longFaces.get( i );
+			final Face3D shortFace = shortFaces.get( i );
+			assertTrue( "Interior edges should be removed", longFace.getOutlines().isEmpty() );
+			assertTrue( "Interior edges should be removed", shortFace.getOutlines().isEmpty() );
+
+			for ( int j = 0; j < 4; j++ )
+			{
+				final Vertex3D vertex = longFace.getVertex( j );
+				final Vector3D normal = vertex.getNormal();
+				assertEquals( "Normal should be the same as for sequential smoothing", shortFace.getVertex( j ).getNormal(), normal );
+				assertTrue( "Normal should be radial", normal.almostEquals( Vector3D.normalize( vertex.point.x, vertex.point.y, 0.0 ) ) );
+			}
+		}
+
+		final Object3D flatTube = createTube( sides, 160 );
+		flatTube.smooth( 1.0, 0.0, false );
+		for ( final Face3D face : flatTube.getFaceGroups().get( 0 ).getFaces() )
+		{
+			assertEquals( "Edges should not be removed", 1, face.getOutlines().size() );
+			for ( final Vertex3D vertex : face.getVertices() )
+			{
+				assertTrue( "Normal should match face normal", face.getNormal().almostEquals( vertex.getNormal() ) );
+			}
+		}
+	}
+
+	/**
+	 * Test the {@link Object3D#smooth} method with a duplicate face. The
+	 * expected normals were produced by the original implementation, which
+	 * treats faces that are {@link Face3D#equals equal} as the same face.
+	 */
+	public void testSmoothDuplicateFace()
+	{
+		System.out.println( CLASS_NAME + ".testSmoothDuplicateFace" );
+
+		final Object3D tube = createTube( 8, 2 );
+		tube.getBuilder().addFace( new int[] { 1, 9, 10, 2 }, BasicAppearances.ALUMINIUM, null, false, false, false );
+		tube.smooth( 60.0, 0.0, false );
+
+		final List<Face3D> faces = tube.getFaceGroups().get( 0 ).getFaces();
+		assertEquals( "Unexpected face count", 17, faces.size() );
+
+		final int[] faceIndices = { 0, 1, 2, 9, 16 };
+		final double[][] expectedNormals =
+		{
+			{ 1.0, -8.038873388460928E-17, 0.0, 1.0, -8.038873388460928E-17, 0.0, 0.6463141300923915, 0.763071454873602, 0.0, 0.7071067811865475, 0.7071067811865475, 0.0 },
+			{ 0.7071067811865475, 0.7071067811865475, 0.0, 0.6463141300923915, 0.763071454873602, 0.0, 0.08255989610599418, 0.9965861044360228, 0.0, 0.13677363967315975, 0.9906023276222184, 0.0 },
+			{ 0.13677363967315975, 0.9906023276222184, 0.0, 0.08255989610599418, 0.9965861044360228, 0.0, -0.7071067811865475, 0.7071067811865476, 0.0, -0.7071067811865476, 0.7071067811865476, 0.0 },
+			{ 0.6463141300923915, 0.763071454873602, 0.0, 0.7071067811865475, 0.7071067811865475, 0.0, 8.038873388460928E-17, 1.0, 0.0, 0.08255989610599418, 0.9965861044360228, 0.0 },
+			{ 0.38268343236508984, 0.9238795325112867, 0.0, 0.6463141300923915, 0.763071454873602, 0.0, 0.08255989610599418, 0.9965861044360228, 0.0, 0.13677363967315975, 0.9906023276222184, 0.0 },
+		};
+
+		for ( int i = 0; i < faceIndices.length; i++ )
+		{
+			final Face3D face = faces.get( faceIndices[ i ] );
+			for ( int j = 0; j < face.getVertexCount(); j++ )
+			{
+				final Vector3D normal = face.getVertex( j ).getNormal();
+				final String message = "Unexpected normal of vertex " + j + " of face " + faceIndices[ i ];
+				assertEquals( message, expectedNormals[ i ][ j * 3 ], normal.x, 1.0e-12 );
+				assertEquals( message, expectedNormals[ i ][ j * 3 + 1 ], normal.y, 1.0e-12 );
+				assertEquals( message, expectedNormals[ i ][ j * 3 + 2 ], normal.z, 1.0e-12 );
+			}
+		}
+	}
+
+	/**
+	 * Creates an open tube around the Z-axis, consisting of quads.
+	 *
+	 * @param sides  Number of sides around the circumference.
+	 * @param length Number of quads along the length of the tube.
+	 *
+	 * @return Tube.
+	 */
+	private static Object3D createTube( final int sides, final int length )
+	{
+		final List<Vector3D> vertices = new ArrayList<Vector3D>( sides * ( length + 1 ) );
+		for ( int z = 0; z <= length; z++ )
+		{
+			for ( int i = 0; i < sides; i++ )
+			{
+				final double angle = 2.0 * Math.PI * (double)i / (double)sides;
+				vertices.add( new Vector3D( 100.0 * Math.cos( angle ), 100.0 * Math.sin( angle ), 10.0 * (double)z ) );
+			}
+		}
+
+		final Object3D result = new Object3D();
+		final Object3DBuilder builder = result.getBuilder();
+		builder.setVertexCoordinates( vertices );
+		for ( int z = 0; z < length; z++ )
+		{
+			for ( int i = 0; i < sides; i++ )
+			{
+				final int index1 = z * sides + i;
+				final int index2 = z * sides + ( i + 1 ) % sides;
+				builder.addFace( new int[] { index1, index1 + sides, index2 + sides, index2 }, BasicAppearances.ALUMINIUM, null, false, false, false );
+			}
+		}
+		return result;
+	}
 }
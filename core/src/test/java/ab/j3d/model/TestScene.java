@@ -0,0 +1,308 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.model;
+
+import java.util.*;
+
+import ab.j3d.*;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link Scene}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestScene
+{
+	/**
+	 * Tests that changes made during a transaction result in a single event.
+	 */
+	@Test
+	public void testTransaction()
+	{
+		final Scene scene = new Scene( Scene.MM );
+		final ContentNode existing = scene.addContentNode( "existing", Matrix3D.IDENTITY, new Box3D( 100.0, 100.0, 100.0, null, null ) );
+		final ContentNode removed = scene.addContentNode( "removed", Matrix3D.IDENTITY, new Box3D( 100.0, 100.0, 100.0, null, null ) );
+
+		final RecordingListener listener = new RecordingListener();
+		scene.addSceneUpdateListener( listener );
+
+		scene.beginTransaction();
+		assertTrue( "Transaction should be open.", scene.isInTransaction() );
+		final List<ContentNode> added = new ArrayList<ContentNode>();
+		for ( int i = 0; i < 1000; i++ )
+		{
+			final ContentNode node = scene.addContentNode( "node-" + i, Matrix3D.getTranslation( (double)i * 200.0, 0.0, 0.0 ), new Box3D( 100.0, 100.0, 100.0, null, null ) );
+			node.setTransform( Matrix3D.getTranslation( (double)i * 200.0, 10.0, 0.0 ) );
+			added.add( node );
+		}
+		existing.setTransform( Matrix3D.getTranslation( 0.0, 0.0, 50.0 ) );
+		existing.setTransform( Matrix3D.getTranslation( 0.0, 0.0, 100.0 ) );
+		scene.removeContentNode( "removed" );
+		final ContentNode temporary = scene.addContentNode( "temporary", Matrix3D.IDENTITY, new Box3D( 100.0, 100.0, 100.0, null, null ) );
+		scene.removeContentNode( "temporary" );
+
+		assertTrue( "No events should be sent during transaction.", listener._events.isEmpty() );
+		scene.commitTransaction();
+		assertFalse( "Transaction should be closed.", scene.isInTransaction() );
+
+		assertEquals( "Unexpected number of events.", 1, listener._events.size() );
+		final SceneUpdateEvent event = listener._events.get( 0 );
+		assertEquals( "Unexpected event ID.", SceneUpdateEvent.CONTENT_NODES_CHANGED, event.getId() );
+
+		final SceneChangeSet changeSet = event.getChangeSet();
+		assertEquals( "Unexpected added nodes.", added, new ArrayList<ContentNode>( changeSet.getAddedNodes() ) );
+		assertEquals( "Unexpected removed nodes.", Collections.singletonList( removed ), new ArrayList<ContentNode>( changeSet.getRemovedNodes() ) );
+		assertEquals( "Unexpected property changes.", Collections.singletonList( existing ), new ArrayList<ContentNode>( changeSet.getPropertyChangedNodes() ) );
+		assertTrue( "Unexpected content updates.", changeSet.getContentUpdatedNodes().isEmpty() );
+		assertFalse( "Temporary node should not be included.", changeSet.getAddedNodes().contains( temporary ) );
+	}
+
+	/**
+	 * Tests nested transactions and the default listener implementation.
+	 */
+	@Test
+	public void testNestedTransaction()
+	{
+		final Scene scene = new Scene( Scene.MM );
+		final ContentNode node = scene.addContentNode( "node", Matrix3D.IDENTITY, new Box3D( 100.0, 100.0, 100.0, null, null ) );
+
+		final RecordingListener listener = new RecordingListener();
+		listener._replay = true;
+		scene.addSceneUpdateListener( listener );
+
+		scene.beginTransaction();
+		scene.beginTransaction();
+		scene.removeContentNode( "node" );
+		scene.commitTransaction();
+		assertTrue( "No events should be sent before outer commit.", listener._events.isEmpty() );
+		scene.addContentNode( node );
+		scene.commitTransaction();
+
+		assertEquals( "Unexpected number of events.", 3, listener._events.size() );
+		assertEquals( "Unexpected event ID.", SceneUpdateEvent.CONTENT_NODES_CHANGED, listener._events.get( 0 ).getId() );
+		assertEquals( "Re-added node should be reported as updated.", SceneUpdateEvent.CONTENT_NODE_CONTENT_UPDATED, listener._events.get( 1 ).getId() );
+		assertEquals( "Re-added node should be reported as updated.", SceneUpdateEvent.CONTENT_NODE_PROPERTY_CHANGED, listener._events.get( 2 ).getId() );
+		assertSame( "Unexpected node.", node, listener._events.get( 2 ).getNode() );
+
+		listener._events.clear();
+		scene.beginTransaction();
+		scene.commitTransaction();
+		assertTrue( "Empty transaction should not send events.", listener._events.isEmpty() );
+
+		try
+		{
+			scene.commitTransaction();
+			fail( "Commit without transaction should fail." );
+		}
+		catch ( IllegalStateException e )
+		{
+			/* expected */
+		}
+	}
+
+	/**
+	 * Tests that the scene version is incremented once per transaction and
+	 * that the list of content nodes is cached until nodes are added or
+	 * removed.
+	 */
+	@Test
+	public void testCaching()
+	{
+		final Scene scene = new Scene( Scene.MM );
+		final ContentNode node = scene.addContentNode( "node", Matrix3D.IDENTITY, new Box3D( 100.0, 100.0, 100.0, null, null ) );
+
+		final List<ContentNode> contentNodes = scene.getContentNodes();
+		assertSame( "Content nodes should be cached.", contentNodes, scene.getContentNodes() );
+		try
+		{
+			contentNodes.clear();
+			fail( "Content nodes should be unmodifiable." );
+		}
+		catch ( UnsupportedOperationException e )
+		{
+			/* expected */
+		}
+
+		node.setTransform( Matrix3D.getTranslation( 100.0, 0.0, 0.0 ) );
+		assertSame( "Transform change should not affect content nodes.", contentNodes, scene.getContentNodes() );
+
+		final int version = scene.getVersion();
+		scene.beginTransaction();
+		for ( int i = 0; i < 10; i++ )
+		{
+			scene.addContentNode( "node" + i, Matrix3D.getTranslation( (double)i * 100.0, 0.0, 0.0 ), new Box3D( 50.0, 50.0, 50.0, null, null ) );
+			node.setTransform( Matrix3D.getTranslation( (double)i, 0.0, 0.0 ) );
+		}
+		assertEquals( "Unexpected content nodes during transaction.", 11, scene.getContentNodes().size() );
+		scene.commitTransaction();
+
+		assertEquals( "Version should be incremented once per transaction.", version + 1, scene.getVersion() );
+		assertEquals( "Unexpected content nodes after transaction.", 11, scene.getContentNodes().size() );
+		assertEquals( "Unexpected snapshot version.", scene.getVersion(), scene.getSnapshot().getVersion() );
+	}
+
+	/**
+	 * Tests that scene bounds are updated by changes made during a
+	 * transaction and that nodes are not added twice.
+	 */
+	@Test
+	public void testBounds()
+	{
+		final Scene scene = new Scene( Scene.MM );
+		final ContentNode node = scene.addContentNode( "node", Matrix3D.IDENTITY, new Box3D( 100.0, 100.0, 100.0, null, null ) );
+		assertEquals( "Unexpected bounds.", new Bounds3D( 0.0, 0.0, 0.0, 100.0, 100.0, 100.0 ), scene.getBounds() );
+
+		final RecordingListener listener = new RecordingListener();
+		scene.addSceneUpdateListener( listener );
+		scene.addContentNode( node );
+		assertTrue( "Adding the same node again should have no effect.", listener._events.isEmpty() );
+
+		scene.beginTransaction();
+		node.setTransform( Matrix3D.getTranslation( 100.0, 0.0, 0.0 ) );
+		assertEquals( "Unexpected bounds during transaction.", new Bounds3D( 100.0, 0.0, 0.0, 200.0, 100.0, 100.0 ), scene.getBounds() );
+		scene.addContentNode( "other", Matrix3D.IDENTITY, new Box3D( 50.0, 50.0, 50.0, null, null ) );
+		scene.commitTransaction();
+		assertEquals( "Unexpected bounds after transaction.", new Bounds3D( 0.0, 0.0, 0.0, 200.0, 100.0, 100.0 ), scene.getBounds() );
+	}
+
+	/**
+	 * Tests that snapshots are immutable and isolated from transactions on
+	 * other threads.
+	 *
+	 * @throws Exception if the test fails.
+	 */
+	@Test
+	public void testSnapshot()
+	throws Exception
+	{
+		final Scene scene = new Scene( Scene.MM );
+		final ContentNode node = scene.addContentNode( "node", Matrix3D.IDENTITY, new Box3D( 100.0, 100.0, 100.0, null, null ) );
+
+		final SceneSnapshot snapshot = scene.getSnapshot();
+		assertSame( "Snapshot should be cached.", snapshot, scene.getSnapshot() );
+		assertEquals( "Unexpected version.", scene.getVersion(), snapshot.getVersion() );
+		assertEquals( "Unexpected content nodes.", Collections.singletonList( node ), snapshot.getContentNodes() );
+
+		node.setTransform( Matrix3D.getTranslation( 100.0, 0.0, 0.0 ) );
+		assertEquals( "Snapshot transform should not change.", Matrix3D.IDENTITY, snapshot.getTransform( 0 ) );
+		assertEquals( "Snapshot bounds should not change.", new Bounds3D( 0.0, 0.0, 0.0, 100.0, 100.0, 100.0 ), snapshot.getBounds() );
+
+		final SceneSnapshot updated = scene.getSnapshot();
+		assertNotSame( "Snapshot should be replaced after change.", snapshot, updated );
+		assertTrue( "Version should increase.", updated.getVersion() > snapshot.getVersion() );
+
+		final SceneUpdate update = scene.createUpdate();
+		update.add( new NodeUpdate()
+		{
+			public void update( final Scene scene )
+			{
+				scene.addContentNode( "other", Matrix3D.IDENTITY, new Box3D( 50.0, 50.0, 50.0, null, null ) );
+
+				assertEquals( "Transaction thread should see changes.", 2, scene.getSnapshot().getContentNodes().size() );
+
+				final SceneSnapshot[] otherThreadSnapshot = new SceneSnapshot[ 1 ];
+				final Thread thread = new Thread( new Runnable()
+				{
+					public void run()
+					{
+						otherThreadSnapshot[ 0 ] = scene.getSnapshot();
+					}
+				} );
+				thread.start();
+				try
+				{
+					thread.join();
+				}
+				catch ( InterruptedException e )
+				{
+					throw new RuntimeException( e );
+				}
+				assertSame( "Other threads should see snapshot from before transaction.", updated, otherThreadSnapshot[ 0 ] );
+			}
+		} );
+
+		assertEquals( "Update was not run yet.", -1, update.getVersion() );
+		update.run();
+
+		final SceneSnapshot afterUpdate = scene.getSnapshot();
+		assertEquals( "Unexpected content nodes after update.", 2, afterUpdate.getContentNodes().size() );
+		assertEquals( "Unexpected update version.", afterUpdate.getVersion(), update.getVersion() );
+	}
+
+	/**
+	 * Records individual scene update events.
+	 */
+	private static class RecordingListener
+		implements SceneUpdateListener
+	{
+		/**
+		 * Recorded events.
+		 */
+		final List<SceneUpdateEvent> _events = new ArrayList<SceneUpdateEvent>();
+
+		/**
+		 * Whether to replay changes as individual events using the default
+		 * implementation of {@link #contentNodesChanged}.
+		 */
+		boolean _replay = false;
+
+		public void contentNodeAdded( final SceneUpdateEvent event )
+		{
+			_events.add( event );
+		}
+
+		public void contentNodeRemoved( final SceneUpdateEvent event )
+		{
+			_events.add( event );
+		}
+
+		public void contentNodeContentUpdated( final SceneUpdateEvent event )
+		{
+			_events.add( event );
+		}
+
+		public void contentNodePropertyChanged( final SceneUpdateEvent event )
+		{
+			_events.add( event );
+		}
+
+		public void contentNodesChanged( final SceneUpdateEvent event )
+		{
+			_events.add( event );
+			if ( _replay )
+			{
+				SceneUpdateListener.super.contentNodesChanged( event );
+			}
+		}
+
+		public void ambientLightChanged( final SceneUpdateEvent event )
+		{
+		}
+
+		public void animationStarted( final SceneUpdateEvent event )
+		{
+		}
+
+		public void animationStopped( final SceneUpdateEvent event )
+		{
+		}
+	}
+}
@@ -0,0 +1,352 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.model;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import ab.j3d.*;
+import ab.j3d.view.*;
+import org.jetbrains.annotations.*;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link SceneSpatialIndex}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestSceneSpatialIndex
+{
+	/**
+	 * Scene with randomly placed boxes.
+	 */
+	private Scene _scene;
+
+	/**
+	 * Random number generator.
+	 */
+	private Random _random;
+
+	/**
+	 * Creates a scene with randomly placed boxes.
+	 */
+	@Before
+	public void setUp()
+	{
+		final Random random = new Random( 1L );
+		final Scene scene = new Scene( Scene.MM );
+		for ( int i = 0; i < 1000; i++ )
+		{
+			scene.addContentNode( "box-" + i, Matrix3D.getTransform( 0.0, 0.0, random.nextDouble() * 360.0, random.nextDouble() * 10000.0, random.nextDouble() * 10000.0, random.nextDouble() * 1000.0 ), new Box3D( 100.0 + random.nextDouble() * 400.0, 100.0 + random.nextDouble() * 400.0, 100.0 + random.nextDouble() * 400.0, null, null ) );
+		}
+		scene.addContentNode( "empty", Matrix3D.IDENTITY, new Transform3D() );
+		_scene = scene;
+		_random = random;
+	}
+
+	/**
+	 * Tests box, sphere and frustum queries against brute-force results.
+	 */
+	@Test
+	public void testQueries()
+	{
+		final Scene scene = _scene;
+		final Random random = _random;
+		final SceneSpatialIndex index = scene.getSpatialIndex();
+		assertSame( "Index should be cached.", index, scene.getSpatialIndex() );
+		assertEquals( "Unexpected number of indexed nodes.", 1000, index.size() );
+		assertTrue( "Tree should be balanced, but height is " + index.getHeight(), index.getHeight() <= 20 );
+
+		for ( int i = 0; i < 20; i++ )
+		{
+			final double x = random.nextDouble() * 10000.0;
+			final double y = random.nextDouble() * 10000.0;
+			final Bounds3D bounds = new Bounds3D( x, y, 0.0, x + 1500.0, y + 1000.0, 500.0 );
+
+			final Set<ContentNode> expected = new HashSet<ContentNode>();
+			for ( final ContentNode node : scene.getContentNodes() )
+			{
+				final Bounds3D nodeBounds = getWorldBounds( node );
+				if ( ( nodeBounds != null ) && Bounds3D.intersects( bounds, nodeBounds ) )
+				{
+					expected.add( node );
+				}
+			}
+
+			final Set<ContentNode> actual = new HashSet<ContentNode>();
+			assertTrue( "Query should not be aborted.", index.queryBounds( bounds, new CollectingVisitor( actual ) ) );
+			assertEquals( "Unexpected result of bounds query.", expected, actual );
+		}
+
+		for ( int i = 0; i < 20; i++ )
+		{
+			final Vector3D center = new Vector3D( random.nextDouble() * 10000.0, random.nextDouble() * 10000.0, random.nextDouble() * 1000.0 );
+			final double radius = random.nextDouble() * 1000.0;
+
+			final Set<ContentNode> expected = new HashSet<ContentNode>();
+			for ( final ContentNode node : scene.getContentNodes() )
+			{
+				final Bounds3D nodeBounds = getWorldBounds( node );
+				if ( ( nodeBounds != null ) && ( getDistance( center, nodeBounds ) <= radius ) )
+				{
+					expected.add( node );
+				}
+			}
+
+			final Set<ContentNode> actual = new HashSet<ContentNode>();
+			index.querySphere( center, radius, new CollectingVisitor( actual ) );
+			assertEquals( "Unexpected result of sphere query.", expected, actual );
+		}
+
+		final Projector projector = Projector.createInstance( ProjectionPolicy.PERSPECTIVE, 800, 600, Scene.INCH / 96.0, Scene.MM, 100.0, 20000.0, Math.toRadians( 45.0 ), 1.0 );
+		for ( int i = 0; i < 10; i++ )
+		{
+			final Vector3D from = new Vector3D( random.nextDouble() * 10000.0, random.nextDouble() * 10000.0, 2000.0 );
+			final Vector3D to = new Vector3D( random.nextDouble() * 10000.0, random.nextDouble() * 10000.0, 0.0 );
+			final Matrix3D scene2view = Matrix3D.getFromToTransform( from, to, Vector3D.POSITIVE_Z_AXIS, Vector3D.POSITIVE_Y_AXIS );
+			final ViewingFrustum frustum = new ViewingFrustum( projector.getProjectionMatrix().multiply( scene2view ) );
+
+			final Set<ContentNode> expected = new HashSet<ContentNode>();
+			for ( final ContentNode node : scene.getContentNodes() )
+			{
+				final Bounds3D nodeBounds = getWorldBounds( node );
+				if ( ( nodeBounds != null ) && frustum.contains( Matrix3D.IDENTITY, nodeBounds ) )
+				{
+					expected.add( node );
+				}
+			}
+
+			final Set<ContentNode> actual = new HashSet<ContentNode>();
+			index.queryFrustum( frustum, new CollectingVisitor( actual ) );
+			assertEquals( "Unexpected result of frustum query.", expected, actual );
+		}
+	}
+
+	/**
+	 * Tests nearest neighbor queries against brute-force results.
+	 */
+	@Test
+	public void testNearest()
+	{
+		final Scene scene = _scene;
+		final Random random = _random;
+		final SceneSpatialIndex index = scene.getSpatialIndex();
+
+		for ( int i = 0; i < 20; i++ )
+		{
+			final Vector3D point = new Vector3D( random.nextDouble() * 12000.0 - 1000.0, random.nextDouble() * 12000.0 - 1000.0, random.nextDouble() * 3000.0 - 1000.0 );
+
+			final List<Double> expected = new ArrayList<Double>();
+			for ( final ContentNode node : scene.getContentNodes() )
+			{
+				final Bounds3D nodeBounds = getWorldBounds( node );
+				if ( nodeBounds != null )
+				{
+					expected.add( Double.valueOf( getDistance( point, nodeBounds ) ) );
+				}
+			}
+			Collections.sort( expected );
+
+			final List<ContentNode> nearest = index.getNearest( point, 5 );
+			assertEquals( "Unexpected number of nearest nodes.", 5, nearest.size() );
+			for ( int j = 0; j < nearest.size(); j++ )
+			{
+				assertEquals( "Unexpected distance of nearest node " + j, expected.get( j ), getDistance( point, getWorldBounds( nearest.get( j ) ) ), 1.0e-6 );
+			}
+		}
+
+		assertFalse( "Query should be aborted.", index.queryNearest( Vector3D.ZERO, Double.POSITIVE_INFINITY, new ContentNodeVisitor()
+		{
+			@Override
+			public boolean visitContentNode( @NotNull final ContentNode node )
+			{
+				return false;
+			}
+		} ) );
+	}
+
+	/**
+	 * Tests that the index is kept up to date when the scene changes.
+	 */
+	@Test
+	public void testUpdates()
+	{
+		final Scene scene = _scene;
+		final SceneSpatialIndex index = scene.getSpatialIndex();
+
+		final Bounds3D farAway = new Bounds3D( 100000.0, 100000.0, 0.0, 101000.0, 101000.0, 1000.0 );
+		final Set<ContentNode> found = new HashSet<ContentNode>();
+		index.queryBounds( farAway, new CollectingVisitor( found ) );
+		assertTrue( "Nothing should be far away.", found.isEmpty() );
+
+		final ContentNode moved = scene.getContentNode( "box-1" );
+		final ContentNode added;
+		scene.beginTransaction();
+		try
+		{
+			moved.setTransform( Matrix3D.getTranslation( 100200.0, 100200.0, 0.0 ) );
+			added = scene.addContentNode( "added", Matrix3D.getTranslation( 100500.0, 100500.0, 0.0 ), new Box3D( 100.0, 100.0, 100.0, null, null ) );
+			scene.removeContentNode( "box-2" );
+		}
+		finally
+		{
+			scene.commitTransaction();
+		}
+
+		index.queryBounds( farAway, new CollectingVisitor( found ) );
+		assertEquals( "Unexpected nodes after transaction.", new HashSet<ContentNode>( Arrays.asList( moved, added ) ), found );
+		assertEquals( "Unexpected number of indexed nodes.", 1000, index.size() );
+
+		scene.removeContentNode( "added" );
+		found.clear();
+		index.queryBounds( farAway, new CollectingVisitor( found ) );
+		assertEquals( "Unexpected nodes after removal.", Collections.singleton( moved ), found );
+
+		scene.removeAllContentNodes();
+		assertEquals( "Index should be empty.", 0, index.size() );
+		assertEquals( "Index should be empty.", -1, index.getHeight() );
+	}
+
+	/**
+	 * Tests that concurrent calls to {@link Scene#getSpatialIndex()} create
+	 * only a single index.
+	 *
+	 * @throws Exception if the test fails.
+	 */
+	@Test
+	public void testConcurrentCreation()
+		throws Exception
+	{
+		for ( int run = 0; run < 20; run++ )
+		{
+			final Scene scene = new Scene( Scene.MM );
+			for ( int i = 0; i < 50; i++ )
+			{
+				scene.addContentNode( "box-" + i, Matrix3D.getTranslation( (double)( i * 200 ), 0.0, 0.0 ), new Box3D( 100.0, 100.0, 100.0, null, null ) );
+			}
+
+			final int threadCount = 8;
+			final SceneSpatialIndex[] indices = new SceneSpatialIndex[ threadCount ];
+			final CountDownLatch start = new CountDownLatch( 1 );
+			final Thread[] threads = new Thread[ threadCount ];
+			for ( int i = 0; i < threadCount; i++ )
+			{
+				final int threadIndex = i;
+				threads[ i ] = new Thread()
+				{
+					@Override
+					public void run()
+					{
+						try
+						{
+							start.await();
+						}
+						catch ( final InterruptedException e )
+						{
+							return;
+						}
+						indices[ threadIndex ] = scene.getSpatialIndex();
+					}
+				};
+				threads[ i ].start();
+			}
+
+			start.countDown();
+			for ( final Thread thread : threads )
+			{
+				thread.join();
+			}
+
+			for ( final SceneSpatialIndex index : indices )
+			{
+				assertSame( "All threads should get the same index.", indices[ 0 ], index );
+			}
+
+			scene.removeContentNode( "box-0" );
+			assertEquals( "Index should be updated exactly once.", 49, indices[ 0 ].size() );
+		}
+	}
+
+	/**
+	 * Returns the world-space bounds of a content node.
+	 *
+	 * @param node Content node.
+	 *
+	 * @return World-space bounds; <code>null</code> if the node has no bounds.
+	 */
+	@Nullable
+	private static Bounds3D getWorldBounds( @NotNull final ContentNode node )
+	{
+		Bounds3D result = null;
+		final Bounds3D bounds = node.getBounds();
+		if ( bounds != null )
+		{
+			final Bounds3DBuilder builder = new Bounds3DBuilder();
+			builder.addBounds( node.getTransform(), bounds );
+			result = builder.getBounds();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the distance from a point to a box.
+	 *
+	 * @param point  Point.
+	 * @param bounds Box.
+	 *
+	 * @return Distance.
+	 */
+	private static double getDistance( @NotNull final Vector3D point, @NotNull final Bounds3D bounds )
+	{
+		final double dx = Math.max( 0.0, Math.max( bounds.v1.x - point.x, point.x - bounds.v2.x ) );
+		final double dy = Math.max( 0.0, Math.max( bounds.v1.y - point.y, point.y - bounds.v2.y ) );
+		final double dz = Math.max( 0.0, Math.max( bounds.v1.z - point.z, point.z - bounds.v2.z ) );
+		return Math.sqrt( dx * dx + dy * dy + dz * dz );
+	}
+
+	/**
+	 * Adds all visited nodes to a collection.
+	 */
+	private static class CollectingVisitor
+	implements ContentNodeVisitor
+	{
+		/**
+		 * Collected nodes.
+		 */
+		private final Collection<ContentNode> _nodes;
+
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param nodes Collection to add visited nodes to.
+		 */
+		CollectingVisitor( final Collection<ContentNode> nodes )
+		{
+			_nodes = nodes;
+		}
+
+		@Override
+		public boolean visitContentNode( @NotNull final ContentNode node )
+		{
+			assertTrue( "Node visited twice.", _nodes.add( node ) );
+			return true;
+		}
+	}
+}
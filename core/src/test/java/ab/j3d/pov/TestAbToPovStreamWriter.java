@@ -0,0 +1,104 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.pov;
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.*;
+
+import ab.j3d.*;
+import ab.j3d.model.*;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link AbToPovStreamWriter}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestAbToPovStreamWriter
+{
+	/**
+	 * Pattern that matches texture declarations.
+	 */
+	private static final Pattern TEXTURE_DECLARATION = Pattern.compile( "#declare (TEX_\\S+) =\n(?:\t.*\n)*\n" );
+
+	/**
+	 * Tests that the output matches that of {@link AbToPovConverter}, apart
+	 * from the location of texture declarations.
+	 *
+	 * @throws Exception if the test fails.
+	 */
+	@Test
+	public void testWrite()
+	throws Exception
+	{
+		final AbPovTestModel testModel = new AbPovTestModel();
+		final Scene scene = testModel.getScene();
+
+		/*
+		 * Add instances of previously declared geometry and a light.
+		 */
+		scene.addContentNode( "redbox2", Matrix3D.getTransform( 0.0, 0.0, 0.0, 100.0, 100.0, 100.0 ), testModel.getRedXRotatedBox3D() );
+		final ContentNode colorCube = scene.getContentNode( "colorcube" );
+		assertNotNull( "Missing color cube", colorCube );
+		scene.addContentNode( "colorcube2", Matrix3D.getTransform( 0.0, 0.0, 30.0, 0.0, 0.0, 500.0 ), colorCube.getNode3D() );
+		scene.addContentNode( "light", Matrix3D.getTranslation( 0.0, -500.0, 500.0 ), testModel.getLight3D() );
+
+		final StringWriter expectedWriter = new StringWriter();
+		new AbToPovConverter().convert( scene ).write( expectedWriter, null );
+		final String expected = expectedWriter.toString();
+
+		for ( int threadCount = 1; threadCount <= 3; threadCount++ )
+		{
+			final AbToPovStreamWriter streamWriter = new AbToPovStreamWriter();
+			streamWriter.setThreadCount( threadCount );
+
+			final StringWriter actualWriter = new StringWriter();
+			streamWriter.write( scene, actualWriter, null );
+			final String actual = actualWriter.toString();
+
+			/*
+			 * Each texture must be declared once, before its first use.
+			 */
+			final Set<String> declaredTextures = new HashSet<>();
+			final Matcher matcher = TEXTURE_DECLARATION.matcher( actual );
+			while ( matcher.find() )
+			{
+				final String code = matcher.group( 1 );
+				assertTrue( "Texture declared twice: " + code, declaredTextures.add( code ) );
+				assertFalse( "Texture used before declaration: " + code, actual.substring( 0, matcher.start() ).contains( "texture { " + code + " }" ) );
+			}
+
+			assertEquals( "Unexpected output with " + threadCount + " thread(s).", stripTextureDeclarations( expected ), stripTextureDeclarations( actual ) );
+		}
+	}
+
+	/**
+	 * Removes texture declarations from the given POV-Ray script.
+	 *
+	 * @param script POV-Ray script.
+	 *
+	 * @return Script without texture declarations.
+	 */
+	private static String stripTextureDeclarations( final String script )
+	{
+		return TEXTURE_DECLARATION.matcher( script.replace( "/*\n * Texture definitions\n */\n", "" ) ).replaceAll( "" );
+	}
+}
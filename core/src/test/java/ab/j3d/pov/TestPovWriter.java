@@ -0,0 +1,68 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.pov;
+
+import java.io.*;
+import java.text.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link PovWriter}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestPovWriter
+{
+	/**
+	 * Tests that {@link PovWriter#format} produces the same result as the
+	 * number format it replaces.
+	 */
+	@Test
+	public void testFormat()
+	{
+		final NumberFormat numberFormat = NumberFormat.getNumberInstance( Locale.US );
+		numberFormat.setMinimumFractionDigits( 1 );
+		numberFormat.setMaximumFractionDigits( 5 );
+		numberFormat.setGroupingUsed( false );
+
+		final PovWriter writer = new PovWriter( new StringWriter(), null, "\t" );
+
+		final double[] values = { 0.0, -0.0, 1.0, -1.0, 0.5, 0.015625, -0.015625, 1.000005, 0.000005, -0.000001, 0.1, 0.12345678, 123456789.123456, 1.0e20, -1.0e-20, Double.NaN, Double.MAX_VALUE, Double.MIN_VALUE };
+		for ( final double value : values )
+		{
+			assertEquals( "Unexpected result for " + value, numberFormat.format( value + 0.0 ), writer.format( value ) );
+		}
+
+		final Random random = new Random( 1234L );
+		for ( int i = 0; i < 100000; i++ )
+		{
+			final double value = ( random.nextDouble() - 0.5 ) * Math.pow( 10.0, (double)( random.nextInt( 16 ) - 6 ) );
+			assertEquals( "Unexpected result for " + value, numberFormat.format( value + 0.0 ), writer.format( value ) );
+
+			final double rounded = (double)Math.round( value * 100000.0 ) / 100000.0;
+			assertEquals( "Unexpected result for " + rounded, numberFormat.format( rounded + 0.0 ), writer.format( rounded ) );
+
+			final double tie = ( Math.floor( value * 100000.0 ) + 0.5 ) / 100000.0;
+			assertEquals( "Unexpected result for " + tie, numberFormat.format( tie + 0.0 ), writer.format( tie ) );
+		}
+	}
+}
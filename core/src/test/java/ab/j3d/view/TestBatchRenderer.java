@@ -0,0 +1,251 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.util.*;
+import java.util.List;
+import javax.imageio.*;
+
+import ab.j3d.*;
+import ab.j3d.appearance.*;
+import ab.j3d.awt.view.java2d.*;
+import ab.j3d.model.*;
+import org.jetbrains.annotations.*;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link BatchRenderer}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestBatchRenderer
+{
+	/**
+	 * View used for rendering.
+	 */
+	private Java2dView _view;
+
+	/**
+	 * Shots to render.
+	 */
+	private List<RenderShot> _shots;
+
+	/**
+	 * Set up scene, view and shots.
+	 */
+	@Before
+	public void setUp()
+	{
+		final Scene scene = new Scene( Scene.MM );
+		scene.addContentNode( "box", Matrix3D.IDENTITY, new Box3D( 100.0, 100.0, 100.0, null, BasicAppearances.RED ) );
+
+		_view = new Java2dEngine( Color.WHITE ).createOffscreenView( scene );
+		_view.setSize( 64, 48 );
+
+		final List<RenderShot> shots = new ArrayList<RenderShot>();
+		for ( int i = 0; i < 8; i++ )
+		{
+			final double angle = Math.toRadians( 45.0 * (double)i );
+			final Vector3D from = new Vector3D( 500.0 * Math.cos( angle ), 500.0 * Math.sin( angle ), 300.0 );
+			final Matrix3D scene2view = Matrix3D.getFromToTransform( from, new Vector3D( 50.0, 50.0, 50.0 ), Vector3D.POSITIVE_Z_AXIS, Vector3D.POSITIVE_Y_AXIS );
+			shots.add( new RenderShot( scene2view, 40 + i, 30 + i ) );
+		}
+		shots.add( new RenderShot( Matrix3D.getTranslation( 0.0, 0.0, -1000.0 ), 20, 20, ProjectionPolicy.PARALLEL, Double.NaN, 2.0 ) );
+		_shots = shots;
+	}
+
+	/**
+	 * Clean up.
+	 */
+	@After
+	public void tearDown()
+	{
+		_view.dispose();
+	}
+
+	/**
+	 * Tests {@link BatchRenderer#render}.
+	 *
+	 * @throws IOException if the test fails.
+	 */
+	@Test
+	public void testRender()
+	throws IOException
+	{
+		final Java2dView view = _view;
+		view.setScene2View( Matrix3D.getTranslation( 0.0, 0.0, -2000.0 ) );
+		final Matrix3D originalScene2View = view.getScene2View();
+		final ProjectionPolicy originalProjectionPolicy = view.getProjectionPolicy();
+
+		final List<RenderShot> shots = _shots;
+		final List<BufferedImage> images = new ArrayList<BufferedImage>();
+		new BatchRenderer( view ).render( shots, new RenderShotListener<BufferedImage>()
+		{
+			@Override
+			public void shotRendered( final int index, @NotNull final RenderShot shot, @NotNull final BufferedImage result )
+			{
+				assertEquals( "Unexpected index.", images.size(), index );
+				assertSame( "Unexpected shot.", shots.get( index ), shot );
+				images.add( result );
+			}
+		} );
+
+		assertEquals( "View transform should be restored.", originalScene2View, view.getScene2View() );
+		assertEquals( "Projection policy should be restored.", originalProjectionPolicy, view.getProjectionPolicy() );
+
+		assertEquals( "Unexpected number of images.", shots.size(), images.size() );
+		for ( int i = 0; i < shots.size(); i++ )
+		{
+			assertEquals( "Unexpected image width.", shots.get( i ).getWidth(), images.get( i ).getWidth() );
+			assertEquals( "Unexpected image height.", shots.get( i ).getHeight(), images.get( i ).getHeight() );
+		}
+
+		/*
+		 * Result should be the same as rendering each shot separately.
+		 */
+		final RenderShot firstShot = shots.get( 0 );
+		view.setScene2View( firstShot.getScene2View() );
+		assertImagesEqual( view.renderImage( firstShot.getWidth(), firstShot.getHeight() ), images.get( 0 ) );
+	}
+
+	/**
+	 * Tests that settings of one shot do not affect later shots that don't
+	 * specify those settings.
+	 *
+	 * @throws IOException if the test fails.
+	 */
+	@Test
+	public void testShotOrder()
+	throws IOException
+	{
+		final List<RenderShot> shots = _shots;
+		final RenderShot parallelShot = shots.get( shots.size() - 1 );
+		final RenderShot defaultShot = shots.get( 0 );
+
+		final List<BufferedImage> images = new ArrayList<BufferedImage>();
+		final RenderShotListener<BufferedImage> listener = new RenderShotListener<BufferedImage>()
+		{
+			@Override
+			public void shotRendered( final int index, @NotNull final RenderShot shot, @NotNull final BufferedImage result )
+			{
+				images.add( result );
+			}
+		};
+
+		final BatchRenderer renderer = new BatchRenderer( _view );
+		renderer.render( Collections.singletonList( defaultShot ), listener );
+		renderer.render( Arrays.asList( parallelShot, defaultShot ), listener );
+
+		assertEquals( "Unexpected number of images.", 3, images.size() );
+		assertImagesEqual( images.get( 0 ), images.get( 2 ) );
+	}
+
+	/**
+	 * Tests {@link BatchRenderer#renderEncoded}.
+	 *
+	 * @throws IOException if the test fails.
+	 */
+	@Test
+	public void testRenderEncoded()
+	throws IOException
+	{
+		final List<RenderShot> shots = _shots;
+
+		final List<BufferedImage> expected = new ArrayList<BufferedImage>();
+		new BatchRenderer( _view ).render( shots, new RenderShotListener<BufferedImage>()
+		{
+			@Override
+			public void shotRendered( final int index, @NotNull final RenderShot shot, @NotNull final BufferedImage result )
+			{
+				expected.add( result );
+			}
+		} );
+
+		for ( final int threadCount : new int[] { 0, 1, 3 } )
+		{
+			final BatchRenderer renderer = new BatchRenderer( _view );
+			renderer.setEncoderThreadCount( threadCount );
+			renderer.setMaximumPendingShots( 2 );
+
+			final List<byte[]> encoded = new ArrayList<byte[]>();
+			renderer.renderEncoded( shots, "png", new RenderShotListener<byte[]>()
+			{
+				@Override
+				public void shotRendered( final int index, @NotNull final RenderShot shot, @NotNull final byte[] result )
+				{
+					assertEquals( "Unexpected index.", encoded.size(), index );
+					assertSame( "Unexpected shot.", shots.get( index ), shot );
+					encoded.add( result );
+				}
+			} );
+
+			assertEquals( "Unexpected number of images.", shots.size(), encoded.size() );
+			for ( int i = 0; i < shots.size(); i++ )
+			{
+				assertImagesEqual( expected.get( i ), ImageIO.read( new ByteArrayInputStream( encoded.get( i ) ) ) );
+			}
+		}
+	}
+
+	/**
+	 * Tests that encoding errors are reported.
+	 */
+	@Test
+	public void testUnknownFormat()
+	{
+		try
+		{
+			new BatchRenderer( _view ).renderEncoded( _shots, "no-such-format", new RenderShotListener<byte[]>()
+			{
+				@Override
+				public void shotRendered( final int index, @NotNull final RenderShot shot, @NotNull final byte[] result )
+				{
+					fail( "Should not be called." );
+				}
+			} );
+			fail( "Expected exception." );
+		}
+		catch ( final IOException ignored )
+		{
+		}
+	}
+
+	/**
+	 * Asserts that two images have the same size and pixels.
+	 *
+	 * @param expected Expected image.
+	 * @param actual   Actual image.
+	 */
+	private static void assertImagesEqual( final BufferedImage expected, final BufferedImage actual )
+	{
+		assertEquals( "Unexpected image width.", expected.getWidth(), actual.getWidth() );
+		assertEquals( "Unexpected image height.", expected.getHeight(), actual.getHeight() );
+		for ( int y = 0; y < expected.getHeight(); y++ )
+		{
+			for ( int x = 0; x < expected.getWidth(); x++ )
+			{
+				assertEquals( "Unexpected pixel at " + x + "," + y, expected.getRGB( x, y ), actual.getRGB( x, y ) );
+			}
+		}
+	}
+}
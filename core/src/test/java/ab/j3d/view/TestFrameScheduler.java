@@ -0,0 +1,150 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link FrameScheduler}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestFrameScheduler
+{
+	/**
+	 * Milliseconds to nanoseconds.
+	 */
+	private static final long MS = 1000000L;
+
+	/**
+	 * Tests that quality drops while moving and is refined afterwards.
+	 */
+	@Test
+	public void testMovement()
+	{
+		final FrameScheduler scheduler = new FrameScheduler();
+		scheduler.setTargetFrameTime( 30L * MS );
+		scheduler.setSettleTime( 200L * MS );
+
+		long now = 0L;
+		assertEquals( "Unexpected initial quality", FrameScheduler.Quality.FULL, scheduler.beginFrame( now, false ) );
+		scheduler.frameRendered( 100L * MS );
+		assertEquals( "Should stay at full quality without movement", FrameScheduler.Quality.FULL, scheduler.getQuality() );
+		assertFalse( "No refinement expected", scheduler.isRefinementPending() );
+
+		/*
+		 * Frame times for each level: only the cheapest fits the budget.
+		 */
+		final long[] frameTimes = { 100L * MS, 60L * MS, 40L * MS, 20L * MS };
+		for ( int i = 0; i < 10; i++ )
+		{
+			now += 20L * MS;
+			final FrameScheduler.Quality quality = scheduler.beginFrame( now, true );
+			scheduler.frameRendered( frameTimes[ quality.ordinal() ] );
+		}
+		assertTrue( "Should be moving", scheduler.isMoving() );
+		assertEquals( "Should drop to cheapest level", FrameScheduler.Quality.LOW_RESOLUTION, scheduler.getQuality() );
+		assertTrue( "Refinement should be pending while moving", scheduler.isRefinementPending() );
+		assertEquals( "Unexpected refinement delay", 200L * MS, scheduler.getRefinementDelay( now ) );
+
+		/*
+		 * Stop moving: refine one level per frame.
+		 */
+		now += 200L * MS;
+		assertEquals( "Refinement should be due", 0L, scheduler.getRefinementDelay( now ) );
+		FrameScheduler.Quality quality = scheduler.beginFrame( now, false );
+		assertFalse( "Should not be moving", scheduler.isMoving() );
+		assertEquals( "Unexpected first refinement", FrameScheduler.Quality.LOW_DETAIL, quality );
+		scheduler.frameRendered( frameTimes[ quality.ordinal() ] );
+		quality = scheduler.beginFrame( now, false );
+		assertEquals( "Unexpected second refinement", FrameScheduler.Quality.NO_EFFECTS, quality );
+		scheduler.frameRendered( frameTimes[ quality.ordinal() ] );
+		quality = scheduler.beginFrame( now, false );
+		assertEquals( "Unexpected third refinement", FrameScheduler.Quality.FULL, quality );
+		scheduler.frameRendered( frameTimes[ quality.ordinal() ] );
+		assertFalse( "Refinement should be done", scheduler.isRefinementPending() );
+
+		/*
+		 * Next movement starts at the level that was learned.
+		 */
+		now += 1000L * MS;
+		assertEquals( "Should resume at learned level", FrameScheduler.Quality.LOW_RESOLUTION, scheduler.beginFrame( now, true ) );
+	}
+
+	/**
+	 * Tests that quality is raised while moving if frames are fast enough.
+	 */
+	@Test
+	public void testUpgradeWhileMoving()
+	{
+		final FrameScheduler scheduler = new FrameScheduler();
+		scheduler.setTargetFrameTime( 30L * MS );
+
+		long now = 0L;
+		long[] frameTimes = { 50L * MS, 20L * MS, 10L * MS, 5L * MS };
+		for ( int i = 0; i < 10; i++ )
+		{
+			now += 20L * MS;
+			final FrameScheduler.Quality quality = scheduler.beginFrame( now, true );
+			scheduler.frameRendered( frameTimes[ quality.ordinal() ] );
+		}
+		assertEquals( "Should settle on best level within budget", FrameScheduler.Quality.NO_EFFECTS, scheduler.getQuality() );
+
+		/*
+		 * Scene became lighter: full quality fits now, but is only measured
+		 * again after a while.
+		 */
+		frameTimes = new long[] { 10L * MS, 5L * MS, 5L * MS, 5L * MS };
+		for ( int i = 0; i < 10; i++ )
+		{
+			now += 20L * MS;
+			final FrameScheduler.Quality quality = scheduler.beginFrame( now, true );
+			scheduler.frameRendered( frameTimes[ quality.ordinal() ] );
+		}
+		assertEquals( "Should stay at known-good level", FrameScheduler.Quality.NO_EFFECTS, scheduler.getQuality() );
+
+		for ( int i = 0; i < 30; i++ )
+		{
+			now += 20L * MS;
+			final FrameScheduler.Quality quality = scheduler.beginFrame( now, true );
+			scheduler.frameRendered( frameTimes[ quality.ordinal() ] );
+		}
+		assertEquals( "Should measure and use full quality again", FrameScheduler.Quality.FULL, scheduler.getQuality() );
+		assertEquals( "Unexpected average frame time", (double)( 10L * MS ), scheduler.getAverageFrameTime( FrameScheduler.Quality.FULL ), 1.0 );
+	}
+
+	/**
+	 * Tests that disabling the scheduler always yields full quality.
+	 */
+	@Test
+	public void testDisabled()
+	{
+		final FrameScheduler scheduler = new FrameScheduler();
+		scheduler.setTargetFrameTime( 30L * MS );
+		scheduler.setEnabled( false );
+
+		for ( int i = 0; i < 10; i++ )
+		{
+			assertEquals( "Expected full quality", FrameScheduler.Quality.FULL, scheduler.beginFrame( (long)i * 20L * MS, true ) );
+			scheduler.frameRendered( 100L * MS );
+		}
+		assertFalse( "No refinement expected", scheduler.isRefinementPending() );
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import java.util.*;
+
+import ab.j3d.*;
+import ab.j3d.model.*;
+import static org.junit.Assert.*;
+import org.jetbrains.annotations.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link FrustumCuller}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestFrustumCuller
+{
+	/**
+	 * Transformation from scene to view coordinates.
+	 */
+	private Matrix3D _scene2view;
+
+	/**
+	 * Projector of the camera.
+	 */
+	private Projector _projector;
+
+	/**
+	 * Set up test.
+	 */
+	@Before
+	public void setUp()
+	{
+		_scene2view = Matrix3D.getFromToTransform( new Vector3D( 0.0, -5000.0, 1000.0 ), Vector3D.ZERO, Vector3D.POSITIVE_Z_AXIS, Vector3D.POSITIVE_Y_AXIS );
+		_projector = Projector.createInstance( ProjectionPolicy.PERSPECTIVE, 800, 600, Scene.INCH / 96.0, Scene.MM, 100.0, 20000.0, Math.toRadians( 45.0 ), 1.0 );
+	}
+
+	/**
+	 * Tests that culling results match {@link Projector#inViewVolume}.
+	 */
+	@Test
+	public void testMatchesProjector()
+	{
+		final FrustumCuller culler = new FrustumCuller();
+		culler.beginFrame( _projector, _scene2view );
+
+		final Random random = new Random( 1L );
+		int visibleCount = 0;
+		for ( int i = 0; i < 1000; i++ )
+		{
+			final Box3D box = new Box3D( 10.0 + random.nextDouble() * 500.0, 10.0 + random.nextDouble() * 500.0, 10.0 + random.nextDouble() * 500.0, null, null );
+			final Matrix3D transform = Matrix3D.getTransform( random.nextDouble() * 360.0, random.nextDouble() * 360.0, random.nextDouble() * 360.0, ( random.nextDouble() - 0.5 ) * 20000.0, ( random.nextDouble() - 0.5 ) * 20000.0, ( random.nextDouble() - 0.5 ) * 4000.0 );
+			final ContentNode contentNode = new ContentNode( i, transform, box );
+
+			final boolean expected = _projector.inViewVolume( transform.multiply( _scene2view ), box.getOrientedBoundingBox() );
+			assertEquals( "Unexpected result for box " + i, expected, culler.cull( contentNode ) != FrustumCuller.OUTSIDE );
+			assertEquals( "Unexpected result for box " + i, expected, culler.isVisible( transform, box ) );
+			if ( expected )
+			{
+				visibleCount++;
+			}
+		}
+		culler.endFrame();
+
+		assertTrue( "Expected some visible boxes", visibleCount > 0 );
+		assertTrue( "Expected some culled boxes", visibleCount < 1000 );
+		assertEquals( "Unexpected culled count", 2 * ( 1000 - visibleCount ), culler.getCulledCount() );
+	}
+
+	/**
+	 * Tests culling of a hierarchy with plane mask propagation.
+	 */
+	@Test
+	public void testHierarchy()
+	{
+		final Transform3D visibleGroup = new Transform3D( Matrix3D.getTranslation( -100.0, -100.0, 0.0 ) );
+		final Transform3D hiddenGroup = new Transform3D( Matrix3D.getTranslation( 100000.0, 0.0, 0.0 ) );
+		for ( int i = 0; i < 10; i++ )
+		{
+			visibleGroup.addChild( new Transform3D( Matrix3D.getTranslation( (double)( i * 20 ), 0.0, 0.0 ), new Box3D( 10.0, 10.0, 10.0, null, null ) ) );
+			hiddenGroup.addChild( new Transform3D( Matrix3D.getTranslation( (double)( i * 20 ), 0.0, 0.0 ), new Box3D( 10.0, 10.0, 10.0, null, null ) ) );
+		}
+
+		final Node3D root = new Node3D();
+		root.addChild( visibleGroup );
+		root.addChild( hiddenGroup );
+		final ContentNode contentNode = new ContentNode( "node", Matrix3D.IDENTITY, root );
+
+		final FrustumCuller culler = new FrustumCuller();
+		final List<Node3DPath> visited = walk( culler, contentNode );
+
+		assertEquals( "Unexpected number of visited objects", 10, visited.size() );
+		for ( final Node3DPath path : visited )
+		{
+			assertTrue( "Unexpected object: " + path, path.getTransform().getTranslation().x < 1000.0 );
+		}
+
+		assertEquals( "Hidden group should be culled as a whole", 1, culler.getCulledCount() );
+		assertTrue( "Descendants of the visible group should not be tested", culler.getSkippedCount() >= 20 );
+		assertEquals( "Unexpected number of tested nodes", 4, culler.getTestedCount() );
+
+		culler.beginFrame( _projector, _scene2view );
+		culler.disable();
+		assertEquals( "Culling was disabled", FrustumCuller.ALL_PLANES, culler.cull( contentNode ) );
+		culler.endFrame();
+	}
+
+	/**
+	 * Tests that the rejecting plane is remembered between frames.
+	 */
+	@Test
+	public void testCoherence()
+	{
+		final ContentNode contentNode = new ContentNode( "far", Matrix3D.getTranslation( 100000.0, 0.0, 0.0 ), new Box3D( 10.0, 10.0, 10.0, null, null ) );
+
+		final FrustumCuller culler = new FrustumCuller();
+		culler.beginFrame( _projector, _scene2view );
+		assertEquals( "Node should be culled", FrustumCuller.OUTSIDE, culler.cull( contentNode ) );
+		culler.endFrame();
+		assertEquals( "No previous rejecting plane", 0, culler.getCoherentCount() );
+		final int firstPlaneTests = culler.getPlaneTestCount();
+
+		culler.beginFrame( _projector, _scene2view );
+		assertEquals( "Node should be culled", FrustumCuller.OUTSIDE, culler.cull( contentNode ) );
+		culler.endFrame();
+		assertEquals( "Previous rejecting plane should be used", 1, culler.getCoherentCount() );
+		assertEquals( "Only one plane should be tested", 1, culler.getPlaneTestCount() );
+		assertTrue( "Expected more plane tests in first frame", firstPlaneTests >= 1 );
+	}
+
+	/**
+	 * Tests that walking content nodes from a scene snapshot uses the state
+	 * recorded in the snapshot, even if the scene is modified during the walk.
+	 */
+	@Test
+	public void testSnapshotWalk()
+	{
+		final Box3D boxA = new Box3D( 100.0, 100.0, 100.0, null, null );
+		final Box3D boxB = new Box3D( 100.0, 100.0, 100.0, null, null );
+		final Matrix3D transformA = Matrix3D.getTranslation( -500.0, 0.0, 0.0 );
+		final Matrix3D transformB = Matrix3D.getTranslation( 500.0, 0.0, 0.0 );
+
+		final Scene scene = new Scene( Scene.MM );
+		scene.addContentNode( "a", transformA, boxA );
+		final ContentNode nodeB = scene.addContentNode( "b", transformB, boxB );
+		final SceneSnapshot snapshot = scene.getSnapshot();
+
+		final FrustumCuller culler = new FrustumCuller();
+		final CullingTreeWalker treeWalker = new CullingTreeWalker( culler );
+		final List<Node3DPath> visited = new ArrayList<Node3DPath>();
+		culler.beginFrame( _projector, _scene2view );
+		for ( int i = 0; i < snapshot.getContentNodes().size(); i++ )
+		{
+			treeWalker.walkContentNode( new Node3DVisitor()
+			{
+				@Override
+				public boolean visitNode( @NotNull final Node3DPath path )
+				{
+					if ( path.getNode() instanceof Object3D )
+					{
+						if ( visited.isEmpty() )
+						{
+							// Modify the scene while it is being walked.
+							nodeB.setTransform( Matrix3D.getTranslation( 100000.0, 0.0, 0.0 ) );
+							nodeB.setNode3D( new Box3D( 10.0, 10.0, 10.0, null, null ) );
+							scene.removeContentNode( "a" );
+						}
+						visited.add( path );
+					}
+					return true;
+				}
+			}, snapshot, i );
+		}
+		culler.endFrame();
+
+		assertEquals( "Unexpected number of visited objects", 2, visited.size() );
+		assertSame( "Unexpected object", boxA, visited.get( 0 ).getNode() );
+		assertEquals( "Unexpected transform", transformA, visited.get( 0 ).getTransform() );
+		assertSame( "Object from snapshot should be visited", boxB, visited.get( 1 ).getNode() );
+		assertEquals( "Transform from snapshot should be used", transformB, visited.get( 1 ).getTransform() );
+		assertEquals( "Scene should be modified", 1, scene.getContentNodes().size() );
+	}
+
+	/**
+	 * Walks a content node with culling and returns the visited objects.
+	 *
+	 * @param culler      Frustum culler.
+	 * @param contentNode Content node to walk.
+	 *
+	 * @return Paths to visited objects.
+	 */
+	private List<Node3DPath> walk( final FrustumCuller culler, final ContentNode contentNode )
+	{
+		final List<Node3DPath> result = new ArrayList<Node3DPath>();
+		culler.beginFrame( _projector, _scene2view );
+		new CullingTreeWalker( culler ).walkContentNode( new Node3DVisitor()
+		{
+			@Override
+			public boolean visitNode( @NotNull final Node3DPath path )
+			{
+				if ( path.getNode() instanceof Object3D )
+				{
+					result.add( path );
+				}
+				return true;
+			}
+		}, contentNode );
+		culler.endFrame();
+		return result;
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import java.nio.*;
+import java.util.*;
+
+import ab.j3d.*;
+import ab.j3d.model.*;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link InstanceGrouper}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestInstanceGrouper
+{
+	/**
+	 * Tests grouping of instances by key.
+	 */
+	@Test
+	public void testGrouping()
+	{
+		final Object3D chair = new Box3D( 500.0, 500.0, 1000.0, null, null );
+		final Object3D table = new Box3D( 1500.0, 800.0, 750.0, null, null );
+
+		final InstanceGrouper<Object3D> grouper = new InstanceGrouper<Object3D>();
+		assertTrue( "Grouper should be empty.", grouper.isEmpty() );
+
+		final List<Node3DPath> chairPaths = new ArrayList<Node3DPath>();
+		final Node3DPath tablePath = new Node3DPath( null, Matrix3D.getTranslation( 0.0, 0.0, 0.0 ), table );
+		for ( int i = 0; i < 4; i++ )
+		{
+			final Node3DPath chairPath = new Node3DPath( null, Matrix3D.getTranslation( i * 600.0, -600.0, 0.0 ), chair );
+			chairPaths.add( chairPath );
+			grouper.add( chair, chairPath );
+			if ( i == 1 )
+			{
+				grouper.add( table, tablePath );
+			}
+		}
+
+		final List<InstanceGrouper.InstanceList<Object3D>> instanceLists = new ArrayList<InstanceGrouper.InstanceList<Object3D>>( grouper.getInstanceLists() );
+		assertEquals( "Unexpected number of groups.", 2, instanceLists.size() );
+		assertSame( "Unexpected first key.", chair, instanceLists.get( 0 ).getKey() );
+		assertEquals( "Unexpected chair paths.", chairPaths, instanceLists.get( 0 ).getPaths() );
+		assertEquals( "Unexpected number of chairs.", 4, instanceLists.get( 0 ).size() );
+		assertSame( "Unexpected second key.", table, instanceLists.get( 1 ).getKey() );
+		assertEquals( "Unexpected table paths.", Collections.singletonList( tablePath ), instanceLists.get( 1 ).getPaths() );
+
+		grouper.clear();
+		assertTrue( "Grouper should be empty.", grouper.isEmpty() );
+	}
+
+	/**
+	 * Tests packing of object-to-view matrices.
+	 */
+	@Test
+	public void testMatrices()
+	{
+		final Object3D object = new Box3D( 100.0, 100.0, 100.0, null, null );
+		final Matrix3D[] transforms =
+			{
+				Matrix3D.getTranslation( 100.0, 200.0, 300.0 ),
+				Matrix3D.getTransform( 30.0, 45.0, 60.0, -100.0, 50.0, 0.0 ),
+				Matrix3D.getScaleTransform( 2.0 ).plus( 0.0, 0.0, 1000.0 )
+			};
+
+		final InstanceGrouper<Object3D> grouper = new InstanceGrouper<Object3D>();
+		for ( final Matrix3D transform : transforms )
+		{
+			grouper.add( object, new Node3DPath( null, transform, object ) );
+		}
+
+		final InstanceGrouper.InstanceList<Object3D> instances = grouper.getInstanceLists().iterator().next();
+		final Matrix3D scene2view = Matrix3D.getFromToTransform( new Vector3D( 0.0, -5000.0, 1000.0 ), Vector3D.ZERO, Vector3D.POSITIVE_Z_AXIS, Vector3D.POSITIVE_Y_AXIS );
+		final FloatBuffer matrices = instances.getMatrices( scene2view );
+		assertTrue( "Buffer should be direct.", matrices.isDirect() );
+		assertEquals( "Unexpected position.", 0, matrices.position() );
+		assertEquals( "Unexpected limit.", transforms.length * InstanceGrouper.MATRIX_SIZE, matrices.limit() );
+
+		final Vector3D point = new Vector3D( 10.0, 20.0, 30.0 );
+		for ( int i = 0; i < transforms.length; i++ )
+		{
+			final int offset = i * InstanceGrouper.MATRIX_SIZE;
+			final Vector3D expected = transforms[ i ].multiply( scene2view ).transform( point );
+
+			/*
+			 * Apply column-major matrix to point.
+			 */
+			final double x = matrices.get( offset ) * point.x + matrices.get( offset + 4 ) * point.y + matrices.get( offset + 8 ) * point.z + matrices.get( offset + 12 );
+			final double y = matrices.get( offset + 1 ) * point.x + matrices.get( offset + 5 ) * point.y + matrices.get( offset + 9 ) * point.z + matrices.get( offset + 13 );
+			final double z = matrices.get( offset + 2 ) * point.x + matrices.get( offset + 6 ) * point.y + matrices.get( offset + 10 ) * point.z + matrices.get( offset + 14 );
+			assertEquals( "Unexpected x for instance " + i, expected.x, x, 1.0e-2 );
+			assertEquals( "Unexpected y for instance " + i, expected.y, y, 1.0e-2 );
+			assertEquals( "Unexpected z for instance " + i, expected.z, z, 1.0e-2 );
+
+			assertEquals( "Unexpected w-row for instance " + i, 0.0f, matrices.get( offset + 3 ), 0.0f );
+			assertEquals( "Unexpected w-row for instance " + i, 0.0f, matrices.get( offset + 7 ), 0.0f );
+			assertEquals( "Unexpected w-row for instance " + i, 0.0f, matrices.get( offset + 11 ), 0.0f );
+			assertEquals( "Unexpected w-row for instance " + i, 1.0f, matrices.get( offset + 15 ), 0.0f );
+		}
+
+		assertSame( "Matrices should be cached.", matrices, instances.getMatrices( scene2view ) );
+
+		final float first = matrices.get( 12 );
+		instances.getMatrices( scene2view.plus( 1.0, 0.0, 0.0 ) );
+		assertEquals( "Matrices should be updated for new view.", first + 1.0f, matrices.get( 12 ), 1.0e-3f );
+	}
+
+	/**
+	 * Tests that packed matrices are reused after {@link InstanceGrouper#clear()}
+	 * if the same instances are added again.
+	 */
+	@Test
+	public void testReuse()
+	{
+		final Object3D object = new Box3D( 100.0, 100.0, 100.0, null, null );
+		final Matrix3D scene2view = Matrix3D.getTranslation( 0.0, 0.0, -5000.0 );
+		final List<Node3DPath> paths = new ArrayList<Node3DPath>();
+		for ( int i = 0; i < 3; i++ )
+		{
+			paths.add( new Node3DPath( null, Matrix3D.getTranslation( i * 200.0, 0.0, 0.0 ), object ) );
+		}
+
+		final InstanceGrouper<Object3D> grouper = new InstanceGrouper<Object3D>();
+		for ( final Node3DPath path : paths )
+		{
+			grouper.add( object, path );
+		}
+		final InstanceGrouper.InstanceList<Object3D> instances = grouper.getInstanceLists().iterator().next();
+		final FloatBuffer matrices = instances.getMatrices( scene2view );
+
+		/*
+		 * Mark the buffer, so repacking can be detected.
+		 */
+		matrices.put( 12, -1.0f );
+
+		grouper.clear();
+		assertTrue( "Grouper should be empty.", grouper.isEmpty() );
+		for ( final Node3DPath path : paths )
+		{
+			grouper.add( object, new Node3DPath( null, path.getTransform(), object ) );
+		}
+		assertSame( "Instance list should be reused.", instances, grouper.getInstanceLists().iterator().next() );
+		assertEquals( "Unexpected number of instances.", 3, instances.size() );
+		assertEquals( "Matrices should not be repacked.", -1.0f, instances.getMatrices( scene2view ).get( 12 ), 0.0f );
+
+		grouper.clear();
+		grouper.add( object, new Node3DPath( null, Matrix3D.getTranslation( 50.0, 0.0, 0.0 ), object ) );
+		for ( int i = 1; i < paths.size(); i++ )
+		{
+			grouper.add( object, paths.get( i ) );
+		}
+		assertEquals( "Matrices should be repacked for moved instance.", 50.0f, instances.getMatrices( scene2view ).get( 12 ), 1.0e-3f );
+
+		grouper.clear();
+		grouper.clear();
+		grouper.add( object, paths.get( 0 ) );
+		assertNotSame( "Unused instance list should be discarded.", instances, grouper.getInstanceLists().iterator().next() );
+	}
+}
@@ -0,0 +1,309 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import java.util.*;
+
+import ab.j3d.*;
+import ab.j3d.appearance.*;
+import ab.j3d.model.*;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link OcclusionCuller}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestOcclusionCuller
+{
+	/**
+	 * Transformation from scene to view coordinates.
+	 */
+	private Matrix3D _scene2view;
+
+	/**
+	 * Projector of the camera.
+	 */
+	private Projector _projector;
+
+	/**
+	 * Wall in front of the camera.
+	 */
+	private ContentNode _wall;
+
+	/**
+	 * Box behind the wall.
+	 */
+	private ContentNode _hidden;
+
+	/**
+	 * Box next to the wall.
+	 */
+	private ContentNode _beside;
+
+	/**
+	 * Box in front of the wall.
+	 */
+	private ContentNode _front;
+
+	/**
+	 * Set up test.
+	 */
+	@Before
+	public void setUp()
+	{
+		_scene2view = Matrix3D.getFromToTransform( new Vector3D( 0.0, -5000.0, 0.0 ), Vector3D.ZERO, Vector3D.POSITIVE_Z_AXIS, Vector3D.POSITIVE_Y_AXIS );
+		_projector = Projector.createInstance( ProjectionPolicy.PERSPECTIVE, 800, 600, Scene.INCH / 96.0, Scene.MM, 100.0, 20000.0, Math.toRadians( 45.0 ), 1.0 );
+
+		_wall = new ContentNode( "wall", Matrix3D.getTranslation( -1000.0, -1010.0, -750.0 ), new Box3D( 2000.0, 10.0, 1500.0, null, null ) );
+		_hidden = new ContentNode( "hidden", Matrix3D.getTranslation( -100.0, 0.0, -100.0 ), new Box3D( 200.0, 200.0, 200.0, null, null ) );
+		_beside = new ContentNode( "beside", Matrix3D.getTranslation( 1500.0, 0.0, -100.0 ), new Box3D( 200.0, 200.0, 200.0, null, null ) );
+		_front = new ContentNode( "front", Matrix3D.getTranslation( -100.0, -2000.0, -100.0 ), new Box3D( 200.0, 200.0, 200.0, null, null ) );
+	}
+
+	/**
+	 * Tests occlusion by an automatically selected occluder.
+	 */
+	@Test
+	public void testOcclusion()
+	{
+		final OcclusionCuller culler = new OcclusionCuller();
+		culler.render( _projector, _scene2view, Arrays.asList( _wall, _hidden, _beside, _front ) );
+
+		assertEquals( "Unexpected occluder count", 1, culler.getOccluderCount() );
+		assertEquals( "Only the front face of the wall should be rasterized", 2, culler.getOccluderTriangleCount() );
+		assertEquals( "Unexpected tested count", 4, culler.getTestedCount() );
+		assertFalse( "Wall should be visible", culler.isOccluded( _wall ) );
+		assertTrue( "Box behind wall should be occluded", culler.isOccluded( _hidden ) );
+		assertFalse( "Box beside wall should be visible", culler.isOccluded( _beside ) );
+		assertFalse( "Box in front of wall should be visible", culler.isOccluded( _front ) );
+		assertEquals( "Unexpected occluded count", 1, culler.getOccludedCount() );
+
+		final Bounds3D box = new Bounds3D( 0.0, 0.0, 0.0, 200.0, 200.0, 200.0 );
+		assertFalse( "Box far behind wall should be occluded", culler.isVisible( Matrix3D.getTranslation( -100.0, 5000.0, -100.0 ), box ) );
+		assertTrue( "Box partially behind wall should be visible", culler.isVisible( Matrix3D.getTranslation( 1100.0, 0.0, -100.0 ), box ) );
+	}
+
+	/**
+	 * Tests selection of occluders using {@link OcclusionCuller#OCCLUDER_PROPERTY}.
+	 */
+	@Test
+	public void testOccluderProperty()
+	{
+		final List<ContentNode> nodes = Arrays.asList( _wall, _hidden, _beside, _front );
+
+		final OcclusionCuller culler = new OcclusionCuller();
+		culler.setMinimumOccluderArea( 2.0 );
+		culler.render( _projector, _scene2view, nodes );
+		assertEquals( "Unexpected occluder count", 0, culler.getOccluderCount() );
+		assertFalse( "Nothing should be occluded without occluders", culler.isOccluded( _hidden ) );
+
+		_wall.getNode3D().setProperty( OcclusionCuller.OCCLUDER_PROPERTY, true );
+		culler.render( _projector, _scene2view, nodes );
+		assertEquals( "Unexpected occluder count", 1, culler.getOccluderCount() );
+		assertTrue( "Box behind wall should be occluded", culler.isOccluded( _hidden ) );
+	}
+
+	/**
+	 * Tests that only pixels completely covered by an occluder receive
+	 * depth, without cracks along edges shared by its triangles.
+	 */
+	@Test
+	public void testConservativeCoverage()
+	{
+		final OcclusionCuller culler = new OcclusionCuller();
+
+		/* Move the wall in small steps, so its edges cross pixels at different offsets. */
+		for ( int step = 0; step < 10; step++ )
+		{
+			final double offset = (double)step * 1.3;
+			final ContentNode wall = new ContentNode( "wall", Matrix3D.getTranslation( -1000.0 + offset, -1010.0, -750.0 + offset ), new Box3D( 2000.0, 10.0, 1500.0, null, null ) );
+			culler.render( _projector, _scene2view, Collections.singletonList( wall ) );
+
+			/* The wall is parallel to the image plane; its front face is the silhouette. */
+			final double scale = (double)culler.getBufferWidth() / (double)_projector.getImageWidth();
+			final double[] projected = new double[ 2 ];
+			double minX = Double.POSITIVE_INFINITY;
+			double minY = Double.POSITIVE_INFINITY;
+			double maxX = Double.NEGATIVE_INFINITY;
+			double maxY = Double.NEGATIVE_INFINITY;
+			for ( int i = 0; i < 4; i++ )
+			{
+				final Vector3D corner = _scene2view.transform( ( ( ( i & 1 ) == 0 ) ? -1000.0 : 1000.0 ) + offset, -1010.0, ( ( ( i & 2 ) == 0 ) ? -750.0 : 750.0 ) + offset );
+				_projector.project( projected, 0, corner.x, corner.y, corner.z );
+				minX = Math.min( minX, projected[ 0 ] * scale );
+				minY = Math.min( minY, projected[ 1 ] * scale );
+				maxX = Math.max( maxX, projected[ 0 ] * scale );
+				maxY = Math.max( maxY, projected[ 1 ] * scale );
+			}
+
+			int coveredCount = 0;
+			for ( int y = 0; y < culler.getBufferHeight(); y++ )
+			{
+				for ( int x = 0; x < culler.getBufferWidth(); x++ )
+				{
+					final boolean inside = ( x >= minX ) && ( x + 1 <= maxX ) && ( y >= minY ) && ( y + 1 <= maxY );
+					final boolean covered = ( culler.getCloseness( x, y ) != Float.NEGATIVE_INFINITY );
+					assertEquals( "Unexpected coverage at " + x + "," + y + " for offset " + offset, inside, covered );
+					if ( covered )
+					{
+						coveredCount++;
+					}
+				}
+			}
+			assertTrue( "Expected covered pixels", coveredCount > 0 );
+		}
+	}
+
+	/**
+	 * Tests that single-sided faces seen from behind do not occlude anything,
+	 * unless back-face culling is disabled.
+	 */
+	@Test
+	public void testBackfaceOccluder()
+	{
+		final Vector3D corner1 = new Vector3D( -1000.0, -1010.0, -750.0 );
+		final Vector3D corner2 = new Vector3D( 1000.0, -1010.0, -750.0 );
+		final Vector3D corner3 = new Vector3D( 1000.0, -1010.0, 750.0 );
+		final Vector3D corner4 = new Vector3D( -1000.0, -1010.0, 750.0 );
+
+		final OcclusionCuller culler = new OcclusionCuller();
+		for ( int i = 0; i < 2; i++ )
+		{
+			final boolean facingCamera = ( i == 0 );
+
+			/* Face vertices are in clockwise order when seen from the front. */
+			final Vector3D[] corners = facingCamera ? new Vector3D[] { corner4, corner3, corner2, corner1 } : new Vector3D[] { corner1, corner2, corner3, corner4 };
+
+			final Object3DBuilder oneSided = new Object3DBuilder();
+			oneSided.addFace( corners, null, false, false );
+			final ContentNode quad = new ContentNode( "quad", Matrix3D.IDENTITY, oneSided.getObject3D() );
+			quad.getNode3D().setProperty( OcclusionCuller.OCCLUDER_PROPERTY, true );
+			final List<ContentNode> nodes = Arrays.asList( quad, _hidden );
+
+			culler.render( _projector, _scene2view, nodes );
+			assertEquals( "Unexpected occluder count", 1, culler.getOccluderCount() );
+			assertEquals( "Unexpected occluder triangle count (facing camera: " + facingCamera + ')', facingCamera ? 2 : 0, culler.getOccluderTriangleCount() );
+			assertEquals( "Unexpected occlusion (facing camera: " + facingCamera + ')', facingCamera, culler.isOccluded( _hidden ) );
+
+			final RenderStyle noCulling = new RenderStyle();
+			noCulling.setBackfaceCullingEnabled( false );
+			culler.render( _projector, _scene2view, nodes, Collections.<RenderStyleFilter>emptyList(), noCulling );
+			assertTrue( "Box should be occluded without back-face culling (facing camera: " + facingCamera + ')', culler.isOccluded( _hidden ) );
+
+			final Object3DBuilder twoSided = new Object3DBuilder();
+			twoSided.addFace( corners, null, false, true );
+			final ContentNode twoSidedQuad = new ContentNode( "twoSided", Matrix3D.IDENTITY, twoSided.getObject3D() );
+			twoSidedQuad.getNode3D().setProperty( OcclusionCuller.OCCLUDER_PROPERTY, true );
+			culler.render( _projector, _scene2view, Arrays.asList( twoSidedQuad, _hidden ) );
+			assertTrue( "Box behind two-sided quad should be occluded", culler.isOccluded( _hidden ) );
+		}
+	}
+
+	/**
+	 * Tests that occluders are taken from a scene snapshot, not from the
+	 * current state of the scene.
+	 */
+	@Test
+	public void testSnapshot()
+	{
+		final Scene scene = new Scene( Scene.MM );
+		final ContentNode wall = scene.addContentNode( "wall", _wall.getTransform(), _wall.getNode3D() );
+		final ContentNode hidden = scene.addContentNode( "hidden", _hidden.getTransform(), _hidden.getNode3D() );
+		final SceneSnapshot snapshot = scene.getSnapshot();
+
+		wall.setTransform( Matrix3D.getTranslation( 5000.0, -1010.0, -750.0 ) );
+		final OcclusionCuller culler = new OcclusionCuller();
+		culler.render( _projector, _scene2view, snapshot, Collections.<RenderStyleFilter>emptyList(), new RenderStyle() );
+		assertTrue( "Box should be occluded by wall in snapshot after moving wall", culler.isOccluded( hidden ) );
+
+		wall.setNode3D( new Box3D( 10.0, 10.0, 10.0, null, null ) );
+		culler.render( _projector, _scene2view, snapshot, Collections.<RenderStyleFilter>emptyList(), new RenderStyle() );
+		assertTrue( "Box should be occluded by wall in snapshot after replacing wall", culler.isOccluded( hidden ) );
+
+		culler.render( _projector, _scene2view, scene.getSnapshot(), Collections.<RenderStyleFilter>emptyList(), new RenderStyle() );
+		assertFalse( "Box should be visible in new snapshot", culler.isOccluded( hidden ) );
+	}
+
+	/**
+	 * Tests that transparent and unfilled objects are not used as
+	 * occluders.
+	 */
+	@Test
+	public void testTransparentOccluder()
+	{
+		final List<ContentNode> nodes = Arrays.asList( _wall, _hidden, _beside, _front );
+		final OcclusionCuller culler = new OcclusionCuller();
+
+		culler.render( _projector, _scene2view, nodes, Collections.<RenderStyleFilter>emptyList(), ViewStyleFilter.createStyle( RenderingPolicy.WIREFRAME ) );
+		assertEquals( "Unexpected occluder count", 0, culler.getOccluderCount() );
+		assertFalse( "Box behind wireframe wall should be visible", culler.isOccluded( _hidden ) );
+
+		culler.render( _projector, _scene2view, nodes, Collections.<RenderStyleFilter>emptyList(), ViewStyleFilter.createStyle( RenderingPolicy.SCHEMATIC ) );
+		assertTrue( "Box behind filled wall should be occluded", culler.isOccluded( _hidden ) );
+
+		final BasicAppearance glass = new BasicAppearance();
+		glass.setDiffuseColor( new Color4f( 0.8f, 0.9f, 1.0f, 0.3f ) );
+		final ContentNode glassWall = new ContentNode( "glass", _wall.getTransform(), new Box3D( 2000.0, 10.0, 1500.0, null, glass ) );
+		culler.render( _projector, _scene2view, Arrays.asList( glassWall, _hidden, _beside, _front ) );
+		assertEquals( "Unexpected occluder triangle count", 0, culler.getOccluderTriangleCount() );
+		assertFalse( "Box behind glass wall should be visible", culler.isOccluded( _hidden ) );
+	}
+
+	/**
+	 * Tests that multi-threaded rasterization gives the same results as
+	 * single-threaded rasterization.
+	 */
+	@Test
+	public void testThreads()
+	{
+		final Random random = new Random( 1L );
+		final List<ContentNode> nodes = new ArrayList<ContentNode>();
+		for ( int i = 0; i < 500; i++ )
+		{
+			final Matrix3D transform = Matrix3D.getTransform( random.nextDouble() * 360.0, random.nextDouble() * 360.0, random.nextDouble() * 360.0, ( random.nextDouble() - 0.5 ) * 4000.0, random.nextDouble() * 10000.0 - 3000.0, ( random.nextDouble() - 0.5 ) * 3000.0 );
+			final double size = ( i < 20 ) ? 1000.0 : 100.0;
+			nodes.add( new ContentNode( i, transform, new Box3D( size, size, 10.0 + random.nextDouble() * size, null, null ) ) );
+		}
+
+		final OcclusionCuller single = new OcclusionCuller();
+		single.setThreadCount( 1 );
+		single.render( _projector, _scene2view, nodes );
+
+		final OcclusionCuller multi = new OcclusionCuller();
+		multi.setThreadCount( 4 );
+		multi.render( _projector, _scene2view, nodes );
+
+		assertTrue( "Expected some occluded nodes", single.getOccludedCount() > 0 );
+		assertEquals( "Unexpected occluded count", single.getOccludedCount(), multi.getOccludedCount() );
+		for ( final ContentNode node : nodes )
+		{
+			assertEquals( "Unexpected result for " + node.getID(), single.isOccluded( node ), multi.isOccluded( node ) );
+		}
+
+		for ( int y = 0; y < single.getBufferHeight(); y++ )
+		{
+			for ( int x = 0; x < single.getBufferWidth(); x++ )
+			{
+				assertEquals( "Unexpected closeness at " + x + "," + y, single.getCloseness( x, y ), multi.getCloseness( x, y ), 0.0f );
+			}
+		}
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import java.lang.management.*;
+import java.util.*;
+import javax.management.*;
+
+import org.jetbrains.annotations.*;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link RenderMetrics}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestRenderMetrics
+{
+	/**
+	 * Tests that nothing is measured when metrics are disabled.
+	 */
+	@Test
+	public void testDisabled()
+	{
+		final RenderMetrics metrics = new RenderMetrics();
+		final List<FrameMetrics> frames = new ArrayList<FrameMetrics>();
+		metrics.addListener( new RenderMetricsListener()
+		{
+			@Override
+			public void frameRendered( @NotNull final FrameMetrics metrics )
+			{
+				frames.add( metrics );
+			}
+		} );
+
+		assertFalse( "Metrics should be disabled by default", metrics.isEnabled() );
+		metrics.beginFrame();
+		final long start = metrics.startPhase();
+		assertEquals( "Unexpected start time", 0L, start );
+		metrics.endPhase( RenderPhase.DRAW, start );
+		metrics.endFrame();
+
+		assertEquals( "Unexpected frame count", 0L, metrics.getFrameCount() );
+		assertTrue( "Listener should not be notified", frames.isEmpty() );
+	}
+
+	/**
+	 * Tests measurement of frames and phases.
+	 *
+	 * @throws Exception if the test fails.
+	 */
+	@Test
+	public void testFrames()
+	throws Exception
+	{
+		final RenderMetrics metrics = new RenderMetrics( 10 );
+		metrics.setEnabled( true );
+
+		final List<FrameMetrics> frames = new ArrayList<FrameMetrics>();
+		metrics.addListener( new RenderMetricsListener()
+		{
+			@Override
+			public void frameRendered( @NotNull final FrameMetrics metrics )
+			{
+				frames.add( metrics );
+			}
+		} );
+
+		for ( int i = 0; i < 20; i++ )
+		{
+			metrics.beginFrame();
+
+			final long walkStart = metrics.startPhase();
+			final long cullingStart = metrics.startPhase();
+			Thread.sleep( 1L );
+			metrics.endPhase( RenderPhase.CULLING, cullingStart );
+			metrics.endPhase( RenderPhase.SCENE_WALK, walkStart );
+
+			final long drawStart = metrics.startPhase();
+			Thread.sleep( 2L );
+			metrics.addObjectCount( 3 );
+			metrics.addDrawCallCount( 5 );
+			metrics.endPhase( RenderPhase.DRAW, drawStart );
+
+			metrics.endFrame();
+		}
+
+		assertEquals( "Unexpected frame count", 20L, metrics.getFrameCount() );
+		assertEquals( "Unexpected number of notifications", 20, frames.size() );
+
+		for ( int i = 0; i < frames.size(); i++ )
+		{
+			final FrameMetrics frame = frames.get( i );
+			assertEquals( "Unexpected frame number", (long)( i + 1 ), frame.getFrameNumber() );
+			assertEquals( "Unexpected object count", 3, frame.getObjectCount() );
+			assertEquals( "Unexpected draw call count", 5, frame.getDrawCallCount() );
+			assertTrue( "Culling time too short", frame.getPhaseTime( RenderPhase.CULLING ) >= 1000000L );
+			assertTrue( "Nested phase time must be included in scene walk time", frame.getPhaseTime( RenderPhase.SCENE_WALK ) >= frame.getPhaseTime( RenderPhase.CULLING ) );
+			assertTrue( "Draw time too short", frame.getPhaseTime( RenderPhase.DRAW ) >= 2000000L );
+			assertEquals( "Unexpected shadow pass time", 0L, frame.getPhaseTime( RenderPhase.SHADOW_PASS ) );
+			assertTrue( "Frame time must include phases", frame.getFrameTime() >= frame.getPhaseTime( RenderPhase.SCENE_WALK ) + frame.getPhaseTime( RenderPhase.DRAW ) );
+		}
+
+		assertTrue( "Median frame time too short", metrics.getFrameTimeP50() >= 3.0 );
+		assertTrue( "Maximum must not be less than 99th percentile", metrics.getMaxFrameTime() >= metrics.getFrameTimeP99() );
+		assertTrue( "Mean draw time too short", metrics.getMeanPhaseTime( RenderPhase.DRAW ) >= 2000000.0 );
+		assertEquals( "Unexpected phases", RenderPhase.values().length, metrics.getMeanPhaseTimes().size() );
+		assertTrue( "Mean draw time too short", metrics.getMeanPhaseTimes().get( "DRAW" ) >= 2.0 );
+
+		metrics.reset();
+		assertEquals( "Unexpected frame count after reset", 0L, metrics.getFrameCount() );
+		assertEquals( "Unexpected frame time after reset", 0.0, metrics.getMeanFrameTime(), 0.0 );
+	}
+
+	/**
+	 * Tests that object and draw call counts are ignored outside a frame.
+	 */
+	@Test
+	public void testCountsOutsideFrame()
+	{
+		final RenderMetrics metrics = new RenderMetrics( 10 );
+		metrics.setEnabled( true );
+
+		final List<FrameMetrics> frames = new ArrayList<FrameMetrics>();
+		metrics.addListener( new RenderMetricsListener()
+		{
+			@Override
+			public void frameRendered( @NotNull final FrameMetrics metrics )
+			{
+				frames.add( metrics );
+			}
+		} );
+
+		metrics.beginFrame();
+		metrics.addObjectCount( 1 );
+		metrics.addDrawCallCount( 2 );
+		metrics.endFrame();
+
+		metrics.addObjectCount( 10 );
+		metrics.addDrawCallCount( 20 );
+		metrics.endFrame();
+
+		assertEquals( "Unexpected number of notifications", 1, frames.size() );
+		assertEquals( "Unexpected object count", 1, frames.get( 0 ).getObjectCount() );
+		assertEquals( "Unexpected draw call count", 2, frames.get( 0 ).getDrawCallCount() );
+	}
+
+	/**
+	 * Tests that metrics are available through JMX.
+	 *
+	 * @throws Exception if the test fails.
+	 */
+	@Test
+	public void testMBean()
+	throws Exception
+	{
+		final RenderMetrics metrics = new RenderMetrics();
+		final ObjectName objectName = metrics.registerMBean( "test view" );
+		try
+		{
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			assertEquals( "Unexpected attribute value", Boolean.FALSE, server.getAttribute( objectName, "Enabled" ) );
+
+			server.setAttribute( objectName, new Attribute( "Enabled", Boolean.TRUE ) );
+			assertTrue( "Metrics should be enabled through JMX", metrics.isEnabled() );
+
+			metrics.beginFrame();
+			metrics.endFrame();
+			assertEquals( "Unexpected attribute value", 1L, server.getAttribute( objectName, "FrameCount" ) );
+			assertNotNull( "Missing phase times", server.getAttribute( objectName, "MeanPhaseTimes" ) );
+
+			server.invoke( objectName, "reset", null, null );
+			assertEquals( "Unexpected attribute value", 0L, server.getAttribute( objectName, "FrameCount" ) );
+		}
+		finally
+		{
+			metrics.unregisterMBean();
+		}
+
+		assertFalse( "MBean should be unregistered", ManagementFactory.getPlatformMBeanServer().isRegistered( objectName ) );
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link RollingHistogram}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestRollingHistogram
+{
+	/**
+	 * Tests that bucket indices and bounds are consistent for all values.
+	 */
+	@Test
+	public void testBuckets()
+	{
+		int previousBucket = 0;
+		for ( long value = 0L; value < 100000L; value++ )
+		{
+			final int bucket = RollingHistogram.getBucketIndex( value );
+			assertTrue( "Bucket index must not decrease at " + value, bucket >= previousBucket );
+			assertTrue( "Bucket index must increase by at most one at " + value, bucket <= previousBucket + 1 );
+			assertTrue( "Value " + value + " must not exceed upper bound of bucket " + bucket, value <= RollingHistogram.getBucketUpperBound( bucket ) );
+			if ( bucket > 0 )
+			{
+				assertTrue( "Value " + value + " must exceed upper bound of bucket " + ( bucket - 1 ), value > RollingHistogram.getBucketUpperBound( bucket - 1 ) );
+			}
+			previousBucket = bucket;
+		}
+
+		final int lastBucket = RollingHistogram.getBucketIndex( Long.MAX_VALUE );
+		assertEquals( "Unexpected upper bound of last bucket", Long.MAX_VALUE, RollingHistogram.getBucketUpperBound( lastBucket ) );
+	}
+
+	/**
+	 * Tests statistics of values in the window.
+	 */
+	@Test
+	public void testStatistics()
+	{
+		final RollingHistogram histogram = new RollingHistogram( 100 );
+		assertEquals( "Unexpected count", 0, histogram.getCount() );
+		assertEquals( "Unexpected percentile", 0L, histogram.getPercentile( 50.0 ) );
+		assertEquals( "Unexpected mean", 0.0, histogram.getMean(), 0.0 );
+
+		for ( long value = 1L; value <= 100L; value++ )
+		{
+			histogram.add( value );
+		}
+		assertEquals( "Unexpected count", 100, histogram.getCount() );
+		assertEquals( "Unexpected minimum", 1L, histogram.getMin() );
+		assertEquals( "Unexpected maximum", 100L, histogram.getMax() );
+		assertEquals( "Unexpected mean", 50.5, histogram.getMean(), 0.0 );
+		assertEquals( "Unexpected 0th percentile", 1L, histogram.getPercentile( 0.0 ) );
+		assertEquals( "Unexpected 100th percentile", 100L, histogram.getPercentile( 100.0 ) );
+
+		/*
+		 * Oldest values are replaced when the window is full.
+		 */
+		for ( long value = 1001L; value <= 1050L; value++ )
+		{
+			histogram.add( value );
+		}
+		assertEquals( "Unexpected count", 100, histogram.getCount() );
+		assertEquals( "Unexpected minimum", 51L, histogram.getMin() );
+		assertEquals( "Unexpected maximum", 1050L, histogram.getMax() );
+		assertEquals( "Unexpected mean", ( 3775.0 + 51275.0 ) / 100.0, histogram.getMean(), 1.0e-9 );
+
+		histogram.clear();
+		assertEquals( "Unexpected count", 0, histogram.getCount() );
+		assertEquals( "Unexpected maximum", 0L, histogram.getMax() );
+	}
+
+	/**
+	 * Tests that percentiles are within the expected relative error.
+	 */
+	@Test
+	public void testPercentiles()
+	{
+		final int windowSize = 1000;
+		final RollingHistogram histogram = new RollingHistogram( windowSize );
+		final Random random = new Random( 1234L );
+		final long[] window = new long[ windowSize ];
+
+		for ( int i = 0; i < 5000; i++ )
+		{
+			final long value = (long)( Math.exp( random.nextDouble() * 20.0 ) );
+			histogram.add( value );
+			window[ i % windowSize ] = value;
+		}
+
+		final long[] sorted = window.clone();
+		Arrays.sort( sorted );
+
+		for ( final double percentile : new double[] { 1.0, 10.0, 50.0, 90.0, 95.0, 99.0, 99.9 } )
+		{
+			final long expected = sorted[ (int)Math.ceil( percentile / 100.0 * (double)windowSize ) - 1 ];
+			final long actual = histogram.getPercentile( percentile );
+			assertTrue( percentile + "th percentile " + actual + " must not be less than " + expected, actual >= expected );
+			assertTrue( percentile + "th percentile " + actual + " too far above " + expected, (double)actual <= (double)expected * 1.125 + 1.0 );
+		}
+	}
+}
@@ -0,0 +1,299 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import java.util.*;
+
+import ab.j3d.*;
+import ab.j3d.geom.*;
+import ab.j3d.model.*;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link ShadowFrustumFitter}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestShadowFrustumFitter
+{
+	/**
+	 * Floor, visible to the camera.
+	 */
+	private ContentNode _floor;
+
+	/**
+	 * Box on the floor, visible to the camera.
+	 */
+	private ContentNode _box;
+
+	/**
+	 * Box high above the floor, not visible to the camera.
+	 */
+	private ContentNode _overhead;
+
+	/**
+	 * Box far away from anything visible.
+	 */
+	private ContentNode _faraway;
+
+	/**
+	 * All content nodes.
+	 */
+	private List<ContentNode> _nodes;
+
+	/**
+	 * Transformation from scene to view coordinates.
+	 */
+	private Matrix3D _scene2view;
+
+	/**
+	 * Projector of the camera.
+	 */
+	private Projector _projector;
+
+	/**
+	 * Set up test scene and camera.
+	 */
+	@Before
+	public void setUp()
+	{
+		_floor = new ContentNode( "floor", Matrix3D.getTranslation( -50000.0, -50000.0, -10.0 ), new Box3D( 100000.0, 100000.0, 10.0, null, null ) );
+		_box = new ContentNode( "box", Matrix3D.getTranslation( -100.0, -100.0, 0.0 ), new Box3D( 200.0, 200.0, 200.0, null, null ) );
+		_overhead = new ContentNode( "overhead", Matrix3D.getTranslation( -100.0, -100.0, 20000.0 ), new Box3D( 200.0, 200.0, 200.0, null, null ) );
+		_faraway = new ContentNode( "faraway", Matrix3D.getTranslation( 200000.0, 200000.0, 0.0 ), new Box3D( 200.0, 200.0, 200.0, null, null ) );
+		_nodes = Arrays.asList( _floor, _box, _overhead, _faraway );
+
+		_scene2view = Matrix3D.getFromToTransform( new Vector3D( 0.0, -5000.0, 1000.0 ), Vector3D.ZERO, Vector3D.POSITIVE_Z_AXIS, Vector3D.POSITIVE_Y_AXIS );
+		_projector = Projector.createInstance( ProjectionPolicy.PERSPECTIVE, 800, 600, Scene.INCH / 96.0, Scene.MM, 100.0, 20000.0, Math.toRadians( 45.0 ), 1.0 );
+	}
+
+	/**
+	 * Tests {@link ShadowFrustumFitter#getSplitDistances}.
+	 */
+	@Test
+	public void testSplitDistances()
+	{
+		assertArrayEquals( "Uniform splits", new double[] { 1.0, 34.0, 67.0, 100.0 }, ShadowFrustumFitter.getSplitDistances( 1.0, 100.0, 3, 0.0 ), 1.0e-9 );
+		assertArrayEquals( "Logarithmic splits", new double[] { 1.0, 10.0, 100.0 }, ShadowFrustumFitter.getSplitDistances( 1.0, 100.0, 2, 1.0 ), 1.0e-9 );
+		assertArrayEquals( "Practical splits", new double[] { 1.0, 30.25, 100.0 }, ShadowFrustumFitter.getSplitDistances( 1.0, 100.0, 2, 0.5 ), 1.0e-9 );
+		assertArrayEquals( "Single cascade", new double[] { 1.0, 100.0 }, ShadowFrustumFitter.getSplitDistances( 1.0, 100.0, 1, 0.75 ), 1.0e-9 );
+	}
+
+	/**
+	 * Tests {@link ShadowFrustumFitter#getFrustumCorners}.
+	 */
+	@Test
+	public void testFrustumCorners()
+	{
+		final Matrix4D perspective = ShadowFrustumFitter.getPerspectiveProjection( 90.0, 2.0, 1.0, 100.0 );
+		final Vector3D[] corners = ShadowFrustumFitter.getFrustumCorners( perspective, 10.0, 20.0 );
+		assertEquals( "Unexpected number of corners.", 8, corners.length );
+		assertTrue( "Unexpected near corner: " + corners[ 0 ], corners[ 0 ].almostEquals( new Vector3D( -20.0, -10.0, -10.0 ) ) );
+		assertTrue( "Unexpected far corner: " + corners[ 6 ], corners[ 6 ].almostEquals( new Vector3D( 40.0, 20.0, -20.0 ) ) );
+
+		for ( final Vector3D corner : corners )
+		{
+			final Vector3D clip = perspective.transform( corner );
+			assertEquals( "Corner should be on side of frustum.", 1.0, Math.abs( clip.x ), 1.0e-9 );
+			assertEquals( "Corner should be on side of frustum.", 1.0, Math.abs( clip.y ), 1.0e-9 );
+		}
+
+		final Matrix4D orthographic = ShadowFrustumFitter.getOrthographicProjection( -5.0, 5.0, -2.0, 2.0, 1.0, 100.0 );
+		final Vector3D[] orthographicCorners = ShadowFrustumFitter.getFrustumCorners( orthographic, 10.0, 20.0 );
+		assertTrue( "Unexpected near corner: " + orthographicCorners[ 0 ], orthographicCorners[ 0 ].almostEquals( new Vector3D( -5.0, -2.0, -10.0 ) ) );
+		assertTrue( "Unexpected far corner: " + orthographicCorners[ 6 ], orthographicCorners[ 6 ].almostEquals( new Vector3D( 5.0, 2.0, -20.0 ) ) );
+	}
+
+	/**
+	 * Tests fitting of a directional light shadow.
+	 */
+	@Test
+	public void testDirectionalLight()
+	{
+		final ShadowFrustumFitter fitter = new ShadowFrustumFitter();
+		final List<ShadowCascade> cascades = fitter.fit( new DirectionalLight3D( Vector3D.NEGATIVE_Z_AXIS ), Matrix3D.IDENTITY, _scene2view, _projector, _nodes );
+		assertEquals( "Unexpected number of cascades.", 1, cascades.size() );
+
+		final ShadowCascade cascade = cascades.get( 0 );
+		final List<ContentNode> casters = cascade.getCasters();
+		assertTrue( "Visible box should cast shadows.", casters.contains( _box ) );
+		assertTrue( "Invisible box above visible receivers should cast shadows.", casters.contains( _overhead ) );
+		assertFalse( "Far away box should not cast shadows.", casters.contains( _faraway ) );
+
+		final Matrix4D sceneToClip = cascade.getSceneToClip();
+		assertInClipVolume( sceneToClip, _box );
+		assertInClipVolume( sceneToClip, _overhead );
+
+		/*
+		 * Fitted frustum should be much smaller than the floor.
+		 */
+		final Vector3D floorCorner = sceneToClip.transform( -50000.0, -50000.0, 0.0 );
+		assertTrue( "Frustum should not include entire floor.", Math.abs( floorCorner.x ) > 1.0 || Math.abs( floorCorner.y ) > 1.0 );
+	}
+
+	/**
+	 * Tests fitting of cascaded shadows for a directional light.
+	 */
+	@Test
+	public void testCascades()
+	{
+		final ShadowFrustumFitter fitter = new ShadowFrustumFitter();
+		fitter.setCascadeCount( 3 );
+		fitter.setShadowMapSize( 1024 );
+		final List<ShadowCascade> cascades = fitter.fit( new DirectionalLight3D( Vector3D.normalize( 1.0, 1.0, -2.0 ) ), Matrix3D.IDENTITY, _scene2view, _projector, _nodes );
+		assertEquals( "Unexpected number of cascades.", 3, cascades.size() );
+
+		assertEquals( "First cascade should start at front clipping plane.", _projector.getFrontClipDistance(), cascades.get( 0 ).getNear(), 1.0e-9 );
+		assertEquals( "Last cascade should end at back clipping plane.", _projector.getBackClipDistance(), cascades.get( 2 ).getFar(), 1.0e-9 );
+		for ( int i = 1; i < cascades.size(); i++ )
+		{
+			assertEquals( "Cascades should be contiguous.", cascades.get( i - 1 ).getFar(), cascades.get( i ).getNear(), 1.0e-9 );
+			assertTrue( "Cascades should be ordered.", cascades.get( i ).getNear() > cascades.get( i - 1 ).getNear() );
+		}
+
+		for ( final ShadowCascade cascade : cascades )
+		{
+			assertFalse( "Far away box should not cast shadows.", cascade.getCasters().contains( _faraway ) );
+		}
+	}
+
+	/**
+	 * Tests that shadow projections keep the same texel size and are only
+	 * moved by whole texels when the camera moves.
+	 */
+	@Test
+	public void testTexelSnapping()
+	{
+		final ShadowFrustumFitter fitter = new ShadowFrustumFitter();
+		fitter.setShadowMapSize( 1024 );
+		fitter.setMaxDistance( 5000.0 );
+		final DirectionalLight3D light = new DirectionalLight3D( Vector3D.normalize( 1.0, 1.0, -2.0 ) );
+
+		double texelSize = Double.NaN;
+		for ( int i = 0; i < 5; i++ )
+		{
+			final Matrix3D scene2view = Matrix3D.getFromToTransform( new Vector3D( 37.3 * (double)i, -5000.0 + 11.1 * (double)i, 1000.0 ), new Vector3D( 0.0, 0.0, 5.7 * (double)i ), Vector3D.POSITIVE_Z_AXIS, Vector3D.POSITIVE_Y_AXIS );
+			final List<ShadowCascade> cascades = fitter.fit( light, Matrix3D.IDENTITY, scene2view, _projector, _nodes );
+			assertEquals( "Unexpected number of cascades.", 1, cascades.size() );
+
+			final Matrix4D projection = cascades.get( 0 ).getProjection();
+			final double width = 2.0 / projection.xx;
+			final double height = 2.0 / projection.yy;
+			assertEquals( "Shadow map should be square.", width, height, 1.0e-6 * width );
+			if ( i == 0 )
+			{
+				texelSize = width / 1024.0;
+			}
+			else
+			{
+				assertEquals( "Texel size should not change.", texelSize, width / 1024.0, 1.0e-9 * texelSize );
+			}
+
+			final double left = ( -1.0 - projection.xw ) / projection.xx / texelSize;
+			final double bottom = ( -1.0 - projection.yw ) / projection.yy / texelSize;
+			assertEquals( "Left edge should be on a texel boundary.", Math.rint( left ), left, 1.0e-6 );
+			assertEquals( "Bottom edge should be on a texel boundary.", Math.rint( bottom ), bottom, 1.0e-6 );
+			assertInClipVolume( cascades.get( 0 ).getSceneToClip(), _box );
+		}
+	}
+
+	/**
+	 * Tests that the texel size of a single cascade that covers a deep view
+	 * frustum is no larger than when fitting the shadow map to the bounds of
+	 * the entire scene, apart from the extra texel needed for snapping.
+	 */
+	@Test
+	public void testTexelSizeLimitedToScene()
+	{
+		final int shadowMapSize = 1024;
+		final Projector projector = Projector.createInstance( ProjectionPolicy.PERSPECTIVE, 800, 600, Scene.INCH / 96.0, Scene.MM, 100.0, 100000.0, Math.toRadians( 45.0 ), 1.0 );
+		final DirectionalLight3D light = new DirectionalLight3D( Vector3D.normalize( 1.0, 1.0, -2.0 ) );
+
+		final Scene scene = new Scene( Scene.MM );
+		scene.addContentNode( "floor", Matrix3D.getTranslation( -5000.0, -5000.0, -10.0 ), new Box3D( 10000.0, 10000.0, 10.0, null, null ) );
+		scene.addContentNode( _box );
+		scene.addContentNode( _overhead );
+
+		final ShadowFrustumFitter fitter = new ShadowFrustumFitter();
+		fitter.setShadowMapSize( shadowMapSize );
+		assertTrue( "Test requires infinite shadow distance.", Double.isInfinite( fitter.getMaxDistance() ) );
+		final List<ShadowCascade> cascades = fitter.fit( light, Matrix3D.IDENTITY, _scene2view, projector, scene.getContentNodes() );
+		assertEquals( "Unexpected number of cascades.", 1, cascades.size() );
+		final Matrix4D projection = cascades.get( 0 ).getProjection();
+		final double texelSize = 2.0 / projection.xx / (double)shadowMapSize;
+
+		/* Old fit: orthographic projection of the scene bounds. */
+		final Matrix3D sceneToLight = Matrix3D.getFromToTransform( Vector3D.ZERO, light.getDirection(), Vector3D.POSITIVE_Z_AXIS, Vector3D.POSITIVE_Y_AXIS );
+		final Bounds3D sceneBounds = GeometryTools.convertObbToAabb( sceneToLight, scene.getBounds() );
+		final double sceneTexelSize = Math.max( sceneBounds.sizeX(), sceneBounds.sizeY() ) / (double)shadowMapSize;
+
+		assertTrue( "Texel size " + texelSize + " should not exceed texel size of scene bounds fit " + sceneTexelSize, texelSize <= sceneTexelSize * (double)shadowMapSize / (double)( shadowMapSize - 1 ) + 1.0e-9 );
+		assertInClipVolume( cascades.get( 0 ).getSceneToClip(), _box );
+	}
+
+	/**
+	 * Tests fitting of a spot light shadow.
+	 */
+	@Test
+	public void testSpotLight()
+	{
+		final ShadowFrustumFitter fitter = new ShadowFrustumFitter();
+		final SpotLight3D light = new SpotLight3D( Vector3D.NEGATIVE_Z_AXIS, 30.0f );
+		final List<ShadowCascade> cascades = fitter.fit( light, Matrix3D.getTranslation( 0.0, 0.0, 5000.0 ), _scene2view, _projector, _nodes );
+		assertEquals( "Unexpected number of cascades.", 1, cascades.size() );
+
+		final ShadowCascade cascade = cascades.get( 0 );
+		final List<ContentNode> casters = cascade.getCasters();
+		assertTrue( "Box should cast shadows.", casters.contains( _box ) );
+		assertFalse( "Box behind light should not cast shadows.", casters.contains( _overhead ) );
+		assertFalse( "Far away box should not cast shadows.", casters.contains( _faraway ) );
+
+		assertInClipVolume( cascade.getSceneToClip(), _box );
+	}
+
+	/**
+	 * Tests that no shadows are fitted if nothing is visible.
+	 */
+	@Test
+	public void testNothingVisible()
+	{
+		final ShadowFrustumFitter fitter = new ShadowFrustumFitter();
+		final List<ShadowCascade> cascades = fitter.fit( new DirectionalLight3D( Vector3D.NEGATIVE_Z_AXIS ), Matrix3D.IDENTITY, _scene2view, _projector, Arrays.asList( _overhead, _faraway ) );
+		assertTrue( "Expected no cascades.", cascades.isEmpty() );
+	}
+
+	/**
+	 * Asserts that the bounds of the given node are inside the clip volume.
+	 *
+	 * @param sceneToClip Transformation from scene to clip coordinates.
+	 * @param node        Content node.
+	 */
+	private static void assertInClipVolume( final Matrix4D sceneToClip, final ContentNode node )
+	{
+		final Bounds3D bounds = node.getBounds();
+		final Matrix3D transform = node.getTransform();
+		for ( int i = 0; i < 8; i++ )
+		{
+			final Vector3D scenePoint = transform.transform( ( i & 1 ) == 0 ? bounds.v1.x : bounds.v2.x, ( i & 2 ) == 0 ? bounds.v1.y : bounds.v2.y, ( i & 4 ) == 0 ? bounds.v1.z : bounds.v2.z );
+			final Vector3D clip = sceneToClip.transform( scenePoint );
+			assertTrue( node.getID() + " should be inside clip volume: " + clip, ( Math.abs( clip.x ) <= 1.0 + 1.0e-9 ) && ( Math.abs( clip.y ) <= 1.0 + 1.0e-9 ) && ( Math.abs( clip.z ) <= 1.0 + 1.0e-9 ) );
+		}
+	}
+}
@@ -0,0 +1,328 @@
+/*
+ * AsoBrain 3D Toolkit
+ * Copyright (C) 1999-2022 Peter S. Heijnen
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package ab.j3d.view;
+
+import java.util.*;
+
+import ab.j3d.*;
+import ab.j3d.appearance.*;
+import ab.j3d.model.*;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * Unit test for {@link StaticBatcher}.
+ *
+ * @author Peter S. Heijnen
+ */
+public class TestStaticBatcher
+{
+	/**
+	 * Tests that face groups with the same appearance are merged and
+	 * transformed to scene coordinates.
+	 */
+	@Test
+	public void testMerge()
+	{
+		final List<ContentNode> nodes = Arrays.asList(
+			createBox( "red1", 0.0, BasicAppearances.RED ),
+			createBox( "red2", 100.0, BasicAppearances.RED ),
+			createBox( "red3", 200.0, BasicAppearances.RED ),
+			createBox( "green", 300.0, BasicAppearances.GREEN ) );
+
+		final StaticBatcher batcher = new StaticBatcher();
+		batcher.update( nodes );
+		for ( final ContentNode node : nodes )
+		{
+			assertTrue( "Node should be batched: " + node, batcher.isBatched( node ) );
+		}
+
+		final Collection<StaticBatcher.Batch> batches = batcher.getBatches();
+		assertEquals( "Unexpected number of batches.", 2, batches.size() );
+
+		final StaticBatcher.Batch red = findBatch( batcher, BasicAppearances.RED );
+		assertEquals( "Unexpected content nodes.", nodes.subList( 0, 3 ), red.getContentNodes() );
+		assertEquals( "Unexpected instance bounds.", Arrays.asList( new Bounds3D( 0.0, 0.0, 0.0, 50.0, 50.0, 50.0 ), new Bounds3D( 100.0, 0.0, 0.0, 150.0, 50.0, 50.0 ), new Bounds3D( 200.0, 0.0, 0.0, 250.0, 50.0, 50.0 ) ), red.getInstanceBounds() );
+		assertEquals( "Unexpected bounds.", new Bounds3D( 0.0, 0.0, 0.0, 250.0, 50.0, 50.0 ), red.getBounds() );
+
+		final Object3D object = red.getObject();
+		assertEquals( "Unexpected number of face groups.", 1, object.getFaceGroups().size() );
+		final FaceGroup faceGroup = object.getFaceGroups().get( 0 );
+		assertSame( "Unexpected appearance.", BasicAppearances.RED, faceGroup.getAppearance() );
+		assertEquals( "Unexpected number of faces.", 18, faceGroup.getFaces().size() );
+		assertEquals( "Unexpected merged bounds.", red.getBounds(), object.getOrientedBoundingBox() );
+
+		final Object3D box = (Object3D)nodes.get( 0 ).getNode3D();
+		final List<Face3D> boxFaces = box.getFaceGroups().get( 0 ).getFaces();
+		for ( int i = 0; i < boxFaces.size(); i++ )
+		{
+			final Face3D boxFace = boxFaces.get( i );
+			final Face3D mergedFace = faceGroup.getFaces().get( i + 12 );
+			assertEquals( "Unexpected normal.", boxFace.getNormal(), mergedFace.getNormal() );
+			assertEquals( "Unexpected vertex.", boxFace.getVertex( 0 ).point.plus( 200.0, 0.0, 0.0 ), mergedFace.getVertex( 0 ).point );
+		}
+
+		assertEquals( "Unexpected number of builds.", 1, batcher.getBuildCount() );
+		assertSame( "Object should be cached.", object, red.getObject() );
+		assertEquals( "Unexpected number of builds.", 1, batcher.getBuildCount() );
+	}
+
+	/**
+	 * Tests that only batches with changed content nodes are rebuilt.
+	 */
+	@Test
+	public void testInvalidation()
+	{
+		final ContentNode near1 = createBox( "near1", 0.0, BasicAppearances.RED );
+		final ContentNode near2 = createBox( "near2", 100.0, BasicAppearances.RED );
+		final ContentNode far1 = createBox( "far1", 5000.0, BasicAppearances.RED );
+		final ContentNode far2 = createBox( "far2", 5100.0, BasicAppearances.RED );
+
+		final StaticBatcher batcher = new StaticBatcher();
+		batcher.update( Arrays.asList( near1, near2, far1, far2 ) );
+		assertEquals( "Unexpected number of batches.", 2, batcher.getBatches().size() );
+		assertEquals( "Unexpected number of invalidated batches.", 2, batcher.getInvalidatedCount() );
+		final Map<StaticBatcher.Batch, Object3D> objects = buildAll( batcher );
+		assertEquals( "Unexpected number of builds.", 2, batcher.getBuildCount() );
+
+		batcher.update( Arrays.asList( near1, near2, far1, far2 ) );
+		assertEquals( "Unexpected number of invalidated batches.", 0, batcher.getInvalidatedCount() );
+		assertEquals( "Batches should not change.", objects, buildAll( batcher ) );
+		assertEquals( "Unexpected number of builds.", 0, batcher.getBuildCount() );
+
+		far2.setTransform( Matrix3D.getTranslation( 5200.0, 0.0, 0.0 ) );
+		batcher.update( Arrays.asList( near1, near2, far1, far2 ) );
+		assertEquals( "Unexpected number of invalidated batches.", 1, batcher.getInvalidatedCount() );
+		final Map<StaticBatcher.Batch, Object3D> updated = buildAll( batcher );
+		assertEquals( "Unexpected number of builds.", 1, batcher.getBuildCount() );
+		for ( final Map.Entry<StaticBatcher.Batch, Object3D> entry : updated.entrySet() )
+		{
+			final StaticBatcher.Batch batch = entry.getKey();
+			if ( batch.getContentNodes().contains( far2 ) )
+			{
+				assertNotSame( "Changed batch should be rebuilt.", objects.get( batch ), entry.getValue() );
+				assertEquals( "Unexpected bounds.", new Bounds3D( 5000.0, 0.0, 0.0, 5250.0, 50.0, 50.0 ), batch.getBounds() );
+			}
+			else
+			{
+				assertSame( "Unchanged batch should not be rebuilt.", objects.get( batch ), entry.getValue() );
+			}
+		}
+
+		near2.setNode3D( new Box3D( 50.0, 50.0, 50.0, null, BasicAppearances.GREEN ) );
+		batcher.update( Arrays.asList( near1, near2, far1, far2 ) );
+		assertEquals( "Unexpected number of invalidated batches.", 2, batcher.getInvalidatedCount() );
+		assertEquals( "Unexpected number of batches.", 3, batcher.getBatches().size() );
+
+		batcher.update( Arrays.asList( near2, far1, far2 ) );
+		assertEquals( "Unexpected number of invalidated batches.", 1, batcher.getInvalidatedCount() );
+		assertEquals( "Empty batch should be removed.", 2, batcher.getBatches().size() );
+		assertFalse( "Removed node should not be batched.", batcher.isBatched( near1 ) );
+	}
+
+	/**
+	 * Tests that normals remain perpendicular to their faces when a content
+	 * node with a non-uniform scale is batched.
+	 */
+	@Test
+	public void testNonUniformScale()
+	{
+		/* Face in the plane x + y = 0, with a normal of (1,1,0)/sqrt(2). */
+		final Object3DBuilder builder = new Object3DBuilder();
+		builder.addFace( new Vector3D[] { new Vector3D( 0.0, 0.0, 0.0 ), new Vector3D( 0.0, 0.0, 50.0 ), new Vector3D( -50.0, 50.0, 50.0 ), new Vector3D( -50.0, 50.0, 0.0 ) }, BasicAppearances.RED, true, false );
+		final Object3D object = builder.getObject3D();
+		final Face3D face = object.getFaceGroups().get( 0 ).getFaces().get( 0 );
+		final double sign = Math.signum( face.getNormal().x );
+		assertEquals( "Unexpected original normal.", new Vector3D( sign * Math.sqrt( 0.5 ), sign * Math.sqrt( 0.5 ), 0.0 ), face.getNormal() );
+
+		final ContentNode node = new ContentNode( "scaled", Matrix3D.getScaleTransform( 2.0, 1.0, 1.0 ), object );
+		final StaticBatcher batcher = new StaticBatcher();
+		batcher.update( Collections.singletonList( node ) );
+		assertTrue( "Node should be batched.", batcher.isBatched( node ) );
+
+		final Face3D merged = findBatch( batcher, BasicAppearances.RED ).getObject().getFaceGroups().get( 0 ).getFaces().get( 0 );
+		final Vector3D expected = new Vector3D( sign / Math.sqrt( 5.0 ), sign * 2.0 / Math.sqrt( 5.0 ), 0.0 );
+		assertTrue( "Unexpected face normal: " + merged.getNormal(), expected.almostEquals( merged.getNormal() ) );
+		for ( int i = 0; i < merged.getVertexCount(); i++ )
+		{
+			assertTrue( "Unexpected vertex normal: " + merged.getVertexNormal( i ), expected.almostEquals( merged.getVertexNormal( i ) ) );
+
+			final Vector3D edge = merged.getVertex( ( i + 1 ) % merged.getVertexCount() ).point.minus( merged.getVertex( i ).point );
+			assertEquals( "Normal should be perpendicular to edge " + i, 0.0, Vector3D.dot( merged.getNormal(), edge ), 1.0e-9 );
+		}
+	}
+
+	/**
+	 * Tests that batches are built from a scene snapshot, not from the
+	 * current state of the scene.
+	 */
+	@Test
+	public void testSnapshot()
+	{
+		final Scene scene = new Scene( Scene.MM );
+		final ContentNode moved = scene.addContentNode( createBox( "moved", 0.0, BasicAppearances.RED ) );
+		final ContentNode replaced = scene.addContentNode( createBox( "replaced", 100.0, BasicAppearances.RED ) );
+		final ContentNode excluded = scene.addContentNode( createBox( "excluded", 200.0, BasicAppearances.RED ) );
+		final SceneSnapshot snapshot = scene.getSnapshot();
+
+		moved.setTransform( Matrix3D.getTranslation( 5000.0, 0.0, 0.0 ) );
+		replaced.setNode3D( new Box3D( 10.0, 10.0, 10.0, null, BasicAppearances.RED ) );
+
+		final StaticBatcher batcher = new StaticBatcher();
+		batcher.update( snapshot, new HashSet<ContentNode>( Arrays.asList( moved, replaced ) ) );
+		assertTrue( "Moved node should be batched.", batcher.isBatched( moved ) );
+		assertTrue( "Replaced node should be batched.", batcher.isBatched( replaced ) );
+		assertFalse( "Excluded node should not be batched.", batcher.isBatched( excluded ) );
+
+		final StaticBatcher.Batch batch = findBatch( batcher, BasicAppearances.RED );
+		assertEquals( "Unexpected instance bounds.", Arrays.asList( new Bounds3D( 0.0, 0.0, 0.0, 50.0, 50.0, 50.0 ), new Bounds3D( 100.0, 0.0, 0.0, 150.0, 50.0, 50.0 ) ), batch.getInstanceBounds() );
+		assertEquals( "Unexpected merged bounds.", new Bounds3D( 0.0, 0.0, 0.0, 150.0, 50.0, 50.0 ), batch.getObject().getOrientedBoundingBox() );
+
+		batcher.update( scene.getSnapshot(), null );
+		assertTrue( "Excluded node should be batched when included.", batcher.isBatched( excluded ) );
+		final Set<Bounds3D> bounds = new HashSet<Bounds3D>();
+		for ( final StaticBatcher.Batch updated : batcher.getBatches() )
+		{
+			bounds.addAll( updated.getInstanceBounds() );
+		}
+		assertEquals( "Unexpected instance bounds after update.", new HashSet<Bounds3D>( Arrays.asList( new Bounds3D( 5000.0, 0.0, 0.0, 5050.0, 50.0, 50.0 ), new Bounds3D( 100.0, 0.0, 0.0, 110.0, 10.0, 10.0 ), new Bounds3D( 200.0, 0.0, 0.0, 250.0, 50.0, 50.0 ) ) ), bounds );
+	}
+
+	/**
+	 * Tests which content nodes are batched.
+	 */
+	@Test
+	public void testEligibility()
+	{
+		final StaticBatcher batcher = new StaticBatcher();
+		batcher.setMaximumFaceCount( 4 );
+
+		final ContentNode large = createBox( "large", 0.0, BasicAppearances.RED );
+		final ContentNode forced = createBox( "forced", 100.0, BasicAppearances.RED );
+		forced.getNode3D().setProperty( StaticBatcher.BATCHING_PROPERTY, true );
+		final ContentNode mirrored = new ContentNode( "mirrored", Matrix3D.getScaleTransform( -1.0, 1.0, 1.0 ).plus( 200.0, 0.0, 0.0 ), new Box3D( 50.0, 50.0, 50.0, null, BasicAppearances.RED ) );
+		mirrored.getNode3D().setProperty( StaticBatcher.BATCHING_PROPERTY, true );
+
+		batcher.update( Arrays.asList( large, forced, mirrored ) );
+		assertFalse( "Large node should not be batched.", batcher.isBatched( large ) );
+		assertTrue( "Forced node should be batched.", batcher.isBatched( forced ) );
+		assertFalse( "Mirrored node should not be batched.", batcher.isBatched( mirrored ) );
+
+		batcher.setMaximumFaceCount( 256 );
+		final ContentNode excluded = createBox( "excluded", 300.0, BasicAppearances.RED );
+		excluded.getNode3D().setProperty( StaticBatcher.BATCHING_PROPERTY, false );
+
+		batcher.update( Arrays.asList( large, excluded ) );
+		assertTrue( "Small node should be batched.", batcher.isBatched( large ) );
+		assertFalse( "Excluded node should not be batched.", batcher.isBatched( excluded ) );
+	}
+
+	/**
+	 * Tests culling of batches using the bounds of their instances.
+	 */
+	@Test
+	public void testVisibleBatches()
+	{
+		final Matrix3D scene2view = Matrix3D.getFromToTransform( new Vector3D( 0.0, -5000.0, 0.0 ), Vector3D.ZERO, Vector3D.POSITIVE_Z_AXIS, Vector3D.POSITIVE_Y_AXIS );
+		final Projector projector = Projector.createInstance( ProjectionPolicy.PERSPECTIVE, 800, 600, Scene.INCH / 96.0, Scene.MM, 100.0, 20000.0, Math.toRadians( 45.0 ), 1.0 );
+		final FrustumCuller culler = new FrustumCuller();
+		culler.beginFrame( projector, scene2view );
+
+		final ContentNode visible = createBox( "visible", 0.0, BasicAppearances.RED );
+		final ContentNode behind = new ContentNode( "behind", Matrix3D.getTranslation( 0.0, -10000.0, 0.0 ), new Box3D( 50.0, 50.0, 50.0, null, BasicAppearances.RED ) );
+		final ContentNode noShadow = createBox( "noShadow", 100.0, BasicAppearances.GREEN );
+		noShadow.setCastingShadows( false );
+
+		final StaticBatcher batcher = new StaticBatcher();
+		batcher.update( Arrays.asList( visible, behind, noShadow ) );
+		assertEquals( "Unexpected number of batches.", 3, batcher.getBatches().size() );
+
+		final List<StaticBatcher.Batch> all = batcher.getVisibleBatches( null, null, false );
+		assertEquals( "Unexpected number of batches.", 3, all.size() );
+
+		final List<StaticBatcher.Batch> inFrustum = batcher.getVisibleBatches( culler, null, false );
+		assertEquals( "Unexpected number of visible batches.", 2, inFrustum.size() );
+		for ( final StaticBatcher.Batch batch : inFrustum )
+		{
+			assertFalse( "Batch behind camera should be culled.", batch.getContentNodes().contains( behind ) );
+		}
+
+		final List<StaticBatcher.Batch> casters = batcher.getVisibleBatches( null, null, true );
+		assertEquals( "Unexpected number of shadow casters.", 2, casters.size() );
+		for ( final StaticBatcher.Batch batch : casters )
+		{
+			assertFalse( "Batch without shadows should be skipped.", batch.getContentNodes().contains( noShadow ) );
+		}
+		culler.endFrame();
+	}
+
+	/**
+	 * Creates a content node with a small box.
+	 *
+	 * @param id         ID of content node.
+	 * @param x          X coordinate of the box.
+	 * @param appearance Appearance of the box.
+	 *
+	 * @return Content node.
+	 */
+	private static ContentNode createBox( final String id, final double x, final Appearance appearance )
+	{
+		return new ContentNode( id, Matrix3D.getTranslation( x, 0.0, 0.0 ), new Box3D( 50.0, 50.0, 50.0, null, appearance ) );
+	}
+
+	/**
+	 * Finds the batch with the given appearance.
+	 *
+	 * @param batcher    Batcher to search.
+	 * @param appearance Appearance to find.
+	 *
+	 * @return Batch with the given appearance.
+	 */
+	private static StaticBatcher.Batch findBatch( final StaticBatcher batcher, final Appearance appearance )
+	{
+		StaticBatcher.Batch result = null;
+		for ( final StaticBatcher.Batch batch : batcher.getBatches() )
+		{
+			if ( batch.getAppearance() == appearance )
+			{
+				assertNull( "Multiple batches with appearance: " + appearance, result );
+				result = batch;
+			}
+		}
+		assertNotNull( "No batch with appearance: " + appearance, result );
+		return result;
+	}
+
+	/**
+	 * Builds the merged objects of all batches.
+	 *
+	 * @param batcher Batcher to build.
+	 *
+	 * @return Merged object per batch.
+	 */
+	private static Map<StaticBatcher.Batch, Object3D> buildAll( final StaticBatcher batcher )
+	{
+		final Map<StaticBatcher.Batch, Object3D> result = new IdentityHashMap<StaticBatcher.Batch, Object3D>();
+		for ( final StaticBatcher.Batch batch : batcher.getBatches() )
+		{
+			result.put( batch, batch.getObject() );
+		}
+		return result;
+	}
+}
@@ -21,6 +21,10 @@
  */
 package ab.j3d.awt.view.jogl;
 
+import java.nio.*;
+
+import org.jetbrains.annotations.*;
+
 /**
  * Stores geometry in such a way that it can be rendered efficiently.
  *
@@ -34,6 +38,19 @@ public interface GeometryObject
 	 */
 	void draw();
 
+	/**
+	 * Draws the geometry represented by this object once for each of the
+	 * given matrices. Each matrix replaces the current model-view matrix, so
+	 * it must include the transformation from the scene to the view. The
+	 * model-view matrix is left undefined afterwards.
+	 *
+	 * @param matrices      Object-to-view matrices, 16 floats per instance
+	 *                      in column-major order (see
+	 *                      {@link ab.j3d.view.InstanceGrouper}).
+	 * @param instanceCount Number of instances to draw.
+	 */
+	void drawInstances( @NotNull FloatBuffer matrices, int instanceCount );
+
 	/**
 	 * Deletes the resources allocated for this object.
 	 */
@@ -18,12 +18,14 @@
  */
 package ab.j3d.awt.view.jogl;
 
+import java.nio.*;
 import java.util.*;
 
 import ab.j3d.*;
 import ab.j3d.appearance.*;
 import ab.j3d.geom.*;
 import ab.j3d.model.*;
+import ab.j3d.view.*;
 import com.jogamp.opengl.*;
 import com.jogamp.opengl.glu.*;
 import org.jetbrains.annotations.*;
@@ -78,6 +80,19 @@ public class ImmediateModeGeometryObject
 		}
 	}
 
+	public void drawInstances( @NotNull final FloatBuffer matrices, final int instanceCount )
+	{
+		final GL2 gl2 = GLU.getCurrentGL().getGL2();
+		final int start = matrices.position();
+		for ( int i = 0; i < instanceCount; i++ )
+		{
+			matrices.position( start + i * InstanceGrouper.MATRIX_SIZE );
+			gl2.glLoadMatrixf( matrices );
+			draw();
+		}
+		matrices.position( start );
+	}
+
 	/**
 	 * Draws the face groups as faces.
 	 */
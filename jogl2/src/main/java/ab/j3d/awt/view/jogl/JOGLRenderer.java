@@ -139,6 +139,27 @@ public class JOGLRenderer
 	 */
 	private boolean _shadowPass;
 
+	/**
+	 * Occlusion culler for the current frame; {@code null} if occlusion
+	 * culling is disabled.
+	 */
+	@Nullable
+	private OcclusionCuller _occlusionCuller = null;
+
+	/**
+	 * Static batcher for the current frame; {@code null} if static batching
+	 * is disabled.
+	 */
+	@Nullable
+	private StaticBatcher _staticBatcher = null;
+
+	/**
+	 * Groups instances of objects outside of shadow passes. This is kept
+	 * across passes and frames, so packed instance matrices are reused while
+	 * the view and the instances do not change.
+	 */
+	private final InstanceGrouper<StyledObject3D> _instanceGrouper = new InstanceGrouper<StyledObject3D>();
+
 	/**
 	 * Framebuffer for multi-pass rendering.
 	 */
@@ -155,11 +176,24 @@ public class JOGLRenderer
 	 */
 	private static final boolean DEBUG_RENDER_SHADOW_MAP = false;
 
+	/**
+	 * Maximum distance from the camera for which shadows are rendered, in
+	 * meters. The shaders support only a single shadow map, which must cover
+	 * the view up to this distance, so a larger distance gives blurrier
+	 * shadows.
+	 */
+	private static final double SHADOW_DISTANCE = 50.0;
+
 	/**
 	 * Shadow map instance, reused to render all shadow maps.
 	 */
 	private ShadowMap _shadowMap;
 
+	/**
+	 * Fits shadow map projections to the visible part of the scene.
+	 */
+	private final ShadowFrustumFitter _shadowFrustumFitter;
+
 	/**
 	 * Indicates whether the first lighting pass is currently being rendered.
 	 * Always {@code true} when using single-pass lighting.
@@ -204,12 +238,30 @@ public class JOGLRenderer
 	 */
 	private boolean _multiPassReflectionsDisabled;
 
+	/**
+	 * Whether shadows, reflections and multi-pass lighting may be used. This
+	 * is cleared to render cheaper frames while the camera moves.
+	 */
+	private boolean _effectsEnabled = true;
+
+	/**
+	 * Factor applied to the low-detail thresholds of objects. Values above 1
+	 * cause low-detail objects to be used more eagerly.
+	 */
+	private double _levelOfDetailScale = 1.0;
+
 	/**
 	 * Keeps track of various statistics about the rendering process.
 	 */
 	@Nullable
 	private RenderStatistics _statistics;
 
+	/**
+	 * Measures where time is spent while rendering frames.
+	 */
+	@NotNull
+	private final RenderMetrics _metrics;
+
 	/**
 	 * Environment map for {@link #renderEnvironment()}.
 	 */
@@ -243,7 +295,12 @@ public class JOGLRenderer
 		_shadowMap = null;
 		_shadowPass = false;
 
+		final ShadowFrustumFitter shadowFrustumFitter = new ShadowFrustumFitter();
+		shadowFrustumFitter.setShadowMapSize( _shadowSize );
+		_shadowFrustumFitter = shadowFrustumFitter;
+
 		_statistics = null;
+		_metrics = ( view != null ) ? view.getRenderMetrics() : new RenderMetrics();
 
 		final GeometryObjectFactory geometryObjectFactory = new GeometryObjectFactory();
 		if ( !configuration.isVertexBufferObjectsEnabled() )
@@ -366,6 +423,47 @@ public class JOGLRenderer
 		return _shaderManager;
 	}
 
+	/**
+	 * Returns whether shadows, reflections and multi-pass lighting may be used.
+	 *
+	 * @return {@code true} if effects may be used.
+	 */
+	public boolean isEffectsEnabled()
+	{
+		return _effectsEnabled;
+	}
+
+	/**
+	 * Sets whether shadows, reflections and multi-pass lighting may be used.
+	 * These are only used if also enabled in the configuration.
+	 *
+	 * @param effectsEnabled Whether effects may be used.
+	 */
+	public void setEffectsEnabled( final boolean effectsEnabled )
+	{
+		_effectsEnabled = effectsEnabled;
+	}
+
+	/**
+	 * Returns the factor applied to the low-detail thresholds of objects.
+	 *
+	 * @return Low-detail threshold factor.
+	 */
+	public double getLevelOfDetailScale()
+	{
+		return _levelOfDetailScale;
+	}
+
+	/**
+	 * Sets the factor applied to the low-detail thresholds of objects.
+	 *
+	 * @param levelOfDetailScale Low-detail threshold factor.
+	 */
+	public void setLevelOfDetailScale( final double levelOfDetailScale )
+	{
+		_levelOfDetailScale = levelOfDetailScale;
+	}
+
 	/**
 	 * Returns statistics about the rendering process. Statistics are only kept
 	 * once this method has been called.
@@ -394,6 +492,7 @@ public class JOGLRenderer
 	private boolean isReflectionsEnabled()
 	{
 		return !_multiPassReflectionsDisabled &&
+		       _effectsEnabled &&
 		       _configuration.isReflectionMapsEnabled() &&
 		       _capabilities.isCubeMapSupported() &&
 		       _capabilities.getMaxTextureUnits() >= 3;
@@ -406,7 +505,8 @@ public class JOGLRenderer
 	 */
 	private boolean isMultiPassLightingEnabled()
 	{
-		return _shaderManager.isShaderSupportAvailable() &&
+		return _effectsEnabled &&
+		       _shaderManager.isShaderSupportAvailable() &&
 		       _configuration.isShadowEnabled() &&
 		       _capabilities.isNonPowerOfTwoSupported() &&
 		       _capabilities.isTextureRectangleSupported();
@@ -477,10 +577,52 @@ public class JOGLRenderer
 	public void renderScene( final Scene scene, final Collection<RenderStyleFilter> styleFilters, final RenderStyle sceneStyle, final Background background, final Grid grid )
 	{
 		final RenderStatistics statistics = _statistics;
+		final RenderMetrics metrics = _metrics;
+		metrics.beginFrame();
+
+		/*
+		 * Render a consistent snapshot of the scene, which may be modified
+		 * by other threads during rendering.
+		 */
+		final SceneSnapshot snapshot = scene.getSnapshot();
 
 		_state = createGLStateHelper( _gl );
 
-		final boolean hasLights = !scene.walk( new Node3DVisitor()
+		final View3D view = _view;
+		final FrustumCuller culler = view.getFrustumCuller();
+		culler.beginFrame( view.getProjector(), _sceneToView );
+		if ( !view.isViewFrustumCulling() )
+		{
+			culler.disable();
+		}
+
+		if ( view.isOcclusionCulling() )
+		{
+			final long cullingStart = metrics.startPhase();
+			final OcclusionCuller occlusionCuller = view.getOcclusionCuller();
+			occlusionCuller.render( view.getProjector(), _sceneToView, snapshot, styleFilters, sceneStyle );
+			_occlusionCuller = occlusionCuller;
+			metrics.endPhase( RenderPhase.CULLING, cullingStart );
+		}
+		else
+		{
+			_occlusionCuller = null;
+		}
+
+		if ( view.isStaticBatching() )
+		{
+			final long batchingStart = metrics.startPhase();
+			final StaticBatcher staticBatcher = view.getStaticBatcher();
+			staticBatcher.update( snapshot, getBatchCandidates( snapshot, styleFilters, sceneStyle ) );
+			_staticBatcher = staticBatcher;
+			metrics.endPhase( RenderPhase.SCENE_WALK, batchingStart );
+		}
+		else
+		{
+			_staticBatcher = null;
+		}
+
+		final boolean hasLights = !snapshot.walk( new Node3DVisitor()
 		{
 			@Override
 			public boolean visitNode( @NotNull final Node3DPath path )
@@ -491,11 +633,11 @@ public class JOGLRenderer
 
 		if ( hasLights && isMultiPassLightingEnabled() )
 		{
-			renderSceneMultiPass( scene, styleFilters, sceneStyle, background, grid );
+			renderSceneMultiPass( scene, snapshot, styleFilters, sceneStyle, background, grid );
 		}
 		else
 		{
-			renderSceneSinglePass( scene, styleFilters, sceneStyle, background, grid );
+			renderSceneSinglePass( scene, snapshot, styleFilters, sceneStyle, background, grid );
 		}
 
 		if ( statistics != null )
@@ -504,18 +646,22 @@ public class JOGLRenderer
 		}
 
 		_geometryObjectManager.frameRendered();
+
+		culler.endFrame();
+		metrics.endFrame();
 	}
 
 	/**
 	 * Render a scene, with lights rendered in multiple passes.
 	 *
 	 * @param scene        Scene to be rendered.
+	 * @param snapshot     Snapshot of the scene to be rendered.
 	 * @param styleFilters Style filters to apply.
 	 * @param sceneStyle   Render style to use as base for scene.
 	 * @param background   Background to be rendered.
 	 * @param grid         Grid to be rendered (when enabled).
 	 */
-	private void renderSceneMultiPass( final Scene scene, final Collection<RenderStyleFilter> styleFilters, final RenderStyle sceneStyle, final Background background, final Grid grid )
+	private void renderSceneMultiPass( final Scene scene, final SceneSnapshot snapshot, final Collection<RenderStyleFilter> styleFilters, final RenderStyle sceneStyle, final Background background, final Grid grid )
 	{
 		final GL gl = _gl;
 		final GLStateHelper state = _state;
@@ -562,7 +708,7 @@ public class JOGLRenderer
 		 * Render scene per light.
 		 */
 		final Node3DCollector lightCollector = new Node3DCollector( Light3D.class );
-		scene.walk( lightCollector );
+		snapshot.walk( lightCollector );
 		final List<Node3DPath> lightPaths = lightCollector.getCollectedNodes();
 		if ( lightPaths.isEmpty() )
 		{
@@ -581,7 +727,16 @@ public class JOGLRenderer
 			final Node3DPath path = lightPaths.get( i );
 			final Light3D light = (Light3D)path.getNode();
 			final Matrix3D lightTransform = path.getTransform();
-			final boolean castingShadows = shaderManager.isShaderSupportAvailable() && _configuration.isShadowEnabled() && light.isCastingShadows();
+			final boolean shadowsEnabled = shaderManager.isShaderSupportAvailable() && _configuration.isShadowEnabled() && light.isCastingShadows();
+
+			/*
+			 * Fit shadow projection to the visible part of the scene. Only a
+			 * single shadow map is supported by the shaders, so cascades
+			 * are not used, and shadows are limited to a maximum distance.
+			 */
+			_shadowFrustumFitter.setMaxDistance( SHADOW_DISTANCE / scene.getUnit() );
+			final List<ShadowCascade> cascades = shadowsEnabled ? _shadowFrustumFitter.fit( light, lightTransform, _sceneToView, _view.getProjector(), snapshot.getContentNodes() ) : Collections.<ShadowCascade>emptyList();
+			final boolean castingShadows = !cascades.isEmpty();
 
 			/*
 			 * Shadow mapping pass (optional).
@@ -597,15 +752,18 @@ public class JOGLRenderer
 					_shadowMap = shadowMap;
 				}
 
+				final long shadowPassStart = _metrics.startPhase();
+				final ShadowCascade cascade = cascades.get( 0 );
 				shadowMap.setLight( light, lightTransform );
-				shadowMap.begin( gl, scene );
+				shadowMap.begin( gl, cascade );
 
-				// Render to depth texture.
+				// Render shadow casters to depth texture.
 				_shadowPass = true;
-				renderContentNodes( scene.getContentNodes(), styleFilters, sceneStyle );
+				renderContentNodes( snapshot, new HashSet<ContentNode>( cascade.getCasters() ), styleFilters, sceneStyle );
 				_shadowPass = false;
 
 				shadowMap.end( gl );
+				_metrics.endPhase( RenderPhase.SHADOW_PASS, shadowPassStart );
 			}
 
 			/*
@@ -672,7 +830,7 @@ public class JOGLRenderer
 			 */
 			renderLight( GLLightingFunc.GL_LIGHT0, light, lightTransform );
 			shaderManager.setShadowsEnabled( castingShadows );
-			renderContentNodes( scene.getContentNodes(), styleFilters, sceneStyle );
+			renderContentNodes( snapshot, null, styleFilters, sceneStyle );
 
 			/*
 			 * Add previous rendering passes.
@@ -749,12 +907,13 @@ public class JOGLRenderer
 	 * Render a scene, with lights rendered in multiple passes.
 	 *
 	 * @param scene        Scene to be rendered.
+	 * @param snapshot     Snapshot of the scene to be rendered.
 	 * @param styleFilters Style filters to apply.
 	 * @param sceneStyle   Render style to use as base for scene.
 	 * @param background   Background to be rendered.
 	 * @param grid         Grid to be rendered (when enabled).
 	 */
-	private void renderSceneSinglePass( final Scene scene, final Collection<RenderStyleFilter> styleFilters, final RenderStyle sceneStyle, final Background background, final Grid grid )
+	private void renderSceneSinglePass( final Scene scene, final SceneSnapshot snapshot, final Collection<RenderStyleFilter> styleFilters, final RenderStyle sceneStyle, final Background background, final Grid grid )
 	{
 		// TODO: Support single-pass shadow mapping.
 
@@ -793,7 +952,7 @@ public class JOGLRenderer
 		/*
 		 * Enable lights.
 		 */
-		scene.walk( new Node3DVisitor()
+		snapshot.walk( new Node3DVisitor()
 		{
 			/**
 			 * Current light number(0=first).
@@ -833,7 +992,7 @@ public class JOGLRenderer
 		gl2.glMatrixMode( GLMatrixFunc.GL_MODELVIEW );
 		gl2.glLoadIdentity();
 		JOGLTools.glMultMatrixd( gl, _sceneToView );
-		renderContentNodes( scene.getContentNodes(), styleFilters, sceneStyle );
+		renderContentNodes( snapshot, null, styleFilters, sceneStyle );
 
 		/*
 		 * Render grid.
@@ -1027,13 +1186,15 @@ public class JOGLRenderer
 	}
 
 	/**
-	 * Renders the given content nodes applying render styles as specified.
+	 * Renders content nodes from the given snapshot applying render styles as
+	 * specified.
 	 *
-	 * @param nodes        Nodes to be rendered.
+	 * @param snapshot     Snapshot of the scene to be rendered.
+	 * @param include      Content nodes to be rendered; {@code null} for all.
 	 * @param styleFilters Render style filters to be applied.
 	 * @param sceneStyle   Base render style for the entire scene.
 	 */
-	private void renderContentNodes( final List<ContentNode> nodes, final Collection<RenderStyleFilter> styleFilters, final RenderStyle sceneStyle )
+	private void renderContentNodes( final SceneSnapshot snapshot, @Nullable final Set<ContentNode> include, final Collection<RenderStyleFilter> styleFilters, final RenderStyle sceneStyle )
 	{
 		final GL gl = _gl;
 
@@ -1044,7 +1205,7 @@ public class JOGLRenderer
 			gl.glCullFace( GL.GL_FRONT );
 
 			_renderMode = MultiPassRenderMode.ALL;
-			renderObjects( nodes, styleFilters, sceneStyle );
+			renderObjects( snapshot, include, styleFilters, sceneStyle );
 		}
 		else
 		{
@@ -1053,40 +1214,100 @@ public class JOGLRenderer
 			_shaderManager.enable();
 
 			_renderMode = MultiPassRenderMode.OPAQUE_ONLY;
-			renderObjects( nodes, styleFilters, sceneStyle );
+			renderObjects( snapshot, include, styleFilters, sceneStyle );
 
 			_renderMode = MultiPassRenderMode.TRANSPARENT_ONLY;
-			renderObjects( nodes, styleFilters, sceneStyle );
+			renderObjects( snapshot, include, styleFilters, sceneStyle );
 
 			_shaderManager.disable();
 		}
 	}
 
 	/**
-	 * Render objects in scene.
+	 * Returns the content nodes that may be batched. Nodes are only batched
+	 * if style filters do not change the style of the node or any of its
+	 * objects, because batches are rendered using the scene style. Nodes
+	 * whose content was replaced after the snapshot was taken are not
+	 * batched, because their objects can not be checked.
+	 *
+	 * @param snapshot     Snapshot of the scene.
+	 * @param styleFilters Style filters to apply.
+	 * @param sceneStyle   Render style to use as base for scene.
+	 *
+	 * @return Content nodes that may be batched.
+	 */
+	private static Set<ContentNode> getBatchCandidates( final SceneSnapshot snapshot, final Collection<RenderStyleFilter> styleFilters, final RenderStyle sceneStyle )
+	{
+		final List<ContentNode> nodes = snapshot.getContentNodes();
+		final Set<ContentNode> result = new HashSet<ContentNode>( nodes.size() );
+		for ( int i = 0; i < nodes.size(); i++ )
+		{
+			final ContentNode node = nodes.get( i );
+			final RenderStyle nodeStyle = sceneStyle.applyFilters( styleFilters, node );
+			//noinspection ObjectEquality
+			boolean candidate = ( node.getNode3D() == snapshot.getNode3D( i ) ) && nodeStyle.equals( sceneStyle );
+			for ( final Iterator<Node3DPath> it = node.getContent().iterator(); candidate && it.hasNext(); )
+			{
+				candidate = nodeStyle.applyFilters( styleFilters, it.next() ).equals( sceneStyle );
+			}
+
+			if ( candidate )
+			{
+				result.add( node );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Render objects in scene. Content nodes are rendered using the transform
+	 * and content recorded in the snapshot, so changes to the scene made
+	 * while rendering do not affect the rendered frame.
 	 *
-	 * @param nodes        Nodes in the scene.
+	 * @param snapshot     Snapshot of the scene.
+	 * @param include      Content nodes to be rendered; {@code null} for all.
 	 * @param styleFilters Style filters to apply.
 	 * @param sceneStyle   Render style to use as base for scene.
 	 */
-	private void renderObjects( final List<ContentNode> nodes, final Collection<RenderStyleFilter> styleFilters, final RenderStyle sceneStyle )
+	private void renderObjects( final SceneSnapshot snapshot, @Nullable final Set<ContentNode> include, final Collection<RenderStyleFilter> styleFilters, final RenderStyle sceneStyle )
 	{
 		final boolean shadowPass = _shadowPass;
+		final OcclusionCuller occlusionCuller = shadowPass ? null : _occlusionCuller;
+		final StaticBatcher staticBatcher = _staticBatcher;
+		final RenderMetrics metrics = _metrics;
 
-		final Map<StyledObject3D, List<Node3DPath>> objectPathsByGroup = new LinkedHashMap<StyledObject3D, List<Node3DPath>>();
+		final long sceneWalkStart = metrics.startPhase();
+		final InstanceGrouper<StyledObject3D> instanceGrouper = shadowPass ? new InstanceGrouper<StyledObject3D>() : _instanceGrouper;
 		final Map<JOGLNode3D, List<Node3DPath>> renderNodes = new LinkedHashMap<JOGLNode3D, List<Node3DPath>>();
 
-		for ( final ContentNode node : nodes )
+		final List<ContentNode> nodes = snapshot.getContentNodes();
+		for ( int i = 0; i < nodes.size(); i++ )
 		{
+			final ContentNode node = nodes.get( i );
+			if ( ( include != null ) && !include.contains( node ) )
+			{
+				continue;
+			}
+
 			if ( shadowPass && !node.isCastingShadows() )
 			{
 				continue;
 			}
 
+			if ( ( occlusionCuller != null ) && occlusionCuller.isOccluded( node ) )
+			{
+				continue;
+			}
+
+			if ( ( staticBatcher != null ) && staticBatcher.isBatched( node ) )
+			{
+				continue;
+			}
+
 			final RenderStyle nodeStyle = sceneStyle.applyFilters( styleFilters, node );
 
-			final Node3DTreeWalker treeWalker = new LevelOfDetailTreeWalker();
-			treeWalker.walkNode( new Node3DVisitor()
+			final LevelOfDetailTreeWalker treeWalker = new LevelOfDetailTreeWalker( shadowPass ? null : _view.getFrustumCuller() );
+			treeWalker.walkContentNode( new Node3DVisitor()
 			{
 				@Override
 				public boolean visitNode( @NotNull final Node3DPath path )
@@ -1096,23 +1317,8 @@ public class JOGLRenderer
 					{
 						final Object3D object = (Object3D)node;
 
-						final View3D view = _view;
-						final boolean visibleByCamera = view.isVisible( path.getTransform(), object );
-
-						if ( shadowPass || visibleByCamera )
-						{
-							final RenderStyle objectStyle = nodeStyle.applyFilters( styleFilters, path );
-							final StyledObject3D key = new StyledObject3D( object, objectStyle );
-
-							List<Node3DPath> paths = objectPathsByGroup.get( key );
-							if ( paths == null )
-							{
-								paths = new ArrayList<Node3DPath>();
-								objectPathsByGroup.put( key, paths );
-							}
-
-							paths.add( path );
-						}
+						final RenderStyle objectStyle = nodeStyle.applyFilters( styleFilters, path );
+						instanceGrouper.add( new StyledObject3D( object, objectStyle ), path );
 					}
 					else if ( node instanceof JOGLNode3D )
 					{
@@ -1129,15 +1335,26 @@ public class JOGLRenderer
 					}
 					return true;
 				}
-			}, node.getTransform(), node.getNode3D() );
+			}, snapshot, i );
 		}
 
-		for ( final Map.Entry<StyledObject3D, List<Node3DPath>> objectGroupEntry : objectPathsByGroup.entrySet() )
+		if ( staticBatcher != null )
 		{
-			final StyledObject3D objectGroup = objectGroupEntry.getKey();
-			final List<Node3DPath> paths = objectGroupEntry.getValue();
-			renderObject( objectGroup.getObject(), paths, objectGroup.getRenderStyle() );
+			for ( final StaticBatcher.Batch batch : staticBatcher.getVisibleBatches( shadowPass ? null : _view.getFrustumCuller(), occlusionCuller, shadowPass ) )
+			{
+				final Object3D object = batch.getObject();
+				instanceGrouper.add( new StyledObject3D( object, sceneStyle ), new Node3DPath( null, Matrix3D.IDENTITY, object ) );
+			}
+		}
+		metrics.endPhase( RenderPhase.SCENE_WALK, sceneWalkStart );
+
+		final long drawStart = metrics.startPhase();
+		for ( final InstanceGrouper.InstanceList<StyledObject3D> instances : instanceGrouper.getInstanceLists() )
+		{
+			final StyledObject3D objectGroup = instances.getKey();
+			renderObject( objectGroup.getObject(), instances, objectGroup.getRenderStyle() );
 		}
+		instanceGrouper.clear();
 
 		final GL gl = _gl;
 		final GL2 gl2 = gl.getGL2();
@@ -1156,7 +1373,62 @@ public class JOGLRenderer
 				node.render( gl, state, shaderManager );
 				gl2.glPopMatrix();
 			}
+			metrics.addDrawCallCount( paths.size() );
+		}
+		metrics.endPhase( RenderPhase.DRAW, drawStart );
+	}
+
+	/**
+	 * Draws a geometry object for each of the given instances. Outside of
+	 * shadow passes, the model-view matrix is the scene-to-view transform, so
+	 * the packed object-to-view matrices of all instances are submitted at
+	 * once. While rendering shadow maps, the light's transform is used instead,
+	 * so each instance transform is applied separately.
+	 *
+	 * @param geometryObject Geometry object to draw.
+	 * @param instances      Instances to draw.
+	 */
+	private void drawInstances( @NotNull final GeometryObject geometryObject, @NotNull final InstanceGrouper.InstanceList<?> instances )
+	{
+		final GL gl = _gl;
+		final GL2 gl2 = gl.getGL2();
+
+		if ( _shadowPass )
+		{
+			for ( final Node3DPath path : instances.getPaths() )
+			{
+				gl2.glPushMatrix();
+				JOGLTools.glMultMatrixd( gl, path.getTransform() );
+				geometryObject.draw();
+				gl2.glPopMatrix();
+			}
 		}
+		else
+		{
+			gl2.glPushMatrix();
+			geometryObject.drawInstances( instances.getMatrices( _sceneToView ), instances.size() );
+			gl2.glPopMatrix();
+		}
+
+		_metrics.addDrawCallCount( instances.size() );
+	}
+
+	/**
+	 * Returns the geometry object of the given type for the given face group,
+	 * creating it if needed.
+	 *
+	 * @param faceGroup Face group to get geometry for.
+	 * @param type      Type of geometry.
+	 *
+	 * @return Geometry object.
+	 */
+	private GeometryObject getGeometryObject( @NotNull final FaceGroup faceGroup, @NotNull final GeometryType type )
+	{
+		final RenderMetrics metrics = _metrics;
+		final long start = metrics.startPhase();
+		final GeometryObject result = _geometryObjectManager.getGeometryObject( faceGroup, type );
+		metrics.endPhase( RenderPhase.GEOMETRY_UPLOAD, start );
+		return result;
 	}
 
 	/**
@@ -1362,10 +1634,10 @@ public class JOGLRenderer
 	 * Renders the given object.
 	 *
 	 * @param object      Object to be rendered.
-	 * @param paths       Node paths to the object.
+	 * @param instances   Instances of the object.
 	 * @param objectStyle Render style applied to the object.
 	 */
-	private void renderObject( final Object3D object, final List<Node3DPath> paths, final RenderStyle objectStyle )
+	private void renderObject( final Object3D object, final InstanceGrouper.InstanceList<?> instances, final RenderStyle objectStyle )
 	{
 		final boolean anyMaterialEnabled = objectStyle.isMaterialEnabled();
 		final boolean anyFillEnabled = objectStyle.isFillEnabled() && ( objectStyle.getFillColor() != null );
@@ -1377,28 +1649,30 @@ public class JOGLRenderer
 			final RenderStatistics statistics = _statistics;
 			if ( statistics != null )
 			{
-				statistics.objectRendered( object, paths.size() );
+				statistics.objectRendered( object, instances.size() );
 			}
 
+			_metrics.addObjectCount( instances.size() );
+
 			if ( anyMaterialEnabled )
 			{
-				renderObjectMaterial( object, paths, objectStyle );
+				renderObjectMaterial( object, instances, objectStyle );
 			}
 			else if ( anyFillEnabled )
 			{
-				renderObjectFilled( object, paths, objectStyle );
+				renderObjectFilled( object, instances, objectStyle );
 			}
 
 			if ( !_shadowPass )
 			{
 				if ( anyStrokeEnabled )
 				{
-					renderObjectStroked( object, paths, objectStyle );
+					renderObjectStroked( object, instances, objectStyle );
 				}
 
 				if ( anyVertexEnabled )
 				{
-					renderObjectVertices( object, paths, objectStyle );
+					renderObjectVertices( object, instances, objectStyle );
 				}
 			}
 		}
@@ -1408,10 +1682,10 @@ public class JOGLRenderer
 	 * Renders the given object with a material applied to it.
 	 *
 	 * @param object      Object to be rendered.
-	 * @param paths       Node paths to the object.
+	 * @param instances   Instances of the object.
 	 * @param objectStyle Render style to be applied.
 	 */
-	private void renderObjectMaterial( @NotNull final Object3D object, @NotNull final List<Node3DPath> paths, @NotNull final RenderStyle objectStyle )
+	private void renderObjectMaterial( @NotNull final Object3D object, @NotNull final InstanceGrouper.InstanceList<?> instances, @NotNull final RenderStyle objectStyle )
 	{
 		for ( final FaceGroup faceGroup : object.getFaceGroups() )
 		{
@@ -1446,8 +1720,14 @@ public class JOGLRenderer
 
 					final ShaderManager shaderManager = _shaderManager;
 
+					final RenderMetrics metrics = _metrics;
+					final long textureUploadStart = metrics.startPhase();
 					final Texture colorMap = textureCache.getColorMapTexture( appearance );
 					final Texture bumpMap = shaderManager.isShaderSupportAvailable() && hasLighting ? textureCache.getBumpMapTexture( appearance ) : null;
+					final boolean reflectionsEnabled = isReflectionsEnabled();
+					final CubeMap reflectionMap = appearance.getReflectionMap();
+					final Texture reflectionTexture = reflectionsEnabled && ( reflectionMap != null ) ? textureCache.getCubeMap( reflectionMap ) : null;
+					metrics.endPhase( RenderPhase.TEXTURE_UPLOAD, textureUploadStart );
 
 					/*
 					 * Set render/material properties.
@@ -1477,10 +1757,6 @@ public class JOGLRenderer
 						gl.glActiveTexture( TEXTURE_UNIT_COLOR );
 					}
 
-					final boolean reflectionsEnabled = isReflectionsEnabled();
-
-					final CubeMap reflectionMap = appearance.getReflectionMap();
-					final Texture reflectionTexture = reflectionsEnabled && ( reflectionMap != null ) ? textureCache.getCubeMap( reflectionMap ) : null;
 					if ( reflectionTexture != null )
 					{
 						gl.glActiveTexture( TEXTURE_UNIT_ENVIRONMENT );
@@ -1549,20 +1825,18 @@ public class JOGLRenderer
 					 */
 					state.setEnabled( GL.GL_CULL_FACE, objectStyle.isBackfaceCullingEnabled() && !faceGroup.isTwoSided() );
 
-					final GeometryObject geometryObject = _geometryObjectManager.getGeometryObject( faceGroup, GeometryType.FACES );
-					for ( final Node3DPath path : paths )
-					{
-						final Matrix3D object2world = path.getTransform();
-						gl2.glPushMatrix();
-						JOGLTools.glMultMatrixd( gl, object2world );
-						geometryObject.draw();
+					final GeometryObject geometryObject = getGeometryObject( faceGroup, GeometryType.FACES );
+					drawInstances( geometryObject, instances );
 
-						if ( DRAW_NORMALS )
+					if ( DRAW_NORMALS )
+					{
+						for ( final Node3DPath path : instances.getPaths() )
 						{
+							gl2.glPushMatrix();
+							JOGLTools.glMultMatrixd( gl, path.getTransform() );
 							renderFaceNormals( faceGroup.getFaces() );
+							gl2.glPopMatrix();
 						}
-
-						gl2.glPopMatrix();
 					}
 
 					/*
@@ -1624,10 +1898,10 @@ public class JOGLRenderer
 	 * Renders the given object in a solid color.
 	 *
 	 * @param object      Object to be rendered.
-	 * @param paths       Node paths to the object.
+	 * @param instances   Instances of the object.
 	 * @param objectStyle Render style to be applied.
 	 */
-	private void renderObjectFilled( @NotNull final Object3D object, @NotNull final List<Node3DPath> paths, @NotNull final RenderStyle objectStyle )
+	private void renderObjectFilled( @NotNull final Object3D object, @NotNull final InstanceGrouper.InstanceList<?> instances, @NotNull final RenderStyle objectStyle )
 	{
 		final MultiPassRenderMode renderMode = _renderMode;
 
@@ -1673,20 +1947,12 @@ public class JOGLRenderer
 				/*
 				 * Render faces.
 				 */
-				final GL2 gl2 = gl.getGL2();
 				for ( final FaceGroup faceGroup : object.getFaceGroups() )
 				{
 					state.setEnabled( GL.GL_CULL_FACE, objectStyle.isBackfaceCullingEnabled() && !faceGroup.isTwoSided() );
 
-					final GeometryObject geometryObject = _geometryObjectManager.getGeometryObject( faceGroup, GeometryType.FACES );
-					for ( final Node3DPath path : paths )
-					{
-						final Matrix3D object2world = path.getTransform();
-						gl2.glPushMatrix();
-						JOGLTools.glMultMatrixd( gl, object2world );
-						geometryObject.draw();
-						gl2.glPopMatrix();
-					}
+					final GeometryObject geometryObject = getGeometryObject( faceGroup, GeometryType.FACES );
+					drawInstances( geometryObject, instances );
 				}
 
 				if ( blend )
@@ -1709,10 +1975,10 @@ public class JOGLRenderer
 	 * Renders the outlines of the given object.
 	 *
 	 * @param object      Object to be rendered.
-	 * @param paths       Node paths to the object.
+	 * @param instances   Instances of the object.
 	 * @param objectStyle Render style to be applied.
 	 */
-	private void renderObjectStroked( final Object3D object, @NotNull final List<Node3DPath> paths, @NotNull final RenderStyle objectStyle )
+	private void renderObjectStroked( final Object3D object, @NotNull final InstanceGrouper.InstanceList<?> instances, @NotNull final RenderStyle objectStyle )
 	{
 		final GL gl = _gl;
 
@@ -1738,21 +2004,13 @@ public class JOGLRenderer
 		shaderManager.setTextureEnabled( false );
 		shaderManager.setReflectivity( 0.0f, 0.0f, 0.0f, 0.0f, 0.0f );
 
-		final GL2 gl2 = gl.getGL2();
 		for ( final FaceGroup faceGroup : object.getFaceGroups() )
 		{
 			// FIXME: Backface culling doesn't work on lines. Do it ourselves? (Shader?)
 			final boolean backfaceCulling = objectStyle.isBackfaceCullingEnabled() && !faceGroup.isTwoSided();
 
-			final GeometryObject geometryObject = _geometryObjectManager.getGeometryObject( faceGroup, GeometryType.OUTLINES );
-			for ( final Node3DPath path : paths )
-			{
-				final Matrix3D object2world = path.getTransform();
-				gl2.glPushMatrix();
-				JOGLTools.glMultMatrixd( gl, object2world );
-				geometryObject.draw();
-				gl2.glPopMatrix();
-			}
+			final GeometryObject geometryObject = getGeometryObject( faceGroup, GeometryType.OUTLINES );
+			drawInstances( geometryObject, instances );
 		}
 
 		if ( depthOnly )
@@ -1765,10 +2023,10 @@ public class JOGLRenderer
 	 * Renders the vertices of the given object.
 	 *
 	 * @param object      Object to be rendered.
-	 * @param paths       Node paths to the object.
+	 * @param instances   Instances of the object.
 	 * @param objectStyle Render style to be applied.
 	 */
-	private void renderObjectVertices( @NotNull final Object3D object, @NotNull final List<Node3DPath> paths, @NotNull final RenderStyle objectStyle )
+	private void renderObjectVertices( @NotNull final Object3D object, @NotNull final InstanceGrouper.InstanceList<?> instances, @NotNull final RenderStyle objectStyle )
 	{
 		final GL gl = _gl;
 
@@ -1790,21 +2048,13 @@ public class JOGLRenderer
 		shaderManager.setTextureEnabled( false );
 		shaderManager.setReflectivity( 0.0f, 0.0f, 0.0f, 0.0f, 0.0f );
 
-		final GL2 gl2 = gl.getGL2();
 		for ( final FaceGroup faceGroup : object.getFaceGroups() )
 		{
 			// FIXME: Backface culling doesn't work on vertices. Do it ourselves? (Shader?)
 			final boolean backfaceCulling = objectStyle.isBackfaceCullingEnabled() && !faceGroup.isTwoSided();
 
-			final GeometryObject geometryObject = _geometryObjectManager.getGeometryObject( faceGroup, GeometryType.OUTLINES );
-			for ( final Node3DPath path : paths )
-			{
-				final Matrix3D object2world = path.getTransform();
-				gl2.glPushMatrix();
-				JOGLTools.glMultMatrixd( gl, object2world );
-				geometryObject.draw();
-				gl2.glPopMatrix();
-			}
+			final GeometryObject geometryObject = getGeometryObject( faceGroup, GeometryType.OUTLINES );
+			drawInstances( geometryObject, instances );
 		}
 
 		if ( depthOnly )
@@ -2141,75 +2391,78 @@ public class JOGLRenderer
 	 * Tree walker that takes level of detail of {@link Object3D}s into account.
 	 */
 	private class LevelOfDetailTreeWalker
-	extends Node3DTreeWalker
+	extends CullingTreeWalker
 	{
 		/**
 		 * Calculates projected object bounds.
 		 */
 		private final ConvexHull2D _projectedBounds = new ConvexHull2D( 8 );
 
+		/**
+		 * Constructs a new instance.
+		 *
+		 * @param culler Performs view frustum culling; {@code null} to
+		 *               disable culling.
+		 */
+		private LevelOfDetailTreeWalker( @Nullable final FrustumCuller culler )
+		{
+			super( culler );
+		}
+
 		@Override
-		public boolean walkNode( @NotNull final Node3DVisitor visitor, @NotNull final Node3DPath path )
+		protected int cull( @NotNull final FrustumCuller culler, @NotNull final ContentNode contentNode, @NotNull final Node3DPath path, final int parentMask )
 		{
-			boolean result = visitor.visitNode( path );
-			if ( result )
-			{
-				final Node3D node = path.getNode();
-				final Matrix3D transform = path.getTransform();
+			final long cullingStart = _metrics.startPhase();
+			final int result = super.cull( culler, contentNode, path, parentMask );
+			_metrics.endPhase( RenderPhase.CULLING, cullingStart );
+			return result;
+		}
 
-				for ( final Node3D child : node.getChildren() )
+		@Nullable
+		@Override
+		protected Node3D getRenderedChild( @NotNull final Node3DPath parentPath, @NotNull final Node3D child )
+		{
+			Node3D renderedChild = child;
+			if ( _view.isLevelOfDetail() && ( renderedChild instanceof Object3D ) )
+			{
+				final Object3D object = (Object3D)renderedChild;
+				if ( object.isLowDetailAvailable() )
 				{
-					Node3D renderedChild = child;
-					if ( _view.isLevelOfDetail() && ( renderedChild instanceof Object3D ) )
+					final Bounds3D boundingBox = object.getOrientedBoundingBox();
+					if ( boundingBox != null )
 					{
-						final Object3D object = (Object3D)renderedChild;
-						if ( object.isLowDetailAvailable() )
-						{
-							final Bounds3D boundingBox = object.getOrientedBoundingBox();
-							if ( boundingBox != null )
-							{
-								final Projector projector = _view.getProjector();
-								final Matrix3D scene2View = _view.getScene2View();
-								final Matrix3D object2scene = path.getTransform();
-								final Matrix3D object2View = object2scene.multiply( scene2View );
-
-								final double[] points =
-								{
-								boundingBox.v1.x, boundingBox.v1.y, boundingBox.v1.z,
-								boundingBox.v2.x, boundingBox.v1.y, boundingBox.v1.z,
-								boundingBox.v1.x, boundingBox.v2.y, boundingBox.v1.z,
-								boundingBox.v2.x, boundingBox.v2.y, boundingBox.v1.z,
-								boundingBox.v1.x, boundingBox.v1.y, boundingBox.v2.z,
-								boundingBox.v2.x, boundingBox.v1.y, boundingBox.v2.z,
-								boundingBox.v1.x, boundingBox.v2.y, boundingBox.v2.z,
-								boundingBox.v2.x, boundingBox.v2.y, boundingBox.v2.z
-								};
-
-								object2View.transform( points, points, 8 );
-								projector.project( points, points, 8 );
-
-								final ConvexHull2D projectedBounds = _projectedBounds;
-								projectedBounds.clear();
-								projectedBounds.add( points, 0, 8 );
-
-								final double area = projectedBounds.area();
-								renderedChild = object.getLevelOfDetail( area );
-							}
-						}
-					}
+						final long levelOfDetailStart = _metrics.startPhase();
+						final Projector projector = _view.getProjector();
+						final Matrix3D scene2View = _view.getScene2View();
+						final Matrix3D object2scene = parentPath.getTransform();
+						final Matrix3D object2View = object2scene.multiply( scene2View );
 
-					if ( renderedChild != null )
-					{
-						if ( !walkNode( visitor, createPath( path, transform, renderedChild ) ) )
+						final double[] points =
 						{
-							result = false;
-							break;
-						}
+						boundingBox.v1.x, boundingBox.v1.y, boundingBox.v1.z,
+						boundingBox.v2.x, boundingBox.v1.y, boundingBox.v1.z,
+						boundingBox.v1.x, boundingBox.v2.y, boundingBox.v1.z,
+						boundingBox.v2.x, boundingBox.v2.y, boundingBox.v1.z,
+						boundingBox.v1.x, boundingBox.v1.y, boundingBox.v2.z,
+						boundingBox.v2.x, boundingBox.v1.y, boundingBox.v2.z,
+						boundingBox.v1.x, boundingBox.v2.y, boundingBox.v2.z,
+						boundingBox.v2.x, boundingBox.v2.y, boundingBox.v2.z
+						};
+
+						object2View.transform( points, points, 8 );
+						projector.project( points, points, 8 );
+
+						final ConvexHull2D projectedBounds = _projectedBounds;
+						projectedBounds.clear();
+						projectedBounds.add( points, 0, 8 );
+
+						final double area = projectedBounds.area();
+						renderedChild = object.getLevelOfDetail( area / _levelOfDetailScale );
+						_metrics.endPhase( RenderPhase.LEVEL_OF_DETAIL, levelOfDetailStart );
 					}
 				}
 			}
-
-			return result;
+			return renderedChild;
 		}
 	}
 
@@ -58,6 +58,24 @@ public class JOGLTools
 			} , 0 );
 	}
 
+	/**
+	 * Multiply current GL transform with the specific 4x4 matrix.
+	 *
+	 * @param   gl          OpenGL pipeline.
+	 * @param   matrix      Matrix to multiply with.
+	 */
+	public static void glMultMatrixd( final GL gl , final Matrix4D matrix )
+	{
+		final GL2 gl2 = gl.getGL2();
+		gl2.glMultMatrixd( new double[]
+			{
+				matrix.xx , matrix.yx , matrix.zx , matrix.wx ,
+				matrix.xy , matrix.yy , matrix.zy , matrix.wy ,
+				matrix.xz , matrix.yz , matrix.zz , matrix.wz ,
+				matrix.xw , matrix.yw , matrix.zw , matrix.ww
+			} , 0 );
+	}
+
 	/**
 	 * Creates a normal map from the given bump map.
 	 *
@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.*;
 import javax.swing.*;
 
+import ab.j3d.*;
 import ab.j3d.awt.view.*;
 import ab.j3d.model.*;
 import ab.j3d.view.*;
@@ -103,6 +104,26 @@ implements GLEventListener
 	 */
 	private boolean _disposed = false;
 
+	/**
+	 * Chooses the rendering quality of each frame.
+	 */
+	private final FrameScheduler _frameScheduler = new FrameScheduler();
+
+	/**
+	 * Quality to render the next frame with.
+	 */
+	private volatile FrameScheduler.Quality _frameQuality = FrameScheduler.Quality.FULL;
+
+	/**
+	 * Scene to view transform used for the previous frame.
+	 */
+	private Matrix3D _lastScene2View = null;
+
+	/**
+	 * Zoom factor used for the previous frame.
+	 */
+	private double _lastZoomFactor = 0.0;
+
 	/**
 	 * Construct new view.
 	 *
@@ -187,6 +208,17 @@ implements GLEventListener
 		return _configuration;
 	}
 
+	/**
+	 * Returns the scheduler that chooses the rendering quality of each frame,
+	 * e.g. to change the target frame time or to disable adaptive quality.
+	 *
+	 * @return Frame scheduler.
+	 */
+	public FrameScheduler getFrameScheduler()
+	{
+		return _frameScheduler;
+	}
+
 	/**
 	 * Returns the view's rendering capabilities.
 	 *
@@ -416,18 +448,23 @@ implements GLEventListener
 		public void run()
 		{
 			final GLCanvas viewComponent = _glCanvas;
+			final FrameScheduler frameScheduler = _frameScheduler;
 			while ( !_disposed && viewComponent.isShowing() )
 			{
 				boolean exceptionOccurred = false;
 
 				try
 				{
-					if ( isAnimationRunning() || _updateRequested )
+					if ( isAnimationRunning() || _updateRequested || isRefinementDue() )
 					{
 						if ( viewComponent.isShowing() && ( viewComponent.getWidth() > 0 ) && ( viewComponent.getHeight() > 0 ) )
 						{
 							_updateRequested = false;
+
+							final long frameStart = System.nanoTime();
+							_frameQuality = frameScheduler.beginFrame( frameStart, isCameraMoved() );
 							viewComponent.display();
+							frameScheduler.frameRendered( System.nanoTime() - frameStart );
 						}
 					}
 				}
@@ -452,18 +489,25 @@ implements GLEventListener
 					exceptionOccurred = true;
 				}
 
-				if ( exceptionOccurred || !( isAnimationRunning() || _updateRequested ) )
+				if ( exceptionOccurred || !( isAnimationRunning() || _updateRequested || isRefinementDue() ) )
 				{
 					/*
 					 * No update needed or an exception occured.
 					 *
-					 * Wait 300ms or wait to be notified.
+					 * Wait 300ms, until the image should be refined, or wait
+					 * to be notified.
 					 */
+					long timeout = 300L;
+					if ( !exceptionOccurred && frameScheduler.isRefinementPending() )
+					{
+						timeout = Math.min( timeout, Math.max( 1L, frameScheduler.getRefinementDelay( System.nanoTime() ) / 1000000L ) );
+					}
+
 					try
 					{
 						synchronized ( this )
 						{
-							wait( 300L );
+							wait( timeout );
 						}
 					}
 					catch ( InterruptedException e )
@@ -472,6 +516,36 @@ implements GLEventListener
 			}
 		}
 
+		/**
+		 * Returns whether a frame should be rendered now to refine the image
+		 * after the camera moved.
+		 *
+		 * @return {@code true} if a refinement frame is due.
+		 */
+		private boolean isRefinementDue()
+		{
+			final FrameScheduler frameScheduler = _frameScheduler;
+			return frameScheduler.isRefinementPending() && ( frameScheduler.getRefinementDelay( System.nanoTime() ) == 0L );
+		}
+
+		/**
+		 * Returns whether the camera moved since the previous frame.
+		 *
+		 * @return {@code true} if the camera moved.
+		 */
+		private boolean isCameraMoved()
+		{
+			final Matrix3D scene2view = getScene2View();
+			final double zoomFactor = getZoomFactor();
+
+			final Matrix3D lastScene2View = _lastScene2View;
+			final boolean result = ( lastScene2View != null ) && ( !scene2view.equals( lastScene2View ) || ( zoomFactor != _lastZoomFactor ) );
+
+			_lastScene2View = scene2view;
+			_lastZoomFactor = zoomFactor;
+			return result;
+		}
+
 		/**
 		 * Request update of rendered image.
 		 */
@@ -603,7 +677,26 @@ implements GLEventListener
 				throw new AssertionError( "Not implemented: " + projectionPolicy );
 			}
 
-			renderScene( gl );
+			/*
+			 * Render at a reduced resolution if requested by the frame
+			 * scheduler, and scale the result up to fill the view.
+			 */
+			final FrameScheduler.Quality quality = _frameQuality;
+			final double resolutionScale = quality.getResolutionScale();
+			final int renderWidth = Math.max( 1, (int)Math.round( resolutionScale * (double)width ) );
+			final int renderHeight = Math.max( 1, (int)Math.round( resolutionScale * (double)height ) );
+			final boolean scaled = ( renderWidth < width ) || ( renderHeight < height );
+			if ( scaled )
+			{
+				gl.glViewport( 0, 0, renderWidth, renderHeight );
+			}
+
+			renderScene( gl, quality );
+
+			if ( scaled )
+			{
+				scaleUp( gl2, renderWidth, renderHeight, width, height );
+			}
 
 			if ( hasOverlay() )
 			{
@@ -628,12 +721,51 @@ implements GLEventListener
 		}
 	}
 
+	/**
+	 * Scales up the image in the lower-left corner of the color buffer to fill
+	 * the given area, and restores the viewport to that area.
+	 *
+	 * @param gl2          OpenGL pipeline.
+	 * @param renderWidth  Width of the rendered image.
+	 * @param renderHeight Height of the rendered image.
+	 * @param width        Width of the view.
+	 * @param height       Height of the view.
+	 */
+	private static void scaleUp( final GL2 gl2, final int renderWidth, final int renderHeight, final int width, final int height )
+	{
+		gl2.glViewport( 0, 0, width, height );
+
+		gl2.glPushAttrib( GL2.GL_ENABLE_BIT | GL2.GL_PIXEL_MODE_BIT | GL2.GL_CURRENT_BIT );
+		try
+		{
+			gl2.glDisable( GL.GL_DEPTH_TEST );
+			gl2.glDisable( GL.GL_BLEND );
+			gl2.glDisable( GL.GL_TEXTURE_2D );
+			gl2.glDisable( GL.GL_STENCIL_TEST );
+			gl2.glDisable( GL2ES1.GL_ALPHA_TEST );
+			gl2.glDisable( GL2ES1.GL_FOG );
+
+			/*
+			 * Copying from the lower-left corner to the whole buffer is safe,
+			 * since pixels are read before they are written.
+			 */
+			gl2.glWindowPos2i( 0, 0 );
+			gl2.glPixelZoom( (float)width / (float)renderWidth, (float)height / (float)renderHeight );
+			gl2.glCopyPixels( 0, 0, renderWidth, renderHeight, GL2.GL_COLOR );
+		}
+		finally
+		{
+			gl2.glPopAttrib();
+		}
+	}
+
 	/**
 	 * Renders the scene.
 	 *
-	 * @param gl OpenGL pipeline.
+	 * @param gl      OpenGL pipeline.
+	 * @param quality Rendering quality.
 	 */
-	private void renderScene( final GL gl )
+	private void renderScene( final GL gl, final FrameScheduler.Quality quality )
 	{
 		final Scene scene = getScene();
 
@@ -650,6 +782,8 @@ implements GLEventListener
 
 		final JOGLRenderer renderer = getOrCreateRenderer( gl, false );
 		renderer.setSceneToViewTransform( getScene2View() );
+		renderer.setEffectsEnabled( quality.isEffectsEnabled() );
+		renderer.setLevelOfDetailScale( quality.getLevelOfDetailScale() );
 		renderer.renderScene( scene, styleFilters, viewStyle, getBackground(), getGrid() );
 	}
 
@@ -777,11 +911,14 @@ implements GLEventListener
 					final Font font = g.getFont();
 					g.setFont( font.deriveFont( 10.0f ) );
 					g.setColor( new Color( 0xa0ffffff, true ) );
-					g.fillRect( 0, 0, 150, 50 );
+					g.fillRect( 0, 0, 150, 65 );
 					g.setColor( Color.BLACK );
 					g.drawString( "FPS: " + statistics.getFPS(), 5, 15 );
 					g.drawString( "Primitives: " + statistics.getPrimitiveCount(), 5, 30 );
 					g.drawString( "Objects: " + statistics.getObjectCount() + " (" + statistics.getUniqueObjectCount() + " unique)", 5, 45 );
+
+					final FrustumCuller culler = view.getFrustumCuller();
+					g.drawString( "Culled: " + culler.getCulledCount() + " of " + culler.getTestedCount() + " tested", 5, 60 );
 				}
 			}
 		}
@@ -21,6 +21,7 @@ package ab.j3d.awt.view.jogl;
 import ab.j3d.*;
 import ab.j3d.geom.*;
 import ab.j3d.model.*;
+import ab.j3d.view.*;
 import com.jogamp.opengl.*;
 import com.jogamp.opengl.fixedfunc.*;
 import com.jogamp.opengl.glu.*;
@@ -222,7 +223,12 @@ public class ShadowMap
 	 *
 	 * @param   gl      OpenGL pipeline.
 	 * @param   scene   Scene being rendered.
+	 *
+	 * @deprecated Fits the shadow map to the entire scene. Use {@link
+	 * #begin(GL, ShadowCascade)} with a cascade from {@link
+	 * ShadowFrustumFitter}.
 	 */
+	@Deprecated
 	public void begin( final GL gl, final Scene scene )
 	{
 		final GL2 gl2 = gl.getGL2();
@@ -317,6 +323,54 @@ public class ShadowMap
 		}
 	}
 
+	/**
+	 * Starts rendering of the shadow map, using a shadow projection fitted by
+	 * {@link ShadowFrustumFitter}.
+	 *
+	 * @param   gl          OpenGL pipeline.
+	 * @param   cascade     Shadow projection to use.
+	 */
+	public void begin( final GL gl, final ShadowCascade cascade )
+	{
+		final GL2 gl2 = gl.getGL2();
+
+		// Store projection matrix for final rendering pass.
+		gl2.glPushAttrib( GL2.GL_VIEWPORT_BIT );
+		gl2.glMatrixMode( GLMatrixFunc.GL_PROJECTION );
+		gl2.glPushMatrix();
+
+		// Adjust viewport size and projection matrix for shadow map.
+		gl.glViewport( 0, 0, _size, _size );
+		gl2.glLoadIdentity();
+		JOGLTools.glMultMatrixd( gl, cascade.getProjection() );
+
+		gl2.glMatrixMode( GLMatrixFunc.GL_MODELVIEW );
+		gl2.glLoadIdentity();
+		JOGLTools.glMultMatrixd( gl, cascade.getSceneToLight() );
+
+		final double[] projectionMatrix = new double[ 16 ];
+		gl2.glGetDoublev( GLMatrixFunc.GL_PROJECTION_MATRIX, projectionMatrix, 0 );
+		_projectionMatrix = projectionMatrix;
+
+		final double[] modelviewMatrix = new double[ 16 ];
+		gl2.glGetDoublev( GLMatrixFunc.GL_MODELVIEW_MATRIX, modelviewMatrix, 0 );
+		_modelviewMatrix = modelviewMatrix;
+
+		_framebuffer.bind();
+
+		/* Clear buffers. */
+		gl.glClearDepth( 1.0 );
+		if ( _renderColorMap )
+		{
+			gl.glClearColor( 0.0f, 0.0f, 0.0f, 0.0f );
+			gl.glClear( GL.GL_COLOR_BUFFER_BIT | GL.GL_DEPTH_BUFFER_BIT );
+		}
+		else
+		{
+			gl.glClear( GL.GL_DEPTH_BUFFER_BIT );
+		}
+	}
+
 	/**
 	 * Finishes rendering of the shadow map.
 	 *
@@ -24,6 +24,7 @@ import java.util.*;
 import ab.j3d.*;
 import ab.j3d.geom.*;
 import ab.j3d.model.*;
+import ab.j3d.view.*;
 import com.jogamp.opengl.*;
 import com.jogamp.opengl.fixedfunc.*;
 import org.jetbrains.annotations.*;
@@ -46,6 +47,13 @@ public abstract class VertexBufferObject
 	 */
 	protected VertexFormat _vertexFormat = null;
 
+	/**
+	 * Vertex indices used by the draw operations; {@code null} if the
+	 * geometry is not indexed.
+	 */
+	@Nullable
+	protected ByteBuffer _indexData = null;
+
 	/**
 	 * Constructs a new vertex buffer object.
 	 */
@@ -63,6 +71,8 @@ public abstract class VertexBufferObject
 	 */
 	protected ByteBuffer createBufferData( @NotNull final List<FaceGroup> faceGroups, @NotNull final GeometryType type )
 	{
+		_indexData = null;
+
 		final ByteBuffer vertexBuffer;
 		switch ( type )
 		{
@@ -81,7 +91,11 @@ public abstract class VertexBufferObject
 	}
 
 	/**
-	 * Creates vertex buffer data for the given face groups.
+	 * Creates vertex buffer data for the given face groups. All primitives are
+	 * converted to a single indexed triangle list. Identical vertices are
+	 * welded and the triangle and vertex order is optimized for the vertex
+	 * cache; see {@link IndexedTriangleMesh}. The vertex indices are stored
+	 * in {@link #_indexData}.
 	 *
 	 * @param   faceGroups  Face groups.
 	 *
@@ -90,190 +104,93 @@ public abstract class VertexBufferObject
 	protected ByteBuffer createBufferDataForFaces( final List<FaceGroup> faceGroups )
 	{
 		/*
-		 * Count primitives and vertices. Count triangles and quads, so they can
-		 * be batched together and drawn with a single call.
-		 *
-		 * vertexCount    = number of vertices needed for -all- primitives
-		 * triangleCount  = number of independent triangles (drawn as 1 primitive)
-		 * quadCount      = number of independent triangles (drawn as 1 primitive)
-		 * primitiveCount = number of primitives (except independent triangles/quads)
+		 * Count triangles.
 		 */
-		int vertexCount = 0;
-		int triangleCount = 0;
-		int quadCount = 0;
-		int primitiveCount = 0;
-
+		int indexCount = 0;
 		for ( final FaceGroup faceGroup : faceGroups )
 		{
 			for ( final Face3D face : faceGroup.getFaces() )
 			{
 				final Tessellation tessellation = face.getTessellation();
-
-				final Collection<TessellationPrimitive> primitives = tessellation.getPrimitives();
-				for ( final TessellationPrimitive primitive : primitives )
+				for ( final TessellationPrimitive primitive : tessellation.getPrimitives() )
 				{
-					final int[] vertices = primitive.getVertices();
-					vertexCount += vertices.length;
-
-					if ( primitive instanceof TriangleList )
-					{
-						triangleCount += vertices.length / 3;
-					}
-					else if ( primitive instanceof QuadList )
-					{
-						quadCount += vertices.length / 4;
-					}
-					else if ( primitive instanceof TriangleFan )
-					{
-						if ( vertices.length == 3 )
-						{
-							triangleCount++;
-						}
-						else if ( vertices.length == 4 )
-						{
-							quadCount++;
-						}
-						else
-						{
-							primitiveCount++;
-						}
-					}
-					else if ( primitive instanceof TriangleStrip )
-					{
-						primitiveCount++;
-					}
-					else if ( primitive instanceof QuadStrip )
-					{
-						primitiveCount++;
-					}
-					else
-					{
-						throw new IllegalArgumentException( "Unsupported primitive: " + primitive );
-					}
+					indexCount += primitive.getTriangles().length;
 				}
 			}
 		}
 
-		if ( triangleCount > 0 )
-		{
-			primitiveCount++;
-		}
-
-		if ( quadCount > 0 )
-		{
-			primitiveCount++;
-		}
-
-		/*
-		 * Allocate a byte buffer for the vertex data.
-		 */
 		final DefaultVertexFormat vertexFormat = new DefaultVertexFormat();
 		_vertexFormat = vertexFormat;
 
-		final int bytesPerVertex = vertexFormat.getBytesPerVertex();
-
-		final ByteBuffer vertexBuffer = ByteBuffer.allocate( vertexCount * bytesPerVertex );
-		vertexBuffer.order( ByteOrder.LITTLE_ENDIAN );
-
 		/*
-		 * All triangle faces are stored together, to render with one call.
+		 * Encode the vertices of each face once and collect triangles.
 		 */
-		final ByteBuffer triangleBuffer = vertexBuffer.duplicate();
-		final int triangleOffset = ( vertexCount - 3 * triangleCount - 4 * quadCount ) * bytesPerVertex;
-		triangleBuffer.position( triangleOffset );
-		triangleBuffer.order( ByteOrder.LITTLE_ENDIAN );
-
-		/*
-		 * All quad faces are stored together, to render with one call.
-		 */
-		final ByteBuffer quadBuffer = vertexBuffer.duplicate();
-		final int quadOffset = ( vertexCount - 4 * quadCount ) * bytesPerVertex;
-		quadBuffer.position( quadOffset );
-		quadBuffer.order( ByteOrder.LITTLE_ENDIAN );
-
-		/*
-		 * Fill the buffer and keep track of associated draw operations.
-		 */
-		final ArrayList<DrawOperation> drawOperations = new ArrayList<DrawOperation>( primitiveCount );
-		_drawOperations = drawOperations;
+		final int stride = vertexFormat.getBytesPerVertex() / 4;
+		final int[] indices = new int[ indexCount ];
+		float[] vertices = new float[ Math.max( 3, indexCount ) * stride ];
+		int vertexCount = 0;
+		indexCount = 0;
 
 		for ( final FaceGroup faceGroup : faceGroups )
 		{
 			for ( final Face3D face : faceGroup.getFaces() )
 			{
-				final Tessellation tessellation = face.getTessellation();
-				for ( final TessellationPrimitive primitive : tessellation.getPrimitives() )
+				final int faceVertexCount = face.getVertexCount();
+				if ( ( vertexCount + faceVertexCount ) * stride > vertices.length )
 				{
-					final int[] vertices = primitive.getVertices();
-
-					final ByteBuffer buffer;
-					int mode = -1;
-
-					if ( primitive instanceof TriangleList )
-					{
-						buffer = triangleBuffer;
-					}
-					else if ( primitive instanceof QuadList )
-					{
-						buffer = quadBuffer;
-					}
-					else if ( primitive instanceof TriangleFan )
-					{
-						if ( vertices.length == 3 )
-						{
-							buffer = triangleBuffer;
-						}
-						else if ( vertices.length == 4 )
-						{
-							buffer = quadBuffer;
-						}
-						else
-						{
-							buffer = vertexBuffer;
-							mode = GL.GL_TRIANGLE_FAN;
-						}
-					}
-					else if ( primitive instanceof TriangleStrip )
-					{
-						buffer = vertexBuffer;
-						mode = GL.GL_TRIANGLE_STRIP;
-					}
-					else if ( primitive instanceof QuadStrip )
-					{
-						buffer = vertexBuffer;
-						mode = GL2.GL_QUAD_STRIP;
-					}
-					else
-					{
-						throw new IllegalArgumentException( "Unsupported primitive: " + primitive );
-					}
-
-					final int offset = buffer.position();
+					vertices = Arrays.copyOf( vertices, Math.max( vertices.length * 2, ( vertexCount + faceVertexCount ) * stride ) );
+				}
 
-					for ( final int vertexIndex : vertices )
-					{
-						vertexFormat.encode( buffer, vertexIndex, face, faceGroup );
-					}
+				for ( int i = 0; i < faceVertexCount; i++ )
+				{
+					vertexFormat.encode( vertices, ( vertexCount + i ) * stride, i, face, faceGroup );
+				}
 
-					if ( mode != -1 )
+				final Tessellation tessellation = face.getTessellation();
+				for ( final TessellationPrimitive primitive : tessellation.getPrimitives() )
+				{
+					for ( final int vertexIndex : primitive.getTriangles() )
 					{
-						drawOperations.add( new DrawArrays( mode, offset / bytesPerVertex, vertices.length ) );
+						indices[ indexCount++ ] = vertexCount + vertexIndex;
 					}
 				}
+
+				vertexCount += faceVertexCount;
 			}
 		}
 
-		if ( triangleCount > 0 )
+		final IndexedTriangleMesh mesh = new IndexedTriangleMesh( stride, Arrays.copyOf( vertices, vertexCount * stride ), indices );
+		mesh.optimize();
+
+		/*
+		 * Store vertices and indices, using 16-bit indices if possible.
+		 */
+		final float[] meshVertices = mesh.getVertices();
+		final int meshVertexCount = mesh.getVertexCount();
+		final ByteBuffer vertexBuffer = ByteBuffer.allocate( meshVertexCount * stride * 4 );
+		vertexBuffer.order( ByteOrder.LITTLE_ENDIAN );
+		vertexBuffer.asFloatBuffer().put( meshVertices, 0, meshVertexCount * stride );
+
+		final int[] meshIndices = mesh.getIndices();
+		final boolean shortIndices = mesh.isShortIndexable();
+		final ByteBuffer indexBuffer = ByteBuffer.allocate( meshIndices.length * ( shortIndices ? 2 : 4 ) );
+		indexBuffer.order( ByteOrder.LITTLE_ENDIAN );
+		if ( shortIndices )
 		{
-			drawOperations.add( new DrawArrays( GL.GL_TRIANGLES, triangleOffset / bytesPerVertex, triangleCount * 3 ) );
+			final ShortBuffer shortBuffer = indexBuffer.asShortBuffer();
+			for ( final int index : meshIndices )
+			{
+				shortBuffer.put( (short)index );
+			}
 		}
-
-		if ( quadCount > 0 )
+		else
 		{
-			drawOperations.add( new DrawArrays( GL2.GL_QUADS, quadOffset / bytesPerVertex, quadCount * 4 ) );
+			indexBuffer.asIntBuffer().put( meshIndices );
 		}
+		_indexData = ( meshIndices.length > 0 ) ? indexBuffer : null;
+
+		_drawOperations = ( meshIndices.length > 0 ) ? Collections.<DrawOperation>singletonList( new DrawElements( GL.GL_TRIANGLES, meshIndices.length, shortIndices ? GL.GL_UNSIGNED_SHORT : GL.GL_UNSIGNED_INT, 0L ) ) : Collections.<DrawOperation>emptyList();
 
-		vertexBuffer.rewind();
 		return vertexBuffer;
 	}
 
@@ -413,6 +330,36 @@ public abstract class VertexBufferObject
 		_vertexFormat.disable( gl );
 	}
 
+	/**
+	 * Performs the draw operations needed to draw the geometry stored in the
+	 * buffer once for each of the given object-to-view matrices. The vertex
+	 * format is only enabled once for all instances.
+	 *
+	 * @param   gl              OpenGL interface.
+	 * @param   matrices        Object-to-view matrices.
+	 * @param   instanceCount   Number of instances to draw.
+	 */
+	protected void performDrawOperations( final GL gl, @NotNull final FloatBuffer matrices, final int instanceCount )
+	{
+		final GL2 gl2 = gl.getGL2();
+		final int start = matrices.position();
+
+		_vertexFormat.enable( gl );
+		for ( int i = 0; i < instanceCount; i++ )
+		{
+			matrices.position( start + i * InstanceGrouper.MATRIX_SIZE );
+			gl2.glLoadMatrixf( matrices );
+
+			for ( final DrawOperation drawOperation : _drawOperations )
+			{
+				drawOperation.draw( gl );
+			}
+		}
+		_vertexFormat.disable( gl );
+
+		matrices.position( start );
+	}
+
 	/**
 	 * A draw operation performed using the vertex buffer.
 	 */
@@ -620,6 +567,41 @@ public abstract class VertexBufferObject
 			target.putFloat( vertex.colorMapU );
 			target.putFloat( vertex.colorMapV );
 		}
+
+		/**
+		 * Stores the given vertex in the given array, encoded using this
+		 * vertex format.
+		 *
+		 * @param   target          Array to store the vertex in.
+		 * @param   offset          Offset in the array.
+		 * @param   vertexIndex     Index of the vertex.
+		 * @param   face            Face that contains the vertex.
+		 * @param   faceGroup       Face group containing the face.
+		 */
+		public void encode( @NotNull final float[] target, final int offset, final int vertexIndex, @NotNull final Face3D face, @NotNull final FaceGroup faceGroup )
+		{
+			final Vertex3D vertex = face.getVertex( vertexIndex );
+
+			target[ offset ] = (float)vertex.point.x;
+			target[ offset + 1 ] = (float)vertex.point.y;
+			target[ offset + 2 ] = (float)vertex.point.z;
+
+			final Vector3D normal;
+			if ( faceGroup.isSmooth() )
+			{
+				normal = face.getVertexNormal( vertexIndex );
+			}
+			else
+			{
+				normal = face.getNormal();
+			}
+			target[ offset + 3 ] = (float)normal.x;
+			target[ offset + 4 ] = (float)normal.y;
+			target[ offset + 5 ] = (float)normal.z;
+
+			target[ offset + 6 ] = vertex.colorMapU;
+			target[ offset + 7 ] = vertex.colorMapV;
+		}
 	}
 
 	/**
@@ -43,6 +43,12 @@ public class VertexBufferObjectCore
 	 */
 	private int _vertexBufferObject;
 
+	/**
+	 * Identifies the buffer object with vertex indices; 0 if the geometry is
+	 * not indexed.
+	 */
+	private int _indexBufferObject;
+
 	/**
 	 * Constructs a new vertex buffer object for the geometry of the given
 	 * face groups.
@@ -73,13 +79,55 @@ public class VertexBufferObjectCore
 		gl.glBindBuffer( GL.GL_ARRAY_BUFFER, vertexBufferObject );
 		gl.glBufferData( GL.GL_ARRAY_BUFFER, vertexBuffer.remaining(), vertexBuffer, GL.GL_STATIC_DRAW );
 		gl.glBindBuffer( GL.GL_ARRAY_BUFFER, 0 );
+
+		/*
+		 * Copy vertex indices into a separate buffer object, if any.
+		 */
+		final ByteBuffer indexData = _indexData;
+		if ( indexData != null )
+		{
+			gl.glGenBuffers( ids.length, ids, 0 );
+			final int indexBufferObject = ids[ 0 ];
+			_indexBufferObject = indexBufferObject;
+
+			gl.glBindBuffer( GL.GL_ELEMENT_ARRAY_BUFFER, indexBufferObject );
+			gl.glBufferData( GL.GL_ELEMENT_ARRAY_BUFFER, indexData.remaining(), indexData, GL.GL_STATIC_DRAW );
+			gl.glBindBuffer( GL.GL_ELEMENT_ARRAY_BUFFER, 0 );
+			_indexData = null;
+		}
 	}
 
 	public void draw()
 	{
 		final GL gl = GLU.getCurrentGL();
+		final int indexBufferObject = _indexBufferObject;
 		gl.glBindBuffer( GL.GL_ARRAY_BUFFER, _vertexBufferObject );
+		if ( indexBufferObject != 0 )
+		{
+			gl.glBindBuffer( GL.GL_ELEMENT_ARRAY_BUFFER, indexBufferObject );
+		}
 		performDrawOperations( gl );
+		if ( indexBufferObject != 0 )
+		{
+			gl.glBindBuffer( GL.GL_ELEMENT_ARRAY_BUFFER, 0 );
+		}
+		gl.glBindBuffer( GL.GL_ARRAY_BUFFER, 0 );
+	}
+
+	public void drawInstances( @NotNull final FloatBuffer matrices, final int instanceCount )
+	{
+		final GL gl = GLU.getCurrentGL();
+		final int indexBufferObject = _indexBufferObject;
+		gl.glBindBuffer( GL.GL_ARRAY_BUFFER, _vertexBufferObject );
+		if ( indexBufferObject != 0 )
+		{
+			gl.glBindBuffer( GL.GL_ELEMENT_ARRAY_BUFFER, indexBufferObject );
+		}
+		performDrawOperations( gl, matrices, instanceCount );
+		if ( indexBufferObject != 0 )
+		{
+			gl.glBindBuffer( GL.GL_ELEMENT_ARRAY_BUFFER, 0 );
+		}
 		gl.glBindBuffer( GL.GL_ARRAY_BUFFER, 0 );
 	}
 
@@ -87,6 +135,10 @@ public class VertexBufferObjectCore
 	{
 		final GL gl = GLU.getCurrentGL();
 		gl.glDeleteBuffers( 1, new int[] { _vertexBufferObject }, 0 );
+		if ( _indexBufferObject != 0 )
+		{
+			gl.glDeleteBuffers( 1, new int[] { _indexBufferObject }, 0 );
+		}
 	}
 
 	/**